@@ -123,6 +123,8 @@ public class BasicMessageRouterActivityComponent extends BaseMessageRouterActivi
     messageRouter = new StandardMessageRouter(new BasicMessageRouterProtectedHandlerContext(),
         timeProvider, log);
     Configuration configuration = componentContext.getActivity().getConfiguration();
+    messageRouter.setExecutorService(
+        getComponentContext().getActivity().getSpaceEnvironment().getExecutorService());
     messageRouter.setHostId(
         configuration.getRequiredPropertyString(SmartSpacesEnvironment.CONFIGURATION_NAME_HOSTID));
     messageRouter.setNodeName(configuration.getRequiredPropertyString(
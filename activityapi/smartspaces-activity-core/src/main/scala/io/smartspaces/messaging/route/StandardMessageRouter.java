@@ -33,9 +33,9 @@ import io.smartspaces.messaging.route.ros.RosRouteMessagePublisher;
 import io.smartspaces.messaging.route.ros.RosRouteMessageSubscriber;
 import io.smartspaces.time.provider.TimeProvider;
 import io.smartspaces.util.messaging.mqtt.MqttBrokerDescription;
+import io.smartspaces.util.messaging.mqtt.MqttClientPool;
 import io.smartspaces.util.messaging.mqtt.MqttPublishers;
 import io.smartspaces.util.messaging.mqtt.MqttSubscribers;
-import io.smartspaces.util.messaging.mqtt.PahoMqttClient;
 import io.smartspaces.util.messaging.mqtt.StandardMqttPublishers;
 import io.smartspaces.util.messaging.mqtt.StandardMqttSubscribers;
 import io.smartspaces.util.messaging.ros.RosPublishers;
@@ -57,6 +57,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -142,9 +143,9 @@ public class StandardMessageRouter implements MessageRouter {
   private Map<String, RouteDescription> outputRouteDescriptions = new HashMap<>();
 
   /**
-   * The route descriptions for all outputs keyed by channel IDs.
+   * The MQTT client pools keyed by their broker descriptions.
    */
-  private Map<MqttBrokerDescription, PahoMqttClient> brokerDescriptionToMqttClient =
+  private Map<MqttBrokerDescription, MqttClientPool> brokerDescriptionToMqttClientPool =
       new HashMap<>();
 
   /**
@@ -157,6 +158,15 @@ public class StandardMessageRouter implements MessageRouter {
    */
   private String nodeName;
 
+  /**
+   * The executor service for MQTT reconnects.
+   * 
+   * <p>
+   * Will be {@code null} if none set, in which case any reconnecting is left to
+   * the MQTT library.
+   */
+  private ScheduledExecutorService executorService;
+
   /**
    * The ROS node the router is using.
    */
@@ -234,7 +244,8 @@ public class StandardMessageRouter implements MessageRouter {
       } else if ("mqtt".equals(routeProtocol)) {
         MqttPublishers<Map<String, Object>> publishers =
             new StandardMqttPublishers<Map<String, Object>>(mqttMessageCodec, log);
-        publishers.addPublishers(getMqttClient(getMqttBrokerDescription()), topicNamesForProtocol);
+        publishers.addPublishers(getMqttClientPool(getMqttBrokerDescription()),
+            topicNamesForProtocol);
 
         routeMessagePublishers.add(new MqttRouteMessagePublisher(channelId, publishers));
       } else {
@@ -308,7 +319,8 @@ public class StandardMessageRouter implements MessageRouter {
             new MqttRouteMessageSubscriber(channelId, subscribers, mqttMessageCodec);
         routeMessageSubscribers.add(mqttRouteMessageSubscriber);
 
-        subscribers.addSubscribers(getMqttClient(getMqttBrokerDescription()), topicNamesForProtocol,
+        subscribers.addSubscribers(getMqttClientPool(getMqttBrokerDescription()).primaryClient(),
+            topicNamesForProtocol,
             new IMqttMessageListener() {
 
               @Override
@@ -439,24 +451,39 @@ public class StandardMessageRouter implements MessageRouter {
       output.shutdown();
     }
     outputPublishers.clear();
+
+    for (MqttClientPool clientPool : brokerDescriptionToMqttClientPool.values()) {
+      clientPool.shutdown();
+    }
+    brokerDescriptionToMqttClientPool.clear();
   }
 
   /**
-   * Get the MQTT client allocated with a given broker description.
+   * Get the MQTT client pool allocated with a given broker description.
    * 
    * @param mqttBrokerDescription
    *          the MQTT broker description
    */
-  private PahoMqttClient getMqttClient(MqttBrokerDescription mqttBrokerDescription) {
-    PahoMqttClient client = brokerDescriptionToMqttClient.get(mqttBrokerDescription);
-    if (client == null) {
-      client = new PahoMqttClient(mqttBrokerDescription, getNodeName(), log);
-      client.startup();
+  private MqttClientPool getMqttClientPool(MqttBrokerDescription mqttBrokerDescription) {
+    MqttClientPool clientPool = brokerDescriptionToMqttClientPool.get(mqttBrokerDescription);
+    if (clientPool == null) {
+      clientPool = new MqttClientPool(mqttBrokerDescription, getNodeName(), executorService, log);
+      clientPool.startup();
       
-      brokerDescriptionToMqttClient.put(mqttBrokerDescription, client);
+      brokerDescriptionToMqttClientPool.put(mqttBrokerDescription, clientPool);
     }
     
-    return client;
+    return clientPool;
+  }
+
+  /**
+   * Set the executor service for the router.
+   * 
+   * @param executorService
+   *          the executor service
+   */
+  public void setExecutorService(ScheduledExecutorService executorService) {
+    this.executorService = executorService;
   }
 
   /**
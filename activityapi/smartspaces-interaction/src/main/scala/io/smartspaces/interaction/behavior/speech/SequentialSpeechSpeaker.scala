@@ -16,25 +16,34 @@
 
 package io.smartspaces.interaction.behavior.speech;
 
-import java.util.concurrent.Future
-import java.util.concurrent.LinkedBlockingQueue
-
 import io.smartspaces.service.speech.synthesis.SpeechSynthesisPlayer
 import io.smartspaces.service.speech.synthesis.SpeechSynthesisService
 import io.smartspaces.system.SmartSpacesEnvironment
 import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.tasks.ExecutorSequentialTaskQueue
 
 /**
  * The standard speech source that uses routes.
  *
+ * <p>
+ * Speech is spoken in the order it is added, on the space environment's
+ * executor, so no thread is used while there is nothing to say. Shutting
+ * down interrupts any speech in progress and waits for it to stop before the
+ * speech player is shut down.
+ *
  * @author Keith M. Hughes
  */
 class SequentialSpeechSpeaker(private val spaceEnvironment: SmartSpacesEnvironment, private val log: ExtendedLog) extends SpeechSpeaker {
 
   /**
-   * The queue of text to speak.
+   * How long shutdown waits for speech in progress to stop, in milliseconds.
+   */
+  val SPEECH_STOP_WAIT = 5000L
+
+  /**
+   * The queue of speech to speak.
    */
-  private val speechToSpeak: LinkedBlockingQueue[String] = new LinkedBlockingQueue[String]()
+  private val speechQueue = new ExecutorSequentialTaskQueue(spaceEnvironment, log)
 
   /**
    * The player for speech.
@@ -42,9 +51,25 @@ class SequentialSpeechSpeaker(private val spaceEnvironment: SmartSpacesEnvironme
   private var speechPlayer: SpeechSynthesisPlayer = null
 
   /**
-   * The future for the thread that calls the speech player.
+   * The lock for the speaking state.
+   */
+  private val speakingLock = new Object
+
+  /**
+   * The thread speaking, {@code null} if nothing is being spoken.
+   *
+   * <p>
+   * Guarded by the speaking lock.
+   */
+  private var speakingThread: Thread = null
+
+  /**
+   * {@code true} if the speaker is running.
+   *
+   * <p>
+   * Guarded by the speaking lock.
    */
-  private var speechFuture: Future[_] = null
+  private var running = false
 
   override def startup(): Unit = {
     val speechSynthesisService: SpeechSynthesisService = spaceEnvironment.getServiceRegistry()
@@ -52,36 +77,73 @@ class SequentialSpeechSpeaker(private val spaceEnvironment: SmartSpacesEnvironme
     speechPlayer = speechSynthesisService.newPlayer(log)
     speechPlayer.startup()
 
-    speechFuture = spaceEnvironment.getExecutorService().submit(new Runnable() {
-      override def run(): Unit = {
-        speakNextContent()
-      }
-    });
+    speakingLock.synchronized {
+      running = true
+    }
+
+    speechQueue.startup()
   }
 
   override def shutdown(): Unit = {
-    speechFuture.cancel(true)
+    speechQueue.shutdown()
+
+    speakingLock.synchronized {
+      running = false
+
+      if (speakingThread != null) {
+        speakingThread.interrupt()
+
+        val deadline = System.currentTimeMillis() + SPEECH_STOP_WAIT
+        var remaining = SPEECH_STOP_WAIT
+        while (speakingThread != null && remaining > 0) {
+          speakingLock.wait(remaining)
+          remaining = deadline - System.currentTimeMillis()
+        }
+
+        if (speakingThread != null) {
+          log.warn(s"Speech still in progress after ${SPEECH_STOP_WAIT} msecs, shutting down the speech player anyway")
+        }
+      }
+    }
+
     speechPlayer.shutdown()
   }
 
   override def addSpeech(content: String): Unit = {
-    speechToSpeak.offer(content)
+    speechQueue.addTask(new Runnable() {
+      override def run(): Unit = {
+        speak(content)
+      }
+    })
   }
 
   /**
-   * Keep speaking until the speaking thread is interrupted.
+   * Speak some content, unless the speaker has been shut down.
    *
-   * <p>
-   * Blocks while waiting for something in the speech queue.
+   * @param content
+   *          the content to speak
    */
-  private def speakNextContent(): Unit = {
-    while (!Thread.interrupted()) {
-      try {
-        val content = speechToSpeak.take()
-        speechPlayer.speak(content, true)
-      } catch {
-        case e: InterruptedException =>
-          log.warn("Sequential speech speaker interrupted in speech loop");
+  private def speak(content: String): Unit = {
+    speakingLock.synchronized {
+      if (!running) {
+        return
+      }
+
+      speakingThread = Thread.currentThread()
+    }
+
+    try {
+      speechPlayer.speak(content, true)
+    } finally {
+      speakingLock.synchronized {
+        speakingThread = null
+
+        // Don't leave an interrupt from shutdown on the executor's thread.
+        if (!running) {
+          Thread.interrupted()
+        }
+
+        speakingLock.notifyAll()
       }
     }
   }
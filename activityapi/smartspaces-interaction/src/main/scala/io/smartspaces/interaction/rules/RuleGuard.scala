@@ -38,6 +38,18 @@ trait RuleGuard {
    * @return [[true]] if the conditional passes
    */
   def evaluate(rule: Rule, executionContext: ExecutionContext): Boolean
+
+  /**
+   * The key for sharing the guard between rules.
+   *
+   * Guards with equal keys must give the same result and set the same values
+   * for the same values in their execution context, whatever rule they are
+   * evaluated under. A compiled rule network evaluates guards with equal keys
+   * once for all rules which have them.
+   *
+   * @return the key, or [[None]] if the guard cannot be shared
+   */
+  def guardKey: Option[Any]
   
   /**
    * Do any initialization required by the guard.
@@ -51,6 +63,8 @@ trait RuleGuard {
  * @author Keith M. Hughes
  */
 abstract class BaseRuleGuard extends RuleGuard {
+
+  override def guardKey: Option[Any] = None
   
   override def initialize(): Unit = {
     // Do nothing
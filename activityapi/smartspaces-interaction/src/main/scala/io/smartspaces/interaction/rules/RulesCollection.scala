@@ -40,6 +40,13 @@ trait RulesCollection {
    * @return the rule, if found
    */
   def getRule(ruleName: String): Option[Rule]
+
+  /**
+   * Get all rules in the collection.
+   *
+   * @return all rules
+   */
+  def rules: Iterable[Rule]
 }
 
 /**
@@ -52,15 +59,19 @@ class StandardRulesCollection extends RulesCollection {
   /**
    * The rules indexed by name
    */
-  private var rules = Map[String, Rule]()
+  private var _rules = Map[String, Rule]()
   
   override def addRule(rule: Rule): RulesCollection = {
-    rules = rules + (rule.ruleName -> rule)
+    _rules = _rules + (rule.ruleName -> rule)
     
     this
   }
   
   override def getRule(ruleName: String): Option[Rule] = {
-    rules.get(ruleName)
+    _rules.get(ruleName)
+  }
+
+  override def rules: Iterable[Rule] = {
+    _rules.values
   }
 }
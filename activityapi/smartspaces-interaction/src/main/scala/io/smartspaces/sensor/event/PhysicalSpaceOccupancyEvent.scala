@@ -21,14 +21,19 @@ import io.smartspaces.sensor.value.entity.PresenceCategoricalValueInstances.Pres
 /**
  * An event that a person entered or exited a physical space.
  *
+ * <p>
+ * The model version is the version of the complete sensed entity model the
+ * event was recorded at, if it came from the model.
+ *
  * @author Keith M. Hughes
  */
 class PhysicalSpaceOccupancyEvent(
     val physicalSpaceExternalId: String,
     val personExternalId: String, 
     val timestamp: Long, 
-    val presence: PresenceCategoricalValueInstance) {
+    val presence: PresenceCategoricalValueInstance,
+    val modelVersion: Long = 0) {
   override def toString(): String = {
-    s"PhysicalSpaceOccupancyEvent[ physicalSpaceExternalId=${physicalSpaceExternalId}, personExternalId=${personExternalId}, timestamp=${timestamp}, presence=${presence.label}]"
+    s"PhysicalSpaceOccupancyEvent[ physicalSpaceExternalId=${physicalSpaceExternalId}, personExternalId=${personExternalId}, timestamp=${timestamp}, presence=${presence.label}, modelVersion=${modelVersion}]"
   }
 }
\ No newline at end of file
@@ -16,6 +16,8 @@
 
 package io.smartspaces.sensor.integrator
 
+import java.io.File
+
 import io.smartspaces.data.entity.ValueRegistry
 import io.smartspaces.resource.managed.ManagedResource
 import io.smartspaces.sensor.services.domain.SensorCommonRegistry
@@ -25,6 +27,7 @@ import io.smartspaces.sensor.messaging.input.SensorInput
 import io.smartspaces.sensor.model.CompleteSensedEntityModel
 import io.smartspaces.sensor.services.query.SensedEntityModelQueryProcessor
 import io.smartspaces.service.comm.pubsub.mqtt.MqttCommunicationEndpoint
+import io.smartspaces.time.TimeFrequency
 
 /**
  * The sensor integration layer.
@@ -87,4 +90,32 @@ trait SensorIntegrator extends ManagedResource {
    * @return the MQTT sensor input that has been created
    */
   def addSensorInput(sensorInput: SensorInput): Unit
-}
\ No newline at end of file
+
+  /**
+   * Keep a snapshot of the sensed entity model in a file so that sensed values
+   * and locations survive a restart.
+   *
+   * <p>
+   * This must be set before the integrator is started.
+   *
+   * @param snapshotFile
+   *      the file to keep the snapshot in
+   */
+  def setModelSnapshotFile(snapshotFile: File): Unit
+
+  /**
+   * Set how often the sensed entity model is checked for sensors and sensor
+   * channels which have gone offline.
+   *
+   * <p>
+   * This is how late an offline transition can be noticed. Only models whose
+   * offline deadlines have passed are checked, so checks can be frequent.
+   *
+   * <p>
+   * This must be set before the integrator is started.
+   *
+   * @param frequency
+   *      the frequency of the checks
+   */
+  def setModelCheckFrequency(frequency: TimeFrequency): Unit
+}
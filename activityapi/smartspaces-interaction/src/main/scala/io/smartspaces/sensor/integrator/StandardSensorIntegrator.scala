@@ -16,6 +16,8 @@
 
 package io.smartspaces.sensor.integrator
 
+import java.io.File
+
 import io.smartspaces.data.entity.StandardValueRegistry
 import io.smartspaces.data.entity.ValueRegistry
 import io.smartspaces.logging.ExtendedLog
@@ -29,6 +31,7 @@ import io.smartspaces.sensor.messaging.messages.StandardSensorData
 import io.smartspaces.sensor.model.CompleteSensedEntityModel
 import io.smartspaces.sensor.model.SensorEntityModel
 import io.smartspaces.sensor.model.StandardCompleteSensedEntityModel
+import io.smartspaces.sensor.model.snapshot.StandardSensedEntityModelSnapshotter
 import io.smartspaces.sensor.services.domain.SensorCommonRegistry
 import io.smartspaces.sensor.services.domain.SensorInstanceRegistry
 import io.smartspaces.sensor.services.processing.SensedEntitySensorHandler
@@ -61,6 +64,19 @@ import io.smartspaces.system.SmartSpacesEnvironment
 import io.smartspaces.time.TimeFrequency
 import io.smartspaces.util.data.dynamic.DynamicObject
 
+/**
+ * Constants for the standard sensor integrator.
+ *
+ * @author Keith M. Hughes
+ */
+object StandardSensorIntegrator {
+
+  /**
+   * The default frequency for checking the model for sensors which have gone offline.
+   */
+  val MODEL_CHECK_FREQUENCY_DEFAULT = TimeFrequency.timesPerSecond(4.0)
+}
+
 /**
  * The sensor integration layer.
  *
@@ -130,6 +146,16 @@ class StandardSensorIntegrator(
    */
   val unknownMarkerHandler: UnknownMarkerHandler = new StandardUnknownMarkerHandler(eventEmitter)
 
+  /**
+   * The file to keep the model snapshot in, if any.
+   */
+  private var modelSnapshotFile: Option[File] = None
+
+  /**
+   * How often the model is checked for sensors which have gone offline.
+   */
+  private var modelCheckFrequency = StandardSensorIntegrator.MODEL_CHECK_FREQUENCY_DEFAULT
+
   /**
    * The sensor processor for the integrator
    */
@@ -162,6 +188,14 @@ class StandardSensorIntegrator(
 
   override def completeSensedEntityModel: CompleteSensedEntityModel = _completeSensedEntityModel
 
+  override def setModelSnapshotFile(snapshotFile: File): Unit = {
+    modelSnapshotFile = Option(snapshotFile)
+  }
+
+  override def setModelCheckFrequency(frequency: TimeFrequency): Unit = {
+    modelCheckFrequency = frequency
+  }
+
   override def onStartup(): Unit = {
     sensorValueProcessorRegistry = new StandardSensorValueProcessorRegistry(log)
     sensorValueProcessorRegistry.addSensorValueProcessor(new StandardBleProximitySensorValueProcessor())
@@ -197,6 +231,15 @@ class StandardSensorIntegrator(
         sensorValueProcessorRegistry, _sensorCommonRegistry, _sensorInstanceRegistry, eventEmitter, log, spaceEnvironment)
     _completeSensedEntityModel.prepare()
 
+    // The snapshot must be restored before the sensor processor starts taking input.
+    modelSnapshotFile.foreach { (snapshotFile) =>
+      val snapshotter = new StandardSensedEntityModelSnapshotter(
+        completeSensedEntityModel, _valueRegistry, snapshotFile, spaceEnvironment, log)
+      snapshotter.restoreSnapshot()
+
+      managedScope.managedResources.addResource(snapshotter)
+    }
+
     _queryProcessor = new StandardSensedEntityModelQueryProcessor(completeSensedEntityModel, unknownMarkerHandler, unknownSensedEntityHandler)
 
     sensorProcessor = new StandardSensorProcessor(managedScope, log)
@@ -228,7 +271,7 @@ class StandardSensorIntegrator(
       override def run(): Unit = {
         completeSensedEntityModel.checkModels()
       }
-    }, TimeFrequency.timesPerHour(30.0), false)
+    }, modelCheckFrequency, false)
   }
 
   override def addMqttSensorInput(mqttEndpoint: MqttCommunicationEndpoint): MqttSensorInput = {
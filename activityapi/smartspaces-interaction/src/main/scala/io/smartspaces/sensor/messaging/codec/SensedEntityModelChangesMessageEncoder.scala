@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.messaging.codec
+
+import java.nio.charset.StandardCharsets
+
+import io.smartspaces.data.entity.CategoricalValueInstance
+import io.smartspaces.messaging.codec.MessageEncoder
+import io.smartspaces.messaging.dynamic.SmartSpacesMessages
+import io.smartspaces.sensor.messaging.messages.SensorSmartSpacesMessages
+import io.smartspaces.sensor.model.CompleteSensedEntityModel
+import io.smartspaces.sensor.model.SensorChannelEntityModel
+import io.smartspaces.util.data.dynamic.DynamicObjectBuilder
+import io.smartspaces.util.data.dynamic.StandardDynamicObjectBuilder
+import io.smartspaces.util.data.mapper.StandardJsonDataMapper
+
+/**
+ * A message encoder for the changes in a sensed entity model since a given
+ * model version.
+ *
+ * <p>
+ * Only sensors, sensor channels, physical spaces and people which have changed
+ * since the version are encoded, along with the occupancy events since then.
+ * A full snapshot of the model is encoded instead if the changes cannot be
+ * worked out, such as when the epoch is from an earlier run of the model or
+ * the occupancy events are no longer kept. The message says which it is and
+ * gives the epoch and version to ask for the next time.
+ *
+ * <p>
+ * The model should be encoded inside a read transaction so that the version
+ * matches the entities.
+ *
+ * @author Keith M. Hughes
+ */
+class SensedEntityModelChangesMessageEncoder(private val builder: DynamicObjectBuilder,
+    private val modelEpoch: Long, private val modelVersion: Long,
+    private val statistics: Option[SensedEntityModelChangesStatistics])
+    extends MessageEncoder[CompleteSensedEntityModel, DynamicObjectBuilder] {
+
+  def this(messageType: String, modelEpoch: Long, modelVersion: Long,
+      statistics: Option[SensedEntityModelChangesStatistics]) = {
+    this(new StandardDynamicObjectBuilder(), modelEpoch, modelVersion, statistics)
+
+    builder.setProperty(SmartSpacesMessages.MESSAGE_ENVELOPE_TYPE, messageType)
+    builder.setProperty(SmartSpacesMessages.MESSAGE_ENVELOPE_RESULT, SmartSpacesMessages.MESSAGE_ENVELOPE_VALUE_RESULT_SUCCESS)
+    builder.newObject(SmartSpacesMessages.MESSAGE_ENVELOPE_DATA)
+  }
+
+  override def encode(model: CompleteSensedEntityModel): DynamicObjectBuilder = {
+    val currentVersion = model.modelVersion
+
+    val occupancyEvents = if (modelEpoch == model.modelEpoch && modelVersion <= currentVersion) {
+      model.getOccupancyEventsSince(modelVersion)
+    } else {
+      None
+    }
+    val full = occupancyEvents.isEmpty
+
+    // Versions start at 1, so everything has changed since 0.
+    val since = if (full) 0l else modelVersion
+
+    builder.setProperty(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_MODEL_EPOCH, model.modelEpoch)
+    builder.setProperty(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_MODEL_VERSION, currentVersion)
+    builder.setProperty(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_FULL, full)
+
+    encodeSensors(model, since)
+    encodePhysicalSpaces(model, since)
+    encodePeople(model, since)
+
+    occupancyEvents.foreach { events =>
+      builder.newArray(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_OCCUPANCY_EVENTS)
+      events.foreach { event =>
+        builder.newObject()
+        StandardPhysicalSpaceOccupancyEventIncrementalMessageEncoder.encode(event, builder)
+        builder.up()
+      }
+      builder.up()
+    }
+
+    statistics.foreach { (s) =>
+      val size = StandardJsonDataMapper.INSTANCE.toString(builder.toMap()).getBytes(StandardCharsets.UTF_8).length
+      s.recordResponse(full, size)
+    }
+
+    builder
+  }
+
+  /**
+   * Encode all sensors which have changed, along with their changed channels.
+   *
+   * @param model
+   *          the complete model
+   * @param since
+   *          the model version to look for changes after
+   */
+  private def encodeSensors(model: CompleteSensedEntityModel, since: Long): Unit = {
+    builder.newArray(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_SENSORS)
+
+    model.getAllSensorEntityModels().foreach { sensor =>
+      val channels = sensor.getAllSensorChannelModels().filter(_.modelVersionLastChange > since)
+      if (sensor.modelVersionLastChange > since || channels.nonEmpty) {
+        builder.newObject()
+        StandardSensorIncrementalMessageEncoder.encode(sensor, builder)
+
+        builder.newArray(SensorSmartSpacesMessages.MESSAGE_ENTITY_SENSOR_CHANNELS)
+        channels.foreach { channel =>
+          builder.newObject()
+          encodeSensorChannel(channel)
+          builder.up()
+        }
+        builder.up()
+
+        builder.up()
+      }
+    }
+
+    builder.up()
+  }
+
+  /**
+   * Encode a sensor channel.
+   *
+   * @param channel
+   *          the channel model
+   */
+  private def encodeSensorChannel(channel: SensorChannelEntityModel): Unit = {
+    builder.setProperty(SensorSmartSpacesMessages.MESSAGE_ENTITY_SENSOR_CHANNEL_ID, channel.sensorChannelDetail.channelId)
+    builder.setProperty(SensorSmartSpacesMessages.MESSAGE_ENTITY_SENSOR_ONLINE, channel.online)
+
+    channel.timestampLastStateUpdate.foreach { (date) =>
+      builder.setProperty(SensorSmartSpacesMessages.MESSAGE_ENTITY_SENSOR_STATE_UPDATE_LAST, date)
+    }
+
+    val sensedValue = channel.mostRecentSensedValue
+    if (sensedValue != null) {
+      val value = sensedValue.value match {
+        case categorical: CategoricalValueInstance => categorical.label
+        case other => other
+      }
+      builder.setProperty(SensorSmartSpacesMessages.MESSAGE_ENTITY_SENSOR_CHANNEL_VALUE, value)
+      builder.setProperty(SensorSmartSpacesMessages.MESSAGE_ENTITY_SENSOR_CHANNEL_TIMESTAMP_MEASUREMENT,
+        sensedValue.timestampMeasurement)
+
+      if (sensedValue.restored) {
+        builder.setProperty(SensorSmartSpacesMessages.MESSAGE_ENTITY_SENSOR_CHANNEL_RESTORED, true)
+        builder.setProperty(SensorSmartSpacesMessages.MESSAGE_ENTITY_SENSOR_CHANNEL_STALE, sensedValue.stale)
+      }
+    }
+  }
+
+  /**
+   * Encode all physical spaces which have changed.
+   *
+   * @param model
+   *          the complete model
+   * @param since
+   *          the model version to look for changes after
+   */
+  private def encodePhysicalSpaces(model: CompleteSensedEntityModel, since: Long): Unit = {
+    builder.newArray(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_PHYSICAL_SPACES)
+
+    model.getAllPhysicalSpaceSensedEntityModels().filter(_.modelVersionLastChange > since).foreach { physicalSpace =>
+      builder.newObject()
+      StandardPhysicalSpaceIncrementalMessageEncoder.encode(physicalSpace, builder)
+
+      builder.newArray(SensorSmartSpacesMessages.MESSAGE_ENTITY_PHYSICAL_SPACE_OCCUPANTS)
+      physicalSpace.getOccupants().foreach { (occupant) =>
+        builder.add(occupant.sensedEntityDescription.externalId)
+      }
+      builder.up()
+
+      builder.up()
+    }
+
+    builder.up()
+  }
+
+  /**
+   * Encode all people who have changed.
+   *
+   * @param model
+   *          the complete model
+   * @param since
+   *          the model version to look for changes after
+   */
+  private def encodePeople(model: CompleteSensedEntityModel, since: Long): Unit = {
+    builder.newArray(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_PEOPLE)
+
+    model.getAllPersonSensedEntityModels().filter(_.modelVersionLastChange > since).foreach { person =>
+      builder.newObject()
+      StandardPersonIncrementalMessageEncoder.encode(person, builder)
+
+      val location = person.physicalSpaceLocation
+      if (location != null) {
+        builder.setProperty(SensorSmartSpacesMessages.MESSAGE_ENTITY_PERSON_LOCATION, location.sensedEntityDescription.externalId)
+      }
+      builder.setProperty(SensorSmartSpacesMessages.MESSAGE_ENTITY_PERSON_LOCATION_TIMESTAMP, person.physicalSpaceLocationTimestamp)
+
+      builder.up()
+    }
+
+    builder.up()
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.messaging.codec
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Counts and sizes of the model changes responses sent to clients.
+ *
+ * <p>
+ * Sizes are the number of bytes in the JSON form of the response.
+ *
+ * @author Keith M. Hughes
+ */
+class SensedEntityModelChangesStatistics {
+
+  /**
+   * The number of responses which only had changes.
+   */
+  private val _deltaResponseCount = new AtomicLong
+
+  /**
+   * The total size of the responses which only had changes.
+   */
+  private val _deltaResponseBytes = new AtomicLong
+
+  /**
+   * The number of responses which were full snapshots.
+   */
+  private val _fullResponseCount = new AtomicLong
+
+  /**
+   * The total size of the responses which were full snapshots.
+   */
+  private val _fullResponseBytes = new AtomicLong
+
+  /**
+   * Record a response.
+   *
+   * @param full
+   *          {@code true} if the response was a full snapshot
+   * @param size
+   *          the size of the response, in bytes
+   */
+  def recordResponse(full: Boolean, size: Long): Unit = {
+    if (full) {
+      _fullResponseCount.incrementAndGet()
+      _fullResponseBytes.addAndGet(size)
+    } else {
+      _deltaResponseCount.incrementAndGet()
+      _deltaResponseBytes.addAndGet(size)
+    }
+  }
+
+  /**
+   * The number of responses which only had changes.
+   */
+  def deltaResponseCount: Long = _deltaResponseCount.get
+
+  /**
+   * The total size of the responses which only had changes, in bytes.
+   */
+  def deltaResponseBytes: Long = _deltaResponseBytes.get
+
+  /**
+   * The number of responses which were full snapshots.
+   */
+  def fullResponseCount: Long = _fullResponseCount.get
+
+  /**
+   * The total size of the responses which were full snapshots, in bytes.
+   */
+  def fullResponseBytes: Long = _fullResponseBytes.get
+
+  override def toString(): String = {
+    s"SensedEntityModelChangesStatistics[deltaResponseCount=${deltaResponseCount}, deltaResponseBytes=${deltaResponseBytes}, fullResponseCount=${fullResponseCount}, fullResponseBytes=${fullResponseBytes}]"
+  }
+}
@@ -69,4 +69,87 @@ object SensorSmartSpacesMessages {
    * The sensor message field for the location.
    */
   val MESSAGE_ENTITY_SENSOR_LOCATION = "location"
+
+  /**
+   * The sensor message field for the sensor channels.
+   */
+  val MESSAGE_ENTITY_SENSOR_CHANNELS = "channels"
+
+  /**
+   * The sensor channel message field for the channel ID.
+   */
+  val MESSAGE_ENTITY_SENSOR_CHANNEL_ID = "channelId"
+
+  /**
+   * The sensor channel message field for the most recent value.
+   */
+  val MESSAGE_ENTITY_SENSOR_CHANNEL_VALUE = "value"
+
+  /**
+   * The sensor channel message field for when the most recent value was measured.
+   */
+  val MESSAGE_ENTITY_SENSOR_CHANNEL_TIMESTAMP_MEASUREMENT = "timestampMeasurement"
+
+  /**
+   * The sensor channel message field which is {@code true} if the most recent
+   * value was restored from a snapshot of the model.
+   */
+  val MESSAGE_ENTITY_SENSOR_CHANNEL_RESTORED = "restored"
+
+  /**
+   * The sensor channel message field which is {@code true} if the most recent
+   * value was already stale when it was restored.
+   */
+  val MESSAGE_ENTITY_SENSOR_CHANNEL_STALE = "stale"
+
+  /**
+   * The physical space message field for the external IDs of the occupants.
+   */
+  val MESSAGE_ENTITY_PHYSICAL_SPACE_OCCUPANTS = "occupants"
+
+  /**
+   * The person message field for the external ID of the physical space the person is in.
+   */
+  val MESSAGE_ENTITY_PERSON_LOCATION = "location"
+
+  /**
+   * The person message field for when the person last changed location.
+   */
+  val MESSAGE_ENTITY_PERSON_LOCATION_TIMESTAMP = "locationTimestamp"
+
+  /**
+   * The model changes message field for the model epoch.
+   */
+  val MESSAGE_MODEL_CHANGES_MODEL_EPOCH = "modelEpoch"
+
+  /**
+   * The model changes message field for the model version.
+   */
+  val MESSAGE_MODEL_CHANGES_MODEL_VERSION = "modelVersion"
+
+  /**
+   * The model changes message field which is {@code true} if the message is a
+   * full snapshot rather than only the changes.
+   */
+  val MESSAGE_MODEL_CHANGES_FULL = "full"
+
+  /**
+   * The model changes message field for the sensors.
+   */
+  val MESSAGE_MODEL_CHANGES_SENSORS = "sensors"
+
+  /**
+   * The model changes message field for the physical spaces.
+   */
+  val MESSAGE_MODEL_CHANGES_PHYSICAL_SPACES = "physicalSpaces"
+
+  /**
+   * The model changes message field for the people.
+   */
+  val MESSAGE_MODEL_CHANGES_PEOPLE = "people"
+
+  /**
+   * The model changes message field for the occupancy events.
+   */
+  val MESSAGE_MODEL_CHANGES_OCCUPANCY_EVENTS = "occupancyEvents"
 }
\ No newline at end of file
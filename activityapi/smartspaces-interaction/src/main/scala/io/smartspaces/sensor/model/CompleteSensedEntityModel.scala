@@ -17,12 +17,16 @@
 package io.smartspaces.sensor.model
 
 import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.monitor.expectation.time.HeartbeatMonitorable
 import io.smartspaces.sensor.domain.SensedEntityDescription
 import io.smartspaces.sensor.domain.DataSourceAcquisitionModeCategoricalValueInstances
 import io.smartspaces.sensor.domain.SensorEntityDescription
 import io.smartspaces.sensor.domain.SensorSensedEntityAssociationDescription
+import io.smartspaces.sensor.event.PhysicalSpaceOccupancyEvent
 import io.smartspaces.sensor.services.domain.SensorInstanceRegistry
 import io.smartspaces.sensor.services.processing.SensorProcessingEventEmitter
+import io.smartspaces.sensor.value.entity.PresenceCategoricalValueInstances.PresenceCategoricalValueInstance
+import io.smartspaces.sensor.model.window.SensedValueWindowAggregate
 
 /**
  * A collection of sensed entity models.
@@ -136,6 +140,24 @@ trait CompleteSensedEntityModel {
    */
   def getAllSensorChannelEntityModelsForMeasurementTypeExternalId(measurementTypeExternalId: String): Iterable[SensorChannelEntityModel]
 
+  /**
+   * Get the aggregate of a window on a sensor channel.
+   *
+   * @param sensorExternalId
+   *          the external ID of the sensor
+   * @param sensorChannelId
+   *          the ID of the channel on the sensor
+   * @param windowName
+   *          the name of the window on the channel
+   * @param currentTime
+   *          the current time
+   *
+   * @return the aggregate, or {@code None} if there is no such window or the
+   *         window has no values
+   */
+  def getSensorChannelWindowAggregate(sensorExternalId: String, sensorChannelId: String, windowName: String,
+      currentTime: Long): Option[SensedValueWindowAggregate]
+
   /**
    * Get all sensor entity models in the collection.
    *
@@ -246,9 +268,79 @@ trait CompleteSensedEntityModel {
 
   /**
    * Check all models for things like going offline.
+   *
+   * <p>
+   * Only the sensor and sensor channel models whose offline deadlines have
+   * passed are checked, so this can be called often.
    */
   def checkModels(): Unit
 
+  /**
+   * Arm a sensor or sensor channel model with its current offline deadline.
+   *
+   * <p>
+   * Models should call this whenever they are updated.
+   *
+   * @param model
+   *          the model
+   */
+  def armOfflineDeadline(model: HeartbeatMonitorable): Unit
+
+  /**
+   * The epoch of the model versions.
+   *
+   * <p>
+   * A new epoch is picked every time the collection is created, so a version
+   * from an earlier run is never mistaken for a current one.
+   */
+  def modelEpoch: Long
+
+  /**
+   * The current version of the collection.
+   *
+   * <p>
+   * Every change to an entity model, and every occupancy event, gets a new
+   * version, so entities with a [[VersionedEntityModel.modelVersionLastChange]]
+   * after a version are the ones which have changed since then.
+   */
+  def modelVersion: Long
+
+  /**
+   * Get a new version for a change in the collection.
+   *
+   * @return the new version
+   */
+  def nextModelVersion(): Long
+
+  /**
+   * Record that a person entered or exited a physical space.
+   *
+   * @param physicalSpace
+   *          the physical space
+   * @param person
+   *          the person who entered or exited
+   * @param timestamp
+   *          the time of the occupancy change
+   * @param presence
+   *          whether the person is now present in the space
+   */
+  def recordOccupancyEvent(physicalSpace: PhysicalSpaceSensedEntityModel, person: PersonSensedEntityModel,
+      timestamp: Long, presence: PresenceCategoricalValueInstance): Unit
+
+  /**
+   * Get all occupancy events recorded after a given model version.
+   *
+   * <p>
+   * Only a limited number of events are kept.
+   *
+   * @param modelVersion
+   *          the model version
+   *
+   * @return the events in the order they were recorded, or [[None]] if events
+   *         after the version are no longer kept
+   */
+  def getOccupancyEventsSince(modelVersion: Long): Option[Iterable[PhysicalSpaceOccupancyEvent]]
+
   /**
    * The sensor registry for the collection.
    */
@@ -63,6 +63,19 @@ trait PhysicalSpaceSensedEntityModel extends SensedEntityModel {
   def occupantExited(person: PersonSensedEntityModel,
       measurementTimestamp: Long, sensorMessageReceivedTimestamp: Long): PhysicalSpaceSensedEntityModel
 
+  /**
+   * Restore an occupant from a snapshot of the model.
+   *
+   * <p>
+   * This method will update the person's location but emits no events.
+   *
+   * @param person
+   *          the person in the space
+   * @param measurementTimestamp
+   *          the time the occupant entered the space
+   */
+  def restoreOccupant(person: PersonSensedEntityModel, measurementTimestamp: Long): Unit
+
   /**
    * Get the current occupants of the space.
    *
@@ -23,7 +23,7 @@ import io.smartspaces.sensor.domain.SensedEntityDescription
  *
  * @author Keith M. Hughes
  */
-trait SensedEntityModel  {
+trait SensedEntityModel extends VersionedEntityModel {
   
   type SensedEntityDescriptionType <: SensedEntityDescription
 
@@ -56,4 +56,18 @@ trait SensedValue[+T <: Any] {
    * Additional value from the sensor, if any.
    */
   def additional: Option[Any]
+
+  /**
+   * Was the value restored from a snapshot of the model rather than sent by
+   * the sensor since the model started?
+   */
+  def restored: Boolean = false
+
+  /**
+   * Was the value already too old to be trusted when it was restored?
+   *
+   * <p>
+   * Only restored values can be stale.
+   */
+  def stale: Boolean = false
 }
@@ -22,14 +22,15 @@ import io.smartspaces.sensor.domain.SensorChannelDetailDescription
 import io.smartspaces.sensor.event.SensorChannelOfflineEvent
 import io.smartspaces.sensor.event.SensorChannelOnlineEvent
 import io.smartspaces.sensor.services.processing.value.SensorValueProcessor
-import io.smartspaces.sensor.model.rules.SensorChannelSensedValueRuleTrigger
+import io.smartspaces.sensor.model.rules.SensorChannelSensedValueRuleEvaluator
+import io.smartspaces.sensor.model.window.SensedValueWindow
 
 /**
  * The entity model of a sensor channel and the sensed entity the channel is associated with.
  *
  * @author Keith M. Hughes
  */
-trait SensorChannelEntityModel extends HeartbeatMonitorable {
+trait SensorChannelEntityModel extends HeartbeatMonitorable with VersionedEntityModel {
 
   /**
    * The detail of the sensor channel.
@@ -61,18 +62,73 @@ trait SensorChannelEntityModel extends HeartbeatMonitorable {
    */
   def updateSensedValue[T <: Any](value: SensedValue[T], timestampUpdate: Long): Unit
 
+  /**
+   * Restore the most recent sensed value from a snapshot of the model.
+   *
+   * <p>
+   * The channel is not considered online, and no events or rules are
+   * triggered.
+   *
+   * @param value
+   *          the restored value
+   * @param timestampLastStateUpdate
+   *          the time of the last state update, if any
+   */
+  def restoreSensedValue(value: SensedValue[Any], timestampLastStateUpdate: Option[Long]): Unit
+
   /**
    * The most recent sensed value for this channel.
    */
   def mostRecentSensedValue: SensedValue[Any]
 
   /**
-   * Add in a new rule trigger for the channel.
+   * Add in a new rule evaluator for the channel.
+   *
+   * @param evaluator
+   *        the rule evaluator, such as a rule trigger
+   */
+  def addSensorChannelSensedValueRuleEvaluator(evaluator: SensorChannelSensedValueRuleEvaluator): Unit
+
+  /**
+   * Remove a rule evaluator from the channel.
+   *
+   * <p>
+   * Does nothing if the evaluator was not added.
+   *
+   * @param evaluator
+   *        the rule evaluator
+   */
+  def removeSensorChannelSensedValueRuleEvaluator(evaluator: SensorChannelSensedValueRuleEvaluator): Unit
+
+  /**
+   * Add a window which aggregates the sensed values of the channel.
+   *
+   * <p>
+   * Windows are updated before any rule evaluators, so rules see the new
+   * value in the window. A window replaces any window with the same name.
+   *
+   * @param window
+   *        the window
+   */
+  def addSensedValueWindow(window: SensedValueWindow): Unit
+
+  /**
+   * Remove a window from the channel.
+   *
+   * @param windowName
+   *        the name of the window
+   */
+  def removeSensedValueWindow(windowName: String): Unit
+
+  /**
+   * Get a window of the channel.
+   *
+   * @param windowName
+   *        the name of the window
    *
-   * @param trigger
-   *        the rule trigger
+   * @return the window, if there is one with the name
    */
-  def addSensorChannelSensedValueRuleTrigger(trigger: SensorChannelSensedValueRuleTrigger): Unit
+  def getSensedValueWindow(windowName: String): Option[SensedValueWindow]
 }
 
 /*
@@ -86,7 +142,8 @@ class SimpleSensorChannelEntityModel(
   override val sensedEntityModel: SensedEntityModel,
   override val sensorValueProcessor: SensorValueProcessor,
   val allModels: CompleteSensedEntityModel,
-  override val timestampItemCreation: Long) extends SensorChannelEntityModel with StandardHeartbeatMonitorable {
+  override val timestampItemCreation: Long) extends SensorChannelEntityModel with StandardHeartbeatMonitorable
+    with StandardVersionedEntityModel {
 
   /**
    * The most recent sensed value for this channel.
@@ -94,12 +151,41 @@ class SimpleSensorChannelEntityModel(
   private var _mostRecentSensedValue: SensedValue[Any] = _
 
   /**
-   * The rule triggers for this channel.
+   * The rule evaluators for this channel.
+   */
+  @volatile private var ruleEvaluators = List[SensorChannelSensedValueRuleEvaluator]()
+
+  /**
+   * The windows for this channel, keyed by name.
    */
-  private var ruleTriggers = List[SensorChannelSensedValueRuleTrigger]()
+  @volatile private var windows = Map[String, SensedValueWindow]()
 
-  override def addSensorChannelSensedValueRuleTrigger(trigger: SensorChannelSensedValueRuleTrigger): Unit = {
-    ruleTriggers = trigger :: ruleTriggers
+  override def addSensorChannelSensedValueRuleEvaluator(evaluator: SensorChannelSensedValueRuleEvaluator): Unit = {
+    synchronized {
+      ruleEvaluators = evaluator :: ruleEvaluators
+    }
+  }
+
+  override def removeSensorChannelSensedValueRuleEvaluator(evaluator: SensorChannelSensedValueRuleEvaluator): Unit = {
+    synchronized {
+      ruleEvaluators = ruleEvaluators.filter(_ != evaluator)
+    }
+  }
+
+  override def addSensedValueWindow(window: SensedValueWindow): Unit = {
+    synchronized {
+      windows = windows + (window.windowName -> window)
+    }
+  }
+
+  override def removeSensedValueWindow(windowName: String): Unit = {
+    synchronized {
+      windows = windows - windowName
+    }
+  }
+
+  override def getSensedValueWindow(windowName: String): Option[SensedValueWindow] = {
+    windows.get(windowName)
   }
 
   override def updateSensedValue[T <: Any](value: SensedValue[T], timestampUpdate: Long): Unit = {
@@ -109,11 +195,29 @@ class SimpleSensorChannelEntityModel(
 
     // ??? Update in time between channel and the sensor and sensed sending potential online events.
     stateUpdated(timestampUpdate)
+    modelChanged()
+    allModels.armOfflineDeadline(this)
 
     sensorModel.updateSensedValue(value, timestampUpdate)
     sensedEntityModel.updateSensedValue(value, timestampUpdate)
-    
-    ruleTriggers.foreach(_.updateValue(value))
+
+    windows.values.foreach(_.updateValue(value))
+    ruleEvaluators.foreach(_.updateValue(value))
+  }
+
+  override def restoreSensedValue(value: SensedValue[Any], timestampLastStateUpdate: Option[Long]): Unit = {
+    synchronized {
+      _mostRecentSensedValue = value
+      _timestampLastStateUpdate = timestampLastStateUpdate
+    }
+
+    allModels.armOfflineDeadline(this)
+  }
+
+  override def updateHeartbeat(timestamp: Long): Unit = {
+    super.updateHeartbeat(timestamp)
+
+    allModels.armOfflineDeadline(this)
   }
 
   override def mostRecentSensedValue: SensedValue[Any] = {
@@ -127,10 +231,14 @@ class SimpleSensorChannelEntityModel(
   override def heartbeatUpdateTimeLimit: Option[Long] = sensorChannelDetail.heartbeatUpdateTimeLimit
 
   override def emitOnlineEvent(timestamp: Long): Unit = {
+    modelChanged()
+
     allModels.eventEmitter.broadcastSensorChannelOnlineEvent(new SensorChannelOnlineEvent(this, timestamp))
   }
 
   override def emitOfflineEvent(timestamp: Long): Unit = {
+    modelChanged()
+
     allModels.eventEmitter.broadcastSensorChannelOfflineEvent(new SensorChannelOfflineEvent(this, timestamp))
   }
 
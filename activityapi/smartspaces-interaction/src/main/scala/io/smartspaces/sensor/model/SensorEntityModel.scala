@@ -30,7 +30,7 @@ import io.smartspaces.sensor.domain.SensorEntityDescription
  *
  * @author Keith M. Hughes
  */
-trait SensorEntityModel extends HeartbeatMonitorable {
+trait SensorEntityModel extends HeartbeatMonitorable with VersionedEntityModel {
 
   /**
    * The sensor entity description for the model.
@@ -124,4 +124,17 @@ trait SensorEntityModel extends HeartbeatMonitorable {
    * 		      the timestamp of this update
    */
   def updateSensedValue[T <: Any](value: SensedValue[T], timestampUpdate: Long): Unit
+
+  /**
+   * Restore the update times from a snapshot of the model.
+   *
+   * <p>
+   * The sensor is not considered online and no events are emitted.
+   *
+   * @param timestampLastStateUpdate
+   *          the time of the last state update, if any
+   * @param timestampLastHeartbeatUpdate
+   *          the time of the last heartbeat update, if any
+   */
+  def restoreUpdateTimes(timestampLastStateUpdate: Option[Long], timestampLastHeartbeatUpdate: Option[Long]): Unit
 }
\ No newline at end of file
@@ -28,7 +28,18 @@ class SimplePersonSensedEntityModel(
   override val allModels: CompleteSensedEntityModel) extends 
   PersonSensedEntityModel with BaseSensedEntityModel {
 
-  override var physicalSpaceLocation: PhysicalSpaceSensedEntityModel = null
+  /**
+   * The current physical location of the person.
+   */
+  private var _physicalSpaceLocation: PhysicalSpaceSensedEntityModel = null
+
+  override def physicalSpaceLocation: PhysicalSpaceSensedEntityModel = _physicalSpaceLocation
+
+  override def physicalSpaceLocation_=(location: PhysicalSpaceSensedEntityModel): Unit = {
+    _physicalSpaceLocation = location
+
+    modelChanged()
+  }
 
   override var physicalSpaceLocationTimestamp: Long = 0l
 }
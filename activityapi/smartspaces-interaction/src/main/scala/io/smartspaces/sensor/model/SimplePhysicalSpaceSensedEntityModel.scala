@@ -21,6 +21,7 @@ import scala.collection.mutable.Set
 
 import io.smartspaces.sensor.domain.PhysicalSpaceSensedEntityDescription
 import io.smartspaces.sensor.event.PhysicalSpaceOccupancyLiveEvent
+import io.smartspaces.sensor.value.entity.PresenceCategoricalValueInstances
 
 /**
  * A model of a physical space.
@@ -46,6 +47,9 @@ class SimplePhysicalSpaceSensedEntityModel(
       person.physicalSpaceLocation = this
       person.physicalSpaceLocationTimestamp = measurementTimestamp
 
+      modelChanged()
+      allModels.recordOccupancyEvent(this, person, measurementTimestamp, PresenceCategoricalValueInstances.PRESENT)
+
       val entered = scala.collection.immutable.HashSet(person)
 
       allModels.eventEmitter.broadcastOccupancyEvent(
@@ -63,6 +67,9 @@ class SimplePhysicalSpaceSensedEntityModel(
       person.physicalSpaceLocation = null
       person.physicalSpaceLocationTimestamp = measurementTimestamp
 
+      modelChanged()
+      allModels.recordOccupancyEvent(this, person, measurementTimestamp, PresenceCategoricalValueInstances.NOT_PRESENT)
+
       val exited = scala.collection.immutable.HashSet(person)
 
       allModels.eventEmitter.broadcastOccupancyEvent(
@@ -72,6 +79,13 @@ class SimplePhysicalSpaceSensedEntityModel(
     this
   }
 
+  override def restoreOccupant(person: PersonSensedEntityModel, measurementTimestamp: Long): Unit = {
+    occupants.add(person)
+
+    person.physicalSpaceLocation = this
+    person.physicalSpaceLocationTimestamp = measurementTimestamp
+  }
+
   override def getOccupants(): scala.collection.immutable.Set[PersonSensedEntityModel] = {
     occupants.toSet
   }
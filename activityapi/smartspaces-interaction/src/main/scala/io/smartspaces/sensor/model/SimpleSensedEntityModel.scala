@@ -26,7 +26,7 @@ import scala.collection.mutable.Map
  *
  * @author Keith M. Hughes
  */
-trait BaseSensedEntityModel extends SensedEntityModel {
+trait BaseSensedEntityModel extends SensedEntityModel with StandardVersionedEntityModel {
 
   /**
    * The sensor channel models indexed by the channel ID.
@@ -75,6 +75,8 @@ trait BaseSensedEntityModel extends SensedEntityModel {
   override def updateSensedValue[T <: Any](value: SensedValue[T], timestamp: Long): Unit = {
     // TODO(keith): Needs some sort of concurrency block
     _timestampLastStateUpdate = Some(timestamp)
+
+    modelChanged()
   }
   
   override def timestampLastStateUpdate: Option[Long] = {
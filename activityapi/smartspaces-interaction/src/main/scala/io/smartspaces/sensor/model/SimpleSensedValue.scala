@@ -39,6 +39,30 @@ class SimpleSensedValue[T <: Any](
   }
 }
 
+/**
+ * A sensed value restored from a snapshot of the model.
+ *
+ * @author Keith M. Hughes
+ */
+class RestoredSensedValue[T <: Any](
+    sensorChannel: SensorChannelEntityModel,
+    value: T,
+    additional: Option[Any],
+    measurementTimestamp: Long,
+    sensorMessageReceivedTimestamp: Long,
+    override val stale: Boolean) extends SimpleSensedValue[T](sensorChannel, value, additional, measurementTimestamp, sensorMessageReceivedTimestamp) {
+
+  override def restored: Boolean = true
+
+  override def toString() = {
+    "RestoredSensedValue [sensorChannel=" + sensorChannel +
+    ", value=" + value + ", additional=" + additional +
+    ", timestampMeasurement=" + timestampMeasurement +
+    ", timestampMeasurementReceived=" + timestampMeasurementReceived +
+    ", stale=" + stale + "]"
+  }
+}
+
 class SimpleNumericContinuousSensedValue(
     sensorChannel: SensorChannelEntityModel,
     value: Double,
@@ -34,7 +34,8 @@ class SimpleSensorEntityModel(
   override val sensorEntityDescription: SensorEntityDescription,
   override val acquisitionMode: DataSourceAcquisitionModeCategoricalValueInstances.DataSourceAcquisitionModeCategoricalValueInstance,
   override val allModels: CompleteSensedEntityModel,
-  override val timestampItemCreation: Long) extends SensorEntityModel with StandardHeartbeatMonitorable {
+  override val timestampItemCreation: Long) extends SensorEntityModel with StandardHeartbeatMonitorable
+    with StandardVersionedEntityModel {
 
   /**
    * The sensor channel models indexed by the channel ID.
@@ -81,13 +82,36 @@ class SimpleSensorEntityModel(
 
   override def updateSensedValue[T <: Any](value: SensedValue[T], timestamp: Long): Unit = {
     stateUpdated(timestamp)
+
+    modelChanged()
+    allModels.armOfflineDeadline(this)
+  }
+
+  override def restoreUpdateTimes(timestampLastStateUpdate: Option[Long], timestampLastHeartbeatUpdate: Option[Long]): Unit = {
+    synchronized {
+      _timestampLastStateUpdate = timestampLastStateUpdate
+      _timestampLastHeartbeatUpdate = timestampLastHeartbeatUpdate
+    }
+
+    allModels.armOfflineDeadline(this)
+  }
+
+  override def updateHeartbeat(timestamp: Long): Unit = {
+    super.updateHeartbeat(timestamp)
+
+    modelChanged()
+    allModels.armOfflineDeadline(this)
   }
 
   override def emitOnlineEvent(timestamp: Long): Unit = {
+    modelChanged()
+
     allModels.eventEmitter.broadcastSensorOnlineEvent(new SensorOnlineEvent(this, timestamp))
   }
 
   override def emitOfflineEvent(timestamp: Long): Unit = {
+    modelChanged()
+
     allModels.eventEmitter.broadcastSensorOfflineEvent(new SensorOfflineEvent(this, timestamp))
   }
 
@@ -16,24 +16,47 @@
 
 package io.smartspaces.sensor.model
 
+import java.util.ArrayDeque
+import java.util.concurrent.atomic.AtomicLong
 import java.util.concurrent.locks.ReentrantReadWriteLock
 
 import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.monitor.expectation.time.HeartbeatMonitorable
+import io.smartspaces.monitor.expectation.time.OfflineDeadlineQueue
 import io.smartspaces.sensor.domain.DataSourceAcquisitionModeCategoricalValueInstances
 import io.smartspaces.sensor.domain.PersonSensedEntityDescription
 import io.smartspaces.sensor.domain.PhysicalSpaceSensedEntityDescription
 import io.smartspaces.sensor.domain.SensedEntityDescription
 import io.smartspaces.sensor.domain.SensorEntityDescription
 import io.smartspaces.sensor.domain.SensorSensedEntityAssociationDescription
+import io.smartspaces.sensor.event.PhysicalSpaceOccupancyEvent
 import io.smartspaces.sensor.services.domain.SensorCommonRegistry
 import io.smartspaces.sensor.services.domain.SensorInstanceRegistry
 import io.smartspaces.sensor.services.processing.SensorProcessingEventEmitter
 import io.smartspaces.sensor.services.processing.value.SensorValueProcessorRegistry
+import io.smartspaces.sensor.value.entity.PresenceCategoricalValueInstances.PresenceCategoricalValueInstance
+import io.smartspaces.sensor.model.window.SensedValueWindowAggregate
 import io.smartspaces.system.SmartSpacesEnvironment
 
+import scala.collection.JavaConverters.asScalaIteratorConverter
+import scala.collection.mutable.ArrayBuffer
 import scala.collection.mutable.HashMap
+import scala.collection.mutable.HashSet
 import scala.collection.mutable.Map
 
+/**
+ * Constants for the standard collection of sensed entity models.
+ *
+ * @author Keith M. Hughes
+ */
+object StandardCompleteSensedEntityModel {
+
+  /**
+   * The default number of occupancy events kept for change queries.
+   */
+  val OCCUPANCY_EVENT_HISTORY_SIZE_DEFAULT = 1000
+}
+
 /**
  * A collection of sensed entity models.
  *
@@ -97,6 +120,33 @@ class StandardCompleteSensedEntityModel(
    */
   private val readWriteLock = new ReentrantReadWriteLock
 
+  override val modelEpoch: Long = System.currentTimeMillis()
+
+  /**
+   * The most recently handed out model version.
+   */
+  private val currentModelVersion = new AtomicLong
+
+  /**
+   * The most recent occupancy events, oldest first.
+   */
+  private val occupancyEvents = new ArrayDeque[PhysicalSpaceOccupancyEvent]
+
+  /**
+   * The model version of the most recent occupancy event which is no longer kept.
+   */
+  private var occupancyEventVersionDropped: Long = 0
+
+  /**
+   * The offline deadlines of the sensor and sensor channel models.
+   */
+  private val offlineDeadlines = new OfflineDeadlineQueue[HeartbeatMonitorable]
+
+  /**
+   * The number of occupancy events kept for change queries.
+   */
+  var occupancyEventHistorySize: Int = StandardCompleteSensedEntityModel.OCCUPANCY_EVENT_HISTORY_SIZE_DEFAULT
+
   override def prepare(): Unit = {
     createModelsFromDescriptions()
   }
@@ -134,6 +184,8 @@ class StandardCompleteSensedEntityModel(
   private[model] def registerSensorModel(model: SensorEntityModel): Unit = {
     idToSensorEntityModels.put(model.sensorEntityDescription.id, model)
     externalIdToSensorEntityModels.put(model.sensorEntityDescription.externalId, model)
+
+    offlineDeadlines.arm(model)
   }
 
   override def addNewSensedEntity(entityDescription: SensedEntityDescription): Unit = {
@@ -179,6 +231,8 @@ class StandardCompleteSensedEntityModel(
 
       sensorModel.get.addSensorChannelModel(channelModel)
       sensedModel.get.addSensorChannelModel(channelModel)
+
+      offlineDeadlines.arm(channelModel)
     } else {
       log.warn(s"could not find sensor value processor for measurement type ${sensedMeasurementType.externalId} for sensor association")
     }
@@ -214,6 +268,14 @@ class StandardCompleteSensedEntityModel(
     externalIdToSensorEntityModels.values.flatMap(_.getMeasurementTypeChannels(measurementTypeExternalId))
   }
 
+  override def getSensorChannelWindowAggregate(sensorExternalId: String, sensorChannelId: String,
+      windowName: String, currentTime: Long): Option[SensedValueWindowAggregate] = {
+    getSensorEntityModelByExternalId(sensorExternalId).
+      flatMap(_.getSensorChannelEntityModel(sensorChannelId)).
+      flatMap(_.getSensedValueWindow(windowName)).
+      flatMap(_.aggregate(currentTime))
+  }
+
   override def getSensedEntityModelById(id: String): Option[SensedEntityModel] = {
     idToSensedEntityModels.get(id)
   }
@@ -262,26 +324,108 @@ class StandardCompleteSensedEntityModel(
   }
 
   override def checkModels(): Unit = {
-    doVoidWriteTransaction { () =>
-      performModelCheck()
-    }
+    // Finding the expired deadlines does not lock the complete model, only the
+    // transitions themselves do.
+    performModelCheck()
   }
 
   /**
    * Perform all model checks.
+   *
+   * <p>
+   * Only models whose offline deadlines have passed are checked. The channels
+   * of a sensor which has just gone offline are left for the next check.
+   *
+   * <p>
+   * Each transition, along with its offline event, happens in a write
+   * transaction, so readers never see a model version without the change that
+   * produced it.
    */
   private[model] def performModelCheck(): Unit = {
     val currentTime = spaceEnvironment.getTimeProvider.getCurrentTime
 
-    log.debug(s"Performing sensor model check at ${currentTime}")
+    val expired = offlineDeadlines.pollExpired(currentTime)
+    if (expired.isEmpty) {
+      return
+    }
+
+    log.debug(s"Performing sensor model check at ${currentTime} for ${expired.size} models")
 
-    getAllSensorEntityModels().filter(_.sensorEntityDescription.active).foreach { sensor =>
-      val sensorOffline = sensor.checkIfOfflineTransition(currentTime)
+    // Inactive models are dropped until they are next updated.
+    val sensorsGoneOffline = new HashSet[SensorEntityModel]
+    val channels = new ArrayBuffer[SensorChannelEntityModel]
+    expired.foreach {
+      case sensor: SensorEntityModel =>
+        if (sensor.sensorEntityDescription.active) {
+          if (checkIfOfflineTransition(sensor, currentTime)) {
+            sensorsGoneOffline += sensor
+          }
 
-      if (!sensorOffline) {
-        sensor.getAllSensorChannelModels().foreach { channel =>
-          channel.checkIfOfflineTransition(currentTime)
+          offlineDeadlines.arm(sensor)
         }
+      case channel: SensorChannelEntityModel =>
+        channels += channel
+    }
+
+    channels.filter(_.sensorModel.sensorEntityDescription.active).foreach { channel =>
+      if (!sensorsGoneOffline.contains(channel.sensorModel)) {
+        checkIfOfflineTransition(channel, currentTime)
+      }
+
+      offlineDeadlines.arm(channel)
+    }
+  }
+
+  /**
+   * Check if a model has gone offline in a write transaction.
+   *
+   * @param model
+   *        the model to check
+   * @param currentTime
+   *        the current time
+   *
+   * @return {@code true} if the model has gone offline
+   */
+  private def checkIfOfflineTransition(model: HeartbeatMonitorable, currentTime: Long): Boolean = {
+    doWriteTransaction(() => model.checkIfOfflineTransition(currentTime))
+  }
+
+  override def armOfflineDeadline(model: HeartbeatMonitorable): Unit = {
+    offlineDeadlines.arm(model)
+  }
+
+  override def modelVersion: Long = currentModelVersion.get
+
+  override def nextModelVersion(): Long = {
+    currentModelVersion.incrementAndGet()
+  }
+
+  override def recordOccupancyEvent(physicalSpace: PhysicalSpaceSensedEntityModel, person: PersonSensedEntityModel,
+      timestamp: Long, presence: PresenceCategoricalValueInstance): Unit = {
+    occupancyEvents.synchronized {
+      val event = new PhysicalSpaceOccupancyEvent(physicalSpace.sensedEntityDescription.externalId,
+        person.sensedEntityDescription.externalId, timestamp, presence, nextModelVersion())
+      occupancyEvents.addLast(event)
+
+      while (occupancyEvents.size > occupancyEventHistorySize) {
+        occupancyEventVersionDropped = occupancyEvents.removeFirst().modelVersion
+      }
+    }
+  }
+
+  override def getOccupancyEventsSince(modelVersion: Long): Option[Iterable[PhysicalSpaceOccupancyEvent]] = {
+    occupancyEvents.synchronized {
+      if (modelVersion < occupancyEventVersionDropped) {
+        None
+      } else {
+        // Walk back from the newest event, since callers usually want only the last few.
+        var events = List[PhysicalSpaceOccupancyEvent]()
+        val newestFirst = occupancyEvents.descendingIterator().asScala
+        newestFirst.takeWhile(_.modelVersion > modelVersion).foreach { event =>
+          events = event :: events
+        }
+
+        Some(events)
       }
     }
   }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model
+
+/**
+ * An entity model which knows the model version of its last change.
+ *
+ * @author Keith M. Hughes
+ */
+trait VersionedEntityModel {
+
+  /**
+   * The version of the complete model when this entity last changed.
+   *
+   * <p>
+   * See [[CompleteSensedEntityModel.modelVersion]].
+   */
+  def modelVersionLastChange: Long
+}
+
+/**
+ * A standard mixin for giving an entity model a change version.
+ *
+ * <p>
+ * The entity counts as changed when it is created.
+ *
+ * @author Keith M. Hughes
+ */
+trait StandardVersionedEntityModel extends VersionedEntityModel {
+
+  /**
+   * The collection the entity is in, which hands out the versions.
+   */
+  def allModels: CompleteSensedEntityModel
+
+  /**
+   * The version of the last change.
+   */
+  @volatile private var _modelVersionLastChange: Long = allModels.nextModelVersion()
+
+  override def modelVersionLastChange: Long = _modelVersionLastChange
+
+  /**
+   * Mark the entity as changed.
+   *
+   * <p>
+   * This should be called after the change has been made.
+   */
+  protected def modelChanged(): Unit = {
+    _modelVersionLastChange = allModels.nextModelVersion()
+  }
+}
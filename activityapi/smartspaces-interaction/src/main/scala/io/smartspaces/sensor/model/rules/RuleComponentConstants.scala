@@ -31,6 +31,12 @@ object RuleComponentConstants {
   val KIND_GUARD_SIMPLE_NUMERIC_CONTINUOUS_SENSED_VALUE_BELOW =
     "io.smartspaces.rule.guard.simple.numeric.continuous.sensed.value.below"
 
+  /**
+   * The kind for the sensed value window statistic rule guard.
+   */
+  val KIND_GUARD_SENSED_VALUE_WINDOW_STATISTIC =
+    "io.smartspaces.rule.guard.sensed.value.window.statistic"
+
   /**
    * The kind for the logging of a sensed value rule action.
    */
@@ -52,6 +58,21 @@ object RuleComponentConstants {
    */
   val DATA_FIELD_NAME_SENSOR_CHANNEL_ID = "sensorChannelId"  
 
+  /**
+   * The field name in the data section for the name of a sensor channel window.
+   */
+  val DATA_FIELD_NAME_WINDOW_NAME = "windowName"
+
+  /**
+   * The field name in the data section for the name of a window statistic.
+   */
+  val DATA_FIELD_NAME_WINDOW_STATISTIC = "windowStatistic"
+
+  /**
+   * The field name for the value of the window statistic a guard compared.
+   */
+  val DATA_FIELD_NAME_WINDOW_STATISTIC_VALUE = "windowStatisticValue"
+
   /**
    * The field name in the data section for the threshold.
    */
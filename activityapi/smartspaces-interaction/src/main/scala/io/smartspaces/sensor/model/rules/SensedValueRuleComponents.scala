@@ -34,6 +34,23 @@ import io.smartspaces.sensor.model.SensorChannelEntityModel
 import io.smartspaces.sensor.model.SimpleNumericContinuousSensedValue
 import io.smartspaces.util.data.dynamic.DynamicObject
 
+/**
+ * Something which evaluates rules when the sensed value of a sensor channel
+ * changes.
+ *
+ * @author Keith M. Hughes
+ */
+trait SensorChannelSensedValueRuleEvaluator {
+
+  /**
+   * The value has been updated.
+   *
+   * @param value
+   *        the sensed value
+   */
+  def updateValue(value: SensedValue[Any]): Unit
+}
+
 /**
  * A rule trigger for sensed values from a sensor channel.
  *
@@ -43,19 +60,13 @@ class SensorChannelSensedValueRuleTrigger(
   override val triggerName: String,
   override val rule: Rule,
   val sensorChannelModel: SensorChannelEntityModel,
-  val measurmentValueName: String) extends BaseRuleTrigger {
+  val measurmentValueName: String) extends BaseRuleTrigger with SensorChannelSensedValueRuleEvaluator {
 
   override def initialize(): Unit = {
-    sensorChannelModel.addSensorChannelSensedValueRuleTrigger(this)
+    sensorChannelModel.addSensorChannelSensedValueRuleEvaluator(this)
   }
 
-  /**
-   * The value has been updated.
-   *
-   * @param value
-   *        the sensed value
-   */
-  def updateValue(value: SensedValue[Any]): Unit = {
+  override def updateValue(value: SensedValue[Any]): Unit = {
 
     def ruleInvocationInitialize = (context: ExecutionContext) => {
       context.setValue(measurmentValueName, value)
@@ -110,6 +121,10 @@ class SimpleNumericContinuousSensedValueAboveRuleGuard(
   val thresholdValue: Double,
   val measurmentValueName: String) extends BaseRuleGuard {
 
+  override val guardKey: Option[Any] = Some((
+    RuleComponentConstants.KIND_GUARD_SIMPLE_NUMERIC_CONTINUOUS_SENSED_VALUE_ABOVE,
+    measurmentValueName, thresholdValue))
+
   override def evaluate(rule: Rule, executionContext: ExecutionContext): Boolean = {
     val value: SimpleNumericContinuousSensedValue = executionContext.getValue(measurmentValueName)
 
@@ -163,6 +178,10 @@ class SimpleNumericContinuousSensedValueBelowRuleGuard(
   val thresholdValue: Double,
   val measurementValueName: String) extends BaseRuleGuard {
 
+  override val guardKey: Option[Any] = Some((
+    RuleComponentConstants.KIND_GUARD_SIMPLE_NUMERIC_CONTINUOUS_SENSED_VALUE_BELOW,
+    measurementValueName, thresholdValue))
+
   override def evaluate(rule: Rule, executionContext: ExecutionContext): Boolean = {
     val value: SimpleNumericContinuousSensedValue = executionContext.getValue(measurementValueName)
 
@@ -207,6 +226,94 @@ class SimpleNumericContinuousSensedValueBelowRuleGuardKindImporter extends RuleG
   }
 }
 
+/**
+ * A rule conditional of a statistic of a sensor channel window being above or
+ * below a threshold.
+ *
+ * <p>
+ * The window is on the channel of the sensed value and is aggregated as of
+ * the measurement time of the value. The statistic can be a percentile if the
+ * window keeps percentiles.
+ *
+ * @author Keith M. Hughes
+ */
+class SensedValueWindowStatisticRuleGuard(
+  val windowName: String,
+  val statisticName: String,
+  val thresholdComparisonType: String,
+  val thresholdValue: Double,
+  val measurementValueName: String) extends BaseRuleGuard {
+
+  override val guardKey: Option[Any] = Some((
+    RuleComponentConstants.KIND_GUARD_SENSED_VALUE_WINDOW_STATISTIC,
+    measurementValueName, windowName, statisticName, thresholdComparisonType, thresholdValue))
+
+  override def evaluate(rule: Rule, executionContext: ExecutionContext): Boolean = {
+    val value: SensedValue[Any] = executionContext.getValue(measurementValueName)
+
+    val statistic = value.sensorChannel.getSensedValueWindow(windowName).
+      flatMap(_.getStatistic(statisticName, value.timestampMeasurement))
+
+    val passed = statistic.exists { statisticValue =>
+      thresholdComparisonType match {
+        case RuleComponentConstants.DATA_FIELD_VALUE_THRESHOLD_COMPARISON_TYPE_ABOVE =>
+          statisticValue > thresholdValue
+        case RuleComponentConstants.DATA_FIELD_VALUE_THRESHOLD_COMPARISON_TYPE_BELOW =>
+          statisticValue < thresholdValue
+        case _ =>
+          false
+      }
+    }
+
+    if (passed) {
+      executionContext.setValue(
+        RuleComponentConstants.DATA_FIELD_NAME_WINDOW_STATISTIC_VALUE,
+        statistic.get)
+      executionContext.setValue(
+        RuleComponentConstants.DATA_FIELD_NAME_THRESHOLD,
+        thresholdValue)
+      executionContext.setValue(
+        RuleComponentConstants.DATA_FIELD_NAME_THRESHOLD_COMPARISON_TYPE,
+        thresholdComparisonType)
+    }
+
+    passed
+  }
+}
+
+/**
+ * Import a sensed value window statistic rule guard.
+ *
+ * @author Keith M. Hughes
+ */
+class SensedValueWindowStatisticRuleGuardKindImporter extends RuleGuardKindImporter {
+
+  override val importerKind: String = {
+    RuleComponentConstants.KIND_GUARD_SENSED_VALUE_WINDOW_STATISTIC
+  }
+
+  override def importRuleComponent(source: DynamicObject, rule: Rule): RuleGuard = {
+
+    source.down(DynamicObjectRuleImporter.SECTION_DATA)
+
+    val windowName = source.getRequiredString(
+      RuleComponentConstants.DATA_FIELD_NAME_WINDOW_NAME)
+    val statisticName = source.getRequiredString(
+      RuleComponentConstants.DATA_FIELD_NAME_WINDOW_STATISTIC)
+    val thresholdComparisonType = source.getRequiredString(
+      RuleComponentConstants.DATA_FIELD_NAME_THRESHOLD_COMPARISON_TYPE)
+    val thresholdValue = source.getRequiredDouble(
+      RuleComponentConstants.DATA_FIELD_NAME_THRESHOLD)
+    val valueName = source.getRequiredString(
+      RuleComponentConstants.DATA_FIELD_NAME_MEASUREMENT_VALUE_NAME)
+
+    source.up
+
+    new SensedValueWindowStatisticRuleGuard(windowName, statisticName, thresholdComparisonType,
+      thresholdValue, valueName)
+  }
+}
+
 /**
  * A rule conditional of a numeric continuous value goes below a threshold.
  *
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.rules
+
+import io.smartspaces.evaluation.ExecutionContext
+import io.smartspaces.evaluation.LocalExecutionContext
+import io.smartspaces.interaction.rules.Rule
+import io.smartspaces.interaction.rules.RuleAction
+import io.smartspaces.interaction.rules.RuleGuard
+import io.smartspaces.interaction.rules.RulesCollection
+import io.smartspaces.sensor.model.SensedValue
+import io.smartspaces.sensor.model.SensorChannelEntityModel
+
+import scala.collection.mutable.ArrayBuffer
+import scala.collection.mutable.HashMap
+import scala.collection.mutable.LinkedHashMap
+
+/**
+ * A network of sensed value rules compiled together.
+ *
+ * The rules triggered by a sensor channel are indexed by the channel and
+ * evaluated together when the channel gets a new sensed value. Guards which
+ * can be shared, those with a guard key, are evaluated once for all rules
+ * which start with them. Every rule's guards are evaluated in the rule's own
+ * order, since a guard can replace data written by an earlier one.
+ *
+ * @author Keith M. Hughes
+ */
+trait SensedValueRuleNetwork {
+
+  /**
+   * Attach the network to its sensor channels.
+   *
+   * The compiled sensor channel triggers of the rules are detached from their
+   * channels, the network evaluates the rules instead.
+   */
+  def attach(): Unit
+
+  /**
+   * Detach the network from its sensor channels.
+   *
+   * The compiled sensor channel triggers of the rules are attached to their
+   * channels again.
+   */
+  def detach(): Unit
+
+  /**
+   * The number of sensor channel triggers compiled into the network.
+   */
+  def numberCompiledTriggers: Int
+
+  /**
+   * The number of guard nodes in the network.
+   *
+   * This is the number of distinct guard evaluations an update on all channels
+   * could need, rather than the number of guards in the rules.
+   */
+  def numberGuardNodes: Int
+}
+
+/**
+ * A compiler of rules into a sensed value rule network.
+ *
+ * @author Keith M. Hughes
+ */
+class SensedValueRuleNetworkCompiler {
+
+  /**
+   * Compile all rules in a collection.
+   *
+   * @param rulesCollection
+   *        the rules to compile
+   * @param rootExecutionContext
+   *        the execution context the network evaluates shared guards under
+   *
+   * @return the network, not yet attached
+   */
+  def compile(rulesCollection: RulesCollection, rootExecutionContext: ExecutionContext): SensedValueRuleNetwork = {
+    compile(rulesCollection.rules, rootExecutionContext)
+  }
+
+  /**
+   * Compile rules.
+   *
+   * Only the sensor channel sensed value triggers of the rules are compiled,
+   * any other triggers continue to evaluate their rules themselves. The rules
+   * should not be changed once compiled.
+   *
+   * @param rules
+   *        the rules to compile
+   * @param rootExecutionContext
+   *        the execution context the network evaluates shared guards under
+   *
+   * @return the network, not yet attached
+   */
+  def compile(rules: Iterable[Rule], rootExecutionContext: ExecutionContext): SensedValueRuleNetwork = {
+    val network = new StandardSensedValueRuleNetwork(rootExecutionContext)
+
+    rules.foreach(network.addRule(_))
+
+    network
+  }
+}
+
+/**
+ * The standard sensed value rule network.
+ *
+ * @author Keith M. Hughes
+ */
+class StandardSensedValueRuleNetwork(rootExecutionContext: ExecutionContext) extends SensedValueRuleNetwork {
+
+  /**
+   * The network for each sensor channel.
+   */
+  private val channelNodes = new LinkedHashMap[SensorChannelEntityModel, SensedValueRuleChannelNode]
+
+  /**
+   * The triggers compiled into the network.
+   */
+  private val compiledTriggers = new ArrayBuffer[SensorChannelSensedValueRuleTrigger]
+
+  /**
+   * Add a rule into the network.
+   *
+   * @param rule
+   *        the rule to add
+   */
+  private[rules] def addRule(rule: Rule): Unit = {
+    // Only the shared guards before the first unshared one go into the network, so that the guards
+    // run in the same order as when the rule evaluates itself.
+    val sharedGuards = rule.ruleGuards.takeWhile(_.guardKey.isDefined).toArray
+    val remainingGuards = rule.ruleGuards.drop(sharedGuards.length).toArray
+
+    rule.ruleTriggers.foreach {
+      case trigger: SensorChannelSensedValueRuleTrigger =>
+        val channelNode = channelNodes.getOrElseUpdate(
+          trigger.sensorChannelModel, new SensedValueRuleChannelNode(rootExecutionContext))
+
+        var node = channelNode.getValueNode(trigger.measurmentValueName)
+        sharedGuards.foreach { guard =>
+          node = node.getGuardNode(guard, rule)
+        }
+        node.addRule(new CompiledSensedValueRule(rule, trigger, remainingGuards, rule.ruleActions.toArray))
+
+        compiledTriggers += trigger
+
+      case _ =>
+      // Other triggers evaluate their rules themselves.
+    }
+  }
+
+  override def attach(): Unit = {
+    compiledTriggers.foreach { trigger =>
+      trigger.sensorChannelModel.removeSensorChannelSensedValueRuleEvaluator(trigger)
+    }
+    channelNodes.foreach {
+      case (channelModel, channelNode) =>
+        channelModel.addSensorChannelSensedValueRuleEvaluator(channelNode)
+    }
+  }
+
+  override def detach(): Unit = {
+    channelNodes.foreach {
+      case (channelModel, channelNode) =>
+        channelModel.removeSensorChannelSensedValueRuleEvaluator(channelNode)
+    }
+    compiledTriggers.foreach { trigger =>
+      trigger.sensorChannelModel.addSensorChannelSensedValueRuleEvaluator(trigger)
+    }
+  }
+
+  override def numberCompiledTriggers: Int = compiledTriggers.size
+
+  override def numberGuardNodes: Int = channelNodes.values.map(_.numberGuardNodes).sum
+}
+
+/**
+ * The part of a rule network for a single sensor channel.
+ *
+ * @author Keith M. Hughes
+ */
+private class SensedValueRuleChannelNode(rootExecutionContext: ExecutionContext)
+    extends SensorChannelSensedValueRuleEvaluator {
+
+  /**
+   * The root guard node for each name the sensed value is bound to.
+   */
+  private val valueNodes = new LinkedHashMap[String, SensedValueRuleGuardNode]
+
+  /**
+   * Get the root guard node for a value name, creating it if needed.
+   *
+   * @param measurementValueName
+   *        the name the sensed value is bound to
+   *
+   * @return the node
+   */
+  def getValueNode(measurementValueName: String): SensedValueRuleGuardNode = {
+    valueNodes.getOrElseUpdate(measurementValueName, new SensedValueRuleGuardNode(null, null))
+  }
+
+  override def updateValue(value: SensedValue[Any]): Unit = {
+    valueNodes.foreach {
+      case (measurementValueName, valueNode) =>
+        val context = new LocalExecutionContext(rootExecutionContext)
+        context.setValue(measurementValueName, value)
+
+        valueNode.evaluate(context)
+    }
+  }
+
+  /**
+   * The number of guard nodes for the channel.
+   */
+  def numberGuardNodes: Int = valueNodes.values.map(_.numberGuardNodes).sum
+}
+
+/**
+ * A node in the rule network for a shared guard.
+ *
+ * The rules at the node have passed the guards of the node and all of its
+ * ancestors.
+ *
+ * @author Keith M. Hughes
+ */
+private class SensedValueRuleGuardNode(val guard: RuleGuard, val guardRule: Rule) {
+
+  /**
+   * The child nodes, indexed by their guard keys.
+   */
+  private val children = new LinkedHashMap[Any, SensedValueRuleGuardNode]
+
+  /**
+   * The rules which have passed all guards.
+   */
+  private val rules = new ArrayBuffer[CompiledSensedValueRule]
+
+  /**
+   * Get the child node for a guard, creating it if needed.
+   *
+   * @param guard
+   *        the guard, which must have a guard key
+   * @param rule
+   *        the rule the guard is from
+   *
+   * @return the child node
+   */
+  def getGuardNode(guard: RuleGuard, rule: Rule): SensedValueRuleGuardNode = {
+    children.getOrElseUpdate(guard.guardKey.get, new SensedValueRuleGuardNode(guard, rule))
+  }
+
+  /**
+   * Add a rule which has passed all guards to this point.
+   *
+   * @param rule
+   *        the compiled rule
+   */
+  def addRule(rule: CompiledSensedValueRule): Unit = {
+    rules += rule
+  }
+
+  /**
+   * Evaluate the node's rules and children.
+   *
+   * @param context
+   *        the context holding the values bound by the node and its ancestors
+   */
+  def evaluate(context: LocalExecutionContext): Unit = {
+    rules.foreach(_.evaluate(context))
+
+    children.values.foreach { child =>
+      val childContext = new LocalExecutionContext(context)
+      if (child.guard.evaluate(child.guardRule, childContext)) {
+        child.evaluate(childContext)
+      }
+    }
+  }
+
+  /**
+   * The number of guard nodes in this subtree, not counting this node if it
+   * has no guard.
+   */
+  def numberGuardNodes: Int = {
+    (if (guard != null) 1 else 0) + children.values.map(_.numberGuardNodes).sum
+  }
+}
+
+/**
+ * A rule as compiled into a rule network.
+ *
+ * The remaining guards are the rule's guards after those evaluated by the
+ * network, in the rule's order.
+ *
+ * @author Keith M. Hughes
+ */
+private class CompiledSensedValueRule(
+    rule: Rule,
+    trigger: SensorChannelSensedValueRuleTrigger,
+    remainingGuards: Array[RuleGuard],
+    actions: Array[RuleAction]) {
+
+  /**
+   * Evaluate the rule once its shared guards have passed.
+   *
+   * @param context
+   *        the context holding the values bound by the shared guards
+   */
+  def evaluate(context: LocalExecutionContext): Unit = {
+    val ruleContext = new LocalExecutionContext(rule.rootExecutionContext)
+    context.copyValuesTo(ruleContext)
+
+    if (remainingGuards.forall(_.evaluate(rule, ruleContext))) {
+      actions.foreach(_.evaluate(rule, trigger, ruleContext))
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.snapshot
+
+import io.smartspaces.resource.managed.ManagedResource
+
+/**
+ * Keeps a snapshot of the state of a sensed entity model so that the state
+ * survives a restart.
+ *
+ * <p>
+ * Snapshots are saved periodically while the snapshotter is running, and when
+ * it shuts down.
+ *
+ * @author Keith M. Hughes
+ */
+trait SensedEntityModelSnapshotter extends ManagedResource {
+
+  /**
+   * Restore the model from the most recent snapshot.
+   *
+   * <p>
+   * This should be done before any sensor input is processed.
+   *
+   * @return {@code true} if a snapshot was restored
+   */
+  def restoreSnapshot(): Boolean
+
+  /**
+   * Save a snapshot of the model now.
+   *
+   * <p>
+   * Nothing is written if the model has not changed since the last snapshot.
+   */
+  def saveSnapshot(): Unit
+}
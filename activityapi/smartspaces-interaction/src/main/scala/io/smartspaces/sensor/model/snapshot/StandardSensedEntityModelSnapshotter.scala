@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.snapshot
+
+import java.io.BufferedInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+import io.smartspaces.data.entity.CategoricalValueInstance
+import io.smartspaces.data.entity.ValueRegistry
+import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.resource.managed.IdempotentManagedResource
+import io.smartspaces.sensor.model.CompleteSensedEntityModel
+import io.smartspaces.sensor.model.RestoredSensedValue
+import io.smartspaces.sensor.model.SensorChannelEntityModel
+import io.smartspaces.system.SmartSpacesEnvironment
+
+/**
+ * Constants for the standard sensed entity model snapshotter.
+ *
+ * @author Keith M. Hughes
+ */
+object StandardSensedEntityModelSnapshotter {
+
+  /**
+   * The default time between snapshots, in milliseconds.
+   */
+  val SNAPSHOT_PERIOD_DEFAULT = 60000l
+
+  /**
+   * The default age after which a restored value is stale, in milliseconds.
+   *
+   * <p>
+   * Channels with a state update time limit use that limit instead.
+   */
+  val STALE_AGE_DEFAULT = 15 * 60000l
+
+  /**
+   * The marker at the start of every snapshot file.
+   */
+  val SNAPSHOT_MAGIC = 0x53534d53
+
+  /**
+   * The version of the snapshot format.
+   */
+  val SNAPSHOT_FORMAT_VERSION = 1
+
+  /**
+   * The value tag for no value.
+   */
+  private val VALUE_TAG_NONE = 0
+
+  /**
+   * The value tag for a double.
+   */
+  private val VALUE_TAG_DOUBLE = 1
+
+  /**
+   * The value tag for a long.
+   */
+  private val VALUE_TAG_LONG = 2
+
+  /**
+   * The value tag for an integer.
+   */
+  private val VALUE_TAG_INT = 3
+
+  /**
+   * The value tag for a boolean.
+   */
+  private val VALUE_TAG_BOOLEAN = 4
+
+  /**
+   * The value tag for a string.
+   */
+  private val VALUE_TAG_STRING = 5
+
+  /**
+   * The value tag for a categorical value instance.
+   */
+  private val VALUE_TAG_CATEGORICAL = 6
+}
+
+/**
+ * A snapshotter which writes a compact binary snapshot of the model to a
+ * local file.
+ *
+ * <p>
+ * The snapshot holds the update times of the sensors and channels, the most
+ * recent value of every channel, and where every person is. Restored values
+ * are marked as restored, and as stale if they are older than the channel's
+ * state update time limit, or the stale age if the channel has none.
+ *
+ * <p>
+ * The model is encoded into memory inside a read transaction, and written to
+ * disk on the snapshotter's own thread afterwards, so sensor updates never
+ * wait for the disk. The file is replaced atomically, so a crash while writing
+ * leaves the previous snapshot in place.
+ *
+ * @author Keith M. Hughes
+ */
+class StandardSensedEntityModelSnapshotter(
+    private val allModels: CompleteSensedEntityModel,
+    private val valueRegistry: ValueRegistry,
+    private val snapshotFile: File,
+    private val snapshotPeriod: Long,
+    private val staleAge: Long,
+    private val spaceEnvironment: SmartSpacesEnvironment,
+    private val log: ExtendedLog) extends SensedEntityModelSnapshotter with IdempotentManagedResource {
+
+  import StandardSensedEntityModelSnapshotter._
+
+  /**
+   * Construct a snapshotter with the default snapshot period and stale age.
+   *
+   * @param allModels
+   *          the model to snapshot
+   * @param valueRegistry
+   *          the registry for categorical values
+   * @param snapshotFile
+   *          the file to keep the snapshot in
+   * @param spaceEnvironment
+   *          the space environment to use
+   * @param log
+   *          the logger to use
+   */
+  def this(allModels: CompleteSensedEntityModel, valueRegistry: ValueRegistry, snapshotFile: File,
+      spaceEnvironment: SmartSpacesEnvironment, log: ExtendedLog) = {
+    this(allModels, valueRegistry, snapshotFile, StandardSensedEntityModelSnapshotter.SNAPSHOT_PERIOD_DEFAULT,
+      StandardSensedEntityModelSnapshotter.STALE_AGE_DEFAULT, spaceEnvironment, log)
+  }
+
+  /**
+   * The future for the periodic snapshots.
+   */
+  private var snapshotFuture: ScheduledFuture[_] = _
+
+  /**
+   * The model version of the last snapshot saved.
+   */
+  private var lastSnapshotModelVersion: Long = -1
+
+  /**
+   * Lock so only one snapshot is saved at a time.
+   */
+  private val snapshotLock = new Object
+
+  override def onStartup(): Unit = {
+    snapshotFuture = spaceEnvironment.getExecutorService.scheduleWithFixedDelay(new Runnable() {
+      override def run(): Unit = {
+        try {
+          saveSnapshot()
+        } catch {
+          case e: Throwable =>
+            log.formatError(e, "Could not save sensed entity model snapshot to %s", snapshotFile)
+        }
+      }
+    }, snapshotPeriod, snapshotPeriod, TimeUnit.MILLISECONDS)
+  }
+
+  override def onShutdown(): Unit = {
+    if (snapshotFuture != null) {
+      snapshotFuture.cancel(false)
+      snapshotFuture = null
+    }
+
+    try {
+      saveSnapshot()
+    } catch {
+      case e: Throwable =>
+        log.formatError(e, "Could not save sensed entity model snapshot to %s", snapshotFile)
+    }
+  }
+
+  override def saveSnapshot(): Unit = {
+    snapshotLock.synchronized {
+      val snapshot = allModels.doReadTransaction { () =>
+        val modelVersion = allModels.modelVersion
+        if (modelVersion == lastSnapshotModelVersion) {
+          None
+        } else {
+          Some((modelVersion, encodeModel()))
+        }
+      }
+
+      snapshot.foreach { case (modelVersion, bytes) =>
+        writeSnapshotFile(bytes)
+
+        lastSnapshotModelVersion = modelVersion
+      }
+    }
+  }
+
+  override def restoreSnapshot(): Boolean = {
+    if (!snapshotFile.isFile()) {
+      log.formatInfo("No sensed entity model snapshot found at %s", snapshotFile)
+
+      return false
+    }
+
+    val in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))
+    try {
+      allModels.doWriteTransaction { () =>
+        decodeModel(in)
+      }
+    } catch {
+      case e: IOException =>
+        log.formatError(e, "Could not restore sensed entity model snapshot from %s", snapshotFile)
+
+        false
+    } finally {
+      in.close()
+    }
+  }
+
+  /**
+   * Encode the model.
+   *
+   * <p>
+   * This must be called inside a model transaction.
+   *
+   * @return the encoded snapshot
+   */
+  private def encodeModel(): Array[Byte] = {
+    val bytes = new ByteArrayOutputStream()
+    val out = new DataOutputStream(bytes)
+
+    out.writeInt(SNAPSHOT_MAGIC)
+    out.writeInt(SNAPSHOT_FORMAT_VERSION)
+    out.writeLong(spaceEnvironment.getTimeProvider.getCurrentTime)
+
+    val sensors = allModels.getAllSensorEntityModels()
+    out.writeInt(sensors.size)
+    sensors.foreach { sensor =>
+      out.writeUTF(sensor.sensorEntityDescription.externalId)
+      writeOptionalLong(out, sensor.timestampLastStateUpdate)
+      writeOptionalLong(out, sensor.timestampLastHeartbeatUpdate)
+
+      val channels = sensor.getAllSensorChannelModels()
+      out.writeInt(channels.size)
+      channels.foreach { channel =>
+        out.writeUTF(channel.sensorChannelDetail.channelId)
+        writeOptionalLong(out, channel.timestampLastStateUpdate)
+
+        val sensedValue = channel.mostRecentSensedValue
+        if (sensedValue != null && isSupportedValue(sensedValue.value)) {
+          out.writeBoolean(true)
+          writeValue(out, sensedValue.value)
+          writeValue(out, sensedValue.additional.filter(isSupportedValue(_)).getOrElse(null))
+          out.writeLong(sensedValue.timestampMeasurement)
+          out.writeLong(sensedValue.timestampMeasurementReceived)
+        } else {
+          out.writeBoolean(false)
+        }
+      }
+    }
+
+    val people = allModels.getAllPersonSensedEntityModels()
+    out.writeInt(people.size)
+    people.foreach { person =>
+      out.writeUTF(person.sensedEntityDescription.externalId)
+
+      val location = person.physicalSpaceLocation
+      if (location != null) {
+        out.writeBoolean(true)
+        out.writeUTF(location.sensedEntityDescription.externalId)
+      } else {
+        out.writeBoolean(false)
+      }
+      out.writeLong(person.physicalSpaceLocationTimestamp)
+    }
+
+    out.flush()
+
+    bytes.toByteArray()
+  }
+
+  /**
+   * Decode a snapshot into the model.
+   *
+   * <p>
+   * This must be called inside a model write transaction. Entities in the
+   * snapshot which are no longer in the model are skipped.
+   *
+   * @param in
+   *          the snapshot
+   *
+   * @return {@code true} if the snapshot was restored
+   */
+  private def decodeModel(in: DataInputStream): Boolean = {
+    if (in.readInt() != SNAPSHOT_MAGIC) {
+      log.formatWarn("%s is not a sensed entity model snapshot", snapshotFile)
+
+      return false
+    }
+    val formatVersion = in.readInt()
+    if (formatVersion != SNAPSHOT_FORMAT_VERSION) {
+      log.formatWarn("Sensed entity model snapshot %s has unknown format version %d", snapshotFile, Integer.valueOf(formatVersion))
+
+      return false
+    }
+
+    val timestampSnapshot = in.readLong()
+    val currentTime = spaceEnvironment.getTimeProvider.getCurrentTime
+
+    var valuesRestored = 0
+    var valuesStale = 0
+
+    val numberSensors = in.readInt()
+    for (i <- 0 until numberSensors) {
+      val sensor = allModels.getSensorEntityModelByExternalId(in.readUTF())
+      val timestampLastStateUpdate = readOptionalLong(in)
+      val timestampLastHeartbeatUpdate = readOptionalLong(in)
+      sensor.foreach(_.restoreUpdateTimes(timestampLastStateUpdate, timestampLastHeartbeatUpdate))
+
+      val numberChannels = in.readInt()
+      for (j <- 0 until numberChannels) {
+        val channel = sensor.flatMap(_.getSensorChannelEntityModel(in.readUTF()))
+        val channelTimestampLastStateUpdate = readOptionalLong(in)
+
+        if (in.readBoolean()) {
+          val value = readValue(in)
+          val additional = Option(readValue(in))
+          val timestampMeasurement = in.readLong()
+          val timestampMeasurementReceived = in.readLong()
+
+          if (channel.isDefined && value != null) {
+            val stale = isStale(channel.get, timestampMeasurement, currentTime)
+            channel.get.restoreSensedValue(
+              new RestoredSensedValue(channel.get, value, additional, timestampMeasurement, timestampMeasurementReceived, stale),
+              channelTimestampLastStateUpdate)
+
+            valuesRestored += 1
+            if (stale) {
+              valuesStale += 1
+            }
+          }
+        }
+      }
+    }
+
+    val numberPeople = in.readInt()
+    for (i <- 0 until numberPeople) {
+      val person = allModels.getPersonSensedEntityModelByExternalId(in.readUTF())
+      val location = if (in.readBoolean()) Some(in.readUTF()) else None
+      val locationTimestamp = in.readLong()
+
+      for (p <- person; l <- location; space <- allModels.getPhysicalSpaceSensedEntityModelByExternalId(l)) {
+        space.restoreOccupant(p, locationTimestamp)
+      }
+    }
+
+    log.formatInfo("Restored sensed entity model snapshot from %s taken %d ms ago, %d values restored, %d of them stale",
+      snapshotFile, java.lang.Long.valueOf(currentTime - timestampSnapshot),
+      Integer.valueOf(valuesRestored), Integer.valueOf(valuesStale))
+
+    true
+  }
+
+  /**
+   * Is a restored value stale?
+   *
+   * @param channel
+   *          the channel the value is for
+   * @param timestampMeasurement
+   *          when the value was measured
+   * @param currentTime
+   *          the current time
+   *
+   * @return {@code true} if the value is stale
+   */
+  private def isStale(channel: SensorChannelEntityModel, timestampMeasurement: Long, currentTime: Long): Boolean = {
+    currentTime - timestampMeasurement > channel.sensorChannelDetail.stateUpdateTimeLimit.getOrElse(staleAge)
+  }
+
+  /**
+   * Write the snapshot file, replacing any earlier one.
+   *
+   * @param bytes
+   *          the encoded snapshot
+   */
+  private def writeSnapshotFile(bytes: Array[Byte]): Unit = {
+    val parent = snapshotFile.getAbsoluteFile().getParentFile()
+    parent.mkdirs()
+
+    val tempFile = new File(parent, snapshotFile.getName() + ".tmp")
+    val out = new FileOutputStream(tempFile)
+    try {
+      out.write(bytes)
+      out.getFD().sync()
+    } finally {
+      out.close()
+    }
+
+    Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE)
+  }
+
+  /**
+   * Can a value be saved in a snapshot?
+   *
+   * @param value
+   *          the value
+   *
+   * @return {@code true} if the value can be saved
+   */
+  private def isSupportedValue(value: Any): Boolean = {
+    value match {
+      case _: Double | _: Long | _: Int | _: Boolean | _: String | _: CategoricalValueInstance => true
+      case _ => false
+    }
+  }
+
+  /**
+   * Write a value.
+   *
+   * @param out
+   *          the output to write to
+   * @param value
+   *          the value to write, can be {@code null}
+   */
+  private def writeValue(out: DataOutputStream, value: Any): Unit = {
+    value match {
+      case v: Double =>
+        out.writeByte(VALUE_TAG_DOUBLE)
+        out.writeDouble(v)
+      case v: Long =>
+        out.writeByte(VALUE_TAG_LONG)
+        out.writeLong(v)
+      case v: Int =>
+        out.writeByte(VALUE_TAG_INT)
+        out.writeInt(v)
+      case v: Boolean =>
+        out.writeByte(VALUE_TAG_BOOLEAN)
+        out.writeBoolean(v)
+      case v: String =>
+        out.writeByte(VALUE_TAG_STRING)
+        out.writeUTF(v)
+      case v: CategoricalValueInstance =>
+        out.writeByte(VALUE_TAG_CATEGORICAL)
+        out.writeUTF(v.value.name)
+        out.writeInt(v.id)
+      case _ =>
+        out.writeByte(VALUE_TAG_NONE)
+    }
+  }
+
+  /**
+   * Read a value.
+   *
+   * @param in
+   *          the input to read from
+   *
+   * @return the value, or {@code null} if there was none or a categorical
+   *         value is no longer known
+   */
+  private def readValue(in: DataInputStream): Any = {
+    in.readByte().toInt match {
+      case VALUE_TAG_DOUBLE => in.readDouble()
+      case VALUE_TAG_LONG => in.readLong()
+      case VALUE_TAG_INT => in.readInt()
+      case VALUE_TAG_BOOLEAN => in.readBoolean()
+      case VALUE_TAG_STRING => in.readUTF()
+      case VALUE_TAG_CATEGORICAL =>
+        val name = in.readUTF()
+        val id = in.readInt()
+        valueRegistry.getCategoricalValue[CategoricalValueInstance](name).flatMap(_.fromId(id)).orNull
+      case VALUE_TAG_NONE => null
+      case tag => throw new IOException(s"Unknown value tag ${tag}")
+    }
+  }
+
+  /**
+   * Write an optional long.
+   */
+  private def writeOptionalLong(out: DataOutputStream, value: Option[Long]): Unit = {
+    out.writeBoolean(value.isDefined)
+    value.foreach(out.writeLong(_))
+  }
+
+  /**
+   * Read an optional long.
+   */
+  private def readOptionalLong(in: DataInputStream): Option[Long] = {
+    if (in.readBoolean()) Some(in.readLong()) else None
+  }
+}
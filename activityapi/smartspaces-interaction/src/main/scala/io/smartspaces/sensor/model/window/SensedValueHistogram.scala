@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.window
+
+/**
+ * A histogram of values over a fixed range with equal width buckets, for
+ * approximating percentiles.
+ *
+ * <p>
+ * Values below the range are counted in the first bucket and values above
+ * the range in the last bucket, so a percentile is never outside the range.
+ *
+ * @author Keith M. Hughes
+ */
+class SensedValueHistogram(val low: Double, val high: Double, val numberBuckets: Int) {
+
+  require(high > low, "The histogram high value must be greater than the low value")
+  require(numberBuckets > 0, "The histogram must have at least one bucket")
+
+  /**
+   * The width of each bucket.
+   */
+  private val bucketWidth = (high - low) / numberBuckets
+
+  /**
+   * The count of values in each bucket.
+   */
+  private val buckets = new Array[Long](numberBuckets)
+
+  /**
+   * The total number of values.
+   */
+  private var count: Long = 0
+
+  /**
+   * Add a value.
+   *
+   * @param value
+   *        the value
+   */
+  def add(value: Double): Unit = {
+    buckets(bucketIndex(value)) += 1
+    count += 1
+  }
+
+  /**
+   * Remove a value which was added earlier.
+   *
+   * @param value
+   *        the value
+   */
+  def remove(value: Double): Unit = {
+    buckets(bucketIndex(value)) -= 1
+    count -= 1
+  }
+
+  /**
+   * Remove all values.
+   */
+  def clear(): Unit = {
+    java.util.Arrays.fill(buckets, 0L)
+    count = 0
+  }
+
+  /**
+   * Get an approximation of a percentile.
+   *
+   * @param fraction
+   *        the percentile as a fraction between {@code 0} and {@code 1}
+   *
+   * @return the middle of the bucket holding the percentile, or
+   *         {@code None} if there are no values
+   */
+  def percentile(fraction: Double): Option[Double] = {
+    if (count == 0) {
+      None
+    } else {
+      val rank = math.max(1L, math.ceil(fraction * count).toLong)
+
+      var seen = 0L
+      var index = 0
+      while (index < numberBuckets - 1 && seen + buckets(index) < rank) {
+        seen += buckets(index)
+        index += 1
+      }
+
+      Some(low + (index + 0.5) * bucketWidth)
+    }
+  }
+
+  /**
+   * Get the bucket a value falls in.
+   */
+  private def bucketIndex(value: Double): Int = {
+    val index = ((value - low) / bucketWidth).toInt
+    if (value < low || index < 0) {
+      0
+    } else if (index >= numberBuckets) {
+      numberBuckets - 1
+    } else {
+      index
+    }
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.window
+
+import io.smartspaces.sensor.model.SensedValue
+
+/**
+ * A window over the sensed values of a sensor channel which keeps aggregate
+ * statistics of the values in the window.
+ *
+ * <p>
+ * Statistics are kept incrementally, so adding a value takes constant time no
+ * matter how many values are in the window, and a window holds a bounded
+ * amount of memory.
+ *
+ * <p>
+ * Numeric values are aggregated as is. Boolean values are aggregated as
+ * {@code 1} for {@code true} and {@code 0} for {@code false}. Any other value
+ * is aggregated as {@code 1}, so the count and sum give the number of events.
+ *
+ * @author Keith M. Hughes
+ */
+trait SensedValueWindow {
+
+  /**
+   * The name of the window, unique for its sensor channel.
+   */
+  def windowName: String
+
+  /**
+   * Add a sensed value to the window.
+   *
+   * @param value
+   *        the sensed value
+   */
+  def updateValue(value: SensedValue[Any]): Unit
+
+  /**
+   * Add a value to the window.
+   *
+   * @param timestamp
+   *        the time the value was measured
+   * @param value
+   *        the value
+   */
+  def addValue(timestamp: Long, value: Double): Unit
+
+  /**
+   * Get the aggregate statistics of the window.
+   *
+   * @param currentTime
+   *        the current time
+   *
+   * @return the aggregate, or {@code None} if the window has no values
+   */
+  def aggregate(currentTime: Long): Option[SensedValueWindowAggregate]
+
+  /**
+   * Get an approximation of a percentile of the values in the window.
+   *
+   * @param fraction
+   *        the percentile as a fraction, so {@code 0.95} for the 95th
+   *        percentile
+   * @param currentTime
+   *        the current time
+   *
+   * @return the percentile, or {@code None} if the window has no values or
+   *         does not keep percentiles
+   */
+  def percentile(fraction: Double, currentTime: Long): Option[Double]
+
+  /**
+   * Get a statistic of the window by name.
+   *
+   * @param statisticName
+   *        the name of the statistic, one of the statistic names in
+   *        {@link SensedValueWindow} or a percentile statistic name
+   * @param currentTime
+   *        the current time
+   *
+   * @return the value of the statistic, or {@code None} if the window has no
+   *         values or there is no such statistic
+   */
+  def getStatistic(statisticName: String, currentTime: Long): Option[Double] = {
+    SensedValueWindow.getPercentileFraction(statisticName) match {
+      case Some(fraction) => percentile(fraction, currentTime)
+      case None => aggregate(currentTime).flatMap(_.getStatistic(statisticName))
+    }
+  }
+}
+
+/**
+ * Support for sensed value windows.
+ *
+ * @author Keith M. Hughes
+ */
+object SensedValueWindow {
+
+  /**
+   * The name of the count statistic.
+   */
+  val STATISTIC_COUNT = "count"
+
+  /**
+   * The name of the minimum statistic.
+   */
+  val STATISTIC_MIN = "min"
+
+  /**
+   * The name of the maximum statistic.
+   */
+  val STATISTIC_MAX = "max"
+
+  /**
+   * The name of the mean statistic.
+   */
+  val STATISTIC_MEAN = "mean"
+
+  /**
+   * The name of the variance statistic.
+   */
+  val STATISTIC_VARIANCE = "variance"
+
+  /**
+   * The name of the rate of change statistic.
+   */
+  val STATISTIC_RATE_OF_CHANGE = "rateOfChange"
+
+  /**
+   * The prefix of the name of a percentile statistic. The prefix is followed
+   * by the percentile, so {@code p95} is the 95th percentile.
+   */
+  val STATISTIC_PERCENTILE_PREFIX = "p"
+
+  /**
+   * Get the fraction for a percentile statistic name.
+   *
+   * @param statisticName
+   *        the name of the statistic
+   *
+   * @return the percentile as a fraction, or {@code None} if the name is not
+   *         of a percentile between {@code 0} and {@code 100}
+   */
+  def getPercentileFraction(statisticName: String): Option[Double] = {
+    if (statisticName.startsWith(STATISTIC_PERCENTILE_PREFIX)) {
+      try {
+        val percentile = statisticName.substring(STATISTIC_PERCENTILE_PREFIX.length).toDouble
+        if (percentile >= 0 && percentile <= 100) Some(percentile / 100) else None
+      } catch {
+        case e: NumberFormatException => None
+      }
+    } else {
+      None
+    }
+  }
+
+  /**
+   * Get the value a sensed value is aggregated as.
+   *
+   * @param value
+   *        the sensed value
+   *
+   * @return the value to aggregate
+   */
+  def windowValue(value: SensedValue[Any]): Double = {
+    value.value match {
+      case number: Number => number.doubleValue
+      case flag: Boolean => if (flag) 1.0 else 0.0
+      case _ => 1.0
+    }
+  }
+}
+
+/**
+ * The aggregate statistics of the values in a window.
+ *
+ * @param count
+ *        the number of values
+ * @param min
+ *        the smallest value
+ * @param max
+ *        the largest value
+ * @param mean
+ *        the mean of the values
+ * @param variance
+ *        the population variance of the values
+ * @param rateOfChange
+ *        the change per second between the oldest and newest values, or
+ *        {@code 0} if they were measured at the same time
+ * @param timestampOldest
+ *        the time the oldest value was measured
+ * @param timestampNewest
+ *        the time the newest value was measured
+ *
+ * @author Keith M. Hughes
+ */
+class SensedValueWindowAggregate(
+    val count: Long,
+    val min: Double,
+    val max: Double,
+    val mean: Double,
+    val variance: Double,
+    val rateOfChange: Double,
+    val timestampOldest: Long,
+    val timestampNewest: Long) {
+
+  /**
+   * The sum of the values.
+   */
+  def sum: Double = mean * count
+
+  /**
+   * Get a statistic by name.
+   *
+   * <p>
+   * Percentiles are not part of the aggregate and are gotten from the window.
+   *
+   * @param statisticName
+   *        the name of the statistic, one of the statistic names in
+   *        {@link SensedValueWindow}
+   *
+   * @return the value of the statistic, or {@code None} if there is no such
+   *         statistic
+   */
+  def getStatistic(statisticName: String): Option[Double] = {
+    statisticName match {
+      case SensedValueWindow.STATISTIC_COUNT => Some(count.toDouble)
+      case SensedValueWindow.STATISTIC_MIN => Some(min)
+      case SensedValueWindow.STATISTIC_MAX => Some(max)
+      case SensedValueWindow.STATISTIC_MEAN => Some(mean)
+      case SensedValueWindow.STATISTIC_VARIANCE => Some(variance)
+      case SensedValueWindow.STATISTIC_RATE_OF_CHANGE => Some(rateOfChange)
+      case _ => None
+    }
+  }
+
+  override def toString(): String = {
+    s"SensedValueWindowAggregate [count=${count}, min=${min}, max=${max}, mean=${mean}, variance=${variance}, rateOfChange=${rateOfChange}]"
+  }
+}
+
+/**
+ * A running count, mean and variance which values can be removed from as well
+ * as added to.
+ *
+ * @author Keith M. Hughes
+ */
+private[window] class RunningStatistics {
+
+  /**
+   * The number of values.
+   */
+  var count: Long = 0
+
+  /**
+   * The mean of the values.
+   */
+  var mean: Double = 0
+
+  /**
+   * The sum of the squared differences from the mean.
+   */
+  private var squaredDifferences: Double = 0
+
+  /**
+   * Add a value.
+   */
+  def add(value: Double): Unit = {
+    count += 1
+    val difference = value - mean
+    mean += difference / count
+    squaredDifferences += difference * (value - mean)
+  }
+
+  /**
+   * Remove a value which was added earlier.
+   */
+  def remove(value: Double): Unit = {
+    if (count <= 1) {
+      clear()
+    } else {
+      val oldMean = mean
+      mean = (mean * count - value) / (count - 1)
+      squaredDifferences = math.max(0.0, squaredDifferences - (value - oldMean) * (value - mean))
+      count -= 1
+    }
+  }
+
+  /**
+   * The population variance of the values.
+   */
+  def variance: Double = if (count > 0) squaredDifferences / count else 0.0
+
+  /**
+   * Remove all values.
+   */
+  def clear(): Unit = {
+    count = 0
+    mean = 0
+    squaredDifferences = 0
+  }
+}
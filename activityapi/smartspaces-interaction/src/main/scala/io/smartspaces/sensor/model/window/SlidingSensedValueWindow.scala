@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.window
+
+import io.smartspaces.sensor.model.SensedValue
+
+/**
+ * A window holding the sensed values measured within a fixed time before the
+ * most recent value.
+ *
+ * <p>
+ * The values are kept in a ring buffer, with the minimum and maximum tracked
+ * by monotonic queues of the ring buffer positions, so adding a value and
+ * dropping expired values take amortized constant time. If more values
+ * arrive within the window duration than the window can hold, the oldest
+ * values are dropped early.
+ *
+ * <p>
+ * Values must be added in measurement time order.
+ *
+ * @param windowName
+ *        the name of the window
+ * @param windowDuration
+ *        how long a value stays in the window, in milliseconds
+ * @param maxValues
+ *        the most values the window can hold
+ * @param histogram
+ *        the histogram for percentiles, if percentiles are wanted
+ *
+ * @author Keith M. Hughes
+ */
+class SlidingSensedValueWindow(
+    override val windowName: String,
+    val windowDuration: Long,
+    val maxValues: Int,
+    histogram: Option[SensedValueHistogram]) extends SensedValueWindow {
+
+  require(maxValues > 0, "A sliding window must be able to hold at least one value")
+
+  /**
+   * Construct a window without percentiles.
+   *
+   * @param windowName
+   *        the name of the window
+   * @param windowDuration
+   *        how long a value stays in the window, in milliseconds
+   * @param maxValues
+   *        the most values the window can hold
+   */
+  def this(windowName: String, windowDuration: Long, maxValues: Int) = {
+    this(windowName, windowDuration, maxValues, None)
+  }
+
+  /**
+   * The measurement times of the values, indexed by sequence number modulo
+   * the number of values.
+   */
+  private val timestamps = new Array[Long](maxValues)
+
+  /**
+   * The values, indexed by sequence number modulo the number of values.
+   */
+  private val values = new Array[Double](maxValues)
+
+  /**
+   * The sequence number of the oldest value in the window.
+   */
+  private var oldest: Long = 0
+
+  /**
+   * The sequence number the next value added will get.
+   */
+  private var next: Long = 0
+
+  /**
+   * Sequence numbers of the values which could become the minimum, with
+   * increasing values.
+   */
+  private val minCandidates = new SequenceNumberQueue(maxValues)
+
+  /**
+   * Sequence numbers of the values which could become the maximum, with
+   * decreasing values.
+   */
+  private val maxCandidates = new SequenceNumberQueue(maxValues)
+
+  /**
+   * The count, mean and variance of the values.
+   */
+  private val statistics = new RunningStatistics
+
+  override def updateValue(value: SensedValue[Any]): Unit = {
+    addValue(value.timestampMeasurement, SensedValueWindow.windowValue(value))
+  }
+
+  override def addValue(timestamp: Long, value: Double): Unit = {
+    synchronized {
+      if (next - oldest == maxValues) {
+        removeOldest()
+      }
+
+      val position = positionOf(next)
+      timestamps(position) = timestamp
+      values(position) = value
+
+      while (!minCandidates.isEmpty && valueOf(minCandidates.last) >= value) {
+        minCandidates.removeLast()
+      }
+      minCandidates.addLast(next)
+
+      while (!maxCandidates.isEmpty && valueOf(maxCandidates.last) <= value) {
+        maxCandidates.removeLast()
+      }
+      maxCandidates.addLast(next)
+
+      statistics.add(value)
+      histogram.foreach(_.add(value))
+
+      next += 1
+
+      removeExpired(timestamp)
+    }
+  }
+
+  override def aggregate(currentTime: Long): Option[SensedValueWindowAggregate] = {
+    synchronized {
+      removeExpired(currentTime)
+
+      if (oldest == next) {
+        None
+      } else {
+        val oldestTimestamp = timestamps(positionOf(oldest))
+        val newestTimestamp = timestamps(positionOf(next - 1))
+        val rateOfChange = if (newestTimestamp > oldestTimestamp) {
+          (valueOf(next - 1) - valueOf(oldest)) * 1000.0 / (newestTimestamp - oldestTimestamp)
+        } else {
+          0.0
+        }
+
+        Some(new SensedValueWindowAggregate(statistics.count, valueOf(minCandidates.first),
+          valueOf(maxCandidates.first), statistics.mean, statistics.variance, rateOfChange,
+          oldestTimestamp, newestTimestamp))
+      }
+    }
+  }
+
+  override def percentile(fraction: Double, currentTime: Long): Option[Double] = {
+    synchronized {
+      removeExpired(currentTime)
+
+      histogram.flatMap(_.percentile(fraction))
+    }
+  }
+
+  /**
+   * Remove all values which have been in the window for the window duration.
+   *
+   * @param currentTime
+   *        the current time
+   */
+  private def removeExpired(currentTime: Long): Unit = {
+    val expiredTime = currentTime - windowDuration
+    while (oldest < next && timestamps(positionOf(oldest)) <= expiredTime) {
+      removeOldest()
+    }
+  }
+
+  /**
+   * Remove the oldest value in the window.
+   */
+  private def removeOldest(): Unit = {
+    val value = valueOf(oldest)
+
+    if (minCandidates.first == oldest) {
+      minCandidates.removeFirst()
+    }
+    if (maxCandidates.first == oldest) {
+      maxCandidates.removeFirst()
+    }
+
+    statistics.remove(value)
+    histogram.foreach(_.remove(value))
+
+    oldest += 1
+  }
+
+  private def valueOf(sequenceNumber: Long): Double = values(positionOf(sequenceNumber))
+
+  private def positionOf(sequenceNumber: Long): Int = (sequenceNumber % maxValues).toInt
+}
+
+/**
+ * A fixed capacity double ended queue of sequence numbers.
+ *
+ * @author Keith M. Hughes
+ */
+private[window] class SequenceNumberQueue(capacity: Int) {
+
+  /**
+   * The queued sequence numbers, in a ring buffer.
+   */
+  private val sequenceNumbers = new Array[Long](capacity)
+
+  /**
+   * The number of items ever removed from the front.
+   */
+  private var head: Long = 0
+
+  /**
+   * The number of items ever added, less the number removed from the back.
+   */
+  private var tail: Long = 0
+
+  def isEmpty: Boolean = head == tail
+
+  def first: Long = sequenceNumbers((head % capacity).toInt)
+
+  def last: Long = sequenceNumbers(((tail - 1) % capacity).toInt)
+
+  def addLast(sequenceNumber: Long): Unit = {
+    sequenceNumbers((tail % capacity).toInt) = sequenceNumber
+    tail += 1
+  }
+
+  def removeFirst(): Unit = head += 1
+
+  def removeLast(): Unit = tail -= 1
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.window
+
+import io.smartspaces.sensor.model.SensedValue
+
+/**
+ * A window which aggregates sensed values over back to back, non-overlapping
+ * periods of time.
+ *
+ * <p>
+ * The periods are aligned to multiples of the window duration since the
+ * epoch. The aggregate of a window is the aggregate of the most recently
+ * completed period, so is {@code None} if that period had no values. Only
+ * running statistics are kept, so the window takes constant memory no matter
+ * how many values arrive in a period.
+ *
+ * @param windowName
+ *        the name of the window
+ * @param windowDuration
+ *        the length of each period, in milliseconds
+ * @param histogram
+ *        the histogram for percentiles, if percentiles are wanted
+ *
+ * @author Keith M. Hughes
+ */
+class TumblingSensedValueWindow(
+    override val windowName: String,
+    val windowDuration: Long,
+    histogram: Option[SensedValueHistogram]) extends SensedValueWindow {
+
+  require(windowDuration > 0, "A tumbling window must have a positive duration")
+
+  /**
+   * Construct a window without percentiles.
+   *
+   * @param windowName
+   *        the name of the window
+   * @param windowDuration
+   *        the length of each period, in milliseconds
+   */
+  def this(windowName: String, windowDuration: Long) = {
+    this(windowName, windowDuration, None)
+  }
+
+  /**
+   * The start of the current period, or {@code -1} if no value has been
+   * added.
+   */
+  private var periodStart: Long = -1
+
+  /**
+   * The count, mean and variance of the values in the current period.
+   */
+  private val statistics = new RunningStatistics
+
+  private var min = Double.MaxValue
+
+  private var max = -Double.MaxValue
+
+  private var oldestTimestamp: Long = 0
+
+  private var oldestValue: Double = 0
+
+  private var newestTimestamp: Long = 0
+
+  private var newestValue: Double = 0
+
+  /**
+   * The histogram for the current period.
+   */
+  private var currentHistogram = histogram
+
+  /**
+   * The histogram for the most recently completed period.
+   */
+  private var completedHistogram =
+    histogram.map((h) => new SensedValueHistogram(h.low, h.high, h.numberBuckets))
+
+  /**
+   * The aggregate of the most recently completed period.
+   */
+  private var completedAggregate: Option[SensedValueWindowAggregate] = None
+
+  override def updateValue(value: SensedValue[Any]): Unit = {
+    addValue(value.timestampMeasurement, SensedValueWindow.windowValue(value))
+  }
+
+  override def addValue(timestamp: Long, value: Double): Unit = {
+    synchronized {
+      completePeriod(timestamp)
+
+      if (periodStart < 0) {
+        periodStart = timestamp - timestamp % windowDuration
+      }
+
+      if (statistics.count == 0) {
+        oldestTimestamp = timestamp
+        oldestValue = value
+      }
+      newestTimestamp = timestamp
+      newestValue = value
+
+      min = math.min(min, value)
+      max = math.max(max, value)
+      statistics.add(value)
+      currentHistogram.foreach(_.add(value))
+    }
+  }
+
+  override def aggregate(currentTime: Long): Option[SensedValueWindowAggregate] = {
+    synchronized {
+      completePeriod(currentTime)
+
+      completedAggregate
+    }
+  }
+
+  override def percentile(fraction: Double, currentTime: Long): Option[Double] = {
+    synchronized {
+      completePeriod(currentTime)
+
+      if (completedAggregate.isDefined) completedHistogram.flatMap(_.percentile(fraction)) else None
+    }
+  }
+
+  /**
+   * Complete the current period if the time is past its end.
+   *
+   * @param currentTime
+   *        the current time
+   */
+  private def completePeriod(currentTime: Long): Unit = {
+    if (periodStart >= 0 && currentTime >= periodStart + windowDuration) {
+      // If a whole period has gone by since, the most recently completed period was empty.
+      if (currentTime < periodStart + 2 * windowDuration && statistics.count > 0) {
+        val rateOfChange = if (newestTimestamp > oldestTimestamp) {
+          (newestValue - oldestValue) * 1000.0 / (newestTimestamp - oldestTimestamp)
+        } else {
+          0.0
+        }
+        completedAggregate = Some(new SensedValueWindowAggregate(statistics.count, min, max,
+          statistics.mean, statistics.variance, rateOfChange, oldestTimestamp, newestTimestamp))
+
+        val histogram = completedHistogram
+        completedHistogram = currentHistogram
+        currentHistogram = histogram
+      } else {
+        completedAggregate = None
+      }
+
+      periodStart = currentTime - currentTime % windowDuration
+      statistics.clear()
+      min = Double.MaxValue
+      max = -Double.MaxValue
+      currentHistogram.foreach(_.clear())
+    }
+  }
+}
@@ -28,9 +28,27 @@ import io.smartspaces.sensor.event.SensorChannelOfflineEvent
 /**
  * An emitter of events from sensor processors.
  * 
+ * <p>
+ * Events that are built on every sensor message should only be built if
+ * the matching {@code hasXXXObservers} method says someone is listening.
+ * 
  * @author Keith M. Hughes
  */
 trait SensorProcessingEventEmitter {
+
+  /**
+   * Are there any observers for raw sensor events?
+   *
+   * @return {@code true} if there are observers
+   */
+  def hasRawSensorEventObservers(): Boolean
+
+  /**
+   * Are there any observers for sensor heartbeat events?
+   *
+   * @return {@code true} if there are observers
+   */
+  def hasSensorHeartbeatEventObservers(): Boolean
   
   /**
    * Broadcast a raw sensor event.
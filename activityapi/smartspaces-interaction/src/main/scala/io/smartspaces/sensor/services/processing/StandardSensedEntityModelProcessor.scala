@@ -85,7 +85,7 @@ class StandardSensedEntityModelProcessor(
     message.down(SensorMessages.SENSOR_MESSAGE_FIELD_NAME_DATA)
 
     // If the message contained a timestamp, use it, otherwise use when the message came into the processor.
-    var timestampMeasurement = message.getLong(SensorMessages.SENSOR_MESSAGE_FIELD_NAME_DATA_TIMESTAMP, timestampMeasurementReceived)
+    var timestampMeasurement = message.getLongValue(SensorMessages.SENSOR_MESSAGE_FIELD_NAME_DATA_TIMESTAMP, timestampMeasurementReceived)
 
     // Go through every property in the data set, find its type, and then create
     // appropriate values.
@@ -102,7 +102,7 @@ class StandardSensedEntityModelProcessor(
 
             // Pick up the measurement timestamp from the channel data if it is there,
             // otherwise use the last determined timestamp
-            timestampMeasurement = message.getLong(
+            timestampMeasurement = message.getLongValue(
                 SensorMessages.SENSOR_MESSAGE_FIELD_NAME_DATA_TIMESTAMP, 
                 timestampMeasurement)
 
@@ -144,6 +144,10 @@ class StandardSensedEntityModelProcessor(
     sensor: SensorEntityModel, message: DynamicObject): Unit = {
 
     sensor.updateHeartbeat(messageReceivedTimestamp)
-    completeSensedEntityModel.eventEmitter.broadcastSensorHeartbeatEvent(new SensorHeartbeatEvent(sensor, messageReceivedTimestamp))
+
+    val eventEmitter = completeSensedEntityModel.eventEmitter
+    if (eventEmitter.hasSensorHeartbeatEventObservers) {
+      eventEmitter.broadcastSensorHeartbeatEvent(new SensorHeartbeatEvent(sensor, messageReceivedTimestamp))
+    }
   }
 }
@@ -193,6 +193,14 @@ class StandardSensorProcessingEventEmitter(
     this(None, spaceEnvironment, log)
   }
 
+  override def hasRawSensorEventObservers(): Boolean = {
+    rawSensorEventSubject.hasObservers()
+  }
+
+  override def hasSensorHeartbeatEventObservers(): Boolean = {
+    sensorHeartbeatEventSubject.hasObservers()
+  }
+
   override def broadcastRawSensorEvent(event: RawSensorLiveEvent): Unit = {
     rawSensorEventSubject.onNext(event)
   }
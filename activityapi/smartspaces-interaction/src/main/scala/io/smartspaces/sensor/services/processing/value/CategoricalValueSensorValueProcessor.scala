@@ -49,8 +49,11 @@ class CategoricalValueSensorValueProcessor(val measurementType: MeasurementTypeD
 
     sensorChannel.updateSensedValue(value, timestampMeasurement)
 
-    processorContext.completeSensedEntityModel.eventEmitter.broadcastRawSensorEvent(
-      new RawSensorLiveEvent(value, sensorChannel, timestampMeasurement, timestampMeasurementReceived))
+    val eventEmitter = processorContext.completeSensedEntityModel.eventEmitter
+    if (eventEmitter.hasRawSensorEventObservers) {
+      eventEmitter.broadcastRawSensorEvent(
+        new RawSensorLiveEvent(value, sensorChannel, timestampMeasurement, timestampMeasurementReceived))
+    }
   }
 }
 
@@ -41,12 +41,15 @@ class NumericContinuousValueSensorValueProcessor(
       channelId: String, data: DynamicObject): Unit = {
     val value =
       new SimpleNumericContinuousSensedValue(sensorChannel,
-        data.getDouble(SensorMessages.SENSOR_MESSAGE_FIELD_NAME_DATA_VALUE), 
+        data.getRequiredDoubleValue(SensorMessages.SENSOR_MESSAGE_FIELD_NAME_DATA_VALUE), 
         timestampMeasurement, timestampMeasurementReceived)
 
     sensorChannel.updateSensedValue(value, timestampMeasurement)
     
-    processorContext.completeSensedEntityModel.eventEmitter.broadcastRawSensorEvent(
-        new RawSensorLiveEvent(value, sensorChannel, timestampMeasurement, timestampMeasurementReceived))
+    val eventEmitter = processorContext.completeSensedEntityModel.eventEmitter
+    if (eventEmitter.hasRawSensorEventObservers) {
+      eventEmitter.broadcastRawSensorEvent(
+          new RawSensorLiveEvent(value, sensorChannel, timestampMeasurement, timestampMeasurementReceived))
+    }
   }
 }
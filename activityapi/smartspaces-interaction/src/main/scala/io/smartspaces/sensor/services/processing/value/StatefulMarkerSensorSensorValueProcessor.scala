@@ -99,7 +99,10 @@ class StatefulMarkerSensorSensorValueProcessor(
     
     sensorChannel.updateSensedValue(value, timestampMeasurement)
     
-    processorContext.completeSensedEntityModel.eventEmitter.broadcastRawSensorEvent(
-        new RawSensorLiveEvent(value, sensorChannel, timestampMeasurement,  timestampMeasurementReceived))
+    val eventEmitter = processorContext.completeSensedEntityModel.eventEmitter
+    if (eventEmitter.hasRawSensorEventObservers) {
+      eventEmitter.broadcastRawSensorEvent(
+          new RawSensorLiveEvent(value, sensorChannel, timestampMeasurement,  timestampMeasurementReceived))
+    }
   }
 }
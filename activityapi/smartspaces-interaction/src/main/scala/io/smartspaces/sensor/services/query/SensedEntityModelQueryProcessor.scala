@@ -17,6 +17,7 @@
 package io.smartspaces.sensor.services.query
 
 import io.smartspaces.messaging.codec.MessageEncoder
+import io.smartspaces.sensor.model.CompleteSensedEntityModel
 import io.smartspaces.sensor.model.PersonSensedEntityModel
 import io.smartspaces.sensor.model.PhysicalSpaceSensedEntityModel
 import io.smartspaces.sensor.model.SensedValue
@@ -157,6 +158,23 @@ trait SensedEntityModelQueryProcessor {
    * @return the converted model
    */
   def getAllSensors[T](converter: MessageEncoder[Iterable[SensorEntityModel], T]): T
+
+  /**
+   * Convert the changes in the complete model.
+   *
+   * <p>
+   * The conversion will take place in a read transaction. The converter decides
+   * which changes it wants, see
+   * [[io.smartspaces.sensor.messaging.codec.SensedEntityModelChangesMessageEncoder]].
+   *
+   * @param converter
+   * 			the converter to be applied to the complete model
+   * @param [T]
+   * 			the return type of the converter
+   *
+   * @return the converted changes
+   */
+  def getModelChanges[T](converter: MessageEncoder[CompleteSensedEntityModel, T]): T
   
   /**
    * Get all of the unknown marker IDs.
@@ -124,6 +124,12 @@ class StandardSensedEntityModelQueryProcessor(private val allModels: CompleteSen
     }
   }
 
+  override def getModelChanges[T](encoder: MessageEncoder[CompleteSensedEntityModel, T]): T = {
+    allModels.doReadTransaction { () =>
+      encoder.encode(allModels)
+    }
+  }
+
   override def getAllUnknownMarkerIds(): Set[String] = {
     allModels.doReadTransaction { () =>
       unknownMarkerHandler.getAllUnknownMarkerIds()
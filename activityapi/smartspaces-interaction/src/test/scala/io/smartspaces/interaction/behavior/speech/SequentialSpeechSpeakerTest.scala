@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.interaction.behavior.speech
+
+import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.service.ServiceRegistry
+import io.smartspaces.service.speech.synthesis.SpeechSynthesisPlayer
+import io.smartspaces.service.speech.synthesis.SpeechSynthesisService
+import io.smartspaces.system.SmartSpacesEnvironment
+
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Matchers
+import org.mockito.Mockito
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+import org.scalatest.junit.JUnitSuite
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Tests for the {@link SequentialSpeechSpeaker}.
+ *
+ * @author Keith M. Hughes
+ */
+class SequentialSpeechSpeakerTest extends JUnitSuite {
+
+  var executorService: ScheduledExecutorService = _
+
+  var speechPlayer: SpeechSynthesisPlayer = _
+
+  var speaker: SequentialSpeechSpeaker = _
+
+  @Before def setup(): Unit = {
+    executorService = Executors.newScheduledThreadPool(2)
+
+    speechPlayer = Mockito.mock(classOf[SpeechSynthesisPlayer])
+    val speechSynthesisService = Mockito.mock(classOf[SpeechSynthesisService])
+    Mockito.when(speechSynthesisService.newPlayer(Matchers.any(classOf[ExtendedLog]))).thenReturn(speechPlayer)
+
+    val serviceRegistry = Mockito.mock(classOf[ServiceRegistry])
+    Mockito.when(serviceRegistry.getRequiredService[SpeechSynthesisService](SpeechSynthesisService.SERVICE_NAME))
+      .thenReturn(speechSynthesisService)
+
+    val spaceEnvironment = Mockito.mock(classOf[SmartSpacesEnvironment])
+    Mockito.when(spaceEnvironment.getExecutorService).thenReturn(executorService)
+    Mockito.when(spaceEnvironment.getServiceRegistry).thenReturn(serviceRegistry)
+
+    speaker = new SequentialSpeechSpeaker(spaceEnvironment, Mockito.mock(classOf[ExtendedLog]))
+  }
+
+  @After def cleanup(): Unit = {
+    executorService.shutdownNow()
+  }
+
+  /**
+   * Test that shutting down interrupts speech in progress and waits for it to
+   * stop before shutting down the player.
+   */
+  @Test def testShutdownDuringSpeech(): Unit = {
+    val speaking = new CountDownLatch(1)
+    val speechStopped = new CountDownLatch(1)
+    Mockito.doAnswer(new Answer[Unit] {
+      override def answer(invocation: InvocationOnMock): Unit = {
+        speaking.countDown()
+        try {
+          Thread.sleep(10000)
+        } catch {
+          case e: InterruptedException =>
+            speechStopped.countDown()
+        }
+      }
+    }).when(speechPlayer).speak("hello", true)
+    Mockito.doAnswer(new Answer[Unit] {
+      override def answer(invocation: InvocationOnMock): Unit = {
+        Assert.assertEquals(0, speechStopped.getCount)
+      }
+    }).when(speechPlayer).shutdown()
+
+    speaker.startup()
+    speaker.addSpeech("hello")
+    speaker.addSpeech("never spoken")
+    Assert.assertTrue(speaking.await(5, TimeUnit.SECONDS))
+
+    speaker.shutdown()
+
+    Assert.assertEquals(0, speechStopped.getCount)
+    Mockito.verify(speechPlayer).shutdown()
+    Mockito.verify(speechPlayer, Mockito.never()).speak("never spoken", true)
+  }
+}
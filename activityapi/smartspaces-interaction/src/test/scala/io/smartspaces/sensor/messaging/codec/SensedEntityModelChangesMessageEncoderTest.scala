@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.messaging.codec
+
+import java.util.{ List => JList }
+import java.util.{ Map => JMap }
+
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mock
+import org.mockito.Mockito
+import org.mockito.MockitoAnnotations
+import org.scalatest.junit.JUnitSuite
+
+import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.messaging.dynamic.SmartSpacesMessages
+import io.smartspaces.sensor.domain.DataSourceAcquisitionModeCategoricalValueInstances
+import io.smartspaces.sensor.domain.DataSourceProviderDescription
+import io.smartspaces.sensor.domain.DataSourceProviderTypeDescription
+import io.smartspaces.sensor.domain.PersonSensedEntityDescription
+import io.smartspaces.sensor.domain.PhysicalSpaceSensedEntityDescription
+import io.smartspaces.sensor.domain.SensorEntityDescription
+import io.smartspaces.sensor.messaging.messages.SensorSmartSpacesMessages
+import io.smartspaces.sensor.model.StandardCompleteSensedEntityModel
+import io.smartspaces.sensor.services.domain.SensorCommonRegistry
+import io.smartspaces.sensor.services.domain.SensorInstanceRegistry
+import io.smartspaces.sensor.services.processing.SensorProcessingEventEmitter
+import io.smartspaces.sensor.services.processing.value.SensorValueProcessorRegistry
+import io.smartspaces.system.SmartSpacesEnvironment
+import io.smartspaces.time.provider.SettableTimeProvider
+
+/**
+ * Tests for the {@link SensedEntityModelChangesMessageEncoder}.
+ *
+ * @author Keith M. Hughes
+ */
+class SensedEntityModelChangesMessageEncoderTest extends JUnitSuite {
+  var allModels: StandardCompleteSensedEntityModel = _
+
+  @Mock var sensorValueProcessorRegistry: SensorValueProcessorRegistry = _
+
+  @Mock var sensorCommonRegistry: SensorCommonRegistry = _
+
+  @Mock var sensorRegistry: SensorInstanceRegistry = _
+
+  @Mock var eventEmitter: SensorProcessingEventEmitter = _
+
+  @Mock var log: ExtendedLog = _
+
+  @Mock var spaceEnvironment: SmartSpacesEnvironment = _
+
+  val timeProvider = new SettableTimeProvider
+
+  val statistics = new SensedEntityModelChangesStatistics
+
+  @Before def setup(): Unit = {
+    MockitoAnnotations.initMocks(this)
+
+    Mockito.when(spaceEnvironment.getTimeProvider).thenReturn(timeProvider)
+
+    allModels = new StandardCompleteSensedEntityModel(
+      sensorValueProcessorRegistry, sensorCommonRegistry, sensorRegistry, eventEmitter, log, spaceEnvironment)
+
+    val providerDescription = Mockito.mock(classOf[DataSourceProviderDescription])
+    Mockito.when(providerDescription.providerId).thenReturn("provider")
+    val providerType = Mockito.mock(classOf[DataSourceProviderTypeDescription])
+    Mockito.when(providerType.acquisitionMode).thenReturn(DataSourceAcquisitionModeCategoricalValueInstances.PUSH)
+    Mockito.when(sensorCommonRegistry.getDataSourceProviderTypeByExternalId("provider")).thenReturn(Some(providerType))
+
+    val sensorDescription = Mockito.mock(classOf[SensorEntityDescription])
+    Mockito.when(sensorDescription.id).thenReturn("1")
+    Mockito.when(sensorDescription.externalId).thenReturn("sensor")
+    Mockito.when(sensorDescription.sensorDataSourceProvider).thenReturn(providerDescription)
+    Mockito.when(sensorDescription.stateUpdateTimeLimit).thenReturn(None)
+    Mockito.when(sensorDescription.heartbeatUpdateTimeLimit).thenReturn(None)
+    allModels.addNewSensorEntity(sensorDescription)
+
+    val physicalSpaceDescription = Mockito.mock(classOf[PhysicalSpaceSensedEntityDescription])
+    Mockito.when(physicalSpaceDescription.id).thenReturn("2")
+    Mockito.when(physicalSpaceDescription.externalId).thenReturn("room")
+    allModels.addNewSensedEntity(physicalSpaceDescription)
+
+    val personDescription = Mockito.mock(classOf[PersonSensedEntityDescription])
+    Mockito.when(personDescription.id).thenReturn("3")
+    Mockito.when(personDescription.externalId).thenReturn("keith")
+    allModels.addNewSensedEntity(personDescription)
+  }
+
+  /**
+   * Test that only changed entities are sent once the client has a version.
+   */
+  @Test def testChanges(): Unit = {
+    val first = encode(0, 0)
+    Assert.assertEquals(true, first.get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_FULL))
+    Assert.assertEquals(List("sensor"), externalIds(first, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_SENSORS))
+    Assert.assertEquals(List("room"), externalIds(first, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_PHYSICAL_SPACES))
+    Assert.assertEquals(List("keith"), externalIds(first, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_PEOPLE))
+
+    val epoch = first.get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_MODEL_EPOCH).asInstanceOf[Long]
+    val version = first.get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_MODEL_VERSION).asInstanceOf[Long]
+    Assert.assertEquals(allModels.modelEpoch, epoch)
+
+    val unchanged = encode(epoch, version)
+    Assert.assertEquals(false, unchanged.get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_FULL))
+    Assert.assertEquals(version, unchanged.get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_MODEL_VERSION))
+    Assert.assertTrue(externalIds(unchanged, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_SENSORS).isEmpty)
+    Assert.assertTrue(externalIds(unchanged, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_PHYSICAL_SPACES).isEmpty)
+    Assert.assertTrue(externalIds(unchanged, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_PEOPLE).isEmpty)
+    Assert.assertTrue(list(unchanged, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_OCCUPANCY_EVENTS).isEmpty)
+
+    allModels.getPhysicalSpaceSensedEntityModelByExternalId("room").get.occupantEntered(
+      allModels.getPersonSensedEntityModelByExternalId("keith").get, 1000, 1001)
+
+    val entered = encode(epoch, version)
+    Assert.assertEquals(false, entered.get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_FULL))
+    Assert.assertTrue(externalIds(entered, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_SENSORS).isEmpty)
+    Assert.assertEquals(List("room"), externalIds(entered, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_PHYSICAL_SPACES))
+    val people = list(entered, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_PEOPLE)
+    Assert.assertEquals(1, people.size)
+    Assert.assertEquals("room", people.head.get(SensorSmartSpacesMessages.MESSAGE_ENTITY_PERSON_LOCATION))
+    val events = list(entered, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_OCCUPANCY_EVENTS)
+    Assert.assertEquals(1, events.size)
+    Assert.assertEquals("keith", events.head.get("personExternalId"))
+    Assert.assertEquals("PRESENT", events.head.get("presence"))
+
+    val enteredVersion = entered.get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_MODEL_VERSION).asInstanceOf[Long]
+    allModels.getSensorEntityModelByExternalId("sensor").get.updateHeartbeat(2000)
+
+    val heartbeat = encode(epoch, enteredVersion)
+    Assert.assertEquals(List("sensor"), externalIds(heartbeat, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_SENSORS))
+    Assert.assertTrue(externalIds(heartbeat, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_PHYSICAL_SPACES).isEmpty)
+    Assert.assertTrue(list(heartbeat, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_OCCUPANCY_EVENTS).isEmpty)
+
+    Assert.assertEquals(1, statistics.fullResponseCount)
+    Assert.assertEquals(3, statistics.deltaResponseCount)
+    Assert.assertTrue(statistics.deltaResponseBytes / 3 < statistics.fullResponseBytes)
+  }
+
+  /**
+   * Test that a full snapshot is sent when the client's version cannot be used.
+   */
+  @Test def testVersionGap(): Unit = {
+    val version = allModels.modelVersion
+
+    Assert.assertEquals(true, encode(allModels.modelEpoch + 1, version).get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_FULL))
+    Assert.assertEquals(true, encode(allModels.modelEpoch, version + 1).get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_FULL))
+
+    allModels.occupancyEventHistorySize = 1
+    val room = allModels.getPhysicalSpaceSensedEntityModelByExternalId("room").get
+    val person = allModels.getPersonSensedEntityModelByExternalId("keith").get
+    room.occupantEntered(person, 1000, 1001)
+    room.occupantExited(person, 2000, 2001)
+
+    val gap = encode(allModels.modelEpoch, version)
+    Assert.assertEquals(true, gap.get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_FULL))
+    Assert.assertEquals(List("sensor"), externalIds(gap, SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_SENSORS))
+    Assert.assertNull(gap.get(SensorSmartSpacesMessages.MESSAGE_MODEL_CHANGES_OCCUPANCY_EVENTS))
+    Assert.assertEquals(3, statistics.fullResponseCount)
+  }
+
+  /**
+   * Encode the changes since a version.
+   *
+   * @param epoch
+   *          the model epoch the client knows about
+   * @param version
+   *          the model version the client knows about
+   *
+   * @return the data section of the message
+   */
+  private def encode(epoch: Long, version: Long): JMap[String, Object] = {
+    val encoder = new SensedEntityModelChangesMessageEncoder("changes", epoch, version, Some(statistics))
+    val message = encoder.encode(allModels).toMap()
+
+    message.get(SmartSpacesMessages.MESSAGE_ENVELOPE_DATA).asInstanceOf[JMap[String, Object]]
+  }
+
+  /**
+   * Get a list of objects from the data.
+   */
+  private def list(data: JMap[String, Object], name: String): List[JMap[String, Object]] = {
+    val list = data.get(name).asInstanceOf[JList[JMap[String, Object]]]
+    List(list.toArray(): _*).map(_.asInstanceOf[JMap[String, Object]])
+  }
+
+  /**
+   * Get the external IDs of a list of entities from the data.
+   */
+  private def externalIds(data: JMap[String, Object], name: String): List[Object] = {
+    list(data, name).map(_.get(SensorSmartSpacesMessages.MESSAGE_ENTITY_COMMON_EXTERNAL_ID))
+  }
+}
@@ -120,7 +120,7 @@ class SimpleSensorChannelEntityModelTest extends JUnitSuite {
     Assert.assertTrue(model.timestampLastStateUpdate.isEmpty)
     
     val trigger = Mockito.mock(classOf[SensorChannelSensedValueRuleTrigger])
-    model.addSensorChannelSensedValueRuleTrigger(trigger)
+    model.addSensorChannelSensedValueRuleEvaluator(trigger)
 
     model.updateSensedValue(value, timestampCurrent)
 
@@ -16,11 +16,15 @@
 
 package io.smartspaces.sensor.model
 
+import org.junit.Assert
 import org.junit.Before
 import org.junit.Test
+import org.mockito.Matchers
 import org.mockito.Mock
 import org.mockito.Mockito
 import org.mockito.MockitoAnnotations
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
 import org.scalatest.junit.JUnitSuite
 import io.smartspaces.event.observable.EventObservableRegistry
 import io.smartspaces.logging.ExtendedLog
@@ -32,6 +36,9 @@ import io.smartspaces.sensor.services.processing.value.SensorValueProcessorRegis
 import io.smartspaces.system.SmartSpacesEnvironment
 import io.smartspaces.time.provider.SettableTimeProvider
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 /**
  * Test the {@link #StandardCompleteSensedEntityModel}.
  *
@@ -70,26 +77,10 @@ class StandardCompleteSensedEntityModelTest extends JUnitSuite {
    * Test that a simple sensor model happens and that no event is emitted.
    */
   @Test def testModelCheck(): Unit = {
-    val channelModel1 = Mockito.mock(classOf[SensorChannelEntityModel])
-    val channelModel2 = Mockito.mock(classOf[SensorChannelEntityModel])
-
-    val sensorModel = Mockito.mock(classOf[SensorEntityModel])
-    val sensorDescription = Mockito.mock(classOf[SensorEntityDescription])
-    Mockito.when(sensorModel.sensorEntityDescription).thenReturn(sensorDescription)
-    Mockito.when(sensorModel.getAllSensorChannelModels()).thenReturn(List(channelModel1, channelModel2))
-
     val checkTime = 12345l
+    val (sensorModel, channelModel1, channelModel2) = newSensorModel(checkTime)
     Mockito.when(sensorModel.checkIfOfflineTransition(checkTime)).thenReturn(false)
 
-    val externalId = "foo"
-
-    Mockito.when(sensorDescription.externalId).thenReturn(externalId)
-    Mockito.when(sensorDescription.active).thenReturn(true)
-
-    timeProvider.setCurrentTime(10000)
-
-    allModels.registerSensorModel(sensorModel)
-
     timeProvider.setCurrentTime(checkTime)
 
     allModels.performModelCheck()
@@ -103,6 +94,83 @@ class StandardCompleteSensedEntityModelTest extends JUnitSuite {
    * Test that a simple sensor model happens and that the sensor is offline. Channels should not be checked.
    */
   @Test def testModelCheckSensorOffline(): Unit = {
+    val checkTime = 12345l
+    val (sensorModel, channelModel1, channelModel2) = newSensorModel(checkTime)
+    Mockito.when(sensorModel.checkIfOfflineTransition(checkTime)).thenReturn(true)
+
+    timeProvider.setCurrentTime(checkTime)
+
+    allModels.performModelCheck()
+
+    Mockito.verify(sensorModel).checkIfOfflineTransition(checkTime)
+    Mockito.verify(channelModel1, Mockito.times(0)).checkIfOfflineTransition(checkTime)
+    Mockito.verify(channelModel2, Mockito.times(0)).checkIfOfflineTransition(checkTime)
+
+    // The channels are left for the next check.
+    val nextCheckTime = checkTime + 250
+    timeProvider.setCurrentTime(nextCheckTime)
+
+    allModels.performModelCheck()
+
+    Mockito.verify(channelModel1).checkIfOfflineTransition(nextCheckTime)
+    Mockito.verify(channelModel2).checkIfOfflineTransition(nextCheckTime)
+  }
+
+  /**
+   * Test that models whose offline deadlines have not passed are not checked.
+   */
+  @Test def testModelCheckBeforeDeadline(): Unit = {
+    val checkTime = 12345l
+    val (sensorModel, channelModel1, channelModel2) = newSensorModel(checkTime + 1)
+
+    timeProvider.setCurrentTime(checkTime)
+
+    allModels.performModelCheck()
+
+    Mockito.verify(sensorModel, Mockito.never()).checkIfOfflineTransition(Matchers.anyLong())
+    Mockito.verify(channelModel1, Mockito.never()).checkIfOfflineTransition(Matchers.anyLong())
+    Mockito.verify(channelModel2, Mockito.never()).checkIfOfflineTransition(Matchers.anyLong())
+  }
+
+  /**
+   * Test that readers of the model are kept out while a model goes offline.
+   */
+  @Test def testModelCheckTransitionLocked(): Unit = {
+    val checkTime = 12345l
+    val (sensorModel, channelModel1, channelModel2) = newSensorModel(checkTime)
+
+    val readDone = new CountDownLatch(1)
+    val reader = new Thread(new Runnable {
+      override def run(): Unit = {
+        allModels.doVoidReadTransaction(() => readDone.countDown())
+      }
+    })
+    Mockito.when(sensorModel.checkIfOfflineTransition(checkTime)).thenAnswer(new Answer[Boolean] {
+      override def answer(invocation: InvocationOnMock): Boolean = {
+        reader.start()
+        Assert.assertFalse(readDone.await(100, TimeUnit.MILLISECONDS))
+
+        true
+      }
+    })
+
+    timeProvider.setCurrentTime(checkTime)
+
+    allModels.performModelCheck()
+
+    Assert.assertTrue(readDone.await(1, TimeUnit.SECONDS))
+  }
+
+  /**
+   * Create a mock sensor model with two channels, all with the same offline deadline, and
+   * place it in the model.
+   *
+   * @param offlineDeadline
+   *        the offline deadline
+   *
+   * @return the sensor model and its channels
+   */
+  private def newSensorModel(offlineDeadline: Long): (SensorEntityModel, SensorChannelEntityModel, SensorChannelEntityModel) = {
     val channelModel1 = Mockito.mock(classOf[SensorChannelEntityModel])
     val channelModel2 = Mockito.mock(classOf[SensorChannelEntityModel])
 
@@ -110,25 +178,22 @@ class StandardCompleteSensedEntityModelTest extends JUnitSuite {
     val sensorDescription = Mockito.mock(classOf[SensorEntityDescription])
     Mockito.when(sensorModel.sensorEntityDescription).thenReturn(sensorDescription)
     Mockito.when(sensorModel.getAllSensorChannelModels()).thenReturn(List(channelModel1, channelModel2))
+    Mockito.when(sensorModel.timestampOfflineDeadline).thenReturn(Some(offlineDeadline))
 
-    val checkTime = 12345l
-    Mockito.when(sensorModel.checkIfOfflineTransition(checkTime)).thenReturn(true)
-
-    val externalId = "foo"
-
-    Mockito.when(sensorDescription.externalId).thenReturn(externalId)
+    Mockito.when(sensorDescription.externalId).thenReturn("foo")
     Mockito.when(sensorDescription.active).thenReturn(true)
 
+    List(channelModel1, channelModel2).foreach { (channelModel) =>
+      Mockito.when(channelModel.sensorModel).thenReturn(sensorModel)
+      Mockito.when(channelModel.timestampOfflineDeadline).thenReturn(Some(offlineDeadline))
+    }
+
     timeProvider.setCurrentTime(10000)
 
     allModels.registerSensorModel(sensorModel)
+    allModels.armOfflineDeadline(channelModel1)
+    allModels.armOfflineDeadline(channelModel2)
 
-    timeProvider.setCurrentTime(checkTime)
-
-    allModels.performModelCheck()
-
-    Mockito.verify(sensorModel).checkIfOfflineTransition(checkTime)
-    Mockito.verify(channelModel1, Mockito.times(0)).checkIfOfflineTransition(checkTime)
-    Mockito.verify(channelModel2, Mockito.times(0)).checkIfOfflineTransition(checkTime)
+    (sensorModel, channelModel1, channelModel2)
   }
-}
\ No newline at end of file
+}
@@ -26,6 +26,9 @@ import io.smartspaces.sensor.model.SimpleNumericContinuousSensedValue
 import io.smartspaces.interaction.rules.StandardRule
 import io.smartspaces.evaluation.ExecutionContext
 import org.junit.Assert
+import io.smartspaces.sensor.model.window.SensedValueHistogram
+import io.smartspaces.sensor.model.window.SensedValueWindow
+import io.smartspaces.sensor.model.window.SlidingSensedValueWindow
 
 /**
  * Tests for the various components for sensed value rules.
@@ -148,4 +151,89 @@ class SensedValueRuleComponentsTest extends JUnitSuite {
       RuleComponentConstants.DATA_FIELD_NAME_THRESHOLD_COMPARISON_TYPE,
       RuleComponentConstants.DATA_FIELD_VALUE_THRESHOLD_COMPARISON_TYPE_BELOW)
   }
+
+  /**
+   * Test the rule guard for a statistic of a sensor channel window.
+   */
+  @Test def testSensedValueWindowStatisticRuleGuard(): Unit = {
+    val rootExecutionContext = Mockito.mock(classOf[ExecutionContext])
+
+    val rule = new StandardRule("foo", rootExecutionContext)
+
+    val sensorChannelModel = Mockito.mock(classOf[SensorChannelEntityModel])
+
+    val window = new SlidingSensedValueWindow("window", 1000, 10)
+    Mockito.when(sensorChannelModel.getSensedValueWindow("window")).thenReturn(Some(window))
+
+    val valueName = "glorp"
+
+    val threshold = 10.0
+    val guard = new SensedValueWindowStatisticRuleGuard("window", SensedValueWindow.STATISTIC_MEAN,
+      RuleComponentConstants.DATA_FIELD_VALUE_THRESHOLD_COMPARISON_TYPE_ABOVE, threshold, valueName)
+
+    window.addValue(900, 5)
+    window.addValue(1000, 20)
+    val sensedValue = new SimpleNumericContinuousSensedValue(
+      sensorChannelModel, 20, None, 1000, 1000)
+    val executionContextTrue = Mockito.mock(classOf[ExecutionContext])
+    Mockito.when(executionContextTrue.getValue(valueName)).
+      thenReturn(sensedValue)
+
+    Assert.assertTrue(guard.evaluate(rule, executionContextTrue))
+    Mockito.verify(executionContextTrue, Mockito.times(1)).setValue(
+      RuleComponentConstants.DATA_FIELD_NAME_WINDOW_STATISTIC_VALUE,
+      12.5)
+
+    window.addValue(1100, 0)
+    val executionContextFalse = Mockito.mock(classOf[ExecutionContext])
+    Mockito.when(executionContextFalse.getValue(valueName)).
+      thenReturn(new SimpleNumericContinuousSensedValue(
+        sensorChannelModel, 0, None, 1100, 1100))
+
+    Assert.assertFalse(guard.evaluate(rule, executionContextFalse))
+    Mockito.verify(executionContextFalse, Mockito.times(0)).setValue(
+      RuleComponentConstants.DATA_FIELD_NAME_THRESHOLD,
+      threshold)
+  }
+
+  /**
+   * Test the rule guard for a percentile of a sensor channel window.
+   */
+  @Test def testSensedValueWindowPercentileRuleGuard(): Unit = {
+    val rootExecutionContext = Mockito.mock(classOf[ExecutionContext])
+
+    val rule = new StandardRule("foo", rootExecutionContext)
+
+    val sensorChannelModel = Mockito.mock(classOf[SensorChannelEntityModel])
+
+    val window = new SlidingSensedValueWindow("window", 1000, 100, Some(new SensedValueHistogram(0, 100, 100)))
+    Mockito.when(sensorChannelModel.getSensedValueWindow("window")).thenReturn(Some(window))
+
+    val valueName = "glorp"
+
+    val guard = new SensedValueWindowStatisticRuleGuard("window", "p95",
+      RuleComponentConstants.DATA_FIELD_VALUE_THRESHOLD_COMPARISON_TYPE_ABOVE, 90.0, valueName)
+
+    (0 until 100).foreach((i) => window.addValue(900 + i, i))
+    val executionContextTrue = Mockito.mock(classOf[ExecutionContext])
+    Mockito.when(executionContextTrue.getValue(valueName)).
+      thenReturn(new SimpleNumericContinuousSensedValue(
+        sensorChannelModel, 99, None, 999, 999))
+
+    Assert.assertTrue(guard.evaluate(rule, executionContextTrue))
+    Mockito.verify(executionContextTrue, Mockito.times(1)).setValue(
+      RuleComponentConstants.DATA_FIELD_NAME_WINDOW_STATISTIC_VALUE,
+      94.5)
+
+    val windowWithoutPercentiles = new SlidingSensedValueWindow("window", 1000, 100)
+    Mockito.when(sensorChannelModel.getSensedValueWindow("window")).thenReturn(Some(windowWithoutPercentiles))
+    windowWithoutPercentiles.addValue(999, 99)
+
+    val executionContextFalse = Mockito.mock(classOf[ExecutionContext])
+    Mockito.when(executionContextFalse.getValue(valueName)).
+      thenReturn(new SimpleNumericContinuousSensedValue(
+        sensorChannelModel, 99, None, 999, 999))
+
+    Assert.assertFalse(guard.evaluate(rule, executionContextFalse))
+  }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.rules
+
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.mockito.ArgumentCaptor
+import org.mockito.Matchers
+import org.mockito.Mockito
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+import org.scalatest.junit.JUnitSuite
+
+import io.smartspaces.evaluation.ExecutionContext
+import io.smartspaces.evaluation.LocalExecutionContext
+import io.smartspaces.interaction.rules.Rule
+import io.smartspaces.interaction.rules.RuleAction
+import io.smartspaces.interaction.rules.StandardRule
+import io.smartspaces.sensor.model.SensorChannelEntityModel
+import io.smartspaces.sensor.model.SimpleNumericContinuousSensedValue
+
+/**
+ * Tests for the sensed value rule network.
+ *
+ * @author Keith M. Hughes
+ */
+class SensedValueRuleNetworkTest extends JUnitSuite {
+
+  val valueName = "glorp"
+
+  var rootExecutionContext: ExecutionContext = _
+
+  var sensorChannelModel: SensorChannelEntityModel = _
+
+  @Before def setup(): Unit = {
+    rootExecutionContext = Mockito.mock(classOf[ExecutionContext])
+    sensorChannelModel = Mockito.mock(classOf[SensorChannelEntityModel])
+  }
+
+  /**
+   * Test that rules sharing guards share guard nodes and that only the rules
+   * whose guards all pass have their actions run.
+   */
+  @Test def testSharedGuards(): Unit = {
+    val (rule1, action1, trigger1) = newRule("rule1")
+    rule1.addRuleGuard(new SimpleNumericContinuousSensedValueAboveRuleGuard(10, valueName))
+
+    // Guards are added to the front of a rule, so this rule checks above 10 first.
+    val (rule2, action2, _) = newRule("rule2")
+    rule2.addRuleGuard(new SimpleNumericContinuousSensedValueBelowRuleGuard(100, valueName))
+    rule2.addRuleGuard(new SimpleNumericContinuousSensedValueAboveRuleGuard(10, valueName))
+
+    val (rule3, action3, _) = newRule("rule3")
+    rule3.addRuleGuard(new SimpleNumericContinuousSensedValueAboveRuleGuard(50, valueName))
+
+    val network = new SensedValueRuleNetworkCompiler().compile(
+      List(rule1, rule2, rule3), rootExecutionContext)
+    Assert.assertEquals(3, network.numberCompiledTriggers)
+    Assert.assertEquals(3, network.numberGuardNodes)
+
+    val evaluator = attach(network)
+    Mockito.verify(sensorChannelModel).removeSensorChannelSensedValueRuleEvaluator(trigger1)
+
+    val sensedValue = newSensedValue(20)
+    evaluator.updateValue(sensedValue)
+
+    val context = ArgumentCaptor.forClass(classOf[ExecutionContext])
+    Mockito.verify(action1).evaluate(Matchers.eq(rule1), Matchers.eq(trigger1), context.capture())
+    Assert.assertEquals(sensedValue, context.getValue.getValue[Any](valueName))
+    Assert.assertEquals(10.0, context.getValue.getValue[Any](RuleComponentConstants.DATA_FIELD_NAME_THRESHOLD))
+    Mockito.verify(action2).evaluate(Matchers.eq(rule2), Matchers.any(), Matchers.any())
+    Mockito.verify(action3, Mockito.never()).evaluate(Matchers.any(), Matchers.any(), Matchers.any())
+
+    evaluator.updateValue(newSensedValue(5))
+    Mockito.verify(action1, Mockito.times(1)).evaluate(Matchers.any(), Matchers.any(), Matchers.any())
+
+    network.detach()
+    Mockito.verify(sensorChannelModel).removeSensorChannelSensedValueRuleEvaluator(evaluator)
+  }
+
+  /**
+   * Test that guards which write the same data give the same data through the
+   * network as when the rules evaluate themselves, whatever order the rules
+   * give their guards in.
+   */
+  @Test def testGuardOrder(): Unit = {
+    Mockito.when(rootExecutionContext.push()).thenAnswer(new Answer[ExecutionContext] {
+      override def answer(invocation: InvocationOnMock): ExecutionContext = {
+        new LocalExecutionContext(rootExecutionContext)
+      }
+    })
+
+    val (aboveLastRule, aboveLastAction, aboveLastTrigger) = newRule("aboveLast")
+    aboveLastRule.addRuleGuard(new SimpleNumericContinuousSensedValueBelowRuleGuard(100, valueName))
+    aboveLastRule.addRuleGuard(new SimpleNumericContinuousSensedValueAboveRuleGuard(10, valueName))
+
+    val (belowLastRule, belowLastAction, belowLastTrigger) = newRule("belowLast")
+    belowLastRule.addRuleGuard(new SimpleNumericContinuousSensedValueAboveRuleGuard(10, valueName))
+    belowLastRule.addRuleGuard(new SimpleNumericContinuousSensedValueBelowRuleGuard(100, valueName))
+
+    val sensedValue = newSensedValue(20)
+    aboveLastTrigger.updateValue(sensedValue)
+    belowLastTrigger.updateValue(sensedValue)
+    val aboveLastExpected = captureThreshold(aboveLastAction, aboveLastRule)
+    val belowLastExpected = captureThreshold(belowLastAction, belowLastRule)
+    Assert.assertNotEquals(aboveLastExpected, belowLastExpected)
+
+    val network = new SensedValueRuleNetworkCompiler().compile(
+      List(aboveLastRule, belowLastRule), rootExecutionContext)
+    attach(network).updateValue(sensedValue)
+
+    Assert.assertEquals(aboveLastExpected, captureThreshold(aboveLastAction, aboveLastRule))
+    Assert.assertEquals(belowLastExpected, captureThreshold(belowLastAction, belowLastRule))
+  }
+
+  /**
+   * Test that a large number of rules with few distinct guards only needs a
+   * guard node per distinct guard.
+   */
+  @Test def testManyRules(): Unit = {
+    val numberRules = 1000
+    val numberThresholds = 10
+
+    val actions = (0 until numberRules).map { i =>
+      val (rule, action, _) = newRule("rule" + i)
+      rule.addRuleGuard(new SimpleNumericContinuousSensedValueAboveRuleGuard(i % numberThresholds, valueName))
+
+      (rule, action)
+    }
+
+    val network = new SensedValueRuleNetworkCompiler().compile(actions.map(_._1), rootExecutionContext)
+    Assert.assertEquals(numberRules, network.numberCompiledTriggers)
+    Assert.assertEquals(numberThresholds, network.numberGuardNodes)
+
+    attach(network).updateValue(newSensedValue(4.5))
+
+    actions.zipWithIndex.foreach {
+      case ((rule, action), i) =>
+        val times = if (i % numberThresholds < 4.5) 1 else 0
+        Mockito.verify(action, Mockito.times(times)).evaluate(Matchers.eq(rule), Matchers.any(), Matchers.any())
+    }
+  }
+
+  /**
+   * Create a rule triggered by the sensor channel.
+   *
+   * @param ruleName
+   *        name of the rule
+   *
+   * @return the rule, its action, and its trigger
+   */
+  private def newRule(ruleName: String): (Rule, RuleAction, SensorChannelSensedValueRuleTrigger) = {
+    val rule = new StandardRule(ruleName, rootExecutionContext)
+
+    val trigger = new SensorChannelSensedValueRuleTrigger("trigger", rule, sensorChannelModel, valueName)
+    rule.addRuleTrigger(trigger)
+
+    val action = Mockito.mock(classOf[RuleAction])
+    rule.addRuleAction(action)
+
+    (rule, action, trigger)
+  }
+
+  /**
+   * Attach the network and get the evaluator it added to the channel.
+   */
+  private def attach(network: SensedValueRuleNetwork): SensorChannelSensedValueRuleEvaluator = {
+    network.attach()
+
+    val evaluator = ArgumentCaptor.forClass(classOf[SensorChannelSensedValueRuleEvaluator])
+    Mockito.verify(sensorChannelModel, Mockito.atLeastOnce()).addSensorChannelSensedValueRuleEvaluator(
+      evaluator.capture())
+
+    evaluator.getAllValues.get(evaluator.getAllValues.size - 1)
+  }
+
+  /**
+   * Get the threshold the most recent evaluation of a rule's action was given.
+   */
+  private def captureThreshold(action: RuleAction, rule: Rule): Any = {
+    val context = ArgumentCaptor.forClass(classOf[ExecutionContext])
+    Mockito.verify(action, Mockito.atLeastOnce()).evaluate(Matchers.eq(rule), Matchers.any(), context.capture())
+
+    context.getValue.getValue[Any](RuleComponentConstants.DATA_FIELD_NAME_THRESHOLD)
+  }
+
+  private def newSensedValue(value: Double): SimpleNumericContinuousSensedValue = {
+    new SimpleNumericContinuousSensedValue(sensorChannelModel, value, None, 1000, 1000)
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.snapshot
+
+import java.io.File
+import java.nio.file.Files
+
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Matchers
+import org.mockito.Mock
+import org.mockito.Mockito
+import org.mockito.MockitoAnnotations
+import org.scalatest.junit.JUnitSuite
+
+import io.smartspaces.data.entity.StandardValueRegistry
+import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.sensor.domain.DataSourceAcquisitionModeCategoricalValueInstances
+import io.smartspaces.sensor.domain.DataSourceProviderDescription
+import io.smartspaces.sensor.domain.DataSourceProviderTypeDescription
+import io.smartspaces.sensor.domain.MeasurementTypeDescription
+import io.smartspaces.sensor.domain.PersonSensedEntityDescription
+import io.smartspaces.sensor.domain.PhysicalSpaceSensedEntityDescription
+import io.smartspaces.sensor.domain.SensorChannelDetailDescription
+import io.smartspaces.sensor.domain.SensorEntityDescription
+import io.smartspaces.sensor.domain.SimpleSensorSensedEntityAssociationDescription
+import io.smartspaces.sensor.model.StandardCompleteSensedEntityModel
+import io.smartspaces.sensor.model.SimpleSensedValue
+import io.smartspaces.sensor.services.domain.SensorCommonRegistry
+import io.smartspaces.sensor.services.domain.SensorInstanceRegistry
+import io.smartspaces.sensor.services.processing.SensorProcessingEventEmitter
+import io.smartspaces.sensor.services.processing.value.SensorValueProcessor
+import io.smartspaces.sensor.services.processing.value.SensorValueProcessorRegistry
+import io.smartspaces.sensor.value.entity.PresenceCategoricalValue
+import io.smartspaces.sensor.value.entity.PresenceCategoricalValueInstances
+import io.smartspaces.system.SmartSpacesEnvironment
+import io.smartspaces.time.provider.SettableTimeProvider
+import io.smartspaces.util.io.FileSupportImpl
+
+/**
+ * Tests for the {@link StandardSensedEntityModelSnapshotter}.
+ *
+ * @author Keith M. Hughes
+ */
+class StandardSensedEntityModelSnapshotterTest extends JUnitSuite {
+
+  @Mock var sensorValueProcessorRegistry: SensorValueProcessorRegistry = _
+
+  @Mock var sensorCommonRegistry: SensorCommonRegistry = _
+
+  @Mock var sensorRegistry: SensorInstanceRegistry = _
+
+  @Mock var eventEmitter: SensorProcessingEventEmitter = _
+
+  @Mock var log: ExtendedLog = _
+
+  @Mock var spaceEnvironment: SmartSpacesEnvironment = _
+
+  val timeProvider = new SettableTimeProvider
+
+  val valueRegistry = StandardValueRegistry.registerCategoricalValues(PresenceCategoricalValue)
+
+  var baseDirectory: File = _
+
+  var snapshotFile: File = _
+
+  @Before def setup(): Unit = {
+    MockitoAnnotations.initMocks(this)
+
+    Mockito.when(spaceEnvironment.getTimeProvider).thenReturn(timeProvider)
+    Mockito.when(sensorValueProcessorRegistry.getSensorValueProcessor(Matchers.anyString())).thenReturn(
+      Some(Mockito.mock(classOf[SensorValueProcessor])))
+
+    val providerDescription = Mockito.mock(classOf[DataSourceProviderDescription])
+    Mockito.when(providerDescription.providerId).thenReturn("provider")
+    val providerType = Mockito.mock(classOf[DataSourceProviderTypeDescription])
+    Mockito.when(providerType.acquisitionMode).thenReturn(DataSourceAcquisitionModeCategoricalValueInstances.PUSH)
+    Mockito.when(sensorCommonRegistry.getDataSourceProviderTypeByExternalId("provider")).thenReturn(Some(providerType))
+
+    val sensorDescription = Mockito.mock(classOf[SensorEntityDescription])
+    Mockito.when(sensorDescription.id).thenReturn("1")
+    Mockito.when(sensorDescription.externalId).thenReturn("sensor")
+    Mockito.when(sensorDescription.sensorDataSourceProvider).thenReturn(providerDescription)
+    Mockito.when(sensorDescription.stateUpdateTimeLimit).thenReturn(None)
+    Mockito.when(sensorDescription.heartbeatUpdateTimeLimit).thenReturn(None)
+
+    val physicalSpaceDescription = Mockito.mock(classOf[PhysicalSpaceSensedEntityDescription])
+    Mockito.when(physicalSpaceDescription.id).thenReturn("2")
+    Mockito.when(physicalSpaceDescription.externalId).thenReturn("room")
+
+    val personDescription = Mockito.mock(classOf[PersonSensedEntityDescription])
+    Mockito.when(personDescription.id).thenReturn("3")
+    Mockito.when(personDescription.externalId).thenReturn("keith")
+
+    val measurementType = Mockito.mock(classOf[MeasurementTypeDescription])
+    Mockito.when(measurementType.externalId).thenReturn("measurement")
+
+    val temperatureChannel = Mockito.mock(classOf[SensorChannelDetailDescription])
+    Mockito.when(temperatureChannel.channelId).thenReturn("temperature")
+    Mockito.when(temperatureChannel.measurementType).thenReturn(measurementType)
+    Mockito.when(temperatureChannel.stateUpdateTimeLimit).thenReturn(Some(60000l))
+
+    val presenceChannel = Mockito.mock(classOf[SensorChannelDetailDescription])
+    Mockito.when(presenceChannel.channelId).thenReturn("presence")
+    Mockito.when(presenceChannel.measurementType).thenReturn(measurementType)
+    Mockito.when(presenceChannel.stateUpdateTimeLimit).thenReturn(None)
+    Mockito.when(presenceChannel.heartbeatUpdateTimeLimit).thenReturn(None)
+
+    Mockito.when(sensorRegistry.getAllSensorEntities).thenReturn(List(sensorDescription))
+    Mockito.when(sensorRegistry.getAllSensedEntities).thenReturn(List(physicalSpaceDescription, personDescription))
+    Mockito.when(sensorRegistry.getMarkerMarkedEntityAssociations).thenReturn(List())
+    Mockito.when(sensorRegistry.getSensorSensedEntityAssociations).thenReturn(List(
+      SimpleSensorSensedEntityAssociationDescription(sensorDescription, temperatureChannel, physicalSpaceDescription, None, None),
+      SimpleSensorSensedEntityAssociationDescription(sensorDescription, presenceChannel, physicalSpaceDescription, None, None)))
+
+    baseDirectory = Files.createTempDirectory("snapshot").toFile()
+    snapshotFile = new File(baseDirectory, "model.snapshot")
+  }
+
+  @After def cleanup(): Unit = {
+    FileSupportImpl.INSTANCE.deleteDirectoryContents(baseDirectory)
+    baseDirectory.delete()
+  }
+
+  /**
+   * Test that values, update times and locations are restored into a new model.
+   */
+  @Test def testSaveAndRestore(): Unit = {
+    timeProvider.setCurrentTime(100000)
+    val original = newModel()
+    val sensor = original.getSensorEntityModelByExternalId("sensor").get
+    sensor.getSensorChannelEntityModel("temperature").get.updateSensedValue(
+      new SimpleSensedValue(sensor.getSensorChannelEntityModel("temperature").get, 21.5, None, 90000, 90001), 90001)
+    sensor.getSensorChannelEntityModel("presence").get.updateSensedValue(
+      new SimpleSensedValue(sensor.getSensorChannelEntityModel("presence").get, PresenceCategoricalValueInstances.PRESENT, None, 10000, 10001), 10001)
+    sensor.updateHeartbeat(95000)
+    original.getPhysicalSpaceSensedEntityModelByExternalId("room").get.occupantEntered(
+      original.getPersonSensedEntityModelByExternalId("keith").get, 80000, 80001)
+
+    newSnapshotter(original).saveSnapshot()
+    Assert.assertTrue(snapshotFile.isFile())
+
+    Mockito.reset(eventEmitter)
+    timeProvider.setCurrentTime(120000)
+    val restored = newModel()
+    Assert.assertTrue(newSnapshotter(restored).restoreSnapshot())
+
+    val restoredSensor = restored.getSensorEntityModelByExternalId("sensor").get
+    Assert.assertFalse(restoredSensor.online)
+    Assert.assertEquals(Some(10001l), restoredSensor.timestampLastStateUpdate)
+    Assert.assertEquals(Some(95000l), restoredSensor.timestampLastHeartbeatUpdate)
+
+    // Within the channel's state update time limit.
+    val temperature = restoredSensor.getSensorChannelEntityModel("temperature").get.mostRecentSensedValue
+    Assert.assertEquals(21.5, temperature.value)
+    Assert.assertEquals(90000l, temperature.timestampMeasurement)
+    Assert.assertTrue(temperature.restored)
+    Assert.assertFalse(temperature.stale)
+
+    // Older than the stale age, since the channel has no state update time limit.
+    val presence = restoredSensor.getSensorChannelEntityModel("presence").get.mostRecentSensedValue
+    Assert.assertEquals(PresenceCategoricalValueInstances.PRESENT, presence.value)
+    Assert.assertTrue(presence.restored)
+    Assert.assertTrue(presence.stale)
+
+    val person = restored.getPersonSensedEntityModelByExternalId("keith").get
+    Assert.assertEquals("room", person.physicalSpaceLocation.sensedEntityDescription.externalId)
+    Assert.assertEquals(80000l, person.physicalSpaceLocationTimestamp)
+    Assert.assertEquals(Set(person), restored.getPhysicalSpaceSensedEntityModelByExternalId("room").get.getOccupants())
+
+    Mockito.verify(eventEmitter, Mockito.never()).broadcastOccupancyEvent(Matchers.any())
+  }
+
+  /**
+   * Test that an unchanged model is not written again, and a missing or
+   * damaged snapshot leaves the model empty.
+   */
+  @Test def testUnchangedAndMissing(): Unit = {
+    val model = newModel()
+    val snapshotter = newSnapshotter(model)
+    Assert.assertFalse(snapshotter.restoreSnapshot())
+
+    snapshotter.saveSnapshot()
+    Assert.assertTrue(snapshotFile.delete())
+    snapshotter.saveSnapshot()
+    Assert.assertFalse(snapshotFile.exists())
+
+    FileSupportImpl.INSTANCE.writeFile(snapshotFile, "not a snapshot")
+    Assert.assertFalse(newSnapshotter(newModel()).restoreSnapshot())
+  }
+
+  /**
+   * Create a new model from the registry.
+   */
+  private def newModel(): StandardCompleteSensedEntityModel = {
+    val model = new StandardCompleteSensedEntityModel(
+      sensorValueProcessorRegistry, sensorCommonRegistry, sensorRegistry, eventEmitter, log, spaceEnvironment)
+    model.prepare()
+
+    model
+  }
+
+  /**
+   * Create a new snapshotter for a model.
+   */
+  private def newSnapshotter(model: StandardCompleteSensedEntityModel): StandardSensedEntityModelSnapshotter = {
+    new StandardSensedEntityModelSnapshotter(model, valueRegistry, snapshotFile, 1000, 30000, spaceEnvironment, log)
+  }
+}
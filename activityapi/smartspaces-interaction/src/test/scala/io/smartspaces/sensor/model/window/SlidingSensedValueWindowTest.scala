@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.window
+
+import org.junit.Assert
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+
+/**
+ * Tests for the sliding sensed value window.
+ *
+ * @author Keith M. Hughes
+ */
+class SlidingSensedValueWindowTest extends JUnitSuite {
+
+  val delta = 1e-9
+
+  /**
+   * Test that the statistics only cover the values within the window duration.
+   */
+  @Test def testExpiry(): Unit = {
+    val window = new SlidingSensedValueWindow("foo", 1000, 100)
+    Assert.assertEquals(None, window.aggregate(0))
+
+    window.addValue(0, 5)
+    window.addValue(250, 1)
+    window.addValue(500, 9)
+    window.addValue(750, 3)
+
+    val all = window.aggregate(750).get
+    Assert.assertEquals(4, all.count)
+    Assert.assertEquals(1.0, all.min, delta)
+    Assert.assertEquals(9.0, all.max, delta)
+    Assert.assertEquals(4.5, all.mean, delta)
+    Assert.assertEquals(8.75, all.variance, delta)
+    Assert.assertEquals(-8.0 / 3, all.rateOfChange, delta)
+
+    // The 5 and 1 have expired.
+    val later = window.aggregate(1250).get
+    Assert.assertEquals(2, later.count)
+    Assert.assertEquals(3.0, later.min, delta)
+    Assert.assertEquals(9.0, later.max, delta)
+    Assert.assertEquals(6.0, later.mean, delta)
+    Assert.assertEquals(9.0, later.variance, delta)
+
+    Assert.assertEquals(None, window.aggregate(2000))
+  }
+
+  /**
+   * Test that the window drops its oldest values once full.
+   */
+  @Test def testCapacity(): Unit = {
+    val window = new SlidingSensedValueWindow("foo", 1000000, 3)
+
+    (1 to 10).foreach((i) => window.addValue(i, 10 - i))
+
+    val aggregate = window.aggregate(10).get
+    Assert.assertEquals(3, aggregate.count)
+    Assert.assertEquals(0.0, aggregate.min, delta)
+    Assert.assertEquals(2.0, aggregate.max, delta)
+    Assert.assertEquals(1.0, aggregate.mean, delta)
+  }
+
+  /**
+   * Test the percentile approximations.
+   */
+  @Test def testPercentile(): Unit = {
+    val window = new SlidingSensedValueWindow("foo", 1000, 1000, Some(new SensedValueHistogram(0, 100, 100)))
+    Assert.assertEquals(None, window.percentile(0.5, 0))
+
+    (0 until 100).foreach((i) => window.addValue(i, i))
+
+    Assert.assertEquals(49.5, window.percentile(0.5, 100).get, delta)
+    Assert.assertEquals(94.5, window.percentile(0.95, 100).get, delta)
+
+    // The values up to 50 have expired.
+    Assert.assertEquals(75.5, window.percentile(0.5, 1050).get, delta)
+  }
+
+  /**
+   * Test getting statistics, including percentiles, by name.
+   */
+  @Test def testGetStatistic(): Unit = {
+    val window = new SlidingSensedValueWindow("foo", 1000, 1000, Some(new SensedValueHistogram(0, 100, 100)))
+    (0 until 100).foreach((i) => window.addValue(i, i))
+
+    Assert.assertEquals(49.5, window.getStatistic(SensedValueWindow.STATISTIC_MEAN, 100).get, delta)
+    Assert.assertEquals(94.5, window.getStatistic("p95", 100).get, delta)
+    Assert.assertEquals(99.5, window.getStatistic("p99.9", 100).get, delta)
+    Assert.assertEquals(None, window.getStatistic("p101", 100))
+    Assert.assertEquals(None, window.getStatistic("pfoo", 100))
+    Assert.assertEquals(None, window.getStatistic("foo", 100))
+  }
+}
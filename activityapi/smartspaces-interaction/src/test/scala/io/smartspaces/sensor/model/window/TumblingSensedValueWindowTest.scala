@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.sensor.model.window
+
+import org.junit.Assert
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+
+/**
+ * Tests for the tumbling sensed value window.
+ *
+ * @author Keith M. Hughes
+ */
+class TumblingSensedValueWindowTest extends JUnitSuite {
+
+  val delta = 1e-9
+
+  /**
+   * Test that the aggregate is of the most recently completed period.
+   */
+  @Test def testPeriods(): Unit = {
+    val window = new TumblingSensedValueWindow("foo", 1000, Some(new SensedValueHistogram(0, 10, 10)))
+
+    window.addValue(1100, 2)
+    window.addValue(1600, 4)
+
+    // The first period is not complete yet.
+    Assert.assertEquals(None, window.aggregate(1900))
+
+    window.addValue(2100, 8)
+
+    val first = window.aggregate(2100).get
+    Assert.assertEquals(2, first.count)
+    Assert.assertEquals(2.0, first.min, delta)
+    Assert.assertEquals(4.0, first.max, delta)
+    Assert.assertEquals(3.0, first.mean, delta)
+    Assert.assertEquals(1.0, first.variance, delta)
+    Assert.assertEquals(4.0, first.rateOfChange, delta)
+    Assert.assertEquals(2.5, window.percentile(0.5, 2100).get, delta)
+
+    val second = window.aggregate(3000).get
+    Assert.assertEquals(1, second.count)
+    Assert.assertEquals(8.0, second.mean, delta)
+    Assert.assertEquals(8.5, window.percentile(0.5, 3000).get, delta)
+
+    // The period from 3000 to 4000 had no values.
+    Assert.assertEquals(None, window.aggregate(4000))
+    Assert.assertEquals(None, window.percentile(0.5, 4000))
+  }
+}
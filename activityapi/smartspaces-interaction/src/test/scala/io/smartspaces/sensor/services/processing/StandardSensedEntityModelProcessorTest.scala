@@ -69,6 +69,7 @@ class StandardSensedEntityModelProcessorTest extends JUnitSuite {
     MockitoAnnotations.initMocks(this)
 
     Mockito.when(completeSensedEntityModel.eventEmitter).thenReturn(eventEmitter)
+    Mockito.when(eventEmitter.hasSensorHeartbeatEventObservers).thenReturn(true)
 
     sensorValueProcessorRegistry = new StandardSensorValueProcessorRegistry(log)
     processor = new StandardSensedEntityModelProcessor(completeSensedEntityModel, managedScope, log)
@@ -47,6 +47,7 @@ import io.smartspaces.time.provider.LocalTimeProvider;
 import io.smartspaces.time.provider.NtpTimeProvider;
 import io.smartspaces.time.provider.TimeProvider;
 import io.smartspaces.util.concurrency.DefaultScheduledExecutorService;
+import io.smartspaces.util.concurrency.ExecutorServiceConfiguration;
 import io.smartspaces.util.net.InetAddressFactory;
 
 import org.osgi.framework.BundleActivator;
@@ -248,7 +249,7 @@ public class GeneralSmartSpacesSupportActivator
       getCoreServices();
       containerLog = new StandardExtendedLog("container", loggingProvider.getLog());
       
-      executorService = new DefaultScheduledExecutorService();
+      executorService = newExecutorService();
 
       managedResources = new StandardManagedResources(containerLog);
 
@@ -267,6 +268,23 @@ public class GeneralSmartSpacesSupportActivator
     }
   }
 
+  /**
+   * Create the container's executor, configured from the framework properties.
+   *
+   * @return the executor
+   */
+  private DefaultScheduledExecutorService newExecutorService() {
+    ExecutorServiceConfiguration executorConfiguration = new ExecutorServiceConfiguration();
+    for (String name : ExecutorServiceConfiguration.CONFIGURATION_NAMES) {
+      String value = bundleContext.getProperty(name);
+      if (value != null) {
+        executorConfiguration.setProperty(name, value);
+      }
+    }
+
+    return new DefaultScheduledExecutorService(executorConfiguration);
+  }
+
   /**
    * Create any additional resources needed by the container.
    * 
@@ -50,8 +50,8 @@ import io.smartspaces.system.InternalSmartSpacesEnvironment;
 import io.smartspaces.system.SmartSpacesEnvironment;
 import io.smartspaces.system.SmartSpacesFilesystem;
 import io.smartspaces.system.core.container.SmartSpacesSystemControl;
+import io.smartspaces.tasks.ExecutorSequentialTaskQueue;
 import io.smartspaces.tasks.SequentialTaskQueue;
-import io.smartspaces.tasks.SimpleSequentialTaskQueue;
 import io.smartspaces.util.io.FileSupport;
 import io.smartspaces.util.io.FileSupportImpl;
 
@@ -322,7 +322,7 @@ public class DevelopmentStandaloneLiveActivityRuntime implements ManagedResource
     }
 
     SequentialTaskQueue taskQueue =
-        new SimpleSequentialTaskQueue(spaceEnvironment, spaceEnvironment.getLog());
+        new ExecutorSequentialTaskQueue(spaceEnvironment, spaceEnvironment.getLog());
     managedResources.addResource(taskQueue);
 
     LoggingAlertStatusManager alertStatusManager =
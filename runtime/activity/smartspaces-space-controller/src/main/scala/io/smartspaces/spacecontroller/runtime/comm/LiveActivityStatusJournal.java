@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.spacecontroller.runtime.comm;
+
+import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult;
+import io.smartspaces.container.control.message.activity.LiveActivityRuntimeStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The most recent status of every live activity on a controller, along with
+ * the status version when it last changed.
+ *
+ * <p>
+ * A master connection remembers the status version it has seen, so only the
+ * statuses which changed after that version need to be sent to it. The status
+ * versions are only meaningful within one session of the journal, so a master
+ * with a different session ID needs all statuses.
+ *
+ * <p>
+ * A deleted live activity leaves a deletion in the journal, so that a master
+ * which resumes from before the deletion is told about it.
+ *
+ * <p>
+ * Callers which need to keep the journal and their sends in order should
+ * synchronize on the journal.
+ *
+ * @author Keith M. Hughes
+ */
+public class LiveActivityStatusJournal {
+
+  /**
+   * The ID of this session of the journal.
+   */
+  private final long sessionId;
+
+  /**
+   * The current status version.
+   */
+  private long statusVersion;
+
+  /**
+   * The journal entries, keyed by live activity UUID.
+   */
+  private final Map<String, JournalEntry> entries = new HashMap<>();
+
+  /**
+   * Construct a new journal.
+   *
+   * @param sessionId
+   *          the ID of the session, must be different each time the controller
+   *          runs
+   */
+  public LiveActivityStatusJournal(long sessionId) {
+    this.sessionId = sessionId;
+  }
+
+  /**
+   * Get the ID of the journal's session.
+   *
+   * @return the session ID
+   */
+  public long getSessionId() {
+    return sessionId;
+  }
+
+  /**
+   * Get the current status version.
+   *
+   * @return the status version
+   */
+  public synchronized long getStatusVersion() {
+    return statusVersion;
+  }
+
+  /**
+   * Record the status of a live activity.
+   *
+   * <p>
+   * The status version is only moved if the status has changed.
+   *
+   * @param status
+   *          the status
+   *
+   * @return {@code true} if the status changed
+   */
+  public synchronized boolean recordStatus(LiveActivityRuntimeStatus status) {
+    JournalEntry entry = entries.get(status.getUuid());
+    if (entry != null && entry.status != null && entry.status.getStatus() == status.getStatus()
+        && Objects.equals(entry.status.getStatusDetail(), status.getStatusDetail())) {
+      return false;
+    }
+
+    entries.put(status.getUuid(), new JournalEntry(status, null, ++statusVersion));
+
+    return true;
+  }
+
+  /**
+   * Record the status of a live activity only if the journal has no status for
+   * it, or only has its deletion.
+   *
+   * @param status
+   *          the status
+   *
+   * @return {@code true} if the status was recorded
+   */
+  public synchronized boolean recordStatusIfAbsent(LiveActivityRuntimeStatus status) {
+    JournalEntry entry = entries.get(status.getUuid());
+    if (entry != null && entry.status != null) {
+      return false;
+    }
+
+    entries.put(status.getUuid(), new JournalEntry(status, null, ++statusVersion));
+
+    return true;
+  }
+
+  /**
+   * Can a master continue from a given session and status version?
+   *
+   * @param masterSessionId
+   *          the session ID the master last saw
+   * @param masterStatusVersion
+   *          the status version the master last saw
+   *
+   * @return {@code true} if only the changes since the status version are
+   *         needed
+   */
+  public synchronized boolean canResume(long masterSessionId, long masterStatusVersion) {
+    return masterSessionId == sessionId && masterStatusVersion <= statusVersion;
+  }
+
+  /**
+   * Get all statuses which have changed since a status version.
+   *
+   * @param since
+   *          the status version
+   *
+   * @return the statuses, ordered by the version they changed in
+   */
+  public synchronized List<LiveActivityRuntimeStatus> getStatusesSince(long since) {
+    List<LiveActivityRuntimeStatus> statuses = new ArrayList<>();
+    for (JournalEntry entry : getEntriesSince(since)) {
+      if (entry.status != null) {
+        statuses.add(entry.status);
+      }
+    }
+
+    return statuses;
+  }
+
+  /**
+   * Record the deletion of a live activity.
+   *
+   * <p>
+   * The deletion replaces any status for the live activity.
+   *
+   * @param deletion
+   *          the result of the deletion
+   */
+  public synchronized void recordDeletion(LiveActivityDeleteResult deletion) {
+    entries.put(deletion.getUuid(), new JournalEntry(null, deletion, ++statusVersion));
+  }
+
+  /**
+   * Get all live activity deletions since a status version.
+   *
+   * @param since
+   *          the status version
+   *
+   * @return the deletions, ordered by the version they happened in
+   */
+  public synchronized List<LiveActivityDeleteResult> getDeletionsSince(long since) {
+    List<LiveActivityDeleteResult> deletions = new ArrayList<>();
+    for (JournalEntry entry : getEntriesSince(since)) {
+      if (entry.deletion != null) {
+        deletions.add(entry.deletion);
+      }
+    }
+
+    return deletions;
+  }
+
+  /**
+   * Get all entries which have changed since a status version.
+   *
+   * @param since
+   *          the status version
+   *
+   * @return the entries, ordered by the version they changed in
+   */
+  private List<JournalEntry> getEntriesSince(long since) {
+    List<JournalEntry> changed = new ArrayList<>();
+    for (JournalEntry entry : entries.values()) {
+      if (entry.version > since) {
+        changed.add(entry);
+      }
+    }
+    Collections.sort(changed, new Comparator<JournalEntry>() {
+      @Override
+      public int compare(JournalEntry e1, JournalEntry e2) {
+        return Long.compare(e1.version, e2.version);
+      }
+    });
+
+    return changed;
+  }
+
+  /**
+   * An entry in the journal.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class JournalEntry {
+
+    /**
+     * The most recent status, {@code null} if the live activity was deleted.
+     */
+    private final LiveActivityRuntimeStatus status;
+
+    /**
+     * The deletion of the live activity, {@code null} if it has not been
+     * deleted.
+     */
+    private final LiveActivityDeleteResult deletion;
+
+    /**
+     * The status version when the status changed.
+     */
+    private final long version;
+
+    /**
+     * Construct a new entry.
+     *
+     * @param status
+     *          the most recent status, {@code null} for a deletion
+     * @param deletion
+     *          the deletion, {@code null} if there is a status
+     * @param version
+     *          the status version when the status changed
+     */
+    public JournalEntry(LiveActivityRuntimeStatus status, LiveActivityDeleteResult deletion,
+        long version) {
+      this.status = status;
+      this.deletion = deletion;
+      this.version = version;
+    }
+  }
+}
@@ -21,9 +21,11 @@ import io.smartspaces.SmartSpacesException;
 import io.smartspaces.activity.Activity;
 import io.smartspaces.activity.ActivityState;
 import io.smartspaces.activity.ActivityStatus;
+import io.smartspaces.container.control.message.BinaryMasterSpaceControllerCodec;
 import io.smartspaces.container.control.message.StandardMasterSpaceControllerCodec;
 import io.smartspaces.container.control.message.activity.LiveActivityDeleteRequest;
 import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult;
+import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult.LiveActivityDeleteStatus;
 import io.smartspaces.container.control.message.activity.LiveActivityDeploymentRequest;
 import io.smartspaces.container.control.message.activity.LiveActivityDeploymentResult;
 import io.smartspaces.container.control.message.activity.LiveActivityRuntimeRequestOperation;
@@ -33,6 +35,8 @@ import io.smartspaces.container.control.message.common.ConfigurationRequest;
 import io.smartspaces.container.control.message.common.ConfigurationParameterRequest.ConfigurationParameterRequestOperation;
 import io.smartspaces.container.control.message.activity.LiveActivityRuntimeRequest;
 import io.smartspaces.container.control.message.container.ControllerFullStatus;
+import io.smartspaces.container.control.message.container.ControllerSessionHello;
+import io.smartspaces.container.control.message.container.ControllerStatusDelta;
 import io.smartspaces.container.control.message.container.resource.deployment.ContainerResourceDeploymentCommitRequest;
 import io.smartspaces.container.control.message.container.resource.deployment.ContainerResourceDeploymentCommitResponse;
 import io.smartspaces.container.control.message.container.resource.deployment.ContainerResourceDeploymentQueryRequest;
@@ -55,17 +59,28 @@ import io.smartspaces.spacecontroller.runtime.SpaceControllerDataOperation;
 import io.smartspaces.spacecontroller.runtime.SpaceControllerHeartbeat;
 import io.smartspaces.system.SmartSpacesEnvironment;
 import io.smartspaces.util.SmartSpacesUtilities;
+import io.smartspaces.util.concurrency.DefaultScheduledExecutorService;
 
 import com.google.common.annotations.VisibleForTesting;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  * An {@link SpaceControllerCommunicator} using TCP for communication.
  *
+ * <p>
+ * The master can be spoken to with either newline-delimited JSON or the
+ * length-prefixed binary protocol, depending on the configuration. With the
+ * binary protocol, each master connection is sent only the live activity
+ * statuses which have changed since the status version it last saw.
+ *
  * @author Keith M. Hughes
  */
 public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerCommunicator {
@@ -92,6 +107,12 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
   private StandardMasterSpaceControllerCodec messageCodec =
       new StandardMasterSpaceControllerCodec();
 
+  /**
+   * The message codec for the binary controller/master protocol.
+   */
+  private BinaryMasterSpaceControllerCodec binaryMessageCodec =
+      new BinaryMasterSpaceControllerCodec();
+
   /**
    * The space environment for this communicator.
    */
@@ -102,6 +123,27 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
    */
   private TcpServerNetworkCommunicationEndpoint<String> controllerAdminServer;
 
+  /**
+   * The server for controller control and status updates when using the binary
+   * protocol.
+   */
+  private TcpServerNetworkCommunicationEndpoint<byte[]> binaryControllerAdminServer;
+
+  /**
+   * The journal of live activity statuses for the binary protocol.
+   */
+  private final LiveActivityStatusJournal statusJournal =
+      new LiveActivityStatusJournal(System.currentTimeMillis());
+
+  /**
+   * The binary connections which have been sent the status from the journal,
+   * and so should get all changes to it.
+   *
+   * <p>
+   * Guarded by the status journal.
+   */
+  private final Set<TcpServerClientConnection<byte[]>> synchronizedConnections = new HashSet<>();
+
   private RemoteMasterServerClient masterServerClient;
 
   /**
@@ -118,6 +160,32 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
   public void onStartup(SimpleSpaceController controllerInfo) {
     TcpServerNetworkCommunicationEndpointService tcpService = spaceEnvironment.getServiceRegistry()
         .getRequiredService(TcpServerNetworkCommunicationEndpointService.SERVICE_NAME);
+
+    String protocol = spaceEnvironment.getSystemConfiguration().getPropertyString(
+        BinaryMasterSpaceControllerCodec.CONFIGURATION_NAME_CONTROLLER_PROTOCOL,
+        BinaryMasterSpaceControllerCodec.CONFIGURATION_VALUE_DEFAULT_CONTROLLER_PROTOCOL);
+    if (BinaryMasterSpaceControllerCodec.CONFIGURATION_VALUE_CONTROLLER_PROTOCOL_BINARY
+        .equals(protocol)) {
+      startupBinaryControllerAdminServer(tcpService, controllerInfo);
+    } else {
+      startupStringControllerAdminServer(tcpService, controllerInfo);
+    }
+
+    masterServerClient = new StandardRemoteMasterServerClient(spaceEnvironment);
+    masterServerClient.startup();
+  }
+
+  /**
+   * Start up the controller admin server for the JSON protocol.
+   *
+   * @param tcpService
+   *          the TCP server service
+   * @param controllerInfo
+   *          information about the controller
+   */
+  private void startupStringControllerAdminServer(
+      TcpServerNetworkCommunicationEndpointService tcpService,
+      SimpleSpaceController controllerInfo) {
     controllerAdminServer = tcpService.newStringServer(
         StandardMasterSpaceControllerCodec.DELIMITERS, StandardMasterSpaceControllerCodec.CHARSET,
         controllerInfo.getHostControlPort(), spaceEnvironment.getLog());
@@ -136,7 +204,10 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
             connection.getRemoteAddress());
         
         // TODO(keith): Consider initiating this from master once connection has been made.
-        spaceEnvironment.getExecutorService().submit(new Runnable() {
+        // Collecting and encoding the statuses only uses the CPU.
+        ExecutorService cpuExecutorService =
+            DefaultScheduledExecutorService.getCpuLane(spaceEnvironment.getExecutorService());
+        cpuExecutorService.submit(new Runnable() {
 
           @Override
           public void run() {
@@ -153,9 +224,55 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
       }
     });
     controllerAdminServer.startup();
+  }
 
-    masterServerClient = new StandardRemoteMasterServerClient(spaceEnvironment);
-    masterServerClient.startup();
+  /**
+   * Start up the controller admin server for the binary protocol.
+   *
+   * <p>
+   * Nothing is sent on a new connection until the master says hello.
+   *
+   * @param tcpService
+   *          the TCP server service
+   * @param controllerInfo
+   *          information about the controller
+   */
+  private void startupBinaryControllerAdminServer(
+      TcpServerNetworkCommunicationEndpointService tcpService,
+      SimpleSpaceController controllerInfo) {
+    binaryControllerAdminServer =
+        tcpService.newByteArrayServer(BinaryMasterSpaceControllerCodec.FRAME_LENGTH_MAX,
+            controllerInfo.getHostControlPort(), spaceEnvironment.getLog());
+    binaryControllerAdminServer
+        .addListener(new TcpServerNetworkCommunicationEndpointListener<byte[]>() {
+
+          @Override
+          public void onTcpRequest(TcpServerNetworkCommunicationEndpoint<byte[]> endpoint,
+              TcpServerRequest<byte[]> request) {
+            handleBinaryControllerFrame(request.getClientConnection(), request.getMessage());
+          }
+
+          @Override
+          public void onNewTcpConnection(TcpServerNetworkCommunicationEndpoint<byte[]> endpoint,
+              TcpServerClientConnection<byte[]> connection) {
+            spaceEnvironment.getLog().formatInfo(
+                "Space controller has binary control connection from %s",
+                connection.getRemoteAddress());
+          }
+
+          @Override
+          public void onCloseTcpConnection(TcpServerNetworkCommunicationEndpoint<byte[]> endpoint,
+              TcpServerClientConnection<byte[]> connection) {
+            spaceEnvironment.getLog().formatInfo(
+                "Space controller has lost binary control connection from %s",
+                connection.getRemoteAddress());
+
+            synchronized (statusJournal) {
+              synchronizedConnections.remove(connection);
+            }
+          }
+        });
+    binaryControllerAdminServer.startup();
   }
 
   @Override
@@ -171,7 +288,12 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
 
     masterServerClient.shutdown();
 
-    controllerAdminServer.shutdown();
+    if (controllerAdminServer != null) {
+      controllerAdminServer.shutdown();
+    }
+    if (binaryControllerAdminServer != null) {
+      binaryControllerAdminServer.shutdown();
+    }
   }
 
   @Override
@@ -179,6 +301,85 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
     return new ControllerAdminServerSpaceControllerHeartbeat();
   }
 
+  /**
+   * Handle a frame coming in from the master with the binary protocol.
+   *
+   * @param connection
+   *          the connection the frame came in on
+   * @param frame
+   *          the frame
+   */
+  @VisibleForTesting
+  void handleBinaryControllerFrame(TcpServerClientConnection<byte[]> connection, byte[] frame) {
+    byte frameType = binaryMessageCodec.getFrameType(frame);
+    switch (frameType) {
+      case BinaryMasterSpaceControllerCodec.FRAME_TYPE_HELLO:
+        handleMasterHello(connection, binaryMessageCodec.decodeSessionHello(frame));
+
+        break;
+
+      case BinaryMasterSpaceControllerCodec.FRAME_TYPE_REQUEST:
+        handleControllerRequest(binaryMessageCodec.decodeJson(frame));
+
+        break;
+
+      default:
+        spaceEnvironment.getLog().formatError("Unknown space controller frame type %d", frameType);
+    }
+  }
+
+  /**
+   * Handle the hello from a newly connected master.
+   *
+   * <p>
+   * The master is sent the statuses which changed and the live activities
+   * which were deleted since the status version it gives, or all statuses if
+   * it cannot resume.
+   *
+   * @param connection
+   *          the connection to the master
+   * @param hello
+   *          the master's hello
+   */
+  private void handleMasterHello(TcpServerClientConnection<byte[]> connection,
+      ControllerSessionHello hello) {
+    int protocolVersion =
+        Math.min(hello.getProtocolVersion(), BinaryMasterSpaceControllerCodec.PROTOCOL_VERSION);
+    if (protocolVersion < 1) {
+      spaceEnvironment.getLog().formatWarn(
+          "Master at %s asked for unsupported binary protocol version %d, closing connection",
+          connection.getRemoteAddress(), hello.getProtocolVersion());
+      connection.close();
+
+      return;
+    }
+
+    List<LiveActivityRuntimeStatus> currentStatuses = collectLiveActivityStatuses();
+
+    synchronized (statusJournal) {
+      recordMissingStatuses(currentStatuses);
+
+      boolean full = !statusJournal.canResume(hello.getSessionId(), hello.getStatusVersion());
+      long statusVersion = statusJournal.getStatusVersion();
+      long since = full ? 0 : hello.getStatusVersion();
+      List<LiveActivityRuntimeStatus> statuses = statusJournal.getStatusesSince(since);
+      List<LiveActivityDeleteResult> deletions = statusJournal.getDeletionsSince(since);
+
+      spaceEnvironment.getLog().formatInfo(
+          "Master at %s connected with binary protocol version %d, "
+              + "sending %s status with %d activities and %d deletions",
+          connection.getRemoteAddress(), protocolVersion, full ? "full" : "resumed",
+          statuses.size(), deletions.size());
+
+      connection.sendMessage(binaryMessageCodec.encodeHelloResponse(new ControllerSessionHello(
+          protocolVersion, statusJournal.getSessionId(), statusVersion)));
+      connection.sendMessage(binaryMessageCodec
+          .encodeStatusDelta(new ControllerStatusDelta(statusVersion, full, statuses, deletions)));
+
+      synchronizedConnections.add(connection);
+    }
+  }
+
   /**
    * Handle a controller control request coming in.
    *
@@ -345,15 +546,71 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
   private void publishControllerFullStatus() {
     spaceEnvironment.getLog().info("Sending full controller status");
 
+    if (binaryControllerAdminServer != null) {
+      publishBinaryControllerFullStatus();
+
+      return;
+    }
+
     SimpleSpaceController controllerInfo = controllerControl.getControllerInfo();
 
     ControllerFullStatus fullStatus = new ControllerFullStatus();
     fullStatus.setName(controllerInfo.getName());
     fullStatus.setDescription(controllerInfo.getDescription());
     fullStatus.setHostId(controllerInfo.getHostId());
+    fullStatus.setLiveActivityStatuses(collectLiveActivityStatuses());
+
+    publishControllerStatus(
+        StandardMasterSpaceControllerCodec.CONTROLLER_MESSAGE_STATUS_TYPE_CONTROLLER_FULL_STATUS,
+        fullStatus);
+  }
+
+  /**
+   * Publish the full status from the journal to all binary connections which
+   * have said hello.
+   */
+  private void publishBinaryControllerFullStatus() {
+    List<LiveActivityRuntimeStatus> currentStatuses = collectLiveActivityStatuses();
+
+    synchronized (statusJournal) {
+      recordMissingStatuses(currentStatuses);
+
+      sendSynchronizedConnections(binaryMessageCodec.encodeStatusDelta(
+          new ControllerStatusDelta(statusJournal.getStatusVersion(), true,
+              statusJournal.getStatusesSince(0), statusJournal.getDeletionsSince(0))));
+    }
+  }
+
+  /**
+   * Record the statuses of any live activities which are not in the journal.
+   *
+   * <p>
+   * Live activities which have never changed state will not have been
+   * published. The journal must be locked by the caller.
+   *
+   * @param currentStatuses
+   *          the current statuses of all live activities
+   */
+  private void recordMissingStatuses(List<LiveActivityRuntimeStatus> currentStatuses) {
+    int added = 0;
+    for (LiveActivityRuntimeStatus status : currentStatuses) {
+      if (statusJournal.recordStatusIfAbsent(status)) {
+        added++;
+      }
+    }
 
+    if (added > 0) {
+      spaceEnvironment.getLog().formatInfo("Added %d unpublished live activity statuses", added);
+    }
+  }
+
+  /**
+   * Get the current status of every installed live activity.
+   *
+   * @return the statuses
+   */
+  private List<LiveActivityRuntimeStatus> collectLiveActivityStatuses() {
     List<LiveActivityRuntimeStatus> liveActivityStatuses = new ArrayList<>();
-    fullStatus.setLiveActivityStatuses(liveActivityStatuses);
     for (InstalledLiveActivity activity : controllerControl.getAllInstalledLiveActivities()) {
       LiveActivityRuntimeStatus cas = new LiveActivityRuntimeStatus();
       liveActivityStatuses.add(cas);
@@ -388,9 +645,7 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
       }
     }
 
-    publishControllerStatus(
-        StandardMasterSpaceControllerCodec.CONTROLLER_MESSAGE_STATUS_TYPE_CONTROLLER_FULL_STATUS,
-        fullStatus);
+    return liveActivityStatuses;
   }
 
   @Override
@@ -446,9 +701,37 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
     LiveActivityDeleteResult liveActivityDeleteResponse =
         controllerControl.deleteLiveActivity(liveActivityDeleteRequest);
 
-    publishControllerStatus(
-        StandardMasterSpaceControllerCodec.CONTROLLER_MESSAGE_STATUS_TYPE_ACTIVITY_DELETE,
-        liveActivityDeleteResponse);
+    if (binaryControllerAdminServer != null
+        && liveActivityDeleteResponse.getStatus() != LiveActivityDeleteStatus.FAILURE) {
+      publishBinaryActivityDeletion(liveActivityDeleteResponse);
+    } else {
+      publishControllerStatus(
+          StandardMasterSpaceControllerCodec.CONTROLLER_MESSAGE_STATUS_TYPE_ACTIVITY_DELETE,
+          liveActivityDeleteResponse);
+    }
+  }
+
+  /**
+   * Record a live activity deletion in the journal and publish it to all binary
+   * connections which have said hello.
+   *
+   * <p>
+   * The deletion goes out as a status delta so that the masters move to the
+   * status version of the deletion. Masters which connect later get it in the
+   * delta sent after their hello.
+   *
+   * @param deletion
+   *          the result of the deletion
+   */
+  private void publishBinaryActivityDeletion(LiveActivityDeleteResult deletion) {
+    synchronized (statusJournal) {
+      statusJournal.recordDeletion(deletion);
+
+      sendSynchronizedConnections(binaryMessageCodec.encodeStatusDelta(
+          new ControllerStatusDelta(statusJournal.getStatusVersion(), false,
+              Collections.<LiveActivityRuntimeStatus>emptyList(),
+              Collections.singletonList(deletion))));
+    }
   }
 
   /**
@@ -568,6 +851,12 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
 
       status.setStatusDetail(astatus.getCombinedDetail());
 
+      if (binaryControllerAdminServer != null) {
+        publishBinaryActivityStatus(status);
+
+        return;
+      }
+
       publishControllerStatus(
           StandardMasterSpaceControllerCodec.CONTROLLER_MESSAGE_STATUS_TYPE_LIVE_ACTIVITY_RUNTIME_STATUS,
           status);
@@ -588,6 +877,47 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
     }
   }
 
+  /**
+   * Publish a live activity status to all binary connections which have said
+   * hello.
+   *
+   * <p>
+   * The status version only moves if the status has changed, but the status is
+   * always sent since the master may have asked for it.
+   *
+   * @param status
+   *          the status to publish
+   */
+  private void publishBinaryActivityStatus(LiveActivityRuntimeStatus status) {
+    synchronized (statusJournal) {
+      statusJournal.recordStatus(status);
+
+      sendSynchronizedConnections(binaryMessageCodec.encodeStatusDelta(
+          new ControllerStatusDelta(statusJournal.getStatusVersion(), false,
+              Collections.singletonList(status),
+              Collections.<LiveActivityDeleteResult>emptyList())));
+    }
+  }
+
+  /**
+   * Send a frame to all binary connections which have said hello.
+   *
+   * <p>
+   * The journal must be locked by the caller.
+   *
+   * @param frame
+   *          the frame to send
+   */
+  private void sendSynchronizedConnections(byte[] frame) {
+    for (TcpServerClientConnection<byte[]> connection : synchronizedConnections) {
+      try {
+        connection.sendMessage(frame);
+      } catch (Throwable e) {
+        spaceEnvironment.getLog().error("Could not write status to connection " + connection, e);
+      }
+    }
+  }
+
   /**
    * Publish a controller status update with a payload.
    *
@@ -612,7 +942,12 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
    *          the fully encoded status
    */
   private void publishFullyCodedControllerStatus(Map<String, Object> statusObject) {
-    controllerAdminServer.sendMessageAllChannels(messageCodec.encodeFinalMessage(statusObject));
+    String message = messageCodec.encodeFinalMessage(statusObject);
+    if (binaryControllerAdminServer != null) {
+      binaryControllerAdminServer.sendMessageAllChannels(binaryMessageCodec.encodeStatus(message));
+    } else {
+      controllerAdminServer.sendMessageAllChannels(message);
+    }
   }
 
   /**
@@ -654,6 +989,12 @@ public class SimpleTcpSpaceControllerCommunicator implements SpaceControllerComm
 
     @Override
     public void sendHeartbeat() {
+      if (binaryControllerAdminServer != null) {
+        binaryControllerAdminServer.sendMessageAllChannels(binaryMessageCodec.encodeHeartbeat());
+
+        return;
+      }
+
       // In case the UUID changed.
       statusObject.put(StandardMasterSpaceControllerCodec.CONTROLLER_MESSAGE_CONTROLLER_UUID,
           controllerControl.getControllerInfo().getUuid());
@@ -52,8 +52,8 @@ import io.smartspaces.system.core.container.SmartSpacesSystemControl;
 import io.smartspaces.system.osgi.OsgiServiceTrackerCollection.MyServiceTracker;
 import io.smartspaces.system.osgi.SmartSpacesOsgiBundleActivator;
 import io.smartspaces.system.resources.ContainerResourceManager;
+import io.smartspaces.tasks.ExecutorSequentialTaskQueue;
 import io.smartspaces.tasks.SequentialTaskQueue;
-import io.smartspaces.tasks.SimpleSequentialTaskQueue;
 
 import org.ros.osgi.common.RosEnvironment;
 
@@ -182,7 +182,7 @@ public class OsgiSpaceControllerActivator extends SmartSpacesOsgiBundleActivator
     addManagedResource(spaceControllerConfigurationManager);
 
     SequentialTaskQueue taskQueue =
-        new SimpleSequentialTaskQueue(spaceEnvironment, spaceEnvironment.getLog());
+        new ExecutorSequentialTaskQueue(spaceEnvironment, spaceEnvironment.getLog());
     addManagedResource(taskQueue);
 
     LoggingAlertStatusManager alertStatusManager =
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.spacecontroller.runtime.comm;
+
+import io.smartspaces.activity.ActivityState;
+import io.smartspaces.container.control.message.BinaryMasterSpaceControllerCodec;
+import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult;
+import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult.LiveActivityDeleteStatus;
+import io.smartspaces.container.control.message.activity.LiveActivityRuntimeStatus;
+import io.smartspaces.container.control.message.container.ControllerSessionHello;
+import io.smartspaces.container.control.message.container.ControllerStatusDelta;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link LiveActivityStatusJournal} and the binary encoding of
+ * what it produces.
+ *
+ * @author Keith M. Hughes
+ */
+public class LiveActivityStatusJournalTest {
+
+  private static final long SESSION_ID = 1234;
+
+  private LiveActivityStatusJournal journal;
+
+  private BinaryMasterSpaceControllerCodec codec;
+
+  @Before
+  public void setup() {
+    journal = new LiveActivityStatusJournal(SESSION_ID);
+    codec = new BinaryMasterSpaceControllerCodec();
+  }
+
+  /**
+   * Test that only changed statuses move the version, and only statuses after a
+   * version are given back.
+   */
+  @Test
+  public void testStatusesSince() {
+    Assert.assertTrue(journal.recordStatus(newStatus("a", ActivityState.READY, null)));
+    Assert.assertTrue(journal.recordStatus(newStatus("b", ActivityState.READY, null)));
+    long version = journal.getStatusVersion();
+    Assert.assertEquals(2, version);
+
+    Assert.assertFalse(journal.recordStatus(newStatus("a", ActivityState.READY, null)));
+    Assert.assertFalse(journal.recordStatusIfAbsent(newStatus("b", ActivityState.RUNNING, null)));
+    Assert.assertEquals(version, journal.getStatusVersion());
+    Assert.assertTrue(journal.getStatusesSince(version).isEmpty());
+
+    Assert.assertTrue(journal.recordStatus(newStatus("b", ActivityState.RUNNING, null)));
+    Assert.assertTrue(journal.recordStatus(newStatus("a", ActivityState.CRASHED, "boom")));
+
+    List<LiveActivityRuntimeStatus> statuses = journal.getStatusesSince(version);
+    Assert.assertEquals(2, statuses.size());
+    Assert.assertEquals("b", statuses.get(0).getUuid());
+    Assert.assertEquals("a", statuses.get(1).getUuid());
+    Assert.assertEquals(2, journal.getStatusesSince(0).size());
+  }
+
+  /**
+   * Test that a deletion replaces the status of a live activity and is given
+   * back to masters resuming from before it.
+   */
+  @Test
+  public void testDeletion() {
+    journal.recordStatus(newStatus("a", ActivityState.READY, null));
+    journal.recordStatus(newStatus("b", ActivityState.READY, null));
+    long version = journal.getStatusVersion();
+
+    journal.recordDeletion(newDeletion("a"));
+    Assert.assertEquals(version + 1, journal.getStatusVersion());
+
+    List<LiveActivityDeleteResult> deletions = journal.getDeletionsSince(version);
+    Assert.assertEquals(1, deletions.size());
+    Assert.assertEquals("a", deletions.get(0).getUuid());
+    Assert.assertTrue(journal.getStatusesSince(version).isEmpty());
+    Assert.assertTrue(journal.getDeletionsSince(journal.getStatusVersion()).isEmpty());
+
+    List<LiveActivityRuntimeStatus> statuses = journal.getStatusesSince(0);
+    Assert.assertEquals(1, statuses.size());
+    Assert.assertEquals("b", statuses.get(0).getUuid());
+
+    // A live activity deployed again with the same UUID replaces its deletion.
+    Assert.assertTrue(journal.recordStatusIfAbsent(newStatus("a", ActivityState.READY, null)));
+    Assert.assertTrue(journal.getDeletionsSince(0).isEmpty());
+    Assert.assertEquals(2, journal.getStatusesSince(0).size());
+  }
+
+  /**
+   * Test when a master can resume.
+   */
+  @Test
+  public void testResume() {
+    journal.recordStatus(newStatus("a", ActivityState.READY, null));
+
+    Assert.assertTrue(journal.canResume(SESSION_ID, 0));
+    Assert.assertTrue(journal.canResume(SESSION_ID, 1));
+    Assert.assertFalse(journal.canResume(SESSION_ID, 2));
+    Assert.assertFalse(journal.canResume(BinaryMasterSpaceControllerCodec.SESSION_ID_NONE, 1));
+    Assert.assertFalse(journal.canResume(SESSION_ID + 1, 1));
+  }
+
+  /**
+   * Test that hellos, deltas and heartbeats survive encoding.
+   */
+  @Test
+  public void testEncoding() {
+    journal.recordStatus(newStatus("a", ActivityState.RUNNING, null));
+    journal.recordStatus(newStatus("b", ActivityState.CRASHED, "boom"));
+
+    byte[] helloFrame = codec.encodeHelloResponse(new ControllerSessionHello(
+        BinaryMasterSpaceControllerCodec.PROTOCOL_VERSION, SESSION_ID, journal.getStatusVersion()));
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.FRAME_TYPE_HELLO_RESPONSE,
+        codec.getFrameType(helloFrame));
+    ControllerSessionHello hello = codec.decodeSessionHello(helloFrame);
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.PROTOCOL_VERSION,
+        hello.getProtocolVersion());
+    Assert.assertEquals(SESSION_ID, hello.getSessionId());
+    Assert.assertEquals(2, hello.getStatusVersion());
+
+    journal.recordStatus(newStatus("c", ActivityState.READY, null));
+    journal.recordDeletion(newDeletion("c"));
+
+    byte[] deltaFrame = codec.encodeStatusDelta(new ControllerStatusDelta(
+        journal.getStatusVersion(), true, journal.getStatusesSince(0),
+        journal.getDeletionsSince(0)));
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.FRAME_TYPE_STATUS_DELTA,
+        codec.getFrameType(deltaFrame));
+    ControllerStatusDelta delta = codec.decodeStatusDelta(deltaFrame);
+    Assert.assertEquals(4, delta.getStatusVersion());
+    Assert.assertTrue(delta.isFull());
+    Assert.assertEquals(2, delta.getLiveActivityStatuses().size());
+    LiveActivityRuntimeStatus crashed = delta.getLiveActivityStatuses().get(1);
+    Assert.assertEquals("b", crashed.getUuid());
+    Assert.assertEquals(ActivityState.CRASHED, crashed.getStatus());
+    Assert.assertEquals("boom", crashed.getStatusDetail());
+    Assert.assertNull(delta.getLiveActivityStatuses().get(0).getStatusDetail());
+    Assert.assertEquals(1, delta.getLiveActivityDeletions().size());
+    Assert.assertEquals("c", delta.getLiveActivityDeletions().get(0).getUuid());
+
+    Assert.assertEquals(1, codec.encodeHeartbeat().length);
+
+    byte[] statusFrame = codec.encodeStatus("{\"statusType\":\"shutdown\"}");
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.FRAME_TYPE_STATUS,
+        codec.getFrameType(statusFrame));
+    Assert.assertEquals("{\"statusType\":\"shutdown\"}", codec.decodeJson(statusFrame));
+  }
+
+  /**
+   * Create a new successful live activity deletion.
+   */
+  private LiveActivityDeleteResult newDeletion(String uuid) {
+    return new LiveActivityDeleteResult(uuid, LiveActivityDeleteStatus.SUCCESS, 5678, null);
+  }
+
+  /**
+   * Create a new live activity status.
+   */
+  private LiveActivityRuntimeStatus newStatus(String uuid, ActivityState state, String detail) {
+    LiveActivityRuntimeStatus status = new LiveActivityRuntimeStatus();
+    status.setUuid(uuid);
+    status.setStatus(state);
+    status.setStatusDetail(detail);
+
+    return status;
+  }
+}
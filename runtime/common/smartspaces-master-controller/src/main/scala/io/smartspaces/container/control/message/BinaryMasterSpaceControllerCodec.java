@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.container.control.message;
+
+import io.smartspaces.SimpleSmartSpacesException;
+import io.smartspaces.activity.ActivityState;
+import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult;
+import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult.LiveActivityDeleteStatus;
+import io.smartspaces.container.control.message.activity.LiveActivityRuntimeStatus;
+import io.smartspaces.container.control.message.container.ControllerSessionHello;
+import io.smartspaces.container.control.message.container.ControllerStatusDelta;
+
+import com.google.common.base.Charsets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The codec for the binary master/controller protocol.
+ *
+ * <p>
+ * Frames are carried by a length-prefixed TCP endpoint. The first byte of every
+ * frame gives its type. Heartbeats and live activity status deltas are fully
+ * binary. Less frequent requests and statuses carry the same JSON as the string
+ * protocol, encoded by the {@link StandardMasterSpaceControllerCodec}.
+ *
+ * @author Keith M. Hughes
+ */
+public class BinaryMasterSpaceControllerCodec {
+
+  /**
+   * Configuration property giving the protocol for master/controller
+   * communication.
+   *
+   * <p>
+   * The master and its controllers must use the same protocol.
+   */
+  public static final String CONFIGURATION_NAME_CONTROLLER_PROTOCOL =
+      "smartspaces.spacecontroller.comm.protocol";
+
+  /**
+   * Configuration value for the newline-delimited JSON protocol.
+   */
+  public static final String CONFIGURATION_VALUE_CONTROLLER_PROTOCOL_JSON = "json";
+
+  /**
+   * Configuration value for the length-prefixed binary protocol.
+   */
+  public static final String CONFIGURATION_VALUE_CONTROLLER_PROTOCOL_BINARY = "binary";
+
+  /**
+   * The default protocol for master/controller communication.
+   */
+  public static final String CONFIGURATION_VALUE_DEFAULT_CONTROLLER_PROTOCOL =
+      CONFIGURATION_VALUE_CONTROLLER_PROTOCOL_JSON;
+
+  /**
+   * The highest version of the binary protocol this codec speaks.
+   */
+  public static final int PROTOCOL_VERSION = 1;
+
+  /**
+   * The maximum length of a binary frame, in bytes.
+   */
+  public static final int FRAME_LENGTH_MAX = 16 * 1024 * 1024;
+
+  /**
+   * The session ID used when there is no session to resume.
+   */
+  public static final long SESSION_ID_NONE = 0;
+
+  /**
+   * Frame sent by the master when it connects.
+   */
+  public static final byte FRAME_TYPE_HELLO = 1;
+
+  /**
+   * Frame sent by the controller in response to a hello.
+   */
+  public static final byte FRAME_TYPE_HELLO_RESPONSE = 2;
+
+  /**
+   * A controller heartbeat.
+   */
+  public static final byte FRAME_TYPE_HEARTBEAT = 3;
+
+  /**
+   * Live activity statuses changed since a status version.
+   */
+  public static final byte FRAME_TYPE_STATUS_DELTA = 4;
+
+  /**
+   * A JSON request from the master.
+   */
+  public static final byte FRAME_TYPE_REQUEST = 5;
+
+  /**
+   * A JSON status from the controller.
+   */
+  public static final byte FRAME_TYPE_STATUS = 6;
+
+  /**
+   * Heartbeats carry nothing but their type, so are only encoded once.
+   */
+  private static final byte[] HEARTBEAT_FRAME = new byte[] { FRAME_TYPE_HEARTBEAT };
+
+  /**
+   * The length written for a {@code null} string.
+   */
+  private static final int STRING_LENGTH_NULL = -1;
+
+  /**
+   * Get the type of a frame.
+   *
+   * @param frame
+   *          the frame
+   *
+   * @return the frame type
+   */
+  public byte getFrameType(byte[] frame) {
+    if (frame.length == 0) {
+      throw new SimpleSmartSpacesException("Empty master/controller frame");
+    }
+
+    return frame[0];
+  }
+
+  /**
+   * Encode the hello the master sends on connection.
+   *
+   * @param hello
+   *          the hello
+   *
+   * @return the frame
+   */
+  public byte[] encodeHello(ControllerSessionHello hello) {
+    return encodeSessionHello(FRAME_TYPE_HELLO, hello);
+  }
+
+  /**
+   * Encode the controller's response to a hello.
+   *
+   * @param hello
+   *          the hello response
+   *
+   * @return the frame
+   */
+  public byte[] encodeHelloResponse(ControllerSessionHello hello) {
+    return encodeSessionHello(FRAME_TYPE_HELLO_RESPONSE, hello);
+  }
+
+  /**
+   * Decode a hello or a hello response.
+   *
+   * @param frame
+   *          the frame
+   *
+   * @return the hello
+   */
+  public ControllerSessionHello decodeSessionHello(byte[] frame) {
+    try {
+      DataInputStream in = newFrameInput(frame);
+
+      return new ControllerSessionHello(in.readUnsignedShort(), in.readLong(), in.readLong());
+    } catch (IOException e) {
+      throw new SimpleSmartSpacesException("Could not decode controller session hello", e);
+    }
+  }
+
+  /**
+   * Encode a controller heartbeat.
+   *
+   * @return the frame
+   */
+  public byte[] encodeHeartbeat() {
+    return HEARTBEAT_FRAME;
+  }
+
+  /**
+   * Encode a live activity status delta.
+   *
+   * @param delta
+   *          the delta
+   *
+   * @return the frame
+   */
+  public byte[] encodeStatusDelta(ControllerStatusDelta delta) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeByte(FRAME_TYPE_STATUS_DELTA);
+      out.writeLong(delta.getStatusVersion());
+      out.writeBoolean(delta.isFull());
+
+      List<LiveActivityRuntimeStatus> statuses = delta.getLiveActivityStatuses();
+      out.writeInt(statuses.size());
+      for (LiveActivityRuntimeStatus status : statuses) {
+        out.writeUTF(status.getUuid());
+        out.writeUTF(status.getStatus().name());
+        writeString(out, status.getStatusDetail());
+      }
+
+      List<LiveActivityDeleteResult> deletions = delta.getLiveActivityDeletions();
+      out.writeInt(deletions.size());
+      for (LiveActivityDeleteResult deletion : deletions) {
+        out.writeUTF(deletion.getUuid());
+        out.writeUTF(deletion.getStatus().name());
+        out.writeLong(deletion.getTimeDeleted());
+        writeString(out, deletion.getStatusDetail());
+      }
+      out.flush();
+
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new SimpleSmartSpacesException("Could not encode controller status delta", e);
+    }
+  }
+
+  /**
+   * Decode a live activity status delta.
+   *
+   * @param frame
+   *          the frame
+   *
+   * @return the delta
+   */
+  public ControllerStatusDelta decodeStatusDelta(byte[] frame) {
+    try {
+      DataInputStream in = newFrameInput(frame);
+      long statusVersion = in.readLong();
+      boolean full = in.readBoolean();
+
+      int count = in.readInt();
+      List<LiveActivityRuntimeStatus> statuses = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        LiveActivityRuntimeStatus status = new LiveActivityRuntimeStatus();
+        status.setUuid(in.readUTF());
+        status.setStatus(ActivityState.valueOf(in.readUTF()));
+        status.setStatusDetail(readString(in));
+
+        statuses.add(status);
+      }
+
+      count = in.readInt();
+      List<LiveActivityDeleteResult> deletions = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        deletions.add(new LiveActivityDeleteResult(in.readUTF(),
+            LiveActivityDeleteStatus.valueOf(in.readUTF()), in.readLong(), readString(in)));
+      }
+
+      return new ControllerStatusDelta(statusVersion, full, statuses, deletions);
+    } catch (IOException | IllegalArgumentException e) {
+      throw new SimpleSmartSpacesException("Could not decode controller status delta", e);
+    }
+  }
+
+  /**
+   * Encode a JSON request from the master.
+   *
+   * @param message
+   *          the fully encoded JSON request
+   *
+   * @return the frame
+   */
+  public byte[] encodeRequest(String message) {
+    return encodeJson(FRAME_TYPE_REQUEST, message);
+  }
+
+  /**
+   * Encode a JSON status from the controller.
+   *
+   * @param message
+   *          the fully encoded JSON status
+   *
+   * @return the frame
+   */
+  public byte[] encodeStatus(String message) {
+    return encodeJson(FRAME_TYPE_STATUS, message);
+  }
+
+  /**
+   * Decode the JSON from a request or status frame.
+   *
+   * @param frame
+   *          the frame
+   *
+   * @return the JSON message
+   */
+  public String decodeJson(byte[] frame) {
+    return new String(frame, 1, frame.length - 1, Charsets.UTF_8);
+  }
+
+  /**
+   * Encode a hello frame.
+   *
+   * @param frameType
+   *          the type of the frame
+   * @param hello
+   *          the hello
+   *
+   * @return the frame
+   */
+  private byte[] encodeSessionHello(byte frameType, ControllerSessionHello hello) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(18);
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeByte(frameType);
+      out.writeShort(hello.getProtocolVersion());
+      out.writeLong(hello.getSessionId());
+      out.writeLong(hello.getStatusVersion());
+      out.flush();
+
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new SimpleSmartSpacesException("Could not encode controller session hello", e);
+    }
+  }
+
+  /**
+   * Encode a JSON frame.
+   *
+   * @param frameType
+   *          the type of the frame
+   * @param message
+   *          the JSON message
+   *
+   * @return the frame
+   */
+  private byte[] encodeJson(byte frameType, String message) {
+    byte[] json = message.getBytes(Charsets.UTF_8);
+    byte[] frame = new byte[json.length + 1];
+    frame[0] = frameType;
+    System.arraycopy(json, 0, frame, 1, json.length);
+
+    return frame;
+  }
+
+  /**
+   * Get an input stream for the body of a frame, skipping the frame type.
+   *
+   * @param frame
+   *          the frame
+   *
+   * @return the input stream
+   */
+  private DataInputStream newFrameInput(byte[] frame) {
+    return new DataInputStream(new ByteArrayInputStream(frame, 1, frame.length - 1));
+  }
+
+  /**
+   * Write a string which may be {@code null} or too long for
+   * {@link DataOutputStream#writeUTF(String)}.
+   *
+   * @param out
+   *          the output stream
+   * @param value
+   *          the string, can be {@code null}
+   *
+   * @throws IOException
+   *           the string could not be written
+   */
+  private void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(STRING_LENGTH_NULL);
+    } else {
+      byte[] bytes = value.getBytes(Charsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Read a string written by {@link #writeString(DataOutputStream, String)}.
+   *
+   * @param in
+   *          the input stream
+   *
+   * @return the string, can be {@code null}
+   *
+   * @throws IOException
+   *           the string could not be read
+   */
+  private String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == STRING_LENGTH_NULL) {
+      return null;
+    }
+
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+
+    return new String(bytes, Charsets.UTF_8);
+  }
+}
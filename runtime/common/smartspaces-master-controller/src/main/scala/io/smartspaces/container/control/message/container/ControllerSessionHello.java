@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.container.control.message.container;
+
+/**
+ * The hello exchanged when a master connects to a controller with the binary
+ * protocol.
+ *
+ * <p>
+ * The master sends the highest protocol version it speaks and the controller
+ * session and status version it last saw. The controller answers with the
+ * protocol version to use and its own session and current status version.
+ *
+ * @author Keith M. Hughes
+ */
+public class ControllerSessionHello {
+	private int protocolVersion;
+
+	private long sessionId;
+
+	private long statusVersion;
+
+	public ControllerSessionHello() {
+	}
+
+	public ControllerSessionHello(int protocolVersion, long sessionId, long statusVersion) {
+		this.protocolVersion = protocolVersion;
+		this.sessionId = sessionId;
+		this.statusVersion = statusVersion;
+	}
+
+	public int getProtocolVersion() {
+		return protocolVersion;
+	}
+
+	public void setProtocolVersion(int protocolVersion) {
+		this.protocolVersion = protocolVersion;
+	}
+
+	public long getSessionId() {
+		return sessionId;
+	}
+
+	public void setSessionId(long sessionId) {
+		this.sessionId = sessionId;
+	}
+
+	public long getStatusVersion() {
+		return statusVersion;
+	}
+
+	public void setStatusVersion(long statusVersion) {
+		this.statusVersion = statusVersion;
+	}
+
+	@Override
+	public String toString() {
+		return "ControllerSessionHello [protocolVersion=" + protocolVersion + ", sessionId=" + sessionId
+				+ ", statusVersion=" + statusVersion + "]";
+	}
+}
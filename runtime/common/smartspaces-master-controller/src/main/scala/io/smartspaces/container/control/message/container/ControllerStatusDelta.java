@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.container.control.message.container;
+
+import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult;
+import io.smartspaces.container.control.message.activity.LiveActivityRuntimeStatus;
+
+import java.util.List;
+
+/**
+ * The live activity statuses which have changed on a controller since a status
+ * version.
+ *
+ * <p>
+ * A full delta contains every live activity on the controller. Live
+ * activities deleted since the status version are given separately.
+ *
+ * @author Keith M. Hughes
+ */
+public class ControllerStatusDelta {
+	private long statusVersion;
+
+	private boolean full;
+
+	private List<LiveActivityRuntimeStatus> liveActivityStatuses;
+
+	private List<LiveActivityDeleteResult> liveActivityDeletions;
+
+	public ControllerStatusDelta() {
+	}
+
+	public ControllerStatusDelta(long statusVersion, boolean full,
+			List<LiveActivityRuntimeStatus> liveActivityStatuses,
+			List<LiveActivityDeleteResult> liveActivityDeletions) {
+		this.statusVersion = statusVersion;
+		this.full = full;
+		this.liveActivityStatuses = liveActivityStatuses;
+		this.liveActivityDeletions = liveActivityDeletions;
+	}
+
+	public long getStatusVersion() {
+		return statusVersion;
+	}
+
+	public void setStatusVersion(long statusVersion) {
+		this.statusVersion = statusVersion;
+	}
+
+	public boolean isFull() {
+		return full;
+	}
+
+	public void setFull(boolean full) {
+		this.full = full;
+	}
+
+	public List<LiveActivityRuntimeStatus> getLiveActivityStatuses() {
+		return liveActivityStatuses;
+	}
+
+	public void setLiveActivityStatuses(List<LiveActivityRuntimeStatus> liveActivityStatuses) {
+		this.liveActivityStatuses = liveActivityStatuses;
+	}
+
+	public List<LiveActivityDeleteResult> getLiveActivityDeletions() {
+		return liveActivityDeletions;
+	}
+
+	public void setLiveActivityDeletions(List<LiveActivityDeleteResult> liveActivityDeletions) {
+		this.liveActivityDeletions = liveActivityDeletions;
+	}
+
+	@Override
+	public String toString() {
+		return "ControllerStatusDelta [statusVersion=" + statusVersion + ", full=" + full
+				+ ", liveActivityStatuses=" + liveActivityStatuses + ", liveActivityDeletions="
+				+ liveActivityDeletions + "]";
+	}
+}
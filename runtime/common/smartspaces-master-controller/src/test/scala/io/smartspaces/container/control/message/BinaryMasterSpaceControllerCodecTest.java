@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.container.control.message;
+
+import io.smartspaces.SmartSpacesException;
+import io.smartspaces.activity.ActivityState;
+import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult;
+import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult.LiveActivityDeleteStatus;
+import io.smartspaces.container.control.message.activity.LiveActivityRuntimeStatus;
+import io.smartspaces.container.control.message.container.ControllerSessionHello;
+import io.smartspaces.container.control.message.container.ControllerStatusDelta;
+
+import com.google.common.base.Strings;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests for the {@link BinaryMasterSpaceControllerCodec}.
+ *
+ * @author Keith M. Hughes
+ */
+public class BinaryMasterSpaceControllerCodecTest {
+
+  private BinaryMasterSpaceControllerCodec codec;
+
+  @Before
+  public void setup() {
+    codec = new BinaryMasterSpaceControllerCodec();
+  }
+
+  /**
+   * Test that a hello and a hello response survive encoding.
+   */
+  @Test
+  public void testHelloRoundTrip() {
+    byte[] helloFrame = codec.encodeHello(new ControllerSessionHello(
+        BinaryMasterSpaceControllerCodec.PROTOCOL_VERSION, Long.MAX_VALUE, 1234));
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.FRAME_TYPE_HELLO,
+        codec.getFrameType(helloFrame));
+    ControllerSessionHello hello = codec.decodeSessionHello(helloFrame);
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.PROTOCOL_VERSION,
+        hello.getProtocolVersion());
+    Assert.assertEquals(Long.MAX_VALUE, hello.getSessionId());
+    Assert.assertEquals(1234, hello.getStatusVersion());
+
+    byte[] responseFrame = codec.encodeHelloResponse(new ControllerSessionHello(65535,
+        BinaryMasterSpaceControllerCodec.SESSION_ID_NONE, 0));
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.FRAME_TYPE_HELLO_RESPONSE,
+        codec.getFrameType(responseFrame));
+    ControllerSessionHello response = codec.decodeSessionHello(responseFrame);
+    Assert.assertEquals(65535, response.getProtocolVersion());
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.SESSION_ID_NONE,
+        response.getSessionId());
+    Assert.assertEquals(0, response.getStatusVersion());
+  }
+
+  /**
+   * Test that a status delta with statuses and deletions survives encoding.
+   */
+  @Test
+  public void testStatusDeltaRoundTrip() {
+    String longDetail = Strings.repeat("éboom", 20000);
+    LiveActivityRuntimeStatus running = newStatus("a", ActivityState.RUNNING, null);
+    LiveActivityRuntimeStatus crashed = newStatus("b", ActivityState.CRASHED, longDetail);
+    LiveActivityDeleteResult deleted =
+        new LiveActivityDeleteResult("c", LiveActivityDeleteStatus.SUCCESS, 5678, null);
+    LiveActivityDeleteResult missing =
+        new LiveActivityDeleteResult("d", LiveActivityDeleteStatus.DOESNT_EXIST, 9012, "gone");
+
+    byte[] frame = codec.encodeStatusDelta(new ControllerStatusDelta(42, false,
+        Arrays.asList(running, crashed), Arrays.asList(deleted, missing)));
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.FRAME_TYPE_STATUS_DELTA,
+        codec.getFrameType(frame));
+
+    ControllerStatusDelta delta = codec.decodeStatusDelta(frame);
+    Assert.assertEquals(42, delta.getStatusVersion());
+    Assert.assertFalse(delta.isFull());
+
+    Assert.assertEquals(2, delta.getLiveActivityStatuses().size());
+    assertStatus(running, delta.getLiveActivityStatuses().get(0));
+    assertStatus(crashed, delta.getLiveActivityStatuses().get(1));
+
+    Assert.assertEquals(2, delta.getLiveActivityDeletions().size());
+    assertDeletion(deleted, delta.getLiveActivityDeletions().get(0));
+    assertDeletion(missing, delta.getLiveActivityDeletions().get(1));
+  }
+
+  /**
+   * Test that an empty full status delta survives encoding.
+   */
+  @Test
+  public void testEmptyStatusDeltaRoundTrip() {
+    ControllerStatusDelta delta = codec.decodeStatusDelta(codec.encodeStatusDelta(
+        new ControllerStatusDelta(0, true, Collections.<LiveActivityRuntimeStatus>emptyList(),
+            Collections.<LiveActivityDeleteResult>emptyList())));
+
+    Assert.assertEquals(0, delta.getStatusVersion());
+    Assert.assertTrue(delta.isFull());
+    Assert.assertTrue(delta.getLiveActivityStatuses().isEmpty());
+    Assert.assertTrue(delta.getLiveActivityDeletions().isEmpty());
+  }
+
+  /**
+   * Test that a truncated status delta is rejected.
+   */
+  @Test(expected = SmartSpacesException.class)
+  public void testTruncatedStatusDelta() {
+    byte[] frame = codec.encodeStatusDelta(new ControllerStatusDelta(1, false,
+        Collections.singletonList(newStatus("a", ActivityState.READY, "detail")),
+        Collections.<LiveActivityDeleteResult>emptyList()));
+
+    codec.decodeStatusDelta(Arrays.copyOf(frame, frame.length - 3));
+  }
+
+  /**
+   * Test that heartbeats, requests and statuses survive encoding.
+   */
+  @Test
+  public void testOtherFrames() {
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.FRAME_TYPE_HEARTBEAT,
+        codec.getFrameType(codec.encodeHeartbeat()));
+    Assert.assertEquals(1, codec.encodeHeartbeat().length);
+
+    String json = "{\"operation\":\"startup\",\"detail\":\"über\"}";
+    byte[] requestFrame = codec.encodeRequest(json);
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.FRAME_TYPE_REQUEST,
+        codec.getFrameType(requestFrame));
+    Assert.assertEquals(json, codec.decodeJson(requestFrame));
+
+    byte[] statusFrame = codec.encodeStatus(json);
+    Assert.assertEquals(BinaryMasterSpaceControllerCodec.FRAME_TYPE_STATUS,
+        codec.getFrameType(statusFrame));
+    Assert.assertEquals(json, codec.decodeJson(statusFrame));
+  }
+
+  /**
+   * Test that an empty frame is rejected.
+   */
+  @Test(expected = SmartSpacesException.class)
+  public void testEmptyFrame() {
+    codec.getFrameType(new byte[0]);
+  }
+
+  /**
+   * Assert that a decoded status matches the original.
+   */
+  private void assertStatus(LiveActivityRuntimeStatus expected,
+      LiveActivityRuntimeStatus actual) {
+    Assert.assertEquals(expected.getUuid(), actual.getUuid());
+    Assert.assertEquals(expected.getStatus(), actual.getStatus());
+    Assert.assertEquals(expected.getStatusDetail(), actual.getStatusDetail());
+  }
+
+  /**
+   * Assert that a decoded deletion matches the original.
+   */
+  private void assertDeletion(LiveActivityDeleteResult expected,
+      LiveActivityDeleteResult actual) {
+    Assert.assertEquals(expected.getUuid(), actual.getUuid());
+    Assert.assertEquals(expected.getStatus(), actual.getStatus());
+    Assert.assertEquals(expected.getTimeDeleted(), actual.getTimeDeleted());
+    Assert.assertEquals(expected.getStatusDetail(), actual.getStatusDetail());
+  }
+
+  /**
+   * Create a new live activity status.
+   */
+  private LiveActivityRuntimeStatus newStatus(String uuid, ActivityState state, String detail) {
+    LiveActivityRuntimeStatus status = new LiveActivityRuntimeStatus();
+    status.setUuid(uuid);
+    status.setStatus(state);
+    status.setStatusDetail(detail);
+
+    return status;
+  }
+}
@@ -25,7 +25,7 @@ import io.smartspaces.system.SmartSpacesEnvironment;
 import io.smartspaces.system.core.container.SmartSpacesSystemControl;
 import io.smartspaces.util.io.directorywatcher.DirectoryWatcher;
 import io.smartspaces.util.io.directorywatcher.DirectoryWatcherListener;
-import io.smartspaces.util.io.directorywatcher.SimpleDirectoryWatcher;
+import io.smartspaces.util.io.directorywatcher.WatchServiceDirectoryWatcher;
 
 import java.io.File;
 import java.util.concurrent.TimeUnit;
@@ -182,7 +182,7 @@ public class MasterFileControl implements DirectoryWatcherListener {
   public void startup() {
     File controlDirectory =
         new File(spaceEnvironment.getFilesystem().getInstallDirectory(), FOLDER_RUN_CONTROL);
-    watcher = new SimpleDirectoryWatcher(true);
+    watcher = new WatchServiceDirectoryWatcher(true);
     watcher.addDirectory(controlDirectory);
     watcher.addDirectoryWatcherListener(this);
 
@@ -37,7 +37,7 @@ import io.smartspaces.util.io.FileSupport;
 import io.smartspaces.util.io.FileSupportImpl;
 import io.smartspaces.util.io.directorywatcher.BaseDirectoryWatcherListener;
 import io.smartspaces.util.io.directorywatcher.DirectoryWatcher;
-import io.smartspaces.util.io.directorywatcher.SimpleDirectoryWatcher;
+import io.smartspaces.util.io.directorywatcher.WatchServiceDirectoryWatcher;
 
 import com.google.common.io.Closeables;
 
@@ -180,7 +180,7 @@ public class StandardAutomationManager implements AutomationManager {
    * Prepare the directory watcher for automatic import of activities.
    */
   private void prepareImportDirectoryWatcher() {
-    importDirectoryWatcher = new SimpleDirectoryWatcher();
+    importDirectoryWatcher = new WatchServiceDirectoryWatcher();
     importDirectoryWatcher.addDirectory(fileSupport.newFile(
         spaceEnvironment.getFilesystem().getInstallDirectory(), ACTIVITY_IMPORT_DIRECTORY));
     importDirectoryWatcher.addDirectory(fileSupport.newFile(
@@ -49,8 +49,8 @@ import io.smartspaces.util.io.directorywatcher.BaseDirectoryWatcherListener;
 import io.smartspaces.util.io.directorywatcher.BatchDirectoryWatcher;
 import io.smartspaces.util.io.directorywatcher.BatchDirectoryWatcherListener;
 import io.smartspaces.util.io.directorywatcher.DirectoryWatcher;
-import io.smartspaces.util.io.directorywatcher.SimpleBatchDirectoryWatcher;
-import io.smartspaces.util.io.directorywatcher.SimpleDirectoryWatcher;
+import io.smartspaces.util.io.directorywatcher.WatchServiceBatchDirectoryWatcher;
+import io.smartspaces.util.io.directorywatcher.WatchServiceDirectoryWatcher;
 
 /**
  * A basic implementation of an {@link ExtensionManager}.
@@ -226,7 +226,7 @@ public class StandardExtensionManager implements ExtensionManager {
    * Initialize the Startup extensions.
    */
   private void initializeStartupExtensions() {
-    startupExtensionsDirectoryWatcher = new SimpleBatchDirectoryWatcher();
+    startupExtensionsDirectoryWatcher = new WatchServiceBatchDirectoryWatcher();
     startupExtensionsDirectoryWatcher.addDirectory(new File(spaceEnvironment.getFilesystem()
         .getInstallDirectory(), STARTUP_EXTENSIONS_DIRECTORY));
     startupExtensionsDirectoryWatcher
@@ -271,7 +271,7 @@ public class StandardExtensionManager implements ExtensionManager {
    * Initialize the API extensions.
    */
   private void initializeApiExtensions() {
-    apiExtensionsDirectoryWatcher = new SimpleDirectoryWatcher();
+    apiExtensionsDirectoryWatcher = new WatchServiceDirectoryWatcher();
     apiExtensionsDirectoryWatcher.addDirectory(new File(spaceEnvironment.getFilesystem()
         .getInstallDirectory(), API_EXTENSIONS_DIRECTORY));
     apiExtensionsDirectoryWatcher.addDirectoryWatcherListener(new BaseDirectoryWatcherListener() {
@@ -18,6 +18,7 @@
 package io.smartspaces.master.server.services.internal.comm;
 
 import io.smartspaces.SimpleSmartSpacesException;
+import io.smartspaces.container.control.message.BinaryMasterSpaceControllerCodec;
 import io.smartspaces.container.control.message.StandardMasterSpaceControllerCodec;
 import io.smartspaces.container.control.message.activity.LiveActivityDeleteRequest;
 import io.smartspaces.container.control.message.activity.LiveActivityDeleteResult;
@@ -30,6 +31,8 @@ import io.smartspaces.container.control.message.common.ConfigurationParameterReq
 import io.smartspaces.container.control.message.common.ConfigurationParameterRequest.ConfigurationParameterRequestOperation;
 import io.smartspaces.container.control.message.common.ConfigurationRequest;
 import io.smartspaces.container.control.message.container.ControllerFullStatus;
+import io.smartspaces.container.control.message.container.ControllerSessionHello;
+import io.smartspaces.container.control.message.container.ControllerStatusDelta;
 import io.smartspaces.container.control.message.container.resource.deployment.ContainerResourceDeploymentCommitRequest;
 import io.smartspaces.container.control.message.container.resource.deployment.ContainerResourceDeploymentCommitResponse;
 import io.smartspaces.container.control.message.container.resource.deployment.ContainerResourceDeploymentQueryRequest;
@@ -53,7 +56,12 @@ import io.smartspaces.service.comm.network.client.TcpClientNetworkCommunicationE
 import io.smartspaces.spacecontroller.SpaceControllerState;
 import io.smartspaces.spacecontroller.SpaceControllerStatus;
 import io.smartspaces.system.SmartSpacesEnvironment;
+import io.smartspaces.util.data.mapper.JsonDataMapper;
+import io.smartspaces.util.data.mapper.StandardJsonDataMapper;
+import io.smartspaces.util.io.FileSupport;
+import io.smartspaces.util.io.FileSupportImpl;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -63,6 +71,14 @@ import java.util.concurrent.TimeUnit;
 /**
  * A {@link RemoteSpaceControllerClient} which uses TCP.
  *
+ * <p>
+ * Controllers can be spoken to with either newline-delimited JSON or the
+ * length-prefixed binary protocol, depending on the configuration. With the
+ * binary protocol, the controller session and status version seen from each
+ * controller are kept across connections, and in the master's data directory
+ * across master restarts, so a reconnect only needs the statuses which changed
+ * while disconnected.
+ *
  * @author Keith M. Hughes
  */
 public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControllerClient {
@@ -72,6 +88,32 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
    */
   public static final long CONTROLLER_CONNECTION_TIME_WAIT_DEFAULT = 5000;
 
+  /**
+   * The subdirectory of the data directory which holds the controller status
+   * sessions.
+   */
+  public static final String CONTROLLER_STATUS_SESSIONS_DIRECTORY = "master";
+
+  /**
+   * The name of the file which holds the controller status sessions.
+   */
+  public static final String CONTROLLER_STATUS_SESSIONS_FILENAME = "controller-status-sessions.json";
+
+  /**
+   * The field in a saved controller status session giving the session ID.
+   */
+  private static final String CONTROLLER_STATUS_SESSION_FIELD_SESSION_ID = "sessionId";
+
+  /**
+   * The field in a saved controller status session giving the status version.
+   */
+  private static final String CONTROLLER_STATUS_SESSION_FIELD_STATUS_VERSION = "statusVersion";
+
+  /**
+   * The JSON mapper for saving the controller status sessions.
+   */
+  private static final JsonDataMapper MAPPER = StandardJsonDataMapper.INSTANCE;
+
   /**
    * Number of milliseconds to wait for a controller connect.
    */
@@ -88,6 +130,33 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
   private StandardMasterSpaceControllerCodec messageCodec =
       new StandardMasterSpaceControllerCodec();
 
+  /**
+   * The message codec for the binary controller/master protocol.
+   */
+  private BinaryMasterSpaceControllerCodec binaryMessageCodec =
+      new BinaryMasterSpaceControllerCodec();
+
+  /**
+   * {@code true} if controllers are spoken to with the binary protocol.
+   */
+  private boolean binaryProtocol;
+
+  /**
+   * The binary protocol sessions for controllers, keyed by the controller host
+   * ID.
+   */
+  private final Map<String, ControllerStatusSession> controllerStatusSessions = new HashMap<>();
+
+  /**
+   * The file the controller status sessions are saved in.
+   */
+  private File controllerStatusSessionsFile;
+
+  /**
+   * The file support to use.
+   */
+  private final FileSupport fileSupport = FileSupportImpl.INSTANCE;
+
   /**
    * The TCP client service for connections to space controllers.
    */
@@ -127,6 +196,19 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
 
     remoteControllerClientListeners = new RemoteSpaceControllerClientListenerCollection(log);
 
+    String protocol = spaceEnvironment.getSystemConfiguration().getPropertyString(
+        BinaryMasterSpaceControllerCodec.CONFIGURATION_NAME_CONTROLLER_PROTOCOL,
+        BinaryMasterSpaceControllerCodec.CONFIGURATION_VALUE_DEFAULT_CONTROLLER_PROTOCOL);
+    binaryProtocol = BinaryMasterSpaceControllerCodec.CONFIGURATION_VALUE_CONTROLLER_PROTOCOL_BINARY
+        .equals(protocol);
+    log.formatInfo("Using the %s protocol for space controllers", protocol);
+    if (binaryProtocol) {
+      controllerStatusSessionsFile = fileSupport.newFile(
+          spaceEnvironment.getFilesystem().getDataDirectory(CONTROLLER_STATUS_SESSIONS_DIRECTORY),
+          CONTROLLER_STATUS_SESSIONS_FILENAME);
+      loadControllerStatusSessions();
+    }
+
     masterDataBundleManager.startup();
   }
 
@@ -137,6 +219,10 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
     }
     controllerCommunicators.clear();
 
+    if (binaryProtocol) {
+      saveControllerStatusSessions();
+    }
+
     remoteControllerClientListeners.clear();
 
     masterDataBundleManager.shutdown();
@@ -496,6 +582,90 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
     }
   }
 
+  /**
+   * Handle a frame from a controller using the binary protocol.
+   *
+   * @param spaceController
+   *          the space controller that sent the frame
+   * @param session
+   *          the binary protocol session for the controller
+   * @param frame
+   *          the frame
+   */
+  private void handleRemoteControllerFrame(ActiveSpaceController spaceController,
+      ControllerStatusSession session, byte[] frame) {
+    byte frameType = binaryMessageCodec.getFrameType(frame);
+    switch (frameType) {
+      case BinaryMasterSpaceControllerCodec.FRAME_TYPE_HEARTBEAT:
+        handleControllerHeartbeat(spaceController, null);
+
+        break;
+
+      case BinaryMasterSpaceControllerCodec.FRAME_TYPE_STATUS_DELTA:
+        handleControllerStatusDelta(spaceController, session,
+            binaryMessageCodec.decodeStatusDelta(frame));
+
+        break;
+
+      case BinaryMasterSpaceControllerCodec.FRAME_TYPE_STATUS:
+        handleRemoteControllerStatusUpdate(spaceController, binaryMessageCodec.decodeJson(frame));
+
+        break;
+
+      case BinaryMasterSpaceControllerCodec.FRAME_TYPE_HELLO_RESPONSE:
+        ControllerSessionHello hello = binaryMessageCodec.decodeSessionHello(frame);
+        log.formatInfo("Space controller %s using binary protocol version %d, session %d",
+            spaceController.getDisplayName(), hello.getProtocolVersion(), hello.getSessionId());
+        session.startSession(hello.getSessionId());
+        saveControllerStatusSessions();
+
+        break;
+
+      default:
+        log.formatWarn("Unknown frame type %d, for controller %s", frameType,
+            spaceController.getDisplayName());
+    }
+  }
+
+  /**
+   * Handle a live activity status delta from a controller.
+   *
+   * @param spaceController
+   *          the space controller that sent the delta
+   * @param session
+   *          the binary protocol session for the controller
+   * @param delta
+   *          the delta
+   */
+  private void handleControllerStatusDelta(ActiveSpaceController spaceController,
+      ControllerStatusSession session, ControllerStatusDelta delta) {
+    // A status delta will also be treated as a heartbeat event since the
+    // controller will only send it if it is alive.
+    handleControllerHeartbeat(spaceController, null);
+
+    List<LiveActivityRuntimeStatus> liveActivityStatuses = delta.getLiveActivityStatuses();
+    if (delta.isFull() && log.isInfoEnabled()) {
+      log.formatInfo("Received space controller full status %s, %d activities",
+          spaceController.getDisplayName(), liveActivityStatuses.size());
+    }
+    for (LiveActivityRuntimeStatus liveActivityStatus : liveActivityStatuses) {
+      if (log.isDebugEnabled()) {
+        log.formatDebug("Activity status %s, %s", liveActivityStatus.getUuid(),
+            liveActivityStatus.getStatus());
+      }
+      handleRemoteLiveActivityStatusUpdate(liveActivityStatus);
+    }
+
+    for (LiveActivityDeleteResult deletion : delta.getLiveActivityDeletions()) {
+      if (log.isDebugEnabled()) {
+        log.formatDebug("Activity deleted %s, %s", deletion.getUuid(), deletion.getStatus());
+      }
+      remoteControllerClientListeners.signalActivityDelete(deletion.getUuid(), deletion);
+    }
+
+    session.setStatusVersion(delta.getStatusVersion());
+  }
+
   /**
    * Handle a data restore from a controller status message.
    * 
@@ -687,6 +857,94 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
     }
   }
 
+  /**
+   * Get the binary protocol session for a controller, creating it if there is
+   * none.
+   *
+   * @param controllerHostId
+   *          the host ID of the controller
+   *
+   * @return the session
+   */
+  private ControllerStatusSession getControllerStatusSession(String controllerHostId) {
+    synchronized (controllerStatusSessions) {
+      ControllerStatusSession session = controllerStatusSessions.get(controllerHostId);
+      if (session == null) {
+        session = new ControllerStatusSession();
+        controllerStatusSessions.put(controllerHostId, session);
+      }
+
+      return session;
+    }
+  }
+
+  /**
+   * Load the controller status sessions saved by an earlier run of the master.
+   *
+   * <p>
+   * Controllers whose sessions can't be read will get a full status.
+   */
+  private void loadControllerStatusSessions() {
+    if (!fileSupport.exists(controllerStatusSessionsFile)) {
+      return;
+    }
+
+    try {
+      Map<String, Object> savedSessions = MAPPER.parseObject(controllerStatusSessionsFile);
+      synchronized (controllerStatusSessions) {
+        for (Map.Entry<String, Object> entry : savedSessions.entrySet()) {
+          @SuppressWarnings("unchecked")
+          Map<String, Object> savedSession = (Map<String, Object>) entry.getValue();
+          controllerStatusSessions.put(entry.getKey(),
+              new ControllerStatusSession(
+                  ((Number) savedSession.get(CONTROLLER_STATUS_SESSION_FIELD_SESSION_ID))
+                      .longValue(),
+                  ((Number) savedSession.get(CONTROLLER_STATUS_SESSION_FIELD_STATUS_VERSION))
+                      .longValue()));
+        }
+      }
+
+      log.formatInfo("Loaded %d space controller status sessions", savedSessions.size());
+    } catch (Throwable e) {
+      log.formatError(e, "Could not load space controller status sessions from %s",
+          controllerStatusSessionsFile);
+    }
+  }
+
+  /**
+   * Save the controller status sessions so they survive a restart of the
+   * master.
+   *
+   * <p>
+   * The sessions are only saved when a session starts, when a controller
+   * disconnects and when the client shuts down. A status version older than
+   * the last one received only means the controller resends some statuses, so
+   * nothing is lost if the master stops without saving.
+   */
+  private void saveControllerStatusSessions() {
+    Map<String, Object> savedSessions = new HashMap<>();
+    synchronized (controllerStatusSessions) {
+      for (Map.Entry<String, ControllerStatusSession> entry : controllerStatusSessions.entrySet()) {
+        ControllerStatusSession session = entry.getValue();
+        Map<String, Object> savedSession = new HashMap<>();
+        savedSession.put(CONTROLLER_STATUS_SESSION_FIELD_SESSION_ID, session.getSessionId());
+        savedSession.put(CONTROLLER_STATUS_SESSION_FIELD_STATUS_VERSION,
+            session.getStatusVersion());
+        savedSessions.put(entry.getKey(), savedSession);
+      }
+
+      try {
+        File tempFile = fileSupport.newFile(controllerStatusSessionsFile.getParentFile(),
+            CONTROLLER_STATUS_SESSIONS_FILENAME + ".tmp");
+        fileSupport.writeFile(tempFile, MAPPER.toString(savedSessions));
+        fileSupport.atomicMoveFile(tempFile, controllerStatusSessionsFile);
+      } catch (Throwable e) {
+        log.formatError(e, "Could not save space controller status sessions to %s",
+            controllerStatusSessionsFile);
+      }
+    }
+  }
+
   /**
    * Shutdown the communicator for a given controller.
    *
@@ -762,6 +1020,11 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
      */
     private TcpClientNetworkCommunicationEndpoint<String> controllerClient;
 
+    /**
+     * The client to the controller when using the binary protocol.
+     */
+    private TcpClientNetworkCommunicationEndpoint<byte[]> binaryControllerClient;
+
     /**
      * Construct a communicator.
      *
@@ -779,6 +1042,19 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
      *          the remote node
      */
     public void startup() {
+      if (binaryProtocol) {
+        startupBinary();
+      } else {
+        startupString();
+      }
+
+      remoteControllerClientListeners.signalSpaceControllerConnectAttempt(spaceController);
+    }
+
+    /**
+     * Start up the client for the JSON protocol.
+     */
+    private void startupString() {
       SpaceController controller = spaceController.spaceController();
       controllerClient = tcpClientService.newStringClient(
           StandardMasterSpaceControllerCodec.DELIMITERS, StandardMasterSpaceControllerCodec.CHARSET,
@@ -809,15 +1085,66 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
         }
       });
       controllerClient.startup();
+    }
 
-      remoteControllerClientListeners.signalSpaceControllerConnectAttempt(spaceController);
+    /**
+     * Start up the client for the binary protocol.
+     *
+     * <p>
+     * The controller is sent a hello as soon as the connection is made, so that
+     * it can send the statuses changed since the last connection.
+     */
+    private void startupBinary() {
+      SpaceController controller = spaceController.spaceController();
+      final ControllerStatusSession session = getControllerStatusSession(controller.getHostId());
+
+      binaryControllerClient =
+          tcpClientService.newByteArrayClient(BinaryMasterSpaceControllerCodec.FRAME_LENGTH_MAX,
+              controller.getHostName(), controller.getHostControlPort(), log);
+      binaryControllerClient.addListener(new TcpClientNetworkCommunicationEndpointListener<byte[]>() {
+
+        @Override
+        public void
+            onTcpClientConnectionSuccess(TcpClientNetworkCommunicationEndpoint<byte[]> endpoint) {
+          log.formatInfo("Controller binary client connected %s", spaceController.getDisplayName());
+          connectionLatch.countDown();
+
+          handleControllerConnect(spaceController);
+        }
+
+        @Override
+        public void
+            onTcpClientConnectionClose(TcpClientNetworkCommunicationEndpoint<byte[]> endpoint) {
+          log.formatInfo("Controller binary client disconnected %s",
+              spaceController.getDisplayName());
+
+          handleControllerDisconnect(spaceController);
+          saveControllerStatusSessions();
+        }
+
+        @Override
+        public void onNewTcpClientMessage(TcpClientNetworkCommunicationEndpoint<byte[]> endpoint,
+            byte[] message) {
+          handleRemoteControllerFrame(spaceController, session, message);
+        }
+      });
+      binaryControllerClient.startup();
+
+      binaryControllerClient.sendMessage(binaryMessageCodec.encodeHello(new ControllerSessionHello(
+          BinaryMasterSpaceControllerCodec.PROTOCOL_VERSION, session.getSessionId(),
+          session.getStatusVersion())));
     }
 
     /**
      * Shut the communicator down.
      */
     public void shutdown() {
-      controllerClient.shutdown();
+      if (controllerClient != null) {
+        controllerClient.shutdown();
+      }
+      if (binaryControllerClient != null) {
+        binaryControllerClient.shutdown();
+      }
 
       remoteControllerClientListeners.signalSpaceControllerDisconnectAttempt(spaceController);
     }
@@ -831,7 +1158,11 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
     public void sendControllerRequest(String request) {
       try {
         if (connectionLatch.await(controllerConnectionTimeWait, TimeUnit.MILLISECONDS)) {
-          controllerClient.sendMessage(request);
+          if (binaryControllerClient != null) {
+            binaryControllerClient.sendMessage(binaryMessageCodec.encodeRequest(request));
+          } else {
+            controllerClient.sendMessage(request);
+          }
         } else {
           remoteControllerClientListeners.signalSpaceControllerConnectFailed(spaceController,
               controllerConnectionTimeWait);
@@ -845,4 +1176,85 @@ public class SimpleTcpRemoteSpaceControllerClient implements RemoteSpaceControll
       }
     }
   }
+
+  /**
+   * The binary protocol session last seen from a controller.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class ControllerStatusSession {
+
+    /**
+     * The ID of the controller's session.
+     */
+    private long sessionId = BinaryMasterSpaceControllerCodec.SESSION_ID_NONE;
+
+    /**
+     * The last status version received from the controller.
+     */
+    private long statusVersion;
+
+    /**
+     * Construct a session which has not yet seen the controller.
+     */
+    public ControllerStatusSession() {
+    }
+
+    /**
+     * Construct a session saved by an earlier run of the master.
+     *
+     * @param sessionId
+     *          the ID of the controller's session
+     * @param statusVersion
+     *          the last status version received from the controller
+     */
+    public ControllerStatusSession(long sessionId, long statusVersion) {
+      this.sessionId = sessionId;
+      this.statusVersion = statusVersion;
+    }
+
+    /**
+     * Start a session with the controller.
+     *
+     * <p>
+     * The status version is forgotten if the session is a new one.
+     *
+     * @param newSessionId
+     *          the ID of the session
+     */
+    public synchronized void startSession(long newSessionId) {
+      if (sessionId != newSessionId) {
+        sessionId = newSessionId;
+        statusVersion = 0;
+      }
+    }
+
+    /**
+     * Get the ID of the controller's session.
+     *
+     * @return the session ID
+     */
+    public synchronized long getSessionId() {
+      return sessionId;
+    }
+
+    /**
+     * Get the last status version received from the controller.
+     *
+     * @return the status version
+     */
+    public synchronized long getStatusVersion() {
+      return statusVersion;
+    }
+
+    /**
+     * Set the last status version received from the controller.
+     *
+     * @param statusVersion
+     *          the status version
+     */
+    public synchronized void setStatusVersion(long statusVersion) {
+      this.statusVersion = statusVersion;
+    }
+  }
 }
@@ -70,6 +70,12 @@ public class SensacellDriver extends DriverSupport {
    */
   public static final int SENSACELL_DEFAULT_THRESHOLD = 100;
 
+  /**
+   * The maximum amount of time to wait for a response from the sensacell, in
+   * milliseconds.
+   */
+  public static final int SENSACELL_READ_TIMEOUT = 500;
+
   /**
    * The length of time for the sensacell to reset, in milliseconds.
    */
@@ -487,11 +493,15 @@ public class SensacellDriver extends DriverSupport {
     int offset = 0;
     int toRead = buffer.length;
     while (toRead > 0) {
-      int readAmt = cellEndpoint.read(buffer, offset, toRead);
+      int readAmt = cellEndpoint.read(buffer, offset, toRead, SENSACELL_READ_TIMEOUT);
       if (readAmt == -1) {
         log.info("Reached EOF of sensacell stream");
         return false;
       }
+      if (readAmt == 0) {
+        log.warn("Timed out waiting for sensacell packet");
+        return false;
+      }
       offset += readAmt;
       toRead -= readAmt;
     }
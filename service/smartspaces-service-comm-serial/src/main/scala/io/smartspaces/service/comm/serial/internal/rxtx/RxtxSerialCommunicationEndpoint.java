@@ -20,16 +20,22 @@ package io.smartspaces.service.comm.serial.internal.rxtx;
 import java.io.IOException;
 import java.util.EnumMap;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.google.common.collect.Maps;
 
 import gnu.io.CommPortIdentifier;
 import gnu.io.PortInUseException;
 import gnu.io.SerialPort;
+import gnu.io.SerialPortEvent;
+import gnu.io.SerialPortEventListener;
+import gnu.io.UnsupportedCommOperationException;
 import io.smartspaces.SimpleSmartSpacesException;
 import io.smartspaces.SmartSpacesException;
 import io.smartspaces.logging.ExtendedLog;
 import io.smartspaces.service.comm.serial.SerialCommunicationEndpoint;
+import io.smartspaces.service.comm.serial.SerialDataAvailableListener;
 import io.smartspaces.system.SmartSpacesEnvironment;
 
 /**
@@ -41,6 +47,11 @@ public class RxtxSerialCommunicationEndpoint implements SerialCommunicationEndpo
 
   private static final int BUFFER_SIZE_NO_VALUE = -1;
 
+  /**
+   * The receive timeout value for reads which block until data arrives.
+   */
+  private static final int RECEIVE_TIMEOUT_NONE = -1;
+
   /**
    * The default baud rate for a connection.
    */
@@ -142,6 +153,17 @@ public class RxtxSerialCommunicationEndpoint implements SerialCommunicationEndpo
    */
   private FlowControl[] flowControls = new FlowControl[] { FLOW_CONTROL_DEFAULT };
 
+  /**
+   * The receive timeout currently set on the port, in milliseconds.
+   */
+  private int receiveTimeout = RECEIVE_TIMEOUT_NONE;
+
+  /**
+   * The listeners for data becoming available.
+   */
+  private final List<SerialDataAvailableListener> dataAvailableListeners =
+      new CopyOnWriteArrayList<>();
+
   /**
    * Logger for the connection.
    */
@@ -191,6 +213,16 @@ public class RxtxSerialCommunicationEndpoint implements SerialCommunicationEndpo
           port.setOutputBufferSize(outputBufferSize);
         }
       }
+
+      port.addEventListener(new SerialPortEventListener() {
+        @Override
+        public void serialEvent(SerialPortEvent event) {
+          if (event.getEventType() == SerialPortEvent.DATA_AVAILABLE) {
+            notifyDataAvailableListeners();
+          }
+        }
+      });
+      port.notifyOnDataAvailable(true);
     } catch (Exception e) {
       throw new SmartSpacesException(String.format("Unable to connect to serial port %s with rxtx",
           portName), e);
@@ -245,6 +277,7 @@ public class RxtxSerialCommunicationEndpoint implements SerialCommunicationEndpo
   @Override
   public int read() {
     try {
+      setReceiveTimeout(RECEIVE_TIMEOUT_NONE);
       return port.getInputStream().read();
     } catch (IOException e) {
       throw new SmartSpacesException(String.format(
@@ -255,6 +288,7 @@ public class RxtxSerialCommunicationEndpoint implements SerialCommunicationEndpo
   @Override
   public int read(byte[] buffer) {
     try {
+      setReceiveTimeout(RECEIVE_TIMEOUT_NONE);
       return port.getInputStream().read(buffer);
     } catch (IOException e) {
       throw new SmartSpacesException(String.format(
@@ -265,6 +299,7 @@ public class RxtxSerialCommunicationEndpoint implements SerialCommunicationEndpo
   @Override
   public int read(byte[] buffer, int offset, int length) {
     try {
+      setReceiveTimeout(RECEIVE_TIMEOUT_NONE);
       return port.getInputStream().read(buffer, offset, length);
     } catch (IOException e) {
       throw new SmartSpacesException(String.format(
@@ -272,6 +307,27 @@ public class RxtxSerialCommunicationEndpoint implements SerialCommunicationEndpo
     }
   }
 
+  @Override
+  public int read(byte[] buffer, int offset, int length, int timeout) {
+    try {
+      setReceiveTimeout(timeout);
+      return port.getInputStream().read(buffer, offset, length);
+    } catch (IOException e) {
+      throw new SmartSpacesException(String.format(
+          "Unable to read serial port %s output stream with rxtx", portName), e);
+    }
+  }
+
+  @Override
+  public void addDataAvailableListener(SerialDataAvailableListener listener) {
+    dataAvailableListeners.add(listener);
+  }
+
+  @Override
+  public void removeDataAvailableListener(SerialDataAvailableListener listener) {
+    dataAvailableListeners.remove(listener);
+  }
+
   @Override
   public void flush() {
     try {
@@ -367,6 +423,54 @@ public class RxtxSerialCommunicationEndpoint implements SerialCommunicationEndpo
         + ", dataBits=" + dataBits + ", stopBits=" + stopBits + ", parity=" + parity + "]";
   }
 
+  /**
+   * Set the receive timeout on the port, if it has changed.
+   *
+   * <p>
+   * A timed read returns as soon as any data is available, or when the timeout
+   * expires.
+   *
+   * @param timeout
+   *          the timeout in milliseconds, or {@link #RECEIVE_TIMEOUT_NONE} to
+   *          block until data arrives
+   *
+   * @throws IOException
+   *           the timeout could not be set
+   */
+  private synchronized void setReceiveTimeout(int timeout) throws IOException {
+    if (timeout == receiveTimeout) {
+      return;
+    }
+
+    try {
+      if (timeout == RECEIVE_TIMEOUT_NONE) {
+        port.disableReceiveTimeout();
+        port.disableReceiveThreshold();
+      } else {
+        port.enableReceiveThreshold(1);
+        port.enableReceiveTimeout(timeout);
+      }
+      receiveTimeout = timeout;
+    } catch (UnsupportedCommOperationException e) {
+      throw new IOException(String.format("Receive timeouts not supported on serial port %s",
+          portName), e);
+    }
+  }
+
+  /**
+   * Tell all data available listeners that there is data to read.
+   */
+  private void notifyDataAvailableListeners() {
+    for (SerialDataAvailableListener listener : dataAvailableListeners) {
+      try {
+        listener.onSerialDataAvailable(this);
+      } catch (Throwable e) {
+        log.error(String.format("Error in data available listener for serial port %s", portName),
+            e);
+      }
+    }
+  }
+
   /**
    * Get a serial port.
    *
@@ -21,6 +21,7 @@ import io.smartspaces.messaging.MessageSender;
 import io.smartspaces.resource.managed.ManagedResource;
 
 import java.net.InetAddress;
+import java.util.Collection;
 
 /**
  * Communication endpoint for a TCP based client.
@@ -78,4 +79,41 @@ public interface TcpClientNetworkCommunicationEndpoint<T> extends MessageSender<
    *          the connection timeout, in milliseconds
    */
   void setConnectionTimeout(long connectionTimeout);
+
+  /**
+   * Set whether the endpoint uses direct buffers for channel I/O.
+   *
+   * <p>
+   * Direct buffers are sliced from shared preallocated blocks of direct
+   * memory, which saves a copy between the heap and the socket for high rate
+   * traffic. Must be called before {@link #startup()}.
+   *
+   * @param directBuffers
+   *          {@code true} if direct buffers should be used
+   */
+  void setDirectBuffers(boolean directBuffers);
+
+  /**
+   * Set whether the endpoint batches writes.
+   *
+   * <p>
+   * When batching, all messages written by a single call to send messages are
+   * combined into one socket write rather than one write per message. Must be
+   * called before {@link #startup()}.
+   *
+   * @param writeBatching
+   *          {@code true} if writes should be batched
+   */
+  void setWriteBatching(boolean writeBatching);
+
+  /**
+   * Send a collection of messages.
+   *
+   * <p>
+   * If the endpoint batches writes, the messages go out in one socket write.
+   *
+   * @param messages
+   *          the messages to send, in order
+   */
+  void sendMessages(Collection<T> messages);
 }
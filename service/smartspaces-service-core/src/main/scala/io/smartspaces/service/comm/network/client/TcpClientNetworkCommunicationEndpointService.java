@@ -20,6 +20,8 @@ package io.smartspaces.service.comm.network.client;
 import java.net.InetAddress;
 import java.nio.charset.Charset;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+
 import io.smartspaces.logging.ExtendedLog;
 import io.smartspaces.service.SupportedService;
 
@@ -35,6 +37,11 @@ public interface TcpClientNetworkCommunicationEndpointService extends SupportedS
    */
   String SERVICE_NAME = "comm.network.tcp.client";
 
+  /**
+   * The default maximum length of a byte array message, in bytes.
+   */
+  int BYTE_ARRAY_MESSAGE_LENGTH_MAX_DEFAULT = 16 * 1024 * 1024;
+
   /**
    * Create a new TCP client endpoint.
    *
@@ -72,4 +79,71 @@ public interface TcpClientNetworkCommunicationEndpointService extends SupportedS
    */
   TcpClientNetworkCommunicationEndpoint<String> newStringClient(byte[][] delimiters,
       Charset charset, InetAddress remoteHost, int remotePort, ExtendedLog log);
+
+  /**
+   * Create a new TCP client endpoint which uses byte arrays for messages.
+   *
+   * <p>
+   * Each message is framed with a 4 byte big-endian length header.
+   *
+   * @param maxMessageLength
+   *          the maximum length of an incoming message, in bytes
+   * @param remoteHost
+   *          the remote host to attach to
+   * @param remotePort
+   *          port on the remote host to connect to
+   * @param log
+   *          the logger to use
+   *
+   * @return the communication endpoint
+   */
+  TcpClientNetworkCommunicationEndpoint<byte[]> newByteArrayClient(int maxMessageLength,
+      String remoteHost, int remotePort, ExtendedLog log);
+
+  /**
+   * Create a new TCP client endpoint which uses byte arrays for messages.
+   *
+   * <p>
+   * Each message is framed with a big-endian length header.
+   *
+   * @param lengthHeaderSize
+   *          the number of bytes in the length header, one of 1, 2, 3, 4, or 8
+   * @param maxMessageLength
+   *          the maximum length of an incoming message, in bytes
+   * @param remoteHost
+   *          the remote host to attach to
+   * @param remotePort
+   *          port on the remote host to connect to
+   * @param log
+   *          the logger to use
+   *
+   * @return the communication endpoint
+   */
+  TcpClientNetworkCommunicationEndpoint<byte[]> newByteArrayClient(int lengthHeaderSize,
+      int maxMessageLength, String remoteHost, int remotePort, ExtendedLog log);
+
+  /**
+   * Create a new TCP client endpoint which uses Netty channel buffers for
+   * messages.
+   *
+   * <p>
+   * Each message is framed with a big-endian length header. Incoming messages
+   * are not copied into byte arrays.
+   *
+   * @param lengthHeaderSize
+   *          the number of bytes in the length header, one of 1, 2, 3, 4, or 8
+   * @param maxMessageLength
+   *          the maximum length of an incoming message, in bytes
+   * @param remoteHost
+   *          the remote host to attach to
+   * @param remotePort
+   *          port on the remote host to connect to
+   * @param log
+   *          the logger to use
+   *
+   * @return the communication endpoint
+   */
+  TcpClientNetworkCommunicationEndpoint<ChannelBuffer> newChannelBufferClient(
+      int lengthHeaderSize, int maxMessageLength, String remoteHost, int remotePort,
+      ExtendedLog log);
 }
@@ -24,6 +24,7 @@ import io.smartspaces.service.comm.network.WriteableUdpPacket;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.List;
 
 /**
  * A communication endpoint for UDP clients.
@@ -95,6 +96,20 @@ public interface UdpClientNetworkCommunicationEndpoint extends ManagedResource {
    */
   void sendMessage(InetSocketAddress remoteAddress, byte[] message, int offset, int length);
 
+  /**
+   * Send a batch of datagrams to a remote address.
+   *
+   * <p>
+   * Each message is sent as its own datagram. The messages share one buffer
+   * and are handed to the channel together.
+   *
+   * @param remoteAddress
+   *          the address to send the datagrams to
+   * @param messages
+   *          the content of the datagrams, in order
+   */
+  void sendMessages(InetSocketAddress remoteAddress, List<byte[]> messages);
+
   /**
    * Create a new UDP packet.
    *
@@ -133,4 +148,27 @@ public interface UdpClientNetworkCommunicationEndpoint extends ManagedResource {
    *          the listener to remove
    */
   void removeListener(UdpClientNetworkCommunicationEndpointListener listener);
+
+  /**
+   * Set the largest datagram the endpoint can receive.
+   *
+   * <p>
+   * Larger datagrams are truncated. Must be called before {@link #startup()}.
+   *
+   * @param maxDatagramSize
+   *          the largest datagram size, in bytes
+   */
+  void setMaxDatagramSize(int maxDatagramSize);
+
+  /**
+   * Set the size of the socket receive buffer.
+   *
+   * <p>
+   * A larger buffer lets bursts of high rate traffic queue up in the network
+   * stack rather than be dropped. Must be called before {@link #startup()}.
+   *
+   * @param receiveBufferSize
+   *          the size of the receive buffer, in bytes
+   */
+  void setReceiveBufferSize(int receiveBufferSize);
 }
@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.network.client.internal.netty;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.handler.queue.BufferedWriteHandler;
+
+import com.google.common.collect.Lists;
+
+import io.smartspaces.SimpleSmartSpacesException;
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.service.comm.network.client.TcpClientNetworkCommunicationEndpoint;
+import io.smartspaces.service.comm.network.client.TcpClientNetworkCommunicationEndpointListener;
+import io.smartspaces.service.comm.network.internal.netty.NettyChannelBufferFactories;
+
+/**
+ * A base Netty-based {@link TcpClientNetworkCommunicationEndpoint}.
+ *
+ * <p>
+ * Subclasses supply the framing and codecs for the messages.
+ *
+ * @param <T>
+ *          the type of messages
+ *
+ * @author Keith M. Hughes
+ */
+public abstract class BaseNettyTcpClientNetworkCommunicationEndpoint<T>
+    implements TcpClientNetworkCommunicationEndpoint<T> {
+
+  /**
+   * Default timeout for connecting to the server, in milliseconds.
+   */
+  public static final long CONNECTION_TIMEOUT_DEFAULT = 1000;
+
+  /**
+   * The name of the pipeline handler which batches writes.
+   */
+  public static final String PIPELINE_HANDLER_WRITE_BATCHER = "writeBatcher";
+
+  /**
+   * The remote host to attach to.
+   */
+  private final InetAddress remoteHost;
+
+  /**
+   * The remote port.
+   */
+  private final int remotePort;
+
+  /**
+   * The bootstrap for the TCP client.
+   */
+  private ClientBootstrap bootstrap;
+
+  /**
+   * The listeners to endpoint events.
+   */
+  private final List<TcpClientNetworkCommunicationEndpointListener<T>> listeners =
+      Lists.newCopyOnWriteArrayList();
+
+  /**
+   * Executor service for this endpoint.
+   */
+  private final ExecutorService executorService;
+
+  /**
+   * Logger for this endpoint.
+   */
+  private final ExtendedLog log;
+
+  /**
+   * Timeout for connecting to the server, in milliseconds.
+   */
+  private long connectionTimeout = CONNECTION_TIMEOUT_DEFAULT;
+
+  /**
+   * {@code true} if the connection uses direct buffers.
+   */
+  private boolean directBuffers;
+
+  /**
+   * {@code true} if the connection batches writes.
+   */
+  private boolean writeBatching;
+
+  /**
+   * The channel for communicating with the remote server.
+   */
+  private Channel remoteChannel;
+
+  /**
+   * Construct the endpoint.
+   *
+   * @param remoteHost
+   *          the remote host to attach to
+   * @param remotePort
+   *          the port on the remote host to attach to
+   * @param executorService
+   *          the executor service for threads
+   * @param log
+   *          the logger to use
+   */
+  public BaseNettyTcpClientNetworkCommunicationEndpoint(InetAddress remoteHost, int remotePort,
+      ExecutorService executorService, ExtendedLog log) {
+    this.remoteHost = remoteHost;
+    this.remotePort = remotePort;
+    this.executorService = executorService;
+    this.log = log;
+  }
+
+  @Override
+  public void startup() {
+    // Configure the server.
+    bootstrap =
+        new ClientBootstrap(new NioClientSocketChannelFactory(executorService, executorService));
+
+    // Set up the pipeline factory.
+    bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() throws Exception {
+        ChannelPipeline pipeline = Channels.pipeline();
+
+        // First in the pipeline so it sees the fully encoded frames.
+        if (writeBatching) {
+          pipeline.addLast(PIPELINE_HANDLER_WRITE_BATCHER, new BufferedWriteHandler(true));
+        }
+        addMessageCodecs(pipeline);
+        pipeline.addLast("handler", new NettyTcpClientHandler());
+
+        return pipeline;
+      }
+    });
+
+    if (directBuffers) {
+      bootstrap.setOption(NettyChannelBufferFactories.BOOTSTRAP_OPTION_BUFFER_FACTORY,
+          NettyChannelBufferFactories.getDirectBufferFactory());
+    }
+
+    InetSocketAddress addressToConnectTo = new InetSocketAddress(remoteHost, remotePort);
+    ChannelFuture cf = bootstrap.connect(addressToConnectTo);
+    try {
+      cf.await(connectionTimeout, TimeUnit.MILLISECONDS);
+      if (cf.isSuccess()) {
+        remoteChannel = cf.getChannel();
+      } else {
+        throw new SimpleSmartSpacesException("Could not connect to remote TCP server",
+            cf.getCause());
+      }
+    } catch (InterruptedException e) {
+      throw new SimpleSmartSpacesException(
+          "The connection to the remote TCP server was interuppted");
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    listeners.clear();
+    
+    if (bootstrap != null) {
+      bootstrap.shutdown();
+      bootstrap = null;
+    }
+  }
+
+  @Override
+  public InetAddress getRemoteHost() {
+    return remoteHost;
+  }
+
+  @Override
+  public int getRemotePort() {
+    return remotePort;
+  }
+
+  @Override
+  public void addListener(TcpClientNetworkCommunicationEndpointListener<T> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeListener(TcpClientNetworkCommunicationEndpointListener<T> listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public void sendMessage(T message) {
+    checkOpen();
+
+    remoteChannel.write(message);
+    flushWrites();
+  }
+
+  @Override
+  public void sendMessages(Collection<T> messages) {
+    checkOpen();
+
+    for (T message : messages) {
+      remoteChannel.write(message);
+    }
+    flushWrites();
+  }
+
+  @Override
+  public void setConnectionTimeout(long connectionTimeout) {
+    this.connectionTimeout = connectionTimeout;
+  }
+
+  @Override
+  public void setDirectBuffers(boolean directBuffers) {
+    this.directBuffers = directBuffers;
+  }
+
+  @Override
+  public void setWriteBatching(boolean writeBatching) {
+    this.writeBatching = writeBatching;
+  }
+
+  /**
+   * Add the framing and codecs for messages to a new channel pipeline.
+   *
+   * <p>
+   * The decoders must produce messages of the endpoint's message type.
+   *
+   * @param pipeline
+   *          the pipeline for the connection
+   */
+  protected abstract void addMessageCodecs(ChannelPipeline pipeline);
+
+  /**
+   * Make sure the connection is open before writing.
+   */
+  private void checkOpen() {
+    if (!remoteChannel.isOpen()) {
+      throw new SimpleSmartSpacesException(
+          "Attempt to write on a closed TCP client server connection");
+    }
+  }
+
+  /**
+   * Send all batched writes, if the connection batches writes.
+   */
+  private void flushWrites() {
+    BufferedWriteHandler writeBatcher =
+        (BufferedWriteHandler) remoteChannel.getPipeline().get(PIPELINE_HANDLER_WRITE_BATCHER);
+    if (writeBatcher != null) {
+      writeBatcher.flush();
+    }
+  }
+
+  /**
+   * Handle the message received by the handler.
+   *
+   * @param event
+   *          the event which happened
+   */
+  private void handleConnectionSuccessful(ChannelStateEvent event) {
+    for (TcpClientNetworkCommunicationEndpointListener<T> listener : listeners) {
+      try {
+        listener.onTcpClientConnectionSuccess(this);
+      } catch (Throwable e) {
+        log.error("Error handling TCP client successful connection listener", e);
+      }
+    }
+  }
+
+  /**
+   * Handle the message received by the handler.
+   *
+   * @param event
+   *          the event which happened
+   */
+  private void handleConnectionClose(ChannelStateEvent event) {
+    for (TcpClientNetworkCommunicationEndpointListener<T> listener : listeners) {
+      try {
+        listener.onTcpClientConnectionClose(this);
+      } catch (Throwable e) {
+        log.error("Error handling TCP client connection close listener", e);
+      }
+    }
+  }
+
+  /**
+   * Handle the message received by the handler.
+   *
+   * @param event
+   *          the event which happened
+   */
+  @SuppressWarnings("unchecked")
+  private void handleMessageReceived(MessageEvent event) {
+    T message = (T) event.getMessage();
+
+    for (TcpClientNetworkCommunicationEndpointListener<T> listener : listeners) {
+      try {
+        listener.onNewTcpClientMessage(this, message);
+      } catch (Throwable e) {
+        log.error("Error handling TCP client message", e);
+      }
+    }
+  }
+
+  /**
+   * Netty handler for incoming TCP requests.
+   *
+   * @author Keith M. Hughes
+   */
+  public class NettyTcpClientHandler extends SimpleChannelUpstreamHandler {
+
+    @Override
+    public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+      handleConnectionSuccessful(e);
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+      handleConnectionClose(e);
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+      handleMessageReceived(e);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+      log.error("Error during netty TCP client handler processing", e.getCause());
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.network.client.internal.netty;
+
+import java.net.InetAddress;
+import java.util.concurrent.ExecutorService;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelPipeline;
+
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.service.comm.network.internal.netty.LengthFieldFrameCodecs;
+import io.smartspaces.service.comm.network.client.TcpClientNetworkCommunicationEndpoint;
+
+/**
+ * A Netty-based {@link TcpClientNetworkCommunicationEndpoint} using Netty
+ * channel buffers for messaging.
+ *
+ * <p>
+ * Each message is framed with a big-endian length header. Listeners get each
+ * incoming frame as the buffer the frame decoder produced, without a further
+ * copy into a byte array.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyChannelBufferTcpClientNetworkCommunicationEndpoint
+    extends BaseNettyTcpClientNetworkCommunicationEndpoint<ChannelBuffer> {
+
+  /**
+   * The number of bytes in the length header of a frame.
+   */
+  private final int lengthHeaderSize;
+
+  /**
+   * The maximum length of an incoming message, in bytes.
+   */
+  private final int maxMessageLength;
+
+  /**
+   * Construct the endpoint.
+   *
+   * @param lengthHeaderSize
+   *          the number of bytes in the length header of a frame
+   * @param maxMessageLength
+   *          the maximum length of an incoming message, in bytes
+   * @param remoteHost
+   *          the remote host to attach to
+   * @param remotePort
+   *          the port on the remote host to attach to
+   * @param executorService
+   *          the executor service for threads
+   * @param log
+   *          the logger to use
+   */
+  public NettyChannelBufferTcpClientNetworkCommunicationEndpoint(int lengthHeaderSize,
+      int maxMessageLength, InetAddress remoteHost, int remotePort,
+      ExecutorService executorService, ExtendedLog log) {
+    super(remoteHost, remotePort, executorService, log);
+
+    LengthFieldFrameCodecs.checkLengthHeaderSize(lengthHeaderSize);
+
+    this.lengthHeaderSize = lengthHeaderSize;
+    this.maxMessageLength = maxMessageLength;
+  }
+
+  @Override
+  protected void addMessageCodecs(ChannelPipeline pipeline) {
+    LengthFieldFrameCodecs.addFrameCodecs(pipeline, lengthHeaderSize, maxMessageLength);
+  }
+
+  @Override
+  public String toString() {
+    return "NettyChannelBufferTcpClientNetworkCommunicationEndpoint [remoteHost=" + getRemoteHost()
+        + ", remotePort=" + getRemotePort() + "]";
+  }
+}
@@ -18,48 +18,26 @@
 package io.smartspaces.service.comm.network.client.internal.netty;
 
 import java.net.InetAddress;
-import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
 
-import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.channel.Channel;
-import org.jboss.netty.channel.ChannelFuture;
-import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
-import org.jboss.netty.channel.ChannelPipelineFactory;
-import org.jboss.netty.channel.ChannelStateEvent;
-import org.jboss.netty.channel.Channels;
-import org.jboss.netty.channel.ExceptionEvent;
-import org.jboss.netty.channel.MessageEvent;
-import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
-import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
 import org.jboss.netty.handler.codec.frame.DelimiterBasedFrameDecoder;
 import org.jboss.netty.handler.codec.string.StringDecoder;
 import org.jboss.netty.handler.codec.string.StringEncoder;
 
-import com.google.common.collect.Lists;
-
-import io.smartspaces.SimpleSmartSpacesException;
 import io.smartspaces.logging.ExtendedLog;
 import io.smartspaces.service.comm.network.client.TcpClientNetworkCommunicationEndpoint;
-import io.smartspaces.service.comm.network.client.TcpClientNetworkCommunicationEndpointListener;
 
 /**
- * A Netty-based {@link TcpClientNetworkCommunicationEndpoint}.
+ * A Netty-based {@link TcpClientNetworkCommunicationEndpoint} using strings for
+ * messaging.
  *
  * @author Keith M. Hughes
  */
 public class NettyStringTcpClientNetworkCommunicationEndpoint
-    implements TcpClientNetworkCommunicationEndpoint<String> {
-
-  /**
-   * Default timeout for connecting to the server, in milliseconds.
-   */
-  public static final long CONNECTION_TIMEOUT_DEFAULT = 1000;
+    extends BaseNettyTcpClientNetworkCommunicationEndpoint<String> {
 
   /**
    * The delimiters for the incoming string messages.
@@ -71,47 +49,6 @@ public class NettyStringTcpClientNetworkCommunicationEndpoint
    */
   private final Charset charset;
 
-  /**
-   * The remote host to attach to.
-   */
-  private final InetAddress remoteHost;
-
-  /**
-   * The remote port.
-   */
-  private final int remotePort;
-
-  /**
-   * The bootstrap for the TCP client.
-   */
-  private ClientBootstrap bootstrap;
-
-  /**
-   * The listeners to endpoint events.
-   */
-  private final List<TcpClientNetworkCommunicationEndpointListener<String>> listeners =
-      Lists.newCopyOnWriteArrayList();
-
-  /**
-   * Executor service for this endpoint.
-   */
-  private final ExecutorService executorService;
-
-  /**
-   * Logger for this endpoint.
-   */
-  private final ExtendedLog log;
-
-  /**
-   * Timeout for connecting to the server, in milliseconds.
-   */
-  private long connectionTimeout = CONNECTION_TIMEOUT_DEFAULT;
-
-  /**
-   * The channel for communicating with the remote server.
-   */
-  private Channel remoteChannel;
-
   /**
    * Construct the endpoint.
    *
@@ -131,178 +68,23 @@ public class NettyStringTcpClientNetworkCommunicationEndpoint
   public NettyStringTcpClientNetworkCommunicationEndpoint(ChannelBuffer[] delimiters,
       Charset charset, InetAddress remoteHost, int remotePort, ExecutorService executorService,
       ExtendedLog log) {
+    super(remoteHost, remotePort, executorService, log);
+
     this.delimiters = delimiters;
     this.charset = charset;
-    this.remoteHost = remoteHost;
-    this.remotePort = remotePort;
-    this.executorService = executorService;
-    this.log = log;
-  }
-
-  @Override
-  public void startup() {
-    // Configure the server.
-    bootstrap =
-        new ClientBootstrap(new NioClientSocketChannelFactory(executorService, executorService));
-
-    // Set up the pipeline factory.
-    bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
-      @Override
-      public ChannelPipeline getPipeline() throws Exception {
-        ChannelPipeline pipeline = Channels.pipeline();
-
-        pipeline.addLast("frameDecoder",
-            new DelimiterBasedFrameDecoder(Integer.MAX_VALUE, delimiters));
-        pipeline.addLast("stringDecoder", new StringDecoder(charset));
-        pipeline.addLast("stringEncoder", new StringEncoder(charset));
-        pipeline.addLast("handler", new NettyTcpClientHandler());
-
-        return pipeline;
-      }
-    });
-
-    InetSocketAddress addressToConnectTo = new InetSocketAddress(remoteHost, remotePort);
-    ChannelFuture cf = bootstrap.connect(addressToConnectTo);
-    try {
-      cf.await(connectionTimeout, TimeUnit.MILLISECONDS);
-      if (cf.isSuccess()) {
-        remoteChannel = cf.getChannel();
-      } else {
-        throw new SimpleSmartSpacesException("Could not connect to remote TCP server",
-            cf.getCause());
-      }
-    } catch (InterruptedException e) {
-      throw new SimpleSmartSpacesException(
-          "The connection to the remote TCP server was interuppted");
-    }
   }
 
   @Override
-  public void shutdown() {
-    listeners.clear();
-    
-    if (bootstrap != null) {
-      bootstrap.shutdown();
-      bootstrap = null;
-    }
-  }
-
-  @Override
-  public InetAddress getRemoteHost() {
-    return remoteHost;
-  }
-
-  @Override
-  public int getRemotePort() {
-    return remotePort;
-  }
-
-  @Override
-  public void addListener(TcpClientNetworkCommunicationEndpointListener<String> listener) {
-    listeners.add(listener);
-  }
-
-  @Override
-  public void removeListener(TcpClientNetworkCommunicationEndpointListener<String> listener) {
-    listeners.remove(listener);
-  }
-
-  @Override
-  public void sendMessage(String message) {
-    if (remoteChannel.isOpen()) {
-      remoteChannel.write(message);
-    } else {
-      throw new SimpleSmartSpacesException(
-          "Attempt to write on a closed TCP client server connection");
-    }
-  }
-
-  @Override
-  public void setConnectionTimeout(long connectionTimeout) {
-    this.connectionTimeout = connectionTimeout;
+  protected void addMessageCodecs(ChannelPipeline pipeline) {
+    pipeline.addLast("frameDecoder",
+        new DelimiterBasedFrameDecoder(Integer.MAX_VALUE, delimiters));
+    pipeline.addLast("stringDecoder", new StringDecoder(charset));
+    pipeline.addLast("stringEncoder", new StringEncoder(charset));
   }
 
   @Override
   public String toString() {
-    return "NettyStringTcpClientNetworkCommunicationEndpoint [remoteHost=" + remoteHost
-        + ", remotePort=" + remotePort + "]";
-  }
-
-  /**
-   * Handle the message received by the handler.
-   *
-   * @param event
-   *          the event which happened
-   */
-  private void handleConnectionSuccessful(ChannelStateEvent event) {
-    for (TcpClientNetworkCommunicationEndpointListener<String> listener : listeners) {
-      try {
-        listener.onTcpClientConnectionSuccess(this);
-      } catch (Throwable e) {
-        log.error("Error handling TCP client successful connection listener", e);
-      }
-    }
-  }
-
-  /**
-   * Handle the message received by the handler.
-   *
-   * @param event
-   *          the event which happened
-   */
-  private void handleConnectionClose(ChannelStateEvent event) {
-    for (TcpClientNetworkCommunicationEndpointListener<String> listener : listeners) {
-      try {
-        listener.onTcpClientConnectionClose(this);
-      } catch (Throwable e) {
-        log.error("Error handling TCP client connection close listener", e);
-      }
-    }
-  }
-
-  /**
-   * Handle the message received by the handler.
-   *
-   * @param event
-   *          the event which happened
-   */
-  private void handleMessageReceived(MessageEvent event) {
-    String message = (String) event.getMessage();
-
-    for (TcpClientNetworkCommunicationEndpointListener<String> listener : listeners) {
-      try {
-        listener.onNewTcpClientMessage(this, message);
-      } catch (Throwable e) {
-        log.error("Error handling TCP client message", e);
-      }
-    }
-  }
-
-  /**
-   * Netty handler for incoming TCP requests.
-   *
-   * @author Keith M. Hughes
-   */
-  public class NettyTcpClientHandler extends SimpleChannelUpstreamHandler {
-
-    @Override
-    public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
-      handleConnectionSuccessful(e);
-    }
-
-    @Override
-    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
-      handleConnectionClose(e);
-    }
-
-    @Override
-    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-      handleMessageReceived(e);
-    }
-
-    @Override
-    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
-      log.error("Error during netty TCP client handler processing", e.getCause());
-    }
+    return "NettyStringTcpClientNetworkCommunicationEndpoint [remoteHost=" + getRemoteHost()
+        + ", remotePort=" + getRemotePort() + "]";
   }
 }
@@ -66,4 +66,41 @@ public class NettyTcpClientNetworkCommunicationEndpointService extends BaseSuppo
     return new NettyStringTcpClientNetworkCommunicationEndpoint(delimiterBuffers, charset,
         remoteAddr, serverPort, getSpaceEnvironment().getExecutorService(), log);
   }
+
+  @Override
+  public TcpClientNetworkCommunicationEndpoint<byte[]> newByteArrayClient(int maxMessageLength,
+      String remoteHost, int remotePort, ExtendedLog log) {
+    try {
+      return new NettyByteArrayTcpClientNetworkCommunicationEndpoint(maxMessageLength,
+          InetAddress.getByName(remoteHost), remotePort,
+          getSpaceEnvironment().getExecutorService(), log);
+    } catch (UnknownHostException e) {
+      throw new SmartSpacesException("TCP client server has unknown host " + remoteHost);
+    }
+  }
+
+  @Override
+  public TcpClientNetworkCommunicationEndpoint<byte[]> newByteArrayClient(int lengthHeaderSize,
+      int maxMessageLength, String remoteHost, int remotePort, ExtendedLog log) {
+    try {
+      return new NettyByteArrayTcpClientNetworkCommunicationEndpoint(lengthHeaderSize,
+          maxMessageLength, InetAddress.getByName(remoteHost), remotePort,
+          getSpaceEnvironment().getExecutorService(), log);
+    } catch (UnknownHostException e) {
+      throw new SmartSpacesException("TCP client server has unknown host " + remoteHost);
+    }
+  }
+
+  @Override
+  public TcpClientNetworkCommunicationEndpoint<ChannelBuffer> newChannelBufferClient(
+      int lengthHeaderSize, int maxMessageLength, String remoteHost, int remotePort,
+      ExtendedLog log) {
+    try {
+      return new NettyChannelBufferTcpClientNetworkCommunicationEndpoint(lengthHeaderSize,
+          maxMessageLength, InetAddress.getByName(remoteHost), remotePort,
+          getSpaceEnvironment().getExecutorService(), log);
+    } catch (UnknownHostException e) {
+      throw new SmartSpacesException("TCP client server has unknown host " + remoteHost);
+    }
+  }
 }
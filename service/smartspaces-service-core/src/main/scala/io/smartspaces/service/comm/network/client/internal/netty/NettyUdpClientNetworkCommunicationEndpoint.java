@@ -55,10 +55,15 @@ public class NettyUdpClientNetworkCommunicationEndpoint implements
     UdpClientNetworkCommunicationEndpoint {
 
   /**
-   * The size in bytes for UDP packets for buffering.
+   * The default size in bytes for UDP packets for buffering.
    */
   private static final int PACKET_BUFFER_SIZE = 1024;
 
+  /**
+   * The name of the bootstrap option for the socket receive buffer size.
+   */
+  private static final String BOOTSTRAP_OPTION_RECEIVE_BUFFER_SIZE = "receiveBufferSize";
+
   /**
    * Byte order for endpoint packets.
    */
@@ -90,6 +95,17 @@ public class NettyUdpClientNetworkCommunicationEndpoint implements
    */
   private ExtendedLog log;
 
+  /**
+   * The largest datagram that can be received, in bytes.
+   */
+  private int maxDatagramSize = PACKET_BUFFER_SIZE;
+
+  /**
+   * The size of the socket receive buffer, in bytes, or {@code 0} for the
+   * system default.
+   */
+  private int receiveBufferSize;
+
   /**
    * Construct a new endpoint.
    *
@@ -124,8 +140,8 @@ public class NettyUdpClientNetworkCommunicationEndpoint implements
     // Enable broadcast
     // bootstrap.setOption("broadcast", "true");
 
-    // Allow packets as large as 1024 bytes (default from the network stack is
-    // 768).
+    // Allow packets as large as the max datagram size (default from the
+    // network stack is 768).
     // You could increase or decrease this value to avoid truncated packets
     // or to improve memory footprint respectively.
     //
@@ -136,7 +152,10 @@ public class NettyUdpClientNetworkCommunicationEndpoint implements
     // truncate and IPv6 routers drop a large packet. That's why it is
     // safe to send small packets in UDP.
     bootstrap.setOption("receiveBufferSizePredictorFactory",
-        new FixedReceiveBufferSizePredictorFactory(PACKET_BUFFER_SIZE));
+        new FixedReceiveBufferSizePredictorFactory(maxDatagramSize));
+    if (receiveBufferSize > 0) {
+      bootstrap.setOption(BOOTSTRAP_OPTION_RECEIVE_BUFFER_SIZE, receiveBufferSize);
+    }
 
     outputChannel = (DatagramChannel) bootstrap.bind(new InetSocketAddress(0));
   }
@@ -180,6 +199,22 @@ public class NettyUdpClientNetworkCommunicationEndpoint implements
     outputChannel.write(cb, remoteAddress);
   }
 
+  @Override
+  public void sendMessages(InetSocketAddress remoteAddress, List<byte[]> messages) {
+    int batchLength = 0;
+    for (byte[] message : messages) {
+      batchLength += message.length;
+    }
+
+    // One buffer for the whole batch, each datagram is a slice of it.
+    ChannelBuffer batchBuffer = ChannelBuffers.buffer(byteOrder, batchLength);
+    for (byte[] message : messages) {
+      int messageStart = batchBuffer.writerIndex();
+      batchBuffer.writeBytes(message);
+      outputChannel.write(batchBuffer.slice(messageStart, message.length), remoteAddress);
+    }
+  }
+
   @Override
   public WriteableUdpPacket newDynamicWriteableUdpPacket() {
     return new NettyWriteableUdpPacket(outputChannel, ChannelBuffers.dynamicBuffer(byteOrder,
@@ -191,6 +226,16 @@ public class NettyUdpClientNetworkCommunicationEndpoint implements
     return new NettyWriteableUdpPacket(outputChannel, ChannelBuffers.buffer(byteOrder, size));
   }
 
+  @Override
+  public void setMaxDatagramSize(int maxDatagramSize) {
+    this.maxDatagramSize = maxDatagramSize;
+  }
+
+  @Override
+  public void setReceiveBufferSize(int receiveBufferSize) {
+    this.receiveBufferSize = receiveBufferSize;
+  }
+
   @Override
   public void addListener(UdpClientNetworkCommunicationEndpointListener listener) {
     listeners.add(listener);
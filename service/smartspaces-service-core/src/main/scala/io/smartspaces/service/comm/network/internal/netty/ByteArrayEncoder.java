@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.network.internal.netty;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
+
+/**
+ * A Netty encoder which wraps a byte array in a channel buffer without copying
+ * it.
+ *
+ * @author Keith M. Hughes
+ */
+public class ByteArrayEncoder extends OneToOneEncoder {
+
+  @Override
+  protected Object encode(ChannelHandlerContext ctx, Channel channel, Object msg)
+      throws Exception {
+    if (!(msg instanceof byte[])) {
+      return msg;
+    }
+
+    return ChannelBuffers.wrappedBuffer((byte[]) msg);
+  }
+}
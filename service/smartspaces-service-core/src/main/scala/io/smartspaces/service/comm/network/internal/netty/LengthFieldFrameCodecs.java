@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.network.internal.netty;
+
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.codec.frame.LengthFieldBasedFrameDecoder;
+import org.jboss.netty.handler.codec.frame.LengthFieldPrepender;
+
+import io.smartspaces.SimpleSmartSpacesException;
+
+/**
+ * Netty codecs for messages framed with a big-endian length header.
+ *
+ * @author Keith M. Hughes
+ */
+public class LengthFieldFrameCodecs {
+
+  /**
+   * The default number of bytes in the length header of a frame.
+   */
+  public static final int LENGTH_HEADER_SIZE_DEFAULT = 4;
+
+  /**
+   * Check that a length header size can be used for framing.
+   *
+   * @param lengthHeaderSize
+   *          the number of bytes in the length header
+   *
+   * @throws SimpleSmartSpacesException
+   *           the size cannot be used
+   */
+  public static void checkLengthHeaderSize(int lengthHeaderSize)
+      throws SimpleSmartSpacesException {
+    switch (lengthHeaderSize) {
+      case 1:
+      case 2:
+      case 3:
+      case 4:
+      case 8:
+        return;
+      default:
+        throw new SimpleSmartSpacesException(String.format(
+            "Length headers must be 1, 2, 3, 4, or 8 bytes, not %d", lengthHeaderSize));
+    }
+  }
+
+  /**
+   * Add the frame decoder and encoder to a pipeline.
+   *
+   * <p>
+   * The decoder produces a {@link org.jboss.netty.buffer.ChannelBuffer} for
+   * each frame without the length header, the encoder adds the header to each
+   * outgoing {@link org.jboss.netty.buffer.ChannelBuffer}.
+   *
+   * @param pipeline
+   *          the pipeline to add the codecs to
+   * @param lengthHeaderSize
+   *          the number of bytes in the length header
+   * @param maxMessageLength
+   *          the maximum length of an incoming message, in bytes
+   */
+  public static void addFrameCodecs(ChannelPipeline pipeline, int lengthHeaderSize,
+      int maxMessageLength) {
+    pipeline.addLast("frameDecoder", new LengthFieldBasedFrameDecoder(maxMessageLength, 0,
+        lengthHeaderSize, 0, lengthHeaderSize));
+    pipeline.addLast("frameEncoder", new LengthFieldPrepender(lengthHeaderSize));
+  }
+}
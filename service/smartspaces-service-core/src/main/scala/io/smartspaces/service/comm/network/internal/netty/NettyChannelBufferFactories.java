@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.network.internal.netty;
+
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
+
+/**
+ * Netty channel buffer factories shared by the network endpoints.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyChannelBufferFactories {
+
+  /**
+   * The number of bytes of direct memory the direct buffer factory allocates
+   * at a time and slices small buffers out of.
+   */
+  public static final int DIRECT_BUFFER_PREALLOCATION_SIZE = 1024 * 1024;
+
+  /**
+   * The name of the bootstrap option for the buffer factory of a channel.
+   */
+  public static final String BOOTSTRAP_OPTION_BUFFER_FACTORY = "bufferFactory";
+
+  /**
+   * The name of the bootstrap option for the buffer factory of the channels
+   * accepted by a server.
+   */
+  public static final String BOOTSTRAP_OPTION_CHILD_BUFFER_FACTORY = "child.bufferFactory";
+
+  /**
+   * The buffer factory for endpoints using direct buffers.
+   *
+   * <p>
+   * Small buffers are sliced from shared preallocated blocks of direct memory,
+   * so I/O does not need a fresh direct allocation or a copy out of the heap
+   * for each read and write.
+   */
+  private static final ChannelBufferFactory DIRECT_BUFFER_FACTORY =
+      new DirectChannelBufferFactory(DIRECT_BUFFER_PREALLOCATION_SIZE);
+
+  /**
+   * Get the buffer factory for endpoints using direct buffers.
+   *
+   * @return the buffer factory
+   */
+  public static ChannelBufferFactory getDirectBufferFactory() {
+    return DIRECT_BUFFER_FACTORY;
+  }
+}
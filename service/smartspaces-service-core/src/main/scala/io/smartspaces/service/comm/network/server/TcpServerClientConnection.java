@@ -19,6 +19,7 @@ package io.smartspaces.service.comm.network.server;
 import io.smartspaces.messaging.MessageSender;
 
 import java.net.SocketAddress;
+import java.util.Collection;
 
 /**
  * A connection for a client to a TCP server.
@@ -54,4 +55,15 @@ public interface TcpServerClientConnection<T> extends MessageSender<T> {
    * @return the remote address
    */
   SocketAddress getRemoteAddress();
+
+  /**
+   * Send a collection of messages.
+   *
+   * <p>
+   * If the endpoint batches writes, the messages go out in one socket write.
+   *
+   * @param messages
+   *          the messages to send, in order
+   */
+  void sendMessages(Collection<T> messages);
 }
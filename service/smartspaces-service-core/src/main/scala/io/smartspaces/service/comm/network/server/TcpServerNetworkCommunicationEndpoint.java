@@ -67,4 +67,30 @@ public interface TcpServerNetworkCommunicationEndpoint<T> extends ManagedResourc
    * Close all connected clients.
    */
   void closeAllChannels();
+
+  /**
+   * Set whether the endpoint uses direct buffers for channel I/O.
+   *
+   * <p>
+   * Direct buffers are sliced from shared preallocated blocks of direct
+   * memory, which saves a copy between the heap and the socket for high rate
+   * traffic. Must be called before {@link #startup()}.
+   *
+   * @param directBuffers
+   *          {@code true} if direct buffers should be used
+   */
+  void setDirectBuffers(boolean directBuffers);
+
+  /**
+   * Set whether the endpoint batches writes.
+   *
+   * <p>
+   * When batching, all messages written by a single call to send messages are
+   * combined into one socket write rather than one write per message. Must be
+   * called before {@link #startup()}.
+   *
+   * @param writeBatching
+   *          {@code true} if writes should be batched
+   */
+  void setWriteBatching(boolean writeBatching);
 }
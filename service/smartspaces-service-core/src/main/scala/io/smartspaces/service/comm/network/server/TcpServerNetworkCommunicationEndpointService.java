@@ -19,6 +19,8 @@ package io.smartspaces.service.comm.network.server;
 
 import java.nio.charset.Charset;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+
 import io.smartspaces.logging.ExtendedLog;
 import io.smartspaces.service.SupportedService;
 
@@ -34,6 +36,11 @@ public interface TcpServerNetworkCommunicationEndpointService extends SupportedS
    */
   String SERVICE_NAME = "comm.network.tcp.server";
 
+  /**
+   * The default maximum length of a byte array message, in bytes.
+   */
+  int BYTE_ARRAY_MESSAGE_LENGTH_MAX_DEFAULT = 16 * 1024 * 1024;
+
   /**
    * Create a new TCP server endpoint which uses strings for messages.
    *
@@ -50,4 +57,64 @@ public interface TcpServerNetworkCommunicationEndpointService extends SupportedS
    */
   TcpServerNetworkCommunicationEndpoint<String> newStringServer(byte[][] delimiters,
       Charset charset, int serverPort, ExtendedLog log);
+
+  /**
+   * Create a new TCP server endpoint which uses byte arrays for messages.
+   *
+   * <p>
+   * Each message is framed with a 4 byte big-endian length header.
+   *
+   * @param maxMessageLength
+   *          the maximum length of an incoming message, in bytes
+   * @param serverPort
+   *          port the server will listen to
+   * @param log
+   *          the logger to use
+   *
+   * @return the communication endpoint
+   */
+  TcpServerNetworkCommunicationEndpoint<byte[]> newByteArrayServer(int maxMessageLength,
+      int serverPort, ExtendedLog log);
+
+  /**
+   * Create a new TCP server endpoint which uses byte arrays for messages.
+   *
+   * <p>
+   * Each message is framed with a big-endian length header.
+   *
+   * @param lengthHeaderSize
+   *          the number of bytes in the length header, one of 1, 2, 3, 4, or 8
+   * @param maxMessageLength
+   *          the maximum length of an incoming message, in bytes
+   * @param serverPort
+   *          port the server will listen to
+   * @param log
+   *          the logger to use
+   *
+   * @return the communication endpoint
+   */
+  TcpServerNetworkCommunicationEndpoint<byte[]> newByteArrayServer(int lengthHeaderSize,
+      int maxMessageLength, int serverPort, ExtendedLog log);
+
+  /**
+   * Create a new TCP server endpoint which uses Netty channel buffers for
+   * messages.
+   *
+   * <p>
+   * Each message is framed with a big-endian length header. Incoming messages
+   * are not copied into byte arrays.
+   *
+   * @param lengthHeaderSize
+   *          the number of bytes in the length header, one of 1, 2, 3, 4, or 8
+   * @param maxMessageLength
+   *          the maximum length of an incoming message, in bytes
+   * @param serverPort
+   *          port the server will listen to
+   * @param log
+   *          the logger to use
+   *
+   * @return the communication endpoint
+   */
+  TcpServerNetworkCommunicationEndpoint<ChannelBuffer> newChannelBufferServer(
+      int lengthHeaderSize, int maxMessageLength, int serverPort, ExtendedLog log);
 }
@@ -60,4 +60,27 @@ public interface UdpServerNetworkCommunicationEndpoint extends ManagedResource {
    *          the listener to remove
    */
   void removeListener(UdpServerNetworkCommunicationEndpointListener listener);
+
+  /**
+   * Set the largest datagram the endpoint can receive.
+   *
+   * <p>
+   * Larger datagrams are truncated. Must be called before {@link #startup()}.
+   *
+   * @param maxDatagramSize
+   *          the largest datagram size, in bytes
+   */
+  void setMaxDatagramSize(int maxDatagramSize);
+
+  /**
+   * Set the size of the socket receive buffer.
+   *
+   * <p>
+   * A larger buffer lets bursts of high rate traffic queue up in the network
+   * stack rather than be dropped. Must be called before {@link #startup()}.
+   *
+   * @param receiveBufferSize
+   *          the size of the receive buffer, in bytes
+   */
+  void setReceiveBufferSize(int receiveBufferSize);
 }
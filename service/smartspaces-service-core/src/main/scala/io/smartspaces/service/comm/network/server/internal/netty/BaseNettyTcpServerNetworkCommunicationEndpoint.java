@@ -0,0 +1,527 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.network.server.internal.netty;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.queue.BufferedWriteHandler;
+
+import com.google.common.collect.Lists;
+
+import io.smartspaces.SimpleSmartSpacesException;
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.service.comm.network.internal.netty.NettyChannelBufferFactories;
+import io.smartspaces.service.comm.network.server.TcpServerClientConnection;
+import io.smartspaces.service.comm.network.server.TcpServerNetworkCommunicationEndpoint;
+import io.smartspaces.service.comm.network.server.TcpServerNetworkCommunicationEndpointListener;
+import io.smartspaces.service.comm.network.server.TcpServerRequest;
+
+/**
+ * A base Netty-based {@link TcpServerNetworkCommunicationEndpoint}.
+ *
+ * <p>
+ * Subclasses supply the framing and codecs for the messages.
+ *
+ * @param <T>
+ *          the type of messages
+ *
+ * @author Keith M. Hughes
+ */
+public abstract class BaseNettyTcpServerNetworkCommunicationEndpoint<T>
+    implements TcpServerNetworkCommunicationEndpoint<T> {
+
+  /**
+   * The name of the pipeline handler which batches writes.
+   */
+  public static final String PIPELINE_HANDLER_WRITE_BATCHER = "writeBatcher";
+
+  /**
+   * The port the server is listening to.
+   */
+  private final int serverPort;
+
+  /**
+   * The bootstrap for the TCP server.
+   */
+  private ServerBootstrap bootstrap;
+
+  /**
+   * The listeners to endpoint events.
+   */
+  private final List<TcpServerNetworkCommunicationEndpointListener<T>> listeners =
+      Lists.newCopyOnWriteArrayList();
+
+  /**
+   * Executor service for this endpoint.
+   */
+  private final ExecutorService executorService;
+
+  /**
+   * Logger for this endpoint.
+   */
+  private final ExtendedLog log;
+
+  /**
+   * The collection of connections.
+   */
+  private final Map<Integer, InternalClientConnection> clientConnections = new HashMap<>();
+
+  /**
+   * Creator of connection IDs.
+   */
+  private final AtomicLong connectionIdFactory = new AtomicLong(System.currentTimeMillis());
+
+  /**
+   * {@code true} if connections use direct buffers.
+   */
+  private boolean directBuffers;
+
+  /**
+   * {@code true} if connections batch writes.
+   */
+  private boolean writeBatching;
+
+  /**
+   * Construct a new endpoint.
+   *
+   * @param serverPort
+   *          the server port to listen on
+   * @param executorService
+   *          the executor service for threads
+   * @param log
+   *          the logger to use
+   */
+  public BaseNettyTcpServerNetworkCommunicationEndpoint(int serverPort,
+      ExecutorService executorService, ExtendedLog log) {
+    this.serverPort = serverPort;
+    this.executorService = executorService;
+    this.log = log;
+  }
+
+  @Override
+  public void startup() {
+    // Configure the server.
+    bootstrap =
+        new ServerBootstrap(new NioServerSocketChannelFactory(executorService, executorService));
+
+    // Set up the pipeline factory.
+    bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+      @Override
+      public ChannelPipeline getPipeline() throws Exception {
+        ChannelPipeline pipeline = Channels.pipeline();
+
+        // First in the pipeline so it sees the fully encoded frames.
+        if (writeBatching) {
+          pipeline.addLast(PIPELINE_HANDLER_WRITE_BATCHER, new BufferedWriteHandler(true));
+        }
+        addMessageCodecs(pipeline);
+        pipeline.addLast("handler", new NettyTcpServerHandler());
+
+        return pipeline;
+      }
+    });
+
+    if (directBuffers) {
+      bootstrap.setOption(NettyChannelBufferFactories.BOOTSTRAP_OPTION_CHILD_BUFFER_FACTORY,
+          NettyChannelBufferFactories.getDirectBufferFactory());
+    }
+
+    // Bind and start to accept incoming connections.
+    bootstrap.bind(new InetSocketAddress(serverPort));
+
+    log.info("TCP server started");
+  }
+
+  @Override
+  public void shutdown() {
+    listeners.clear();
+
+    if (bootstrap != null) {
+      closeAllChannels();
+
+      bootstrap.shutdown();
+      bootstrap = null;
+    }
+  }
+
+  @Override
+  public int getServerPort() {
+    return serverPort;
+  }
+
+  @Override
+  public void setDirectBuffers(boolean directBuffers) {
+    this.directBuffers = directBuffers;
+  }
+
+  @Override
+  public void setWriteBatching(boolean writeBatching) {
+    this.writeBatching = writeBatching;
+  }
+
+  @Override
+  public void addListener(TcpServerNetworkCommunicationEndpointListener<T> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeListener(TcpServerNetworkCommunicationEndpointListener<T> listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public void sendMessageAllChannels(T message) {
+    for (InternalClientConnection clientConnection : clientConnections.values()) {
+      try {
+        clientConnection.sendMessage(message);
+      } catch (Throwable e) {
+        log.error("Could not write message to connection " + clientConnection, e);
+      }
+    }
+  }
+
+  @Override
+  public void closeAllChannels() {
+    for (InternalClientConnection clientConnection : clientConnections.values()) {
+      try {
+        clientConnection.close();
+      } catch (Throwable e) {
+        log.error("Could not close connection " + clientConnection, e);
+      }
+    }
+  }
+
+  /**
+   * Add the framing and codecs for messages to a new channel pipeline.
+   *
+   * <p>
+   * The decoders must produce messages of the endpoint's message type.
+   *
+   * @param pipeline
+   *          the pipeline for a new connection
+   */
+  protected abstract void addMessageCodecs(ChannelPipeline pipeline);
+
+  /**
+   * Get the logger for the endpoint.
+   *
+   * @return the logger
+   */
+  protected ExtendedLog getLog() {
+    return log;
+  }
+
+  /**
+   * Handle a new connection.
+   *
+   * @param event
+   *          the event that happened
+   */
+  private void handleNewConnection(ChannelStateEvent event) {
+    String connectionId = newConnectionId();
+    InternalClientConnection connection =
+        new InternalClientConnection(event.getChannel(), connectionId);
+    synchronized (clientConnections) {
+      clientConnections.put(event.getChannel().getId(), connection);
+    }
+
+    for (TcpServerNetworkCommunicationEndpointListener<T> listener : listeners) {
+      try {
+        listener.onNewTcpConnection(this, connection);
+      } catch (Throwable e) {
+        log.error("Error while handing TCP connection", e);
+      }
+    }
+  }
+
+  /**
+   * Handle the message received by the handler.
+   *
+   * @param event
+   *          the event which happened
+   */
+  private void handleMessageReceived(MessageEvent event) {
+    InternalClientConnection connection = null;
+    synchronized (clientConnections) {
+      connection = clientConnections.get(event.getChannel().getId());
+    }
+
+    NettyTcpServerRequest request = new NettyTcpServerRequest(event, connection);
+
+    for (TcpServerNetworkCommunicationEndpointListener<T> listener : listeners) {
+      try {
+        listener.onTcpRequest(this, request);
+      } catch (Throwable e) {
+        log.error("Error while handing TCP message", e);
+      }
+    }
+  }
+
+  /**
+   * Handle a connection that closed.
+   *
+   * @param event
+   *          the event that happened
+   */
+  private void handleClosedConnection(ChannelStateEvent event) {
+    InternalClientConnection connection = null;
+    synchronized (clientConnections) {
+      connection = clientConnections.remove(event.getChannel().getId());
+    }
+
+    // The connection may be removed from the map depending on who closed it.
+    // Don't call the callback if not in the map as this means the server closed
+    // the connection.
+    if (connection != null) {
+      for (TcpServerNetworkCommunicationEndpointListener<T> listener : listeners) {
+        try {
+          listener.onCloseTcpConnection(this, connection);
+        } catch (Throwable e) {
+          log.error("Error while handing TCP connection", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Close the connection to the client.
+   * 
+   * @param clientConnection
+   *          the connection to close
+   */
+  public void closeClientConnection(InternalClientConnection clientConnection) {
+    Channel channel = clientConnection.getChannel();
+
+    synchronized (clientConnections) {
+      clientConnections.remove(channel.getId());
+    }
+
+    channel.close();
+  }
+
+  /**
+   * Create a new connection ID.
+   *
+   * @return the new connection ID
+   */
+  private String newConnectionId() {
+    return Long.toHexString(connectionIdFactory.getAndAdd(1));
+  }
+
+  /**
+   * Netty handler for incoming TCP requests.
+   *
+   * @author Keith M. Hughes
+   */
+  public class NettyTcpServerHandler extends SimpleChannelUpstreamHandler {
+
+    @Override
+    public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+      handleNewConnection(e);
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+      handleClosedConnection(e);
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+      handleMessageReceived(e);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+      log.error("Error during netty TCP server handler processing", e.getCause());
+    }
+  }
+
+  /**
+   * Netty-based version of the {@link TcpServerRequest}.
+   *
+   * @author Keith M. Hughes
+   */
+  private class NettyTcpServerRequest implements TcpServerRequest<T> {
+
+    /**
+     * The message event from the request.
+     */
+    private final MessageEvent event;
+
+    /**
+     * The client connection.
+     */
+    private final InternalClientConnection clientConnection;
+
+    /**
+     * Construct a new request.
+     *
+     * @param event
+     *          the netty message event
+     * @param clientConnection
+     *          the client connection;
+     */
+    public NettyTcpServerRequest(MessageEvent event,
+        InternalClientConnection clientConnection) {
+      this.event = event;
+      this.clientConnection = clientConnection;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+      return (InetSocketAddress) event.getRemoteAddress();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getMessage() {
+      return (T) event.getMessage();
+    }
+
+    @Override
+    public void sendMessage(T response) {
+      clientConnection.sendMessage(response);
+    }
+
+    @Override
+    public TcpServerClientConnection<T> getClientConnection() {
+      return clientConnection;
+    }
+  }
+
+  /**
+   * The client connection.
+   * 
+   * @author Keith M. Hughes
+   */
+  private class InternalClientConnection implements TcpServerClientConnection<T> {
+
+    /**
+     * The channel for the connection.
+     */
+    private Channel channel;
+
+    /**
+     * The ID for the channel.
+     */
+    private String channelId;
+
+    /**
+     * Construct a new connection.
+     * 
+     * @param channel
+     *          the channel for the connection
+     * @param channelId
+     *          the ID for the channel
+     */
+    public InternalClientConnection(Channel channel, String channelId) {
+      this.channel = channel;
+      this.channelId = channelId;
+    }
+
+    @Override
+    public String getChannelId() {
+      return channelId;
+    }
+
+    @Override
+    public void sendMessage(T message) {
+      checkOpen();
+
+      channel.write(message);
+      flushWrites();
+    }
+
+    @Override
+    public void sendMessages(Collection<T> messages) {
+      checkOpen();
+
+      for (T message : messages) {
+        channel.write(message);
+      }
+      flushWrites();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+      closeClientConnection(this);
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+      return channel.getRemoteAddress();
+    }
+
+    /**
+     * Make sure the connection is open before writing.
+     */
+    private void checkOpen() {
+      if (!isOpen()) {
+        throw new SimpleSmartSpacesException(
+            "Attempt to write on a closed TCP server client connection");
+      }
+    }
+
+    /**
+     * Send all batched writes, if the connection batches writes.
+     */
+    private void flushWrites() {
+      BufferedWriteHandler writeBatcher =
+          (BufferedWriteHandler) channel.getPipeline().get(PIPELINE_HANDLER_WRITE_BATCHER);
+      if (writeBatcher != null) {
+        writeBatcher.flush();
+      }
+    }
+
+    /**
+     * Get the channel for this connection.
+     * 
+     * @return the channel
+     */
+    public Channel getChannel() {
+      return channel;
+    }
+
+    @Override
+    public String toString() {
+      return "TcpServerClientConnection[clientaddress=" + channel.getRemoteAddress() + "]";
+    }
+  }
+}
@@ -52,4 +52,25 @@ public class NettyTcpServerNetworkCommunicationEndpointService extends BaseSuppo
     return new NettyStringTcpServerNetworkCommunicationEndpoint(delimiterBuffers, charset,
         serverPort, getSpaceEnvironment().getExecutorService(), log);
   }
+
+  @Override
+  public TcpServerNetworkCommunicationEndpoint<byte[]> newByteArrayServer(int maxMessageLength,
+      int serverPort, ExtendedLog log) {
+    return new NettyByteArrayTcpServerNetworkCommunicationEndpoint(maxMessageLength, serverPort,
+        getSpaceEnvironment().getExecutorService(), log);
+  }
+
+  @Override
+  public TcpServerNetworkCommunicationEndpoint<byte[]> newByteArrayServer(int lengthHeaderSize,
+      int maxMessageLength, int serverPort, ExtendedLog log) {
+    return new NettyByteArrayTcpServerNetworkCommunicationEndpoint(lengthHeaderSize,
+        maxMessageLength, serverPort, getSpaceEnvironment().getExecutorService(), log);
+  }
+
+  @Override
+  public TcpServerNetworkCommunicationEndpoint<ChannelBuffer> newChannelBufferServer(
+      int lengthHeaderSize, int maxMessageLength, int serverPort, ExtendedLog log) {
+    return new NettyChannelBufferTcpServerNetworkCommunicationEndpoint(lengthHeaderSize,
+        maxMessageLength, serverPort, getSpaceEnvironment().getExecutorService(), log);
+  }
 }
@@ -56,10 +56,15 @@ public class NettyUdpServerNetworkCommunicationEndpoint implements
     UdpServerNetworkCommunicationEndpoint {
 
   /**
-   * The buffer size for UDP packets.
+   * The default buffer size for UDP packets.
    */
   public static final int BUFFER_SIZE = 1024;
 
+  /**
+   * The name of the bootstrap option for the socket receive buffer size.
+   */
+  public static final String BOOTSTRAP_OPTION_RECEIVE_BUFFER_SIZE = "receiveBufferSize";
+
   /**
    * The port the server is listening to.
    */
@@ -91,6 +96,17 @@ public class NettyUdpServerNetworkCommunicationEndpoint implements
    */
   private final ExtendedLog log;
 
+  /**
+   * The largest datagram that can be received, in bytes.
+   */
+  private int maxDatagramSize = BUFFER_SIZE;
+
+  /**
+   * The size of the socket receive buffer, in bytes, or {@code 0} for the
+   * system default.
+   */
+  private int receiveBufferSize;
+
   /**
    * Construct a new endpoint.
    *
@@ -127,7 +143,7 @@ public class NettyUdpServerNetworkCommunicationEndpoint implements
     // Enable broadcast
     bootstrap.setOption("broadcast", "false");
 
-    // Allow packets as large as up to 1024 bytes (default is 768).
+    // Allow packets as large as up to the max datagram size (default is 768).
     // You could increase or decrease this value to avoid truncated packets
     // or to improve memory footprint respectively.
     //
@@ -138,7 +154,10 @@ public class NettyUdpServerNetworkCommunicationEndpoint implements
     // truncate and IPv6 routers drop a large packet. That's why it is
     // safe to send small packets in UDP.
     bootstrap.setOption("receiveBufferSizePredictorFactory",
-        new FixedReceiveBufferSizePredictorFactory(BUFFER_SIZE));
+        new FixedReceiveBufferSizePredictorFactory(maxDatagramSize));
+    if (receiveBufferSize > 0) {
+      bootstrap.setOption(BOOTSTRAP_OPTION_RECEIVE_BUFFER_SIZE, receiveBufferSize);
+    }
 
     // Bind to the port and start the service.
     bootstrap.bind(new InetSocketAddress(serverPort));
@@ -157,6 +176,16 @@ public class NettyUdpServerNetworkCommunicationEndpoint implements
     return byteOrder;
   }
 
+  @Override
+  public void setMaxDatagramSize(int maxDatagramSize) {
+    this.maxDatagramSize = maxDatagramSize;
+  }
+
+  @Override
+  public void setReceiveBufferSize(int receiveBufferSize) {
+    this.receiveBufferSize = receiveBufferSize;
+  }
+
   @Override
   public void addListener(UdpServerNetworkCommunicationEndpointListener listener) {
     listeners.add(listener);
@@ -29,6 +29,7 @@ import io.smartspaces.util.messaging.mqtt.MqttBrokerDescription
 import io.smartspaces.util.messaging.mqtt.MqttPublisherDescription
 import io.smartspaces.util.net.SslUtils
 import org.apache.commons.logging.Log
+import org.eclipse.paho.client.mqttv3.DisconnectedBufferOptions
 import org.eclipse.paho.client.mqttv3.IMqttActionListener
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken
 import org.eclipse.paho.client.mqttv3.IMqttMessageListener
@@ -73,6 +74,11 @@ class PahoMqttCommunicationEndpoint(
    */
   val AUTORECONNECT_DEFAULT = false
 
+  /**
+   * The default value for starting a clean session on every connection.
+   */
+  val CLEAN_SESSION_DEFAULT = true
+
   /**
    * The client persistence to use.
    */
@@ -118,6 +124,16 @@ class PahoMqttCommunicationEndpoint(
       mqttClient =
         new MqttAsyncClient(mqttBrokerDescription.brokerAddress, mqttClientId, mqttPersistence)
 
+      // Paho only holds messages while it is reconnecting by itself.
+      mqttBrokerDescription.offlineBufferSize.foreach { bufferSize =>
+        val bufferOptions = new DisconnectedBufferOptions()
+        bufferOptions.setBufferEnabled(true)
+        bufferOptions.setBufferSize(bufferSize)
+        bufferOptions.setPersistBuffer(!mqttPersistence.isInstanceOf[MemoryPersistence])
+        bufferOptions.setDeleteOldestMessages(true)
+        mqttClient.setBufferOpts(bufferOptions)
+      }
+
       mqttClient.setCallback(new MqttCallbackExtended() {
         override def connectComplete(reconnect: Boolean, serverURI: String): Unit = {
           log.info(s"MQTT client ${mqttClientId} connection successful to ${mqttBrokerDescription.brokerAddress}")
@@ -141,7 +157,7 @@ class PahoMqttCommunicationEndpoint(
         }
       })
 
-      mqttConnectOptions.setCleanSession(true)
+      mqttConnectOptions.setCleanSession(mqttBrokerDescription.cleanSession.getOrElse(CLEAN_SESSION_DEFAULT))
       mqttConnectOptions.setAutomaticReconnect(mqttBrokerDescription.autoreconnect.getOrElse(AUTORECONNECT_DEFAULT))
       mqttBrokerDescription.maxInFlight.foreach(mqttConnectOptions.setMaxInflight(_))
       if (mqttBrokerDescription.username.isDefined) {
@@ -249,10 +265,15 @@ class PahoMqttCommunicationEndpoint(
    *      {@code true} if a reconnection success
    */
   private def brokerConnectSuccessful(reconnect: Boolean): Unit = {
-    // Subscribe all subscribers.
-    subscribers.foreach { (subscriber) =>
-      if (!reconnect || subscriber.autoreconnect) {
-        subscriber.subscribe
+    // Subscribe all subscribers in one batch.
+    val batch = subscribers.filter((subscriber) => !reconnect || subscriber.autoreconnect).toArray
+    if (batch.nonEmpty) {
+      log.info(s"MQTT client ${mqttClientId} subscribing to ${batch.length} topics")
+
+      try {
+        mqttClient.subscribe(batch.map(_.subscribedTopicName), batch.map(_.qos), batch.map(_.asInstanceOf[IMqttMessageListener]))
+      } catch {
+        case e: MqttException => log.error(s"MQTT client ${mqttClientId} could not subscribe to topics", e)
       }
     }
 
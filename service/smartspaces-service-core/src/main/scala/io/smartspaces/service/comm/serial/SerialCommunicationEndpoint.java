@@ -71,6 +71,44 @@ public interface SerialCommunicationEndpoint extends CommunicationEndpoint {
    */
   int read(byte[] buffer, int offset, int length);
 
+  /**
+   * Read bytes into the buffer, waiting no longer than a given amount of time
+   * for the first byte to arrive.
+   *
+   * @param buffer
+   *          the buffer to read the bytes into
+   * @param offset
+   *          the first position in the buffer to place the bytes read
+   * @param length
+   *          the number of bytes to try and read
+   * @param timeout
+   *          the maximum amount of time to wait for data, in milliseconds
+   *
+   * @return the actual number of bytes read, {@code 0} if the timeout expired
+   *         before any data arrived, or {@code -1} if the end of stream was
+   *         reached
+   */
+  int read(byte[] buffer, int offset, int length, int timeout);
+
+  /**
+   * Add a listener which is called when data is available on the endpoint.
+   *
+   * @param listener
+   *          the listener to add
+   */
+  void addDataAvailableListener(SerialDataAvailableListener listener);
+
+  /**
+   * Remove a data available listener from the endpoint.
+   *
+   * <p>
+   * Does nothing if the listener was never added.
+   *
+   * @param listener
+   *          the listener to remove
+   */
+  void removeDataAvailableListener(SerialDataAvailableListener listener);
+
   /**
    * Flush the output buffering.
    */
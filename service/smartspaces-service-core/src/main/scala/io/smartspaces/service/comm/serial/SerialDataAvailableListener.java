@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.serial;
+
+/**
+ * A listener for data arriving on a serial endpoint.
+ *
+ * @author Keith M. Hughes
+ */
+public interface SerialDataAvailableListener {
+
+  /**
+   * Data has become available for reading on the endpoint.
+   *
+   * <p>
+   * This is called on the thread of the serial implementation. Listeners should
+   * read what is available without blocking and hand the data off for any
+   * lengthy processing.
+   *
+   * @param endpoint
+   *          the endpoint with data available
+   */
+  void onSerialDataAvailable(SerialCommunicationEndpoint endpoint);
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.serial.xbee.internal;
+
+import io.smartspaces.SimpleSmartSpacesException;
+
+/**
+ * An XBee frame reader for a frame which has already been decoded by an
+ * {@link EscapedXBeeFrameDecoder}.
+ *
+ * <p>
+ * Instances of this class are not thread safe.
+ *
+ * @author Keith M. Hughes
+ */
+public class DecodedXBeeFrameReader implements XBeeFrameReader {
+
+  /**
+   * The frame data followed by the checksum.
+   */
+  private final byte[] frame;
+
+  /**
+   * Position of the next byte to read in the frame.
+   */
+  private int readPos;
+
+  /**
+   * Construct a new reader.
+   *
+   * @param frame
+   *          the frame data followed by the checksum, as produced by the
+   *          decoder
+   */
+  public DecodedXBeeFrameReader(byte[] frame) {
+    this.frame = frame;
+  }
+
+  @Override
+  public int readByte() {
+    if (readPos == frame.length) {
+      throw new SimpleSmartSpacesException("Read past end of XBee frame");
+    }
+
+    return frame[readPos++] & 0xff;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>
+   * The length was already read by the decoder, so no bytes are consumed.
+   */
+  @Override
+  public int readPacketLength() {
+    return frame.length - 1;
+  }
+
+  @Override
+  public byte[] readData(int bytesToRead) {
+    byte[] bytes = new byte[bytesToRead];
+
+    readData(bytes);
+
+    return bytes;
+  }
+
+  @Override
+  public void readData(byte[] bytes) {
+    if (readPos + bytes.length > frame.length) {
+      throw new SimpleSmartSpacesException("Read past end of XBee frame");
+    }
+
+    System.arraycopy(frame, readPos, bytes, 0, bytes.length);
+    readPos += bytes.length;
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.serial.xbee.internal;
+
+import io.smartspaces.service.comm.serial.xbee.XBeeApiConstants;
+
+/**
+ * A decoder which assembles escaped API XBee frames from buffers of serial
+ * data.
+ *
+ * <p>
+ * Buffers can split frames at any point, the decoder keeps its state between
+ * calls. Frames with bad checksums are dropped, and a frame start byte in the
+ * middle of a frame restarts decoding with the new frame.
+ *
+ * <p>
+ * Instances of this class are not thread safe and should only be fed by one
+ * thread at a time.
+ *
+ * @author Keith M. Hughes
+ */
+public class EscapedXBeeFrameDecoder {
+
+  /**
+   * The checksum value for a valid frame.
+   */
+  public static final int CHECKSUM_VALID = 0xff;
+
+  /**
+   * The decoder is waiting for the start of a frame.
+   */
+  private static final int STATE_WAITING_FOR_START = 0;
+
+  /**
+   * The decoder is waiting for the high byte of the packet length.
+   */
+  private static final int STATE_LENGTH_HIGH = 1;
+
+  /**
+   * The decoder is waiting for the low byte of the packet length.
+   */
+  private static final int STATE_LENGTH_LOW = 2;
+
+  /**
+   * The decoder is reading the frame data and checksum.
+   */
+  private static final int STATE_FRAME_DATA = 3;
+
+  /**
+   * The handler for decoded frames.
+   */
+  private final DecodedFrameHandler handler;
+
+  /**
+   * The current decoder state.
+   */
+  private int state = STATE_WAITING_FOR_START;
+
+  /**
+   * {@code true} if the next byte is escaped.
+   */
+  private boolean escaped;
+
+  /**
+   * The packet length of the current frame.
+   */
+  private int packetLength;
+
+  /**
+   * The frame currently being decoded, the frame data followed by the checksum.
+   */
+  private byte[] frame;
+
+  /**
+   * The number of bytes of the current frame decoded so far.
+   */
+  private int framePos;
+
+  /**
+   * The running checksum of the current frame.
+   */
+  private int checksum;
+
+  /**
+   * The number of frames dropped because of bad checksums.
+   */
+  private long checksumErrorCount;
+
+  /**
+   * Construct a new decoder.
+   *
+   * @param handler
+   *          the handler for decoded frames
+   */
+  public EscapedXBeeFrameDecoder(DecodedFrameHandler handler) {
+    this.handler = handler;
+  }
+
+  /**
+   * Decode a buffer of serial data.
+   *
+   * @param buffer
+   *          the buffer
+   * @param offset
+   *          the position of the first byte to decode in the buffer
+   * @param length
+   *          the number of bytes to decode
+   */
+  public void decode(byte[] buffer, int offset, int length) {
+    int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      int b = buffer[i] & 0xff;
+
+      if (b == XBeeApiConstants.FRAME_START_BYTE) {
+        // Never escaped, so always the start of a new frame.
+        state = STATE_LENGTH_HIGH;
+        escaped = false;
+        continue;
+      }
+
+      if (state == STATE_WAITING_FOR_START) {
+        continue;
+      }
+
+      if (b == XBeeApiConstants.ESCAPE_BYTE) {
+        escaped = true;
+        continue;
+      }
+
+      if (escaped) {
+        b ^= XBeeApiConstants.ESCAPE_BYTE_VALUE;
+        escaped = false;
+      }
+
+      switch (state) {
+        case STATE_LENGTH_HIGH:
+          packetLength = b << 8;
+          state = STATE_LENGTH_LOW;
+          break;
+
+        case STATE_LENGTH_LOW:
+          packetLength |= b;
+          if (packetLength == 0) {
+            state = STATE_WAITING_FOR_START;
+          } else {
+            frame = new byte[packetLength + 1];
+            framePos = 0;
+            checksum = 0;
+            state = STATE_FRAME_DATA;
+          }
+          break;
+
+        case STATE_FRAME_DATA:
+          frame[framePos++] = (byte) b;
+          checksum += b;
+          if (framePos == frame.length) {
+            state = STATE_WAITING_FOR_START;
+            completeFrame();
+          }
+          break;
+
+        default:
+          state = STATE_WAITING_FOR_START;
+      }
+    }
+  }
+
+  /**
+   * Reset the decoder, dropping any partially decoded frame.
+   */
+  public void reset() {
+    state = STATE_WAITING_FOR_START;
+    escaped = false;
+    frame = null;
+  }
+
+  /**
+   * Get the number of frames dropped because of bad checksums.
+   *
+   * @return the number of frames dropped
+   */
+  public long getChecksumErrorCount() {
+    return checksumErrorCount;
+  }
+
+  /**
+   * A frame has been completely read, check it and hand it off.
+   */
+  private void completeFrame() {
+    byte[] completedFrame = frame;
+    frame = null;
+
+    if ((checksum & 0xff) == CHECKSUM_VALID) {
+      handler.onDecodedFrame(completedFrame);
+    } else {
+      checksumErrorCount++;
+    }
+  }
+
+  /**
+   * A handler for decoded frames.
+   *
+   * @author Keith M. Hughes
+   */
+  public interface DecodedFrameHandler {
+
+    /**
+     * A frame has been decoded.
+     *
+     * @param frame
+     *          the frame data followed by the checksum, the handler owns the
+     *          array
+     */
+    void onDecodedFrame(byte[] frame);
+  }
+}
@@ -22,7 +22,13 @@ import io.smartspaces.service.comm.serial.SerialCommunicationEndpoint;
 import io.smartspaces.service.comm.serial.xbee.XBeeApiConstants;
 
 /**
- * An XBee frame reader which supports the Escaped API.
+ * An XBee frame reader which supports the Escaped API and reads directly from
+ * the serial endpoint.
+ *
+ * <p>
+ * Reading blocks the calling thread until serial data arrives. Endpoints which
+ * can be read from serial data callbacks should use an
+ * {@link EscapedXBeeFrameDecoder} instead.
  *
  * <p>
  * Instances of this class are not thread safe and should only be used by one
@@ -30,7 +36,7 @@ import io.smartspaces.service.comm.serial.xbee.XBeeApiConstants;
  *
  * @author Keith M. Hughes
  */
-public class EscapedXBeeFrameReader {
+public class EscapedXBeeFrameReader implements XBeeFrameReader {
 
   /**
    * The default size of the read buffer in bytes.
@@ -38,9 +44,10 @@ public class EscapedXBeeFrameReader {
   public static final int READ_BUFFER_SIZE_DEFAULT = 1024;
 
   /**
-   * The number of milliseconds to wait for a start frame if we don't have one.
+   * The number of milliseconds to wait for serial data in a single read before
+   * checking if the reading thread has been interrupted.
    */
-  public static final int START_FRAME_WAIT_DELAY = 100;
+  public static final int READ_TIMEOUT = 100;
 
   /**
    * The endpoint which is connected to the XBee.
@@ -100,14 +107,7 @@ public class EscapedXBeeFrameReader {
     return false;
   }
 
-  /**
-   * Get a byte from the frame.
-   *
-   * @return the byte
-   *
-   * @throws InterruptedException
-   *           the read thread was interrupted
-   */
+  @Override
   public int readByte() throws InterruptedException {
     // This will check for an escaped byte and retrieve its unescaped value.
     int b = readByteFromSerial();
@@ -129,14 +129,7 @@ public class EscapedXBeeFrameReader {
     return b;
   }
 
-  /**
-   * Read the packet length from the stream.
-   *
-   * @return the packet length, in bytes
-   *
-   * @throws InterruptedException
-   *           the read thread was interrupted
-   */
+  @Override
   public int readPacketLength() throws InterruptedException {
     int highLength = readByte();
     int lowLength = readByte();
@@ -144,17 +137,7 @@ public class EscapedXBeeFrameReader {
     return highLength << 8 | lowLength;
   }
 
-  /**
-   * Read the number of bytes into a new array.
-   *
-   * @param bytesToRead
-   *          the number of bytes to read
-   *
-   * @return a new array with the read bytes
-   *
-   * @throws InterruptedException
-   *           the read thread was interrupted
-   */
+  @Override
   public byte[] readData(int bytesToRead) throws InterruptedException {
     byte[] bytes = new byte[bytesToRead];
 
@@ -163,16 +146,7 @@ public class EscapedXBeeFrameReader {
     return bytes;
   }
 
-  /**
-   * Read bytes into the given array. The number read will be the size of the
-   * array.
-   *
-   * @param bytes
-   *          the byte array
-   *
-   * @throws InterruptedException
-   *           the read thread was interrupted
-   */
+  @Override
   public void readData(byte[] bytes) throws InterruptedException {
     // TODO(keith): Consider reading buffer in a tighter loop until get to
     // escape byte.
@@ -191,15 +165,16 @@ public class EscapedXBeeFrameReader {
    *           the read thread was interrupted
    */
   private int readByteFromSerial() throws InterruptedException {
-    if (readPos == numberBytesInBuffer) {
-      while (endpoint.available() == 0) {
-        Thread.sleep(START_FRAME_WAIT_DELAY);
+    while (readPos == numberBytesInBuffer) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
       }
 
       readPos = 0;
-      numberBytesInBuffer = endpoint.read(buffer);
+      numberBytesInBuffer = endpoint.read(buffer, 0, buffer.length, READ_TIMEOUT);
 
       if (numberBytesInBuffer == -1) {
+        numberBytesInBuffer = 0;
         return -1;
       }
     }
@@ -45,6 +45,6 @@ public interface ResponseXBeeFrameHandler {
    * @throws InterruptedException
    *           the read thread was interrupted
    */
-  void handle(XBeeCommunicationEndpoint endpoint, EscapedXBeeFrameReader reader,
+  void handle(XBeeCommunicationEndpoint endpoint, XBeeFrameReader reader,
       List<XBeeResponseListener> listeners, ExtendedLog log) throws InterruptedException;
 }
@@ -42,7 +42,7 @@ public class SimpleResponseXBeeFrameHandler implements ResponseXBeeFrameHandler
   private XBeeResponseFrameParser parser = new SimpleXBeeResponseFrameParser();
 
   @Override
-  public void handle(XBeeCommunicationEndpoint endpoint, EscapedXBeeFrameReader reader,
+  public void handle(XBeeCommunicationEndpoint endpoint, XBeeFrameReader reader,
       List<XBeeResponseListener> listeners, ExtendedLog log) throws InterruptedException {
 
     int packetLength = reader.readPacketLength();
@@ -38,7 +38,7 @@ import io.smartspaces.service.comm.serial.xbee.XBeeApiConstants;
 public class SimpleXBeeResponseFrameParser implements XBeeResponseFrameParser {
 
   @Override
-  public AtLocalResponseXBeeFrame parseAtLocalResponse(EscapedXBeeFrameReader reader,
+  public AtLocalResponseXBeeFrame parseAtLocalResponse(XBeeFrameReader reader,
       int bytesLeft, ExtendedLog log) throws InterruptedException {
     int frameId = reader.readByte();
 
@@ -56,7 +56,7 @@ public class SimpleXBeeResponseFrameParser implements XBeeResponseFrameParser {
   }
 
   @Override
-  public AtRemoteResponseXBeeFrame parseAtRemoteResponse(EscapedXBeeFrameReader reader,
+  public AtRemoteResponseXBeeFrame parseAtRemoteResponse(XBeeFrameReader reader,
       int bytesLeft, ExtendedLog log) throws InterruptedException {
     int frameId = reader.readByte();
 
@@ -77,7 +77,7 @@ public class SimpleXBeeResponseFrameParser implements XBeeResponseFrameParser {
   }
 
   @Override
-  public TxStatusXBeeFrame parseTxStatus(EscapedXBeeFrameReader reader, int bytesLeft, ExtendedLog log)
+  public TxStatusXBeeFrame parseTxStatus(XBeeFrameReader reader, int bytesLeft, ExtendedLog log)
       throws InterruptedException {
     int frameId = reader.readByte();
     XBeeAddress16 address16 = parseXBeeAddress16(reader);
@@ -92,7 +92,7 @@ public class SimpleXBeeResponseFrameParser implements XBeeResponseFrameParser {
   }
 
   @Override
-  public RxResponseXBeeFrame parseRxResponse(EscapedXBeeFrameReader reader, int bytesLeft, ExtendedLog log)
+  public RxResponseXBeeFrame parseRxResponse(XBeeFrameReader reader, int bytesLeft, ExtendedLog log)
       throws InterruptedException {
     XBeeAddress64 address64 = parseXBeeAddress64(reader);
     XBeeAddress16 address16 = parseXBeeAddress16(reader);
@@ -107,7 +107,7 @@ public class SimpleXBeeResponseFrameParser implements XBeeResponseFrameParser {
   }
 
   @Override
-  public RxIoSampleXBeeFrame parseIoSampleResponse(EscapedXBeeFrameReader reader, int bytesLeft,
+  public RxIoSampleXBeeFrame parseIoSampleResponse(XBeeFrameReader reader, int bytesLeft,
 		  ExtendedLog log) throws InterruptedException {
     XBeeAddress64 address64 = parseXBeeAddress64(reader);
     XBeeAddress16 address16 = parseXBeeAddress16(reader);
@@ -156,7 +156,7 @@ public class SimpleXBeeResponseFrameParser implements XBeeResponseFrameParser {
    * @throws InterruptedException
    *           the read thread was interrupted
    */
-  private XBeeAddress64 parseXBeeAddress64(EscapedXBeeFrameReader reader)
+  private XBeeAddress64 parseXBeeAddress64(XBeeFrameReader reader)
       throws InterruptedException {
     return new XBeeAddress64Impl(reader.readByte(), reader.readByte(), reader.readByte(),
         reader.readByte(), reader.readByte(), reader.readByte(), reader.readByte(),
@@ -174,7 +174,7 @@ public class SimpleXBeeResponseFrameParser implements XBeeResponseFrameParser {
    * @throws InterruptedException
    *           the read thread was interrupted
    */
-  private XBeeAddress16 parseXBeeAddress16(EscapedXBeeFrameReader reader)
+  private XBeeAddress16 parseXBeeAddress16(XBeeFrameReader reader)
       throws InterruptedException {
     return new XBeeAddress16Impl(reader.readByte(), reader.readByte());
   }
@@ -188,7 +188,7 @@ public class SimpleXBeeResponseFrameParser implements XBeeResponseFrameParser {
    * @throws InterruptedException
    *           the read thread was interrupted
    */
-  private void handleChecksum(EscapedXBeeFrameReader reader) throws InterruptedException {
+  private void handleChecksum(XBeeFrameReader reader) throws InterruptedException {
     // Go past checksum
     reader.readByte();
   }
@@ -18,12 +18,15 @@
 package io.smartspaces.service.comm.serial.xbee.internal;
 
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import io.smartspaces.logging.ExtendedLog;
 import io.smartspaces.service.comm.serial.SerialCommunicationEndpoint;
+import io.smartspaces.service.comm.serial.SerialDataAvailableListener;
 import io.smartspaces.service.comm.serial.xbee.AtLocalRequestXBeeFrame;
 import io.smartspaces.service.comm.serial.xbee.AtRemoteRequestXBeeFrame;
 import io.smartspaces.service.comm.serial.xbee.TxRequestXBeeFrame;
@@ -36,19 +39,57 @@ import io.smartspaces.tasks.CancellableLoopingTask;
 /**
  * A Smart Spaces implementation of an XBee communication endpoint.
  *
+ * <p>
+ * Serial data is read when the serial endpoint says data is available and
+ * decoded into frames on the serial thread. Decoded frames are parsed and sent
+ * to the listeners on a separate dispatch thread, so slow listeners don't hold
+ * up reading from the XBee.
+ *
  * @author Keith M. Hughes
  */
 public class SmartSpacesXBeeCommunicationEndpoint implements XBeeCommunicationEndpoint {
 
+  /**
+   * The size of the buffer for reading serial data, in bytes.
+   */
+  public static final int READ_BUFFER_SIZE = 1024;
+
+  /**
+   * The maximum number of decoded frames which can be waiting for dispatch.
+   */
+  public static final int DISPATCH_QUEUE_SIZE_MAX = 1024;
+
   /**
    * The communication endpoint for speaking with the XBee.
    */
   private SerialCommunicationEndpoint commEndpoint;
 
   /**
-   * reader for the XBee frames.
+   * Buffer for data read from the serial endpoint.
    */
-  private EscapedXBeeFrameReader reader;
+  private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+
+  /**
+   * Decoder for the XBee frames.
+   */
+  private final EscapedXBeeFrameDecoder decoder;
+
+  /**
+   * The decoded frames waiting to be dispatched.
+   */
+  private final BlockingQueue<byte[]> dispatchQueue =
+      new LinkedBlockingQueue<byte[]>(DISPATCH_QUEUE_SIZE_MAX);
+
+  /**
+   * The listener for data arriving from the serial endpoint.
+   */
+  private final SerialDataAvailableListener dataAvailableListener =
+      new SerialDataAvailableListener() {
+        @Override
+        public void onSerialDataAvailable(SerialCommunicationEndpoint endpoint) {
+          readAvailableData();
+        }
+      };
 
   /**
    * Parser for response frames.
@@ -61,7 +102,7 @@ public class SmartSpacesXBeeCommunicationEndpoint implements XBeeCommunicationEn
   private List<XBeeResponseListener> listeners = new CopyOnWriteArrayList<XBeeResponseListener>();
 
   /**
-   * The executor service for running the reader loop.
+   * The executor service for running the dispatch loop.
    */
   private ScheduledExecutorService executorService;
 
@@ -71,9 +112,9 @@ public class SmartSpacesXBeeCommunicationEndpoint implements XBeeCommunicationEn
   private ExtendedLog log;
 
   /**
-   * Loop for reading info from the XBee.
+   * Loop for dispatching frames from the XBee.
    */
-  private CancellableLoopingTask readerLoop;
+  private CancellableLoopingTask dispatchLoop;
 
   /**
    * A generator for frame numbers.
@@ -96,7 +137,12 @@ public class SmartSpacesXBeeCommunicationEndpoint implements XBeeCommunicationEn
     this.executorService = executorService;
     this.log = log;
 
-    this.reader = new EscapedXBeeFrameReader(commEndpoint);
+    this.decoder = new EscapedXBeeFrameDecoder(new EscapedXBeeFrameDecoder.DecodedFrameHandler() {
+      @Override
+      public void onDecodedFrame(byte[] frame) {
+        queueFrame(frame);
+      }
+    });
   }
 
   @Override
@@ -104,36 +150,47 @@ public class SmartSpacesXBeeCommunicationEndpoint implements XBeeCommunicationEn
     log.info(String.format("Starting up XBee connection with serial connection %s", commEndpoint));
     commEndpoint.startup();
 
-    readerLoop = new CancellableLoopingTask() {
+    dispatchLoop = new CancellableLoopingTask() {
       @Override
       protected void loop() throws InterruptedException {
-        readFrame();
+        dispatchFrame(dispatchQueue.take());
       }
 
       @Override
       protected void handleException(Exception e) {
-        log.error("Error while reading XBee frame", e);
+        log.error("Error while handling XBee frame", e);
       }
 
       @Override
       protected void cleanup() {
-        log.info("XBee serial connection read loop shut down");
+        log.info("XBee serial connection dispatch loop shut down");
       }
     };
 
-    executorService.submit(readerLoop);
+    executorService.submit(dispatchLoop);
+
+    commEndpoint.addDataAvailableListener(dataAvailableListener);
+
+    // Pick up anything which arrived before the listener was added.
+    readAvailableData();
   }
 
   @Override
   public void shutdown() {
     log.info(String.format("Shutting down XBee connection with serial connection %s", commEndpoint));
 
-    if (readerLoop != null) {
-      readerLoop.cancel();
+    if (commEndpoint != null) {
+      commEndpoint.removeDataAvailableListener(dataAvailableListener);
+    }
+
+    if (dispatchLoop != null) {
+      dispatchLoop.cancel();
 
-      readerLoop = null;
+      dispatchLoop = null;
     }
 
+    dispatchQueue.clear();
+
     if (commEndpoint != null) {
       commEndpoint.shutdown();
       commEndpoint = null;
@@ -273,18 +330,49 @@ public class SmartSpacesXBeeCommunicationEndpoint implements XBeeCommunicationEn
   }
 
   /**
-   * Read a frame from the connected XBee.
-   *
-   * @throws InterruptedException
-   *           the read thread was interrupted
+   * Read all data currently available from the XBee and decode it.
    */
-  private void readFrame() throws InterruptedException {
-    if (!reader.waitForStartFrame()) {
-      log.warn("End of XBee serial stream detected");
+  private synchronized void readAvailableData() {
+    SerialCommunicationEndpoint endpoint = commEndpoint;
+    if (endpoint == null) {
       return;
     }
 
-    frameHandler.handle(this, reader, listeners, log);
+    int available;
+    while ((available = endpoint.available()) > 0) {
+      int numberBytesRead = endpoint.read(readBuffer, 0, Math.min(available, readBuffer.length));
+      if (numberBytesRead == -1) {
+        log.warn("End of XBee serial stream detected");
+        return;
+      }
+
+      decoder.decode(readBuffer, 0, numberBytesRead);
+    }
+  }
+
+  /**
+   * Queue a decoded frame for dispatch.
+   *
+   * @param frame
+   *          the decoded frame
+   */
+  private void queueFrame(byte[] frame) {
+    if (!dispatchQueue.offer(frame)) {
+      log.warn("XBee frame dispatch queue full, dropping frame");
+    }
+  }
+
+  /**
+   * Parse a decoded frame and send it to the listeners.
+   *
+   * @param frame
+   *          the decoded frame
+   *
+   * @throws InterruptedException
+   *           the dispatch thread was interrupted
+   */
+  private void dispatchFrame(byte[] frame) throws InterruptedException {
+    frameHandler.handle(this, new DecodedXBeeFrameReader(frame), listeners, log);
   }
 
   @Override
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.serial.xbee.internal;
+
+/**
+ * A reader for the unescaped contents of an XBee frame.
+ *
+ * @author Keith M. Hughes
+ */
+public interface XBeeFrameReader {
+
+  /**
+   * Get a byte from the frame.
+   *
+   * @return the byte
+   *
+   * @throws InterruptedException
+   *           the read thread was interrupted
+   */
+  int readByte() throws InterruptedException;
+
+  /**
+   * Read the packet length of the frame.
+   *
+   * @return the packet length, in bytes
+   *
+   * @throws InterruptedException
+   *           the read thread was interrupted
+   */
+  int readPacketLength() throws InterruptedException;
+
+  /**
+   * Read the number of bytes into a new array.
+   *
+   * @param bytesToRead
+   *          the number of bytes to read
+   *
+   * @return a new array with the read bytes
+   *
+   * @throws InterruptedException
+   *           the read thread was interrupted
+   */
+  byte[] readData(int bytesToRead) throws InterruptedException;
+
+  /**
+   * Read bytes into the given array. The number read will be the size of the
+   * array.
+   *
+   * @param bytes
+   *          the byte array
+   *
+   * @throws InterruptedException
+   *           the read thread was interrupted
+   */
+  void readData(byte[] bytes) throws InterruptedException;
+}
@@ -46,7 +46,7 @@ public interface XBeeResponseFrameParser {
    * @throws InterruptedException
    *           the read thread was interrupted
    */
-  AtLocalResponseXBeeFrame parseAtLocalResponse(EscapedXBeeFrameReader reader, int bytesLeft,
+  AtLocalResponseXBeeFrame parseAtLocalResponse(XBeeFrameReader reader, int bytesLeft,
       ExtendedLog log) throws InterruptedException;
 
   /**
@@ -64,7 +64,7 @@ public interface XBeeResponseFrameParser {
    * @throws InterruptedException
    *           the read thread was interrupted
    */
-  AtRemoteResponseXBeeFrame parseAtRemoteResponse(EscapedXBeeFrameReader reader, int bytesLeft,
+  AtRemoteResponseXBeeFrame parseAtRemoteResponse(XBeeFrameReader reader, int bytesLeft,
 		  ExtendedLog log) throws InterruptedException;
 
   /**
@@ -82,7 +82,7 @@ public interface XBeeResponseFrameParser {
    * @throws InterruptedException
    *           the read thread was interrupted
    */
-  TxStatusXBeeFrame parseTxStatus(EscapedXBeeFrameReader reader, int bytesLeft, ExtendedLog log)
+  TxStatusXBeeFrame parseTxStatus(XBeeFrameReader reader, int bytesLeft, ExtendedLog log)
       throws InterruptedException;
 
   /**
@@ -100,7 +100,7 @@ public interface XBeeResponseFrameParser {
    * @throws InterruptedException
    *           the read thread was interrupted
    */
-  RxResponseXBeeFrame parseRxResponse(EscapedXBeeFrameReader reader, int bytesLeft, ExtendedLog log)
+  RxResponseXBeeFrame parseRxResponse(XBeeFrameReader reader, int bytesLeft, ExtendedLog log)
       throws InterruptedException;
 
   /**
@@ -118,6 +118,6 @@ public interface XBeeResponseFrameParser {
    * @throws InterruptedException
    *           the read thread was interrupted
    */
-  RxIoSampleXBeeFrame parseIoSampleResponse(EscapedXBeeFrameReader reader, int bytesLeft, ExtendedLog log)
+  RxIoSampleXBeeFrame parseIoSampleResponse(XBeeFrameReader reader, int bytesLeft, ExtendedLog log)
       throws InterruptedException;
 }
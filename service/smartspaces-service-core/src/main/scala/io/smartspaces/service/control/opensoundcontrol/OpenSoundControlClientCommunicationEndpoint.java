@@ -149,4 +149,18 @@ public interface OpenSoundControlClientCommunicationEndpoint extends ManagedReso
    *          the method for the addressed messages
    */
   void unregisterUnknownMessageResponseMethod(OpenSoundControlClientResponseMethod method);
+
+  /**
+   * Set the furthest in the future a bundle time tag can be for its messages
+   * to be held until then.
+   *
+   * <p>
+   * Messages whose time tags are further in the future are dropped. The
+   * default is
+   * {@link OpenSoundControlConstants#OPEN_SOUND_CONTROL_TIME_TAG_DELAY_MAX_DEFAULT}.
+   *
+   * @param maxTimeTagDelay
+   *          the maximum delay, in milliseconds
+   */
+  void setMaxTimeTagDelay(long maxTimeTagDelay);
 }
@@ -86,6 +86,33 @@ public class OpenSoundControlConstants {
    */
   public static final int OPEN_SOUND_CONTROL_BYTE_BOUNDARY = 4;
 
+  /**
+   * The string which starts an Open Sound Control bundle.
+   */
+  public static final String OPEN_SOUND_CONTROL_BUNDLE_IDENTIFIER = "#bundle";
+
+  /**
+   * The number of bytes in an OSC time tag.
+   */
+  public static final int OPEN_SOUND_CONTROL_NUMBER_BYTES_TIME_TAG = 8;
+
+  /**
+   * The time tag which means a bundle should be handled immediately.
+   */
+  public static final long OPEN_SOUND_CONTROL_TIME_TAG_IMMEDIATE = 1;
+
+  /**
+   * The number of seconds between the start of OSC time tag time, 1 January
+   * 1900, and the start of Java time, 1 January 1970.
+   */
+  public static final long OPEN_SOUND_CONTROL_TIME_TAG_EPOCH_OFFSET_SECONDS = 2208988800L;
+
+  /**
+   * The default for the furthest in the future, in milliseconds, a bundle time
+   * tag can be for its messages to be held until then.
+   */
+  public static final long OPEN_SOUND_CONTROL_TIME_TAG_DELAY_MAX_DEFAULT = 10000;
+
   /**
    * Byte order for Open Sound Control data types.
    */
@@ -42,6 +42,15 @@ public interface OpenSoundControlIncomingMessage {
    */
   String getAddress();
 
+  /**
+   * Get the time tag of the bundle the message came in.
+   *
+   * @return the time tag, which is
+   *         {@link OpenSoundControlConstants#OPEN_SOUND_CONTROL_TIME_TAG_IMMEDIATE}
+   *         if the message was not in a bundle
+   */
+  long getTimeTag();
+
   /**
    * Get the number of arguments in the message.
    *
@@ -55,6 +64,11 @@ public interface OpenSoundControlIncomingMessage {
    * <p>
    * This is the raw array. Modify at your own risk.
    *
+   * <p>
+   * The arguments are boxed when this is first called. The typed argument
+   * methods read the packet directly and should be preferred for high rate
+   * messages.
+   *
    * @return the arguments in the packet
    */
   Object[] getArguments();
@@ -23,9 +23,9 @@ import io.smartspaces.resource.managed.ManagedResource;
  * A server endpoint for Open Sound Control requests.
  *
  * <p>
- * This version does not support wild card processing for OSC addresses.
- *
- * TODO(keith): Add wild card processing.
+ * Methods are registered for literal OSC addresses. Incoming messages can use
+ * OSC address patterns to reach several methods at once, and messages in a
+ * bundle with a future time tag are handled at that time.
  *
  * @author Keith M. Hughes
  */
@@ -87,4 +87,18 @@ public interface OpenSoundControlServerCommunicationEndpoint extends ManagedReso
    *          the method for the addressed packets
    */
   void unregisterUnknownMessageMethod(OpenSoundControlServerRequestMethod method);
+
+  /**
+   * Set the furthest in the future a bundle time tag can be for its messages
+   * to be held until then.
+   *
+   * <p>
+   * Messages whose time tags are further in the future are dropped. The
+   * default is
+   * {@link OpenSoundControlConstants#OPEN_SOUND_CONTROL_TIME_TAG_DELAY_MAX_DEFAULT}.
+   *
+   * @param maxTimeTagDelay
+   *          the maximum delay, in milliseconds
+   */
+  void setMaxTimeTagDelay(long maxTimeTagDelay);
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.control.opensoundcontrol.internal;
+
+/**
+ * Matching of Open Sound Control address patterns.
+ *
+ * <p>
+ * Patterns are matched one address part at a time, a part being the text
+ * between two {@code /} characters. A part can contain {@code ?} for any single
+ * character, {@code *} for any sequence of characters, {@code [abc]} and
+ * {@code [a-z]} for any character in the set, {@code [!a-z]} for any character
+ * not in the set, and {@code {foo,bar}} for any of the given strings.
+ *
+ * @author Keith M. Hughes
+ */
+public class OpenSoundControlAddressPattern {
+
+  /**
+   * Does an address contain any pattern characters?
+   *
+   * @param address
+   *          the address or address part
+   *
+   * @return {@code true} if the address is a pattern
+   */
+  public static boolean isPattern(String address) {
+    for (int i = 0; i < address.length(); i++) {
+      switch (address.charAt(i)) {
+        case '*':
+        case '?':
+        case '[':
+        case '{':
+          return true;
+        default:
+          // Keep looking.
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Does an address part match a pattern part?
+   *
+   * @param pattern
+   *          the pattern part
+   * @param part
+   *          the address part
+   *
+   * @return {@code true} if the part matches
+   */
+  public static boolean matchesPart(String pattern, String part) {
+    return matches(pattern, 0, part, 0);
+  }
+
+  /**
+   * Match the rest of a pattern part against the rest of an address part.
+   *
+   * @param pattern
+   *          the pattern part
+   * @param patternPos
+   *          the position in the pattern to match from
+   * @param part
+   *          the address part
+   * @param partPos
+   *          the position in the address part to match from
+   *
+   * @return {@code true} if the rest matches
+   */
+  private static boolean matches(String pattern, int patternPos, String part, int partPos) {
+    while (patternPos < pattern.length()) {
+      char c = pattern.charAt(patternPos);
+      switch (c) {
+        case '*':
+          // Several stars in a row are the same as one.
+          while (patternPos < pattern.length() && pattern.charAt(patternPos) == '*') {
+            patternPos++;
+          }
+          if (patternPos == pattern.length()) {
+            return true;
+          }
+          for (int start = partPos; start <= part.length(); start++) {
+            if (matches(pattern, patternPos, part, start)) {
+              return true;
+            }
+          }
+          return false;
+
+        case '?':
+          if (partPos >= part.length()) {
+            return false;
+          }
+          patternPos++;
+          partPos++;
+          break;
+
+        case '[':
+          int setEnd = pattern.indexOf(']', patternPos + 1);
+          if (setEnd < 0 || partPos >= part.length()
+              || !matchesSet(pattern, patternPos + 1, setEnd, part.charAt(partPos))) {
+            return false;
+          }
+          patternPos = setEnd + 1;
+          partPos++;
+          break;
+
+        case '{':
+          int choicesEnd = pattern.indexOf('}', patternPos + 1);
+          if (choicesEnd < 0) {
+            return false;
+          }
+          int choiceStart = patternPos + 1;
+          while (choiceStart <= choicesEnd) {
+            int choiceEnd = pattern.indexOf(',', choiceStart);
+            if (choiceEnd < 0 || choiceEnd > choicesEnd) {
+              choiceEnd = choicesEnd;
+            }
+            int choiceLength = choiceEnd - choiceStart;
+            if (part.regionMatches(partPos, pattern, choiceStart, choiceLength)
+                && matches(pattern, choicesEnd + 1, part, partPos + choiceLength)) {
+              return true;
+            }
+            choiceStart = choiceEnd + 1;
+          }
+          return false;
+
+        default:
+          if (partPos >= part.length() || part.charAt(partPos) != c) {
+            return false;
+          }
+          patternPos++;
+          partPos++;
+      }
+    }
+
+    return partPos == part.length();
+  }
+
+  /**
+   * Is a character in a character set?
+   *
+   * @param pattern
+   *          the pattern containing the set
+   * @param setStart
+   *          the position just after the {@code [}
+   * @param setEnd
+   *          the position of the {@code ]}
+   * @param c
+   *          the character to look for
+   *
+   * @return {@code true} if the character matches the set
+   */
+  private static boolean matchesSet(String pattern, int setStart, int setEnd, char c) {
+    boolean negated = setStart < setEnd && pattern.charAt(setStart) == '!';
+    if (negated) {
+      setStart++;
+    }
+
+    boolean found = false;
+    for (int pos = setStart; pos < setEnd && !found; pos++) {
+      char low = pattern.charAt(pos);
+      if (pos + 2 < setEnd && pattern.charAt(pos + 1) == '-') {
+        char high = pattern.charAt(pos + 2);
+        found = low <= c && c <= high;
+        pos += 2;
+      } else {
+        found = low == c;
+      }
+    }
+
+    return found != negated;
+  }
+}
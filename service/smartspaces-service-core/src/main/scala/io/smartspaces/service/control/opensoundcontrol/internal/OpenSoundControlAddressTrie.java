@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.control.opensoundcontrol.internal;
+
+import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlIncomingMessage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trie of the method collections for OSC addresses, split on the address
+ * parts.
+ *
+ * <p>
+ * An address pattern is matched one part at a time, so only the branches of
+ * the trie which match the earlier parts are looked at. Literal parts are
+ * looked up directly.
+ *
+ * <p>
+ * The trie is not changed once built, so can be read by any number of threads.
+ *
+ * @param <M>
+ *          the type of incoming messages
+ *
+ * @author Keith M. Hughes
+ */
+public class OpenSoundControlAddressTrie<M extends OpenSoundControlIncomingMessage> {
+
+  /**
+   * The separator between address parts.
+   */
+  private static final char ADDRESS_PART_SEPARATOR = '/';
+
+  /**
+   * The root of the trie.
+   */
+  private final TrieNode<M> root = new TrieNode<>();
+
+  /**
+   * Construct a new trie.
+   *
+   * @param collections
+   *          the method collections, keyed by their OSC address
+   */
+  public OpenSoundControlAddressTrie(Map<String, OpenSoundControlMethodCollection<M>> collections) {
+    for (Map.Entry<String, OpenSoundControlMethodCollection<M>> entry : collections.entrySet()) {
+      String[] parts = splitAddress(entry.getKey());
+
+      TrieNode<M> node = root;
+      for (String part : parts) {
+        TrieNode<M> child = node.children.get(part);
+        if (child == null) {
+          child = new TrieNode<>();
+          node.children.put(part, child);
+        }
+        node = child;
+      }
+      node.collection = entry.getValue();
+    }
+  }
+
+  /**
+   * Find all method collections whose addresses match an address pattern.
+   *
+   * @param addressPattern
+   *          the address pattern
+   * @param matches
+   *          the list to add the matching collections to
+   */
+  public void findMatches(String addressPattern,
+      List<OpenSoundControlMethodCollection<M>> matches) {
+    findMatches(root, splitAddress(addressPattern), 0, matches);
+  }
+
+  /**
+   * Find all method collections below a node which match the rest of an
+   * address pattern.
+   *
+   * @param node
+   *          the node to start from
+   * @param parts
+   *          the parts of the address pattern
+   * @param partIndex
+   *          the index of the part to match against the node's children
+   * @param matches
+   *          the list to add the matching collections to
+   */
+  private void findMatches(TrieNode<M> node, String[] parts, int partIndex,
+      List<OpenSoundControlMethodCollection<M>> matches) {
+    if (partIndex == parts.length) {
+      if (node.collection != null) {
+        matches.add(node.collection);
+      }
+
+      return;
+    }
+
+    String part = parts[partIndex];
+    if (OpenSoundControlAddressPattern.isPattern(part)) {
+      for (Map.Entry<String, TrieNode<M>> child : node.children.entrySet()) {
+        if (OpenSoundControlAddressPattern.matchesPart(part, child.getKey())) {
+          findMatches(child.getValue(), parts, partIndex + 1, matches);
+        }
+      }
+    } else {
+      TrieNode<M> child = node.children.get(part);
+      if (child != null) {
+        findMatches(child, parts, partIndex + 1, matches);
+      }
+    }
+  }
+
+  /**
+   * Split an address into its parts.
+   *
+   * @param address
+   *          the address
+   *
+   * @return the parts, not including the empty part before the leading
+   *         separator
+   */
+  private static String[] splitAddress(String address) {
+    int start = (!address.isEmpty() && address.charAt(0) == ADDRESS_PART_SEPARATOR) ? 1 : 0;
+
+    return address.substring(start).split(String.valueOf(ADDRESS_PART_SEPARATOR), -1);
+  }
+
+  /**
+   * A node in the trie.
+   *
+   * @param <M>
+   *          the type of incoming messages
+   *
+   * @author Keith M. Hughes
+   */
+  private static class TrieNode<M extends OpenSoundControlIncomingMessage> {
+
+    /**
+     * The children of the node, keyed by address part.
+     */
+    private final Map<String, TrieNode<M>> children = new HashMap<>();
+
+    /**
+     * The methods for the address ending at this node, if any.
+     */
+    private OpenSoundControlMethodCollection<M> collection;
+  }
+}
@@ -17,8 +17,8 @@
 
 package io.smartspaces.service.control.opensoundcontrol.internal;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import io.smartspaces.logging.ExtendedLog;
 import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlIncomingMessage;
@@ -28,7 +28,8 @@ import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlMethod;
  * A collection of OSC methods.
  *
  * <p>
- * This class is not thread safe. The callers need to protect it.
+ * This class is thread safe. Methods can be added and removed while messages
+ * are being handled, which always see a consistent list of methods.
  *
  * @param <M>
  *          the type of incoming messages
@@ -40,7 +41,7 @@ public class OpenSoundControlMethodCollection<M extends OpenSoundControlIncoming
   /**
    * The methods.
    */
-  private List<OpenSoundControlMethod<M>> methods = new ArrayList<>();
+  private final List<OpenSoundControlMethod<M>> methods = new CopyOnWriteArrayList<>();
 
   /**
    * Add a new method to the collection.
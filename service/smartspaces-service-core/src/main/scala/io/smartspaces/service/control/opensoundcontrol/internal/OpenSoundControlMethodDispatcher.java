@@ -14,21 +14,36 @@
  * License for the specific language governing permissions and limitations under
  * the License.
  */
-
 package io.smartspaces.service.control.opensoundcontrol.internal;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlConstants;
 import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlIncomingMessage;
 import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlMethod;
+import io.smartspaces.time.provider.TimeProvider;
 
 /**
  * Dispatch messages to an appropriate Open Sound Control method.
  *
  * <p>
- * This class is threadsafe.
+ * Incoming message addresses can be OSC address patterns, in which case the
+ * message goes to the methods for every matching address. Messages from a
+ * bundle whose time tag is in the future are held until that time if the
+ * dispatcher has an executor service, otherwise they are dispatched
+ * immediately. The sender picks the time tag, so messages further in the
+ * future than a maximum delay are dropped rather than held.
+ *
+ * <p>
+ * This class is threadsafe. The method tables are copied when an address is
+ * added, so messages are dispatched without taking any locks.
  *
  * @param <M>
  *          the type of incoming messages
@@ -38,31 +53,96 @@ import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlMethod;
 public class OpenSoundControlMethodDispatcher<M extends OpenSoundControlIncomingMessage> {
 
   /**
-   * The collections of methods.
+   * The collections of methods, keyed by address.
+   *
+   * <p>
+   * This map is never changed, it is replaced when a new address is added.
+   */
+  private volatile Map<String, OpenSoundControlMethodCollection<M>> collections =
+      Collections.emptyMap();
+
+  /**
+   * The trie of the collections of methods, for address patterns.
+   *
+   * <p>
+   * This is replaced along with the collections.
    */
-  private Map<String, OpenSoundControlMethodCollection<M>> collections = new HashMap<>();
+  private volatile OpenSoundControlAddressTrie<M> addressTrie =
+      new OpenSoundControlAddressTrie<M>(collections);
 
   /**
    * The methods for handling unhandled messages.
    */
-  private OpenSoundControlMethodCollection<M> unknownMessageMethods =
+  private final OpenSoundControlMethodCollection<M> unknownMessageMethods =
       new OpenSoundControlMethodCollection<M>();
 
+  /**
+   * The executor service for messages with future time tags, can be
+   * {@code null}.
+   */
+  private final ScheduledExecutorService executorService;
+
+  /**
+   * The time provider for working out when to handle messages with future time
+   * tags, can be {@code null}.
+   */
+  private final TimeProvider timeProvider;
+
+  /**
+   * The furthest in the future a time tag can be for a message to be held, in
+   * milliseconds.
+   */
+  private volatile long maxTimeTagDelay =
+      OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_DELAY_MAX_DEFAULT;
+
   /**
    * The logger to use.
    */
-  private ExtendedLog log;
+  private final ExtendedLog log;
 
   /**
-   * Construct a new dispatcher.
+   * Construct a new dispatcher which handles all messages immediately.
    *
    * @param log
    *          the logger to use
    */
   public OpenSoundControlMethodDispatcher(ExtendedLog log) {
+    this(null, null, log);
+  }
+
+  /**
+   * Construct a new dispatcher.
+   *
+   * @param executorService
+   *          the executor service for handling messages with future time tags,
+   *          can be {@code null} to handle them immediately
+   * @param timeProvider
+   *          the time provider to compare time tags against, can be
+   *          {@code null} if there is no executor service
+   * @param log
+   *          the logger to use
+   */
+  public OpenSoundControlMethodDispatcher(ScheduledExecutorService executorService,
+      TimeProvider timeProvider, ExtendedLog log) {
+    this.executorService = executorService;
+    this.timeProvider = timeProvider;
     this.log = log;
   }
 
+  /**
+   * Set the furthest in the future a time tag can be for a message to be held
+   * until then.
+   *
+   * <p>
+   * Messages whose time tags are further in the future are dropped.
+   *
+   * @param maxTimeTagDelay
+   *          the maximum delay, in milliseconds
+   */
+  public void setMaxTimeTagDelay(long maxTimeTagDelay) {
+    this.maxTimeTagDelay = maxTimeTagDelay;
+  }
+
   /**
    * Add in a new method into the dispatcher.
    *
@@ -75,7 +155,12 @@ public class OpenSoundControlMethodDispatcher<M extends OpenSoundControlIncoming
     OpenSoundControlMethodCollection<M> collection = collections.get(oscAddress);
     if (collection == null) {
       collection = new OpenSoundControlMethodCollection<M>();
-      collections.put(oscAddress, collection);
+
+      Map<String, OpenSoundControlMethodCollection<M>> newCollections = new HashMap<>(collections);
+      newCollections.put(oscAddress, collection);
+
+      addressTrie = new OpenSoundControlAddressTrie<M>(newCollections);
+      collections = newCollections;
     }
 
     collection.addMethod(method);
@@ -89,7 +174,7 @@ public class OpenSoundControlMethodDispatcher<M extends OpenSoundControlIncoming
    * @param method
    *          the method to be removed
    */
-  public synchronized void removeMethod(String oscAddress, OpenSoundControlMethod<M> method) {
+  public void removeMethod(String oscAddress, OpenSoundControlMethod<M> method) {
     OpenSoundControlMethodCollection<M> collection = collections.get(oscAddress);
     if (collection != null) {
       collection.removeMethod(method);
@@ -106,7 +191,7 @@ public class OpenSoundControlMethodDispatcher<M extends OpenSoundControlIncoming
    * @param method
    *          the method
    */
-  public synchronized void addUnknownMessageMethod(OpenSoundControlMethod<M> method) {
+  public void addUnknownMessageMethod(OpenSoundControlMethod<M> method) {
     unknownMessageMethods.addMethod(method);
   }
 
@@ -119,24 +204,76 @@ public class OpenSoundControlMethodDispatcher<M extends OpenSoundControlIncoming
    * @param method
    *          the method for the addressed messages
    */
-  public synchronized void removeUnknownMessageMethod(OpenSoundControlMethod<M> method) {
+  public void removeUnknownMessageMethod(OpenSoundControlMethod<M> method) {
     unknownMessageMethods.removeMethod(method);
   }
 
   /**
    * Handle an incoming OSC message.
    *
+   * <p>
+   * A message with a future time tag is handled at that time, or dropped if
+   * the time is further away than the maximum time tag delay.
+   *
    * @param message
    *          the message to be handled
    */
-  public synchronized void handleIncomingMessage(M message) {
-    OpenSoundControlMethodCollection<M> collection = collections.get(message.getAddress());
-    if (collection != null) {
-      collection.handleMessage(message, log);
+  public void handleIncomingMessage(final M message) {
+    long timeTag = message.getTimeTag();
+    if (executorService != null
+        && timeTag != OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_IMMEDIATE) {
+      long delay = SmartSpacesOpenSoundControlMessageParser.getTimeTagTime(timeTag)
+          - timeProvider.getCurrentTime();
+      if (delay > maxTimeTagDelay) {
+        log.formatWarn(
+            "Dropped OSC message with address %s for %d msec in the future, the maximum is %d msec",
+            message.getAddress(), delay, maxTimeTagDelay);
+
+        return;
+      } else if (delay > 0) {
+        executorService.schedule(new Runnable() {
+          @Override
+          public void run() {
+            dispatchMessage(message);
+          }
+        }, delay, TimeUnit.MILLISECONDS);
+
+        return;
+      }
+    }
+
+    dispatchMessage(message);
+  }
+
+  /**
+   * Dispatch a message to its methods.
+   *
+   * @param message
+   *          the message to be dispatched
+   */
+  private void dispatchMessage(M message) {
+    String address = message.getAddress();
+    if (OpenSoundControlAddressPattern.isPattern(address)) {
+      List<OpenSoundControlMethodCollection<M>> matches = new ArrayList<>();
+      addressTrie.findMatches(address, matches);
+      if (!matches.isEmpty()) {
+        for (OpenSoundControlMethodCollection<M> collection : matches) {
+          collection.handleMessage(message, log);
+        }
+
+        return;
+      }
     } else {
-      log.warn(String.format("Got unhandled OSC message with address %s", message.getAddress()));
+      OpenSoundControlMethodCollection<M> collection = collections.get(address);
+      if (collection != null) {
+        collection.handleMessage(message, log);
 
-      unknownMessageMethods.handleMessage(message, log);
+        return;
+      }
     }
+
+    log.warn(String.format("Got unhandled OSC message with address %s", address));
+
+    unknownMessageMethods.handleMessage(message, log);
   }
 }
@@ -49,6 +49,7 @@ public class SmartSpacesOpenSoundControlClientCommunicationEndpointService exten
 
     return new SmartSpacesUdpOpenSoundControlClientCommunicationsEndpoint(
         new InetSocketAddress(remoteHost, remotePort), udpEndpointService.newClient(
-            OpenSoundControlConstants.OPEN_SOUND_CONTROL_BYTE_ORDER, log), log);
+            OpenSoundControlConstants.OPEN_SOUND_CONTROL_BYTE_ORDER, log),
+        getSpaceEnvironment().getExecutorService(), getSpaceEnvironment().getTimeProvider(), log);
   }
 }
@@ -25,17 +25,61 @@ import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlIncomingM
 import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlOutgoingMessage;
 import io.smartspaces.service.control.opensoundcontrol.RespondableOpenSoundControlIncomingMessage;
 
+import com.google.common.base.Charsets;
+
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Parser for reading a Open Sound control packet.
  *
+ * <p>
+ * A packet is either a single message or a bundle of messages and further
+ * bundles, all with a time tag. The parsed messages are views onto the packet
+ * data, so the messages in a bundle share the packet and arguments are only
+ * read out of it when asked for.
+ *
  * @author Keith M. Hughes
  */
 public class SmartSpacesOpenSoundControlMessageParser {
 
+  /**
+   * The bytes at the start of a bundle, including the string terminator.
+   */
+  private static final byte[] BUNDLE_IDENTIFIER_BYTES =
+      (OpenSoundControlConstants.OPEN_SOUND_CONTROL_BUNDLE_IDENTIFIER + "\0")
+          .getBytes(Charsets.US_ASCII);
+
+  /**
+   * The position of the first element in a bundle, relative to the start of
+   * the bundle.
+   */
+  private static final int BUNDLE_ELEMENTS_START = BUNDLE_IDENTIFIER_BYTES.length
+      + OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_TIME_TAG;
+
+  /**
+   * Mask for the fractional seconds of a time tag.
+   */
+  private static final long TIME_TAG_FRACTION_MASK = 0xffffffffL;
+
+  /**
+   * Get the Java time for an OSC time tag.
+   *
+   * @param timeTag
+   *          the time tag
+   *
+   * @return the time, in milliseconds since the Java epoch
+   */
+  public static long getTimeTagTime(long timeTag) {
+    long seconds = (timeTag >>> 32)
+        - OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_EPOCH_OFFSET_SECONDS;
+    long milliseconds = ((timeTag & TIME_TAG_FRACTION_MASK) * 1000) >>> 32;
+
+    return seconds * 1000 + milliseconds;
+  }
+
   /**
    * Parse the request data to get the message.
    *
@@ -66,15 +110,212 @@ public class SmartSpacesOpenSoundControlMessageParser {
   public RespondableOpenSoundControlIncomingMessage parseRespondableMessage(
       UdpServerRequest serverRequest) {
     smartspacesRespondableOpenSoundControlIncomingMessage message =
-        new smartspacesRespondableOpenSoundControlIncomingMessage(serverRequest);
+        new smartspacesRespondableOpenSoundControlIncomingMessage(serverRequest, 0,
+            serverRequest.getRequest().length,
+            OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_IMMEDIATE);
     message.parse();
 
     return message;
   }
 
+  /**
+   * Parse a packet which can be a single message or a bundle.
+   *
+   * @param senderAddress
+   *          address of the sender of the packet
+   * @param packetData
+   *          the packet data that has come in
+   *
+   * @return all messages in the packet, in the order they appear
+   */
+  public List<OpenSoundControlIncomingMessage> parsePacket(final InetSocketAddress senderAddress,
+      final byte[] packetData) {
+    List<OpenSoundControlIncomingMessage> messages = new ArrayList<>();
+    parsePacketElement(packetData, 0, packetData.length,
+        OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_IMMEDIATE,
+        new MessageFactory<OpenSoundControlIncomingMessage>() {
+          @Override
+          public smartspacesOpenSoundControlIncomingMessage newMessage(int messageStart,
+              int messageEnd, long timeTag) {
+            return new smartspacesOpenSoundControlIncomingMessage(senderAddress, packetData,
+                messageStart, messageEnd, timeTag);
+          }
+        }, messages);
+
+    return messages;
+  }
+
+  /**
+   * Parse a respondable packet which can be a single message or a bundle.
+   *
+   * @param serverRequest
+   *          the server request
+   *
+   * @return all messages in the packet, in the order they appear
+   */
+  public List<RespondableOpenSoundControlIncomingMessage> parseRespondablePacket(
+      final UdpServerRequest serverRequest) {
+    byte[] packetData = serverRequest.getRequest();
+
+    List<RespondableOpenSoundControlIncomingMessage> messages = new ArrayList<>();
+    parsePacketElement(packetData, 0, packetData.length,
+        OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_IMMEDIATE,
+        new MessageFactory<RespondableOpenSoundControlIncomingMessage>() {
+          @Override
+          public smartspacesRespondableOpenSoundControlIncomingMessage newMessage(
+              int messageStart, int messageEnd, long timeTag) {
+            return new smartspacesRespondableOpenSoundControlIncomingMessage(serverRequest,
+                messageStart, messageEnd, timeTag);
+          }
+        }, messages);
+
+    return messages;
+  }
+
+  /**
+   * Parse an element of a packet, which is either a message or a bundle.
+   *
+   * @param packetData
+   *          the packet data
+   * @param elementStart
+   *          the position in the packet where the element starts
+   * @param elementEnd
+   *          the position in the packet just after the element
+   * @param timeTag
+   *          the time tag of the enclosing bundle
+   * @param messageFactory
+   *          the factory for messages
+   * @param messages
+   *          the list to add the messages to
+   *
+   * @param <M>
+   *          the type of messages
+   */
+  private <M extends OpenSoundControlIncomingMessage> void parsePacketElement(byte[] packetData,
+      int elementStart, int elementEnd, long timeTag, MessageFactory<M> messageFactory,
+      List<M> messages) {
+    if (!isBundle(packetData, elementStart, elementEnd)) {
+      smartspacesOpenSoundControlIncomingMessage message =
+          messageFactory.newMessage(elementStart, elementEnd, timeTag);
+      message.parse();
+
+      @SuppressWarnings("unchecked")
+      M typedMessage = (M) message;
+      messages.add(typedMessage);
+
+      return;
+    }
+
+    long bundleTimeTag = readLong(packetData,
+        elementStart + BUNDLE_IDENTIFIER_BYTES.length);
+
+    int pos = elementStart + BUNDLE_ELEMENTS_START;
+    while (pos < elementEnd) {
+      if (pos + OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_INT32 > elementEnd) {
+        throw new SimpleSmartSpacesException("Truncated Open Sound Control bundle element size");
+      }
+      int size = readInt(packetData, pos);
+      pos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_INT32;
+
+      if (size < 0 || pos + size > elementEnd) {
+        throw new SimpleSmartSpacesException(String.format(
+            "Open Sound Control bundle element of size %d does not fit in the bundle", size));
+      }
+
+      parsePacketElement(packetData, pos, pos + size, bundleTimeTag, messageFactory, messages);
+      pos += size;
+    }
+  }
+
+  /**
+   * Does a packet element start with the bundle identifier?
+   *
+   * @param packetData
+   *          the packet data
+   * @param elementStart
+   *          the position in the packet where the element starts
+   * @param elementEnd
+   *          the position in the packet just after the element
+   *
+   * @return {@code true} if the element is a bundle
+   */
+  private boolean isBundle(byte[] packetData, int elementStart, int elementEnd) {
+    if (elementEnd - elementStart < BUNDLE_ELEMENTS_START) {
+      return false;
+    }
+
+    for (int i = 0; i < BUNDLE_IDENTIFIER_BYTES.length; i++) {
+      if (packetData[elementStart + i] != BUNDLE_IDENTIFIER_BYTES[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Read a big endian int from packet data.
+   *
+   * @param data
+   *          the packet data
+   * @param pos
+   *          the position of the int
+   *
+   * @return the int
+   */
+  static int readInt(byte[] data, int pos) {
+    return ((data[pos] & 0xff) << 24) | ((data[pos + 1] & 0xff) << 16)
+        | ((data[pos + 2] & 0xff) << 8) | (data[pos + 3] & 0xff);
+  }
+
+  /**
+   * Read a big endian long from packet data.
+   *
+   * @param data
+   *          the packet data
+   * @param pos
+   *          the position of the long
+   *
+   * @return the long
+   */
+  static long readLong(byte[] data, int pos) {
+    return ((long) readInt(data, pos) << 32) | (readInt(data, pos + 4) & 0xffffffffL);
+  }
+
+  /**
+   * A factory for the messages in a packet.
+   *
+   * @param <M>
+   *          the type of messages
+   *
+   * @author Keith M. Hughes
+   */
+  private interface MessageFactory<M extends OpenSoundControlIncomingMessage> {
+
+    /**
+     * Create a new, unparsed message.
+     *
+     * @param messageStart
+     *          the position in the packet where the message starts
+     * @param messageEnd
+     *          the position in the packet just after the message
+     * @param timeTag
+     *          the time tag of the bundle the message came in
+     *
+     * @return the message
+     */
+    smartspacesOpenSoundControlIncomingMessage newMessage(int messageStart, int messageEnd,
+        long timeTag);
+  }
+
   /**
    * The Smart Spaces representation of the server packet.
    *
+   * <p>
+   * The message is a view onto the packet data. Arguments are read from the
+   * packet when asked for and are only boxed if all of them are asked for at
+   * once.
+   *
    * @author Keith M. Hughes
    */
   static class smartspacesOpenSoundControlIncomingMessage implements
@@ -85,25 +326,57 @@ public class SmartSpacesOpenSoundControlMessageParser {
      */
     public static final Object[] NO_ARGS = new Object[0];
 
+    /**
+     * The argument positions for the OSC message when the call has no
+     * arguments.
+     */
+    private static final int[] NO_ARGUMENT_POSITIONS = new int[0];
+
     /**
      * The address of the sender.
      */
     private InetSocketAddress senderAddress;
 
     /**
-     * The message data from the incoming packet.
+     * The data from the incoming packet, which can hold more than this message.
      */
     private byte[] messageData;
 
+    /**
+     * The position in the packet data where the message starts.
+     */
+    private int messageStart;
+
+    /**
+     * The position in the packet data just after the message.
+     */
+    private int messageEnd;
+
+    /**
+     * The time tag of the bundle the message came in.
+     */
+    private long timeTag;
+
     /**
      * The OSC packet for this address.
      */
     private String address;
 
     /**
-     * The Open Sound control arguments for the packet.
+     * The position in the packet data of the type tag of the first argument.
      */
-    private Object[] arguments;
+    private int argumentTypesStart;
+
+    /**
+     * The position in the packet data of each argument.
+     */
+    private int[] argumentPositions = NO_ARGUMENT_POSITIONS;
+
+    /**
+     * The boxed Open Sound control arguments for the packet, {@code null}
+     * until asked for.
+     */
+    private volatile Object[] arguments;
 
     /**
      * Current position for parsing.
@@ -120,8 +393,31 @@ public class SmartSpacesOpenSoundControlMessageParser {
      */
     public smartspacesOpenSoundControlIncomingMessage(InetSocketAddress senderAddress,
         byte[] messageData) {
+      this(senderAddress, messageData, 0, messageData.length,
+          OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_IMMEDIATE);
+    }
+
+    /**
+     * Construct a new server packet for part of the packet data.
+     *
+     * @param senderAddress
+     *          the address of the sender
+     * @param messageData
+     *          the packet data
+     * @param messageStart
+     *          the position in the packet data where the message starts
+     * @param messageEnd
+     *          the position in the packet data just after the message
+     * @param timeTag
+     *          the time tag of the bundle the message came in
+     */
+    public smartspacesOpenSoundControlIncomingMessage(InetSocketAddress senderAddress,
+        byte[] messageData, int messageStart, int messageEnd, long timeTag) {
       this.senderAddress = senderAddress;
       this.messageData = messageData;
+      this.messageStart = messageStart;
+      this.messageEnd = messageEnd;
+      this.timeTag = timeTag;
     }
 
     @Override
@@ -134,20 +430,31 @@ public class SmartSpacesOpenSoundControlMessageParser {
       return address;
     }
 
+    @Override
+    public long getTimeTag() {
+      return timeTag;
+    }
+
     @Override
     public int getNumberArguments() {
-      return arguments.length;
+      return argumentPositions.length;
     }
 
     @Override
     public Object[] getArguments() {
-      return arguments;
+      Object[] boxedArguments = arguments;
+      if (boxedArguments == null) {
+        boxedArguments = boxArguments();
+        arguments = boxedArguments;
+      }
+
+      return boxedArguments;
     }
 
     @Override
     public int getIntArgument(int arg) throws SmartSpacesException {
       if (isIntArgument(arg)) {
-        return (Integer) arguments[arg];
+        return readInt(messageData, argumentPositions[arg]);
       } else {
         throw new SimpleSmartSpacesException(String.format(
             "The Open sound Control argument at position %d is not an int", arg));
@@ -157,7 +464,7 @@ public class SmartSpacesOpenSoundControlMessageParser {
     @Override
     public long getLongArgument(int arg) throws SmartSpacesException {
       if (isLongArgument(arg)) {
-        return (Long) arguments[arg];
+        return readLong(messageData, argumentPositions[arg]);
       } else {
         throw new SimpleSmartSpacesException(String.format(
             "The Open sound Control argument at position %d is not a long", arg));
@@ -167,7 +474,7 @@ public class SmartSpacesOpenSoundControlMessageParser {
     @Override
     public float getFloatArgument(int arg) throws SmartSpacesException {
       if (isFloatArgument(arg)) {
-        return (Float) arguments[arg];
+        return Float.intBitsToFloat(readInt(messageData, argumentPositions[arg]));
       } else {
         throw new SimpleSmartSpacesException(String.format(
             "The Open sound Control argument at position %d is not a float", arg));
@@ -177,7 +484,7 @@ public class SmartSpacesOpenSoundControlMessageParser {
     @Override
     public double getDoubleArgument(int arg) throws SmartSpacesException {
       if (isDoubleArgument(arg)) {
-        return (Double) arguments[arg];
+        return Double.longBitsToDouble(readLong(messageData, argumentPositions[arg]));
       } else {
         throw new SimpleSmartSpacesException(String.format(
             "The Open sound Control argument at position %d is not a double", arg));
@@ -187,7 +494,7 @@ public class SmartSpacesOpenSoundControlMessageParser {
     @Override
     public String getStringArgument(int arg) throws SmartSpacesException {
       if (isStringArgument(arg)) {
-        return (String) arguments[arg];
+        return readString(argumentPositions[arg]);
       } else {
         throw new SimpleSmartSpacesException(String.format(
             "The Open sound Control argument at position %d is not a string", arg));
@@ -197,7 +504,7 @@ public class SmartSpacesOpenSoundControlMessageParser {
     @Override
     public byte[] getBlobArgument(int arg) throws SmartSpacesException {
       if (isBlobArgument(arg)) {
-        return (byte[]) arguments[arg];
+        return readBlob(argumentPositions[arg]);
       } else {
         throw new SimpleSmartSpacesException(String.format(
             "The Open sound Control argument at position %d is not a blob", arg));
@@ -206,124 +513,158 @@ public class SmartSpacesOpenSoundControlMessageParser {
 
     @Override
     public boolean isIntArgument(int arg) throws SmartSpacesException {
-      checkArgumentPosition(arg);
-
-      return arguments[arg] instanceof Integer;
+      return getArgumentType(arg) == OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_INT32;
     }
 
     @Override
     public boolean isLongArgument(int arg) throws SmartSpacesException {
-      checkArgumentPosition(arg);
-
-      return arguments[arg] instanceof Long;
+      return getArgumentType(arg) == OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_INT64;
     }
 
     @Override
     public boolean isFloatArgument(int arg) throws SmartSpacesException {
-      checkArgumentPosition(arg);
-
-      return arguments[arg] instanceof Float;
+      return getArgumentType(arg) == OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_FLOAT32;
     }
 
     @Override
     public boolean isDoubleArgument(int arg) throws SmartSpacesException {
-      checkArgumentPosition(arg);
-
-      return arguments[arg] instanceof Double;
+      return getArgumentType(arg) == OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_FLOAT64;
     }
 
     @Override
     public boolean isStringArgument(int arg) throws SmartSpacesException {
-      checkArgumentPosition(arg);
-
-      return arguments[arg] instanceof String;
+      return getArgumentType(arg) == OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_STRING;
     }
 
     @Override
     public boolean isBlobArgument(int arg) throws SmartSpacesException {
-      checkArgumentPosition(arg);
-
-      return arguments[arg] instanceof byte[];
+      return getArgumentType(arg) == OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_BLOB;
     }
 
     @Override
     public String toString() {
       return "smartspacesOpenSoundControlServerPacket [address=" + address + ", arguments="
-          + Arrays.toString(arguments) + "]";
+          + Arrays.toString(getArguments()) + "]";
     }
 
     /**
      * Parse the packet.
+     *
+     * <p>
+     * Only the address and where each argument is are worked out, the
+     * arguments themselves are not read.
      */
     protected void parse() {
+      parsePos = messageStart;
       address = parseString();
 
       parseArguments();
     }
 
     /**
-     * Parse the arguments out of the packet.
+     * Find where the arguments are in the packet.
      */
     private void parseArguments() {
       // See if there are arguments.
-      if (parsePos < messageData.length
+      if (parsePos < messageEnd
           && messageData[parsePos] == OpenSoundControlConstants.OPEN_SOUND_CONTROL_TYPE_STRING_DESIGNATOR) {
         // +1 because we want to start after the comma.
-        int argTypesStart = parsePos + 1;
-        if (argTypesStart < messageData.length) {
-          findStringEnd();
-          int argTypesEnd = parsePos;
-          moveToNextBoundaryFromString();
-          if (argTypesStart < argTypesEnd) {
-            arguments = new Object[argTypesEnd - argTypesStart];
-
-            ByteBuffer buffer =
-                ByteBuffer.wrap(messageData).order(
-                    OpenSoundControlConstants.OPEN_SOUND_CONTROL_BYTE_ORDER);
-
-            int argPos = 0;
-            for (int typePos = argTypesStart; typePos < argTypesEnd; typePos++) {
-              switch (messageData[typePos]) {
-                case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_STRING:
-                  arguments[argPos++] = parseString();
-                  break;
-                case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_INT32:
-                  arguments[argPos++] = buffer.getInt(parsePos);
-                  parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_INT32;
-                  break;
-                case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_INT64:
-                  arguments[argPos++] = buffer.getLong(parsePos);
-                  parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_INT64;
-                  break;
-                case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_FLOAT32:
-                  arguments[argPos++] = buffer.getFloat(parsePos);
-                  parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_FLOAT32;
-                  break;
-                case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_FLOAT64:
-                  arguments[argPos++] = buffer.getFloat(parsePos);
-                  parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_FLOAT64;
-                  break;
-                case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_BLOB:
-                  arguments[argPos++] = parseBlob(buffer);
-                  break;
-                default:
-                  throw new SimpleSmartSpacesException(
-                      String.format("Unsupported Open Sound Control type"));
-              }
+        argumentTypesStart = parsePos + 1;
+        findStringEnd();
+        int argTypesEnd = parsePos;
+        moveToNextBoundaryFromString();
+
+        // Is type, but then packet ends. That's fine.
+        if (argumentTypesStart < argTypesEnd) {
+          argumentPositions = new int[argTypesEnd - argumentTypesStart];
+
+          for (int arg = 0; arg < argumentPositions.length; arg++) {
+            argumentPositions[arg] = parsePos;
+
+            switch (messageData[argumentTypesStart + arg]) {
+              case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_STRING:
+                findStringEnd();
+                moveToNextBoundaryFromString();
+                break;
+              case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_INT32:
+                parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_INT32;
+                break;
+              case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_INT64:
+                parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_INT64;
+                break;
+              case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_FLOAT32:
+                parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_FLOAT32;
+                break;
+              case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_FLOAT64:
+                parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_FLOAT64;
+                break;
+              case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_BLOB:
+                skipBlob();
+                break;
+              default:
+                throw new SimpleSmartSpacesException(
+                    String.format("Unsupported Open Sound Control type"));
             }
-          } else {
-            // Is type, but then packet ends. That's fine.
-            arguments = NO_ARGS;
           }
-        } else {
-          // Is type, but then packet ends. That's fine.
-          arguments = NO_ARGS;
+
+          if (parsePos > messageEnd) {
+            throw new SimpleSmartSpacesException(String.format(
+                "Open Sound Control message for address %s is truncated", address));
+          }
         }
-      } else {
-        arguments = NO_ARGS;
       }
     }
 
+    /**
+     * Box all arguments.
+     *
+     * @return the boxed arguments
+     */
+    private Object[] boxArguments() {
+      if (argumentPositions.length == 0) {
+        return NO_ARGS;
+      }
+
+      Object[] boxedArguments = new Object[argumentPositions.length];
+      for (int arg = 0; arg < boxedArguments.length; arg++) {
+        switch (getArgumentType(arg)) {
+          case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_STRING:
+            boxedArguments[arg] = getStringArgument(arg);
+            break;
+          case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_INT32:
+            boxedArguments[arg] = getIntArgument(arg);
+            break;
+          case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_INT64:
+            boxedArguments[arg] = getLongArgument(arg);
+            break;
+          case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_FLOAT32:
+            boxedArguments[arg] = getFloatArgument(arg);
+            break;
+          case OpenSoundControlConstants.OPEN_SOUND_CONTROL_ARGUMENT_TYPE_FLOAT64:
+            boxedArguments[arg] = getDoubleArgument(arg);
+            break;
+          default:
+            boxedArguments[arg] = getBlobArgument(arg);
+        }
+      }
+
+      return boxedArguments;
+    }
+
+    /**
+     * Get the type tag of an argument.
+     *
+     * @param arg
+     *          the argument position
+     *
+     * @return the type tag
+     */
+    private byte getArgumentType(int arg) {
+      checkArgumentPosition(arg);
+
+      return messageData[argumentTypesStart + arg];
+    }
+
     /**
      * Get a string out of the OSC packet starting at the current parsing
      * position.
@@ -339,19 +680,36 @@ public class SmartSpacesOpenSoundControlMessageParser {
 
       findStringEnd();
 
-      String string = new String(messageData, startPos, parsePos - startPos);
+      String string = new String(messageData, startPos, parsePos - startPos, Charsets.UTF_8);
 
       moveToNextBoundaryFromString();
 
       return string;
     }
 
+    /**
+     * Read a string argument.
+     *
+     * @param pos
+     *          the position of the string in the packet
+     *
+     * @return the string
+     */
+    private String readString(int pos) {
+      int end = pos;
+      while (end < messageEnd && messageData[end] != 0) {
+        end++;
+      }
+
+      return new String(messageData, pos, end - pos, Charsets.UTF_8);
+    }
+
     /**
      * Find the end of a string. {@code parsePos} will be left at the 0
      * terminator.
      */
     private void findStringEnd() {
-      while (parsePos < messageData.length && messageData[parsePos] != 0) {
+      while (parsePos < messageEnd && messageData[parsePos] != 0) {
         parsePos++;
       }
     }
@@ -366,30 +724,37 @@ public class SmartSpacesOpenSoundControlMessageParser {
     }
 
     /**
-     * Get a blob out of the OSC packet starting at the current parsing
+     * Skip over a blob in the OSC packet starting at the current parsing
      * position.
      *
      * <p>
      * The parsing position will end up where the next part of the packet will
      * start.
-     *
-     * @param buffer
-     *          the buffer for translating data
-     *
-     * @return the string
      */
-    private byte[] parseBlob(ByteBuffer buffer) {
-      int length = buffer.getInt(parsePos);
-      parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_INT32;
-
-      byte[] blob = new byte[length];
-      System.arraycopy(messageData, parsePos, blob, 0, length);
-      parsePos += length;
+    private void skipBlob() {
+      int length = readInt(messageData, parsePos);
+      parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_INT32 + length;
 
       int byteBoundaryPos = parsePos % OpenSoundControlConstants.OPEN_SOUND_CONTROL_BYTE_BOUNDARY;
       if (byteBoundaryPos != 0) {
         parsePos += OpenSoundControlConstants.OPEN_SOUND_CONTROL_BYTE_BOUNDARY - byteBoundaryPos;
       }
+    }
+
+    /**
+     * Read a blob argument.
+     *
+     * @param pos
+     *          the position of the blob in the packet
+     *
+     * @return a copy of the blob
+     */
+    private byte[] readBlob(int pos) {
+      int length = readInt(messageData, pos);
+
+      byte[] blob = new byte[length];
+      System.arraycopy(messageData,
+          pos + OpenSoundControlConstants.OPEN_SOUND_CONTROL_NUMBER_BYTES_INT32, blob, 0, length);
 
       return blob;
     }
@@ -402,12 +767,12 @@ public class SmartSpacesOpenSoundControlMessageParser {
      *          the argument to check
      */
     private void checkArgumentPosition(int arg) {
-      if (arg < 0 || arg >= arguments.length) {
+      if (arg < 0 || arg >= argumentPositions.length) {
         throw new SimpleSmartSpacesException(
             String
                 .format(
                     "Argument out of range for Open Sound Control packets, position is %d, number arguments is %d",
-                    arg, arguments.length));
+                    arg, argumentPositions.length));
       }
     }
   }
@@ -432,10 +797,17 @@ public class SmartSpacesOpenSoundControlMessageParser {
      *
      * @param serverRequest
      *          the server request that generated this message
+     * @param messageStart
+     *          the position in the request data where the message starts
+     * @param messageEnd
+     *          the position in the request data just after the message
+     * @param timeTag
+     *          the time tag of the bundle the message came in
      */
     public smartspacesRespondableOpenSoundControlIncomingMessage(
-        UdpServerRequest serverRequest) {
-      super(serverRequest.getRemoteAddress(), serverRequest.getRequest());
+        UdpServerRequest serverRequest, int messageStart, int messageEnd, long timeTag) {
+      super(serverRequest.getRemoteAddress(), serverRequest.getRequest(), messageStart,
+          messageEnd, timeTag);
 
       this.serverRequest = serverRequest;
     }
@@ -24,6 +24,9 @@ import io.smartspaces.service.comm.network.server.UdpServerRequest;
 import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlServerCommunicationEndpoint;
 import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlServerRequestMethod;
 import io.smartspaces.service.control.opensoundcontrol.RespondableOpenSoundControlIncomingMessage;
+import io.smartspaces.time.provider.TimeProvider;
+
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * A Open Sound Control server endpoint implementation by those crazy folks at
@@ -56,7 +59,7 @@ public class SmartSpacesOpenSoundControlServerCommunicationEndpoint implements
   private final ExtendedLog log;
 
   /**
-   * Construct a new endpoint.
+   * Construct a new endpoint which handles all bundled messages immediately.
    *
    * @param udpServer
    *          the UDP server endpoint
@@ -65,6 +68,26 @@ public class SmartSpacesOpenSoundControlServerCommunicationEndpoint implements
    */
   public SmartSpacesOpenSoundControlServerCommunicationEndpoint(
       UdpServerNetworkCommunicationEndpoint udpServer, ExtendedLog log) {
+    this(udpServer, null, null, log);
+  }
+
+  /**
+   * Construct a new endpoint.
+   *
+   * @param udpServer
+   *          the UDP server endpoint
+   * @param executorService
+   *          the executor service for bundled messages with a future time tag,
+   *          can be {@code null} to handle them immediately
+   * @param timeProvider
+   *          the time provider for bundle time tags, can be {@code null} if
+   *          there is no executor service
+   * @param log
+   *          the logger
+   */
+  public SmartSpacesOpenSoundControlServerCommunicationEndpoint(
+      UdpServerNetworkCommunicationEndpoint udpServer, ScheduledExecutorService executorService,
+      TimeProvider timeProvider, ExtendedLog log) {
     this.udpServer = udpServer;
     this.log = log;
 
@@ -77,8 +100,8 @@ public class SmartSpacesOpenSoundControlServerCommunicationEndpoint implements
       }
     });
 
-    dispatcher =
-        new OpenSoundControlMethodDispatcher<RespondableOpenSoundControlIncomingMessage>(log);
+    dispatcher = new OpenSoundControlMethodDispatcher<RespondableOpenSoundControlIncomingMessage>(
+        executorService, timeProvider, log);
   }
 
   @Override
@@ -118,6 +141,11 @@ public class SmartSpacesOpenSoundControlServerCommunicationEndpoint implements
     dispatcher.removeUnknownMessageMethod(method);
   }
 
+  @Override
+  public void setMaxTimeTagDelay(long maxTimeTagDelay) {
+    dispatcher.setMaxTimeTagDelay(maxTimeTagDelay);
+  }
+
   @Override
   public String toString() {
     return "SmartSpacesOpenSoundControlServerCommunicationEndpoint [serverPort="
@@ -132,7 +160,10 @@ public class SmartSpacesOpenSoundControlServerCommunicationEndpoint implements
    */
   private void handleServerRequest(UdpServerRequest serverRequest) {
     try {
-      dispatcher.handleIncomingMessage(messageParser.parseRespondableMessage(serverRequest));
+      for (RespondableOpenSoundControlIncomingMessage message : messageParser
+          .parseRespondablePacket(serverRequest)) {
+        dispatcher.handleIncomingMessage(message);
+      }
     } catch (Throwable e) {
       log.error("Error while handling incoming Open Sound Control message", e);
     }
@@ -46,6 +46,7 @@ public class SmartSpacesOpenSoundControlServerCommunicationEndpointService exten
 
     return new SmartSpacesOpenSoundControlServerCommunicationEndpoint(
         serverService.newServer(localPort, OpenSoundControlConstants.OPEN_SOUND_CONTROL_BYTE_ORDER,
-            log), log);
+            log), getSpaceEnvironment().getExecutorService(),
+        getSpaceEnvironment().getTimeProvider(), log);
   }
 }
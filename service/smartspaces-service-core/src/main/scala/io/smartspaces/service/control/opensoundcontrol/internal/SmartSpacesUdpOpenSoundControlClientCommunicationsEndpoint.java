@@ -18,6 +18,7 @@
 package io.smartspaces.service.control.opensoundcontrol.internal;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.ScheduledExecutorService;
 
 import io.smartspaces.SimpleSmartSpacesException;
 import io.smartspaces.logging.ExtendedLog;
@@ -28,6 +29,7 @@ import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlClientRes
 import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlConstants;
 import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlIncomingMessage;
 import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlOutgoingMessage;
+import io.smartspaces.time.provider.TimeProvider;
 
 /**
  * A Smart Spaces implementation of an
@@ -65,7 +67,7 @@ public class SmartSpacesUdpOpenSoundControlClientCommunicationsEndpoint implemen
   private ExtendedLog log;
 
   /**
-   * Construct a new client.
+   * Construct a new client which handles all bundled responses immediately.
    *
    * @param remoteAddress
    *          the remote address to be contacted
@@ -77,6 +79,28 @@ public class SmartSpacesUdpOpenSoundControlClientCommunicationsEndpoint implemen
   public SmartSpacesUdpOpenSoundControlClientCommunicationsEndpoint(
       InetSocketAddress remoteAddress, UdpClientNetworkCommunicationEndpoint udpClientEndpoint,
       ExtendedLog log) {
+    this(remoteAddress, udpClientEndpoint, null, null, log);
+  }
+
+  /**
+   * Construct a new client.
+   *
+   * @param remoteAddress
+   *          the remote address to be contacted
+   * @param udpClientEndpoint
+   *          the UDP client endpoint
+   * @param executorService
+   *          the executor service for bundled responses with a future time
+   *          tag, can be {@code null} to handle them immediately
+   * @param timeProvider
+   *          the time provider for bundle time tags, can be {@code null} if
+   *          there is no executor service
+   * @param log
+   *          the logger
+   */
+  public SmartSpacesUdpOpenSoundControlClientCommunicationsEndpoint(
+      InetSocketAddress remoteAddress, UdpClientNetworkCommunicationEndpoint udpClientEndpoint,
+      ScheduledExecutorService executorService, TimeProvider timeProvider, ExtendedLog log) {
     this.remoteAddress = remoteAddress;
     this.udpClientEndpoint = udpClientEndpoint;
     this.log = log;
@@ -89,7 +113,8 @@ public class SmartSpacesUdpOpenSoundControlClientCommunicationsEndpoint implemen
       }
     });
 
-    dispatcher = new OpenSoundControlMethodDispatcher<OpenSoundControlIncomingMessage>(log);
+    dispatcher = new OpenSoundControlMethodDispatcher<OpenSoundControlIncomingMessage>(
+        executorService, timeProvider, log);
   }
 
   @Override
@@ -209,6 +234,11 @@ public class SmartSpacesUdpOpenSoundControlClientCommunicationsEndpoint implemen
     dispatcher.removeUnknownMessageMethod(method);
   }
 
+  @Override
+  public void setMaxTimeTagDelay(long maxTimeTagDelay) {
+    dispatcher.setMaxTimeTagDelay(maxTimeTagDelay);
+  }
+
   @Override
   public String toString() {
     return "SmartSpacesUdpOpenSoundControlClientCommunicationsEndpoint [remoteHost="
@@ -226,7 +256,10 @@ public class SmartSpacesUdpOpenSoundControlClientCommunicationsEndpoint implemen
   private void handleIncomingOpenSoundControlMessage(InetSocketAddress senderAddress,
       byte[] response) {
     try {
-      dispatcher.handleIncomingMessage(messageParser.parseMessage(senderAddress, response));
+      for (OpenSoundControlIncomingMessage message : messageParser.parsePacket(senderAddress,
+          response)) {
+        dispatcher.handleIncomingMessage(message);
+      }
     } catch (Throwable e) {
       log.error("Error while handling incoming Open Sound Control message", e);
     }
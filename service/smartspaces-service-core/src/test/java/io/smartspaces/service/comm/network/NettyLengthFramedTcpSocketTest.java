@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.impl.Jdk14Logger;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.smartspaces.SmartSpacesException;
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.logging.StandardExtendedLog;
+import io.smartspaces.service.comm.network.client.BaseTcpClientNetworkCommunicationEndpointListener;
+import io.smartspaces.service.comm.network.client.TcpClientNetworkCommunicationEndpoint;
+import io.smartspaces.service.comm.network.client.internal.netty.NettyTcpClientNetworkCommunicationEndpointService;
+import io.smartspaces.service.comm.network.server.BaseTcpServerNetworkCommunicationEndpointListener;
+import io.smartspaces.service.comm.network.server.TcpServerNetworkCommunicationEndpoint;
+import io.smartspaces.service.comm.network.server.TcpServerRequest;
+import io.smartspaces.service.comm.network.server.internal.netty.NettyTcpServerNetworkCommunicationEndpointService;
+import io.smartspaces.system.SimpleSmartSpacesEnvironment;
+
+/**
+ * A test for the Netty length framed TCP client and server.
+ *
+ * @author Keith M. Hughes
+ */
+public class NettyLengthFramedTcpSocketTest {
+
+  private ExtendedLog log;
+  private ScheduledExecutorService threadPool;
+  private NettyTcpClientNetworkCommunicationEndpointService clientService;
+  private NettyTcpServerNetworkCommunicationEndpointService serverService;
+
+  @Before
+  public void setup() {
+    log = new StandardExtendedLog("goober", new Jdk14Logger("goober"));
+
+    threadPool = Executors.newScheduledThreadPool(100);
+
+    SimpleSmartSpacesEnvironment spaceEnvironment = new SimpleSmartSpacesEnvironment();
+    spaceEnvironment.setExecutorService(threadPool);
+
+    clientService = new NettyTcpClientNetworkCommunicationEndpointService();
+    clientService.setSpaceEnvironment(spaceEnvironment);
+    clientService.startup();
+
+    serverService = new NettyTcpServerNetworkCommunicationEndpointService();
+    serverService.setSpaceEnvironment(spaceEnvironment);
+    serverService.startup();
+  }
+
+  @After
+  public void cleanup() {
+    clientService.shutdown();
+    serverService.shutdown();
+    threadPool.shutdown();
+  }
+
+  /**
+   * Test a batch of byte array messages from a client to a channel buffer
+   * server and back, using a 2 byte length header, direct buffers, and write
+   * batching.
+   *
+   * @throws Exception
+   *           something bad
+   */
+  @Test
+  public void testBatchedRoundTrip() throws Exception {
+    int serverPort = 8098;
+    int lengthHeaderSize = 2;
+    int maxMessageLength = 1024;
+
+    final List<byte[]> expectedMessages =
+        Arrays.asList(new byte[] { 1, 2, 3 }, new byte[0], new byte[] { 4 }, new byte[500]);
+
+    final CountDownLatch clientReceiveLatch = new CountDownLatch(expectedMessages.size());
+    final List<byte[]> actualMessages = Collections.synchronizedList(new ArrayList<byte[]>());
+
+    TcpServerNetworkCommunicationEndpoint<ChannelBuffer> serverEndpoint = serverService
+        .newChannelBufferServer(lengthHeaderSize, maxMessageLength, serverPort, log);
+    serverEndpoint.setDirectBuffers(true);
+    serverEndpoint.setWriteBatching(true);
+
+    TcpClientNetworkCommunicationEndpoint<byte[]> clientEndpoint = clientService
+        .newByteArrayClient(lengthHeaderSize, maxMessageLength, "127.0.0.1", serverPort, log);
+    clientEndpoint.setWriteBatching(true);
+
+    try {
+      serverEndpoint
+          .addListener(new BaseTcpServerNetworkCommunicationEndpointListener<ChannelBuffer>() {
+            @Override
+            public void onTcpRequest(TcpServerNetworkCommunicationEndpoint<ChannelBuffer> endpoint,
+                TcpServerRequest<ChannelBuffer> request) {
+              request.sendMessage(request.getMessage());
+            }
+          });
+      serverEndpoint.startup();
+
+      clientEndpoint.addListener(new BaseTcpClientNetworkCommunicationEndpointListener<byte[]>() {
+        @Override
+        public void onNewTcpClientMessage(TcpClientNetworkCommunicationEndpoint<byte[]> endpoint,
+            byte[] message) {
+          actualMessages.add(message);
+          clientReceiveLatch.countDown();
+        }
+      });
+      clientEndpoint.startup();
+
+      clientEndpoint.sendMessages(expectedMessages);
+
+      Assert.assertTrue(clientReceiveLatch.await(5, TimeUnit.SECONDS));
+    } finally {
+      clientEndpoint.shutdown();
+      serverEndpoint.shutdown();
+    }
+
+    Assert.assertEquals(expectedMessages.size(), actualMessages.size());
+    for (int i = 0; i < expectedMessages.size(); i++) {
+      Assert.assertArrayEquals(expectedMessages.get(i), actualMessages.get(i));
+    }
+  }
+
+  /**
+   * Test that a length header size which cannot be framed is rejected.
+   */
+  @Test(expected = SmartSpacesException.class)
+  public void testBadLengthHeaderSize() {
+    serverService.newByteArrayServer(5, 1024, 8097, log);
+  }
+}
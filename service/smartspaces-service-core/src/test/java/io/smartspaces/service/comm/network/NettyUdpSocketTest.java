@@ -18,6 +18,10 @@
 package io.smartspaces.service.comm.network;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -146,4 +150,59 @@ public class NettyUdpSocketTest {
     Assert.assertArrayEquals(serverResponseExpectedData, serverResponseActualData.get());
   }
 
+  /**
+   * Test a batch of datagrams larger than the default buffer size from a UDP
+   * client to a UDP server.
+   *
+   * @throws Exception
+   *           something bad
+   */
+  @Test
+  public void testUdpBatchSend() throws Exception {
+    int serverPort = 8096;
+    int maxDatagramSize = 4096;
+
+    byte[] largeDatagram = new byte[3000];
+    largeDatagram[2999] = 42;
+    List<byte[]> expectedDatagrams =
+        Arrays.asList(new byte[] { 1, 2, 3 }, largeDatagram, new byte[] { 4 });
+
+    final CountDownLatch serverReceiveLatch = new CountDownLatch(expectedDatagrams.size());
+    final List<byte[]> actualDatagrams = Collections.synchronizedList(new ArrayList<byte[]>());
+
+    UdpServerNetworkCommunicationEndpoint serverEndpoint = serverService.newServer(serverPort, log);
+    serverEndpoint.setMaxDatagramSize(maxDatagramSize);
+    serverEndpoint.setReceiveBufferSize(256 * 1024);
+
+    UdpClientNetworkCommunicationEndpoint clientEndpoint = clientService.newClient(log);
+
+    try {
+      serverEndpoint.addListener(new UdpServerNetworkCommunicationEndpointListener() {
+
+        @Override
+        public void onUdpRequest(UdpServerNetworkCommunicationEndpoint endpoint,
+            UdpServerRequest request) {
+          actualDatagrams.add(request.getRequest());
+
+          serverReceiveLatch.countDown();
+        }
+      });
+      serverEndpoint.startup();
+      clientEndpoint.startup();
+
+      clientEndpoint.sendMessages(new InetSocketAddress("127.0.0.1", serverPort),
+          expectedDatagrams);
+
+      Assert.assertTrue(serverReceiveLatch.await(5, TimeUnit.SECONDS));
+    } finally {
+      clientEndpoint.shutdown();
+      serverEndpoint.shutdown();
+    }
+
+    // Datagrams on the loopback are not reordered.
+    Assert.assertEquals(expectedDatagrams.size(), actualDatagrams.size());
+    for (int i = 0; i < expectedDatagrams.size(); i++) {
+      Assert.assertArrayEquals(expectedDatagrams.get(i), actualDatagrams.get(i));
+    }
+  }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.comm.serial.xbee.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link EscapedXBeeFrameDecoder}.
+ *
+ * @author Keith M. Hughes
+ */
+public class EscapedXBeeFrameDecoderTest {
+
+  private List<byte[]> frames;
+
+  private EscapedXBeeFrameDecoder decoder;
+
+  @Before
+  public void setup() {
+    frames = new ArrayList<>();
+    decoder = new EscapedXBeeFrameDecoder(new EscapedXBeeFrameDecoder.DecodedFrameHandler() {
+      @Override
+      public void onDecodedFrame(byte[] frame) {
+        frames.add(frame);
+      }
+    });
+  }
+
+  /**
+   * A complete frame in a single buffer is decoded.
+   */
+  @Test
+  public void testSingleFrame() {
+    decode(0x7e, 0x00, 0x02, 0x8b, 0x01, 0x73);
+
+    Assert.assertEquals(1, frames.size());
+    Assert.assertArrayEquals(bytes(0x8b, 0x01, 0x73), frames.get(0));
+  }
+
+  /**
+   * Escaped bytes are unescaped and a frame split across buffers is
+   * reassembled.
+   */
+  @Test
+  public void testEscapedSplitFrame() {
+    // Frame data is 0x90 0x7e, checksum is 0xff - (0x90 + 0x7e) & 0xff = 0xf1.
+    decode(0x00, 0x7e, 0x00, 0x02, 0x90);
+    decode(0x7d);
+    decode(0x5e, 0xf1);
+
+    Assert.assertEquals(1, frames.size());
+    Assert.assertArrayEquals(bytes(0x90, 0x7e, 0xf1), frames.get(0));
+  }
+
+  /**
+   * A frame with a bad checksum is dropped and the next frame still decodes.
+   */
+  @Test
+  public void testBadChecksum() {
+    decode(0x7e, 0x00, 0x02, 0x8b, 0x01, 0x00, 0x7e, 0x00, 0x02, 0x8b, 0x01, 0x73);
+
+    Assert.assertEquals(1, frames.size());
+    Assert.assertEquals(1, decoder.getChecksumErrorCount());
+  }
+
+  /**
+   * A frame start in the middle of a frame restarts decoding.
+   */
+  @Test
+  public void testTruncatedFrame() {
+    decode(0x7e, 0x00, 0x05, 0x8b, 0x7e, 0x00, 0x02, 0x8b, 0x01, 0x73);
+
+    Assert.assertEquals(1, frames.size());
+    Assert.assertArrayEquals(bytes(0x8b, 0x01, 0x73), frames.get(0));
+  }
+
+  /**
+   * A decoded frame can be read by the frame reader.
+   */
+  @Test
+  public void testDecodedFrameReader() throws Exception {
+    decode(0x7e, 0x00, 0x02, 0x8b, 0x01, 0x73);
+
+    DecodedXBeeFrameReader reader = new DecodedXBeeFrameReader(frames.get(0));
+    Assert.assertEquals(2, reader.readPacketLength());
+    Assert.assertEquals(0x8b, reader.readByte());
+    Assert.assertEquals(0x01, reader.readByte());
+    Assert.assertEquals(0x73, reader.readByte());
+  }
+
+  private void decode(int... values) {
+    byte[] buffer = bytes(values);
+    decoder.decode(buffer, 0, buffer.length);
+  }
+
+  private byte[] bytes(int... values) {
+    byte[] buffer = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      buffer[i] = (byte) values[i];
+    }
+
+    return buffer;
+  }
+}
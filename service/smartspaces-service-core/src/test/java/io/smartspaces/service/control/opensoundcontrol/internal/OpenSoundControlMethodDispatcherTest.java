@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.control.opensoundcontrol.internal;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlConstants;
+import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlIncomingMessage;
+import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlMethod;
+import io.smartspaces.time.provider.TimeProvider;
+
+/**
+ * Tests for the Open Sound Control method dispatcher.
+ *
+ * @author Keith M. Hughes
+ */
+public class OpenSoundControlMethodDispatcherTest {
+
+  private ExtendedLog log;
+  private OpenSoundControlMethodDispatcher<OpenSoundControlIncomingMessage> dispatcher;
+
+  private OpenSoundControlMethod<OpenSoundControlIncomingMessage> fooBarMethod;
+  private OpenSoundControlMethod<OpenSoundControlIncomingMessage> fooBazMethod;
+  private OpenSoundControlMethod<OpenSoundControlIncomingMessage> otherMethod;
+  private OpenSoundControlMethod<OpenSoundControlIncomingMessage> unknownMethod;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    log = Mockito.mock(ExtendedLog.class);
+    dispatcher = new OpenSoundControlMethodDispatcher<>(log);
+
+    fooBarMethod = Mockito.mock(OpenSoundControlMethod.class);
+    fooBazMethod = Mockito.mock(OpenSoundControlMethod.class);
+    otherMethod = Mockito.mock(OpenSoundControlMethod.class);
+    unknownMethod = Mockito.mock(OpenSoundControlMethod.class);
+
+    dispatcher.addMethod("/foo/bar", fooBarMethod);
+    dispatcher.addMethod("/foo/baz", fooBazMethod);
+    dispatcher.addMethod("/other/bar", otherMethod);
+    dispatcher.addUnknownMessageMethod(unknownMethod);
+  }
+
+  /**
+   * Test that a literal address only goes to its own methods.
+   */
+  @Test
+  public void testLiteralAddress() {
+    OpenSoundControlIncomingMessage message = newMessage("/foo/bar", 0);
+    dispatcher.handleIncomingMessage(message);
+
+    Mockito.verify(fooBarMethod).invoke(message);
+    Mockito.verifyZeroInteractions(fooBazMethod, otherMethod, unknownMethod);
+  }
+
+  /**
+   * Test that address patterns go to all matching methods.
+   */
+  @Test
+  public void testAddressPatterns() {
+    OpenSoundControlIncomingMessage message = newMessage("/foo/ba?", 0);
+    dispatcher.handleIncomingMessage(message);
+    Mockito.verify(fooBarMethod).invoke(message);
+    Mockito.verify(fooBazMethod).invoke(message);
+
+    message = newMessage("/*/bar", 0);
+    dispatcher.handleIncomingMessage(message);
+    Mockito.verify(fooBarMethod).invoke(message);
+    Mockito.verify(otherMethod).invoke(message);
+
+    message = newMessage("/foo/{baz,qux}", 0);
+    dispatcher.handleIncomingMessage(message);
+    Mockito.verify(fooBazMethod).invoke(message);
+
+    message = newMessage("/foo/ba[!r]", 0);
+    dispatcher.handleIncomingMessage(message);
+    Mockito.verify(fooBazMethod).invoke(message);
+
+    Mockito.verifyZeroInteractions(unknownMethod);
+  }
+
+  /**
+   * Test that messages with no methods go to the unknown message methods.
+   */
+  @Test
+  public void testUnknownAddress() {
+    OpenSoundControlIncomingMessage literalMessage = newMessage("/foo/qux", 0);
+    dispatcher.handleIncomingMessage(literalMessage);
+
+    OpenSoundControlIncomingMessage patternMessage = newMessage("/foo/q*", 0);
+    dispatcher.handleIncomingMessage(patternMessage);
+
+    Mockito.verify(unknownMethod).invoke(literalMessage);
+    Mockito.verify(unknownMethod).invoke(patternMessage);
+    Mockito.verifyZeroInteractions(fooBarMethod, fooBazMethod, otherMethod);
+  }
+
+  /**
+   * Test that a removed method no longer gets messages.
+   */
+  @Test
+  public void testRemoveMethod() {
+    dispatcher.removeMethod("/foo/bar", fooBarMethod);
+
+    OpenSoundControlIncomingMessage message = newMessage("/foo/*", 0);
+    dispatcher.handleIncomingMessage(message);
+
+    Mockito.verify(fooBazMethod).invoke(message);
+    Mockito.verifyZeroInteractions(fooBarMethod);
+  }
+
+  /**
+   * Test that a message with a future time tag is scheduled and one with a past
+   * time tag is handled immediately.
+   */
+  @Test
+  public void testTimeTags() {
+    ScheduledExecutorService executorService = Mockito.mock(ScheduledExecutorService.class);
+    TimeProvider timeProvider = Mockito.mock(TimeProvider.class);
+    Mockito.when(timeProvider.getCurrentTime()).thenReturn(10000L);
+
+    dispatcher = new OpenSoundControlMethodDispatcher<>(executorService, timeProvider, log);
+    dispatcher.addMethod("/foo/bar", fooBarMethod);
+
+    OpenSoundControlIncomingMessage futureMessage =
+        newMessage("/foo/bar", newTimeTag(10) | 0x80000000L);
+    dispatcher.handleIncomingMessage(futureMessage);
+    Mockito.verify(executorService).schedule(Mockito.any(Runnable.class), Mockito.eq(500L),
+        Mockito.eq(TimeUnit.MILLISECONDS));
+    Mockito.verifyZeroInteractions(fooBarMethod);
+
+    OpenSoundControlIncomingMessage pastMessage = newMessage("/foo/bar", newTimeTag(9));
+    dispatcher.handleIncomingMessage(pastMessage);
+    Mockito.verify(fooBarMethod).invoke(pastMessage);
+  }
+
+  /**
+   * Test that a message with a time tag further in the future than the maximum
+   * delay is dropped, and is held once the maximum is raised.
+   */
+  @Test
+  public void testTimeTagsTooFarAhead() {
+    ScheduledExecutorService executorService = Mockito.mock(ScheduledExecutorService.class);
+    TimeProvider timeProvider = Mockito.mock(TimeProvider.class);
+    Mockito.when(timeProvider.getCurrentTime()).thenReturn(10000L);
+
+    dispatcher = new OpenSoundControlMethodDispatcher<>(executorService, timeProvider, log);
+    dispatcher.addMethod("/foo/bar", fooBarMethod);
+
+    OpenSoundControlIncomingMessage farMessage = newMessage("/foo/bar", newTimeTag(100));
+    dispatcher.handleIncomingMessage(farMessage);
+    Mockito.verifyZeroInteractions(executorService, fooBarMethod);
+
+    dispatcher.setMaxTimeTagDelay(100000);
+    dispatcher.handleIncomingMessage(farMessage);
+    Mockito.verify(executorService).schedule(Mockito.any(Runnable.class), Mockito.eq(90000L),
+        Mockito.eq(TimeUnit.MILLISECONDS));
+    Mockito.verifyZeroInteractions(fooBarMethod);
+  }
+
+  /**
+   * Get the time tag for a number of whole seconds after the Java epoch.
+   *
+   * @param seconds
+   *          the number of seconds
+   *
+   * @return the time tag
+   */
+  private long newTimeTag(long seconds) {
+    return (OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_EPOCH_OFFSET_SECONDS + seconds) << 32;
+  }
+
+  /**
+   * Create a new message with no arguments.
+   *
+   * @param address
+   *          the address of the message
+   * @param timeTag
+   *          the time tag of the message, 0 for none
+   *
+   * @return the message
+   */
+  private OpenSoundControlIncomingMessage newMessage(String address, long timeTag) {
+    OpenSoundControlIncomingMessage message = Mockito.mock(OpenSoundControlIncomingMessage.class);
+    Mockito.when(message.getAddress()).thenReturn(address);
+    Mockito.when(message.getTimeTag()).thenReturn(
+        timeTag != 0 ? timeTag : OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_IMMEDIATE);
+
+    return message;
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.control.opensoundcontrol.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+import io.smartspaces.SmartSpacesException;
+import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlConstants;
+import io.smartspaces.service.control.opensoundcontrol.OpenSoundControlIncomingMessage;
+
+/**
+ * Tests for the Smart Spaces Open Sound Control message parser.
+ *
+ * @author Keith M. Hughes
+ */
+public class SmartSpacesOpenSoundControlMessageParserTest {
+
+  private InetSocketAddress senderAddress;
+  private SmartSpacesOpenSoundControlMessageParser parser;
+
+  @Before
+  public void setup() {
+    senderAddress = new InetSocketAddress("localhost", 8000);
+    parser = new SmartSpacesOpenSoundControlMessageParser();
+  }
+
+  /**
+   * Test that all argument types can be read without boxing and are boxed
+   * correctly.
+   */
+  @Test
+  public void testArguments() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeString(out, "/foo/bar");
+    writeString(out, ",ihfdsb");
+    out.write(ByteBuffer.allocate(4).putInt(42).array());
+    out.write(ByteBuffer.allocate(8).putLong(1234567890123L).array());
+    out.write(ByteBuffer.allocate(4).putFloat(1.5f).array());
+    out.write(ByteBuffer.allocate(8).putDouble(2.25).array());
+    writeString(out, "hello");
+    out.write(ByteBuffer.allocate(4).putInt(3).array());
+    out.write(new byte[] { 1, 2, 3, 0 });
+
+    OpenSoundControlIncomingMessage message =
+        parser.parseMessage(senderAddress, out.toByteArray());
+
+    Assert.assertEquals("/foo/bar", message.getAddress());
+    Assert.assertEquals(6, message.getNumberArguments());
+    Assert.assertEquals(OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_IMMEDIATE,
+        message.getTimeTag());
+
+    Assert.assertEquals(42, message.getIntArgument(0));
+    Assert.assertEquals(1234567890123L, message.getLongArgument(1));
+    Assert.assertEquals(1.5f, message.getFloatArgument(2), 0.0f);
+    Assert.assertEquals(2.25, message.getDoubleArgument(3), 0.0);
+    Assert.assertEquals("hello", message.getStringArgument(4));
+    Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, message.getBlobArgument(5));
+
+    Object[] arguments = message.getArguments();
+    Assert.assertEquals(42, arguments[0]);
+    Assert.assertEquals(1234567890123L, arguments[1]);
+    Assert.assertEquals(1.5f, arguments[2]);
+    Assert.assertEquals(2.25, arguments[3]);
+    Assert.assertEquals("hello", arguments[4]);
+    Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) arguments[5]);
+  }
+
+  /**
+   * Test that asking for an argument as the wrong type fails.
+   */
+  @Test(expected = SmartSpacesException.class)
+  public void testWrongArgumentType() throws Exception {
+    OpenSoundControlIncomingMessage message =
+        parser.parseMessage(senderAddress, newIntMessage("/foo", 1));
+
+    message.getFloatArgument(0);
+  }
+
+  /**
+   * Test that a plain message is a packet of one message.
+   */
+  @Test
+  public void testPacketWithoutBundle() throws Exception {
+    List<OpenSoundControlIncomingMessage> messages =
+        parser.parsePacket(senderAddress, newIntMessage("/foo", 1));
+
+    Assert.assertEquals(1, messages.size());
+    Assert.assertEquals("/foo", messages.get(0).getAddress());
+    Assert.assertEquals(1, messages.get(0).getIntArgument(0));
+  }
+
+  /**
+   * Test that nested bundles give all their messages in order with the time
+   * tag of the bundle each came in.
+   */
+  @Test
+  public void testNestedBundles() throws Exception {
+    long outerTimeTag = 0x0000000100000000L;
+    long innerTimeTag = 0x0000000200000000L;
+
+    byte[] innerBundle = newBundle(innerTimeTag, newIntMessage("/inner", 2));
+    byte[] packet =
+        newBundle(outerTimeTag, newIntMessage("/first", 1), innerBundle,
+            newIntMessage("/last", 3));
+
+    List<OpenSoundControlIncomingMessage> messages = parser.parsePacket(senderAddress, packet);
+
+    Assert.assertEquals(3, messages.size());
+
+    Assert.assertEquals("/first", messages.get(0).getAddress());
+    Assert.assertEquals(1, messages.get(0).getIntArgument(0));
+    Assert.assertEquals(outerTimeTag, messages.get(0).getTimeTag());
+
+    Assert.assertEquals("/inner", messages.get(1).getAddress());
+    Assert.assertEquals(2, messages.get(1).getIntArgument(0));
+    Assert.assertEquals(innerTimeTag, messages.get(1).getTimeTag());
+
+    Assert.assertEquals("/last", messages.get(2).getAddress());
+    Assert.assertEquals(3, messages.get(2).getIntArgument(0));
+    Assert.assertEquals(outerTimeTag, messages.get(2).getTimeTag());
+  }
+
+  /**
+   * Test that a bundle element which runs past the end of the bundle is
+   * rejected.
+   */
+  @Test(expected = SmartSpacesException.class)
+  public void testTruncatedBundle() throws Exception {
+    byte[] packet = newBundle(1, newIntMessage("/foo", 1));
+
+    byte[] truncated = new byte[packet.length - 4];
+    System.arraycopy(packet, 0, truncated, 0, truncated.length);
+
+    parser.parsePacket(senderAddress, truncated);
+  }
+
+  /**
+   * Test converting time tags to Java times.
+   */
+  @Test
+  public void testTimeTagTime() {
+    long epochSeconds =
+        OpenSoundControlConstants.OPEN_SOUND_CONTROL_TIME_TAG_EPOCH_OFFSET_SECONDS;
+
+    Assert.assertEquals(0,
+        SmartSpacesOpenSoundControlMessageParser.getTimeTagTime(epochSeconds << 32));
+    Assert.assertEquals(10500, SmartSpacesOpenSoundControlMessageParser
+        .getTimeTagTime(((epochSeconds + 10) << 32) | 0x80000000L));
+  }
+
+  /**
+   * Create a message with a single int argument.
+   *
+   * @param address
+   *          the address for the message
+   * @param value
+   *          the value of the argument
+   *
+   * @return the message bytes
+   */
+  private byte[] newIntMessage(String address, int value) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeString(out, address);
+    writeString(out, ",i");
+    out.write(ByteBuffer.allocate(4).putInt(value).array());
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Create a bundle.
+   *
+   * @param timeTag
+   *          the time tag for the bundle
+   * @param elements
+   *          the elements of the bundle
+   *
+   * @return the bundle bytes
+   */
+  private byte[] newBundle(long timeTag, byte[]... elements) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeString(out, OpenSoundControlConstants.OPEN_SOUND_CONTROL_BUNDLE_IDENTIFIER);
+    out.write(ByteBuffer.allocate(8).putLong(timeTag).array());
+    for (byte[] element : elements) {
+      out.write(ByteBuffer.allocate(4).putInt(element.length).array());
+      out.write(element);
+    }
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Write an OSC string, with its terminator and padding.
+   *
+   * @param out
+   *          the stream to write to
+   * @param string
+   *          the string to write
+   */
+  private void writeString(ByteArrayOutputStream out, String string) throws Exception {
+    byte[] bytes = string.getBytes(Charsets.UTF_8);
+    out.write(bytes);
+    int padding = OpenSoundControlConstants.OPEN_SOUND_CONTROL_BYTE_BOUNDARY
+        - (bytes.length % OpenSoundControlConstants.OPEN_SOUND_CONTROL_BYTE_BOUNDARY);
+    out.write(new byte[padding]);
+  }
+}
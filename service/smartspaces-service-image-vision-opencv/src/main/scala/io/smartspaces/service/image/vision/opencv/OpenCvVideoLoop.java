@@ -21,12 +21,19 @@ import org.opencv.core.Mat;
 import org.opencv.highgui.VideoCapture;
 
 import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.service.image.video.SimpleVideoFrameBufferPool;
+import io.smartspaces.service.image.video.VideoFrameBuffer;
+import io.smartspaces.service.image.video.VideoFrameFactory;
 import io.smartspaces.service.image.video.VideoLoop;
 import io.smartspaces.util.SmartSpacesUtilities;
 
 /**
  * A {@link VideoLoop} which grabs video frames using OpenCV and processes them.
  *
+ * <p>
+ * Each frame is a new {@link Mat} which processors can keep, unless processing
+ * is pipelined. Pipelined loops capture into pooled frames which are reused.
+ *
  * @author Keith M. Hughes
  */
 public class OpenCvVideoLoop extends VideoLoop<Mat> {
@@ -36,6 +43,21 @@ public class OpenCvVideoLoop extends VideoLoop<Mat> {
    */
   public static final long CAMERA_INITIALIZATION_TIME = 1000;
 
+  /**
+   * The maximum number of free frames kept for reuse.
+   */
+  public static final int FRAME_POOL_SIZE_MAX_FREE = 8;
+
+  /**
+   * The factory for new frames.
+   */
+  private static final VideoFrameFactory<Mat> FRAME_FACTORY = new VideoFrameFactory<Mat>() {
+    @Override
+    public Mat newFrame() {
+      return new Mat();
+    }
+  };
+
   /**
    * The IS of the camera to use.
    */
@@ -66,6 +88,12 @@ public class OpenCvVideoLoop extends VideoLoop<Mat> {
 
   @Override
   protected void setup() {
+    // Frames are only reused when processors are known to be done with them
+    // before the next capture could overwrite them.
+    if (isPipelined() && getFramePool() == null) {
+      setFramePool(new SimpleVideoFrameBufferPool<Mat>(FRAME_FACTORY, FRAME_POOL_SIZE_MAX_FREE));
+    }
+
     capture = new VideoCapture(cameraId);
 
     // OpenCV sometimes needs a bit of time for the camera to fully initialize.
@@ -74,15 +102,22 @@ public class OpenCvVideoLoop extends VideoLoop<Mat> {
 
   @Override
   protected void loop() throws InterruptedException {
-    Mat frame = new Mat();
+    // Pooled frames are reused, retrieve will only reallocate if the image
+    // size changes.
+    VideoFrameBuffer<Mat> buffer = acquireFrameBuffer();
+    if (buffer == null) {
+      buffer = VideoFrameBuffer.newUnpooledBuffer(new Mat());
+    }
+
     capture.grab();
-    capture.retrieve(frame);
-    if (frame.empty()) {
+    capture.retrieve(buffer.getFrame());
+    if (buffer.getFrame().empty()) {
+      buffer.release();
       log.warn("No image");
       return;
     }
 
-    notifyListenersNewVideoFrame(frame);
+    notifyListenersNewVideoFrame(buffer);
   }
 
   @Override
@@ -20,6 +20,7 @@ package io.smartspaces.service.image.video;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 
 import io.smartspaces.SmartSpacesException;
 import io.smartspaces.logging.ExtendedLog;
@@ -28,12 +29,20 @@ import io.smartspaces.logging.ExtendedLog;
  * A video frame listener that gives a sequence of video frame listeners to be
  * handled one at a time.
  *
+ * <p>
+ * If constructed with an executor service, the composite is pipelined. Each
+ * component runs on its own thread and hands its result to the next component
+ * through a single slot which only holds the latest frame, so a new frame
+ * never waits for the components and slow components drop frames. In this
+ * mode {@link #onNewVideoFrame(Object)} returns immediately, and components
+ * added or removed take effect on the next startup.
+ *
  * @param <T>
  *          the type for the video frame
  *
  * @author Keith M. Hughes
  */
-public class CompositeVideoFrameProcessor<T> implements VideoFrameProcessor<T> {
+public class CompositeVideoFrameProcessor<T> implements VideoFrameBufferProcessor<T> {
 
   /**
    * The components of the composite listener.
@@ -45,6 +54,18 @@ public class CompositeVideoFrameProcessor<T> implements VideoFrameProcessor<T> {
    */
   private final ExtendedLog log;
 
+  /**
+   * The executor service for pipelined processing, {@code null} if not
+   * pipelined.
+   */
+  private final ExecutorService executorService;
+
+  /**
+   * The pipeline stages in component order, empty if not pipelined or not
+   * started.
+   */
+  private final List<VideoFrameProcessorStage<T>> stages = new CopyOnWriteArrayList<>();
+
   /**
    * Construct a new composite listener.
    *
@@ -52,6 +73,21 @@ public class CompositeVideoFrameProcessor<T> implements VideoFrameProcessor<T> {
    *          the logger to use
    */
   public CompositeVideoFrameProcessor(ExtendedLog log) {
+    this(null, log);
+  }
+
+  /**
+   * Construct a new composite listener.
+   *
+   * @param executorService
+   *          the executor service for running the component threads, if
+   *          {@code null} the components are run one at a time on the calling
+   *          thread
+   * @param log
+   *          the logger to use
+   */
+  public CompositeVideoFrameProcessor(ExecutorService executorService, ExtendedLog log) {
+    this.executorService = executorService;
     this.log = log;
   }
 
@@ -93,15 +129,50 @@ public class CompositeVideoFrameProcessor<T> implements VideoFrameProcessor<T> {
 
       throw new SmartSpacesException("ECould not start composite video listener", e);
     }
+
+    if (executorService != null) {
+      startupStages(componentsStarted);
+    }
   }
 
   @Override
   public void shutdown() {
+    shutdownStages();
     shutdownComponents(components);
   }
 
+  /**
+   * Is the composite pipelined?
+   *
+   * @return {@code true} if each component runs on its own thread
+   */
+  public boolean isPipelined() {
+    return executorService != null;
+  }
+
+  /**
+   * Get the metrics for the pipeline stages.
+   *
+   * @return the metrics for each component in order, empty if not pipelined or
+   *         not started
+   */
+  public List<VideoFrameStageMetrics> getStageMetrics() {
+    List<VideoFrameStageMetrics> metrics = new ArrayList<>();
+    for (VideoFrameProcessorStage<T> stage : stages) {
+      metrics.add(stage.getMetrics());
+    }
+
+    return metrics;
+  }
+
   @Override
   public T onNewVideoFrame(T frame) {
+    if (!stages.isEmpty()) {
+      onNewVideoFrameBuffer(VideoFrameBuffer.newUnpooledBuffer(frame));
+
+      return frame;
+    }
+
     // If an exception happens, let it go so that the caller handles it since no
     // need to process any other frames.
     T curFrame = frame;
@@ -112,6 +183,51 @@ public class CompositeVideoFrameProcessor<T> implements VideoFrameProcessor<T> {
     return curFrame;
   }
 
+  @Override
+  public void onNewVideoFrameBuffer(VideoFrameBuffer<T> buffer) {
+    if (!stages.isEmpty()) {
+      stages.get(0).offer(buffer);
+    } else {
+      try {
+        onNewVideoFrame(buffer.getFrame());
+      } finally {
+        buffer.release();
+      }
+    }
+  }
+
+  /**
+   * Start a pipeline stage for each of the given components.
+   *
+   * @param pipelineComponents
+   *          the components in pipeline order
+   */
+  private void startupStages(List<VideoFrameProcessor<T>> pipelineComponents) {
+    List<VideoFrameProcessorStage<T>> newStages = new ArrayList<>();
+    VideoFrameProcessorStage<T> nextStage = null;
+    for (int i = pipelineComponents.size() - 1; i >= 0; i--) {
+      nextStage = new VideoFrameProcessorStage<>(pipelineComponents.get(i), nextStage, log);
+      newStages.add(0, nextStage);
+    }
+
+    for (VideoFrameProcessorStage<T> stage : newStages) {
+      stage.startup(executorService);
+    }
+    stages.addAll(newStages);
+  }
+
+  /**
+   * Shut down all pipeline stages.
+   */
+  private void shutdownStages() {
+    List<VideoFrameProcessorStage<T>> oldStages = new ArrayList<>(stages);
+    stages.clear();
+
+    for (VideoFrameProcessorStage<T> stage : oldStages) {
+      stage.shutdown();
+    }
+  }
+
   /**
    * Shutdown the list of components given.
    *
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.image.video;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single slot handoff between a producer and a consumer of video frames.
+ *
+ * <p>
+ * The slot only ever holds the latest frame. Offering a frame never blocks; if
+ * the consumer has not yet taken the previous frame, that frame is handed back
+ * to the producer as dropped.
+ *
+ * <p>
+ * Only one thread may take frames from the handoff.
+ *
+ * @param <T>
+ *          the type of video frame
+ *
+ * @author Keith M. Hughes
+ */
+public class LatestVideoFrameHandoff<T> {
+
+  /**
+   * The slot holding the latest frame.
+   */
+  private final AtomicReference<VideoFrameBuffer<T>> slot = new AtomicReference<>();
+
+  /**
+   * The thread waiting for a frame, {@code null} if none.
+   */
+  private volatile Thread consumer;
+
+  /**
+   * Offer a new frame to the consumer.
+   *
+   * @param buffer
+   *          the frame buffer, the reference held by the caller is handed to
+   *          the handoff
+   *
+   * @return the frame which was replaced and not taken by the consumer, or
+   *         {@code null} if none
+   */
+  public VideoFrameBuffer<T> offer(VideoFrameBuffer<T> buffer) {
+    VideoFrameBuffer<T> replaced = slot.getAndSet(buffer);
+
+    Thread waiting = consumer;
+    if (waiting != null) {
+      LockSupport.unpark(waiting);
+    }
+
+    return replaced;
+  }
+
+  /**
+   * Take the latest frame, waiting until one is available.
+   *
+   * @return the frame buffer, the caller holds its reference
+   *
+   * @throws InterruptedException
+   *           the consuming thread was interrupted while waiting
+   */
+  public VideoFrameBuffer<T> take() throws InterruptedException {
+    consumer = Thread.currentThread();
+    try {
+      while (true) {
+        VideoFrameBuffer<T> buffer = slot.getAndSet(null);
+        if (buffer != null) {
+          return buffer;
+        }
+
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+
+        LockSupport.park(this);
+      }
+    } finally {
+      consumer = null;
+    }
+  }
+
+  /**
+   * Remove any frame waiting in the handoff.
+   *
+   * @return the frame which was waiting, or {@code null} if none
+   */
+  public VideoFrameBuffer<T> clear() {
+    return slot.getAndSet(null);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.image.video;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A video frame buffer pool which keeps a bounded number of free buffers.
+ *
+ * <p>
+ * Acquiring a buffer never waits. If no free buffer is available a new one is
+ * allocated, and buffers returned when the pool is already full are dropped.
+ *
+ * @param <T>
+ *          the type of video frame
+ *
+ * @author Keith M. Hughes
+ */
+public class SimpleVideoFrameBufferPool<T> implements VideoFrameBufferPool<T> {
+
+  /**
+   * The factory for new frames.
+   */
+  private final VideoFrameFactory<T> frameFactory;
+
+  /**
+   * The free buffers.
+   */
+  private final BlockingQueue<VideoFrameBuffer<T>> freeBuffers;
+
+  /**
+   * The number of buffers allocated by the pool.
+   */
+  private final AtomicInteger allocatedCount = new AtomicInteger();
+
+  /**
+   * Construct a new pool.
+   *
+   * @param frameFactory
+   *          the factory for new frames
+   * @param maxFreeBuffers
+   *          the maximum number of free buffers kept by the pool
+   */
+  public SimpleVideoFrameBufferPool(VideoFrameFactory<T> frameFactory, int maxFreeBuffers) {
+    this.frameFactory = frameFactory;
+    this.freeBuffers = new ArrayBlockingQueue<>(maxFreeBuffers);
+  }
+
+  @Override
+  public VideoFrameBuffer<T> acquire() {
+    VideoFrameBuffer<T> buffer = freeBuffers.poll();
+    if (buffer == null) {
+      buffer = new VideoFrameBuffer<>(frameFactory.newFrame(), this);
+      allocatedCount.incrementAndGet();
+    }
+
+    buffer.onAcquire();
+
+    return buffer;
+  }
+
+  @Override
+  public void recycle(VideoFrameBuffer<T> buffer) {
+    freeBuffers.offer(buffer);
+  }
+
+  @Override
+  public int getAllocatedCount() {
+    return allocatedCount.get();
+  }
+
+  /**
+   * Get the number of free buffers in the pool.
+   *
+   * @return the number of free buffers
+   */
+  public int getFreeCount() {
+    return freeBuffers.size();
+  }
+}
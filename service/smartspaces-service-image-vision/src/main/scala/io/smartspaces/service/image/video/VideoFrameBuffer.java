@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.image.video;
+
+import io.smartspaces.SimpleSmartSpacesException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference counted holder for a video frame.
+ *
+ * <p>
+ * Whoever holds a reference to the buffer must call {@link #release()} when
+ * done with it. When the last reference is released, a pooled buffer is
+ * returned to its pool so its frame can be reused.
+ *
+ * @param <T>
+ *          the type of video frame
+ *
+ * @author Keith M. Hughes
+ */
+public class VideoFrameBuffer<T> {
+
+  /**
+   * Create a buffer for a frame which does not come from a pool.
+   *
+   * <p>
+   * The caller holds the only reference to the buffer.
+   *
+   * @param frame
+   *          the frame
+   * @param <T>
+   *          the type of video frame
+   *
+   * @return the new buffer
+   */
+  public static <T> VideoFrameBuffer<T> newUnpooledBuffer(T frame) {
+    VideoFrameBuffer<T> buffer = new VideoFrameBuffer<>(frame, null);
+    buffer.onAcquire();
+
+    return buffer;
+  }
+
+  /**
+   * The frame being held.
+   */
+  private final T frame;
+
+  /**
+   * The pool the buffer belongs to, {@code null} if not pooled.
+   */
+  private final VideoFrameBufferPool<T> pool;
+
+  /**
+   * The number of references to the buffer.
+   */
+  private final AtomicInteger references = new AtomicInteger();
+
+  /**
+   * Construct a new buffer.
+   *
+   * @param frame
+   *          the frame being held
+   * @param pool
+   *          the pool the buffer belongs to, can be {@code null}
+   */
+  public VideoFrameBuffer(T frame, VideoFrameBufferPool<T> pool) {
+    this.frame = frame;
+    this.pool = pool;
+  }
+
+  /**
+   * Get the frame held by the buffer.
+   *
+   * @return the frame
+   */
+  public T getFrame() {
+    return frame;
+  }
+
+  /**
+   * Add a reference to the buffer.
+   *
+   * @return this buffer
+   */
+  public VideoFrameBuffer<T> retain() {
+    references.incrementAndGet();
+
+    return this;
+  }
+
+  /**
+   * Release a reference to the buffer.
+   */
+  public void release() {
+    int remaining = references.decrementAndGet();
+    if (remaining == 0) {
+      if (pool != null) {
+        pool.recycle(this);
+      }
+    } else if (remaining < 0) {
+      throw new SimpleSmartSpacesException("Video frame buffer released more times than retained");
+    }
+  }
+
+  /**
+   * Get the number of references to the buffer.
+   *
+   * @return the number of references
+   */
+  public int getReferenceCount() {
+    return references.get();
+  }
+
+  /**
+   * The buffer has been handed out, the acquirer holds the only reference.
+   */
+  void onAcquire() {
+    references.set(1);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.image.video;
+
+/**
+ * A pool of video frame buffers so that frames can be reused rather than
+ * allocated for every capture.
+ *
+ * @param <T>
+ *          the type of video frame
+ *
+ * @author Keith M. Hughes
+ */
+public interface VideoFrameBufferPool<T> {
+
+  /**
+   * Get a buffer from the pool, allocating a new one if none are free.
+   *
+   * <p>
+   * The caller holds the only reference to the buffer.
+   *
+   * @return the buffer
+   */
+  VideoFrameBuffer<T> acquire();
+
+  /**
+   * Return a buffer to the pool.
+   *
+   * <p>
+   * This is called by the buffer when its last reference is released and
+   * should not be called directly.
+   *
+   * @param buffer
+   *          the buffer being returned
+   */
+  void recycle(VideoFrameBuffer<T> buffer);
+
+  /**
+   * Get the number of buffers the pool has allocated.
+   *
+   * @return the number of allocated buffers
+   */
+  int getAllocatedCount();
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.image.video;
+
+/**
+ * A video frame processor which can hold on to frame buffers past the call
+ * which hands them the frame, for example to process them on another thread.
+ *
+ * @param <T>
+ *          the type of video frame
+ *
+ * @author Keith M. Hughes
+ */
+public interface VideoFrameBufferProcessor<T> extends VideoFrameProcessor<T> {
+
+  /**
+   * A new frame buffer has come in.
+   *
+   * @param buffer
+   *          the new frame buffer, the processor is handed a reference it must
+   *          release when done with the frame
+   */
+  void onNewVideoFrameBuffer(VideoFrameBuffer<T> buffer);
+}
@@ -22,6 +22,18 @@ import io.smartspaces.resource.managed.ManagedResource;
 /**
  * A listener for frames captured during with a {@link VideoLoop}.
  *
+ * <p>
+ * A processor can keep the frames it is given unless the loop reuses frames,
+ * which a loop only does if it has a {@link VideoFrameBufferPool}. A reused
+ * frame must not be used after {@link #onNewVideoFrame(Object)} returns, a
+ * processor which needs it longer should copy it or be a
+ * {@link VideoFrameBufferProcessor} and retain the buffer.
+ *
+ * <p>
+ * If the loop's processing is pipelined, all processors are given the same
+ * frame at the same time on their own threads, so the frame must be treated
+ * as read-only. A processor which changes the frame must work on a copy.
+ *
  * @param <T>
  *          the type of video frame
  *
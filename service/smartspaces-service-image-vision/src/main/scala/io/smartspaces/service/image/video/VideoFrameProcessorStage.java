@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.image.video;
+
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.tasks.CancellableLoopingTask;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A stage of a video frame processing pipeline which runs a single video frame
+ * processor on its own thread.
+ *
+ * <p>
+ * Frames are handed to the stage through a {@link LatestVideoFrameHandoff}, so
+ * handing a frame to the stage never blocks. If the stage is still busy when a
+ * new frame arrives, the older waiting frame is dropped.
+ *
+ * <p>
+ * When the processor is done with a frame, the frame is handed to the next
+ * stage, if there is one. If the processor returns a different frame than the
+ * one it was given, the new frame is handed on. If it returns {@code null}, the
+ * frame goes no further down the pipeline.
+ *
+ * @param <T>
+ *          the type of video frame
+ *
+ * @author Keith M. Hughes
+ */
+public class VideoFrameProcessorStage<T> {
+
+  /**
+   * The processor for the stage.
+   */
+  private final VideoFrameProcessor<T> processor;
+
+  /**
+   * The next stage in the pipeline, {@code null} if this is the last stage.
+   */
+  private final VideoFrameProcessorStage<T> nextStage;
+
+  /**
+   * The handoff for frames coming into the stage.
+   */
+  private final LatestVideoFrameHandoff<T> handoff = new LatestVideoFrameHandoff<>();
+
+  /**
+   * The metrics for the stage.
+   */
+  private final VideoFrameStageMetrics metrics = new VideoFrameStageMetrics();
+
+  /**
+   * The logger for the stage.
+   */
+  private final ExtendedLog log;
+
+  /**
+   * The loop processing frames for the stage.
+   */
+  private StageLoop stageLoop;
+
+  /**
+   * Construct a new stage.
+   *
+   * @param processor
+   *          the processor for the stage
+   * @param nextStage
+   *          the next stage in the pipeline, can be {@code null}
+   * @param log
+   *          the logger to use
+   */
+  public VideoFrameProcessorStage(VideoFrameProcessor<T> processor,
+      VideoFrameProcessorStage<T> nextStage, ExtendedLog log) {
+    this.processor = processor;
+    this.nextStage = nextStage;
+    this.log = log;
+  }
+
+  /**
+   * Start the stage processing frames.
+   *
+   * @param executorService
+   *          the executor service to run the stage thread in
+   */
+  public synchronized void startup(ExecutorService executorService) {
+    if (stageLoop == null) {
+      stageLoop = new StageLoop();
+      executorService.submit(stageLoop);
+    }
+  }
+
+  /**
+   * Stop the stage processing frames.
+   *
+   * <p>
+   * Any frame waiting for the stage is released.
+   */
+  public synchronized void shutdown() {
+    if (stageLoop != null) {
+      stageLoop.cancel();
+      stageLoop = null;
+    }
+
+    releaseBuffer(handoff.clear());
+  }
+
+  /**
+   * Hand a new frame to the stage.
+   *
+   * <p>
+   * This never blocks.
+   *
+   * @param buffer
+   *          the frame buffer, the reference held by the caller is handed to
+   *          the stage
+   */
+  public void offer(VideoFrameBuffer<T> buffer) {
+    VideoFrameBuffer<T> dropped = handoff.offer(buffer);
+    if (dropped != null) {
+      metrics.onFrameDropped();
+      dropped.release();
+    }
+  }
+
+  /**
+   * Get the processor for the stage.
+   *
+   * @return the processor
+   */
+  public VideoFrameProcessor<T> getProcessor() {
+    return processor;
+  }
+
+  /**
+   * Get the metrics for the stage.
+   *
+   * @return the metrics
+   */
+  public VideoFrameStageMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Process a frame which has been taken from the handoff.
+   *
+   * @param buffer
+   *          the frame buffer, the stage holds its reference
+   */
+  private void processFrame(VideoFrameBuffer<T> buffer) {
+    T frame = buffer.getFrame();
+    T result;
+    long start = System.nanoTime();
+    try {
+      if (processor instanceof VideoFrameBufferProcessor) {
+        ((VideoFrameBufferProcessor<T>) processor).onNewVideoFrameBuffer(buffer.retain());
+        result = frame;
+      } else {
+        result = processor.onNewVideoFrame(frame);
+      }
+    } catch (Throwable e) {
+      metrics.onFrameError();
+      log.error("Error while processing video frame in pipeline stage", e);
+      buffer.release();
+
+      return;
+    }
+    metrics.onFrameProcessed(System.nanoTime() - start);
+
+    if (nextStage == null || result == null) {
+      buffer.release();
+    } else if (result == frame) {
+      nextStage.offer(buffer);
+    } else {
+      buffer.release();
+      nextStage.offer(VideoFrameBuffer.newUnpooledBuffer(result));
+    }
+  }
+
+  /**
+   * Release a buffer if there is one.
+   *
+   * @param buffer
+   *          the buffer, can be {@code null}
+   */
+  private void releaseBuffer(VideoFrameBuffer<T> buffer) {
+    if (buffer != null) {
+      buffer.release();
+    }
+  }
+
+  /**
+   * The loop which takes frames from the handoff and processes them.
+   *
+   * @author Keith M. Hughes
+   */
+  private class StageLoop extends CancellableLoopingTask {
+
+    /**
+     * {@code true} if the loop has been cancelled, possibly before its thread
+     * started.
+     */
+    private volatile boolean cancelled;
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+
+      super.cancel();
+    }
+
+    @Override
+    protected void loop() throws InterruptedException {
+      if (cancelled) {
+        throw new InterruptedException();
+      }
+
+      processFrame(handoff.take());
+    }
+
+    @Override
+    protected void handleException(Exception e) {
+      log.error("Video frame pipeline stage has crashed", e);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.image.video;
+
+import io.smartspaces.util.concurrency.AtomicLongUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics for a single stage of a video frame processing pipeline.
+ *
+ * <p>
+ * All times are in nanoseconds.
+ *
+ * @author Keith M. Hughes
+ */
+public class VideoFrameStageMetrics {
+
+  /**
+   * The number of frames processed by the stage.
+   */
+  private final AtomicLong processedFrameCount = new AtomicLong();
+
+  /**
+   * The number of frames dropped because the stage was still busy with an
+   * earlier frame.
+   */
+  private final AtomicLong droppedFrameCount = new AtomicLong();
+
+  /**
+   * The number of frames whose processing threw an exception.
+   */
+  private final AtomicLong errorCount = new AtomicLong();
+
+  /**
+   * The total processing time for all processed frames.
+   */
+  private final AtomicLong totalProcessingTime = new AtomicLong();
+
+  /**
+   * The longest processing time for a frame.
+   */
+  private final AtomicLong maxProcessingTime = new AtomicLong();
+
+  /**
+   * The processing time for the most recent frame.
+   */
+  private volatile long lastProcessingTime;
+
+  /**
+   * A frame has been processed.
+   *
+   * @param processingTime
+   *          the time it took to process the frame
+   */
+  public void onFrameProcessed(long processingTime) {
+    processedFrameCount.incrementAndGet();
+    totalProcessingTime.addAndGet(processingTime);
+    lastProcessingTime = processingTime;
+
+    AtomicLongUtils.updateMax(maxProcessingTime, processingTime);
+  }
+
+  /**
+   * A frame has been dropped.
+   */
+  public void onFrameDropped() {
+    droppedFrameCount.incrementAndGet();
+  }
+
+  /**
+   * Processing a frame failed.
+   */
+  public void onFrameError() {
+    errorCount.incrementAndGet();
+  }
+
+  /**
+   * Get the number of frames processed by the stage.
+   *
+   * @return the number of frames processed
+   */
+  public long getProcessedFrameCount() {
+    return processedFrameCount.get();
+  }
+
+  /**
+   * Get the number of frames dropped before the stage could process them.
+   *
+   * @return the number of frames dropped
+   */
+  public long getDroppedFrameCount() {
+    return droppedFrameCount.get();
+  }
+
+  /**
+   * Get the number of frames whose processing failed.
+   *
+   * @return the number of failures
+   */
+  public long getErrorCount() {
+    return errorCount.get();
+  }
+
+  /**
+   * Get the processing time of the most recent frame.
+   *
+   * @return the processing time
+   */
+  public long getLastProcessingTime() {
+    return lastProcessingTime;
+  }
+
+  /**
+   * Get the longest processing time of any frame.
+   *
+   * @return the processing time
+   */
+  public long getMaxProcessingTime() {
+    return maxProcessingTime.get();
+  }
+
+  /**
+   * Get the average processing time over all frames.
+   *
+   * @return the processing time, {@code 0} if no frames have been processed
+   */
+  public long getAverageProcessingTime() {
+    long count = processedFrameCount.get();
+    return (count != 0) ? totalProcessingTime.get() / count : 0;
+  }
+
+  @Override
+  public String toString() {
+    return "VideoFrameStageMetrics [processedFrameCount=" + getProcessedFrameCount()
+        + ", droppedFrameCount=" + getDroppedFrameCount() + ", errorCount=" + getErrorCount()
+        + ", averageProcessingTime=" + getAverageProcessingTime() + ", maxProcessingTime="
+        + getMaxProcessingTime() + ", lastProcessingTime=" + getLastProcessingTime() + "]";
+  }
+}
@@ -17,15 +17,27 @@
 
 package io.smartspaces.service.image.video;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import com.google.common.collect.Lists;
 
+import io.smartspaces.logging.ExtendedLog;
 import io.smartspaces.tasks.CancellableLoopingTask;
 
 /**
  * A loop for capturing video.
  *
+ * <p>
+ * By default all processors are given each frame one after another on the
+ * capture thread. If pipelined processing is enabled, each processor runs on
+ * its own thread and is handed only the latest frame, so the capture thread
+ * never waits on the processors and slow processors drop frames. Pipelined
+ * processors share each frame, so must not change it.
+ *
  * @param <T>
  *          the type of video frame
  *
@@ -38,6 +50,105 @@ public abstract class VideoLoop<T> extends CancellableLoopingTask {
    */
   private final List<VideoFrameProcessor<T>> processors = Lists.newCopyOnWriteArrayList();
 
+  /**
+   * The pipeline stages for the processors, indexed by processor.
+   *
+   * <p>
+   * Only used for pipelined processing.
+   */
+  private final Map<VideoFrameProcessor<T>, VideoFrameProcessorStage<T>> stages =
+      new ConcurrentHashMap<>();
+
+  /**
+   * The executor service for the pipeline stages, {@code null} if processing is
+   * not pipelined.
+   */
+  private volatile ExecutorService pipelineExecutorService;
+
+  /**
+   * The logger for the pipeline stages.
+   */
+  private volatile ExtendedLog pipelineLog;
+
+  /**
+   * {@code true} if the pipeline stages are running.
+   */
+  private volatile boolean pipelineRunning;
+
+  /**
+   * The pool for frame buffers, can be {@code null}.
+   */
+  private volatile VideoFrameBufferPool<T> framePool;
+
+  /**
+   * Have each processor run on its own thread.
+   *
+   * <p>
+   * This must be called before the loop starts running. Every processor is
+   * given the same frame, so processors must not change the frames they are
+   * given.
+   *
+   * @param executorService
+   *          the executor service to run the processor threads in
+   * @param log
+   *          the logger for the processor threads
+   */
+  public void enablePipelinedProcessing(ExecutorService executorService, ExtendedLog log) {
+    this.pipelineLog = log;
+    this.pipelineExecutorService = executorService;
+  }
+
+  /**
+   * Are the processors run on their own threads?
+   *
+   * @return {@code true} if processing is pipelined
+   */
+  public boolean isPipelined() {
+    return pipelineExecutorService != null;
+  }
+
+  /**
+   * Set the pool for frame buffers.
+   *
+   * <p>
+   * Frames from the pool are reused once all processors are done with them,
+   * see {@link VideoFrameProcessor} for what processors may then do with a
+   * frame.
+   *
+   * @param framePool
+   *          the pool, can be {@code null}
+   */
+  public void setFramePool(VideoFrameBufferPool<T> framePool) {
+    this.framePool = framePool;
+  }
+
+  /**
+   * Get the pool for frame buffers.
+   *
+   * @return the pool, can be {@code null}
+   */
+  public VideoFrameBufferPool<T> getFramePool() {
+    return framePool;
+  }
+
+  /**
+   * Get the metrics for the pipeline stages.
+   *
+   * @return the metrics for each processor, empty if processing is not
+   *         pipelined or not running
+   */
+  public List<VideoFrameStageMetrics> getStageMetrics() {
+    List<VideoFrameStageMetrics> metrics = new ArrayList<>();
+    for (VideoFrameProcessor<T> processor : processors) {
+      VideoFrameProcessorStage<T> stage = stages.get(processor);
+      if (stage != null) {
+        metrics.add(stage.getMetrics());
+      }
+    }
+
+    return metrics;
+  }
+
   /**
    * Add a new frame processor to the loop.
    *
@@ -46,6 +157,10 @@ public abstract class VideoLoop<T> extends CancellableLoopingTask {
    */
   public void addProcessor(VideoFrameProcessor<T> processor) {
     processors.add(processor);
+
+    if (pipelineRunning) {
+      startStage(processor);
+    }
   }
 
   /**
@@ -59,6 +174,32 @@ public abstract class VideoLoop<T> extends CancellableLoopingTask {
    */
   public void removeProcessor(VideoFrameProcessor<T> processor) {
     processors.remove(processor);
+
+    VideoFrameProcessorStage<T> stage = stages.remove(processor);
+    if (stage != null) {
+      stage.shutdown();
+    }
+  }
+
+  @Override
+  public void run() {
+    startPipeline();
+    try {
+      super.run();
+    } finally {
+      shutdownPipeline();
+    }
+  }
+
+  /**
+   * Get a frame buffer from the frame pool.
+   *
+   * @return a buffer held only by the caller, or {@code null} if there is no
+   *         frame pool
+   */
+  protected VideoFrameBuffer<T> acquireFrameBuffer() {
+    VideoFrameBufferPool<T> pool = framePool;
+    return (pool != null) ? pool.acquire() : null;
   }
 
   /**
@@ -68,8 +209,78 @@ public abstract class VideoLoop<T> extends CancellableLoopingTask {
    *          the new frame
    */
   protected void notifyListenersNewVideoFrame(T frame) {
-    for (VideoFrameProcessor<T> processor : processors) {
-      processor.onNewVideoFrame(frame);
+    if (pipelineRunning) {
+      notifyListenersNewVideoFrame(VideoFrameBuffer.newUnpooledBuffer(frame));
+    } else {
+      for (VideoFrameProcessor<T> processor : processors) {
+        processor.onNewVideoFrame(frame);
+      }
+    }
+  }
+
+  /**
+   * Notify all processors about a new video frame buffer.
+   *
+   * <p>
+   * The buffer is released once all processors are done with it.
+   *
+   * @param buffer
+   *          the new frame buffer, the reference held by the caller is handed
+   *          to the loop
+   */
+  protected void notifyListenersNewVideoFrame(VideoFrameBuffer<T> buffer) {
+    try {
+      if (pipelineRunning) {
+        for (VideoFrameProcessorStage<T> stage : stages.values()) {
+          stage.offer(buffer.retain());
+        }
+      } else {
+        for (VideoFrameProcessor<T> processor : processors) {
+          if (processor instanceof VideoFrameBufferProcessor) {
+            ((VideoFrameBufferProcessor<T>) processor).onNewVideoFrameBuffer(buffer.retain());
+          } else {
+            processor.onNewVideoFrame(buffer.getFrame());
+          }
+        }
+      }
+    } finally {
+      buffer.release();
+    }
+  }
+
+  /**
+   * Start the pipeline stages, if processing is pipelined.
+   */
+  private void startPipeline() {
+    if (pipelineExecutorService != null) {
+      pipelineRunning = true;
+      for (VideoFrameProcessor<T> processor : processors) {
+        startStage(processor);
+      }
+    }
+  }
+
+  /**
+   * Shut down all pipeline stages.
+   */
+  private void shutdownPipeline() {
+    pipelineRunning = false;
+    for (VideoFrameProcessorStage<T> stage : stages.values()) {
+      stage.shutdown();
+    }
+    stages.clear();
+  }
+
+  /**
+   * Start a pipeline stage for a processor.
+   *
+   * @param processor
+   *          the processor
+   */
+  private void startStage(VideoFrameProcessor<T> processor) {
+    VideoFrameProcessorStage<T> stage = new VideoFrameProcessorStage<>(processor, null, pipelineLog);
+    if (stages.putIfAbsent(processor, stage) == null) {
+      stage.startup(pipelineExecutorService);
     }
   }
 }
@@ -78,4 +78,13 @@ public class FileScriptSource implements ScriptSource {
   public boolean isModified() {
     return sourceFile.lastModified() != lastModified;
   }
+
+  /**
+   * Get the file the script comes from.
+   *
+   * @return the source file
+   */
+  public File getSourceFile() {
+    return sourceFile;
+  }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.script;
+
+import io.smartspaces.util.concurrency.AtomicLongUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics for scripts executed by a {@link ScriptService}.
+ *
+ * <p>
+ * All times are in nanoseconds.
+ *
+ * @author Keith M. Hughes
+ */
+public class ScriptExecutionMetrics {
+
+  /**
+   * The number of executions which found their compiled script in the cache.
+   */
+  private final AtomicLong cacheHitCount = new AtomicLong();
+
+  /**
+   * The number of executions which had to compile their script.
+   */
+  private final AtomicLong cacheMissCount = new AtomicLong();
+
+  /**
+   * The number of scripts executed.
+   */
+  private final AtomicLong executionCount = new AtomicLong();
+
+  /**
+   * The number of script executions which failed.
+   */
+  private final AtomicLong errorCount = new AtomicLong();
+
+  /**
+   * The total execution time for all executed scripts.
+   */
+  private final AtomicLong totalExecutionTime = new AtomicLong();
+
+  /**
+   * The longest execution time for a script.
+   */
+  private final AtomicLong maxExecutionTime = new AtomicLong();
+
+  /**
+   * A compiled script was found in the cache.
+   */
+  public void onCacheHit() {
+    cacheHitCount.incrementAndGet();
+  }
+
+  /**
+   * A compiled script was not found in the cache.
+   */
+  public void onCacheMiss() {
+    cacheMissCount.incrementAndGet();
+  }
+
+  /**
+   * A script has been executed.
+   *
+   * @param executionTime
+   *          the time it took to execute the script
+   */
+  public void onScriptExecuted(long executionTime) {
+    executionCount.incrementAndGet();
+    totalExecutionTime.addAndGet(executionTime);
+
+    AtomicLongUtils.updateMax(maxExecutionTime, executionTime);
+  }
+
+  /**
+   * Executing a script failed.
+   */
+  public void onScriptError() {
+    errorCount.incrementAndGet();
+  }
+
+  /**
+   * Get the number of executions which found their compiled script in the
+   * cache.
+   *
+   * @return the number of cache hits
+   */
+  public long getCacheHitCount() {
+    return cacheHitCount.get();
+  }
+
+  /**
+   * Get the number of executions which had to compile their script.
+   *
+   * @return the number of cache misses
+   */
+  public long getCacheMissCount() {
+    return cacheMissCount.get();
+  }
+
+  /**
+   * Get the number of scripts executed.
+   *
+   * @return the number of executions
+   */
+  public long getExecutionCount() {
+    return executionCount.get();
+  }
+
+  /**
+   * Get the number of script executions which failed.
+   *
+   * @return the number of failures
+   */
+  public long getErrorCount() {
+    return errorCount.get();
+  }
+
+  /**
+   * Get the longest execution time of any script.
+   *
+   * @return the execution time
+   */
+  public long getMaxExecutionTime() {
+    return maxExecutionTime.get();
+  }
+
+  /**
+   * Get the average execution time over all scripts.
+   *
+   * @return the execution time, {@code 0} if no scripts have been executed
+   */
+  public long getAverageExecutionTime() {
+    long count = executionCount.get();
+    return (count != 0) ? totalExecutionTime.get() / count : 0;
+  }
+
+  @Override
+  public String toString() {
+    return "ScriptExecutionMetrics [cacheHitCount=" + getCacheHitCount() + ", cacheMissCount="
+        + getCacheMissCount() + ", executionCount=" + getExecutionCount() + ", errorCount="
+        + getErrorCount() + ", averageExecutionTime=" + getAverageExecutionTime()
+        + ", maxExecutionTime=" + getMaxExecutionTime() + "]";
+  }
+}
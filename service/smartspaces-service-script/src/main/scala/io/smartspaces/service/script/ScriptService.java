@@ -184,4 +184,11 @@ public interface ScriptService extends SupportedService {
   ActivityScriptWrapper
       getActivityByExtension(String extension, String objectName, ScriptSource scriptSource,
           ActivityFilesystem activityFilesystem, Configuration configuration);
+
+  /**
+   * Get the execution metrics for the service.
+   *
+   * @return the metrics
+   */
+  ScriptExecutionMetrics getExecutionMetrics();
 }
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.service.script.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+
+/**
+ * A bounded cache of compiled scripts.
+ *
+ * <p>
+ * The least recently used script is dropped when the cache is full.
+ *
+ * @author Keith M. Hughes
+ */
+public class CompiledScriptCache {
+
+  /**
+   * The cached scripts.
+   */
+  private final Map<CacheKey, CachedScript> scripts;
+
+  /**
+   * Construct a new cache.
+   *
+   * @param maxSize
+   *          the maximum number of scripts to keep in the cache
+   */
+  public CompiledScriptCache(final int maxSize) {
+    scripts = new LinkedHashMap<CacheKey, CachedScript>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedScript> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Get a script from the cache.
+   *
+   * @param key
+   *          the key for the script
+   * @param version
+   *          the version of the script source wanted
+   *
+   * @return the cached script, or {@code null} if there is no script for the
+   *         key or the cached script is for a different version
+   */
+  public synchronized CachedScript get(CacheKey key, long version) {
+    CachedScript script = scripts.get(key);
+    if (script != null && script.version != version) {
+      scripts.remove(key);
+      script = null;
+    }
+
+    return script;
+  }
+
+  /**
+   * Put a script into the cache.
+   *
+   * @param key
+   *          the key for the script
+   * @param script
+   *          the script
+   */
+  public synchronized void put(CacheKey key, CachedScript script) {
+    scripts.put(key, script);
+  }
+
+  /**
+   * Get the number of scripts in the cache.
+   *
+   * @return the number of scripts
+   */
+  public synchronized int size() {
+    return scripts.size();
+  }
+
+  /**
+   * Remove all scripts from the cache.
+   */
+  public synchronized void clear() {
+    scripts.clear();
+  }
+
+  /**
+   * The key for a cached script.
+   *
+   * <p>
+   * Scripts are identified by their language and either their contents or the
+   * file they came from.
+   *
+   * @author Keith M. Hughes
+   */
+  public static class CacheKey {
+
+    /**
+     * The name of the language of the script.
+     */
+    private final String languageName;
+
+    /**
+     * The identity of the script source, either its contents or its file path.
+     */
+    private final String sourceId;
+
+    /**
+     * {@code true} if the source ID is a file path.
+     */
+    private final boolean file;
+
+    /**
+     * The hash code for the key.
+     */
+    private final int hashCode;
+
+    /**
+     * Construct a new key.
+     *
+     * @param languageName
+     *          the name of the language of the script
+     * @param sourceId
+     *          the contents of the script or the path of the file it came from
+     * @param file
+     *          {@code true} if the source ID is a file path
+     */
+    public CacheKey(String languageName, String sourceId, boolean file) {
+      this.languageName = languageName;
+      this.sourceId = sourceId;
+      this.file = file;
+
+      hashCode = 31 * (31 * languageName.hashCode() + sourceId.hashCode()) + (file ? 1 : 0);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof CacheKey)) {
+        return false;
+      }
+
+      CacheKey other = (CacheKey) obj;
+      return hashCode == other.hashCode && file == other.file
+          && languageName.equals(other.languageName) && sourceId.equals(other.sourceId);
+    }
+  }
+
+  /**
+   * A compiled script in the cache.
+   *
+   * @author Keith M. Hughes
+   */
+  public static class CachedScript {
+
+    /**
+     * The compiled script.
+     */
+    private final CompiledScript compiledScript;
+
+    /**
+     * The version of the source the script was compiled from.
+     */
+    private final long version;
+
+    /**
+     * The lock evaluations of the script are serialized on, or {@code null} if
+     * the script can be evaluated by several threads at once.
+     */
+    private final Object evaluationLock;
+
+    /**
+     * Construct a new cached script.
+     *
+     * @param compiledScript
+     *          the compiled script
+     * @param version
+     *          the version of the source the script was compiled from
+     * @param evaluationLock
+     *          the lock evaluations of the script are serialized on, or
+     *          {@code null} if the script can be evaluated by several threads
+     *          at once
+     */
+    public CachedScript(CompiledScript compiledScript, long version, Object evaluationLock) {
+      this.compiledScript = compiledScript;
+      this.version = version;
+      this.evaluationLock = evaluationLock;
+    }
+
+    /**
+     * Evaluate the script.
+     *
+     * @param context
+     *          the context for this evaluation of the script
+     *
+     * @return the result of the script
+     *
+     * @throws ScriptException
+     *           the script failed
+     */
+    public Object eval(ScriptContext context) throws ScriptException {
+      if (evaluationLock == null) {
+        return compiledScript.eval(context);
+      }
+
+      synchronized (evaluationLock) {
+        return compiledScript.eval(context);
+      }
+    }
+  }
+}
@@ -25,19 +25,56 @@ import io.smartspaces.activity.ActivityFilesystem;
 import io.smartspaces.configuration.Configuration;
 import io.smartspaces.service.BaseSupportedService;
 import io.smartspaces.service.script.*;
+import io.smartspaces.service.script.internal.CompiledScriptCache.CacheKey;
+import io.smartspaces.service.script.internal.CompiledScriptCache.CachedScript;
 import io.smartspaces.service.script.internal.javascript.RhinoJavascriptActivityScriptFactory;
 import org.codehaus.groovy.jsr223.GroovyScriptEngineFactory;
 
 import javax.script.*;
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * An {@link ScriptService} using {@code javax.script}.
  *
+ * <p>
+ * Scripts executed by the service are compiled once and kept in a bounded
+ * cache, keyed by their language and their contents, or their file for file
+ * scripts. Every execution gets its own script context so that compiled scripts
+ * can be run by several threads at once. Scripts from engines which are not
+ * thread safe are spread over a small, fixed set of engines, and executions of
+ * scripts compiled with the same engine are serialized.
+ *
  * @author Keith M. Hughes
  */
 public class JavaxScriptScriptService extends BaseSupportedService implements ScriptService {
 
+  /**
+   * Configuration property giving the maximum number of compiled scripts to
+   * cache.
+   */
+  public static final String CONFIGURATION_NAME_SMARTSPACES_SERVICE_SCRIPT_CACHE_SIZE =
+      "smartspaces.service.script.cache.size";
+
+  /**
+   * The default maximum number of compiled scripts to cache.
+   */
+  public static final int SCRIPT_CACHE_SIZE_DEFAULT = 256;
+
+  /**
+   * The maximum number of idle script engines kept for each language, and the
+   * number of engines scripts are compiled with if the engines are not thread
+   * safe.
+   */
+  public static final int ENGINE_POOL_SIZE_MAX = 8;
+
+  /**
+   * The script engine factory parameter giving the threading model of the
+   * engine.
+   */
+  private static final String SCRIPT_ENGINE_PARAMETER_THREADING = "THREADING";
+
   /**
    * All engines stored in the script engine.
    */
@@ -53,6 +90,17 @@ public class JavaxScriptScriptService extends BaseSupportedService implements Sc
    */
   private final Map<String, ScriptLanguage> extensionToLanguage = new HashMap<>();
 
+  /**
+   * The cache of compiled scripts.
+   */
+  private volatile CompiledScriptCache scriptCache =
+      new CompiledScriptCache(SCRIPT_CACHE_SIZE_DEFAULT);
+
+  /**
+   * The metrics for script execution.
+   */
+  private final ScriptExecutionMetrics metrics = new ScriptExecutionMetrics();
+
   @Override
   public String getName() {
     return ScriptService.SERVICE_NAME;
@@ -60,6 +108,10 @@ public class JavaxScriptScriptService extends BaseSupportedService implements Sc
 
   @Override
   public void startup() {
+    scriptCache =
+        new CompiledScriptCache(getSpaceEnvironment().getSystemConfiguration().getPropertyInteger(
+            CONFIGURATION_NAME_SMARTSPACES_SERVICE_SCRIPT_CACHE_SIZE, SCRIPT_CACHE_SIZE_DEFAULT));
+
     final ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
     Thread.currentThread().setContextClassLoader(null);
     try {
@@ -89,6 +141,15 @@ public class JavaxScriptScriptService extends BaseSupportedService implements Sc
     }
   }
 
+  @Override
+  public void shutdown() {
+    scriptCache.clear();
+
+    for (ScriptLanguage language : languages) {
+      language.clearEngines();
+    }
+  }
+
   /**
    * Register a new scripting engine factory with the factory.
    *
@@ -184,20 +245,84 @@ public class JavaxScriptScriptService extends BaseSupportedService implements Sc
 
     final ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
     Thread.currentThread().setContextClassLoader(JavaxScriptScriptService.class.getClassLoader());
+    long start = System.nanoTime();
     try {
-      ScriptEngine engine = factory.getScriptEngine();
-      if (engine != null) {
-        engine.setBindings(new SimpleBindings(bindings), ScriptContext.GLOBAL_SCOPE);
-
-        engine.eval(scriptSource.getScriptContents());
+      ScriptContext context = new SimpleScriptContext();
+      context.setBindings(new SimpleBindings(), ScriptContext.ENGINE_SCOPE);
+      context.setBindings(new SimpleBindings(bindings), ScriptContext.GLOBAL_SCOPE);
+
+      CachedScript compiledScript = getCompiledScript(scriptLanguage, scriptSource);
+      if (compiledScript != null) {
+        compiledScript.eval(context);
+      } else {
+        ScriptEngine engine = scriptLanguage.acquireEngine();
+        if (engine != null) {
+          try {
+            engine.eval(scriptSource.getScriptContents(), context);
+          } finally {
+            scriptLanguage.releaseEngine(engine);
+          }
+        }
       }
-    } catch (ScriptException ex) {
-      ex.printStackTrace();
+
+      metrics.onScriptExecuted(System.nanoTime() - start);
+    } catch (ScriptException e) {
+      metrics.onScriptError();
+      getSpaceEnvironment().getLog().formatError(e, "Error while executing script for %s %s",
+          idType, languageId);
     } finally {
       Thread.currentThread().setContextClassLoader(oldClassLoader);
     }
   }
 
+  /**
+   * Get the compiled version of a script, compiling it if it isn't in the
+   * cache.
+   *
+   * @param scriptLanguage
+   *          the scripting language of the script
+   * @param scriptSource
+   *          the source of the script
+   *
+   * @return the compiled script, or {@code null} if the language can't compile
+   *         scripts
+   *
+   * @throws ScriptException
+   *           the script could not be compiled
+   */
+  private CachedScript getCompiledScript(ScriptLanguage scriptLanguage, ScriptSource scriptSource)
+      throws ScriptException {
+    if (!scriptLanguage.isCompilable()) {
+      return null;
+    }
+
+    CacheKey key;
+    long version;
+    if (scriptSource instanceof FileScriptSource) {
+      File sourceFile = ((FileScriptSource) scriptSource).getSourceFile();
+      key = new CacheKey(scriptLanguage.getLanguageName(), sourceFile.getAbsolutePath(), true);
+      version = sourceFile.lastModified();
+    } else {
+      key = new CacheKey(scriptLanguage.getLanguageName(), scriptSource.getScriptContents(), false);
+      version = 0;
+    }
+
+    CompiledScriptCache cache = scriptCache;
+    CachedScript compiledScript = cache.get(key, version);
+    if (compiledScript != null) {
+      metrics.onCacheHit();
+      return compiledScript;
+    }
+
+    metrics.onCacheMiss();
+    compiledScript = scriptLanguage.compile(scriptSource.getScriptContents(), version);
+    if (compiledScript != null) {
+      cache.put(key, compiledScript);
+    }
+
+    return compiledScript;
+  }
+
   @Override
   public Script newSimpleScript(String languageName, String script) {
     return newScriptByName(languageName, new StringScriptSource(script));
@@ -302,6 +427,20 @@ public class JavaxScriptScriptService extends BaseSupportedService implements Sc
     return factory.getActivity(objectName, script, activityFilesystem, configuration);
   }
 
+  @Override
+  public ScriptExecutionMetrics getExecutionMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Get the number of compiled scripts currently in the cache.
+   *
+   * @return the number of cached scripts
+   */
+  public int getScriptCacheSize() {
+    return scriptCache.size();
+  }
+
   /**
    * Everything that can be done with a scripting language.
    *
@@ -325,6 +464,39 @@ public class JavaxScriptScriptService extends BaseSupportedService implements Sc
      */
     private final ActivityScriptFactory activityScriptFactory;
 
+    /**
+     * {@code true} if the engines for the language can be used by several
+     * threads at once.
+     */
+    private final boolean threadSafe;
+
+    /**
+     * Idle engines for running scripts which can't be compiled.
+     */
+    private final Queue<ScriptEngine> enginePool = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The engine shared by all threads, if the engine is thread safe.
+     */
+    private ScriptEngine sharedEngine;
+
+    /**
+     * The engines scripts are compiled with, if the engine is not thread safe.
+     * Engines are created as they are first needed.
+     */
+    private final ScriptEngine[] compileEngines = new ScriptEngine[ENGINE_POOL_SIZE_MAX];
+
+    /**
+     * The index of the compile engine the next script is compiled with.
+     */
+    private int nextCompileEngine;
+
+    /**
+     * Whether the engines for the language can compile scripts, {@code null}
+     * if not known yet.
+     */
+    private volatile Boolean compilable;
+
     /**
      * Construct a script language.
      *
@@ -337,6 +509,137 @@ public class JavaxScriptScriptService extends BaseSupportedService implements Sc
         ActivityScriptFactory activityScriptFactory) {
       this.scriptEngineFactory = scriptEngineFactory;
       this.activityScriptFactory = activityScriptFactory;
+
+      threadSafe = scriptEngineFactory.getParameter(SCRIPT_ENGINE_PARAMETER_THREADING) != null;
+    }
+
+    /**
+     * Get the name of the language.
+     *
+     * @return the name of the language
+     */
+    public String getLanguageName() {
+      return scriptEngineFactory.getLanguageName();
+    }
+
+    /**
+     * Can scripts in the language be compiled?
+     *
+     * @return {@code true} if scripts can be compiled, or it isn't known yet
+     */
+    public boolean isCompilable() {
+      Boolean canCompile = compilable;
+      return canCompile == null || canCompile;
+    }
+
+    /**
+     * Compile a script.
+     *
+     * <p>
+     * The script is compiled with the shared engine if engines are thread safe,
+     * otherwise with the next of the compile engines. Scripts compiled with the
+     * same compile engine are evaluated one at a time, as the engine can't be
+     * used by several threads at once.
+     *
+     * @param contents
+     *          the contents of the script
+     * @param version
+     *          the version of the script source
+     *
+     * @return the compiled script, or {@code null} if the language can't
+     *         compile scripts
+     *
+     * @throws ScriptException
+     *           the script could not be compiled
+     */
+    public CachedScript compile(String contents, long version) throws ScriptException {
+      ScriptEngine engine = threadSafe ? getSharedEngine() : getCompileEngine();
+
+      compilable = engine instanceof Compilable;
+      if (!compilable) {
+        return null;
+      }
+
+      if (threadSafe) {
+        return new CachedScript(((Compilable) engine).compile(contents), version, null);
+      }
+
+      synchronized (engine) {
+        return new CachedScript(((Compilable) engine).compile(contents), version, engine);
+      }
+    }
+
+    /**
+     * Get an engine for running a script.
+     *
+     * <p>
+     * The engine should be given back with {@link #releaseEngine(ScriptEngine)}
+     * when the script is done.
+     *
+     * @return the engine, or {@code null} if none could be created
+     */
+    public ScriptEngine acquireEngine() {
+      if (threadSafe) {
+        return getSharedEngine();
+      }
+
+      ScriptEngine engine = enginePool.poll();
+      if (engine == null) {
+        engine = scriptEngineFactory.getScriptEngine();
+      }
+
+      return engine;
+    }
+
+    /**
+     * Give back an engine which was acquired for running a script.
+     *
+     * @param engine
+     *          the engine
+     */
+    public void releaseEngine(ScriptEngine engine) {
+      if (!threadSafe && enginePool.size() < ENGINE_POOL_SIZE_MAX) {
+        enginePool.offer(engine);
+      }
+    }
+
+    /**
+     * Drop all engines held by the language.
+     */
+    public synchronized void clearEngines() {
+      enginePool.clear();
+      sharedEngine = null;
+      Arrays.fill(compileEngines, null);
+    }
+
+    /**
+     * Get the engine shared by all threads, creating it if necessary.
+     *
+     * @return the shared engine
+     */
+    private synchronized ScriptEngine getSharedEngine() {
+      if (sharedEngine == null) {
+        sharedEngine = scriptEngineFactory.getScriptEngine();
+      }
+
+      return sharedEngine;
+    }
+
+    /**
+     * Get the engine to compile the next script with, creating it if
+     * necessary.
+     *
+     * @return the compile engine
+     */
+    private synchronized ScriptEngine getCompileEngine() {
+      ScriptEngine engine = compileEngines[nextCompileEngine];
+      if (engine == null) {
+        engine = scriptEngineFactory.getScriptEngine();
+        compileEngines[nextCompileEngine] = engine;
+      }
+      nextCompileEngine = (nextCompileEngine + 1) % compileEngines.length;
+
+      return engine;
     }
 
     /**
@@ -18,6 +18,9 @@
 package io.smartspaces.service.template;
 
 import java.io.File;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collection;
 import java.util.Locale;
 import java.util.Map;
 
@@ -86,4 +89,76 @@ public interface Templater extends ManagedResource {
    *        file to writre the template to
    */
   void writeTemplate(String templateName, Map<String, Object> data, Locale locale, File outputFile);
+
+  /**
+   * Instantiate a template given a set of data and write the contents to a
+   * writer.
+   *
+   * <p>
+   * The writer is flushed but not closed.
+   *
+   * @param templateName
+   *        which template to use
+   * @param data
+   *        data for the template
+   * @param locale
+   *        the locale for the format to be instantiated in, can be {@code null}
+   * @param out
+   *        the writer to write the template to
+   */
+  void writeTemplate(String templateName, Map<String, Object> data, Locale locale, Writer out);
+
+  /**
+   * Instantiate a template given a set of data and write the contents to an
+   * output stream.
+   *
+   * <p>
+   * The contents are encoded with the output encoding of the templater. The
+   * stream is flushed but not closed.
+   *
+   * @param templateName
+   *        which template to use
+   * @param data
+   *        data for the template
+   * @param locale
+   *        the locale for the format to be instantiated in, can be {@code null}
+   * @param out
+   *        the stream to write the template to
+   */
+  void writeTemplate(String templateName, Map<String, Object> data, Locale locale,
+      OutputStream out);
+
+  /**
+   * Load and compile a set of templates ahead of time so the first
+   * instantiation of each does not pay for it.
+   *
+   * @param templateNames
+   *        the names of the templates
+   */
+  void precompileTemplates(Collection<String> templateNames);
+
+  /**
+   * Set the number of compiled templates to keep in the cache.
+   *
+   * <p>
+   * This must be called before the templater is started up.
+   *
+   * @param strongSize
+   *        the number of recently used templates which are always kept
+   * @param softSize
+   *        the number of further templates kept until memory runs low
+   */
+  void setTemplateCacheSize(int strongSize, int softSize);
+
+  /**
+   * Set how long a compiled template is used before its source is checked
+   * for changes.
+   *
+   * <p>
+   * This must be called before the templater is started up.
+   *
+   * @param updateDelay
+   *        the delay, in milliseconds, {@code 0} checks on every use
+   */
+  void setTemplateUpdateDelay(long updateDelay);
 }
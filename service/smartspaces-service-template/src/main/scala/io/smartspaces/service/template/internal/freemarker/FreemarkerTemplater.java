@@ -17,14 +17,19 @@
 
 package io.smartspaces.service.template.internal.freemarker;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collection;
 import java.util.Locale;
 import java.util.Map;
 
+import freemarker.cache.MruCacheStorage;
 import freemarker.template.Configuration;
 import freemarker.template.DefaultObjectWrapperBuilder;
 import freemarker.template.Template;
@@ -38,6 +43,11 @@ import io.smartspaces.util.io.FileSupportImpl;
 /**
  * A templater using Freemarker.
  *
+ * <p>
+ * The Freemarker configuration is only changed during startup and shutdown.
+ * Instantiating templates does not take any locks of its own, Freemarker's
+ * template cache is safe to use from many threads.
+ *
  * @author Keith M. Hughes
  */
 public class FreemarkerTemplater implements Templater {
@@ -47,15 +57,60 @@ public class FreemarkerTemplater implements Templater {
    */
   private static final Version FREEMARKER_VERSION = Configuration.VERSION_2_3_28;
 
+  /**
+   * The default number of templates always kept in the template cache.
+   */
+  public static final int TEMPLATE_CACHE_STRONG_SIZE_DEFAULT = 20;
+
+  /**
+   * The default number of further templates kept in the template cache until
+   * memory runs low.
+   */
+  public static final int TEMPLATE_CACHE_SOFT_SIZE_DEFAULT = 250;
+
+  /**
+   * The default time a compiled template is used before its source is checked
+   * for changes, in milliseconds.
+   */
+  public static final long TEMPLATE_UPDATE_DELAY_DEFAULT = 5000;
+
+  /**
+   * The character set templates are written in.
+   */
+  public static final Charset TEMPLATE_CHARSET = Charset.forName("UTF-8");
+
+  /**
+   * The size of the buffer used when writing to output streams and files.
+   */
+  private static final int OUTPUT_BUFFER_SIZE = 8192;
+
   /**
    * The directory containing the templates.
    */
   private final File templateDirectory;
 
   /**
-   * The configuration used by Freemarker.
+   * The configuration used by Freemarker, {@code null} if the templater is not
+   * running.
+   */
+  private volatile Configuration freemarkerConfig;
+
+  /**
+   * The number of templates always kept in the template cache.
    */
-  private Configuration freemarkerConfig;
+  private int templateCacheStrongSize = TEMPLATE_CACHE_STRONG_SIZE_DEFAULT;
+
+  /**
+   * The number of further templates kept in the template cache until memory
+   * runs low.
+   */
+  private int templateCacheSoftSize = TEMPLATE_CACHE_SOFT_SIZE_DEFAULT;
+
+  /**
+   * The time a compiled template is used before its source is checked for
+   * changes, in milliseconds.
+   */
+  private long templateUpdateDelay = TEMPLATE_UPDATE_DELAY_DEFAULT;
 
   /**
    * The file support to use.
@@ -77,11 +132,17 @@ public class FreemarkerTemplater implements Templater {
     try {
       DefaultObjectWrapperBuilder objectWrapperBuilder =
           new DefaultObjectWrapperBuilder(FREEMARKER_VERSION);
-      freemarkerConfig = new Configuration(FREEMARKER_VERSION);
-      freemarkerConfig.setDirectoryForTemplateLoading(templateDirectory);
+      Configuration config = new Configuration(FREEMARKER_VERSION);
+      config.setDirectoryForTemplateLoading(templateDirectory);
       // Specify how templates will see the data-model. This is an
       // advanced topic... but just use this:
-      freemarkerConfig.setObjectWrapper(objectWrapperBuilder.build());
+      config.setObjectWrapper(objectWrapperBuilder.build());
+      config.setOutputEncoding(TEMPLATE_CHARSET.name());
+      config.setCacheStorage(new MruCacheStorage(templateCacheStrongSize, templateCacheSoftSize));
+      config.setTemplateUpdateDelayMilliseconds(templateUpdateDelay);
+
+      // Only published once completely set up.
+      freemarkerConfig = config;
     } catch (Exception e) {
       freemarkerConfig = null;
       throw new SmartSpacesException("Cannot initialize Freemarker templater", e);
@@ -93,23 +154,27 @@ public class FreemarkerTemplater implements Templater {
     freemarkerConfig = null;
   }
 
-  /**
-   * Get the configuration to use, and also check that the system has been
-   * started.
-   *
-   * @return freemarker configuration
-   */
-  private synchronized Configuration getConfiguration() {
-    checkInitialized();
-    return freemarkerConfig;
+  @Override
+  public synchronized void setTemplateCacheSize(int strongSize, int softSize) {
+    templateCacheStrongSize = strongSize;
+    templateCacheSoftSize = softSize;
   }
 
-  /**
-   * Check to see that the template system has been properly initialized.
-   */
-  private void checkInitialized() {
-    if (freemarkerConfig == null) {
-      throw new SimpleSmartSpacesException("Templater has not been started");
+  @Override
+  public synchronized void setTemplateUpdateDelay(long updateDelay) {
+    templateUpdateDelay = updateDelay;
+  }
+
+  @Override
+  public void precompileTemplates(Collection<String> templateNames) {
+    Configuration config = getConfiguration();
+    for (String templateName : templateNames) {
+      try {
+        config.getTemplate(templateName);
+      } catch (Exception e) {
+        throw new SmartSpacesException(
+            String.format("Could not compile template %s", templateName), e);
+      }
     }
   }
 
@@ -120,14 +185,30 @@ public class FreemarkerTemplater implements Templater {
 
   @Override
   public String instantiateTemplate(String templateName, Map<String, Object> data, Locale locale) {
-    checkInitialized();
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    Writer out = new OutputStreamWriter(baos);
+    StringWriter out = new StringWriter();
+    writeTemplate(templateName, data, locale, out);
+
+    return out.toString();
+  }
+
+  @Override
+  public void writeTemplate(String templateName, Map<String, Object> data, File outputFile) {
+    writeTemplate(templateName, data, null, outputFile);
+  }
+
+  @Override
+  public void writeTemplate(String templateName, Map<String, Object> data, Locale locale,
+      File outputFile) {
+    Writer out = null;
     boolean noException = true;
     try {
-      Template template = getConfiguration().getTemplate(templateName, locale);
-
-      template.process(data, out);
+      out = new BufferedWriter(
+          new OutputStreamWriter(new FileOutputStream(outputFile), TEMPLATE_CHARSET),
+          OUTPUT_BUFFER_SIZE);
+      writeTemplate(templateName, data, locale, out);
+    } catch (SmartSpacesException e) {
+      noException = false;
+      throw e;
     } catch (Exception e) {
       noException = false;
       throw new SmartSpacesException(
@@ -135,30 +216,41 @@ public class FreemarkerTemplater implements Templater {
     } finally {
       fileSupport.close(out, noException);
     }
-
-    return new String(baos.toString());
   }
 
   @Override
-  public void writeTemplate(String templateName, Map<String, Object> data, File outputFile) {
-    writeTemplate(templateName, data, null, outputFile);
+  public void writeTemplate(String templateName, Map<String, Object> data, Locale locale,
+      OutputStream out) {
+    writeTemplate(templateName, data, locale,
+        new BufferedWriter(new OutputStreamWriter(out, TEMPLATE_CHARSET), OUTPUT_BUFFER_SIZE));
   }
 
   @Override
-  public void writeTemplate(String templateName, Map<String, Object> data, Locale locale, File outputFile) {
-    checkInitialized();
-    Writer out = null;
-    boolean noException = true;
+  public void writeTemplate(String templateName, Map<String, Object> data, Locale locale,
+      Writer out) {
     try {
       Template template = getConfiguration().getTemplate(templateName, locale);
-      out = new FileWriter(outputFile);
+
       template.process(data, out);
+      out.flush();
     } catch (Exception e) {
-      noException = false;
       throw new SmartSpacesException(
           String.format("Could not instantiate template %s", templateName), e);
-    } finally {
-      fileSupport.close(out, noException);
     }
   }
+
+  /**
+   * Get the configuration to use, and also check that the system has been
+   * started.
+   *
+   * @return freemarker configuration
+   */
+  private Configuration getConfiguration() {
+    Configuration config = freemarkerConfig;
+    if (config == null) {
+      throw new SimpleSmartSpacesException("Templater has not been started");
+    }
+
+    return config;
+  }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.benchmark
+
+import java.util.concurrent.ScheduledExecutorService
+
+import org.apache.commons.logging.impl.NoOpLog
+
+import io.smartspaces.event.observable.StandardEventObservableRegistry
+import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.logging.StandardExtendedLog
+import io.smartspaces.system.SimpleSmartSpacesEnvironment
+import io.smartspaces.time.provider.LocalTimeProvider
+
+/**
+ * Support for the benchmarks.
+ *
+ * <p>
+ * The benchmarks use loggers which drop everything, so that log output is not
+ * what gets measured.
+ *
+ * @author Keith M. Hughes
+ */
+object BenchmarkSupport {
+
+  /**
+   * The name of the sensor measurement message fixture.
+   */
+  final val MESSAGE_MEASUREMENT = "measurement"
+
+  /**
+   * The name of the batch message fixture.
+   */
+  final val MESSAGE_BATCH = "batch"
+
+  /**
+   * The number of readings in the batch message fixture.
+   */
+  val BATCH_MESSAGE_NUMBER_READINGS = 50
+
+  /**
+   * The channels the measurement fixture has readings for.
+   */
+  val MEASUREMENT_CHANNEL_IDS = List("temperature", "humidity", "illuminance", "battery")
+
+  /**
+   * Create a logger which drops everything.
+   *
+   * @param logName
+   *        the name of the log
+   *
+   * @return the logger
+   */
+  def newLog(logName: String): ExtendedLog = {
+    new StandardExtendedLog(logName, new NoOpLog)
+  }
+
+  /**
+   * Create a space environment.
+   *
+   * @param executorService
+   *        the executor service for the environment
+   *
+   * @return the environment
+   */
+  def newSpaceEnvironment(executorService: ScheduledExecutorService): SimpleSmartSpacesEnvironment = {
+    val spaceEnvironment = new SimpleSmartSpacesEnvironment
+    spaceEnvironment.setLog(new NoOpLog)
+    spaceEnvironment.setTimeProvider(new LocalTimeProvider)
+    spaceEnvironment.setExecutorService(executorService)
+    spaceEnvironment.setEventObservableRegistry(new StandardEventObservableRegistry(newLog("events")))
+
+    spaceEnvironment
+  }
+
+  /**
+   * Get the JSON for a message fixture.
+   *
+   * @param messageName
+   *        the name of the fixture
+   *
+   * @return the JSON
+   */
+  def getMessageJson(messageName: String): String = {
+    messageName match {
+      case MESSAGE_MEASUREMENT => newMeasurementMessageJson("sensor.environment.livingroom", 1539900000000l)
+      case MESSAGE_BATCH => newBatchMessageJson()
+    }
+  }
+
+  /**
+   * Create the JSON for a sensor measurement message, as sent by a
+   * multi-channel environment sensor.
+   *
+   * @param sensorId
+   *        external ID of the sensor
+   * @param timestamp
+   *        the measurement timestamp
+   *
+   * @return the JSON
+   */
+  def newMeasurementMessageJson(sensorId: String, timestamp: Long): String = {
+    s"""{
+      "sensor": "${sensorId}",
+      "messageType": "measurement",
+      "messageSender": "controller.livingroom",
+      "version": "1.0",
+      "data": {
+        "timestamp": ${timestamp},
+        "temperature": { "value": 21.5 },
+        "humidity": { "value": 41.25 },
+        "illuminance": { "value": 312.0 },
+        "battery": { "value": 87.0 }
+      }
+    }"""
+  }
+
+  /**
+   * Create the JSON for a batch of readings from several sensors, such as a
+   * sensor hub forwards after a reconnect.
+   *
+   * @return the JSON
+   */
+  def newBatchMessageJson(): String = {
+    val readings = (0 until BATCH_MESSAGE_NUMBER_READINGS).map { i =>
+      s"""{
+        "sensor": "sensor.environment.${i}",
+        "channel": "${MEASUREMENT_CHANNEL_IDS(i % MEASUREMENT_CHANNEL_IDS.size)}",
+        "timestamp": ${1539900000000l + i * 1000},
+        "value": ${20.0 + i * 0.25},
+        "tags": ["environment", "floor${i % 3}"]
+      }"""
+    }
+
+    s"""{
+      "messageType": "composite",
+      "messageSender": "hub.firstfloor",
+      "version": "1.0",
+      "data": {
+        "messages": [${readings.mkString(",")}]
+      }
+    }"""
+  }
+}
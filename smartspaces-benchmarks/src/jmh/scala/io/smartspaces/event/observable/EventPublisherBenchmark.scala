@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.event.observable
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+import io.smartspaces.benchmark.BenchmarkSupport
+
+/**
+ * Benchmarks for publishing events through an event publisher subject.
+ *
+ * <p>
+ * Events are published with and without a subscriber, both building the event
+ * every time and only building it when
+ * {@link EventPublisherSubject#hasObservers} says someone is listening. The
+ * allocation per event comes from the {@code gc} profiler. When everything
+ * inlines the JIT can remove unused events on its own, so also run with
+ * {@code -XX:-DoEscapeAnalysis} to see what a call site the JIT can't see
+ * through pays.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+class EventPublisherBenchmark {
+
+  /**
+   * {@code true} if the subject has a subscriber.
+   */
+  @Param(Array("false", "true"))
+  var subscribed: Boolean = _
+
+  /**
+   * {@code true} if events are only built when there are observers.
+   */
+  @Param(Array("false", "true"))
+  var guarded: Boolean = _
+
+  var subject: EventPublisherSubject[BenchmarkEvent] = _
+
+  /**
+   * The last event seen by the subscriber, so published events escape.
+   */
+  @volatile var lastEvent: BenchmarkEvent = _
+
+  /**
+   * The timestamp for the next event.
+   */
+  var timestamp = 0L
+
+  @Setup def setup(): Unit = {
+    subject = EventPublisherSubject.create[BenchmarkEvent](BenchmarkSupport.newLog("events"))
+    if (subscribed) {
+      subject.subscribe(new BaseObserver[BenchmarkEvent] {
+        override def onNext(event: BenchmarkEvent): Unit = {
+          lastEvent = event
+        }
+      })
+    }
+  }
+
+  @Benchmark def publish(): Long = {
+    timestamp += 1
+    if (!guarded || subject.hasObservers) {
+      subject.onNext(new BenchmarkEvent("sensor", timestamp))
+    }
+
+    timestamp
+  }
+}
+
+/**
+ * The event published during the benchmark.
+ *
+ * @author Keith M. Hughes
+ */
+class BenchmarkEvent(val source: String, val timestamp: Long)
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.expression
+
+import java.util.concurrent.TimeUnit
+
+import scala.beans.BeanProperty
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+import io.smartspaces.evaluation.SimpleEvaluationEnvironment
+import io.smartspaces.evaluation.function.CondFunctionDefinition
+import io.smartspaces.expression.language.ssel.SselExpressionEvaluator
+
+/**
+ * Benchmarks for evaluating SSEL expressions and OGNL filter expressions.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+class ExpressionBenchmark {
+
+  /**
+   * The number of items given to the OGNL filter.
+   */
+  val numberFilterItems = 100
+
+  /**
+   * A string with symbols in it, as found in configurations.
+   */
+  val sselSymbolExpression = "tcp://${$smartspaces.mqtt.broker.host}:${$smartspaces.mqtt.broker.port}"
+
+  /**
+   * A string with a function call in it.
+   */
+  val sselFunctionExpression =
+    "${cond($smartspaces.mode.production, $smartspaces.mqtt.broker.production, $smartspaces.mqtt.broker.development)}"
+
+  /**
+   * A filter as given to the master API.
+   */
+  val ognlFilterExpression = "identifyingName.startsWith('io.smartspaces.activity') && version == '1.0.0'"
+
+  /**
+   * The SSEL evaluator.
+   */
+  var sselEvaluator: SselExpressionEvaluator = _
+
+  /**
+   * The OGNL filter.
+   */
+  var filterExpression: FilterExpression = _
+
+  /**
+   * The items given to the OGNL filter.
+   */
+  var filterItems: Array[ExpressionBenchmarkActivity] = _
+
+  @Setup def setup(): Unit = {
+    val environment = new SimpleEvaluationEnvironment
+    environment.setSymbolValue("smartspaces.mqtt.broker.host", "broker.smartspaces.io")
+    environment.setSymbolValue("smartspaces.mqtt.broker.port", "1883")
+    environment.setSymbolValue("smartspaces.mode.production", "false")
+    environment.setSymbolValue("smartspaces.mqtt.broker.production", "tcp://broker.smartspaces.io:1883")
+    environment.setSymbolValue("smartspaces.mqtt.broker.development", "tcp://localhost:1883")
+    environment.addFunctionDefinition(new CondFunctionDefinition)
+
+    sselEvaluator = new SselExpressionEvaluator
+    sselEvaluator.setEvaluationEnvironment(environment)
+
+    filterExpression = new OgnlExpressionFactory().getFilterExpression(ognlFilterExpression)
+
+    filterItems = (0 until numberFilterItems).map { i =>
+      val identifyingName = if (i % 2 == 0) s"io.smartspaces.activity.example${i}" else s"com.example.activity${i}"
+      new ExpressionBenchmarkActivity(identifyingName, if (i % 3 == 0) "1.0.0" else "1.1.0")
+    }.toArray
+  }
+
+  @Benchmark def sselSymbols(): String = {
+    sselEvaluator.evaluateStringExpression(sselSymbolExpression)
+  }
+
+  @Benchmark def sselFunction(): String = {
+    sselEvaluator.evaluateStringExpression(sselFunctionExpression)
+  }
+
+  /**
+   * Filter a collection of items, as the master does for an API query.
+   */
+  @Benchmark def ognlFilter(): Int = {
+    var numberAccepted = 0
+    filterItems.foreach { item =>
+      if (filterExpression.accept(item)) {
+        numberAccepted += 1
+      }
+    }
+
+    numberAccepted
+  }
+}
+
+/**
+ * An item for the OGNL filter, with the properties master API filters use.
+ *
+ * @author Keith M. Hughes
+ */
+class ExpressionBenchmarkActivity(
+  @BeanProperty val identifyingName: String,
+  @BeanProperty val version: String)
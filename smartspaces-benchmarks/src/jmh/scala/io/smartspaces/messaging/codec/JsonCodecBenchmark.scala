@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.messaging.codec
+
+import java.nio.charset.StandardCharsets
+import java.util.Map
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+import io.smartspaces.benchmark.BenchmarkSupport
+import io.smartspaces.util.data.dynamic.DynamicObject
+import io.smartspaces.util.data.mapper.StandardJsonDataMapper
+
+/**
+ * Benchmarks for the JSON mapper and the JSON message codecs.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+class JsonCodecBenchmark {
+
+  /**
+   * The name of the message fixture.
+   */
+  @Param(Array(BenchmarkSupport.MESSAGE_MEASUREMENT, BenchmarkSupport.MESSAGE_BATCH))
+  var messageName: String = _
+
+  /**
+   * The message as JSON.
+   */
+  var messageJson: String = _
+
+  /**
+   * The message as encoded bytes.
+   */
+  var messageBytes: Array[Byte] = _
+
+  /**
+   * The message as a map.
+   */
+  var messageMap: Map[String, Object] = _
+
+  /**
+   * The message as a dynamic object.
+   */
+  var messageDynamicObject: DynamicObject = _
+
+  val mapCodec = new MapByteArrayMessageCodec
+
+  val dynamicObjectCodec = new DynamicObjectByteArrayCodec
+
+  @Setup def setup(): Unit = {
+    messageJson = BenchmarkSupport.getMessageJson(messageName)
+    messageBytes = messageJson.getBytes(StandardCharsets.UTF_8)
+    messageMap = StandardJsonDataMapper.INSTANCE.parseObject(messageJson)
+    messageDynamicObject = dynamicObjectCodec.decode(messageBytes)
+  }
+
+  @Benchmark def parseJson(): Map[String, Object] = {
+    StandardJsonDataMapper.INSTANCE.parseObject(messageJson)
+  }
+
+  @Benchmark def writeJson(): String = {
+    StandardJsonDataMapper.INSTANCE.toString(messageMap)
+  }
+
+  @Benchmark def decodeMap(): Map[String, Object] = {
+    mapCodec.decode(messageBytes)
+  }
+
+  @Benchmark def encodeMap(): Array[Byte] = {
+    mapCodec.encode(messageMap)
+  }
+
+  @Benchmark def decodeDynamicObject(): DynamicObject = {
+    dynamicObjectCodec.decode(messageBytes)
+  }
+
+  @Benchmark def encodeDynamicObject(): Array[Byte] = {
+    dynamicObjectCodec.encode(messageDynamicObject)
+  }
+}
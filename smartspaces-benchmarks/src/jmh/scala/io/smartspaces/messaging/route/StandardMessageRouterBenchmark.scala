@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.messaging.route
+
+import java.nio.charset.StandardCharsets
+import java.util.Map
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+import io.smartspaces.benchmark.BenchmarkSupport
+import io.smartspaces.handler.ProtectedHandlerContext
+import io.smartspaces.messaging.codec.MapByteArrayMessageCodec
+import io.smartspaces.messaging.route.mqtt.MqttRouteMessageSubscriber
+import io.smartspaces.time.provider.LocalTimeProvider
+
+/**
+ * Benchmarks for the dispatch of incoming route messages by the standard
+ * message router.
+ *
+ * <p>
+ * Messages come in as the bytes an MQTT subscriber hands the router, so each
+ * dispatch includes decoding the message.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class StandardMessageRouterBenchmark {
+
+  /**
+   * The number of input channels the router has handlers for.
+   */
+  @Param(Array("1", "50"))
+  var numberChannels: Int = _
+
+  /**
+   * The router being measured.
+   */
+  var router: StandardMessageRouter = _
+
+  /**
+   * The subscribers for each channel.
+   */
+  var subscribers: Array[RouteMessageSubscriber] = _
+
+  /**
+   * The message, as received.
+   */
+  var messageBytes: Array[Byte] = _
+
+  /**
+   * The index of the channel the next message comes in on.
+   */
+  var nextChannel = 0
+
+  /**
+   * The number of messages the handlers have been given.
+   */
+  var numberHandledMessages = 0l
+
+  @Setup def setup(): Unit = {
+    router = new StandardMessageRouter(new BenchmarkProtectedHandlerContext, new LocalTimeProvider,
+      BenchmarkSupport.newLog("router"))
+
+    val handler = new RouteMessageHandler() {
+      override def onNewMessage(channelId: String, message: Map[String, Object]): Unit = {
+        numberHandledMessages += 1
+      }
+    }
+
+    val codec = new MapByteArrayMessageCodec
+    subscribers = (0 until numberChannels).map { i =>
+      val channelId = "channel" + i
+      router.addRoutableInputMessageHandler(channelId, handler)
+
+      new MqttRouteMessageSubscriber(channelId, null, codec): RouteMessageSubscriber
+    }.toArray
+
+    messageBytes = BenchmarkSupport.getMessageJson(BenchmarkSupport.MESSAGE_MEASUREMENT)
+      .getBytes(StandardCharsets.UTF_8)
+  }
+
+  @Benchmark def dispatch(): Long = {
+    router.handleNewMessage(messageBytes, subscribers(nextChannel))
+
+    nextChannel += 1
+    if (nextChannel == subscribers.length) {
+      nextChannel = 0
+    }
+
+    numberHandledMessages
+  }
+}
+
+/**
+ * A protected handler context which keeps count of the handlers running, as
+ * the activity component context does.
+ *
+ * @author Keith M. Hughes
+ */
+class BenchmarkProtectedHandlerContext extends ProtectedHandlerContext {
+
+  /**
+   * The number of handlers running.
+   */
+  private val numberRunningHandlers = new AtomicInteger
+
+  override def canHandlerRun(): Boolean = true
+
+  override def enterHandler(): Unit = {
+    numberRunningHandlers.incrementAndGet()
+  }
+
+  override def exitHandler(): Unit = {
+    numberRunningHandlers.decrementAndGet()
+  }
+
+  override def handleHandlerError(message: String, throwable: Throwable): Unit = {
+    throw new IllegalStateException(message, throwable)
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.monitor.expectation.time
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+import io.smartspaces.benchmark.BenchmarkSupport
+import io.smartspaces.time.provider.SettableTimeProvider
+
+/**
+ * Benchmarks comparing the standard and timer wheel heartbeat expectation
+ * monitors.
+ *
+ * <p>
+ * The clock is simulated. Each operation is one scan period, in which the
+ * watchers due a heartbeat send one and the monitor is then scanned. Watchers
+ * beat on a fixed period, staggered so the same number beat in every scan
+ * period. Some watchers go silent for a while and then come back, so lost and
+ * regained heartbeats are part of the work.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class HeartbeatExpectationMonitorBenchmark {
+
+  /**
+   * The time between scans, in milliseconds.
+   */
+  val SCAN_PERIOD = 100L
+
+  /**
+   * The time between heartbeats for each watcher, in milliseconds.
+   */
+  val HEARTBEAT_PERIOD = 1000L
+
+  /**
+   * The heartbeat expectation time, in milliseconds.
+   */
+  val HEARTBEAT_EXPECTATION_TIME = 5000L
+
+  /**
+   * How long silent watchers are silent for, and then beat for, in
+   * milliseconds.
+   */
+  val SILENCE_PERIOD = 20000L
+
+  /**
+   * One in this many watchers goes silent.
+   */
+  val SILENT_WATCHER_RATIO = 100
+
+  /**
+   * The type of monitor, either {@code standard} or {@code timerWheel}.
+   */
+  @Param(Array("standard", "timerWheel"))
+  var monitorType: String = _
+
+  /**
+   * The number of watchers.
+   */
+  @Param(Array("10000", "100000"))
+  var numberWatchers: Int = _
+
+  var timeProvider: SettableTimeProvider = _
+
+  var monitor: HeartbeatExpectationMonitor[Integer] = _
+
+  var listener: CountingHeartbeatExpectationMonitorListener = _
+
+  /**
+   * The IDs of the watchers.
+   */
+  var ids: Array[String] = _
+
+  /**
+   * The number of watchers which beat in each scan period.
+   */
+  var watchersPerScan = 0
+
+  /**
+   * The watcher which beats next.
+   */
+  var nextWatcher = 0
+
+  /**
+   * The current simulated time.
+   */
+  var time = 0L
+
+  @Setup def setup(): Unit = {
+    timeProvider = new SettableTimeProvider
+    listener = new CountingHeartbeatExpectationMonitorListener
+    val log = BenchmarkSupport.newLog("heartbeat")
+    monitor = monitorType match {
+      case "standard" =>
+        new StandardHeartbeatExpectationMonitor(HEARTBEAT_EXPECTATION_TIME, listener, timeProvider, log)
+      case "timerWheel" =>
+        new TimerWheelHeartbeatExpectationMonitor(HEARTBEAT_EXPECTATION_TIME, listener, timeProvider, log)
+      case _ => throw new IllegalArgumentException(s"Unknown monitor type ${monitorType}")
+    }
+
+    ids = Array.tabulate(numberWatchers)(_.toString)
+    time = 0
+    timeProvider.setCurrentTime(time)
+    for (i <- 0 until numberWatchers) {
+      monitor.addMonitoredWatcher(ids(i), i)
+    }
+
+    watchersPerScan = (numberWatchers * SCAN_PERIOD / HEARTBEAT_PERIOD).toInt
+    nextWatcher = 0
+  }
+
+  @Benchmark def scanPeriod(): Int = {
+    time += SCAN_PERIOD
+    timeProvider.setCurrentTime(time)
+
+    val silence = (time / SILENCE_PERIOD) % 2 == 1
+    var i = 0
+    while (i < watchersPerScan) {
+      if (!silence || nextWatcher % SILENT_WATCHER_RATIO != 0) {
+        monitor.updateHeartbeat(ids(nextWatcher), time)
+      }
+      nextWatcher = (nextWatcher + 1) % numberWatchers
+      i += 1
+    }
+
+    monitor.scan()
+
+    listener.numberLost
+  }
+}
+
+/**
+ * A heartbeat expectation monitor listener which counts lost and regained
+ * heartbeats.
+ *
+ * @author Keith M. Hughes
+ */
+class CountingHeartbeatExpectationMonitorListener extends HeartbeatExpectationMonitorListener[Integer] {
+
+  /**
+   * The number of lost heartbeats.
+   */
+  var numberLost = 0
+
+  /**
+   * The number of regained heartbeats.
+   */
+  var numberRegained = 0
+
+  override def onHeartbeatLost(watcher: HeartbeatMonitorWatcher[Integer], timeLost: Long,
+      timeSinceLastHeartbeat: Long): Unit = {
+    numberLost += 1
+  }
+
+  override def onHeartbeatRegained(watcher: HeartbeatMonitorWatcher[Integer], timeRegained: Long): Unit = {
+    numberRegained += 1
+  }
+}
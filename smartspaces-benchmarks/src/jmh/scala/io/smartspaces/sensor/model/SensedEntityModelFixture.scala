@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.sensor.model
+
+import io.smartspaces.benchmark.BenchmarkSupport
+import io.smartspaces.sensor.domain.DataSourceAcquisitionModeCategoricalValueInstances
+import io.smartspaces.sensor.domain.MeasurementTypeDescription
+import io.smartspaces.sensor.domain.SimpleDataSourceProviderDescription
+import io.smartspaces.sensor.domain.SimpleDataSourceProviderTypeDescription
+import io.smartspaces.sensor.domain.SimpleMeasurementTypeDescription
+import io.smartspaces.sensor.domain.SimplePhysicalSpaceSensedEntityDescription
+import io.smartspaces.sensor.domain.SimpleSensorChannelDetailDescription
+import io.smartspaces.sensor.domain.SimpleSensorEntityDescription
+import io.smartspaces.sensor.domain.SimpleSensorTypeDescription
+import io.smartspaces.sensor.services.domain.InMemorySensorCommonRegistry
+import io.smartspaces.sensor.services.domain.InMemorySensorInstanceRegistry
+import io.smartspaces.sensor.services.processing.StandardSensorProcessingEventEmitter
+import io.smartspaces.sensor.services.processing.value.NumericContinuousValueSensorValueProcessor
+import io.smartspaces.sensor.services.processing.value.StandardSensorValueProcessorRegistry
+import io.smartspaces.system.SimpleSmartSpacesEnvironment
+import io.smartspaces.util.concurrency.DefaultScheduledExecutorService
+
+/**
+ * A complete sensed entity model for benchmarks.
+ *
+ * <p>
+ * Every sensor is a multi-channel environment sensor, with a channel for each
+ * reading in the measurement message fixture. The sensors are spread over
+ * rooms, four to a room.
+ *
+ * @author Keith M. Hughes
+ *
+ * @param numberSensors
+ *        the number of sensors in the model
+ */
+class SensedEntityModelFixture(val numberSensors: Int) {
+
+  /**
+   * The number of sensors in each room.
+   */
+  val numberSensorsPerRoom = 4
+
+  /**
+   * The time after which a channel is offline if it gets no new values.
+   */
+  val channelStateUpdateTimeLimit = 60000l
+
+  val log = BenchmarkSupport.newLog("sensor")
+
+  val executorService = new DefaultScheduledExecutorService
+
+  val spaceEnvironment: SimpleSmartSpacesEnvironment = BenchmarkSupport.newSpaceEnvironment(executorService)
+
+  /**
+   * The external IDs of the sensors.
+   */
+  val sensorExternalIds: Array[String] = (0 until numberSensors).map("sensor.environment." + _).toArray
+
+  /**
+   * The model.
+   */
+  val model: StandardCompleteSensedEntityModel = newModel()
+
+  /**
+   * Get a channel of a sensor.
+   *
+   * @param sensorIndex
+   *        the index of the sensor
+   * @param channelId
+   *        the ID of the channel
+   *
+   * @return the channel model
+   */
+  def getSensorChannelModel(sensorIndex: Int, channelId: String): SensorChannelEntityModel = {
+    model.getSensorEntityModelByExternalId(sensorExternalIds(sensorIndex)).get.getSensorChannelEntityModel(
+      channelId).get
+  }
+
+  /**
+   * Shut the fixture down.
+   */
+  def shutdown(): Unit = {
+    executorService.shutdown()
+  }
+
+  /**
+   * Create the model.
+   *
+   * @return the prepared model
+   */
+  private def newModel(): StandardCompleteSensedEntityModel = {
+    val sensorCommonRegistry = new InMemorySensorCommonRegistry(log)
+    val sensorRegistry = new InMemorySensorInstanceRegistry(log)
+    val sensorValueProcessorRegistry = new StandardSensorValueProcessorRegistry(log)
+
+    val channelDetails = BenchmarkSupport.MEASUREMENT_CHANNEL_IDS.zipWithIndex.map {
+      case (channelId, index) =>
+        val measurementType = new SimpleMeasurementTypeDescription(index.toString, "measurement." + channelId,
+          channelId, None, "sensor", MeasurementTypeDescription.VALUE_TYPE_NUMERIC_CONTINUOUS, Set())
+        sensorCommonRegistry.registerMeasurementType(measurementType)
+        sensorValueProcessorRegistry.addSensorValueProcessor(
+          new NumericContinuousValueSensorValueProcessor(measurementType))
+
+        new SimpleSensorChannelDetailDescription(channelId, channelId, None, measurementType, None,
+          Some(channelStateUpdateTimeLimit), None)
+    }
+
+    val dataSourceProviderId = "provider.mqtt"
+    sensorCommonRegistry.registerDataSourceProviderType(new SimpleDataSourceProviderTypeDescription(
+      dataSourceProviderId, "origin.mqtt", "interface.mqtt", DataSourceAcquisitionModeCategoricalValueInstances.PUSH,
+      false))
+
+    val sensorType = new SimpleSensorTypeDescription("1", "sensor.type.environment", "Environment", None, None, None,
+      None, List(dataSourceProviderId), None, None, "*", channelDetails)
+    sensorCommonRegistry.registerSensorType(sensorType)
+
+    val numberRooms = (numberSensors + numberSensorsPerRoom - 1) / numberSensorsPerRoom
+    (0 until numberRooms).foreach { i =>
+      sensorRegistry.registerSensedEntity(new SimplePhysicalSpaceSensedEntityDescription("room" + i, "room." + i,
+        "Room " + i, None, None, Set(), Set()))
+    }
+
+    sensorExternalIds.zipWithIndex.foreach {
+      case (sensorExternalId, i) =>
+        sensorRegistry.registerSensor(new SimpleSensorEntityDescription("sensor" + i, sensorExternalId,
+          "Sensor " + i, None, sensorType, new SimpleDataSourceProviderDescription(dataSourceProviderId, None),
+          None, None))
+
+        channelDetails.foreach { channelDetail =>
+          sensorRegistry.associateSensorWithSensedEntity(sensorExternalId, channelDetail.channelId,
+            "room." + (i / numberSensorsPerRoom), None, None)
+        }
+    }
+
+    val eventEmitter = new StandardSensorProcessingEventEmitter(None, spaceEnvironment, log)
+
+    val model = new StandardCompleteSensedEntityModel(sensorValueProcessorRegistry, sensorCommonRegistry,
+      sensorRegistry, eventEmitter, log, spaceEnvironment)
+    model.prepare()
+
+    model
+  }
+}
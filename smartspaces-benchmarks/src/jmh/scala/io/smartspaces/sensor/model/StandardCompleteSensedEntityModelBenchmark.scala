@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.sensor.model
+
+import java.util.Map
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+
+import io.smartspaces.benchmark.BenchmarkSupport
+import io.smartspaces.sensor.messaging.messages.SensorMessages
+import io.smartspaces.sensor.services.processing.StandardSensedEntityModelProcessor
+import io.smartspaces.util.data.dynamic.StandardDynamicObjectNavigator
+import io.smartspaces.util.data.mapper.StandardJsonDataMapper
+
+/**
+ * Benchmarks for updating the standard complete sensed entity model from
+ * sensor measurement messages.
+ *
+ * <p>
+ * Each update goes through the sensed entity model processor, the same as a
+ * message from a sensor handler.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+class StandardCompleteSensedEntityModelBenchmark {
+
+  /**
+   * The number of sensors in the model.
+   */
+  @Param(Array("10", "1000"))
+  var numberSensors: Int = _
+
+  var fixture: SensedEntityModelFixture = _
+
+  var processor: StandardSensedEntityModelProcessor = _
+
+  /**
+   * A measurement message for each sensor.
+   */
+  var messages: Array[Map[String, Object]] = _
+
+  /**
+   * The index of the sensor the next message is from.
+   */
+  var nextSensor = 0
+
+  @Setup def setup(): Unit = {
+    fixture = new SensedEntityModelFixture(numberSensors)
+    processor = new StandardSensedEntityModelProcessor(fixture.model, null, fixture.log)
+
+    val timestamp = fixture.spaceEnvironment.getTimeProvider.getCurrentTime
+    messages = fixture.sensorExternalIds.map { sensorExternalId =>
+      StandardJsonDataMapper.INSTANCE.parseObject(
+        BenchmarkSupport.newMeasurementMessageJson(sensorExternalId, timestamp))
+    }
+  }
+
+  @TearDown def teardown(): Unit = {
+    fixture.shutdown()
+  }
+
+  /**
+   * Update the model with a measurement message, as the sensed entity sensor
+   * handler does.
+   */
+  @Benchmark def updateModel(): Long = {
+    val message = new StandardDynamicObjectNavigator(messages(nextSensor))
+    nextSensor += 1
+    if (nextSensor == messages.length) {
+      nextSensor = 0
+    }
+
+    val model = fixture.model
+    val sensor = model.getSensorEntityModelByExternalId(
+      message.getString(SensorMessages.SENSOR_MESSAGE_FIELD_NAME_SENSOR)).get
+    model.doVoidWriteTransaction { () =>
+      processor.handleNewSensorMessage(null, fixture.spaceEnvironment.getTimeProvider.getCurrentTime, sensor,
+        message)
+    }
+
+    model.modelVersion
+  }
+
+  /**
+   * Check the model for entities which have gone offline.
+   */
+  @Benchmark def checkModels(): Long = {
+    fixture.model.checkModels()
+
+    fixture.model.modelVersion
+  }
+}
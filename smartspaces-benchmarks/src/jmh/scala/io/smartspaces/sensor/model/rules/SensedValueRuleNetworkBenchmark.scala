@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.sensor.model.rules
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+
+import io.smartspaces.evaluation.ExecutionContext
+import io.smartspaces.evaluation.StandardExecutionContext
+import io.smartspaces.interaction.rules.Rule
+import io.smartspaces.interaction.rules.RuleAction
+import io.smartspaces.interaction.rules.RuleTrigger
+import io.smartspaces.interaction.rules.StandardRule
+import io.smartspaces.sensor.model.SensedEntityModelFixture
+import io.smartspaces.sensor.model.SensorChannelEntityModel
+import io.smartspaces.sensor.model.SimpleNumericContinuousSensedValue
+
+/**
+ * Benchmarks for evaluating rules triggered by a sensor channel, with each
+ * rule evaluated by its own trigger and with the rules compiled into a sensed
+ * value rule network.
+ *
+ * <p>
+ * Every rule has a single threshold guard, and the rules share a small number
+ * of distinct thresholds.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class SensedValueRuleNetworkBenchmark {
+
+  /**
+   * The value name the sensed value is bound to.
+   */
+  val valueName = "temperature"
+
+  /**
+   * The number of distinct thresholds used by the rule guards.
+   */
+  val numberThresholds = 10
+
+  /**
+   * The number of rules on the channel.
+   */
+  @Param(Array("10", "1000"))
+  var numberRules: Int = _
+
+  /**
+   * {@code true} if the rules are compiled into a network.
+   */
+  @Param(Array("false", "true"))
+  var compiled: Boolean = _
+
+  var fixture: SensedEntityModelFixture = _
+
+  var sensorChannelModel: SensorChannelEntityModel = _
+
+  /**
+   * The value given to the channel, which passes half of the thresholds.
+   */
+  var sensedValue: SimpleNumericContinuousSensedValue = _
+
+  /**
+   * The action of every rule.
+   */
+  val action = new CountingRuleAction
+
+  @Setup def setup(): Unit = {
+    fixture = new SensedEntityModelFixture(1)
+    sensorChannelModel = fixture.getSensorChannelModel(0, valueName)
+
+    val rootExecutionContext: ExecutionContext =
+      new StandardExecutionContext(null, fixture.spaceEnvironment, fixture.log)
+
+    // Adding the triggers attaches them to the channel.
+    val rules = (0 until numberRules).map { i =>
+      val rule = new StandardRule("rule" + i, rootExecutionContext)
+      rule.addRuleTrigger(new SensorChannelSensedValueRuleTrigger("trigger", rule, sensorChannelModel, valueName))
+      rule.addRuleGuard(new SimpleNumericContinuousSensedValueAboveRuleGuard(i % numberThresholds, valueName))
+      rule.addRuleAction(action)
+
+      rule: Rule
+    }
+
+    if (compiled) {
+      new SensedValueRuleNetworkCompiler().compile(rules, rootExecutionContext).attach()
+    }
+
+    val timestamp = fixture.spaceEnvironment.getTimeProvider.getCurrentTime
+    sensedValue = new SimpleNumericContinuousSensedValue(sensorChannelModel, numberThresholds / 2 - 0.5, None,
+      timestamp, timestamp)
+  }
+
+  @TearDown def teardown(): Unit = {
+    fixture.shutdown()
+  }
+
+  @Benchmark def updateValue(): Long = {
+    sensorChannelModel.updateSensedValue(sensedValue, sensedValue.timestampMeasurement)
+
+    action.numberEvaluations
+  }
+}
+
+/**
+ * A rule action which counts how often it is evaluated.
+ *
+ * @author Keith M. Hughes
+ */
+class CountingRuleAction extends RuleAction {
+
+  /**
+   * The number of times the action has been evaluated.
+   */
+  var numberEvaluations = 0l
+
+  override def initialize(): Unit = {
+    // Nothing to do.
+  }
+
+  override def evaluate(rule: Rule, trigger: RuleTrigger, executionContext: ExecutionContext): Unit = {
+    numberEvaluations += 1
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.service.web.server.internal.netty
+
+import java.io.File
+import java.io.InputStream
+import java.net.HttpURLConnection
+import java.net.ServerSocket
+import java.net.URL
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+
+import io.smartspaces.benchmark.BenchmarkSupport
+import io.smartspaces.service.web.server.HttpGetRequestHandler
+import io.smartspaces.service.web.server.HttpRequest
+import io.smartspaces.service.web.server.HttpResponse
+import io.smartspaces.util.concurrency.DefaultScheduledExecutorService
+import io.smartspaces.util.web.HttpResponseCode
+
+/**
+ * Benchmarks for GET requests to the Netty web server over loopback.
+ *
+ * <p>
+ * The client keeps its connection alive, so the time is mostly the request
+ * going through the server's pipeline and handler rather than connecting.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class NettyWebServerBenchmark {
+
+  /**
+   * The prefix for the dynamic content.
+   */
+  val DYNAMIC_PREFIX = "/dynamic"
+
+  /**
+   * The prefix for the static content.
+   */
+  val STATIC_PREFIX = "/static"
+
+  /**
+   * The name of the static content file.
+   */
+  val STATIC_FILE_NAME = "measurement.json"
+
+  var executorService: DefaultScheduledExecutorService = _
+
+  var webServer: NettyWebServer = _
+
+  /**
+   * The folder the static content is in.
+   */
+  var staticContentFolder: File = _
+
+  var dynamicUrl: URL = _
+
+  var staticUrl: URL = _
+
+  /**
+   * The buffer for reading responses.
+   */
+  val readBuffer = new Array[Byte](8192)
+
+  @Setup def setup(): Unit = {
+    val content = BenchmarkSupport.getMessageJson(BenchmarkSupport.MESSAGE_MEASUREMENT).getBytes(StandardCharsets.UTF_8)
+
+    staticContentFolder = Files.createTempDirectory("benchmark-web").toFile
+    Files.write(new File(staticContentFolder, STATIC_FILE_NAME).toPath, content)
+
+    executorService = new DefaultScheduledExecutorService
+    webServer = new NettyWebServer(executorService, BenchmarkSupport.newLog("web"))
+    webServer.setServerName("benchmark")
+    webServer.setPort(findFreePort())
+    webServer.addGetRequestHandler(DYNAMIC_PREFIX, false, new HttpGetRequestHandler {
+      override def handleGetHttpRequest(request: HttpRequest, response: HttpResponse): Unit = {
+        response.setResponseCode(HttpResponseCode.OK)
+        response.setContentType("application/json")
+        response.getOutputStream.write(content)
+      }
+    })
+    webServer.addStaticContentHandler(STATIC_PREFIX, staticContentFolder)
+    webServer.startup()
+
+    dynamicUrl = new URL(s"http://localhost:${webServer.getPort}${DYNAMIC_PREFIX}")
+    staticUrl = new URL(s"http://localhost:${webServer.getPort}${STATIC_PREFIX}/${STATIC_FILE_NAME}")
+  }
+
+  @TearDown def teardown(): Unit = {
+    webServer.shutdown()
+    executorService.shutdown()
+
+    staticContentFolder.listFiles.foreach(_.delete)
+    staticContentFolder.delete
+  }
+
+  @Benchmark def getDynamic(): Int = {
+    get(dynamicUrl)
+  }
+
+  @Benchmark def getStatic(): Int = {
+    get(staticUrl)
+  }
+
+  /**
+   * Make a GET request and read the whole response.
+   *
+   * <p>
+   * The response has to be read completely for the connection to be reused.
+   *
+   * @param url
+   *          the URL to get
+   *
+   * @return the number of bytes in the response
+   */
+  private def get(url: URL): Int = {
+    val connection = url.openConnection.asInstanceOf[HttpURLConnection]
+    if (connection.getResponseCode != HttpResponseCode.OK) {
+      throw new IllegalStateException(s"GET ${url} returned ${connection.getResponseCode}")
+    }
+
+    val in: InputStream = connection.getInputStream
+    try {
+      var total = 0
+      var read = in.read(readBuffer)
+      while (read >= 0) {
+        total += read
+        read = in.read(readBuffer)
+      }
+
+      total
+    } finally {
+      in.close()
+    }
+  }
+
+  /**
+   * Find a port nothing is listening on.
+   *
+   * @return the port
+   */
+  private def findFreePort(): Int = {
+    val socket = new ServerSocket(0)
+    try {
+      socket.getLocalPort
+    } finally {
+      socket.close()
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.tasks
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations.AuxCounters
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.infra.BenchmarkParams
+
+import io.smartspaces.benchmark.BenchmarkSupport
+import io.smartspaces.util.concurrency.DefaultScheduledExecutorService
+import io.smartspaces.util.concurrency.ExecutorServiceConfiguration
+
+/**
+ * Benchmarks for running tasks through a set of sequential task queues.
+ *
+ * <p>
+ * Each operation gives every busy queue a burst of tasks and waits for all of
+ * them to run. Simple queues hold a thread each for their whole life, executor
+ * queues only use a thread while they have tasks, so the number of queues
+ * matters more for the simple queues. Idle queues are started but never given
+ * tasks.
+ *
+ * <p>
+ * The number of threads in the executor's blocking lane, and the number of
+ * live threads in the process, are reported once the queues have started and
+ * again after the bursts.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class SequentialTaskQueueBenchmark {
+
+  /**
+   * The number of tasks given to each queue in an operation.
+   */
+  val TASKS_PER_QUEUE = 10
+
+  /**
+   * The type of queue, either {@code simple} or {@code executor}.
+   */
+  @Param(Array("simple", "executor"))
+  var queueType: String = _
+
+  /**
+   * The number of queues which are given tasks.
+   */
+  @Param(Array("1", "100"))
+  var numberQueues: Int = _
+
+  /**
+   * The number of queues which are never given tasks.
+   */
+  @Param(Array("0", "1000"))
+  var numberIdleQueues: Int = _
+
+  var executorService: DefaultScheduledExecutorService = _
+
+  var queues: Array[SequentialTaskQueue] = _
+
+  var idleQueues: Array[SequentialTaskQueue] = _
+
+  /**
+   * The number of threads in the blocking lane once the queues have started.
+   */
+  var idlePoolSize = 0l
+
+  /**
+   * The number of live threads once the queues have started.
+   */
+  var idleLiveThreads = 0l
+
+  /**
+   * The latch for the tasks of the current operation.
+   */
+  @volatile var latch: CountDownLatch = _
+
+  /**
+   * The task given to the queues.
+   */
+  val countDownTask = new Runnable {
+    override def run(): Unit = {
+      latch.countDown()
+    }
+  }
+
+  @Setup def setup(): Unit = {
+    // Simple queues need a thread each, so there must be room for all of them.
+    val configuration = new ExecutorServiceConfiguration
+    configuration.setBlockingThreadsMax(
+      math.max(configuration.getBlockingThreadsMax, 2 * (numberQueues + numberIdleQueues)))
+    executorService = new DefaultScheduledExecutorService(configuration)
+    val spaceEnvironment = BenchmarkSupport.newSpaceEnvironment(executorService)
+    val log = BenchmarkSupport.newLog("tasks")
+
+    def newQueue(): SequentialTaskQueue = {
+      queueType match {
+        case "simple" => new SimpleSequentialTaskQueue(spaceEnvironment, log)
+        case "executor" => new ExecutorSequentialTaskQueue(spaceEnvironment, log)
+        case _ => throw new IllegalArgumentException(s"Unknown queue type ${queueType}")
+      }
+    }
+    queues = Array.fill(numberQueues)(newQueue())
+    idleQueues = Array.fill(numberIdleQueues)(newQueue())
+    queues.foreach(_.startup())
+    idleQueues.foreach(_.startup())
+
+    idlePoolSize = executorService.getBlockingLaneMetrics.getPoolSize
+    idleLiveThreads = ManagementFactory.getThreadMXBean.getThreadCount
+  }
+
+  @TearDown def teardown(): Unit = {
+    queues.foreach(_.shutdown())
+    idleQueues.foreach(_.shutdown())
+    executorService.shutdown()
+  }
+
+  @Benchmark def runTasks(threadCounts: ThreadCounts): Long = {
+    latch = new CountDownLatch(numberQueues * TASKS_PER_QUEUE)
+
+    var i = 0
+    while (i < TASKS_PER_QUEUE) {
+      queues.foreach(_.addTask(countDownTask))
+      i += 1
+    }
+    latch.await()
+
+    threadCounts.record(this)
+
+    latch.getCount
+  }
+}
+
+/**
+ * The thread counts for the sequential task queue benchmark.
+ *
+ * <p>
+ * JMH adds up events over the measurement iterations, so the counts are
+ * divided by the number of iterations.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+class ThreadCounts {
+
+  /**
+   * The number of measurement iterations.
+   */
+  private var measurementIterations = 1
+
+  private var _idlePoolSize = 0l
+
+  private var _idleLiveThreads = 0l
+
+  private var _burstPoolSize = 0l
+
+  private var _burstLiveThreads = 0l
+
+  @Setup def setup(benchmarkParams: BenchmarkParams): Unit = {
+    measurementIterations = benchmarkParams.getMeasurement.getCount
+  }
+
+  /**
+   * Get the number of threads in the blocking lane once the queues have started.
+   */
+  def idlePoolSize: Double = _idlePoolSize.toDouble / measurementIterations
+
+  /**
+   * Get the number of live threads once the queues have started.
+   */
+  def idleLiveThreads: Double = _idleLiveThreads.toDouble / measurementIterations
+
+  /**
+   * Get the largest number of threads in the blocking lane after a burst.
+   */
+  def burstPoolSize: Double = _burstPoolSize.toDouble / measurementIterations
+
+  /**
+   * Get the largest number of live threads after a burst.
+   */
+  def burstLiveThreads: Double = _burstLiveThreads.toDouble / measurementIterations
+
+  /**
+   * Record the thread counts after a burst.
+   *
+   * @param benchmark
+   *        the benchmark
+   */
+  def record(benchmark: SequentialTaskQueueBenchmark): Unit = {
+    _idlePoolSize = benchmark.idlePoolSize
+    _idleLiveThreads = benchmark.idleLiveThreads
+    _burstPoolSize = math.max(_burstPoolSize, benchmark.executorService.getBlockingLaneMetrics.getPoolSize)
+    _burstLiveThreads = math.max(_burstLiveThreads, ManagementFactory.getThreadMXBean.getThreadCount)
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.util.data.dynamic
+
+import java.util.Map
+import java.util.concurrent.TimeUnit
+
+import scala.collection.JavaConverters.iterableAsScalaIterableConverter
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+import io.smartspaces.benchmark.BenchmarkSupport
+import io.smartspaces.util.data.mapper.StandardJsonDataMapper
+
+/**
+ * Benchmarks for reading messages with the standard dynamic object navigator,
+ * the way the sensor processing reads them.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+class StandardDynamicObjectNavigatorBenchmark {
+
+  /**
+   * A sensor measurement message.
+   */
+  var measurementMessage: Map[String, Object] = _
+
+  /**
+   * A batch of sensor readings.
+   */
+  var batchMessage: Map[String, Object] = _
+
+  @Setup def setup(): Unit = {
+    measurementMessage = StandardJsonDataMapper.INSTANCE.parseObject(
+      BenchmarkSupport.getMessageJson(BenchmarkSupport.MESSAGE_MEASUREMENT))
+    batchMessage = StandardJsonDataMapper.INSTANCE.parseObject(
+      BenchmarkSupport.getMessageJson(BenchmarkSupport.MESSAGE_BATCH))
+  }
+
+  /**
+   * Read every channel value of a measurement message.
+   */
+  @Benchmark def readMeasurement(): Double = {
+    val message = new StandardDynamicObjectNavigator(measurementMessage)
+
+    var total = 0.0
+    message.down("data")
+    val timestamp = message.getLongValue("timestamp", 0)
+    message.getProperties.asScala.foreach { channelId =>
+      if (channelId != "timestamp") {
+        message.down(channelId)
+        total += message.getDoubleValue("value", 0.0)
+        message.up
+      }
+    }
+    message.up
+
+    total + timestamp
+  }
+
+  /**
+   * Read every reading of a batch message.
+   */
+  @Benchmark def readBatch(): Double = {
+    val message = new StandardDynamicObjectNavigator(batchMessage)
+
+    var total = 0.0
+    message.down("data")
+    message.down("messages")
+    message.getArrayEntries.asScala.foreach { entry =>
+      val reading = entry.down()
+      total += reading.getDoubleValue("value", 0.0) + reading.getString("sensor").length
+    }
+    message.up
+    message.up
+
+    total
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.messaging.mqtt
+
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.util.Map
+import java.util.Properties
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener
+import org.eclipse.paho.client.mqttv3.IMqttToken
+import org.eclipse.paho.client.mqttv3.MqttException
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+
+import io.moquette.BrokerConstants
+import io.moquette.broker.Server
+import io.moquette.broker.config.MemoryConfig
+
+import io.smartspaces.benchmark.BenchmarkSupport
+import io.smartspaces.messaging.codec.MapByteArrayMessageCodec
+import io.smartspaces.util.data.mapper.StandardJsonDataMapper
+
+/**
+ * Benchmarks for publishing messages to an MQTT broker through a client pool.
+ *
+ * <p>
+ * A Moquette broker is run in the benchmark process on a free loopback port,
+ * so no outside broker is needed. Each publish encodes the message and hands
+ * it to the pool client for its topic. A publish is tried again while the
+ * in-flight window of its connection is full, so the throughput includes
+ * waiting for the broker's acknowledgements at QoS 1. The latency benchmark
+ * waits for each message to complete before sending the next.
+ *
+ * @author Keith M. Hughes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class MqttPublishBenchmark {
+
+  /**
+   * The number of topics the messages are spread over.
+   */
+  val NUMBER_TOPICS = 8
+
+  /**
+   * The number of connections in the client pool.
+   */
+  @Param(Array("1", "4"))
+  var publisherConnections: Int = _
+
+  /**
+   * The quality of service of the messages.
+   */
+  @Param(Array("0", "1"))
+  var qos: Int = _
+
+  /**
+   * The most messages in flight on a connection.
+   */
+  @Param(Array("10", "100"))
+  var maxInFlight: Int = _
+
+  var broker: Server = _
+
+  var executorService: ScheduledExecutorService = _
+
+  var clientPool: MqttClientPool = _
+
+  /**
+   * The topics the messages are published on.
+   */
+  var topicNames: Array[String] = _
+
+  /**
+   * The clients for the topics.
+   */
+  var topicClients: Array[PahoMqttClient] = _
+
+  /**
+   * The index of the next topic to publish on.
+   */
+  var nextTopic = 0
+
+  val codec = new MapByteArrayMessageCodec
+
+  /**
+   * The message to publish.
+   */
+  var message: Map[String, Object] = _
+
+  @Setup def setup(): Unit = {
+    val log = BenchmarkSupport.newLog("mqtt")
+
+    val port = findFreePort()
+    val brokerProperties = new Properties
+    brokerProperties.setProperty(BrokerConstants.HOST_PROPERTY_NAME, InetAddress.getLoopbackAddress.getHostAddress)
+    brokerProperties.setProperty(BrokerConstants.PORT_PROPERTY_NAME, port.toString)
+    brokerProperties.setProperty(BrokerConstants.WEB_SOCKET_PORT_PROPERTY_NAME, BrokerConstants.DISABLED_PORT_BIND)
+    brokerProperties.setProperty(BrokerConstants.PERSISTENT_STORE_PROPERTY_NAME, "")
+    brokerProperties.setProperty(BrokerConstants.ALLOW_ANONYMOUS_PROPERTY_NAME, "true")
+    // Otherwise acknowledgements sit in the broker's buffers until its next periodic flush.
+    brokerProperties.setProperty(BrokerConstants.IMMEDIATE_BUFFER_FLUSH_PROPERTY_NAME, "true")
+    broker = new Server
+    broker.startServer(new MemoryConfig(brokerProperties))
+
+    executorService = Executors.newScheduledThreadPool(2)
+
+    val brokerDescription = MqttBrokerDescription.parse(
+      s"""tcp://${InetAddress.getLoopbackAddress.getHostAddress}:${port}@{"maxInFlight": ${maxInFlight}, "publisherConnections": ${publisherConnections}}""")
+    clientPool = new MqttClientPool(brokerDescription, "benchmark", executorService, log)
+    clientPool.startup()
+
+    // Connecting all the clients up front keeps the connects out of the measurements.
+    topicNames = (0 until NUMBER_TOPICS).map((i) => s"/smartspaces/benchmark/${i}").toArray
+    topicClients = topicNames.map(clientPool.getClientForTopic(_))
+
+    message = StandardJsonDataMapper.INSTANCE.parseObject(
+      BenchmarkSupport.getMessageJson(BenchmarkSupport.MESSAGE_MEASUREMENT))
+  }
+
+  @TearDown def teardown(): Unit = {
+    // The clients wait for the messages in flight while disconnecting.
+    clientPool.shutdown()
+    executorService.shutdownNow()
+    broker.stopServer()
+  }
+
+  @Benchmark def publish(): Unit = {
+    val topic = nextTopic
+    nextTopic = (nextTopic + 1) % NUMBER_TOPICS
+
+    val payload = codec.encode(message)
+
+    var published = false
+    while (!published) {
+      try {
+        topicClients(topic).publish(topicNames(topic), payload, qos, false, null)
+        published = true
+      } catch {
+        case e: MqttException if e.getReasonCode == MqttException.REASON_CODE_MAX_INFLIGHT =>
+          Thread.`yield`()
+      }
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Array(Mode.SampleTime))
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  def publishAndWait(): Unit = {
+    val payload = codec.encode(message)
+
+    val completed = new CountDownLatch(1)
+    topicClients(0).publish(topicNames(0), payload, qos, false, new IMqttActionListener {
+      override def onSuccess(token: IMqttToken): Unit = {
+        completed.countDown()
+      }
+
+      override def onFailure(token: IMqttToken, cause: Throwable): Unit = {
+        completed.countDown()
+      }
+    })
+
+    completed.await()
+  }
+
+  /**
+   * Find a free port on the loopback interface.
+   *
+   * @return the port
+   */
+  private def findFreePort(): Int = {
+    val socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress)
+    try {
+      socket.getLocalPort
+    } finally {
+      socket.close()
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.evaluation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+
+import io.smartspaces.scope.ManagedScope;
+import io.smartspaces.system.SmartSpacesEnvironment;
+
+/**
+ * An execution context for a single evaluation on a single thread.
+ *
+ * <p>
+ * The context is not synchronized. Values are kept locally and lookups which
+ * miss go to the parent, which supplies the space environment, managed scope,
+ * and logger.
+ *
+ * @author Keith M. Hughes
+ */
+public class LocalExecutionContext implements ExecutionContext {
+
+  /**
+   * The initial capacity of the value map. Evaluations only bind a handful of
+   * values.
+   */
+  private static final int VALUES_INITIAL_CAPACITY = 8;
+
+  /**
+   * The parent of this context.
+   */
+  private final ExecutionContext parent;
+
+  /**
+   * The map of values indexed by their names, {@code null} until a value is
+   * set.
+   */
+  private Map<String, Object> values;
+
+  /**
+   * Construct a new context.
+   *
+   * @param parent
+   *          the parent context
+   */
+  public LocalExecutionContext(ExecutionContext parent) {
+    this.parent = parent;
+  }
+
+  @Override
+  public ExecutionContext getParent() {
+    return parent;
+  }
+
+  @Override
+  public ManagedScope getManagedScope() {
+    return parent.getManagedScope();
+  }
+
+  @Override
+  public SmartSpacesEnvironment getSpaceEnvironment() {
+    return parent.getSpaceEnvironment();
+  }
+
+  @Override
+  public Log getLog() {
+    return parent.getLog();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T getValueLocally(String name) {
+    return values != null ? (T) values.get(name) : null;
+  }
+
+  @Override
+  public <T> T getValue(String name) {
+    T value = getValueLocally(name);
+    if (value != null) {
+      return value;
+    }
+
+    return parent.getValue(name);
+  }
+
+  @Override
+  public void setValue(String name, Object value) {
+    getOrCreateValues().put(name, value);
+  }
+
+  @Override
+  public void setValues(Map<String, Object> values) {
+    getOrCreateValues().putAll(values);
+  }
+
+  @Override
+  public ExecutionContext push() {
+    return new LocalExecutionContext(this);
+  }
+
+  /**
+   * Copy the values of this context and its local ancestors into another
+   * context.
+   *
+   * <p>
+   * Ancestors are copied up to the first ancestor which is not a local
+   * context, nearer values replacing those of the same name further up.
+   *
+   * @param target
+   *          the context to copy the values into
+   */
+  public void copyValuesTo(ExecutionContext target) {
+    if (parent instanceof LocalExecutionContext) {
+      ((LocalExecutionContext) parent).copyValuesTo(target);
+    }
+
+    if (values != null) {
+      target.setValues(values);
+    }
+  }
+
+  /**
+   * Get the value map, creating it if needed.
+   *
+   * @return the value map
+   */
+  private Map<String, Object> getOrCreateValues() {
+    if (values == null) {
+      values = new HashMap<>(VALUES_INITIAL_CAPACITY);
+    }
+
+    return values;
+  }
+}
@@ -25,12 +25,17 @@ import io.reactivex.Observable;
 
 import scala.Option;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The standard event observable registry.
+ *
+ * <p>
+ * Lookups do not lock, so emitters and observers can look up observables on
+ * hot paths. Registration and future observers share a lock so an observer
+ * waiting for an observable is never missed.
  * 
  * @author Keith M. Hughes
  */
@@ -41,12 +46,18 @@ public class StandardEventObservableRegistry implements EventObservableRegistry
   /**
    * The map of observables.
    */
-  private Map<String, Observable<?>> observables = new HashMap<>();
+  private final ConcurrentMap<String, Observable<?>> observables = new ConcurrentHashMap<>();
 
   /**
    * The map of observable names to future observers
    */
-  private ListMultimap<String, FutureObservers<?>> futureObservers = ArrayListMultimap.create();
+  private final ListMultimap<String, FutureObservers<?>> futureObservers =
+      ArrayListMultimap.create();
+
+  /**
+   * The lock for registration and future observers.
+   */
+  private final Object registrationLock = new Object();
 
   /**
    * The logger for this registry.
@@ -64,13 +75,13 @@ public class StandardEventObservableRegistry implements EventObservableRegistry
   }
 
   @Override
-  public synchronized EventObservableRegistry registerObservable(String observableName,
+  public EventObservableRegistry registerObservable(String observableName,
       Observable<?> observable) {
     return registerObservable(observableName, NONE, observable);
   }
 
   @Override
-  public synchronized EventObservableRegistry registerObservable(
+  public EventObservableRegistry registerObservable(
       String observableName,
       Option<String> nameScope,
       Observable<?> observable) {
@@ -78,24 +89,23 @@ public class StandardEventObservableRegistry implements EventObservableRegistry
     String finalObservableName = scopeObservableName(observableName, nameScope);
     
     log.formatInfo("Registering event observable %s", finalObservableName);
-    
-    observables.put(finalObservableName, observable);
 
-    List<FutureObservers<?>> futures = futureObservers.removeAll(finalObservableName);
-    for (FutureObservers<?> future : futures) {
-      future.subscribe();
+    synchronized (registrationLock) {
+      observables.put(finalObservableName, observable);
+
+      subscribeFutureObservers(finalObservableName, observable);
     }
 
     return this;
   }
 
   @Override
-  public synchronized EventObservableRegistry unregisterObservable(String observableName) {
+  public EventObservableRegistry unregisterObservable(String observableName) {
     return unregisterObservable(observableName, NONE);
   }
 
   @Override
-  public synchronized EventObservableRegistry unregisterObservable(String observableName, Option<String> nameScope) {
+  public EventObservableRegistry unregisterObservable(String observableName, Option<String> nameScope) {
     String finalObservableName = scopeObservableName(observableName, nameScope);
     
     log.formatInfo("Removing event observable %s", finalObservableName);
@@ -107,40 +117,44 @@ public class StandardEventObservableRegistry implements EventObservableRegistry
 
   @Override
   @SuppressWarnings("unchecked")
-  public synchronized <T extends Observable<?>> T getObservable(String observableName) {
+  public <T extends Observable<?>> T getObservable(String observableName) {
     return getObservable(observableName, NONE);
   }
 
   @Override
   @SuppressWarnings("unchecked")
-  public synchronized <T extends Observable<?>> T getObservable(String observableName, Option<String> nameScope) {
-    String finalObservableName = scopeObservableName(observableName, nameScope);
-    
-    log.formatInfo("Getting event observable %s", finalObservableName);
-    
-    return (T) observables.get(finalObservableName);
+  public <T extends Observable<?>> T getObservable(String observableName, Option<String> nameScope) {
+    return (T) observables.get(scopeObservableName(observableName, nameScope));
   }
 
   @Override
-  public synchronized <T extends Observable<?>> T getObservable(String observableName,
+  public <T extends Observable<?>> T getObservable(String observableName,
       ObservableCreator<T> creator) {
     return getObservable(observableName, NONE, creator);
   }
 
   @Override
-  public synchronized <T extends Observable<?>> T getObservable(String observableName, 
+  @SuppressWarnings("unchecked")
+  public <T extends Observable<?>> T getObservable(String observableName, 
       Option<String> nameScope,
       ObservableCreator<T> creator) {
     String finalObservableName = scopeObservableName(observableName, nameScope);
-    
-    log.formatInfo("Getting event observable %s with creator", finalObservableName);
-   
-    T observable = getObservable(finalObservableName);
 
-    if (observable == null) {
-      observable = creator.newObservable();
+    T observable = (T) observables.get(finalObservableName);
+    if (observable != null) {
+      return observable;
+    }
+
+    synchronized (registrationLock) {
+      observable = (T) observables.get(finalObservableName);
+      if (observable == null) {
+        log.formatInfo("Creating event observable %s", finalObservableName);
+
+        observable = creator.newObservable();
+        observables.put(finalObservableName, observable);
 
-      registerObservable(finalObservableName, observable);
+        subscribeFutureObservers(finalObservableName, observable);
+      }
     }
 
     return observable;
@@ -158,7 +172,7 @@ public class StandardEventObservableRegistry implements EventObservableRegistry
       BaseObserver<T>... observers) {
     String finalObservableName = scopeObservableName(observableName, nameScope);
     
-    log.formatInfo("Connecting observers to event observable %s", finalObservableName);
+    log.formatDebug("Connecting observers to event observable %s", finalObservableName);
     
     Observable<? extends T> observable = getObservable(finalObservableName);
     if (observable != null) {
@@ -172,26 +186,27 @@ public class StandardEventObservableRegistry implements EventObservableRegistry
   }
 
   @Override
-  public synchronized <T> void connectObserversWhenAvailable(String observableName,
+  public <T> void connectObserversWhenAvailable(String observableName,
       ManagedScope scope, BaseObserver<T>... observers) {
     connectObserversWhenAvailable(observableName, NONE, scope, observers);
   }
 
   @Override
-  public synchronized <T> void connectObserversWhenAvailable(String observableName, 
+  public <T> void connectObserversWhenAvailable(String observableName, 
       Option<String> nameScope,
       ManagedScope scope, BaseObserver<T>... observers) {
     String finalObservableName = scopeObservableName(observableName, nameScope);
     
-    log.formatInfo("Connect observers to event observable %s when available", finalObservableName);
+    log.formatDebug("Connect observers to event observable %s when available", finalObservableName);
     
     if (observers != null) {
-      Observable<? extends T> observable = getObservable(finalObservableName);
-      if (observable != null) {
-        subscribeScopableObservers(observable, observers, scope);
-      } else {
-        futureObservers.put(finalObservableName,
-            new FutureObservers<T>(observableName, scope, observers));
+      synchronized (registrationLock) {
+        Observable<? extends T> observable = getObservable(finalObservableName);
+        if (observable != null) {
+          subscribeScopableObservers(observable, observers, scope);
+        } else {
+          futureObservers.put(finalObservableName, new FutureObservers<T>(scope, observers));
+        }
       }
     }
   }
@@ -205,6 +220,24 @@ public class StandardEventObservableRegistry implements EventObservableRegistry
     }
   }
 
+  /**
+   * Subscribe all observers waiting for an observable.
+   *
+   * <p>
+   * The registration lock must be held.
+   *
+   * @param finalObservableName
+   *          the scoped name of the observable
+   * @param observable
+   *          the observable
+   */
+  private void subscribeFutureObservers(String finalObservableName, Observable<?> observable) {
+    List<FutureObservers<?>> futures = futureObservers.removeAll(finalObservableName);
+    for (FutureObservers<?> future : futures) {
+      future.subscribe(observable);
+    }
+  }
+
   /**
    * Subscribe a collection of observables to an observer and place them in the
    * supplied scope.
@@ -235,11 +268,6 @@ public class StandardEventObservableRegistry implements EventObservableRegistry
    */
   private class FutureObservers<T> {
 
-    /**
-     * The name of the observable.
-     */
-    public final String observableName;
-
     /**
      * The scope to place the observers in.
      */
@@ -253,26 +281,25 @@ public class StandardEventObservableRegistry implements EventObservableRegistry
     /**
      * Construct a new future.
      * 
-     * @param observableName
-     *          the name of the observable
      * @param scope
      *          the scope to place the observers in
      * @param observers
      *          the observers
      */
-    public FutureObservers(String observableName, ManagedScope scope, BaseObserver<T>[] observers) {
-      this.observableName = observableName;
+    public FutureObservers(ManagedScope scope, BaseObserver<T>[] observers) {
       this.scope = scope;
       this.observers = observers;
     }
 
     /**
      * Subscribe the observers to the observable.
+     *
+     * @param observable
+     *          the observable which has been registered
      */
-    public void subscribe() {
-      Observable<? extends T> observable = getObservable(observableName);
-
-      subscribeScopableObservers(observable, observers, scope);
+    @SuppressWarnings("unchecked")
+    public void subscribe(Observable<?> observable) {
+      subscribeScopableObservers((Observable<? extends T>) observable, observers, scope);
     }
   }
 }
@@ -288,7 +288,7 @@ trait HeartbeatMonitored {
 class HeartbeatMonitorWatcher[T](
   val monitoredId: String,
   val monitored: T,
-  var timestamp: Long,
+  @volatile var timestamp: Long,
   var expectedTimeInterval: Long) {
 
   /**
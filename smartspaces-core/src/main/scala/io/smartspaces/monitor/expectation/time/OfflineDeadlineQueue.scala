@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.monitor.expectation.time
+
+import java.util.PriorityQueue
+import java.util.concurrent.ConcurrentHashMap
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * A queue of heartbeat monitored items ordered by their offline deadlines.
+ *
+ * <p>
+ * An item should be armed whenever it is updated. An update which only pushes
+ * the deadline later does not touch the queue, the item is handed back when its
+ * old deadline comes up and should then be checked and armed again with its
+ * new deadline. Only items whose deadlines have passed are handed back, so the
+ * cost of a check does not depend on how many items are being monitored.
+ *
+ * <p>
+ * The queue has its own lock and does not lock the items.
+ *
+ * @author Keith M. Hughes
+ */
+class OfflineDeadlineQueue[T <: HeartbeatMonitorable] {
+
+  /**
+   * The entry each item is currently queued with.
+   */
+  private val queuedEntries = new ConcurrentHashMap[T, OfflineDeadlineEntry[T]]
+
+  /**
+   * The entries ordered by deadline. This can contain entries which have been
+   * replaced by ones with an earlier deadline.
+   */
+  private val deadlines = new PriorityQueue[OfflineDeadlineEntry[T]]
+
+  /**
+   * The lock for the queue.
+   */
+  private val queueLock = new Object
+
+  /**
+   * Arm the item with its current offline deadline.
+   *
+   * <p>
+   * Does nothing if the item has no deadline or is already queued for an
+   * earlier deadline.
+   *
+   * @param item
+   *          the item to arm
+   */
+  def arm(item: T): Unit = {
+    val deadline = item.timestampOfflineDeadline
+    if (deadline.isDefined) {
+      val queued = queuedEntries.get(item)
+      if (queued == null || deadline.get < queued.deadline) {
+        queueLock.synchronized {
+          val current = queuedEntries.get(item)
+          if (current == null || deadline.get < current.deadline) {
+            val entry = new OfflineDeadlineEntry(item, deadline.get)
+            queuedEntries.put(item, entry)
+            deadlines.add(entry)
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Remove all items whose deadlines have passed.
+   *
+   * <p>
+   * The items are no longer queued, so must be armed again if they should
+   * still be monitored.
+   *
+   * @param currentTime
+   *          the current time
+   *
+   * @return the items, in deadline order
+   */
+  def pollExpired(currentTime: Long): Seq[T] = {
+    val expired = new ArrayBuffer[T]
+
+    queueLock.synchronized {
+      while (!deadlines.isEmpty && deadlines.peek.deadline <= currentTime) {
+        val entry = deadlines.poll
+
+        // Replaced entries are dropped.
+        if (queuedEntries.remove(entry.item, entry)) {
+          expired += entry.item
+        }
+      }
+    }
+
+    expired
+  }
+
+  /**
+   * Get the earliest deadline in the queue.
+   *
+   * @return the deadline, or {@code None} if nothing is queued
+   */
+  def nextDeadline: Option[Long] = {
+    queueLock.synchronized {
+      if (deadlines.isEmpty) None else Some(deadlines.peek.deadline)
+    }
+  }
+}
+
+/**
+ * An entry in the offline deadline queue.
+ *
+ * @author Keith M. Hughes
+ */
+private class OfflineDeadlineEntry[T](val item: T, val deadline: Long) extends Comparable[OfflineDeadlineEntry[T]] {
+
+  override def compareTo(other: OfflineDeadlineEntry[T]): Int = {
+    java.lang.Long.compare(deadline, other.deadline)
+  }
+}
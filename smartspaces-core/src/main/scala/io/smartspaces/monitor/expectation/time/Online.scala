@@ -115,4 +115,13 @@ trait HeartbeatMonitorable extends OnlineMonitorable {
    * Get the last update of any sort, whether it be a state or heartbeat update.
    */
   def timestampLastUpdate: Option[Long]
+
+  /**
+   * Get the earliest time at which {@link #checkIfOfflineTransition} will find the item has gone
+   * offline, if it gets no more updates before then.
+   *
+   * @return the deadline, or {@code None} if the item can not go offline, such as having
+   *         no time limits or already being offline
+   */
+  def timestampOfflineDeadline: Option[Long]
 }
@@ -19,6 +19,11 @@ package io.smartspaces.monitor.expectation.time
 /**
  * A standard mixin for giving an item heartbeat functionality.
  *
+ * <p>
+ * Updates and offline checks synchronize on the item itself, so items can be
+ * checked independently of each other. Online and offline events are emitted
+ * outside of the lock.
+ *
  * @author Keith M. Hughes
  */
 trait StandardHeartbeatMonitorable extends HeartbeatMonitorable {
@@ -29,7 +34,7 @@ trait StandardHeartbeatMonitorable extends HeartbeatMonitorable {
    * <p>
    * Assume that it is offline until told otherwise.
    */
-  protected var _online: Boolean = false
+  @volatile protected var _online: Boolean = false
 
   /**
    * The time of the last state update.
@@ -64,21 +69,32 @@ trait StandardHeartbeatMonitorable extends HeartbeatMonitorable {
 
   /**
    * An update happened.
+   *
+   * <p>
+   * Must be called holding the item's lock.
+   *
+   * @return {@code true} if the item has come back online after being signaled offline
    */
-  private def updateHappened(timestamp: Long): Unit = {
-    if (!_online && offlineSignaled) {
-      emitOnlineEvent(timestamp)
-    }
-    
+  private def updateHappened(): Boolean = {
+    val cameOnline = !_online && offlineSignaled
+
     // The online status is definitely true if an update is coming in.
     offlineSignaled = false
     _online = true
+
+    cameOnline
   }
 
   override def stateUpdated(timestamp: Long): Unit = {
-    _timestampLastStateUpdate = Option(timestamp)
+    val cameOnline = synchronized {
+      _timestampLastStateUpdate = Option(timestamp)
+
+      updateHappened()
+    }
 
-    updateHappened(timestamp)
+    if (cameOnline) {
+      emitOnlineEvent(timestamp)
+    }
   }
 
   override def timestampLastStateUpdate: Option[Long] = {
@@ -86,9 +102,15 @@ trait StandardHeartbeatMonitorable extends HeartbeatMonitorable {
   }
 
   override def updateHeartbeat(timestamp: Long): Unit = {
-    _timestampLastHeartbeatUpdate = Option(timestamp)
+    val cameOnline = synchronized {
+      _timestampLastHeartbeatUpdate = Option(timestamp)
 
-    updateHappened(timestamp)
+      updateHappened()
+    }
+
+    if (cameOnline) {
+      emitOnlineEvent(timestamp)
+    }
   }
 
   override def timestampLastHeartbeatUpdate: Option[Long] = {
@@ -110,75 +132,79 @@ trait StandardHeartbeatMonitorable extends HeartbeatMonitorable {
   override def online: Boolean = _online
 
   override def checkIfOfflineTransition(currentTime: Long): Boolean = {
-    // Only check if the model thinks it is online and there was an update time,
-    // otherwise we want the initial
+    val transitioned = synchronized {
+      val deadline = offlineDeadline
+      if (deadline.isDefined && currentTime >= deadline.get) {
+        _online = false
+        offlineSignaled = true
+
+        true
+      } else {
+        false
+      }
+    }
+
+    // Events are emitted outside of the lock so listeners can update the item.
+    if (transitioned) {
+      emitOfflineEvent(currentTime)
+    }
+
+    transitioned
+  }
+
+  override def timestampOfflineDeadline: Option[Long] = {
+    synchronized {
+      offlineDeadline
+    }
+  }
+
+  /**
+   * Calculate the earliest time the item would be considered offline if it gets no more updates.
+   *
+   * <p>
+   * Must be called holding the item's lock.
+   *
+   * @return the time, or {@code None} if the item can not transition to offline
+   */
+  private def offlineDeadline: Option[Long] = {
     if (_online) {
       if (stateUpdateTimeLimit.isDefined) {
-        // The only way we would ever be considered online is if there was a lastUpdate,
-        // so the .get will work.
-        _online = !isTimeout(currentTime, _timestampLastStateUpdate.get, stateUpdateTimeLimit.get)
+        // Heartbeats alone can bring the item online, so there may not have been a state
+        // update yet. The state update is then expected from the time of birth of the item.
+        Some(timeoutDeadline(_timestampLastStateUpdate.getOrElse(timestampItemCreation), stateUpdateTimeLimit.get))
       } else if (heartbeatUpdateTimeLimit.isDefined) {
-        // If this sensor requires a heartbeat, the heartbeat time can be checked.
-
-        val updateToUse = if (_timestampLastStateUpdate.isDefined) {
-          if (_timestampLastHeartbeatUpdate.isDefined) {
-            Math.max(_timestampLastStateUpdate.get, _timestampLastHeartbeatUpdate.get)
-          } else {
-            _timestampLastStateUpdate.get
-          }
-        } else {
-          _timestampLastHeartbeatUpdate.get
-        }
-        
-        _online = !isTimeout(currentTime, updateToUse, heartbeatUpdateTimeLimit.get)
-      }
-
-      // We knew online was true, so if now offline, then transitioned.
-      if (!_online) {
-        signalOffline(currentTime)
+        // If this item requires a heartbeat, the heartbeat time can be checked.
+        Some(timeoutDeadline(timestampLastUpdate.get, heartbeatUpdateTimeLimit.get))
+      } else {
+        None
       }
-
-      !_online
-    } else {
+    } else if (!offlineSignaled) {
       // Now, we are considered offline. If we have never been updated then we can check at the
       // time of birth of the model. otherwise no need to check.
-      if (!offlineSignaled) {
-        if (stateUpdateTimeLimit.isDefined) {
-          if (isTimeout(currentTime, _timestampLastStateUpdate.getOrElse(timestampItemCreation), stateUpdateTimeLimit.get)) {
-            signalOffline(currentTime)
-
-            true
-          } else {
-            false
-          }
-        } else if (heartbeatUpdateTimeLimit.isDefined) {
-          // If this sensor requires a heartbeat, the heartbeat time can be checked.
-          if (isTimeout(currentTime, _timestampLastHeartbeatUpdate.getOrElse(timestampItemCreation), heartbeatUpdateTimeLimit.get)) {
-            signalOffline(currentTime)
-
-            true
-          } else {
-            false
-          }
-        } else {
-          false
-        }
+      if (stateUpdateTimeLimit.isDefined) {
+        Some(timeoutDeadline(_timestampLastStateUpdate.getOrElse(timestampItemCreation), stateUpdateTimeLimit.get))
+      } else if (heartbeatUpdateTimeLimit.isDefined) {
+        Some(timeoutDeadline(_timestampLastHeartbeatUpdate.getOrElse(timestampItemCreation), heartbeatUpdateTimeLimit.get))
       } else {
-        false
+        None
       }
+    } else {
+      None
     }
   }
 
   /**
-   * Signal that the sensor has gone offline.
+   * Get the first time which is a timeout from a reference time.
    *
-   * @param currentTime
-   * 		the time when the sensor was detected offline
+   * @param referenceTime
+   *        the time to be compared to, such as last update time or model creation time
+   * @param timeLimit
+   *        the maximum amount of time before it is decided to be offline
+   *
+   * @return the first time for which {@link #isTimeout} is {@code true}
    */
-  private def signalOffline(timestamp: Long): Unit = {
-    offlineSignaled = true
-    
-    emitOfflineEvent(timestamp)
+  private def timeoutDeadline(referenceTime: Long, timeLimit: Long): Long = {
+    referenceTime + timeLimit + 1
   }
 
   /**
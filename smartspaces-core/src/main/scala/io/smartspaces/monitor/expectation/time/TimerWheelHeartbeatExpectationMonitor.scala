@@ -0,0 +1,477 @@
+/*
+ * Copyright (C) 2017 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.monitor.expectation.time
+
+import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.time.provider.TimeProvider
+
+import java.util.concurrent.ConcurrentHashMap
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Constants for the timer wheel heartbeat expectation monitor.
+ *
+ * @author Keith M. Hughes
+ */
+object TimerWheelHeartbeatExpectationMonitor {
+
+  /**
+   * The default length of a wheel tick, in milliseconds.
+   */
+  val TICK_DURATION_DEFAULT = 10L
+
+  /**
+   * The number of bits of the tick count handled by each level of the wheel.
+   */
+  val LEVEL_BITS = 6
+
+  /**
+   * The number of slots in each level of the wheel.
+   */
+  val LEVEL_NUMBER_SLOTS = 1 << LEVEL_BITS
+
+  /**
+   * The mask for getting a slot index from a tick count.
+   */
+  val LEVEL_SLOT_MASK = LEVEL_NUMBER_SLOTS - 1
+
+  /**
+   * The number of levels in the wheel.
+   */
+  val NUMBER_LEVELS = 4
+
+  /**
+   * The number of ticks the wheel can span. Deadlines further out than this are
+   * placed at the far end of the wheel and rescheduled when they get there.
+   */
+  val WHEEL_SPAN = 1L << (LEVEL_BITS * NUMBER_LEVELS)
+}
+
+/**
+ * A heartbeat expectation monitor which keeps its watchers in a hierarchical
+ * timing wheel ordered by when their heartbeats expire.
+ *
+ * <p>
+ * A scan only visits watchers whose expiry tick has been reached, rather than
+ * every watcher. Heartbeat updates only change the watcher's timestamp and do
+ * not touch the wheel. When a watcher's slot comes up, its real deadline is
+ * checked against its latest timestamp and it is put back into the wheel if it
+ * has had a heartbeat since it was scheduled. A watcher which keeps getting
+ * heartbeats is therefore visited about once per expectation time, however
+ * often it beats and however often the monitor is scanned.
+ *
+ * <p>
+ * Lost heartbeats are noticed by the first scan at least one tick after the
+ * deadline has passed, so the tick duration should be small compared to the
+ * scan period.
+ *
+ * @param monitoredHeartbeatExpectationTimeDefault
+ *          the default expectation time for heartbeats, in milliseconds
+ * @param heartbeatExpectationMonitorListener
+ *          the listener for heartbeat events
+ * @param timeProvider
+ *          the time provider for the monitor
+ * @param log
+ *          the logger to use
+ * @param tickDuration
+ *          the length of a wheel tick, in milliseconds
+ *
+ * @author Keith M. Hughes
+ */
+class TimerWheelHeartbeatExpectationMonitor[T](
+  var monitoredHeartbeatExpectationTimeDefault: Long,
+  val heartbeatExpectationMonitorListener: HeartbeatExpectationMonitorListener[T],
+  timeProvider: TimeProvider,
+  log: ExtendedLog,
+  val tickDuration: Long = TimerWheelHeartbeatExpectationMonitor.TICK_DURATION_DEFAULT) extends HeartbeatExpectationMonitor[T] {
+
+  import TimerWheelHeartbeatExpectationMonitor._
+
+  require(tickDuration > 0, "The tick duration must be positive")
+
+  /**
+   * A mapping of monitored item IDs to the wheel entry for that item.
+   */
+  private val monitoredEntries = new ConcurrentHashMap[String, TimerWheelEntry[T]]
+
+  /**
+   * The slots of the wheel, indexed by level and then slot. Each slot is the
+   * head of a list of entries.
+   */
+  private val slots = Array.ofDim[TimerWheelEntry[T]](NUMBER_LEVELS, LEVEL_NUMBER_SLOTS)
+
+  /**
+   * The last tick the wheel has been advanced to.
+   */
+  private var currentTick = 0L
+
+  /**
+   * {@code true} if the current tick has been set from the clock.
+   */
+  private var wheelStarted = false
+
+  /**
+   * The number of entries in the wheel.
+   */
+  private var numberScheduledEntries = 0
+
+  /**
+   * The number of entries visited when their slots expired.
+   */
+  private var numberEntriesVisited = 0L
+
+  /**
+   * The lock for the wheel.
+   */
+  private val wheelLock = new Object
+
+  override def addMonitoredWatcher(monitoredId: String, monitored: T): Unit = {
+    addMonitoredWatcher(monitoredId, monitored, monitoredHeartbeatExpectationTimeDefault)
+  }
+
+  override def addMonitoredWatcher(monitoredId: String, monitored: T, monitoredHeartbeatExpectationTime: Long): Unit = {
+    val timestamp = timeProvider.getCurrentTime
+    val entry = new TimerWheelEntry(
+      new HeartbeatMonitorWatcher(monitoredId, monitored, timestamp, monitoredHeartbeatExpectationTime))
+
+    wheelLock.synchronized {
+      if (!wheelStarted) {
+        currentTick = timestamp / tickDuration
+        wheelStarted = true
+      }
+
+      val previous = monitoredEntries.put(monitoredId, entry)
+      if (previous != null) {
+        previous.removed = true
+      }
+
+      schedule(entry)
+    }
+  }
+
+  override def getMonitoredWatcher(monitoredId: String): Option[HeartbeatMonitorWatcher[T]] = {
+    val entry = monitoredEntries.get(monitoredId)
+    if (entry != null) Some(entry.watcher) else None
+  }
+
+  /**
+   * Remove the watcher for a specific ID.
+   *
+   * <p>
+   * Does nothing if no watcher for that ID.
+   *
+   * @param monitoredId
+   *          the ID of the monitored item to remove
+   */
+  def removeWatcher(monitoredId: String): Unit = {
+    val entry = monitoredEntries.remove(monitoredId)
+    if (entry != null) {
+      // The entry is dropped from the wheel when its slot comes up.
+      entry.removed = true
+    }
+  }
+
+  override def updateHeartbeat(monitoredId: String, heartbeatTimestamp: Long): Unit = {
+    val entry = monitoredEntries.get(monitoredId)
+    if (entry != null) {
+      if (entry.watcher.updateHeartbeat(heartbeatTimestamp)) {
+        // Lost watchers are not in the wheel.
+        wheelLock.synchronized {
+          if (!entry.scheduled && !entry.removed) {
+            schedule(entry)
+          }
+        }
+
+        handleWatcherHeartbeatRegained(entry.watcher, heartbeatTimestamp)
+      }
+    } else {
+      // Heartbeats can still arrive for a watcher which has just been removed,
+      // so this is not an error.
+      if (log.isDebugEnabled()) {
+        log.debug(s"Heartbeat for unwatched ID ${monitoredId} ignored")
+      }
+    }
+  }
+
+  override def scan(): Unit = {
+    val currentTimestamp = timeProvider.getCurrentTime()
+
+    val lostWatchers = new ArrayBuffer[HeartbeatMonitorWatcher[T]]
+    wheelLock.synchronized {
+      advance(currentTimestamp / tickDuration, currentTimestamp, lostWatchers)
+    }
+
+    // Listeners are called outside of the lock so they can update heartbeats.
+    lostWatchers.foreach { (watcher) =>
+      handleWatcherHeartbeatLost(watcher, watcher.timeSinceLastHeartbeat(currentTimestamp), currentTimestamp)
+    }
+  }
+
+  /**
+   * Get the number of watchers currently waiting in the wheel.
+   *
+   * <p>
+   * Watchers whose heartbeats are lost are not in the wheel.
+   *
+   * @return the number of scheduled watchers
+   */
+  def getNumberScheduledWatchers(): Int = {
+    wheelLock.synchronized {
+      numberScheduledEntries
+    }
+  }
+
+  /**
+   * Get the total number of times a scan has visited a watcher.
+   *
+   * @return the number of watcher visits
+   */
+  def getNumberWatchersVisited(): Long = {
+    wheelLock.synchronized {
+      numberEntriesVisited
+    }
+  }
+
+  /**
+   * Advance the wheel, handling all entries whose slots expire along the way.
+   *
+   * <p>
+   * Must be called holding the wheel lock.
+   *
+   * @param targetTick
+   *          the tick to advance the wheel to
+   * @param currentTimestamp
+   *          the current time
+   * @param lostWatchers
+   *          the watchers which have been noticed to have lost their heartbeat
+   */
+  private def advance(
+    targetTick: Long,
+    currentTimestamp: Long,
+    lostWatchers: ArrayBuffer[HeartbeatMonitorWatcher[T]]): Unit = {
+    if (!wheelStarted || numberScheduledEntries == 0) {
+      currentTick = Math.max(currentTick, targetTick)
+      wheelStarted = true
+      return
+    }
+
+    while (currentTick < targetTick && numberScheduledEntries > 0) {
+      currentTick += 1
+
+      // Higher levels go first so their entries can land in the lower level
+      // slots about to be handled.
+      var level = NUMBER_LEVELS - 1
+      while (level > 0) {
+        val levelShift = LEVEL_BITS * level
+        if ((currentTick & ((1L << levelShift) - 1)) == 0) {
+          cascade(level, ((currentTick >>> levelShift) & LEVEL_SLOT_MASK).toInt)
+        }
+        level -= 1
+      }
+
+      expireSlot((currentTick & LEVEL_SLOT_MASK).toInt, currentTimestamp, lostWatchers)
+    }
+
+    // Nothing left in the wheel, skip any remaining idle ticks.
+    currentTick = Math.max(currentTick, targetTick)
+  }
+
+  /**
+   * Move all entries in a higher level slot down into the lower levels.
+   *
+   * @param level
+   *          the level of the slot
+   * @param slot
+   *          the index of the slot
+   */
+  private def cascade(level: Int, slot: Int): Unit = {
+    var entry = slots(level)(slot)
+    slots(level)(slot) = null
+
+    while (entry != null) {
+      val next = entry.next
+      entry.next = null
+      numberScheduledEntries -= 1
+
+      if (entry.removed) {
+        entry.scheduled = false
+      } else {
+        insert(entry, entry.deadlineTick)
+      }
+
+      entry = next
+    }
+  }
+
+  /**
+   * Handle all entries in an expiring level 0 slot.
+   *
+   * @param slot
+   *          the index of the slot
+   * @param currentTimestamp
+   *          the current time
+   * @param lostWatchers
+   *          the watchers which have been noticed to have lost their heartbeat
+   */
+  private def expireSlot(
+    slot: Int,
+    currentTimestamp: Long,
+    lostWatchers: ArrayBuffer[HeartbeatMonitorWatcher[T]]): Unit = {
+    var entry = slots(0)(slot)
+    slots(0)(slot) = null
+
+    while (entry != null) {
+      val next = entry.next
+      entry.next = null
+      entry.scheduled = false
+      numberScheduledEntries -= 1
+      numberEntriesVisited += 1
+
+      if (!entry.removed) {
+        if (entry.watcher.checkIfOfflineTransition(currentTimestamp)) {
+          // Stays out of the wheel until the heartbeat is regained.
+          lostWatchers += entry.watcher
+        } else if (entry.watcher.timeSinceLastHeartbeat(currentTimestamp) <= entry.watcher.expectedTimeInterval) {
+          // There has been a heartbeat since the entry was scheduled.
+          schedule(entry)
+        }
+      }
+
+      entry = next
+    }
+  }
+
+  /**
+   * Put an entry into the wheel at the tick its heartbeat expires.
+   *
+   * <p>
+   * Must be called holding the wheel lock.
+   *
+   * @param entry
+   *          the entry to schedule
+   */
+  private def schedule(entry: TimerWheelEntry[T]): Unit = {
+    val watcher = entry.watcher
+
+    // The heartbeat is lost once the time since it is more than the expected
+    // interval.
+    val expiryTimestamp = watcher.timestamp + watcher.expectedTimeInterval + 1
+    entry.scheduled = true
+    insert(entry, expiryTimestamp / tickDuration)
+  }
+
+  /**
+   * Insert an entry into the slot for a given tick.
+   *
+   * @param entry
+   *          the entry to insert
+   * @param tick
+   *          the tick the entry should expire on
+   */
+  private def insert(entry: TimerWheelEntry[T], tick: Long): Unit = {
+    // Anything already due goes into the next tick to be handled.
+    var deadlineTick = Math.max(tick, currentTick + 1)
+    val delta = Math.min(deadlineTick - currentTick, WHEEL_SPAN - 1)
+    deadlineTick = currentTick + delta
+    entry.deadlineTick = deadlineTick
+
+    var level = 0
+    while (level < NUMBER_LEVELS - 1 && delta >= (1L << (LEVEL_BITS * (level + 1)))) {
+      level += 1
+    }
+
+    val slot = ((deadlineTick >>> (LEVEL_BITS * level)) & LEVEL_SLOT_MASK).toInt
+    entry.next = slots(level)(slot)
+    slots(level)(slot) = entry
+    numberScheduledEntries += 1
+  }
+
+  /**
+   * Handle a lost heartbeat.
+   *
+   * @param watcher
+   *          the watcher that has lots its heartbeat
+   * @param timeSinceLastHeartbeat
+   *          the amount of time the heartbeat has been lost
+   * @param currentTimestamp
+   *          the current time
+   */
+  private def handleWatcherHeartbeatLost(
+    watcher: HeartbeatMonitorWatcher[T],
+    timeSinceLastHeartbeat: Long,
+    currentTimestamp: Long): Unit = {
+
+    try {
+      heartbeatExpectationMonitorListener.onHeartbeatLost(watcher, currentTimestamp, timeSinceLastHeartbeat)
+    } catch {
+      case e: Throwable =>
+        log.error(s"Heartbeat monitor listener failed for lost event with watcher ${watcher.monitoredId}", e)
+    }
+  }
+
+  /**
+   * Handle a regained heartbeat.
+   *
+   * @param watcher
+   *          the watcher that has lots its heartbeat
+   * @param heartbeatTimestamp
+   *          the time of the heartbeat that triggered this message
+   */
+  private def handleWatcherHeartbeatRegained(
+    watcher: HeartbeatMonitorWatcher[T],
+    heartbeatTimestamp: Long): Unit = {
+
+    try {
+      heartbeatExpectationMonitorListener.onHeartbeatRegained(watcher, heartbeatTimestamp)
+    } catch {
+      case e: Throwable =>
+        log.error(s"Heartbeat monitor listener failed for regained event with watcher ${watcher.monitoredId}", e)
+    }
+  }
+}
+
+/**
+ * An entry in the timing wheel for a watcher.
+ *
+ * <p>
+ * All fields other than {@link #removed} are guarded by the wheel lock.
+ *
+ * @author Keith M. Hughes
+ */
+private class TimerWheelEntry[T](val watcher: HeartbeatMonitorWatcher[T]) {
+
+  /**
+   * The next entry in the same wheel slot.
+   */
+  var next: TimerWheelEntry[T] = null
+
+  /**
+   * The tick the entry was last placed in the wheel for.
+   */
+  var deadlineTick = 0L
+
+  /**
+   * {@code true} if the entry is in the wheel.
+   */
+  var scheduled = false
+
+  /**
+   * {@code true} if the watcher has been removed from the monitor.
+   */
+  @volatile var removed = false
+}
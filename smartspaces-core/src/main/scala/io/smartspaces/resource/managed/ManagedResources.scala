@@ -26,9 +26,20 @@ import java.util.{List => JList}
  *
  * <p>
  * The collection will start up and shut down the resources when it is started
- * up and shut down. Do not worry about these lifecycle events. The members of
- * the collection will be started up in the order they are registered and shut
- * down in reverse order.
+ * up and shut down. Do not worry about these lifecycle events.
+ *
+ * <p>
+ * Resources are started up in dependency levels. All resources in a level are
+ * started at the same time, and a level is only started once every resource in
+ * the level before it is running. Resources which are not
+ * {@link io.smartspaces.resource.DependentResource} instances, or declare no
+ * dependencies, are all in the first level. Shutdown goes through the levels
+ * in reverse.
+ *
+ * <p>
+ * The order resources are registered in says nothing about the order they
+ * are started in. A resource which needs another resource running first must
+ * declare it as a dependency.
  *
  * @author Keith M. Hughes
  */
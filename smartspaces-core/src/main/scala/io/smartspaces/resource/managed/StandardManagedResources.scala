@@ -21,32 +21,105 @@ import io.smartspaces.SmartSpacesException
 import io.smartspaces.logging.ExtendedLog
 import java.util.{Collections => JCollections}
 import java.util.{List => JList}
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 
 import io.smartspaces.resource.{DependentResource, NamedResource}
 import io.smartspaces.util.graph.DependencyResolver
 
 import scala.collection.JavaConverters._
 
+/**
+ * Constants and the shared executor for {@link StandardManagedResources}.
+ *
+ * @author Keith M. Hughes
+ */
+object StandardManagedResources {
+
+  /**
+   * The maximum number of threads used to start up and shut down resources
+   * across all collections.
+   */
+  val LIFECYCLE_THREADS_MAX = 8
+
+  /**
+   * How long an idle lifecycle thread stays around, in seconds.
+   */
+  val LIFECYCLE_THREAD_KEEP_ALIVE = 30L
+
+  /**
+   * The executor shared by all collections for starting up and shutting down
+   * resources.
+   *
+   * <p>
+   * Threads are daemons and go away when idle, so the executor never needs
+   * shutting down.
+   */
+  lazy val LIFECYCLE_EXECUTOR: Executor = {
+    val threadCount = new AtomicInteger()
+    val executor = new ThreadPoolExecutor(LIFECYCLE_THREADS_MAX, LIFECYCLE_THREADS_MAX,
+      LIFECYCLE_THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue[Runnable](),
+      new ThreadFactory() {
+        override def newThread(runnable: Runnable): Thread = {
+          val thread = new Thread(runnable, "managed-resources-" + threadCount.incrementAndGet())
+          thread.setDaemon(true)
+          thread
+        }
+      })
+    executor.allowCoreThreadTimeOut(true)
+    executor
+  }
+}
 
 /**
  * A standard implementation of {@link ManagedResources}.
  *
+ * <p>
+ * Resources are started up in dependency levels. All resources in a level
+ * are started at the same time, and a level is only started once the level
+ * before it is completely up. Resources without dependencies are in the first
+ * level. Shutdown goes through the levels in reverse.
+ *
+ * <p>
+ * The thread asking for a level to start runs any resources no executor
+ * thread has picked up yet, so a resource which starts its own managed
+ * resources can't tie up the executor.
+ *
  * @author Keith M. Hughes
  */
-class StandardManagedResources(private val log: ExtendedLog) extends ManagedResources {
+class StandardManagedResources(private val log: ExtendedLog, private val executor: Executor) extends ManagedResources {
 
   /**
    * The managed resources.
    */
   private var resources = List[ManagedResource]()
 
-  private var startedResources = List[ManagedResource]()
+  /**
+   * The levels of started resources, the most recently started level first.
+   */
+  private var startedResources = List[List[ManagedResource]]()
 
   /**
    * [[true]] if the collection has been officially started.
    */
   private var started = false
 
+  /**
+   * Construct a collection which uses the shared lifecycle executor.
+   *
+   * @param log
+   *          the logger to use
+   */
+  def this(log: ExtendedLog) = {
+    this(log, StandardManagedResources.LIFECYCLE_EXECUTOR)
+  }
+
   override def addResource( resource: ManagedResource): Unit = {
     if (started) {
       try {
@@ -68,7 +141,7 @@ class StandardManagedResources(private val log: ExtendedLog) extends ManagedReso
 
   override def addStartedResource(resource: ManagedResource ) {
     this.synchronized {
-      startedResources = resource :: startedResources
+      startedResources = List(resource) :: startedResources
     }
   }
 
@@ -85,7 +158,7 @@ class StandardManagedResources(private val log: ExtendedLog) extends ManagedReso
   }
 
   override def startupResources(): Unit = {
-    var myStartedResources = List[ManagedResource]()
+    var myStartedResources = List[List[ManagedResource]]()
 
     var nondependentResources = List[ManagedResource]()
 
@@ -109,38 +182,40 @@ class StandardManagedResources(private val log: ExtendedLog) extends ManagedReso
     }
 
     dependencyResolver.resolve()
-    dependencyResolver.getDataOrdering().asScala.foreach { resource =>
-      if (resource != null) {
-        try {
-          resource.startup()
-
-          myStartedResources = resource :: myStartedResources
-        } catch {
-          case e: Throwable => {
-            shutdownResources(myStartedResources)
 
-            throw new SmartSpacesException("Could not start up all managed resources", e)
-          }
+    var levels = dependencyResolver.getDataLevels().asScala.map { level =>
+      level.asScala.toList.filter { resource =>
+        if (resource == null) {
+          log.warn("Got dependency managed resource that did not exist. Check if all managed resource dependencies are defined.")
         }
-      } else {
-        log.warn("Got dependency managed resource that did not exist. Check if all managed resource dependencies are defined.")
+        resource != null
       }
+    }.toList
+    levels = levels match {
+      case firstLevel :: otherLevels => (firstLevel ++ nondependentResources) :: otherLevels
+      case Nil => List(nondependentResources)
     }
 
-    // resources has been added in ascending order, so go in reverse.
-    nondependentResources.foreach { resource =>
-      try {
-        resource.startup()
+    val startupStart = System.currentTimeMillis()
+    levels.filter(_.nonEmpty).foreach { level =>
+      val startupFailed = new AtomicBoolean(false)
+      val tasks = level.map(new LifecycleTask(_, Some(startupFailed)))
+      runTasks(tasks)
 
-        myStartedResources = resource :: myStartedResources
-      } catch  {
-        case e: Throwable => {
-          shutdownResources(myStartedResources)
+      val levelStartedResources = tasks.filter(_.succeeded).map(_.resource)
+      if (levelStartedResources.nonEmpty) {
+        myStartedResources = levelStartedResources.reverse :: myStartedResources
+      }
 
-          throw new SmartSpacesException("Could not start up all managed resources", e)
-        }
+      tasks.find(_.error.isDefined).foreach { failedTask =>
+        shutdownResources(myStartedResources)
+
+        throw new SmartSpacesException("Could not start up all managed resources", failedTask.error.get)
       }
     }
+    if (myStartedResources.nonEmpty) {
+      log.formatInfo("Managed resources started in %d msec", Long.box(System.currentTimeMillis() - startupStart))
+    }
 
     startedResources = myStartedResources
 
@@ -164,16 +239,121 @@ class StandardManagedResources(private val log: ExtendedLog) extends ManagedReso
    * Shut down the specified resources.
    *
    * @param resources
-   *          some resources to shut down
+   *          levels of resources to shut down, the first level is shut down
+   *          first
    */
-  private def shutdownResources(resources: List[ManagedResource]): Unit = {
-    resources.foreach { resource =>
-      try {
-        resource.shutdown()
-      } catch {
-        case e: Throwable =>
-         log.error("Could not shut down resource", e)
+  private def shutdownResources(resources: List[List[ManagedResource]]): Unit = {
+    resources.foreach { level =>
+      val tasks = level.map(new LifecycleTask(_, None))
+      runTasks(tasks)
+
+      tasks.foreach { task =>
+        task.error.foreach { e =>
+          log.error("Could not shut down resource", e)
+        }
+      }
+    }
+  }
+
+  /**
+   * Run a collection of lifecycle tasks and wait for all of them to complete.
+   *
+   * <p>
+   * The calling thread runs any tasks the executor hasn't started yet.
+   *
+   * @param tasks
+   *          the tasks to run
+   */
+  private def runTasks(tasks: List[LifecycleTask]): Unit = {
+    if (tasks.size > 1) {
+      tasks.tail.foreach(executor.execute(_))
+    }
+
+    tasks.foreach(_.run())
+    tasks.foreach(_.awaitCompletion())
+  }
+
+  /**
+   * Start up or shut down a single resource.
+   *
+   * <p>
+   * Only the first thread to run the task does anything, so a task can be both
+   * handed to the executor and run by the thread waiting for it.
+   *
+   * @param resource
+   *          the resource
+   * @param startupFailed
+   *          set when a resource in the same level fails to start, resources
+   *          not started yet are then skipped, {@code None} if the resource is
+   *          to be shut down
+   */
+  private class LifecycleTask(val resource: ManagedResource, startupFailed: Option[AtomicBoolean])
+      extends Runnable {
+
+    /**
+     * The class loader of the thread which created the task, resources may
+     * need it to find their classes.
+     */
+    private val contextClassLoader = Thread.currentThread().getContextClassLoader()
+
+    /**
+     * {@code true} once a thread has claimed the task.
+     */
+    private val claimed = new AtomicBoolean(false)
+
+    /**
+     * Counted down when the task completes.
+     */
+    private val completion = new CountDownLatch(1)
+
+    /**
+     * The error from the resource, if there was one.
+     */
+    @volatile var error: Option[Throwable] = None
+
+    /**
+     * {@code true} if the resource was started up or shut down.
+     */
+    @volatile var succeeded = false
+
+    override def run(): Unit = {
+      if (claimed.compareAndSet(false, true)) {
+        if (startupFailed.exists(_.get())) {
+          completion.countDown()
+          return
+        }
+
+        val thread = Thread.currentThread()
+        val previousClassLoader = thread.getContextClassLoader()
+        thread.setContextClassLoader(contextClassLoader)
+        val start = System.currentTimeMillis()
+        try {
+          if (startupFailed.isDefined) {
+            resource.startup()
+
+            log.formatInfo("Managed resource %s started in %d msec", resource, Long.box(System.currentTimeMillis() - start))
+          } else {
+            resource.shutdown()
+
+            log.formatDebug("Managed resource %s shut down in %d msec", resource, Long.box(System.currentTimeMillis() - start))
+          }
+          succeeded = true
+        } catch {
+          case e: Throwable =>
+            error = Some(e)
+            startupFailed.foreach(_.set(true))
+        } finally {
+          thread.setContextClassLoader(previousClassLoader)
+          completion.countDown()
+        }
       }
     }
+
+    /**
+     * Wait for the task to complete.
+     */
+    def awaitCompletion(): Unit = {
+      completion.await()
+    }
   }
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.tasks;
+
+import io.smartspaces.system.SmartSpacesEnvironment;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * A task queue which will run its tasks in First in, First Out order on a
+ * shared executor without keeping a thread of its own.
+ *
+ * <p>
+ * The queue submits a short task to the executor to drain the queue only when
+ * there are tasks waiting, and at most one of these drain tasks is ever
+ * scheduled at a time, so tasks run one after the other and in order. An idle
+ * queue uses no thread at all. The drain task gives its thread back after a
+ * batch of tasks so that a busy queue does not starve other users of the
+ * executor.
+ *
+ * <p>
+ * Tasks added before startup are run once the queue is started. Unlike
+ * {@link SimpleSequentialTaskQueue}, a shutdown does not interrupt a task
+ * which is already running.
+ *
+ * @author Keith M. Hughes
+ */
+public class ExecutorSequentialTaskQueue implements SequentialTaskQueue {
+
+  /**
+   * The default for the number of tasks run by a drain before giving its
+   * thread back.
+   */
+  public static final int DRAIN_BATCH_SIZE_DEFAULT = 64;
+
+  /**
+   * The tasks to run.
+   */
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+  /**
+   * {@code true} if a drain task has been given to the executor and has not
+   * finished.
+   */
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+  /**
+   * The drain task.
+   */
+  private final Runnable drainTask = new Runnable() {
+    @Override
+    public void run() {
+      drainTasks();
+    }
+  };
+
+  /**
+   * {@code true} if the queue is running.
+   */
+  private volatile boolean running;
+
+  /**
+   * The executor the tasks run on.
+   */
+  private final Executor executor;
+
+  /**
+   * The number of tasks run by a drain before giving its thread back.
+   */
+  private final int drainBatchSize;
+
+  /**
+   * The logger for errors.
+   */
+  private final Log log;
+
+  /**
+   * Construct a new task queue which runs on the space environment's executor.
+   *
+   * @param spaceEnvironment
+   *          the space environment the queue will use
+   * @param log
+   *          the logger to use
+   */
+  public ExecutorSequentialTaskQueue(SmartSpacesEnvironment spaceEnvironment, Log log) {
+    this(spaceEnvironment.getExecutorService(), DRAIN_BATCH_SIZE_DEFAULT, log);
+  }
+
+  /**
+   * Construct a new task queue.
+   *
+   * @param executor
+   *          the executor to run tasks on
+   * @param drainBatchSize
+   *          the number of tasks run by a drain before giving its thread back
+   * @param log
+   *          the logger to use
+   */
+  public ExecutorSequentialTaskQueue(Executor executor, int drainBatchSize, Log log) {
+    this.executor = executor;
+    this.drainBatchSize = drainBatchSize;
+    this.log = log;
+  }
+
+  @Override
+  public void startup() {
+    running = true;
+
+    scheduleDrain();
+  }
+
+  @Override
+  public void shutdown() {
+    running = false;
+
+    tasks.clear();
+  }
+
+  @Override
+  public void addTask(Runnable task) {
+    tasks.offer(task);
+
+    if (running) {
+      scheduleDrain();
+    }
+  }
+
+  /**
+   * Get the number of tasks waiting to be run.
+   *
+   * @return the number of tasks
+   */
+  public int getNumberWaitingTasks() {
+    return tasks.size();
+  }
+
+  /**
+   * Give a drain task to the executor if there are tasks waiting and no drain
+   * task is already scheduled.
+   */
+  private void scheduleDrain() {
+    if (!tasks.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(drainTask);
+      } catch (RejectedExecutionException e) {
+        drainScheduled.set(false);
+
+        log.error("Could not schedule the task queue drain", e);
+      }
+    }
+  }
+
+  /**
+   * Run a batch of tasks.
+   */
+  private void drainTasks() {
+    try {
+      for (int i = 0; i < drainBatchSize && running; i++) {
+        Runnable task = tasks.poll();
+        if (task == null) {
+          break;
+        }
+
+        try {
+          task.run();
+        } catch (Exception e) {
+          log.error("Error during task processing", e);
+        }
+      }
+    } finally {
+      drainScheduled.set(false);
+    }
+
+    // Tasks added while the drain was finishing would not have scheduled a
+    // drain, so check again once the flag is cleared.
+    if (running) {
+      scheduleDrain();
+    }
+  }
+}
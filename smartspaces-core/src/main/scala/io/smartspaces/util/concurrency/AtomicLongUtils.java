@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.concurrency;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A collection of utilities for working with atomic longs.
+ *
+ * @author Keith M. Hughes
+ */
+public class AtomicLongUtils {
+
+  /**
+   * Raise a maximum to a new value if the value is larger.
+   *
+   * <p>
+   * Several threads can update the maximum at once, the maximum ends up the
+   * largest of their values.
+   *
+   * @param max
+   *          the maximum
+   * @param value
+   *          the new value
+   */
+  public static void updateMax(AtomicLong max, long value) {
+    long currentMax;
+    do {
+      currentMax = max.get();
+    } while (value > currentMax && !max.compareAndSet(currentMax, value));
+  }
+}
@@ -16,41 +16,119 @@
 
 package io.smartspaces.util.concurrency;
 
-
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * This wraps a {@link Executors#newCachedThreadPool()} and a
- * {@link Executors#newScheduledThreadPool(int)} to provide the functionality of
- * both in a single {@link ScheduledExecutorService}. This is necessary since
- * the {@link ScheduledExecutorService} uses an unbounded queue which makes it
- * impossible to create an unlimited number of threads on demand (as explained
- * in the {@link ThreadPoolExecutor} class javadoc.
+ * A {@link ScheduledExecutorService} made of separate lanes of threads for
+ * blocking work, CPU work and timers.
+ *
+ * <p>
+ * Tasks given to {@link #execute(Runnable)} and the {@code submit} and
+ * {@code invoke} methods run in the blocking lane, a pool which creates
+ * threads on demand up to a limit. Work which only uses the CPU can be given
+ * to {@link #getCpuExecutorService()}, a fixed pool with a bounded queue, or
+ * to {@link #getCpuLane(ExecutorService)} by code which is only given an
+ * executor service. When
+ * a lane is full, new tasks are rejected or run by their submitter, depending
+ * on the {@link ExecutorRejectionPolicy}.
+ *
+ * <p>
+ * Timer threads never run scheduled tasks themselves, they only hand them off
+ * to the blocking lane when they come due, so a slow task can not hold up any
+ * other timer. A periodic task never runs at the same time as itself. As with
+ * {@link ScheduledThreadPoolExecutor}, a fixed rate period which comes due
+ * while the previous run is still going is run late, once the previous run is
+ * done. If the executor is configured to skip overdue runs, such a period is
+ * skipped instead. A periodic task which throws stops being scheduled.
+ * Cancelling a scheduled task with interruption interrupts a run in progress.
+ *
+ * <p>
+ * Each lane keeps {@link ExecutorLaneMetrics} with its queue depth, active
+ * threads, how long tasks wait and run, and for the timer lane how late
+ * scheduled tasks come due.
  *
  * @author damonkohler@google.com (Damon Kohler)
  */
 public class DefaultScheduledExecutorService implements ScheduledExecutorService {
 
+  /**
+   * The number of timer threads when a blocking executor is given without a
+   * timer executor.
+   */
   private static final int CORE_POOL_SIZE = 11;
 
+  /**
+   * How long threads beyond the core size can be idle before they end.
+   */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  /**
+   * The name of the blocking lane.
+   */
+  public static final String LANE_NAME_BLOCKING = "blocking";
+
+  /**
+   * The name of the CPU lane.
+   */
+  public static final String LANE_NAME_CPU = "cpu";
+
+  /**
+   * The name of the timer lane.
+   */
+  public static final String LANE_NAME_TIMER = "timer";
+
   private final ExecutorService executorService;
+  private final ExecutorService cpuExecutorService;
   private final ScheduledExecutorService scheduledExecutorService;
 
+  private final ExecutorLaneMetrics blockingLaneMetrics;
+  private final ExecutorLaneMetrics cpuLaneMetrics;
+  private final ExecutorLaneMetrics timerLaneMetrics;
+
+  /**
+   * {@code true} if fixed rate periods which come due while the previous run
+   * is still going are skipped rather than run late.
+   */
+  private final boolean skipOverdueRuns;
+
+  /**
+   * Construct an executor with the default configuration.
+   */
   public DefaultScheduledExecutorService() {
-    this(Executors.newCachedThreadPool());
+    this(new ExecutorServiceConfiguration());
+  }
+
+  /**
+   * Construct an executor.
+   *
+   * @param configuration
+   *          the configuration for the lanes
+   */
+  public DefaultScheduledExecutorService(ExecutorServiceConfiguration configuration) {
+    this(newBlockingLane(configuration), newCpuLane(configuration), newTimerLane(configuration),
+        configuration.isSkipOverdueRuns());
   }
 
   /**
@@ -65,18 +143,117 @@ public class DefaultScheduledExecutorService implements ScheduledExecutorService
   /**
    * This instance will take over the lifecycle of the services.
    *
+   * <p>
+   * The executor service is used for both blocking and CPU work.
+   *
    * @param executorService
    * @param scheduledExecutorService
    */
   public DefaultScheduledExecutorService(ExecutorService executorService,
       ScheduledExecutorService scheduledExecutorService) {
+    this(executorService, executorService, scheduledExecutorService);
+  }
+
+  /**
+   * This instance will take over the lifecycle of the services.
+   *
+   * @param executorService
+   *          the executor for blocking work and for running scheduled tasks
+   * @param cpuExecutorService
+   *          the executor for CPU work
+   * @param scheduledExecutorService
+   *          the executor for timers
+   */
+  public DefaultScheduledExecutorService(ExecutorService executorService,
+      ExecutorService cpuExecutorService, ScheduledExecutorService scheduledExecutorService) {
+    this(executorService, cpuExecutorService, scheduledExecutorService, false);
+  }
+
+  /**
+   * This instance will take over the lifecycle of the services.
+   *
+   * @param executorService
+   *          the executor for blocking work and for running scheduled tasks
+   * @param cpuExecutorService
+   *          the executor for CPU work
+   * @param scheduledExecutorService
+   *          the executor for timers
+   * @param skipOverdueRuns
+   *          {@code true} if fixed rate periods which come due while the
+   *          previous run is still going should be skipped rather than run late
+   */
+  public DefaultScheduledExecutorService(ExecutorService executorService,
+      ExecutorService cpuExecutorService, ScheduledExecutorService scheduledExecutorService,
+      boolean skipOverdueRuns) {
     this.executorService = executorService;
+    this.cpuExecutorService = cpuExecutorService;
     this.scheduledExecutorService = scheduledExecutorService;
+    this.skipOverdueRuns = skipOverdueRuns;
+
+    blockingLaneMetrics = getLaneMetrics(LANE_NAME_BLOCKING, executorService);
+    cpuLaneMetrics = getLaneMetrics(LANE_NAME_CPU, cpuExecutorService);
+    timerLaneMetrics = getLaneMetrics(LANE_NAME_TIMER, scheduledExecutorService);
+  }
+
+  /**
+   * Get the executor for work which only uses the CPU.
+   *
+   * @return the executor
+   */
+  public ExecutorService getCpuExecutorService() {
+    return cpuExecutorService;
+  }
+
+  /**
+   * Get the executor for work which only uses the CPU from an executor
+   * service.
+   *
+   * @param executorService
+   *          the executor service
+   *
+   * @return the CPU lane if the executor service is a
+   *         {@link DefaultScheduledExecutorService}, otherwise the executor
+   *         service itself
+   */
+  public static ExecutorService getCpuLane(ExecutorService executorService) {
+    if (executorService instanceof DefaultScheduledExecutorService) {
+      return ((DefaultScheduledExecutorService) executorService).getCpuExecutorService();
+    }
+
+    return executorService;
+  }
+
+  /**
+   * Get the metrics for the blocking lane.
+   *
+   * @return the metrics
+   */
+  public ExecutorLaneMetrics getBlockingLaneMetrics() {
+    return blockingLaneMetrics;
+  }
+
+  /**
+   * Get the metrics for the CPU lane.
+   *
+   * @return the metrics
+   */
+  public ExecutorLaneMetrics getCpuLaneMetrics() {
+    return cpuLaneMetrics;
+  }
+
+  /**
+   * Get the metrics for the timer lane.
+   *
+   * @return the metrics
+   */
+  public ExecutorLaneMetrics getTimerLaneMetrics() {
+    return timerLaneMetrics;
   }
 
   @Override
   public void shutdown() {
     executorService.shutdown();
+    cpuExecutorService.shutdown();
     scheduledExecutorService.shutdown();
   }
 
@@ -84,34 +261,37 @@ public class DefaultScheduledExecutorService implements ScheduledExecutorService
   public List<Runnable> shutdownNow() {
     List<Runnable> combined = new ArrayList<>();
     combined.addAll(executorService.shutdownNow());
+    combined.addAll(cpuExecutorService.shutdownNow());
     combined.addAll(scheduledExecutorService.shutdownNow());
     return combined;
   }
 
   @Override
   public boolean isShutdown() {
-    return executorService.isShutdown() && scheduledExecutorService.isShutdown();
+    return executorService.isShutdown() && cpuExecutorService.isShutdown()
+        && scheduledExecutorService.isShutdown();
   }
 
   @Override
   public boolean isTerminated() {
-    return executorService.isTerminated() && scheduledExecutorService.isTerminated();
+    return executorService.isTerminated() && cpuExecutorService.isTerminated()
+        && scheduledExecutorService.isTerminated();
   }
 
   /**
-   * First calls {@link #awaitTermination(long, TimeUnit)} on the wrapped
-   * {@link ExecutorService} and then {@link #awaitTermination(long, TimeUnit)}
-   * on the wrapped {@link ScheduledExecutorService}.
+   * Calls {@link #awaitTermination(long, TimeUnit)} on the wrapped blocking,
+   * CPU and timer {@link ExecutorService}s in turn.
    *
-   * @return {@code true} if both {@link Executor}s terminated, {@code false}
+   * @return {@code true} if all {@link Executor}s terminated, {@code false}
    *         otherwise
    */
   @Override
   public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
     boolean executorServiceResult = executorService.awaitTermination(timeout, unit);
+    boolean cpuExecutorServiceResult = cpuExecutorService.awaitTermination(timeout, unit);
     boolean scheduledExecutorServiceResult =
         scheduledExecutorService.awaitTermination(timeout, unit);
-    return executorServiceResult && scheduledExecutorServiceResult;
+    return executorServiceResult && cpuExecutorServiceResult && scheduledExecutorServiceResult;
   }
 
   @Override
@@ -160,23 +340,365 @@ public class DefaultScheduledExecutorService implements ScheduledExecutorService
 
   @Override
   public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
-    return scheduledExecutorService.schedule(command, delay, unit);
+    return schedule(Executors.callable(command), delay, unit);
   }
 
   @Override
   public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
-    return scheduledExecutorService.schedule(callable, delay, unit);
+    HandOffScheduledFuture<V> future = new HandOffScheduledFuture<>(callable, 0);
+    future.start(unit.toNanos(delay));
+    return future;
   }
 
   @Override
   public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period,
       TimeUnit unit) {
-    return scheduledExecutorService.scheduleAtFixedRate(command, initialDelay, period, unit);
+    if (period <= 0) {
+      throw new IllegalArgumentException("The period must be positive");
+    }
+
+    HandOffScheduledFuture<Object> future =
+        new HandOffScheduledFuture<>(Executors.callable(command), unit.toNanos(period));
+    future.start(unit.toNanos(initialDelay));
+    return future;
   }
 
   @Override
   public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
       TimeUnit unit) {
-    return scheduledExecutorService.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+    if (delay <= 0) {
+      throw new IllegalArgumentException("The delay must be positive");
+    }
+
+    HandOffScheduledFuture<Object> future =
+        new HandOffScheduledFuture<>(Executors.callable(command), -unit.toNanos(delay));
+    future.start(unit.toNanos(initialDelay));
+    return future;
+  }
+
+  /**
+   * Create the blocking lane.
+   *
+   * @param configuration
+   *          the executor configuration
+   *
+   * @return the lane
+   */
+  private static ExecutorService newBlockingLane(ExecutorServiceConfiguration configuration) {
+    return new InstrumentedThreadPoolExecutor(LANE_NAME_BLOCKING, 0,
+        configuration.getBlockingThreadsMax(), KEEP_ALIVE_SECONDS, new SynchronousQueue<Runnable>(),
+        configuration.getRejectionPolicy());
+  }
+
+  /**
+   * Create the CPU lane.
+   *
+   * @param configuration
+   *          the executor configuration
+   *
+   * @return the lane
+   */
+  private static ExecutorService newCpuLane(ExecutorServiceConfiguration configuration) {
+    InstrumentedThreadPoolExecutor lane = new InstrumentedThreadPoolExecutor(LANE_NAME_CPU,
+        configuration.getCpuThreads(), configuration.getCpuThreads(), KEEP_ALIVE_SECONDS,
+        new LinkedBlockingQueue<Runnable>(configuration.getCpuQueueCapacity()),
+        configuration.getRejectionPolicy());
+    lane.allowCoreThreadTimeOut(true);
+
+    return lane;
+  }
+
+  /**
+   * Create the timer lane.
+   *
+   * @param configuration
+   *          the executor configuration
+   *
+   * @return the lane
+   */
+  private static ScheduledExecutorService newTimerLane(ExecutorServiceConfiguration configuration) {
+    ScheduledThreadPoolExecutor lane = new ScheduledThreadPoolExecutor(
+        configuration.getTimerThreads(), new LaneThreadFactory(LANE_NAME_TIMER, true));
+    lane.setRemoveOnCancelPolicy(true);
+    lane.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+    return lane;
+  }
+
+  /**
+   * Get the metrics for a lane.
+   *
+   * @param laneName
+   *          the name of the lane
+   * @param lane
+   *          the executor for the lane
+   *
+   * @return the lane's own metrics if it keeps them, otherwise new metrics
+   */
+  private static ExecutorLaneMetrics getLaneMetrics(String laneName, ExecutorService lane) {
+    if (lane instanceof InstrumentedThreadPoolExecutor) {
+      return ((InstrumentedThreadPoolExecutor) lane).getMetrics();
+    } else {
+      return new ExecutorLaneMetrics(laneName,
+          (lane instanceof ThreadPoolExecutor) ? (ThreadPoolExecutor) lane : null);
+    }
+  }
+
+  /**
+   * A scheduled task which the timer lane hands off to the blocking lane when
+   * it comes due.
+   *
+   * @param <V>
+   *          the type of the task result
+   *
+   * @author Keith M. Hughes
+   */
+  private class HandOffScheduledFuture<V> implements ScheduledFuture<V>, Runnable {
+
+    /**
+     * The task.
+     */
+    private final Callable<V> callable;
+
+    /**
+     * The period in nanoseconds. {@code 0} for a task which runs once, positive
+     * for a fixed rate and negative for a fixed delay.
+     */
+    private final long period;
+
+    /**
+     * The result of the task. A periodic task only completes when cancelled or
+     * when it fails.
+     */
+    private final CompletableFuture<V> result = new CompletableFuture<>();
+
+    /**
+     * {@code true} while the task has been handed off and has not finished
+     * running.
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * The number of fixed rate periods which came due while the task was
+     * running and have not been run yet.
+     */
+    private final AtomicInteger overdueRuns = new AtomicInteger();
+
+    /**
+     * The timer future for the next time the task comes due.
+     */
+    private final AtomicReference<ScheduledFuture<?>> timerFuture = new AtomicReference<>();
+
+    /**
+     * The {@link System#nanoTime()} when the task next comes due.
+     */
+    private volatile long dueTime;
+
+    /**
+     * The thread running the task, if it is running.
+     */
+    private volatile Thread runner;
+
+    /**
+     * What is handed off to the blocking lane.
+     */
+    private final Runnable handOff = new Runnable() {
+      @Override
+      public void run() {
+        runTask();
+      }
+    };
+
+    /**
+     * Construct a new scheduled task.
+     *
+     * @param callable
+     *          the task
+     * @param period
+     *          the period in nanoseconds, {@code 0} for a task which runs once,
+     *          positive for a fixed rate and negative for a fixed delay
+     */
+    HandOffScheduledFuture(Callable<V> callable, long period) {
+      this.callable = callable;
+      this.period = period;
+    }
+
+    /**
+     * Give the task to the timer.
+     *
+     * @param initialDelay
+     *          the delay in nanoseconds before the task first comes due
+     */
+    void start(long initialDelay) {
+      dueTime = System.nanoTime() + initialDelay;
+
+      ScheduledFuture<?> future;
+      if (period > 0) {
+        future = scheduledExecutorService.scheduleAtFixedRate(this, initialDelay, period,
+            TimeUnit.NANOSECONDS);
+      } else {
+        future = scheduledExecutorService.schedule(this, initialDelay, TimeUnit.NANOSECONDS);
+      }
+
+      // A fixed delay task may already have been scheduled again.
+      timerFuture.compareAndSet(null, future);
+
+      if (result.isDone()) {
+        cancelTimer();
+      }
+    }
+
+    /**
+     * The task has come due, hand it off.
+     */
+    @Override
+    public void run() {
+      if (result.isDone()) {
+        cancelTimer();
+        return;
+      }
+
+      timerLaneMetrics.onScheduledTaskDue(System.nanoTime() - dueTime);
+      if (period > 0) {
+        dueTime += period;
+      }
+
+      if (!running.compareAndSet(false, true)) {
+        if (skipOverdueRuns) {
+          timerLaneMetrics.onScheduledTaskSkipped();
+        } else {
+          overdueRuns.incrementAndGet();
+        }
+        return;
+      }
+
+      try {
+        executorService.execute(handOff);
+      } catch (RejectedExecutionException e) {
+        running.set(false);
+        timerLaneMetrics.onTaskSaturated();
+
+        if (period == 0) {
+          result.completeExceptionally(e);
+        } else if (period < 0) {
+          scheduleNext();
+        }
+      }
+    }
+
+    /**
+     * Run the task in the blocking lane.
+     */
+    private void runTask() {
+      runner = Thread.currentThread();
+      try {
+        // Periods which came due during a run are run straight after it.
+        do {
+          if (!result.isDone()) {
+            V value = callable.call();
+            if (period == 0) {
+              result.complete(value);
+            }
+          }
+        } while (!result.isDone() && takeOverdueRun());
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+        cancelTimer();
+      } finally {
+        runner = null;
+        running.set(false);
+
+        if (period < 0 && !result.isDone()) {
+          scheduleNext();
+        }
+      }
+    }
+
+    /**
+     * Take one of the fixed rate periods which came due while the task was
+     * running.
+     *
+     * @return {@code true} if there was an overdue period to run
+     */
+    private boolean takeOverdueRun() {
+      int overdue;
+      do {
+        overdue = overdueRuns.get();
+        if (overdue == 0) {
+          return false;
+        }
+      } while (!overdueRuns.compareAndSet(overdue, overdue - 1));
+
+      return true;
+    }
+
+    /**
+     * Schedule the next run of a fixed delay task.
+     */
+    private void scheduleNext() {
+      dueTime = System.nanoTime() - period;
+      try {
+        timerFuture.set(scheduledExecutorService.schedule(this, -period, TimeUnit.NANOSECONDS));
+      } catch (RejectedExecutionException e) {
+        // The timer has been shut down.
+        result.cancel(false);
+      }
+    }
+
+    /**
+     * Stop the timer for the task.
+     */
+    private void cancelTimer() {
+      ScheduledFuture<?> future = timerFuture.get();
+      if (future != null) {
+        future.cancel(false);
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = result.cancel(mayInterruptIfRunning);
+      cancelTimer();
+
+      if (cancelled && mayInterruptIfRunning) {
+        Thread currentRunner = runner;
+        if (currentRunner != null) {
+          currentRunner.interrupt();
+        }
+      }
+
+      return cancelled;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return result.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return result.isDone();
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+      return result.get();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      return result.get(timeout, unit);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(dueTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
   }
 }
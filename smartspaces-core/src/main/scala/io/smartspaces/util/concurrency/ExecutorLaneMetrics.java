@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.util.concurrency;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics for a single lane of an executor.
+ *
+ * <p>
+ * All times are in nanoseconds.
+ *
+ * @author Keith M. Hughes
+ */
+public class ExecutorLaneMetrics {
+
+  /**
+   * The name of the lane.
+   */
+  private final String laneName;
+
+  /**
+   * The thread pool for the lane, can be {@code null} if the pool is not known.
+   */
+  private final ThreadPoolExecutor pool;
+
+  /**
+   * The number of tasks submitted to the lane.
+   */
+  private final AtomicLong submittedTaskCount = new AtomicLong();
+
+  /**
+   * The number of tasks which found the lane full.
+   */
+  private final AtomicLong saturatedTaskCount = new AtomicLong();
+
+  /**
+   * The number of tasks which have finished running.
+   */
+  private final AtomicLong completedTaskCount = new AtomicLong();
+
+  /**
+   * The total time tasks waited between submission and starting to run.
+   */
+  private final AtomicLong totalWaitTime = new AtomicLong();
+
+  /**
+   * The longest time a task waited to start running.
+   */
+  private final AtomicLong maxWaitTime = new AtomicLong();
+
+  /**
+   * The total time tasks took to run.
+   */
+  private final AtomicLong totalRunTime = new AtomicLong();
+
+  /**
+   * The longest time a task took to run.
+   */
+  private final AtomicLong maxRunTime = new AtomicLong();
+
+  /**
+   * The number of times scheduled tasks came due.
+   */
+  private final AtomicLong scheduledRunCount = new AtomicLong();
+
+  /**
+   * The number of times a scheduled task came due while its previous run was
+   * still going and so was skipped. Runs are only skipped if the executor is
+   * configured to skip overdue runs.
+   */
+  private final AtomicLong skippedScheduledRunCount = new AtomicLong();
+
+  /**
+   * The total time scheduled tasks came due after they should have.
+   */
+  private final AtomicLong totalLateness = new AtomicLong();
+
+  /**
+   * The longest time a scheduled task came due after it should have.
+   */
+  private final AtomicLong maxLateness = new AtomicLong();
+
+  /**
+   * Construct new metrics.
+   *
+   * @param laneName
+   *          the name of the lane
+   * @param pool
+   *          the thread pool for the lane, can be {@code null} if not known
+   */
+  public ExecutorLaneMetrics(String laneName, ThreadPoolExecutor pool) {
+    this.laneName = laneName;
+    this.pool = pool;
+  }
+
+  /**
+   * A task has been submitted.
+   */
+  public void onTaskSubmitted() {
+    submittedTaskCount.incrementAndGet();
+  }
+
+  /**
+   * A task found the lane full.
+   */
+  public void onTaskSaturated() {
+    saturatedTaskCount.incrementAndGet();
+  }
+
+  /**
+   * A task has finished running.
+   *
+   * @param waitTime
+   *          how long the task waited to start running
+   * @param runTime
+   *          how long the task took to run
+   */
+  public void onTaskCompleted(long waitTime, long runTime) {
+    completedTaskCount.incrementAndGet();
+    totalWaitTime.addAndGet(waitTime);
+    AtomicLongUtils.updateMax(maxWaitTime, waitTime);
+    totalRunTime.addAndGet(runTime);
+    AtomicLongUtils.updateMax(maxRunTime, runTime);
+  }
+
+  /**
+   * A scheduled task has come due.
+   *
+   * @param lateness
+   *          how long after its due time the task came due
+   */
+  public void onScheduledTaskDue(long lateness) {
+    scheduledRunCount.incrementAndGet();
+    if (lateness > 0) {
+      totalLateness.addAndGet(lateness);
+      AtomicLongUtils.updateMax(maxLateness, lateness);
+    }
+  }
+
+  /**
+   * A scheduled task came due while its previous run was still going.
+   */
+  public void onScheduledTaskSkipped() {
+    skippedScheduledRunCount.incrementAndGet();
+  }
+
+  /**
+   * Get the name of the lane.
+   *
+   * @return the name
+   */
+  public String getLaneName() {
+    return laneName;
+  }
+
+  /**
+   * Get the number of tasks waiting in the lane's queue.
+   *
+   * @return the number of tasks, {@code 0} if the pool is not known
+   */
+  public int getQueueDepth() {
+    return (pool != null) ? pool.getQueue().size() : 0;
+  }
+
+  /**
+   * Get the number of threads running tasks.
+   *
+   * @return the number of threads, {@code 0} if the pool is not known
+   */
+  public int getActiveThreadCount() {
+    return (pool != null) ? pool.getActiveCount() : 0;
+  }
+
+  /**
+   * Get the number of threads in the lane.
+   *
+   * @return the number of threads, {@code 0} if the pool is not known
+   */
+  public int getPoolSize() {
+    return (pool != null) ? pool.getPoolSize() : 0;
+  }
+
+  /**
+   * Get the number of tasks submitted to the lane.
+   *
+   * @return the number of tasks
+   */
+  public long getSubmittedTaskCount() {
+    return submittedTaskCount.get();
+  }
+
+  /**
+   * Get the number of tasks which found the lane full, whether they were
+   * rejected or run by their submitter.
+   *
+   * @return the number of tasks
+   */
+  public long getSaturatedTaskCount() {
+    return saturatedTaskCount.get();
+  }
+
+  /**
+   * Get the number of tasks which have finished running.
+   *
+   * @return the number of tasks
+   */
+  public long getCompletedTaskCount() {
+    return completedTaskCount.get();
+  }
+
+  /**
+   * Get the average time tasks waited to start running.
+   *
+   * @return the wait time, {@code 0} if no tasks have completed
+   */
+  public long getAverageWaitTime() {
+    long count = completedTaskCount.get();
+    return (count != 0) ? totalWaitTime.get() / count : 0;
+  }
+
+  /**
+   * Get the longest time a task waited to start running.
+   *
+   * @return the wait time
+   */
+  public long getMaxWaitTime() {
+    return maxWaitTime.get();
+  }
+
+  /**
+   * Get the average time tasks took to run.
+   *
+   * @return the run time, {@code 0} if no tasks have completed
+   */
+  public long getAverageRunTime() {
+    long count = completedTaskCount.get();
+    return (count != 0) ? totalRunTime.get() / count : 0;
+  }
+
+  /**
+   * Get the longest time a task took to run.
+   *
+   * @return the run time
+   */
+  public long getMaxRunTime() {
+    return maxRunTime.get();
+  }
+
+  /**
+   * Get the number of times scheduled tasks came due.
+   *
+   * @return the number of times
+   */
+  public long getScheduledRunCount() {
+    return scheduledRunCount.get();
+  }
+
+  /**
+   * Get the number of times a scheduled task was skipped because its previous
+   * run was still going.
+   *
+   * @return the number of times
+   */
+  public long getSkippedScheduledRunCount() {
+    return skippedScheduledRunCount.get();
+  }
+
+  /**
+   * Get the average time scheduled tasks came due after they should have.
+   *
+   * @return the lateness, {@code 0} if no scheduled tasks have come due
+   */
+  public long getAverageLateness() {
+    long count = scheduledRunCount.get();
+    return (count != 0) ? totalLateness.get() / count : 0;
+  }
+
+  /**
+   * Get the longest time a scheduled task came due after it should have.
+   *
+   * @return the lateness
+   */
+  public long getMaxLateness() {
+    return maxLateness.get();
+  }
+
+  @Override
+  public String toString() {
+    return "ExecutorLaneMetrics [laneName=" + laneName + ", queueDepth=" + getQueueDepth()
+        + ", activeThreadCount=" + getActiveThreadCount() + ", poolSize=" + getPoolSize()
+        + ", submittedTaskCount=" + getSubmittedTaskCount() + ", saturatedTaskCount="
+        + getSaturatedTaskCount() + ", completedTaskCount=" + getCompletedTaskCount()
+        + ", averageWaitTime=" + getAverageWaitTime() + ", maxWaitTime=" + getMaxWaitTime()
+        + ", averageRunTime=" + getAverageRunTime() + ", maxRunTime=" + getMaxRunTime()
+        + ", scheduledRunCount=" + getScheduledRunCount() + ", skippedScheduledRunCount="
+        + getSkippedScheduledRunCount() + ", averageLateness=" + getAverageLateness()
+        + ", maxLateness=" + getMaxLateness() + "]";
+  }
+}
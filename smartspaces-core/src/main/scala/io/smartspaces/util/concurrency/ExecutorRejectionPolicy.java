@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.util.concurrency;
+
+/**
+ * What an executor lane does with a task when all of its threads are busy and
+ * its queue is full.
+ *
+ * @author Keith M. Hughes
+ */
+public enum ExecutorRejectionPolicy {
+
+  /**
+   * The submission fails with a
+   * {@link java.util.concurrent.RejectedExecutionException}.
+   */
+  REJECT,
+
+  /**
+   * The task is run by the thread submitting it, which slows the submitter
+   * down until the lane catches up.
+   *
+   * <p>
+   * Timer threads never run tasks this way, a hand off from a timer to a full
+   * lane is rejected.
+   */
+  CALLER_RUNS
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.util.concurrency;
+
+import io.smartspaces.SimpleSmartSpacesException;
+
+/**
+ * The configuration for the lanes of a {@link DefaultScheduledExecutorService}.
+ *
+ * @author Keith M. Hughes
+ */
+public class ExecutorServiceConfiguration {
+
+  /**
+   * Configuration property for the largest number of threads in the blocking
+   * lane.
+   */
+  public static final String CONFIGURATION_NAME_BLOCKING_THREADS_MAX =
+      "smartspaces.executor.blocking.threads.max";
+
+  /**
+   * Configuration property for the number of threads in the CPU lane.
+   */
+  public static final String CONFIGURATION_NAME_CPU_THREADS = "smartspaces.executor.cpu.threads";
+
+  /**
+   * Configuration property for the number of tasks which can wait in the CPU
+   * lane.
+   */
+  public static final String CONFIGURATION_NAME_CPU_QUEUE_CAPACITY =
+      "smartspaces.executor.cpu.queue.capacity";
+
+  /**
+   * Configuration property for the number of threads in the timer lane.
+   */
+  public static final String CONFIGURATION_NAME_TIMER_THREADS = "smartspaces.executor.timer.threads";
+
+  /**
+   * Configuration property for what a full lane does with new tasks, one of the
+   * names in {@link ExecutorRejectionPolicy}.
+   */
+  public static final String CONFIGURATION_NAME_REJECTION_POLICY =
+      "smartspaces.executor.rejection.policy";
+
+  /**
+   * Configuration property for whether fixed rate periods which come due while
+   * the previous run is still going are skipped rather than run late.
+   */
+  public static final String CONFIGURATION_NAME_SKIP_OVERDUE_RUNS =
+      "smartspaces.executor.skip.overdue.runs";
+
+  /**
+   * All configuration properties for the executor.
+   */
+  public static final String[] CONFIGURATION_NAMES = { CONFIGURATION_NAME_BLOCKING_THREADS_MAX,
+      CONFIGURATION_NAME_CPU_THREADS, CONFIGURATION_NAME_CPU_QUEUE_CAPACITY,
+      CONFIGURATION_NAME_TIMER_THREADS, CONFIGURATION_NAME_REJECTION_POLICY,
+      CONFIGURATION_NAME_SKIP_OVERDUE_RUNS };
+
+  /**
+   * The default for the largest number of threads in the blocking lane.
+   */
+  public static final int BLOCKING_THREADS_MAX_DEFAULT = 1024;
+
+  /**
+   * The default for the number of tasks which can wait in the CPU lane.
+   */
+  public static final int CPU_QUEUE_CAPACITY_DEFAULT = 10000;
+
+  /**
+   * The default for the number of threads in the timer lane.
+   */
+  public static final int TIMER_THREADS_DEFAULT = 2;
+
+  /**
+   * The default for what a full lane does with new tasks.
+   */
+  public static final ExecutorRejectionPolicy REJECTION_POLICY_DEFAULT =
+      ExecutorRejectionPolicy.CALLER_RUNS;
+
+  /**
+   * The largest number of threads in the blocking lane.
+   */
+  private int blockingThreadsMax = BLOCKING_THREADS_MAX_DEFAULT;
+
+  /**
+   * The number of threads in the CPU lane.
+   */
+  private int cpuThreads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The number of tasks which can wait in the CPU lane.
+   */
+  private int cpuQueueCapacity = CPU_QUEUE_CAPACITY_DEFAULT;
+
+  /**
+   * The number of threads in the timer lane.
+   */
+  private int timerThreads = TIMER_THREADS_DEFAULT;
+
+  /**
+   * What a full lane does with new tasks.
+   */
+  private ExecutorRejectionPolicy rejectionPolicy = REJECTION_POLICY_DEFAULT;
+
+  /**
+   * {@code true} if fixed rate periods which come due while the previous run
+   * is still going are skipped rather than run late.
+   */
+  private boolean skipOverdueRuns = false;
+
+  /**
+   * Set a value from a configuration property.
+   *
+   * @param name
+   *          the name of the property, one of {@link #CONFIGURATION_NAMES}
+   * @param value
+   *          the value of the property
+   *
+   * @throws SimpleSmartSpacesException
+   *           the name is unknown or the value is not valid for it
+   */
+  public void setProperty(String name, String value) throws SimpleSmartSpacesException {
+    try {
+      if (CONFIGURATION_NAME_BLOCKING_THREADS_MAX.equals(name)) {
+        setBlockingThreadsMax(Integer.parseInt(value.trim()));
+      } else if (CONFIGURATION_NAME_CPU_THREADS.equals(name)) {
+        setCpuThreads(Integer.parseInt(value.trim()));
+      } else if (CONFIGURATION_NAME_CPU_QUEUE_CAPACITY.equals(name)) {
+        setCpuQueueCapacity(Integer.parseInt(value.trim()));
+      } else if (CONFIGURATION_NAME_TIMER_THREADS.equals(name)) {
+        setTimerThreads(Integer.parseInt(value.trim()));
+      } else if (CONFIGURATION_NAME_REJECTION_POLICY.equals(name)) {
+        setRejectionPolicy(ExecutorRejectionPolicy.valueOf(value.trim().toUpperCase()));
+      } else if (CONFIGURATION_NAME_SKIP_OVERDUE_RUNS.equals(name)) {
+        setSkipOverdueRuns(parseBoolean(value));
+      } else {
+        throw new SimpleSmartSpacesException(
+            String.format("Unknown executor configuration property %s", name));
+      }
+    } catch (IllegalArgumentException e) {
+      throw new SimpleSmartSpacesException(
+          String.format("Illegal value %s for executor configuration property %s", value, name),
+          e);
+    }
+  }
+
+  /**
+   * Get the largest number of threads in the blocking lane.
+   *
+   * @return the number of threads
+   */
+  public int getBlockingThreadsMax() {
+    return blockingThreadsMax;
+  }
+
+  /**
+   * Set the largest number of threads in the blocking lane.
+   *
+   * @param blockingThreadsMax
+   *          the number of threads, must be positive
+   */
+  public void setBlockingThreadsMax(int blockingThreadsMax) {
+    this.blockingThreadsMax = checkPositive(blockingThreadsMax);
+  }
+
+  /**
+   * Get the number of threads in the CPU lane.
+   *
+   * @return the number of threads
+   */
+  public int getCpuThreads() {
+    return cpuThreads;
+  }
+
+  /**
+   * Set the number of threads in the CPU lane.
+   *
+   * @param cpuThreads
+   *          the number of threads, must be positive
+   */
+  public void setCpuThreads(int cpuThreads) {
+    this.cpuThreads = checkPositive(cpuThreads);
+  }
+
+  /**
+   * Get the number of tasks which can wait in the CPU lane.
+   *
+   * @return the number of tasks
+   */
+  public int getCpuQueueCapacity() {
+    return cpuQueueCapacity;
+  }
+
+  /**
+   * Set the number of tasks which can wait in the CPU lane.
+   *
+   * @param cpuQueueCapacity
+   *          the number of tasks, must be positive
+   */
+  public void setCpuQueueCapacity(int cpuQueueCapacity) {
+    this.cpuQueueCapacity = checkPositive(cpuQueueCapacity);
+  }
+
+  /**
+   * Get the number of threads in the timer lane.
+   *
+   * @return the number of threads
+   */
+  public int getTimerThreads() {
+    return timerThreads;
+  }
+
+  /**
+   * Set the number of threads in the timer lane.
+   *
+   * @param timerThreads
+   *          the number of threads, must be positive
+   */
+  public void setTimerThreads(int timerThreads) {
+    this.timerThreads = checkPositive(timerThreads);
+  }
+
+  /**
+   * Get what a full lane does with new tasks.
+   *
+   * @return the rejection policy
+   */
+  public ExecutorRejectionPolicy getRejectionPolicy() {
+    return rejectionPolicy;
+  }
+
+  /**
+   * Set what a full lane does with new tasks.
+   *
+   * @param rejectionPolicy
+   *          the rejection policy
+   */
+  public void setRejectionPolicy(ExecutorRejectionPolicy rejectionPolicy) {
+    this.rejectionPolicy = rejectionPolicy;
+  }
+
+  /**
+   * Are fixed rate periods which come due while the previous run is still going
+   * skipped?
+   *
+   * @return {@code true} if they are skipped, {@code false} if they are run
+   *         late
+   */
+  public boolean isSkipOverdueRuns() {
+    return skipOverdueRuns;
+  }
+
+  /**
+   * Set whether fixed rate periods which come due while the previous run is
+   * still going are skipped.
+   *
+   * @param skipOverdueRuns
+   *          {@code true} if they should be skipped, {@code false} if they
+   *          should be run late
+   */
+  public void setSkipOverdueRuns(boolean skipOverdueRuns) {
+    this.skipOverdueRuns = skipOverdueRuns;
+  }
+
+  /**
+   * Parse a boolean property value.
+   *
+   * @param value
+   *          the value
+   *
+   * @return the boolean
+   */
+  private static boolean parseBoolean(String value) {
+    String trimmed = value.trim();
+    if ("true".equalsIgnoreCase(trimmed)) {
+      return true;
+    } else if ("false".equalsIgnoreCase(trimmed)) {
+      return false;
+    }
+
+    throw new IllegalArgumentException("Not a boolean: " + value);
+  }
+
+  /**
+   * Check that a size is positive.
+   *
+   * @param value
+   *          the size
+   *
+   * @return the size
+   */
+  private static int checkPositive(int value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException("Executor sizes must be positive, was " + value);
+    }
+
+    return value;
+  }
+}
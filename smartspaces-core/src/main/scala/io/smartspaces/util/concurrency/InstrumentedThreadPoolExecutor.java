@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.util.concurrency;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread pool for a single executor lane which records how long its tasks
+ * wait and run.
+ *
+ * @author Keith M. Hughes
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+  /**
+   * The metrics for the lane.
+   */
+  private final ExecutorLaneMetrics metrics;
+
+  /**
+   * Construct a new thread pool.
+   *
+   * @param laneName
+   *          the name of the lane
+   * @param corePoolSize
+   *          the number of threads to keep even when idle
+   * @param maximumPoolSize
+   *          the largest number of threads
+   * @param keepAliveSeconds
+   *          how long threads beyond the core size can be idle before ending
+   * @param workQueue
+   *          the queue for tasks waiting for a thread
+   * @param rejectionPolicy
+   *          what to do with tasks when the lane is full
+   */
+  public InstrumentedThreadPoolExecutor(String laneName, int corePoolSize, int maximumPoolSize,
+      long keepAliveSeconds, BlockingQueue<Runnable> workQueue,
+      ExecutorRejectionPolicy rejectionPolicy) {
+    super(corePoolSize, maximumPoolSize, keepAliveSeconds, TimeUnit.SECONDS, workQueue,
+        new LaneThreadFactory(laneName, false));
+
+    metrics = new ExecutorLaneMetrics(laneName, this);
+    setRejectedExecutionHandler(new LaneRejectedExecutionHandler(laneName, rejectionPolicy, metrics));
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    metrics.onTaskSubmitted();
+
+    super.execute(new TimedRunnable(command, metrics));
+  }
+
+  /**
+   * Get the metrics for the lane.
+   *
+   * @return the metrics
+   */
+  public ExecutorLaneMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * A task which records its timings in the lane metrics.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class TimedRunnable implements Runnable {
+
+    /**
+     * The task to run.
+     */
+    private final Runnable command;
+
+    /**
+     * The metrics to record in.
+     */
+    private final ExecutorLaneMetrics metrics;
+
+    /**
+     * When the task was submitted.
+     */
+    private final long submitTime = System.nanoTime();
+
+    /**
+     * Construct a new timed task.
+     *
+     * @param command
+     *          the task to run
+     * @param metrics
+     *          the metrics to record in
+     */
+    TimedRunnable(Runnable command, ExecutorLaneMetrics metrics) {
+      this.command = command;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public void run() {
+      long startTime = System.nanoTime();
+      try {
+        command.run();
+      } finally {
+        metrics.onTaskCompleted(startTime - submitTime, System.nanoTime() - startTime);
+      }
+    }
+  }
+
+  /**
+   * Handles tasks which find the lane full.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class LaneRejectedExecutionHandler implements RejectedExecutionHandler {
+
+    /**
+     * The name of the lane.
+     */
+    private final String laneName;
+
+    /**
+     * What to do with the task.
+     */
+    private final ExecutorRejectionPolicy rejectionPolicy;
+
+    /**
+     * The metrics for the lane.
+     */
+    private final ExecutorLaneMetrics metrics;
+
+    /**
+     * Construct a new handler.
+     *
+     * @param laneName
+     *          the name of the lane
+     * @param rejectionPolicy
+     *          what to do with the task
+     * @param metrics
+     *          the metrics for the lane
+     */
+    LaneRejectedExecutionHandler(String laneName, ExecutorRejectionPolicy rejectionPolicy,
+        ExecutorLaneMetrics metrics) {
+      this.laneName = laneName;
+      this.rejectionPolicy = rejectionPolicy;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("Executor lane " + laneName + " is shut down");
+      }
+
+      metrics.onTaskSaturated();
+
+      if (rejectionPolicy == ExecutorRejectionPolicy.CALLER_RUNS
+          && !LaneThreadFactory.isHandOffOnlyThread()) {
+        task.run();
+      } else {
+        throw new RejectedExecutionException("Executor lane " + laneName + " is full");
+      }
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.util.concurrency;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread factory for the threads of an executor lane.
+ *
+ * @author Keith M. Hughes
+ */
+public class LaneThreadFactory implements ThreadFactory {
+
+  /**
+   * The name of the lane, used for thread names.
+   */
+  private final String laneName;
+
+  /**
+   * {@code true} if the lane's threads may only hand tasks off to other lanes
+   * and never run them.
+   */
+  private final boolean handOffOnly;
+
+  /**
+   * The number of the next thread.
+   */
+  private final AtomicInteger nextThreadNumber = new AtomicInteger(1);
+
+  /**
+   * Construct a new thread factory.
+   *
+   * @param laneName
+   *          the name of the lane
+   * @param handOffOnly
+   *          {@code true} if the lane's threads may only hand tasks off to
+   *          other lanes
+   */
+  public LaneThreadFactory(String laneName, boolean handOffOnly) {
+    this.laneName = laneName;
+    this.handOffOnly = handOffOnly;
+  }
+
+  @Override
+  public Thread newThread(Runnable runnable) {
+    return new LaneThread(runnable, "smartspaces-" + laneName + "-" + nextThreadNumber.getAndIncrement(),
+        handOffOnly);
+  }
+
+  /**
+   * Is the current thread only allowed to hand tasks off?
+   *
+   * @return {@code true} if the current thread is a hand off only lane thread
+   */
+  public static boolean isHandOffOnlyThread() {
+    Thread thread = Thread.currentThread();
+    return thread instanceof LaneThread && ((LaneThread) thread).handOffOnly;
+  }
+
+  /**
+   * A thread of an executor lane.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class LaneThread extends Thread {
+
+    /**
+     * {@code true} if the thread may only hand tasks off.
+     */
+    private final boolean handOffOnly;
+
+    /**
+     * Construct a new thread.
+     *
+     * @param runnable
+     *          what the thread runs
+     * @param name
+     *          the name of the thread
+     * @param handOffOnly
+     *          {@code true} if the thread may only hand tasks off
+     */
+    LaneThread(Runnable runnable, String name, boolean handOffOnly) {
+      super(runnable, name);
+      this.handOffOnly = handOffOnly;
+    }
+  }
+}
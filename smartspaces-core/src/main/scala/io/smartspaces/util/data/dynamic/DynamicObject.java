@@ -252,6 +252,126 @@ public interface DynamicObject {
    */
   Boolean getRequiredBoolean(String name) throws DynamicObjectSmartSpacesException;
 
+  /**
+   * If the current level is a object, get an integer field from the object
+   * without boxing it.
+   *
+   * @param name
+   *          name of the field
+   * @param defaultValue
+   *          the default value if there is nothing for the field
+   *
+   * @return value of the field, or the default value if nothing for the field
+   *
+   * @throws DynamicObjectSmartSpacesException
+   *           not an object
+   */
+  int getIntegerValue(String name, int defaultValue) throws DynamicObjectSmartSpacesException;
+
+  /**
+   * If the current level is a object, get an integer field from the object
+   * without boxing it.
+   *
+   * @param name
+   *          name of the field
+   *
+   * @return value of the field
+   *
+   * @throws DynamicObjectSmartSpacesException
+   *           not an object or the field does not exist
+   */
+  int getRequiredIntegerValue(String name) throws DynamicObjectSmartSpacesException;
+
+  /**
+   * If the current level is a object, get a long field from the object
+   * without boxing it.
+   *
+   * @param name
+   *          name of the field
+   * @param defaultValue
+   *          the default value if there is nothing for the field
+   *
+   * @return value of the field, or the default value if nothing for the field
+   *
+   * @throws DynamicObjectSmartSpacesException
+   *           not an object
+   */
+  long getLongValue(String name, long defaultValue) throws DynamicObjectSmartSpacesException;
+
+  /**
+   * If the current level is a object, get a long field from the object
+   * without boxing it.
+   *
+   * @param name
+   *          name of the field
+   *
+   * @return value of the field
+   *
+   * @throws DynamicObjectSmartSpacesException
+   *           not an object or the field does not exist
+   */
+  long getRequiredLongValue(String name) throws DynamicObjectSmartSpacesException;
+
+  /**
+   * If the current level is a object, get a double field from the object
+   * without boxing it.
+   *
+   * @param name
+   *          name of the field
+   * @param defaultValue
+   *          the default value if there is nothing for the field
+   *
+   * @return value of the field, or the default value if nothing for the field
+   *
+   * @throws DynamicObjectSmartSpacesException
+   *           not an object
+   */
+  double getDoubleValue(String name, double defaultValue) throws DynamicObjectSmartSpacesException;
+
+  /**
+   * If the current level is a object, get a double field from the object
+   * without boxing it.
+   *
+   * @param name
+   *          name of the field
+   *
+   * @return value of the field
+   *
+   * @throws DynamicObjectSmartSpacesException
+   *           not an object or the field does not exist
+   */
+  double getRequiredDoubleValue(String name) throws DynamicObjectSmartSpacesException;
+
+  /**
+   * If the current level is a object, get a boolean field from the object
+   * without boxing it.
+   *
+   * @param name
+   *          name of the field
+   * @param defaultValue
+   *          the default value if there is nothing for the field
+   *
+   * @return value of the field, or the default value if nothing for the field
+   *
+   * @throws DynamicObjectSmartSpacesException
+   *           not an object
+   */
+  boolean getBooleanValue(String name, boolean defaultValue) throws DynamicObjectSmartSpacesException;
+
+  /**
+   * If the current level is a object, get a boolean field from the object
+   * without boxing it.
+   *
+   * @param name
+   *          name of the field
+   *
+   * @return value of the field
+   *
+   * @throws DynamicObjectSmartSpacesException
+   *           not an object or the field does not exist
+   */
+  boolean getRequiredBooleanValue(String name) throws DynamicObjectSmartSpacesException;
+
   /**
    * Does the current object contain a property with the given name?
    *
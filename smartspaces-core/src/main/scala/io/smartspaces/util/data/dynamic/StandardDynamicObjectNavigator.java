@@ -19,13 +19,13 @@ package io.smartspaces.util.data.dynamic;
 import io.smartspaces.util.data.mapper.JsonDataMapper;
 import io.smartspaces.util.data.mapper.StandardJsonDataMapper;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.Stack;
 
 /**
  * A navigation object for working through a dynamic object.
@@ -33,10 +33,20 @@ import java.util.Stack;
  * <p>
  * The view of the object is read-only.
  *
+ * <p>
+ * The navigator is not thread safe. It can be pointed at a new object with
+ * {@link #reset(Map)}, so code decoding a stream of messages on one thread can
+ * use a single navigator for all of them.
+ *
  * @author Keith M. Hughes
  */
 public class StandardDynamicObjectNavigator implements DynamicObject {
 
+  /**
+   * The initial depth of the navigation and mark stacks.
+   */
+  private static final int STACK_DEPTH_INITIAL = 8;
+
   /**
    * The JSON data mapper.
    */
@@ -50,12 +60,22 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
   /**
    * A stack of objects as we walk the graph.
    */
-  private final Stack<Object> nav = new Stack<Object>();
+  private Object[] nav = new Object[STACK_DEPTH_INITIAL];
 
   /**
-   * Places where we cannot move up any further.
+   * The number of objects in the navigation stack.
    */
-  private final Stack<Integer> marks = new Stack<Integer>();
+  private int navSize;
+
+  /**
+   * Places where we cannot move up any further, as navigation stack sizes.
+   */
+  private int[] marks = new int[STACK_DEPTH_INITIAL];
+
+  /**
+   * The number of marks.
+   */
+  private int marksSize;
 
   /**
    * Type of the current object.
@@ -109,6 +129,29 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
     }
   }
 
+  /**
+   * Point the navigator at a new root object.
+   *
+   * <p>
+   * All navigation and marks are cleared.
+   *
+   * @param root
+   *          the new root map
+   *
+   * @return this navigator
+   */
+  public StandardDynamicObjectNavigator reset(Map<String, Object> root) {
+    this.root = root;
+
+    Arrays.fill(nav, 0, navSize, null);
+    navSize = 0;
+    marksSize = 0;
+
+    setCurrentAsObject(root);
+
+    return this;
+  }
+
   @Override
   public Map<String, Object> getRoot() {
     return root;
@@ -273,6 +316,135 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
     }
   }
 
+  @Override
+  public int getIntegerValue(String propertyName, int defaultValue) {
+    Object value = getObjectProperty(propertyName);
+    if (value instanceof Integer) {
+      return (Integer) value;
+    } else if (value == null) {
+      return defaultValue;
+    } else {
+      throw newNotConvertableException(propertyName, value, "an Integer");
+    }
+  }
+
+  @Override
+  public int getRequiredIntegerValue(String propertyName) {
+    Object value = getObjectProperty(propertyName);
+    if (value instanceof Integer) {
+      return (Integer) value;
+    } else if (value == null) {
+      throw newNoPropertyException(propertyName);
+    } else {
+      throw newNotConvertableException(propertyName, value, "an Integer");
+    }
+  }
+
+  @Override
+  public long getLongValue(String propertyName, long defaultValue) {
+    Object value = getObjectProperty(propertyName);
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    } else if (value == null) {
+      return defaultValue;
+    } else {
+      throw newNotConvertableException(propertyName, value, "a Long");
+    }
+  }
+
+  @Override
+  public long getRequiredLongValue(String propertyName) {
+    Object value = getObjectProperty(propertyName);
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    } else if (value == null) {
+      throw newNoPropertyException(propertyName);
+    } else {
+      throw newNotConvertableException(propertyName, value, "a Long");
+    }
+  }
+
+  @Override
+  public double getDoubleValue(String propertyName, double defaultValue) {
+    Object value = getObjectProperty(propertyName);
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    } else if (value == null) {
+      return defaultValue;
+    } else {
+      throw newNotConvertableException(propertyName, value, "a Double");
+    }
+  }
+
+  @Override
+  public double getRequiredDoubleValue(String propertyName) {
+    Object value = getObjectProperty(propertyName);
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    } else if (value == null) {
+      throw newNoPropertyException(propertyName);
+    } else {
+      throw newNotConvertableException(propertyName, value, "a Double");
+    }
+  }
+
+  @Override
+  public boolean getBooleanValue(String propertyName, boolean defaultValue) {
+    Object value = getObjectProperty(propertyName);
+    if (value instanceof Boolean) {
+      return (Boolean) value;
+    } else if (value == null) {
+      return defaultValue;
+    } else {
+      throw newNotConvertableException(propertyName, value, "a Boolean");
+    }
+  }
+
+  @Override
+  public boolean getRequiredBooleanValue(String propertyName) {
+    Object value = getObjectProperty(propertyName);
+    if (value instanceof Boolean) {
+      return (Boolean) value;
+    } else if (value == null) {
+      throw newNoPropertyException(propertyName);
+    } else {
+      throw newNotConvertableException(propertyName, value, "a Boolean");
+    }
+  }
+
+  /**
+   * Create the exception for a property which can't be converted to the
+   * requested type.
+   *
+   * @param propertyName
+   *          name of the property
+   * @param value
+   *          the value of the property
+   * @param typeName
+   *          the name of the requested type, with its article
+   *
+   * @return the exception
+   */
+  private DynamicObjectSmartSpacesException newNotConvertableException(String propertyName,
+      Object value, String typeName) {
+    return new DynamicObjectSmartSpacesException(
+        String.format("Property with name %s is not convertable to %s (class %s): %s", propertyName,
+            typeName, value.getClass().getName(), value.toString()));
+  }
+
+  /**
+   * Create the exception for a required property which is missing.
+   *
+   * @param propertyName
+   *          name of the property
+   *
+   * @return the exception
+   */
+  private DynamicObjectSmartSpacesException newNoPropertyException(String propertyName) {
+    return new DynamicObjectSmartSpacesException(String.format(
+        "No property with name %s at the current level in the dynamic object", propertyName));
+  }
+
   @Override
   public boolean containsProperty(String name) {
     if (currentType == DynamicObjectType.OBJECT) {
@@ -496,11 +668,11 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
     Object value = getObjectProperty(propertyName);
 
     if (value instanceof Map) {
-      nav.push(currentObject);
+      pushNav(currentObject);
 
       setCurrentAsObject(value);
     } else if (value instanceof List) {
-      nav.push(currentObject);
+      pushNav(currentObject);
 
       setCurrentAsArray(value);
     } else {
@@ -518,11 +690,11 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
     if (value == null) {
       return false;
     } else if (value instanceof Map) {
-      nav.push(currentObject);
+      pushNav(currentObject);
 
       setCurrentAsObject(value);
     } else if (value instanceof List) {
-      nav.push(currentObject);
+      pushNav(currentObject);
 
       setCurrentAsArray(value);
     } else {
@@ -538,11 +710,11 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
     Object value = getArrayIndex(pos);
 
     if (value instanceof Map) {
-      nav.push(currentArray);
+      pushNav(currentArray);
 
       setCurrentAsObject(value);
     } else if (value instanceof List) {
-      nav.push(currentArray);
+      pushNav(currentArray);
 
       setCurrentAsArray(value);
     } else {
@@ -567,11 +739,11 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
     Object value = currentArray.get(pos);
 
     if (value instanceof Map) {
-      nav.push(currentArray);
+      pushNav(currentArray);
 
       setCurrentAsObject(value);
     } else if (value instanceof List) {
-      nav.push(currentArray);
+      pushNav(currentArray);
 
       setCurrentAsArray(value);
     } else {
@@ -584,8 +756,9 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
 
   @Override
   public DynamicObject up() {
-    if (!nav.isEmpty() && (marks.isEmpty() || marks.peek() < nav.size())) {
-      Object value = nav.pop();
+    if (navSize > 0 && (marksSize == 0 || marks[marksSize - 1] < navSize)) {
+      Object value = nav[--navSize];
+      nav[navSize] = null;
 
       if (value instanceof Map) {
         setCurrentAsObject(value);
@@ -601,16 +774,31 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
 
   @Override
   public DynamicObject top() {
-    if (!marks.isEmpty()) {
+    if (marksSize > 0) {
       resetToMark(false);
-    } else if (!nav.isEmpty()) {
-      nav.setSize(0);
+    } else if (navSize > 0) {
+      Arrays.fill(nav, 0, navSize, null);
+      navSize = 0;
       setCurrentAsObject(root);
     }
 
     return this;
   }
 
+  /**
+   * Push an object onto the navigation stack.
+   *
+   * @param value
+   *          the object to push
+   */
+  private void pushNav(Object value) {
+    if (navSize == nav.length) {
+      nav = Arrays.copyOf(nav, navSize * 2);
+    }
+
+    nav[navSize++] = value;
+  }
+
   /**
    * Set the current item for the navigator as an object.
    *
@@ -745,7 +933,11 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
    */
   @Override
   public void pushMark() {
-    marks.push(nav.size());
+    if (marksSize == marks.length) {
+      marks = Arrays.copyOf(marks, marksSize * 2);
+    }
+
+    marks[marksSize++] = navSize;
   }
 
   /**
@@ -756,22 +948,27 @@ public class StandardDynamicObjectNavigator implements DynamicObject {
    */
   @Override
   public void resetToMark(boolean remove) {
+    if (marksSize == 0) {
+      throw new DynamicObjectSmartSpacesException("No mark to reset to");
+    }
+
     int pos;
     if (remove) {
-      pos = marks.pop();
+      pos = marks[--marksSize];
     } else {
-      pos = marks.peek();
+      pos = marks[marksSize - 1];
     }
 
-    if (pos < nav.size()) {
-      Object value = nav.get(pos);
+    if (pos < navSize) {
+      Object value = nav[pos];
       if (value instanceof Map) {
         setCurrentAsObject(value);
       } else if (value instanceof List) {
         setCurrentAsArray(value);
       }
 
-      nav.setSize(pos);
+      Arrays.fill(nav, pos, navSize, null);
+      navSize = pos;
     }
   }
 
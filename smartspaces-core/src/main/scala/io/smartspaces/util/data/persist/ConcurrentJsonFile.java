@@ -29,7 +29,7 @@ import java.util.Map;
  * only 1 may to store.
  *
  * <p>
- * This has fair locking. It allows multiple readers and a single writer.
+ * It allows multiple readers and a single writer.
  *
  * @author Keith M. Hughes
  */
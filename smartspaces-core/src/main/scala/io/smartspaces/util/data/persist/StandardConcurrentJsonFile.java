@@ -25,42 +25,162 @@ import io.smartspaces.util.io.FileSupportImpl;
 
 import com.google.common.collect.Maps;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The standard implementation of a concurrent JSON file.
  *
+ * <p>
+ * The map is kept as a snapshot file holding the entire map and a write-ahead
+ * log file next to it holding the changes made since the snapshot was written.
+ * Each save appends the changes made since the last save to the log, one JSON
+ * record per line. Once the log has enough records in it, the whole map is
+ * written to a temporary file which is then renamed over the snapshot and the
+ * log is emptied. A crash at any point leaves either the old or the new
+ * snapshot in place, along with a log which can be replayed on top of either.
+ * A record only partly written when a crash happened is dropped on load.
+ *
+ * <p>
+ * The map itself is copy on write. Readers never take a lock and are never
+ * held up by a save, and a snapshot is written from the map as it was when
+ * the save started.
+ *
+ * <p>
+ * Saves can optionally be group committed. Each save then waits for the
+ * group commit window so that all saves made during the window share one log
+ * write and sync.
+ *
  * @author Keith M. Hughes
  */
 public class StandardConcurrentJsonFile implements ConcurrentJsonFile {
 
+  /**
+   * The default number of log records which will trigger writing a new
+   * snapshot.
+   */
+  public static final int COMPACTION_THRESHOLD_DEFAULT = 100;
+
+  /**
+   * The extension added to the file name for the write-ahead log.
+   */
+  public static final String LOG_FILE_EXTENSION = ".log";
+
+  /**
+   * The extension added to the file name for a snapshot being written.
+   */
+  public static final String SNAPSHOT_TEMP_FILE_EXTENSION = ".tmp";
+
+  /**
+   * The log record field for a put of values.
+   */
+  public static final String LOG_RECORD_PUT = "put";
+
+  /**
+   * The log record field for a replacement of the entire map.
+   */
+  public static final String LOG_RECORD_REPLACE = "replace";
+
   /**
    * The JSON mapper.
    */
   private static final JsonDataMapper MAPPER = StandardJsonDataMapper.INSTANCE;
 
+  /**
+   * The character set for the files.
+   */
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+
   /**
    * The file which stores the JSON.
    */
-  private File file;
+  private final File file;
 
   /**
-   * The read/write lock.
-   *
-   * <p>
-   * This lock will be fair between reader and writer threads.
+   * The write-ahead log file.
+   */
+  private final File logFile;
+
+  /**
+   * The file a new snapshot is written to before it replaces the old one.
+   */
+  private final File snapshotTempFile;
+
+  /**
+   * The map. It is never modified once published, changes replace it with a
+   * modified copy.
+   */
+  private volatile Map<String, Object> map = Collections.emptyMap();
+
+  /**
+   * The lock for changing the map and the pending log records.
+   */
+  private final Lock updateLock = new ReentrantLock();
+
+  /**
+   * The lock for all file operations.
+   */
+  private final Lock persistLock = new ReentrantLock(true);
+
+  /**
+   * The log records for changes which have not been saved yet.
+   */
+  private List<Map<String, Object>> pendingRecords = new ArrayList<>();
+
+  /**
+   * The sequence number of the last change to the map.
+   */
+  private long updateSequence;
+
+  /**
+   * The sequence number of the last change which has been saved.
+   */
+  private long savedSequence;
+
+  /**
+   * {@code true} if the next save should write a snapshot no matter how big
+   * the log is.
+   */
+  private boolean snapshotNeeded;
+
+  /**
+   * The number of records in the log file.
+   */
+  private int numberLogRecords;
+
+  /**
+   * The number of log records which will trigger writing a new snapshot.
+   */
+  private int compactionThreshold = COMPACTION_THRESHOLD_DEFAULT;
+
+  /**
+   * The group commit window, in milliseconds, {@code 0} if saves are not
+   * grouped.
+   */
+  private volatile long groupCommitWindow;
+
+  /**
+   * The monitor for group commits.
    */
-  private ReadWriteLock rwlock = new ReentrantReadWriteLock(true);
+  private final Object groupCommitMonitor = new Object();
 
   /**
-   * The map.
+   * {@code true} if a group commit is being collected or written.
    */
-  private Map<String, Object> map = new HashMap<>();
+  private boolean groupCommitInProgress;
 
   /**
    * The file support for file operations.
@@ -75,88 +195,449 @@ public class StandardConcurrentJsonFile implements ConcurrentJsonFile {
    */
   public StandardConcurrentJsonFile(File file) {
     this.file = file;
+    this.logFile = new File(file.getParentFile(), file.getName() + LOG_FILE_EXTENSION);
+    this.snapshotTempFile =
+        new File(file.getParentFile(), file.getName() + SNAPSHOT_TEMP_FILE_EXTENSION);
   }
 
   @Override
   public boolean load() throws SmartSpacesException {
-    rwlock.readLock().lock();
+    persistLock.lock();
     try {
-      if (fileSupport.exists(file)) {
-        String value = fileSupport.readFile(file);
-        map = MAPPER.parseObject(value);
-        return true;
-      } else {
-        return false;
+      boolean snapshotExists = fileSupport.exists(file);
+      Map<String, Object> newMap = new HashMap<>();
+      if (snapshotExists) {
+        newMap.putAll(MAPPER.parseObject(fileSupport.readFile(file)));
       }
+
+      boolean logExists = fileSupport.exists(logFile);
+      numberLogRecords = 0;
+      if (logExists) {
+        replayLog(newMap);
+      }
+
+      updateLock.lock();
+      try {
+        map = Collections.unmodifiableMap(newMap);
+        pendingRecords = new ArrayList<>();
+        savedSequence = updateSequence;
+        snapshotNeeded = false;
+      } finally {
+        updateLock.unlock();
+      }
+
+      return snapshotExists || logExists;
     } catch (Exception e) {
       throw new SmartSpacesException(String.format("Could not read %s", file), e);
     } finally {
-      rwlock.readLock().unlock();
+      persistLock.unlock();
     }
   }
 
   @Override
   public Object get(String key) {
-    rwlock.readLock().lock();
+    return map.get(key);
+  }
+
+  @Override
+  public Map<String, Object> getAll() {
+    return Maps.newHashMap(map);
+  }
+
+  @Override
+  public void save() throws SmartSpacesException {
+    if (groupCommitWindow > 0) {
+      saveGrouped();
+    } else {
+      writeChanges();
+    }
+  }
+
+  @Override
+  public void replaceAll(Map<String, Object> newData) {
+    Map<String, Object> newMap = new HashMap<>(newData);
+
+    updateLock.lock();
     try {
-      return map.get(key);
+      map = Collections.unmodifiableMap(newMap);
+
+      // The whole map is in the snapshot, so earlier records are of no use.
+      pendingRecords.clear();
+      addPendingRecord(LOG_RECORD_REPLACE, newMap);
+      snapshotNeeded = true;
     } finally {
-      rwlock.readLock().unlock();
+      updateLock.unlock();
     }
   }
 
   @Override
-  public Map<String, Object> getAll() {
-    rwlock.readLock().lock();
+  public void put(String key, Object value) {
+    Map<String, Object> values = new HashMap<>();
+    values.put(key, value);
+
+    updateLock.lock();
     try {
-      return Maps.newHashMap(map);
+      Map<String, Object> newMap = new HashMap<>(map);
+      newMap.put(key, value);
+      map = Collections.unmodifiableMap(newMap);
+
+      addPendingRecord(LOG_RECORD_PUT, values);
     } finally {
-      rwlock.readLock().unlock();
+      updateLock.unlock();
     }
   }
 
   @Override
-  public void save() throws SmartSpacesException {
-    rwlock.writeLock().lock();
+  public void putAll(Map<String, Object> values) {
+    Map<String, Object> valuesCopy = new HashMap<>(values);
+
+    updateLock.lock();
+    try {
+      Map<String, Object> newMap = new HashMap<>(map);
+      newMap.putAll(valuesCopy);
+      map = Collections.unmodifiableMap(newMap);
+
+      addPendingRecord(LOG_RECORD_PUT, valuesCopy);
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  /**
+   * Set the number of log records which will trigger writing a new snapshot.
+   *
+   * @param compactionThreshold
+   *          the number of log records, {@code 1} writes a snapshot on every
+   *          save
+   */
+  public void setCompactionThreshold(int compactionThreshold) {
+    this.compactionThreshold = compactionThreshold;
+  }
+
+  /**
+   * Set the group commit window.
+   *
+   * <p>
+   * When the window is positive, a save waits up to the window for other saves
+   * so that they can all be written at the same time. The save still does not
+   * return until its changes are on disk.
+   *
+   * @param groupCommitWindow
+   *          the window, in milliseconds, {@code 0} to write every save on its
+   *          own
+   */
+  public void setGroupCommitWindow(long groupCommitWindow) {
+    this.groupCommitWindow = groupCommitWindow;
+  }
+
+  /**
+   * Get the write-ahead log file.
+   *
+   * @return the log file
+   */
+  public File getLogFile() {
+    return logFile;
+  }
+
+  /**
+   * Add a log record for a change.
+   *
+   * <p>
+   * Must be called holding the update lock.
+   *
+   * @param type
+   *          the type of the record
+   * @param values
+   *          the values for the record, must not be modified afterwards
+   */
+  private void addPendingRecord(String type, Map<String, Object> values) {
+    Map<String, Object> record = new HashMap<>();
+    record.put(type, values);
+    pendingRecords.add(record);
+    updateSequence++;
+  }
+
+  /**
+   * Save changes as part of a group commit.
+   *
+   * <p>
+   * The first save of a group waits out the window and then writes all
+   * changes made by then. Other saves wait for it to finish. If it fails, the
+   * others try again themselves so that they see the failure.
+   *
+   * @throws SmartSpacesException
+   *           if there was an error while writing the file
+   */
+  private void saveGrouped() throws SmartSpacesException {
+    long sequence = getUpdateSequence();
+
+    synchronized (groupCommitMonitor) {
+      while (true) {
+        if (getSavedSequence() >= sequence) {
+          return;
+        }
+        if (!groupCommitInProgress) {
+          groupCommitInProgress = true;
+          break;
+        }
+
+        try {
+          groupCommitMonitor.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SmartSpacesException(String.format("Interrupted while saving %s", file), e);
+        }
+      }
+    }
+
+    try {
+      Thread.sleep(groupCommitWindow);
+    } catch (InterruptedException e) {
+      // Write now rather than lose the changes.
+      Thread.currentThread().interrupt();
+    }
+
+    try {
+      writeChanges();
+    } finally {
+      synchronized (groupCommitMonitor) {
+        groupCommitInProgress = false;
+        groupCommitMonitor.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Write all changes made so far to the log, writing a new snapshot if it is
+   * time.
+   *
+   * @throws SmartSpacesException
+   *           if there was an error while writing the file
+   */
+  private void writeChanges() throws SmartSpacesException {
+    persistLock.lock();
     try {
-      fileSupport.writeFile(file, MAPPER.toString(map));
+      List<Map<String, Object>> records;
+      Map<String, Object> snapshot;
+      long sequence;
+      boolean writeSnapshot;
+      updateLock.lock();
+      try {
+        records = pendingRecords;
+        pendingRecords = new ArrayList<>();
+        snapshot = map;
+        sequence = updateSequence;
+        writeSnapshot = snapshotNeeded;
+        snapshotNeeded = false;
+      } finally {
+        updateLock.unlock();
+      }
+
+      try {
+        if (!records.isEmpty()) {
+          appendLogRecords(records);
+        }
+
+        if (writeSnapshot || (numberLogRecords > 0 && numberLogRecords >= compactionThreshold)) {
+          writeSnapshot(snapshot);
+        }
+      } catch (Exception e) {
+        // Put the records back so a later save can try again.
+        updateLock.lock();
+        try {
+          records.addAll(pendingRecords);
+          pendingRecords = records;
+          snapshotNeeded |= writeSnapshot;
+        } finally {
+          updateLock.unlock();
+        }
+
+        throw e;
+      }
+
+      updateLock.lock();
+      try {
+        savedSequence = sequence;
+      } finally {
+        updateLock.unlock();
+      }
     } catch (Exception e) {
-      throw new SmartSpacesException(String.format("Could not read %s", file), e);
+      throw new SmartSpacesException(String.format("Could not write %s", file), e);
     } finally {
-      rwlock.writeLock().unlock();
+      persistLock.unlock();
     }
   }
 
-  @Override
-  public void replaceAll(Map<String, Object> newData) {
-    rwlock.writeLock().lock();
+  /**
+   * Append records to the log and sync them to disk.
+   *
+   * <p>
+   * Records which were appended before an error are kept in the log. Replaying
+   * a record twice does no harm.
+   *
+   * @param records
+   *          the records to append
+   *
+   * @throws IOException
+   *           the records could not be written
+   */
+  private void appendLogRecords(List<Map<String, Object>> records) throws IOException {
+    StringBuilder builder = new StringBuilder();
+    for (Map<String, Object> record : records) {
+      builder.append(MAPPER.toString(record)).append('\n');
+    }
+
+    FileOutputStream out = new FileOutputStream(logFile, true);
     try {
-      map.clear();
-      map.putAll(newData);
+      out.write(builder.toString().getBytes(CHARSET));
+      out.getFD().sync();
     } finally {
-      rwlock.writeLock().unlock();
+      fileSupport.close(out, false);
     }
+
+    numberLogRecords += records.size();
   }
 
-  @Override
-  public void put(String key, Object value) {
-    rwlock.writeLock().lock();
+  /**
+   * Write a new snapshot and empty the log.
+   *
+   * <p>
+   * The log must already contain every change in the snapshot, so that a crash
+   * before the log is emptied only means that the log is replayed over a
+   * snapshot which already has its changes.
+   *
+   * @param snapshot
+   *          the map to write
+   *
+   * @throws IOException
+   *           the snapshot could not be written
+   */
+  private void writeSnapshot(Map<String, Object> snapshot) throws IOException {
+    FileOutputStream out = new FileOutputStream(snapshotTempFile);
     try {
-      map.put(key, value);
+      out.write(MAPPER.toString(snapshot).getBytes(CHARSET));
+      out.getFD().sync();
     } finally {
-      rwlock.writeLock().unlock();
+      fileSupport.close(out, false);
     }
+
+    fileSupport.atomicMoveFile(snapshotTempFile, file);
+
+    truncateLog(0);
+    numberLogRecords = 0;
   }
 
-  @Override
-  public void putAll(Map<String, Object> values) {
-    rwlock.writeLock().lock();
+  /**
+   * Replay all complete records in the log onto a map.
+   *
+   * <p>
+   * If the log ends with a partly written record, the log is cut back to the
+   * last complete record.
+   *
+   * @param target
+   *          the map to apply the records to
+   *
+   * @throws IOException
+   *           the log could not be read
+   */
+  @SuppressWarnings("unchecked")
+  private void replayLog(Map<String, Object> target) throws IOException {
+    long validLength = 0;
+    boolean damaged = false;
+
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(logFile), CHARSET));
     try {
-      for (Entry<String, Object> entry : values.entrySet()) {
-        map.put(entry.getKey(), entry.getValue());
+      String line;
+      while ((line = reader.readLine()) != null) {
+        Map<String, Object> record;
+        try {
+          record = MAPPER.parseObject(line);
+        } catch (Exception e) {
+          damaged = true;
+          break;
+        }
+
+        Object replaceValues = record.get(LOG_RECORD_REPLACE);
+        if (replaceValues != null) {
+          target.clear();
+          target.putAll((Map<String, Object>) replaceValues);
+        }
+        Object putValues = record.get(LOG_RECORD_PUT);
+        if (putValues != null) {
+          target.putAll((Map<String, Object>) putValues);
+        }
+
+        numberLogRecords++;
+        validLength += line.getBytes(CHARSET).length + 1;
+      }
+    } finally {
+      fileSupport.close(reader, false);
+    }
+
+    long logLength = logFile.length();
+    if (damaged) {
+      truncateLog(validLength);
+    } else if (validLength > logLength) {
+      // The last record is complete but lost its line end.
+      FileOutputStream out = new FileOutputStream(logFile, true);
+      try {
+        out.write('\n');
+        out.getFD().sync();
+      } finally {
+        fileSupport.close(out, false);
       }
+    }
+  }
+
+  /**
+   * Cut the log back to a given length.
+   *
+   * @param length
+   *          the new length of the log
+   *
+   * @throws IOException
+   *           the log could not be truncated
+   */
+  private void truncateLog(long length) throws IOException {
+    if (!fileSupport.exists(logFile)) {
+      return;
+    }
+
+    RandomAccessFile log = new RandomAccessFile(logFile, "rw");
+    try {
+      log.setLength(length);
+      log.getFD().sync();
+    } finally {
+      fileSupport.close(log, false);
+    }
+  }
+
+  /**
+   * Get the sequence number of the last change.
+   *
+   * @return the sequence number
+   */
+  private long getUpdateSequence() {
+    updateLock.lock();
+    try {
+      return updateSequence;
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  /**
+   * Get the sequence number of the last saved change.
+   *
+   * @return the sequence number
+   */
+  private long getSavedSequence() {
+    updateLock.lock();
+    try {
+      return savedSequence;
     } finally {
-      rwlock.writeLock().unlock();
+      updateLock.unlock();
     }
   }
 }
@@ -149,6 +149,39 @@ public class DependencyResolver<I, T> {
     return result;
   }
 
+  /**
+   * Get the final data ordering grouped into levels.
+   *
+   * <p>
+   * Data in a level only depends on data in earlier levels, so everything in a
+   * level can be handled at the same time once the earlier levels are done.
+   * Within a level, data is in the same order as {@link #getDataOrdering()}.
+   *
+   * @return the levels, the first level has no dependencies
+   */
+  public List<List<T>> getDataLevels() {
+    Map<WalkableGraphNode<I, T>, Integer> nodeLevels = new HashMap<>();
+    List<List<T>> levels = new ArrayList<>();
+
+    for (WalkableGraphNode<I, T> node : ordering) {
+      int level = 0;
+      for (WalkableGraphNode<I, T> neighbor : node.getNeighbors()) {
+        Integer neighborLevel = nodeLevels.get(neighbor);
+        if (neighborLevel != null) {
+          level = Math.max(level, neighborLevel + 1);
+        }
+      }
+      nodeLevels.put(node, level);
+
+      if (level == levels.size()) {
+        levels.add(new ArrayList<T>());
+      }
+      levels.get(level).add(node.getData());
+    }
+
+    return levels;
+  }
+
   private class MyGraphWalkerObserver extends BaseGraphWalkerObserver<I, T> {
 
     @Override
@@ -0,0 +1,574 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.io.directorywatcher;
+
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.system.SmartSpacesEnvironment;
+import io.smartspaces.util.io.FileSupport;
+import io.smartspaces.util.io.FileSupportImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.WatchKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The support for directory watchers which are told about changes by the
+ * {@link SharedDirectoryWatchService} rather than scanning their directories.
+ *
+ * <p>
+ * Changed files are collected until no new events have come in for the settle
+ * time, and then handed to the subclass all at once. A file which is being
+ * written in many pieces is therefore only looked at once it has stopped
+ * changing.
+ *
+ * <p>
+ * Directories are only rescanned in full when they are first watched, when the
+ * watch service reports that events were lost, and when {@link #scan()} is
+ * called. Directories which do not exist yet are checked for on the period
+ * given at startup until they appear.
+ *
+ * @author Keith M. Hughes
+ */
+public abstract class BaseWatchServiceDirectoryWatcher
+    implements SharedDirectoryWatchService.DirectoryEventHandler {
+
+  /**
+   * The default time to wait after the last event before changes are
+   * processed, in milliseconds.
+   */
+  public static final long SETTLE_TIME_DEFAULT = 500;
+
+  /**
+   * The directories being watched.
+   */
+  private final List<File> directoriesWatched = new ArrayList<>();
+
+  /**
+   * The watch keys for the directories which are registered with the watch
+   * service.
+   */
+  private final Map<File, WatchKey> watchKeys = new HashMap<>();
+
+  /**
+   * The watched directories which do not currently exist.
+   */
+  private final Set<File> missingDirectories = new HashSet<>();
+
+  /**
+   * The files with events which have not been processed yet.
+   */
+  private final Set<File> pendingFiles = new LinkedHashSet<>();
+
+  /**
+   * The directories which need a full rescan.
+   */
+  private final Set<File> pendingRescans = new LinkedHashSet<>();
+
+  /**
+   * The time of the last event, in milliseconds.
+   */
+  private long lastEventTime;
+
+  /**
+   * The future for the pending processing of changes.
+   */
+  private ScheduledFuture<?> settleFuture;
+
+  /**
+   * The future for checking for missing directories.
+   */
+  private ScheduledFuture<?> missingDirectoryFuture;
+
+  /**
+   * The lock for all watch state. Listeners are never called holding it, so
+   * the watch thread is never held up by a slow listener.
+   */
+  private final Object watchLock = new Object();
+
+  /**
+   * The space environment being run under, {@code null} if not running.
+   */
+  private SmartSpacesEnvironment environment;
+
+  /**
+   * How often to check for missing directories.
+   */
+  private long missingDirectoryPeriod;
+
+  /**
+   * The time unit for the missing directory period.
+   */
+  private TimeUnit missingDirectoryPeriodUnit;
+
+  /**
+   * The time to wait after the last event before changes are processed, in
+   * milliseconds.
+   */
+  private long settleTime = SETTLE_TIME_DEFAULT;
+
+  /**
+   * {@code true} if the directories should be cleaned before they are watched.
+   */
+  private boolean cleanFirst = false;
+
+  /**
+   * {@code true} if the watcher should stop when there is an exception.
+   */
+  private boolean stopOnException = true;
+
+  /**
+   * The logger to use.
+   */
+  protected ExtendedLog log;
+
+  /**
+   * The watch service to use.
+   */
+  private final SharedDirectoryWatchService watchService = SharedDirectoryWatchService.INSTANCE;
+
+  /**
+   * The file support to use.
+   */
+  private final FileSupport fileSupport = FileSupportImpl.INSTANCE;
+
+  /**
+   * Construct a new watcher.
+   *
+   * @param cleanFirst
+   *          {@code true} if added directories are cleaned before they are
+   *          watched
+   * @param log
+   *          the logger to use, can be {@code null} to use the environment log
+   */
+  public BaseWatchServiceDirectoryWatcher(boolean cleanFirst, ExtendedLog log) {
+    this.cleanFirst = cleanFirst;
+    this.log = log;
+  }
+
+  /**
+   * Start the watcher up.
+   *
+   * @param environment
+   *          the spaces environment being run under
+   * @param period
+   *          how often directories which do not exist yet should be checked
+   *          for
+   * @param unit
+   *          time unit for the period
+   */
+  public void startup(SmartSpacesEnvironment environment, long period, TimeUnit unit) {
+    synchronized (watchLock) {
+      if (this.environment != null) {
+        return;
+      }
+
+      if (log == null) {
+        log = environment.getLog();
+      }
+      this.environment = environment;
+      this.missingDirectoryPeriod = period;
+      this.missingDirectoryPeriodUnit = unit;
+
+      // The first scan reports the files already in the directories as added.
+      for (File directory : directoriesWatched) {
+        watchDirectory(directory);
+        pendingRescans.add(directory);
+      }
+      if (!pendingRescans.isEmpty()) {
+        noteEvent();
+      }
+    }
+  }
+
+  /**
+   * Shut down the watcher.
+   */
+  public void shutdown() {
+    synchronized (watchLock) {
+      if (environment == null) {
+        return;
+      }
+      environment = null;
+
+      if (settleFuture != null) {
+        settleFuture.cancel(false);
+        settleFuture = null;
+      }
+      if (missingDirectoryFuture != null) {
+        missingDirectoryFuture.cancel(false);
+        missingDirectoryFuture = null;
+      }
+
+      for (WatchKey key : watchKeys.values()) {
+        watchService.unregister(key, this);
+      }
+      watchKeys.clear();
+      missingDirectories.clear();
+      pendingFiles.clear();
+      pendingRescans.clear();
+    }
+  }
+
+  /**
+   * Add a new directory to watch.
+   *
+   * @param directory
+   *          the directory to watch
+   *
+   * @throws IllegalArgumentException
+   *           the supplied file is either not a directory or is not readable
+   */
+  public void addDirectory(File directory) {
+    if (directory.isDirectory()) {
+      if (!directory.canRead()) {
+        throw new IllegalArgumentException(String.format("%s is not readable", directory));
+      }
+      if (cleanFirst && directory.canWrite()) {
+        fileSupport.deleteDirectoryContents(directory);
+      }
+    } else if (directory.exists()) {
+      // The file exists, but it isn't a directory.
+      //
+      // This is checked for separately to handle directories added
+      // after the watcher starts running.
+      throw new IllegalArgumentException(String.format("%s is not a directory", directory));
+    }
+
+    // A directory that doesn't exist yet is assumed to eventually appear.
+    synchronized (watchLock) {
+      directoriesWatched.add(directory);
+
+      if (environment != null) {
+        watchDirectory(directory);
+        pendingRescans.add(directory);
+        noteEvent();
+      }
+    }
+  }
+
+  /**
+   * Force a scan of the registered directories.
+   */
+  public void scan() {
+    List<File> directories;
+    synchronized (watchLock) {
+      directories = new ArrayList<>(directoriesWatched);
+    }
+
+    processRescans(directories, Collections.<File>emptySet());
+  }
+
+  /**
+   * Set how long to wait after the last event before changes are processed.
+   *
+   * @param settleTime
+   *          the settle time, in milliseconds
+   */
+  public void setSettleTime(long settleTime) {
+    this.settleTime = settleTime;
+  }
+
+  /**
+   * Should directories should be emptied before they are added to the watcher?
+   *
+   * @param cleanFirst
+   *          {@code true} if the directories should be cleaned first
+   */
+  public void setCleanFirst(boolean cleanFirst) {
+    this.cleanFirst = cleanFirst;
+  }
+
+  /**
+   * Should the watcher stop if there is ever an exception while running?
+   *
+   * <p>
+   * By default the watcher stops.
+   *
+   * @param stopOnException
+   *          {@code true} if the watcher should stop on exception
+   */
+  public void setStopOnException(boolean stopOnException) {
+    this.stopOnException = stopOnException;
+  }
+
+  @Override
+  public void onDirectoryFilesChanged(File directory, List<File> files) {
+    synchronized (watchLock) {
+      if (environment != null) {
+        pendingFiles.addAll(files);
+        noteEvent();
+      }
+    }
+  }
+
+  @Override
+  public void onDirectoryOverflow(File directory) {
+    synchronized (watchLock) {
+      if (environment != null) {
+        pendingRescans.add(directory);
+        noteEvent();
+      }
+    }
+  }
+
+  @Override
+  public void onDirectoryInvalid(File directory) {
+    synchronized (watchLock) {
+      if (environment != null && watchKeys.remove(directory) != null) {
+        // Anything left in the directory is gone, and it is watched again if
+        // it comes back.
+        pendingRescans.add(directory);
+        noteEvent();
+
+        missingDirectories.add(directory);
+        startMissingDirectoryCheck();
+      }
+    }
+  }
+
+  /**
+   * Scan all directories for the files they contain.
+   *
+   * @return the set of all files which are currently in the folders
+   */
+  protected Set<File> scanAllDirectories() {
+    List<File> directories;
+    synchronized (watchLock) {
+      directories = new ArrayList<>(directoriesWatched);
+    }
+
+    Set<File> currentScan = new HashSet<>();
+    for (File directory : directories) {
+      addDirectoryFiles(directory, currentScan);
+    }
+
+    return currentScan;
+  }
+
+  /**
+   * Add all files previously seen in a directory to a set of files.
+   *
+   * @param directory
+   *          the directory
+   * @param files
+   *          the set to add the files to
+   */
+  protected abstract void addSeenFiles(File directory, Set<File> files);
+
+  /**
+   * Process all files which may have changed.
+   *
+   * <p>
+   * Each file may have been added, modified or removed. The file system should
+   * be checked to see which.
+   *
+   * @param files
+   *          the files which may have changed
+   */
+  protected abstract void processChangedFiles(Set<File> files);
+
+  /**
+   * Start watching a directory, or wait for it to exist.
+   *
+   * <p>
+   * Must be called holding the watch lock.
+   *
+   * @param directory
+   *          the directory to watch
+   */
+  private void watchDirectory(File directory) {
+    if (watchKeys.containsKey(directory)) {
+      return;
+    }
+
+    if (directory.isDirectory()) {
+      try {
+        watchKeys.put(directory, watchService.register(directory, this, log));
+        missingDirectories.remove(directory);
+
+        return;
+      } catch (IOException e) {
+        log.formatError(e, "Could not watch directory %s, will try again",
+            directory.getAbsolutePath());
+      }
+    }
+
+    missingDirectories.add(directory);
+    startMissingDirectoryCheck();
+  }
+
+  /**
+   * Start checking for missing directories, if not already checking.
+   *
+   * <p>
+   * Must be called holding the watch lock.
+   */
+  private void startMissingDirectoryCheck() {
+    if (missingDirectoryFuture == null) {
+      missingDirectoryFuture = environment.getExecutorService().scheduleAtFixedRate(new Runnable() {
+        @Override
+        public void run() {
+          checkMissingDirectories();
+        }
+      }, missingDirectoryPeriod, missingDirectoryPeriod, missingDirectoryPeriodUnit);
+    }
+  }
+
+  /**
+   * Start watching any missing directories which now exist.
+   */
+  private void checkMissingDirectories() {
+    synchronized (watchLock) {
+      if (environment == null) {
+        return;
+      }
+
+      for (File directory : new ArrayList<>(missingDirectories)) {
+        if (directory.isDirectory()) {
+          missingDirectories.remove(directory);
+          watchDirectory(directory);
+
+          // Files may have been added before the directory was registered.
+          pendingRescans.add(directory);
+          noteEvent();
+        }
+      }
+
+      if (missingDirectories.isEmpty() && missingDirectoryFuture != null) {
+        missingDirectoryFuture.cancel(false);
+        missingDirectoryFuture = null;
+      }
+    }
+  }
+
+  /**
+   * Note that an event has happened and make sure the changes will be
+   * processed once things settle.
+   *
+   * <p>
+   * Must be called holding the watch lock.
+   */
+  private void noteEvent() {
+    lastEventTime = System.currentTimeMillis();
+    if (settleFuture == null) {
+      scheduleSettleCheck(settleTime);
+    }
+  }
+
+  /**
+   * Schedule a check for whether events have settled.
+   *
+   * <p>
+   * Must be called holding the watch lock.
+   *
+   * @param delay
+   *          how long to wait before the check, in milliseconds
+   */
+  private void scheduleSettleCheck(long delay) {
+    settleFuture = environment.getExecutorService().schedule(new Runnable() {
+      @Override
+      public void run() {
+        checkSettled();
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Process all pending changes if no new events have come in for the settle
+   * time, otherwise check again later.
+   */
+  private void checkSettled() {
+    Set<File> files;
+    List<File> rescans;
+    synchronized (watchLock) {
+      settleFuture = null;
+      if (environment == null) {
+        return;
+      }
+
+      long remaining = lastEventTime + settleTime - System.currentTimeMillis();
+      if (remaining > 0) {
+        scheduleSettleCheck(remaining);
+        return;
+      }
+
+      files = new LinkedHashSet<>(pendingFiles);
+      pendingFiles.clear();
+      rescans = new ArrayList<>(pendingRescans);
+      pendingRescans.clear();
+    }
+
+    processRescans(rescans, files);
+  }
+
+  /**
+   * Process changed files along with full rescans of some directories.
+   *
+   * @param rescans
+   *          the directories to rescan
+   * @param changedFiles
+   *          the files known to have changed
+   */
+  private void processRescans(List<File> rescans, Set<File> changedFiles) {
+    try {
+      synchronized (this) {
+        Set<File> files = new LinkedHashSet<>(changedFiles);
+        for (File directory : rescans) {
+          addDirectoryFiles(directory, files);
+          addSeenFiles(directory, files);
+        }
+
+        if (!files.isEmpty()) {
+          processChangedFiles(files);
+        }
+      }
+    } catch (Throwable e) {
+      log.error("Exception happened during directory watcher processing", e);
+
+      if (stopOnException) {
+        shutdown();
+      }
+    }
+  }
+
+  /**
+   * Add all files currently in a directory to a set of files.
+   *
+   * @param directory
+   *          the directory
+   * @param files
+   *          the set to add the files to
+   */
+  private void addDirectoryFiles(File directory, Set<File> files) {
+    if (directory.isDirectory()) {
+      File[] directoryFiles = directory.listFiles();
+      if (directoryFiles != null) {
+        Collections.addAll(files, directoryFiles);
+      }
+    }
+  }
+}
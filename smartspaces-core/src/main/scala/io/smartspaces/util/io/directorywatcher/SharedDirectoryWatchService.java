@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.io.directorywatcher;
+
+import io.smartspaces.logging.ExtendedLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A single {@link WatchService} and thread shared by all directory watchers in
+ * the JVM.
+ *
+ * <p>
+ * The thread is started when the first directory is registered and stops
+ * when the last one is unregistered. Handlers are called on the watch thread,
+ * so they should only record what has changed and return quickly.
+ *
+ * <p>
+ * Several handlers can register the same directory. The directory is watched
+ * until the last of them is unregistered.
+ *
+ * @author Keith M. Hughes
+ */
+public class SharedDirectoryWatchService {
+
+  /**
+   * The shared instance.
+   */
+  public static final SharedDirectoryWatchService INSTANCE = new SharedDirectoryWatchService();
+
+  /**
+   * The name of the watch thread.
+   */
+  public static final String WATCH_THREAD_NAME = "SmartSpacesDirectoryWatchService";
+
+  /**
+   * The handler for events in a registered directory.
+   *
+   * <p>
+   * Exceptions thrown by a handler are logged and do not stop other handlers
+   * from getting events.
+   *
+   * @author Keith M. Hughes
+   */
+  public interface DirectoryEventHandler {
+
+    /**
+     * Files in the directory have been created, modified or deleted.
+     *
+     * @param directory
+     *          the directory
+     * @param files
+     *          the files which changed
+     */
+    void onDirectoryFilesChanged(File directory, List<File> files);
+
+    /**
+     * Events for the directory were lost, the whole directory must be
+     * rescanned.
+     *
+     * @param directory
+     *          the directory
+     */
+    void onDirectoryOverflow(File directory);
+
+    /**
+     * The directory can no longer be watched, usually because it was deleted.
+     *
+     * <p>
+     * The registration is gone when this is called.
+     *
+     * @param directory
+     *          the directory
+     */
+    void onDirectoryInvalid(File directory);
+  }
+
+  /**
+   * The registrations, indexed by their watch key.
+   */
+  private final Map<WatchKey, KeyRegistration> registrations = new ConcurrentHashMap<>();
+
+  /**
+   * The current watch service, {@code null} if there are no registrations.
+   */
+  private WatchService watchService;
+
+  /**
+   * Register a directory to be watched.
+   *
+   * @param directory
+   *          the directory to watch, must exist
+   * @param handler
+   *          the handler for events in the directory
+   * @param log
+   *          the logger for errors from the handler
+   *
+   * @return the key for the registration
+   *
+   * @throws IOException
+   *           the directory could not be registered
+   */
+  public synchronized WatchKey register(File directory, DirectoryEventHandler handler,
+      ExtendedLog log) throws IOException {
+    if (watchService == null) {
+      watchService = FileSystems.getDefault().newWatchService();
+
+      Thread watchThread = new Thread(new WatchLoop(watchService), WATCH_THREAD_NAME);
+      watchThread.setDaemon(true);
+      watchThread.start();
+    }
+
+    WatchKey key = directory.toPath().register(watchService,
+        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+        StandardWatchEventKinds.ENTRY_DELETE);
+
+    // A directory which is already registered gives back the same key.
+    KeyRegistration registration = registrations.get(key);
+    if (registration == null) {
+      registration = new KeyRegistration(directory);
+      registrations.put(key, registration);
+    }
+    registration.handlers.add(new HandlerRegistration(handler, log));
+
+    return key;
+  }
+
+  /**
+   * Stop a handler watching a directory.
+   *
+   * <p>
+   * The directory is no longer watched once its last handler is unregistered.
+   * Does nothing if the handler is no longer registered.
+   *
+   * @param key
+   *          the key returned when the directory was registered
+   * @param handler
+   *          the handler given when the directory was registered
+   */
+  public synchronized void unregister(WatchKey key, DirectoryEventHandler handler) {
+    KeyRegistration registration = registrations.get(key);
+    if (registration == null) {
+      return;
+    }
+
+    for (HandlerRegistration handlerRegistration : registration.handlers) {
+      if (handlerRegistration.handler == handler) {
+        registration.handlers.remove(handlerRegistration);
+        break;
+      }
+    }
+
+    if (registration.handlers.isEmpty()) {
+      key.cancel();
+      registrations.remove(key);
+      closeIfUnused();
+    }
+  }
+
+  /**
+   * Get the number of directories currently registered.
+   *
+   * @return the number of directories
+   */
+  public int getNumberRegisteredDirectories() {
+    return registrations.size();
+  }
+
+  /**
+   * Close the watch service if nothing is registered any more, which also ends
+   * the watch thread.
+   */
+  private synchronized void closeIfUnused() {
+    if (registrations.isEmpty() && watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        // Nothing to be done, the service is being dropped anyway.
+      }
+      watchService = null;
+    }
+  }
+
+  /**
+   * Handle all events pending for a key.
+   *
+   * @param key
+   *          the key
+   */
+  private void processKey(WatchKey key) {
+    // Registering holds the lock until the registration is recorded.
+    KeyRegistration registration;
+    synchronized (this) {
+      registration = registrations.get(key);
+    }
+    List<WatchEvent<?>> events = key.pollEvents();
+    if (registration == null) {
+      return;
+    }
+
+    boolean overflow = false;
+    List<File> files = new ArrayList<>(events.size());
+    for (WatchEvent<?> event : events) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        overflow = true;
+      } else {
+        files.add(new File(registration.directory, ((Path) event.context()).toString()));
+      }
+    }
+
+    for (HandlerRegistration handlerRegistration : registration.handlers) {
+      try {
+        if (overflow) {
+          handlerRegistration.handler.onDirectoryOverflow(registration.directory);
+        } else if (!files.isEmpty()) {
+          handlerRegistration.handler.onDirectoryFilesChanged(registration.directory, files);
+        }
+      } catch (Throwable e) {
+        handlerRegistration.log.formatError(e, "Error handling changes in directory %s",
+            registration.directory.getAbsolutePath());
+      }
+    }
+
+    if (!key.reset()) {
+      boolean removed;
+      synchronized (this) {
+        removed = registrations.remove(key) != null;
+        closeIfUnused();
+      }
+      if (removed) {
+        for (HandlerRegistration handlerRegistration : registration.handlers) {
+          try {
+            handlerRegistration.handler.onDirectoryInvalid(registration.directory);
+          } catch (Throwable e) {
+            handlerRegistration.log.formatError(e,
+                "Error handling directory %s no longer being watchable",
+                registration.directory.getAbsolutePath());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Log an error which happened while handling a key.
+   *
+   * @param key
+   *          the key
+   * @param e
+   *          the error
+   */
+  private void logKeyError(WatchKey key, Throwable e) {
+    KeyRegistration registration = registrations.get(key);
+    if (registration != null) {
+      for (HandlerRegistration handlerRegistration : registration.handlers) {
+        handlerRegistration.log.formatError(e, "Error watching directory %s",
+            registration.directory.getAbsolutePath());
+      }
+    }
+  }
+
+  /**
+   * A registered directory.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class KeyRegistration {
+
+    /**
+     * The directory being watched.
+     */
+    private final File directory;
+
+    /**
+     * The handlers for the directory.
+     */
+    private final List<HandlerRegistration> handlers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Construct a new registration.
+     *
+     * @param directory
+     *          the directory being watched
+     */
+    KeyRegistration(File directory) {
+      this.directory = directory;
+    }
+  }
+
+  /**
+   * A handler registered for a directory.
+   *
+   * @author Keith M. Hughes
+   */
+  private static class HandlerRegistration {
+
+    /**
+     * The handler.
+     */
+    private final DirectoryEventHandler handler;
+
+    /**
+     * The logger for errors from the handler.
+     */
+    private final ExtendedLog log;
+
+    /**
+     * Construct a new handler registration.
+     *
+     * @param handler
+     *          the handler
+     * @param log
+     *          the logger for errors from the handler
+     */
+    HandlerRegistration(DirectoryEventHandler handler, ExtendedLog log) {
+      this.handler = handler;
+      this.log = log;
+    }
+  }
+
+  /**
+   * The loop taking keys from a watch service until it is closed.
+   *
+   * @author Keith M. Hughes
+   */
+  private class WatchLoop implements Runnable {
+
+    /**
+     * The watch service for the loop.
+     */
+    private final WatchService loopWatchService;
+
+    /**
+     * Construct a new loop.
+     *
+     * @param loopWatchService
+     *          the watch service for the loop
+     */
+    WatchLoop(WatchService loopWatchService) {
+      this.loopWatchService = loopWatchService;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          WatchKey key = loopWatchService.take();
+          try {
+            processKey(key);
+          } catch (RuntimeException e) {
+            // The thread is shared, so must keep going for the other keys.
+            logKeyError(key, e);
+          }
+        }
+      } catch (ClosedWatchServiceException | InterruptedException e) {
+        // The service is no longer needed.
+      }
+    }
+  }
+}
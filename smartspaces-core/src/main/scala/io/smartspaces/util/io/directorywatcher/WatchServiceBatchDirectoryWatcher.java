@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.io.directorywatcher;
+
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.system.SmartSpacesEnvironment;
+
+import com.google.common.collect.Sets;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link BatchDirectoryWatcher} which is told about changes by the file
+ * system rather than scanning its directories.
+ *
+ * <p>
+ * All files added while events keep coming in are reported as one batch once
+ * the directories have been quiet for the settle time.
+ *
+ * @author Keith M. Hughes
+ */
+public class WatchServiceBatchDirectoryWatcher extends BaseWatchServiceDirectoryWatcher
+    implements BatchDirectoryWatcher {
+
+  /**
+   * The files seen so far.
+   */
+  private final Set<File> filesSeen = new HashSet<>();
+
+  /**
+   * The listeners.
+   */
+  private final List<BatchDirectoryWatcherListener> listeners = new ArrayList<>();
+
+  /**
+   * Construct a new watcher.
+   *
+   * <p>
+   * Directories will not be cleaned before they are watched.
+   */
+  public WatchServiceBatchDirectoryWatcher() {
+    this(false, null);
+  }
+
+  /**
+   * Construct a new watcher.
+   *
+   * @param cleanFirst
+   *          {@code true} if added directories are cleaned before they are
+   *          watched
+   * @param log
+   *          the logger to use
+   */
+  public WatchServiceBatchDirectoryWatcher(boolean cleanFirst, ExtendedLog log) {
+    super(cleanFirst, log);
+  }
+
+  @Override
+  public Set<File> startupWithScan(SmartSpacesEnvironment environment, long period, TimeUnit unit) {
+    Set<File> currentScan = scanAllDirectories();
+
+    synchronized (this) {
+      filesSeen.addAll(currentScan);
+    }
+
+    startup(environment, period, unit);
+
+    return Sets.newHashSet(currentScan);
+  }
+
+  @Override
+  public synchronized void
+      addBatchDirectoryWatcherListener(BatchDirectoryWatcherListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public synchronized void
+      removeBatchDirectoryWatcherListener(BatchDirectoryWatcherListener listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  protected void addSeenFiles(File directory, Set<File> files) {
+    for (File file : filesSeen) {
+      if (directory.equals(file.getParentFile())) {
+        files.add(file);
+      }
+    }
+  }
+
+  @Override
+  protected void processChangedFiles(Set<File> files) {
+    Set<File> filesAdded = new HashSet<>();
+    for (File file : files) {
+      if (file.exists()) {
+        if (filesSeen.add(file)) {
+          filesAdded.add(file);
+        }
+      } else {
+        filesSeen.remove(file);
+      }
+    }
+
+    if (!filesAdded.isEmpty()) {
+      signalFilesAdded(filesAdded);
+    }
+  }
+
+  /**
+   * Signal all listeners that files have been added.
+   *
+   * @param filesAdded
+   *          the files which have been added
+   */
+  private void signalFilesAdded(Set<File> filesAdded) {
+    for (BatchDirectoryWatcherListener listener : listeners) {
+      try {
+        listener.onFilesAdded(filesAdded);
+      } catch (Throwable e) {
+        log.error("Exception while signalling files added", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.io.directorywatcher;
+
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.system.SmartSpacesEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DirectoryWatcher} which is told about changes by the file system
+ * rather than scanning its directories.
+ *
+ * <p>
+ * Changes are reported once the directories have been quiet for the settle
+ * time. A file which is created and then written to before things settle is
+ * only reported as added.
+ *
+ * @author Keith M. Hughes
+ */
+public class WatchServiceDirectoryWatcher extends BaseWatchServiceDirectoryWatcher
+    implements DirectoryWatcher {
+
+  /**
+   * The files seen so far, along with their last modification times.
+   */
+  private final Map<File, Long> filesSeen = new HashMap<>();
+
+  /**
+   * The listeners.
+   */
+  private final List<DirectoryWatcherListener> listeners = new ArrayList<>();
+
+  /**
+   * Construct a new watcher.
+   *
+   * <p>
+   * Directories will not be cleaned before they are watched.
+   */
+  public WatchServiceDirectoryWatcher() {
+    this(false);
+  }
+
+  /**
+   * Construct a new watcher.
+   *
+   * @param cleanFirst
+   *          {@code true} if added directories are cleaned before they are
+   *          watched
+   */
+  public WatchServiceDirectoryWatcher(boolean cleanFirst) {
+    this(cleanFirst, null);
+  }
+
+  /**
+   * Construct a new watcher.
+   *
+   * @param cleanFirst
+   *          {@code true} if added directories are cleaned before they are
+   *          watched
+   * @param log
+   *          the logger to use
+   */
+  public WatchServiceDirectoryWatcher(boolean cleanFirst, ExtendedLog log) {
+    super(cleanFirst, log);
+  }
+
+  @Override
+  public Set<File> startupWithScan(SmartSpacesEnvironment environment, long period, TimeUnit unit) {
+    Set<File> currentScan = scanAllDirectories();
+
+    synchronized (this) {
+      for (File file : currentScan) {
+        filesSeen.put(file, file.lastModified());
+      }
+    }
+
+    startup(environment, period, unit);
+
+    return currentScan;
+  }
+
+  @Override
+  public synchronized void addDirectoryWatcherListener(DirectoryWatcherListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public synchronized void removeDirectoryWatcherListener(DirectoryWatcherListener listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  protected void addSeenFiles(File directory, Set<File> files) {
+    for (File file : filesSeen.keySet()) {
+      if (directory.equals(file.getParentFile())) {
+        files.add(file);
+      }
+    }
+  }
+
+  @Override
+  protected void processChangedFiles(Set<File> files) {
+    for (File file : files) {
+      if (file.exists()) {
+        Long modifiedTime = file.lastModified();
+        Long lastModifiedTime = filesSeen.put(file, modifiedTime);
+        if (lastModifiedTime == null) {
+          signalFileAdded(file);
+        } else if (!lastModifiedTime.equals(modifiedTime)) {
+          signalFileModified(file);
+        }
+      } else if (filesSeen.remove(file) != null) {
+        signalFileRemoved(file);
+      }
+    }
+  }
+
+  /**
+   * Signal all listeners that a file has been added.
+   *
+   * @param fileAdded
+   *          the file which has been added
+   */
+  private void signalFileAdded(File fileAdded) {
+    for (DirectoryWatcherListener listener : listeners) {
+      try {
+        listener.onFileAdded(fileAdded);
+      } catch (Throwable e) {
+        log.formatError(e, "Exception while signalling file added %s", fileAdded.getAbsolutePath());
+      }
+    }
+  }
+
+  /**
+   * Signal all listeners that a file has been modified.
+   *
+   * @param fileModified
+   *          the file which has been modified
+   */
+  private void signalFileModified(File fileModified) {
+    for (DirectoryWatcherListener listener : listeners) {
+      try {
+        listener.onFileModified(fileModified);
+      } catch (Throwable e) {
+        log.formatError(e, "Exception while signalling file modified %s",
+            fileModified.getAbsolutePath());
+      }
+    }
+  }
+
+  /**
+   * Signal all listeners that a file has been removed.
+   *
+   * @param fileRemoved
+   *          the file which has been removed
+   */
+  private void signalFileRemoved(File fileRemoved) {
+    for (DirectoryWatcherListener listener : listeners) {
+      try {
+        listener.onFileRemoved(fileRemoved);
+      } catch (Throwable e) {
+        log.formatError(e, "Exception while signalling file removed %s",
+            fileRemoved.getAbsolutePath());
+      }
+    }
+  }
+}
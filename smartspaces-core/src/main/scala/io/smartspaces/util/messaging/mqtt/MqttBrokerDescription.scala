@@ -17,6 +17,7 @@
 package io.smartspaces.util.messaging.mqtt
 
 import java.lang.{ Integer => JInteger }
+import java.lang.{ Long => JLong }
 import io.smartspaces.SmartSpacesException
 import io.smartspaces.util.data.mapper.StandardJsonDataMapper
 
@@ -68,6 +69,11 @@ object MqttBrokerDescription {
       var persistencePath: Option[String] = None
       var brokerClientId: Option[String] = None
       var maxInFlight: Option[JInteger] = None
+      var publisherConnections: Option[JInteger] = None
+      var cleanSession: Option[Boolean] = None
+      var reconnectDelayInitial: Option[JLong] = None
+      var reconnectDelayMax: Option[JLong] = None
+      var offlineBufferSize: Option[JInteger] = None
 
       val paramString = matcher.group(4)
       if (paramString != null) {
@@ -84,12 +90,18 @@ object MqttBrokerDescription {
         persistencePath = Option(params.get("persistencePath").asInstanceOf[String])
         brokerClientId = Option(params.get("brokerClientId").asInstanceOf[String])
         maxInFlight = Option(params.get("maxInFlight").asInstanceOf[JInteger])
+        publisherConnections = Option(params.get("publisherConnections").asInstanceOf[JInteger])
+        cleanSession = Option(params.get("cleanSession").asInstanceOf[java.lang.Boolean]).map(_.booleanValue)
+        reconnectDelayInitial = Option(params.get("reconnectDelayInitial").asInstanceOf[Number]).map(_.longValue)
+        reconnectDelayMax = Option(params.get("reconnectDelayMax").asInstanceOf[Number]).map(_.longValue)
+        offlineBufferSize = Option(params.get("offlineBufferSize").asInstanceOf[JInteger])
       }
 
       new MqttBrokerDescription(brokerHost, brokerPort, isSsl, username, password, keystorePath, keystorePassword, caCertPath,
         clientCertPath, clientKeyPath, 
         autoreconnect, persistencePath, 
-        brokerClientId, maxInFlight)
+        brokerClientId, maxInFlight, publisherConnections,
+        cleanSession, reconnectDelayInitial, reconnectDelayMax, offlineBufferSize)
     } else {
       throw new SmartSpacesException(s"MQTT broker description has the wrong syntax: ${description}")
     }
@@ -161,7 +173,33 @@ class MqttBrokerDescription(
   /**
    * The maximum number of inflight publishes allowed.
    */
-  val maxInFlight: Option[JInteger]) extends Equals {
+  val maxInFlight: Option[JInteger],
+
+  /**
+   * The number of connections to the broker that publishers are spread over.
+   */
+  val publisherConnections: Option[JInteger] = None,
+
+  /**
+   * {@code false} if the broker should keep the session, including
+   * subscriptions and undelivered messages, while the client is disconnected.
+   */
+  val cleanSession: Option[Boolean] = None,
+
+  /**
+   * The ceiling for the delay before the first reconnect attempt, in milliseconds.
+   */
+  val reconnectDelayInitial: Option[JLong] = None,
+
+  /**
+   * The largest delay between reconnect attempts, in milliseconds.
+   */
+  val reconnectDelayMax: Option[JLong] = None,
+
+  /**
+   * The most messages to hold for publishing while disconnected.
+   */
+  val offlineBufferSize: Option[JInteger] = None) extends Equals {
 
   /**
    * The network address of the broker.
@@ -183,15 +221,21 @@ class MqttBrokerDescription(
           brokerHost == that.brokerHost &&
           brokerPort == that.brokerPort &&
           isSsl == that.isSsl &&
-          brokerClientId == that.brokerClientId
+          brokerClientId == that.brokerClientId &&
+          maxInFlight == that.maxInFlight &&
+          publisherConnections == that.publisherConnections &&
+          cleanSession == that.cleanSession &&
+          reconnectDelayInitial == that.reconnectDelayInitial &&
+          reconnectDelayMax == that.reconnectDelayMax &&
+          offlineBufferSize == that.offlineBufferSize
       case _ => false
     }
   }
 
   override def hashCode() = {
     val prime = 41
-    prime * (prime * (prime * (prime + brokerHost.hashCode) +
-      brokerPort.hashCode) + isSsl.hashCode) +
-      brokerClientId.hashCode
+    Seq(brokerHost, brokerPort, isSsl, brokerClientId, maxInFlight, publisherConnections,
+      cleanSession, reconnectDelayInitial, reconnectDelayMax, offlineBufferSize)
+      .foldLeft(1)((hash, field) => prime * hash + field.hashCode)
   }
 }
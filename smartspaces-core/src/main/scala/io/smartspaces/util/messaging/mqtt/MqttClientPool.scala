@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.messaging.mqtt
+
+import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.resource.managed.IdempotentManagedResource
+
+import java.util.concurrent.ScheduledExecutorService
+
+/**
+ * A pool of MQTT client connections to a single broker.
+ *
+ * <p>
+ * Publishers are spread over the connections by topic, so a busy topic does
+ * not hold up the other topics on the same socket and in-flight window. A
+ * topic always uses the same connection, so messages on a topic stay in order.
+ *
+ * <p>
+ * Connections are made the first time they are needed. The first connection
+ * uses the node name as its client ID and the others add their pool index to
+ * it, since a broker allows only one connection per client ID.
+ *
+ * @author Keith M. Hughes
+ */
+class MqttClientPool(val mqttBrokerDescription: MqttBrokerDescription, nodeName: String,
+    executorService: ScheduledExecutorService, log: ExtendedLog) extends IdempotentManagedResource {
+
+  /**
+   * Construct a pool whose clients leave any reconnecting to Paho.
+   *
+   * @param mqttBrokerDescription
+   *          the broker to connect to
+   * @param nodeName
+   *          the node name, used for the client IDs
+   * @param log
+   *          the logger to use
+   */
+  def this(mqttBrokerDescription: MqttBrokerDescription, nodeName: String, log: ExtendedLog) = {
+    this(mqttBrokerDescription, nodeName, null, log)
+  }
+
+  /**
+   * The number of connections in the pool.
+   */
+  val poolSize: Int = math.max(1, mqttBrokerDescription.publisherConnections.map(_.intValue).getOrElse(1))
+
+  /**
+   * The clients, created when first used.
+   */
+  private val clients = new Array[PahoMqttClient](poolSize)
+
+  /**
+   * Get the primary client of the pool, which is also used for subscribers.
+   *
+   * @return the client
+   */
+  def primaryClient: PahoMqttClient = getClient(0)
+
+  /**
+   * Get the client to publish a topic on.
+   *
+   * @param topicName
+   *          the name of the topic
+   *
+   * @return the client
+   */
+  def getClientForTopic(topicName: String): PahoMqttClient = {
+    getClient(Math.floorMod(topicName.hashCode, poolSize))
+  }
+
+  override def onStartup(): Unit = {
+    // Clients are connected when first used.
+  }
+
+  override def onShutdown(): Unit = {
+    synchronized {
+      clients.indices.foreach { index =>
+        if (clients(index) != null) {
+          clients(index).shutdown()
+          clients(index) = null
+        }
+      }
+    }
+  }
+
+  /**
+   * Get a client from the pool, connecting it if needed.
+   *
+   * @param index
+   *          the pool index of the client
+   *
+   * @return the client
+   */
+  private def getClient(index: Int): PahoMqttClient = {
+    synchronized {
+      var client = clients(index)
+      if (client == null) {
+        val clientId = if (index == 0) nodeName else s"${nodeName}-${index}"
+        client = new PahoMqttClient(mqttBrokerDescription, clientId, executorService, log)
+        client.startup()
+
+        clients(index) = client
+      }
+
+      client
+    }
+  }
+}
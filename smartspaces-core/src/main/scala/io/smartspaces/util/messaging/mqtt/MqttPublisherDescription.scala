@@ -27,7 +27,21 @@ import io.smartspaces.util.data.mapper.StandardJsonDataMapper
 object MqttPublisherDescription {
 
   /**
-   * Parse a description string into an MQTT broker description.
+   * The default quality of service for publishers.
+   */
+  val QOS_DEFAULT = 1
+
+  /**
+   * The default retain value for publishers.
+   */
+  val RETAIN_DEFAULT = false
+
+  /**
+   * Parse a description string into an MQTT publisher description.
+   *
+   * <p>
+   * The description is a topic name, optionally followed by {@code @} and a
+   * JSON object of parameters, e.g. {@code /foo/bar@{"qos": 0}}.
    */
   def parse(description: String): MqttPublisherDescription = {
     val mapposition = description.indexOf("@")
@@ -37,15 +51,19 @@ object MqttPublisherDescription {
     val publisherDescription = new MqttPublisherDescription(topicName)
 
     if (mapposition != -1) {
-      val params = StandardJsonDataMapper.INSTANCE.parseObject(description.substring(mapposition + 1))
+      val paramString = description.substring(mapposition + 1)
+      val params = try {
+        StandardJsonDataMapper.INSTANCE.parseObject(paramString)
+      } catch {
+        case e: Throwable =>
+          throw new SmartSpacesException(s"MQTT publisher description has the wrong syntax: ${description}", e)
+      }
 
-      publisherDescription.qos = Option(params.get("qos").asInstanceOf[Integer])
-      publisherDescription.retain = Option(params.get("retain").asInstanceOf[Boolean])
-
-      publisherDescription
-    } else {
-      throw new SmartSpacesException(s"MQTT publisher description has the wrong syntax: ${description}")
+      publisherDescription.qos = Option(params.get("qos").asInstanceOf[Integer]).map(_.intValue)
+      publisherDescription.retain = Option(params.get("retain").asInstanceOf[java.lang.Boolean]).map(_.booleanValue)
     }
+
+    publisherDescription
   }
 }
 
@@ -33,6 +33,10 @@ trait MqttPublishers[T] extends MessageSender[T] {
   /**
    * Add publishers to the collection.
    * 
+   * <p>
+   * Each topic name can be a publisher description, giving the quality of
+   * service and retain setting for the topic.
+   *
    * @param mqttClient
    *          the MQTT client that the topics will be published to
    * @param topicNames
@@ -40,6 +44,21 @@ trait MqttPublishers[T] extends MessageSender[T] {
    */
   def addPublishers(mqttClient: PahoMqttClient,  topicNames: Set[String]): Unit
 
+  /**
+   * Add publishers to the collection, spreading the topics over a pool of
+   * clients.
+   *
+   * <p>
+   * Each topic name can be a publisher description, giving the quality of
+   * service and retain setting for the topic.
+   *
+   * @param clientPool
+   *          the pool of MQTT clients that the topics will be published to
+   * @param topicNames
+   *          the topic names
+   */
+  def addPublishers(clientPool: MqttClientPool, topicNames: Set[String]): Unit
+
   /**
    * Shut down all publishers.
    */
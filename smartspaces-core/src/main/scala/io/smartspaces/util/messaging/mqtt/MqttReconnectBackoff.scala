@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2017 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.messaging.mqtt
+
+import java.util.Random
+
+/**
+ * Support for MQTT reconnect backoff.
+ *
+ * @author Keith M. Hughes
+ */
+object MqttReconnectBackoff {
+
+  /**
+   * The default delay before the first reconnect attempt, in milliseconds.
+   */
+  val RECONNECT_DELAY_INITIAL_DEFAULT = 500L
+
+  /**
+   * The default longest delay between reconnect attempts, in milliseconds.
+   */
+  val RECONNECT_DELAY_MAX_DEFAULT = 60000L
+}
+
+/**
+ * Exponential backoff with jitter for reconnecting to an MQTT broker.
+ *
+ * <p>
+ * The ceiling for the delay doubles with each attempt up to the maximum delay.
+ * The delay is half the ceiling plus a random amount up to the other half, so
+ * the delays keep growing but clients that lost the broker at the same time do
+ * not all come back at the same time.
+ *
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @param initialDelay
+ *        the ceiling for the first delay, in milliseconds
+ * @param maxDelay
+ *        the largest ceiling, in milliseconds
+ * @param random
+ *        the random number generator for the jitter
+ *
+ * @author Keith M. Hughes
+ */
+class MqttReconnectBackoff(val initialDelay: Long, val maxDelay: Long, random: Random) {
+
+  /**
+   * Construct a backoff with its own random number generator.
+   *
+   * @param initialDelay
+   *        the ceiling for the first delay, in milliseconds
+   * @param maxDelay
+   *        the largest ceiling, in milliseconds
+   */
+  def this(initialDelay: Long, maxDelay: Long) = {
+    this(initialDelay, maxDelay, new Random())
+  }
+
+  /**
+   * The number of attempts since the last reset.
+   */
+  private var attempts = 0
+
+  /**
+   * Get the delay before the next attempt.
+   *
+   * @return the delay, in milliseconds
+   */
+  def nextDelay(): Long = {
+    // Stop doubling well before the shift could overflow.
+    val ceiling = math.min(maxDelay, initialDelay << math.min(attempts, 30))
+    attempts += 1
+
+    val half = ceiling / 2
+    half + (random.nextDouble() * (ceiling - half)).toLong
+  }
+
+  /**
+   * Start the delays from the beginning, such as after a successful connection.
+   */
+  def reset(): Unit = {
+    attempts = 0
+  }
+}
@@ -24,9 +24,10 @@ import io.smartspaces.util.net.SslUtils
 
 import org.eclipse.paho.client.mqttv3.IMqttActionListener
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener
 import org.eclipse.paho.client.mqttv3.IMqttToken
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient
-import org.eclipse.paho.client.mqttv3.MqttCallback
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended
 import org.eclipse.paho.client.mqttv3.MqttClientPersistence
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions
 import org.eclipse.paho.client.mqttv3.MqttException
@@ -34,22 +35,62 @@ import org.eclipse.paho.client.mqttv3.MqttMessage
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence
 import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence
 
+import java.util.ArrayDeque
+import java.util.LinkedHashMap
 import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.TimeUnit
 import javax.net.ssl.SSLSocketFactory
 
 /**
  * A Paho MQTT client.
  *
+ * <p>
+ * If the broker description asks for automatic reconnection and the client
+ * has an executor service, the client reconnects itself with exponential
+ * backoff and jitter. Subscriptions made through the client are made again,
+ * in one batch, if the broker did not keep the session. After one of Paho's
+ * own automatic reconnects they are always made again, since Paho does not say
+ * whether the session was kept. Messages published
+ * through the client while it is disconnected are held in a bounded buffer,
+ * if the broker description gives a buffer size, and are sent in order once
+ * reconnected.
+ *
  * @author Keith M. Hughes
  */
-class PahoMqttClient(val mqttBrokerDescription: MqttBrokerDescription, val nodeName: String, log: ExtendedLog) extends IdempotentManagedResource with MqttClient {
+class PahoMqttClient(val mqttBrokerDescription: MqttBrokerDescription, val nodeName: String,
+    executorService: ScheduledExecutorService, log: ExtendedLog) extends IdempotentManagedResource with MqttClient {
+
+  /**
+   * Construct a client which leaves any reconnecting to Paho.
+   *
+   * @param mqttBrokerDescription
+   *          the broker to connect to
+   * @param nodeName
+   *          the node name, used as the client ID
+   * @param log
+   *          the logger to use
+   */
+  def this(mqttBrokerDescription: MqttBrokerDescription, nodeName: String, log: ExtendedLog) = {
+    this(mqttBrokerDescription, nodeName, null, log)
+  }
 
   /**
    * The default value for auto reconnecting when communication lost.
    */
   val AUTORECONNECT_DEFAULT = false
 
+  /**
+   * The default value for starting a clean session on every connection.
+   */
+  val CLEAN_SESSION_DEFAULT = true
+
+  /**
+   * How long to wait before trying again to publish held messages, in
+   * milliseconds.
+   */
+  val OFFLINE_BUFFER_RETRY_DELAY = 100L
+
   /**
    * The Paho MQTT client.
    */
@@ -65,6 +106,51 @@ class PahoMqttClient(val mqttBrokerDescription: MqttBrokerDescription, val nodeN
    */
   private var connectionWaitTime: Long = 10000
 
+  /**
+   * The options for connecting to the broker.
+   */
+  private val mqttConnectOptions = new MqttConnectOptions()
+
+  /**
+   * {@code true} if the client reconnects itself rather than leaving it to
+   * Paho.
+   */
+  private val reconnectSelf =
+    executorService != null && mqttBrokerDescription.autoreconnect.getOrElse(AUTORECONNECT_DEFAULT)
+
+  /**
+   * The backoff between reconnect attempts.
+   */
+  private val reconnectBackoff = new MqttReconnectBackoff(
+    mqttBrokerDescription.reconnectDelayInitial.map(_.longValue).getOrElse(MqttReconnectBackoff.RECONNECT_DELAY_INITIAL_DEFAULT),
+    mqttBrokerDescription.reconnectDelayMax.map(_.longValue).getOrElse(MqttReconnectBackoff.RECONNECT_DELAY_MAX_DEFAULT))
+
+  /**
+   * The subscriptions made through the client, keyed by topic name.
+   */
+  private val subscriptions = new LinkedHashMap[String, MqttSubscription]
+
+  /**
+   * The most messages to hold while disconnected, {@code 0} if none.
+   */
+  private val offlineBufferSize = mqttBrokerDescription.offlineBufferSize.map(_.intValue).getOrElse(0)
+
+  /**
+   * The messages held while disconnected, oldest first.
+   */
+  private val offlineBuffer = new ArrayDeque[BufferedPublish]
+
+  /**
+   * {@code true} if new messages should go into the offline buffer.
+   */
+  @volatile private var buffering = false
+
+  /**
+   * {@code true} if the client is shutting down and should no longer
+   * reconnect.
+   */
+  @volatile private var shuttingDown = false
+
   /**
    * The action listener for publishers.
    */
@@ -99,15 +185,26 @@ class PahoMqttClient(val mqttBrokerDescription: MqttBrokerDescription, val nodeN
     var client: MqttAsyncClient = null
 
     try {
-      client = new MqttAsyncClient(mqttBrokerDescription.brokerAddress, nodeName, persistence)
+      client = newMqttAsyncClient(persistence)
     } catch {
       case e: MqttException =>
         throw new SmartSpacesException(s"Failed to create MQTT client for broker ${mqttBrokerDescription}", e)
     }
 
-    client.setCallback(new MqttCallback() {
+    client.setCallback(new MqttCallbackExtended() {
+      override def connectComplete(reconnect: Boolean, serverURI: String): Unit = {
+        // Only Paho's own reconnects are flagged, the client's reconnects are handled by their listener.
+        // Paho does not say whether the broker kept the session, which a restarted broker may not have
+        // even without clean sessions, so always subscribe again. Subscribing again is harmless.
+        if (reconnect) {
+          handleReconnected(false)
+        }
+      }
+
       override def connectionLost(cause: Throwable): Unit = {
         log.error("Lost connection to MQTT server", cause)
+
+        handleConnectionLost()
       }
 
       override def deliveryComplete(token: IMqttDeliveryToken): Unit = {
@@ -119,10 +216,10 @@ class PahoMqttClient(val mqttBrokerDescription: MqttBrokerDescription, val nodeN
       }
     })
 
-    val mqttConnectOptions = new MqttConnectOptions()
-
-    mqttConnectOptions.setCleanSession(true)
-    mqttConnectOptions.setAutomaticReconnect(mqttBrokerDescription.autoreconnect.getOrElse(AUTORECONNECT_DEFAULT))
+    mqttConnectOptions.setCleanSession(mqttBrokerDescription.cleanSession.getOrElse(CLEAN_SESSION_DEFAULT))
+    mqttConnectOptions.setAutomaticReconnect(
+      !reconnectSelf && mqttBrokerDescription.autoreconnect.getOrElse(AUTORECONNECT_DEFAULT))
+    mqttBrokerDescription.maxInFlight.foreach(mqttConnectOptions.setMaxInflight(_))
     if (mqttBrokerDescription.username.isDefined) {
       mqttConnectOptions.setUserName(mqttBrokerDescription.username.get)
       mqttConnectOptions.setPassword(mqttBrokerDescription.password.get.toCharArray())
@@ -135,7 +232,7 @@ class PahoMqttClient(val mqttBrokerDescription: MqttBrokerDescription, val nodeN
     var connectHappened = new CountDownLatch(1)
     var connectStarted = true
     try {
-      client.connect(mqttConnectOptions, new IMqttActionListener() {
+      client.connect(mqttConnectOptions, null, new IMqttActionListener() {
         override def onSuccess(token: IMqttToken): Unit = {
           log.info(s"MQTT connection success to MQTT broker ${mqttBrokerDescription} (token ${token})")
           connectHappened.countDown()
@@ -171,11 +268,265 @@ class PahoMqttClient(val mqttBrokerDescription: MqttBrokerDescription, val nodeN
   }
 
   override def onShutdown(): Unit = {
-    mqttClient.close()
+    shuttingDown = true
+
+    if (mqttClient != null) {
+      try {
+        if (mqttClient.isConnected()) {
+          mqttClient.disconnect().waitForCompletion(connectionWaitTime)
+        }
+        mqttClient.close()
+      } catch {
+        case e: MqttException =>
+          log.error(s"Could not cleanly close MQTT client for broker ${mqttBrokerDescription}", e)
+      }
+    }
 
     persistence.close()
   }
 
+  /**
+   * Create the Paho client.
+   *
+   * @param persistence
+   *          the persistence for the client
+   *
+   * @return the Paho client
+   *
+   * @throws MqttException
+   *           the client could not be created
+   */
+  private[mqtt] def newMqttAsyncClient(persistence: MqttClientPersistence): MqttAsyncClient = {
+    new MqttAsyncClient(mqttBrokerDescription.brokerAddress, nodeName, persistence)
+  }
+
+  /**
+   * Publish a message.
+   *
+   * <p>
+   * If the client is disconnected and has an offline buffer, the message is
+   * held and published once the client reconnects. A full buffer drops its
+   * oldest message.
+   *
+   * @param topicName
+   *          the topic to publish on
+   * @param payload
+   *          the message payload
+   * @param qos
+   *          the quality of service
+   * @param retain
+   *          {@code true} if the broker should retain the message
+   * @param listener
+   *          the listener for the publish, can be {@code null}
+   *
+   * @throws MqttException
+   *           the message could not be published or held
+   */
+  def publish(topicName: String, payload: Array[Byte], qos: Int, retain: Boolean,
+      listener: IMqttActionListener): Unit = {
+    if (offlineBufferSize == 0) {
+      mqttClient.publish(topicName, payload, qos, retain, null, listener)
+    } else {
+      var published = false
+      if (!buffering) {
+        try {
+          mqttClient.publish(topicName, payload, qos, retain, null, listener)
+          published = true
+        } catch {
+          case e: MqttException if !mqttClient.isConnected() =>
+            // Lost the connection, so hold the message.
+        }
+      }
+
+      if (!published) {
+        bufferPublish(new BufferedPublish(topicName, payload, qos, retain, listener))
+      }
+    }
+  }
+
+  /**
+   * Subscribe to topics.
+   *
+   * <p>
+   * The topics are subscribed to in one batch. The subscriptions are
+   * remembered, so are made again if the client reconnects to a broker that
+   * did not keep the session.
+   *
+   * @param topicNames
+   *          the topics to subscribe to
+   * @param qos
+   *          the quality of service for the subscriptions
+   * @param listener
+   *          the listener for messages on the topics
+   *
+   * @throws MqttException
+   *           the subscriptions could not be made
+   */
+  def subscribe(topicNames: Iterable[String], qos: Int, listener: IMqttMessageListener): Unit = {
+    val newSubscriptions = topicNames.map(new MqttSubscription(_, qos, listener)).toArray
+
+    subscriptions.synchronized {
+      newSubscriptions.foreach((subscription) => subscriptions.put(subscription.topicName, subscription))
+    }
+
+    if (mqttClient != null && mqttClient.isConnected()) {
+      subscribeAll(newSubscriptions)
+    }
+  }
+
+  /**
+   * Subscribe to all topics in one call.
+   *
+   * @param batch
+   *          the subscriptions to make
+   */
+  private def subscribeAll(batch: Array[MqttSubscription]): Unit = {
+    if (batch.nonEmpty) {
+      mqttClient.subscribe(batch.map(_.topicName), batch.map(_.qos), batch.map(_.listener))
+    }
+  }
+
+  /**
+   * Hold a message to be published once reconnected.
+   *
+   * @param publish
+   *          the message
+   */
+  private def bufferPublish(publish: BufferedPublish): Unit = {
+    offlineBuffer.synchronized {
+      if (!buffering && mqttClient.isConnected()) {
+        // The buffer drained while the message was on its way here.
+        mqttClient.publish(publish.topicName, publish.payload, publish.qos, publish.retain, null, publish.listener)
+      } else {
+        buffering = true
+
+        if (offlineBuffer.size >= offlineBufferSize) {
+          offlineBuffer.removeFirst()
+          log.warn(s"MQTT offline buffer full for broker ${mqttBrokerDescription}, dropped the oldest message")
+        }
+        offlineBuffer.addLast(publish)
+      }
+    }
+  }
+
+  /**
+   * Publish the held messages, in order.
+   *
+   * <p>
+   * Stops at the first message which fails, leaving it and everything after
+   * it held.
+   */
+  private def drainOfflineBuffer(): Unit = {
+    offlineBuffer.synchronized {
+      try {
+        while (!offlineBuffer.isEmpty) {
+          val publish = offlineBuffer.peekFirst()
+          mqttClient.publish(publish.topicName, publish.payload, publish.qos, publish.retain, null, publish.listener)
+          offlineBuffer.removeFirst()
+        }
+
+        buffering = false
+      } catch {
+        case e: MqttException =>
+          if (mqttClient.isConnected() && executorService != null && !shuttingDown) {
+            // Most likely the in-flight window is full, so try again once some has been acknowledged.
+            executorService.schedule(new Runnable() {
+              override def run(): Unit = {
+                drainOfflineBuffer()
+              }
+            }, OFFLINE_BUFFER_RETRY_DELAY, TimeUnit.MILLISECONDS)
+          } else {
+            log.error(s"Could not publish held MQTT messages to broker ${mqttBrokerDescription}", e)
+          }
+      }
+    }
+  }
+
+  /**
+   * The connection to the broker has been lost.
+   */
+  private def handleConnectionLost(): Unit = {
+    if (offlineBufferSize > 0) {
+      buffering = true
+    }
+
+    if (reconnectSelf && !shuttingDown) {
+      scheduleReconnect()
+    }
+  }
+
+  /**
+   * Schedule the next reconnect attempt.
+   */
+  private def scheduleReconnect(): Unit = {
+    val delay = reconnectBackoff.synchronized {
+      reconnectBackoff.nextDelay()
+    }
+
+    log.info(s"Reconnecting to MQTT broker ${mqttBrokerDescription} in ${delay} msecs")
+
+    executorService.schedule(new Runnable() {
+      override def run(): Unit = {
+        attemptReconnect()
+      }
+    }, delay, TimeUnit.MILLISECONDS)
+  }
+
+  /**
+   * Attempt to reconnect to the broker.
+   */
+  private def attemptReconnect(): Unit = {
+    if (!shuttingDown) {
+      try {
+        mqttClient.connect(mqttConnectOptions, null, new IMqttActionListener() {
+          override def onSuccess(token: IMqttToken): Unit = {
+            log.info(s"MQTT reconnection success to MQTT broker ${mqttBrokerDescription}")
+
+            reconnectBackoff.synchronized {
+              reconnectBackoff.reset()
+            }
+
+            handleReconnected(token.getSessionPresent())
+          }
+
+          override def onFailure(token: IMqttToken, cause: Throwable): Unit = {
+            log.warn(s"MQTT reconnection failed to MQTT broker ${mqttBrokerDescription}", cause)
+
+            scheduleReconnect()
+          }
+        })
+      } catch {
+        case e: MqttException =>
+          log.warn(s"MQTT reconnection failed to start to MQTT broker ${mqttBrokerDescription}", e)
+
+          scheduleReconnect()
+      }
+    }
+  }
+
+  /**
+   * The client has reconnected to the broker.
+   *
+   * @param sessionPresent
+   *          {@code true} if the broker kept the session
+   */
+  private def handleReconnected(sessionPresent: Boolean): Unit = {
+    if (!sessionPresent) {
+      val batch = subscriptions.synchronized {
+        subscriptions.values().toArray(new Array[MqttSubscription](subscriptions.size))
+      }
+
+      try {
+        subscribeAll(batch)
+      } catch {
+        case e: MqttException =>
+          log.error(s"Could not resubscribe to topics on MQTT broker ${mqttBrokerDescription}", e)
+      }
+    }
+
+    drainOfflineBuffer()
+  }
+
   /**
    * Create an SSL socket factory.
    *
@@ -195,4 +546,19 @@ class PahoMqttClient(val mqttBrokerDescription: MqttBrokerDescription, val nodeN
     }
   }
 
+  /**
+   * A subscription made through the client.
+   *
+   * @author Keith M. Hughes
+   */
+  private class MqttSubscription(val topicName: String, val qos: Int, val listener: IMqttMessageListener)
+
+  /**
+   * A message held until the client reconnects.
+   *
+   * @author Keith M. Hughes
+   */
+  private class BufferedPublish(val topicName: String, val payload: Array[Byte], val qos: Int,
+      val retain: Boolean, val listener: IMqttActionListener)
+
 }
\ No newline at end of file
@@ -24,7 +24,6 @@ import io.smartspaces.logging.ExtendedLog
 import io.smartspaces.messaging.codec.MessageEncoder
 import org.eclipse.paho.client.mqttv3.IMqttActionListener
 import org.eclipse.paho.client.mqttv3.IMqttToken
-import org.eclipse.paho.client.mqttv3.MqttMessage
 
 import scala.collection.JavaConverters._
 
@@ -65,18 +64,44 @@ class StandardMqttPublishers[T](messageEncoder: MessageEncoder[T, Array[Byte]],
     log.debug(s"Adding publishers for topic names ${topicNames} to MQTT master ${mqttClient.mqttBrokerDescription}")
 
     topicNames.asScala.foreach { topicName =>
-      log.debug(s"Adding publisher topic ${topicName}")
-      clients.add(new MqttClientInformation(mqttClient, topicName));
+      addPublisher(mqttClient, MqttPublisherDescription.parse(topicName))
     }
   }
 
+  override def addPublishers(clientPool: MqttClientPool, topicNames: Set[String]): Unit = {
+
+    log.debug(s"Adding publishers for topic names ${topicNames} to MQTT master ${clientPool.mqttBrokerDescription}")
+
+    topicNames.asScala.foreach { topicName =>
+      val publisherDescription = MqttPublisherDescription.parse(topicName)
+      addPublisher(clientPool.getClientForTopic(publisherDescription.topicName), publisherDescription)
+    }
+  }
+
+  /**
+   * Add a publisher.
+   *
+   * @param mqttClient
+   *          the MQTT client to publish on
+   * @param publisherDescription
+   *          the description of the publisher
+   */
+  private def addPublisher(mqttClient: PahoMqttClient, publisherDescription: MqttPublisherDescription): Unit = {
+    log.debug(s"Adding publisher topic ${publisherDescription.topicName}")
+
+    clients.add(new MqttClientInformation(mqttClient, publisherDescription.topicName,
+      publisherDescription.qos.getOrElse(MqttPublisherDescription.QOS_DEFAULT),
+      publisherDescription.retain.getOrElse(MqttPublisherDescription.RETAIN_DEFAULT)))
+  }
+
   override def sendMessage(message: T): Unit = {
-    val mqttMessage = new MqttMessage(messageEncoder.encode(message))
-    mqttMessage.setQos(1)
+    val payload = messageEncoder.encode(message)
 
     clients.asScala.foreach { client =>
       try {
-        client.mqttClient.mqttClient.publish(client.topicName, mqttMessage, null, actionListener);
+        // There is no delivery acknowledgement at QoS 0, so there is nothing for the listener to report.
+        val listener = if (client.qos > 0) actionListener else null
+        client.mqttClient.publish(client.topicName, payload, client.qos, client.retain, listener)
       } catch {
         case e: Throwable =>
           log.error("MQTT message publish failed", e)
@@ -93,6 +118,7 @@ class StandardMqttPublishers[T](messageEncoder: MessageEncoder[T, Array[Byte]],
    *
    * @author Keith M. Hughes
    */
-  class MqttClientInformation(val mqttClient: PahoMqttClient, val topicName: String) {
+  class MqttClientInformation(val mqttClient: PahoMqttClient, val topicName: String, val qos: Int,
+      val retain: Boolean) {
   }
 }
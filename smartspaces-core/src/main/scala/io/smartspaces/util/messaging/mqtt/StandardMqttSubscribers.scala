@@ -43,12 +43,8 @@ class StandardMqttSubscribers(nodeName: String, log: ExtendedLog) extends MqttSu
 
     log.debug(s"Adding subscribers for topic names ${topicNames} to MQTT master ${mqttClient.mqttBrokerDescription}")
 
-    topicNames.asScala.foreach { topicName =>
-
-      log.debug(s"Adding subscriber topic ${topicName}")
-
-        mqttClient.mqttClient.subscribe(topicName, 1, callback)
-    }
+    // All topics are subscribed to in one batch.
+    mqttClient.subscribe(topicNames.asScala, 1, callback)
   }
 
   override def shutdown(): Unit = {
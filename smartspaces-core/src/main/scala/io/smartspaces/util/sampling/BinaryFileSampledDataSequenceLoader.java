@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.sampling;
+
+import io.smartspaces.util.sampling.SampledDataSequence.SampledDataFrame;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A sampled data sequence loader which uses the binary sequence format for
+ * storage.
+ *
+ * <p>
+ * Long sequences which only need to be played back should be opened with a
+ * {@link MappedBinarySampledDataSequence} rather than loaded into memory.
+ *
+ * @see BinarySampledDataSequenceFormat
+ *
+ * @author Keith M. Hughes
+ */
+public class BinaryFileSampledDataSequenceLoader implements SampledDataSequenceLoader {
+
+  @Override
+  public void save(File dataFile, SampledDataSequence dataSequence) {
+    BinarySampledDataSequenceWriter writer = new BinarySampledDataSequenceWriter(dataFile);
+    try {
+      List<SampledDataFrame> frames = dataSequence.getFrames();
+      for (int i = 0; i < frames.size(); i++) {
+        SampledDataFrame frame = frames.get(i);
+        writer.writeFrame(frame.getSource(), frame.getSamples(), frame.getTimestamp());
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  @Override
+  public int load(File dataFile, SampledDataSequence dataSequence) {
+    MappedBinarySampledDataSequence mappedSequence = new MappedBinarySampledDataSequence(dataFile);
+    mappedSequence.copyTo(dataSequence);
+
+    return mappedSequence.getNumberFrames();
+  }
+}
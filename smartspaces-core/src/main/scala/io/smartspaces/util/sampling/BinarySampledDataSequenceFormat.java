@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.sampling;
+
+import java.nio.charset.Charset;
+
+/**
+ * The layout of the binary sampled data sequence file format.
+ *
+ * <p>
+ * All values are big endian. The file consists of
+ *
+ * <ul>
+ * <li>a fixed size header giving the magic number, the format version, the
+ * number of frames, the number of sources and the file offsets of the source
+ * table and the frame index</li>
+ * <li>the frames, each one being the index of its source in the source table,
+ * its timestamp, its number of samples and then the samples as 4 byte
+ * integers</li>
+ * <li>the source table, each entry being a 2 byte length followed by the UTF-8
+ * bytes of the source name</li>
+ * <li>the frame index, an 8 byte file offset for each frame</li>
+ * </ul>
+ *
+ * <p>
+ * The source table and frame index come after the frames so that a writer can
+ * stream frames to disk without knowing ahead of time how many there will be.
+ *
+ * @author Keith M. Hughes
+ */
+public final class BinarySampledDataSequenceFormat {
+
+  /**
+   * The magic number at the start of every file, the bytes {@code SDSQ}.
+   */
+  public static final int MAGIC_NUMBER = 0x53445351;
+
+  /**
+   * The current version of the file format.
+   */
+  public static final int FORMAT_VERSION = 1;
+
+  /**
+   * The file offset of the number of frames in the header.
+   */
+  public static final int HEADER_OFFSET_NUMBER_FRAMES = 8;
+
+  /**
+   * The file offset of the number of sources in the header.
+   */
+  public static final int HEADER_OFFSET_NUMBER_SOURCES = 12;
+
+  /**
+   * The file offset of the source table offset in the header.
+   */
+  public static final int HEADER_OFFSET_SOURCE_TABLE = 16;
+
+  /**
+   * The file offset of the frame index offset in the header.
+   */
+  public static final int HEADER_OFFSET_FRAME_INDEX = 24;
+
+  /**
+   * The size of the header, in bytes.
+   */
+  public static final int HEADER_SIZE = 32;
+
+  /**
+   * The offset of the source index from the start of a frame.
+   */
+  public static final int FRAME_OFFSET_SOURCE = 0;
+
+  /**
+   * The offset of the timestamp from the start of a frame.
+   */
+  public static final int FRAME_OFFSET_TIMESTAMP = 4;
+
+  /**
+   * The offset of the number of samples from the start of a frame.
+   */
+  public static final int FRAME_OFFSET_NUMBER_SAMPLES = 12;
+
+  /**
+   * The offset of the first sample from the start of a frame.
+   */
+  public static final int FRAME_OFFSET_SAMPLES = 16;
+
+  /**
+   * The size of a sample, in bytes.
+   */
+  public static final int SAMPLE_SIZE = 4;
+
+  /**
+   * The size of a frame index entry, in bytes.
+   */
+  public static final int FRAME_INDEX_ENTRY_SIZE = 8;
+
+  /**
+   * The character set for source names.
+   */
+  public static final Charset SOURCE_NAME_CHARSET = Charset.forName("UTF-8");
+
+  /**
+   * The maximum number of bytes in an encoded source name.
+   */
+  public static final int SOURCE_NAME_LENGTH_MAX = 0xffff;
+
+  /**
+   * Not to be instantiated.
+   */
+  private BinarySampledDataSequenceFormat() {
+  }
+}
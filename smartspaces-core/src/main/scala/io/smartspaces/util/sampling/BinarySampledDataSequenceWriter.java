@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.sampling;
+
+import io.smartspaces.SmartSpacesException;
+import io.smartspaces.util.io.FileSupport;
+import io.smartspaces.util.io.FileSupportImpl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A writer which streams frames of a sampled data sequence to a file in the
+ * binary sequence format.
+ *
+ * <p>
+ * Frames are written as they come in, only the frame offsets and the source
+ * names are kept in memory. The file is not complete until the writer is
+ * closed.
+ *
+ * <p>
+ * This class is not thread safe.
+ *
+ * @see BinarySampledDataSequenceFormat
+ *
+ * @author Keith M. Hughes
+ */
+public class BinarySampledDataSequenceWriter implements Closeable {
+
+  /**
+   * The size of the write buffer, in bytes.
+   */
+  public static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The initial size of the frame offset index.
+   */
+  private static final int FRAME_OFFSETS_SIZE_INITIAL = 1024;
+
+  /**
+   * The file being written.
+   */
+  private final File dataFile;
+
+  /**
+   * The channel for the file being written.
+   */
+  private final FileChannel channel;
+
+  /**
+   * The buffer for data on its way to the file.
+   */
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+  /**
+   * The source names, in the order they were first seen.
+   */
+  private final List<String> sources = new ArrayList<>();
+
+  /**
+   * The index of each source in the source table.
+   */
+  private final Map<String, Integer> sourceIndexes = new HashMap<>();
+
+  /**
+   * The file offset of each frame.
+   */
+  private long[] frameOffsets = new long[FRAME_OFFSETS_SIZE_INITIAL];
+
+  /**
+   * The number of frames written so far.
+   */
+  private int numberFrames;
+
+  /**
+   * The file position of the next byte to be written.
+   */
+  private long position;
+
+  /**
+   * {@code true} if the writer has been closed.
+   */
+  private boolean closed;
+
+  /**
+   * The file support to use.
+   */
+  private final FileSupport fileSupport = FileSupportImpl.INSTANCE;
+
+  /**
+   * Construct a new writer.
+   *
+   * <p>
+   * Any existing contents of the file are lost.
+   *
+   * @param dataFile
+   *          the file to write
+   */
+  public BinarySampledDataSequenceWriter(File dataFile) {
+    this.dataFile = dataFile;
+
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(dataFile, "rw");
+      file.setLength(0);
+      channel = file.getChannel();
+
+      // The header is rewritten with the final counts and offsets on close.
+      writeHeader(0, 0, 0, 0);
+      position = BinarySampledDataSequenceFormat.HEADER_SIZE;
+    } catch (IOException e) {
+      fileSupport.close(file, false);
+      throw SmartSpacesException.newFormattedException(e,
+          "Could not open sampled data sequence file %s for writing",
+          dataFile.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Write a new frame.
+   *
+   * @param source
+   *          the name of the source of the samples
+   * @param samples
+   *          the samples
+   * @param timestamp
+   *          the timestamp of the frame
+   */
+  public void writeFrame(String source, int[] samples, long timestamp) {
+    writeFrame(source, samples, 0, samples.length, timestamp);
+  }
+
+  /**
+   * Write a new frame.
+   *
+   * @param source
+   *          the name of the source of the samples
+   * @param samples
+   *          the array holding the samples
+   * @param offset
+   *          the index of the first sample in the array
+   * @param numberSamples
+   *          the number of samples in the frame
+   * @param timestamp
+   *          the timestamp of the frame
+   */
+  public void writeFrame(String source, int[] samples, int offset, int numberSamples,
+      long timestamp) {
+    if (closed) {
+      throw new SmartSpacesException("The sampled data sequence writer has been closed");
+    }
+
+    if (numberFrames == frameOffsets.length) {
+      frameOffsets = Arrays.copyOf(frameOffsets, frameOffsets.length * 2);
+    }
+    frameOffsets[numberFrames++] = position;
+
+    try {
+      ensureSpace(BinarySampledDataSequenceFormat.FRAME_OFFSET_SAMPLES);
+      buffer.putInt(getSourceIndex(source));
+      buffer.putLong(timestamp);
+      buffer.putInt(numberSamples);
+
+      int end = offset + numberSamples;
+      for (int i = offset; i < end; i++) {
+        ensureSpace(BinarySampledDataSequenceFormat.SAMPLE_SIZE);
+        buffer.putInt(samples[i]);
+      }
+    } catch (IOException e) {
+      throw SmartSpacesException.newFormattedException(e,
+          "Could not write frame to sampled data sequence file %s", dataFile.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Get the number of frames written so far.
+   *
+   * @return the number of frames
+   */
+  public int getNumberFrames() {
+    return numberFrames;
+  }
+
+  /**
+   * Write the source table and frame index and close the file.
+   *
+   * <p>
+   * Can be called more than once.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      long sourceTableOffset = position;
+      for (String source : sources) {
+        byte[] name = source.getBytes(BinarySampledDataSequenceFormat.SOURCE_NAME_CHARSET);
+        ensureSpace(2);
+        buffer.putShort((short) name.length);
+        for (byte b : name) {
+          ensureSpace(1);
+          buffer.put(b);
+        }
+      }
+
+      long frameIndexOffset = position;
+      for (int i = 0; i < numberFrames; i++) {
+        ensureSpace(BinarySampledDataSequenceFormat.FRAME_INDEX_ENTRY_SIZE);
+        buffer.putLong(frameOffsets[i]);
+      }
+      flush();
+
+      writeHeader(numberFrames, sources.size(), sourceTableOffset, frameIndexOffset);
+
+      channel.force(false);
+    } catch (IOException e) {
+      throw SmartSpacesException.newFormattedException(e,
+          "Could not complete sampled data sequence file %s", dataFile.getAbsolutePath());
+    } finally {
+      fileSupport.close(channel, false);
+    }
+  }
+
+  /**
+   * Get the index of a source in the source table, adding it if it is new.
+   *
+   * @param source
+   *          the name of the source
+   *
+   * @return the index of the source
+   */
+  private int getSourceIndex(String source) {
+    Integer index = sourceIndexes.get(source);
+    if (index == null) {
+      int nameLength = source.getBytes(BinarySampledDataSequenceFormat.SOURCE_NAME_CHARSET).length;
+      if (nameLength > BinarySampledDataSequenceFormat.SOURCE_NAME_LENGTH_MAX) {
+        throw SmartSpacesException.newFormattedException(
+            "Sampled data source name is too long: %s", source);
+      }
+
+      index = sources.size();
+      sources.add(source);
+      sourceIndexes.put(source, index);
+    }
+
+    return index;
+  }
+
+  /**
+   * Write the header at the start of the file.
+   *
+   * @param numberFrames
+   *          the number of frames in the file
+   * @param numberSources
+   *          the number of sources in the file
+   * @param sourceTableOffset
+   *          the file offset of the source table
+   * @param frameIndexOffset
+   *          the file offset of the frame index
+   *
+   * @throws IOException
+   *           the header could not be written
+   */
+  private void writeHeader(int numberFrames, int numberSources, long sourceTableOffset,
+      long frameIndexOffset) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(BinarySampledDataSequenceFormat.HEADER_SIZE);
+    header.putInt(BinarySampledDataSequenceFormat.MAGIC_NUMBER);
+    header.putInt(BinarySampledDataSequenceFormat.FORMAT_VERSION);
+    header.putInt(numberFrames);
+    header.putInt(numberSources);
+    header.putLong(sourceTableOffset);
+    header.putLong(frameIndexOffset);
+    header.flip();
+
+    long headerPosition = 0;
+    while (header.hasRemaining()) {
+      headerPosition += channel.write(header, headerPosition);
+    }
+  }
+
+  /**
+   * Make sure there is room in the write buffer, flushing it if necessary.
+   *
+   * @param size
+   *          the number of bytes needed
+   *
+   * @throws IOException
+   *           the buffer could not be flushed
+   */
+  private void ensureSpace(int size) throws IOException {
+    if (buffer.remaining() < size) {
+      flush();
+    }
+
+    position += size;
+  }
+
+  /**
+   * Write the contents of the write buffer to the file.
+   *
+   * @throws IOException
+   *           the buffer could not be written
+   */
+  private void flush() throws IOException {
+    buffer.flip();
+    long writePosition = position - buffer.remaining();
+    while (buffer.hasRemaining()) {
+      writePosition += channel.write(buffer, writePosition);
+    }
+    buffer.clear();
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.sampling;
+
+import io.smartspaces.SmartSpacesException;
+import io.smartspaces.util.io.FileSupport;
+import io.smartspaces.util.io.FileSupportImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A sampled data sequence read directly from a memory-mapped file in the
+ * binary sequence format.
+ *
+ * <p>
+ * Only the source names are read when the sequence is opened. Frame data is
+ * read from the mapped file as it is asked for, and no objects are created per
+ * frame, so very long sequences can be played without loading them into the
+ * heap.
+ *
+ * <p>
+ * Files are limited to 2GB, the most that can be mapped in one piece.
+ *
+ * @see BinarySampledDataSequenceFormat
+ *
+ * @author Keith M. Hughes
+ */
+public class MappedBinarySampledDataSequence implements SampledDataFrameSequence {
+
+  /**
+   * The mapped file data.
+   */
+  private final ByteBuffer data;
+
+  /**
+   * The number of frames in the sequence.
+   */
+  private final int numberFrames;
+
+  /**
+   * The source names, indexed by their position in the source table.
+   */
+  private final String[] sources;
+
+  /**
+   * The file offset of the frame index.
+   */
+  private final int frameIndexOffset;
+
+  /**
+   * Open a sequence file.
+   *
+   * @param dataFile
+   *          the file to open
+   */
+  public MappedBinarySampledDataSequence(File dataFile) {
+    FileSupport fileSupport = FileSupportImpl.INSTANCE;
+
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(dataFile, "r");
+      FileChannel channel = file.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw SmartSpacesException.newFormattedException(
+            "Sampled data sequence file %s is too large to map", dataFile.getAbsolutePath());
+      }
+
+      // The mapping stays valid after the channel is closed.
+      data = channel.map(MapMode.READ_ONLY, 0, size);
+    } catch (IOException e) {
+      throw SmartSpacesException.newFormattedException(e,
+          "Could not open sampled data sequence file %s", dataFile.getAbsolutePath());
+    } finally {
+      fileSupport.close(file, false);
+    }
+
+    try {
+      if (data.getInt(0) != BinarySampledDataSequenceFormat.MAGIC_NUMBER) {
+        throw SmartSpacesException.newFormattedException(
+            "File %s is not a sampled data sequence file", dataFile.getAbsolutePath());
+      }
+      int version = data.getInt(4);
+      if (version != BinarySampledDataSequenceFormat.FORMAT_VERSION) {
+        throw SmartSpacesException.newFormattedException(
+            "Sampled data sequence file %s has unsupported version %d",
+            dataFile.getAbsolutePath(), version);
+      }
+
+      numberFrames = data.getInt(BinarySampledDataSequenceFormat.HEADER_OFFSET_NUMBER_FRAMES);
+      int numberSources =
+          data.getInt(BinarySampledDataSequenceFormat.HEADER_OFFSET_NUMBER_SOURCES);
+      long sourceTableOffset =
+          data.getLong(BinarySampledDataSequenceFormat.HEADER_OFFSET_SOURCE_TABLE);
+      frameIndexOffset =
+          (int) data.getLong(BinarySampledDataSequenceFormat.HEADER_OFFSET_FRAME_INDEX);
+      if (frameIndexOffset + (long) numberFrames
+          * BinarySampledDataSequenceFormat.FRAME_INDEX_ENTRY_SIZE > data.capacity()) {
+        throw SmartSpacesException.newFormattedException(
+            "Sampled data sequence file %s is incomplete", dataFile.getAbsolutePath());
+      }
+
+      sources = readSourceTable((int) sourceTableOffset, numberSources);
+    } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+      throw SmartSpacesException.newFormattedException(e,
+          "Sampled data sequence file %s is corrupt", dataFile.getAbsolutePath());
+    }
+  }
+
+  @Override
+  public int getNumberFrames() {
+    return numberFrames;
+  }
+
+  @Override
+  public String getFrameSource(int frame) {
+    return sources[data.getInt(getFrameOffset(frame)
+        + BinarySampledDataSequenceFormat.FRAME_OFFSET_SOURCE)];
+  }
+
+  @Override
+  public long getFrameTimestamp(int frame) {
+    return data.getLong(getFrameOffset(frame)
+        + BinarySampledDataSequenceFormat.FRAME_OFFSET_TIMESTAMP);
+  }
+
+  @Override
+  public int getFrameNumberSamples(int frame) {
+    return data.getInt(getFrameOffset(frame)
+        + BinarySampledDataSequenceFormat.FRAME_OFFSET_NUMBER_SAMPLES);
+  }
+
+  @Override
+  public void copyFrameSamples(int frame, int[] samples) {
+    int frameOffset = getFrameOffset(frame);
+    int numberSamples =
+        data.getInt(frameOffset + BinarySampledDataSequenceFormat.FRAME_OFFSET_NUMBER_SAMPLES);
+
+    int sampleOffset = frameOffset + BinarySampledDataSequenceFormat.FRAME_OFFSET_SAMPLES;
+    for (int i = 0; i < numberSamples; i++) {
+      samples[i] = data.getInt(sampleOffset);
+      sampleOffset += BinarySampledDataSequenceFormat.SAMPLE_SIZE;
+    }
+  }
+
+  /**
+   * Get the number of distinct sources in the sequence.
+   *
+   * @return the number of sources
+   */
+  public int getNumberSources() {
+    return sources.length;
+  }
+
+  /**
+   * Copy the entire sequence into an in-memory sequence.
+   *
+   * @param sequence
+   *          the sequence to copy the frames into, it is reset first
+   */
+  public void copyTo(SampledDataSequence sequence) {
+    sequence.reset();
+
+    for (int frame = 0; frame < numberFrames; frame++) {
+      int[] samples = new int[getFrameNumberSamples(frame)];
+      copyFrameSamples(frame, samples);
+      sequence.addFrame(getFrameSource(frame), samples, getFrameTimestamp(frame));
+    }
+  }
+
+  /**
+   * Get the file offset of a frame.
+   *
+   * @param frame
+   *          the index of the frame
+   *
+   * @return the file offset of the frame
+   */
+  private int getFrameOffset(int frame) {
+    if (frame < 0 || frame >= numberFrames) {
+      throw new IndexOutOfBoundsException("Frame " + frame + " not in sequence of "
+          + numberFrames + " frames");
+    }
+
+    return (int) data.getLong(frameIndexOffset + frame
+        * BinarySampledDataSequenceFormat.FRAME_INDEX_ENTRY_SIZE);
+  }
+
+  /**
+   * Read the source table.
+   *
+   * @param sourceTableOffset
+   *          the file offset of the source table
+   * @param numberSources
+   *          the number of sources in the table
+   *
+   * @return the source names
+   */
+  private String[] readSourceTable(int sourceTableOffset, int numberSources) {
+    String[] names = new String[numberSources];
+
+    ByteBuffer table = data.duplicate();
+    table.position(sourceTableOffset);
+    for (int i = 0; i < numberSources; i++) {
+      byte[] name = new byte[table.getShort() & 0xffff];
+      table.get(name);
+      names[i] = new String(name, BinarySampledDataSequenceFormat.SOURCE_NAME_CHARSET);
+    }
+
+    return names;
+  }
+}
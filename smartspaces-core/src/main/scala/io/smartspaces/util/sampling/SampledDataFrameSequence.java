@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.sampling;
+
+/**
+ * Random access to the frames of a sampled data sequence.
+ *
+ * <p>
+ * Frames are accessed by index, which allows implementations to hand out frame
+ * data without creating an object per frame.
+ *
+ * @author Keith M. Hughes
+ */
+public interface SampledDataFrameSequence {
+
+  /**
+   * Get the number of frames in the sequence.
+   *
+   * @return the number of frames
+   */
+  int getNumberFrames();
+
+  /**
+   * Get the source of a frame.
+   *
+   * @param frame
+   *          the index of the frame
+   *
+   * @return the name of the source of the frame
+   */
+  String getFrameSource(int frame);
+
+  /**
+   * Get the timestamp of a frame.
+   *
+   * @param frame
+   *          the index of the frame
+   *
+   * @return the timestamp of the frame
+   */
+  long getFrameTimestamp(int frame);
+
+  /**
+   * Get the number of samples in a frame.
+   *
+   * @param frame
+   *          the index of the frame
+   *
+   * @return the number of samples in the frame
+   */
+  int getFrameNumberSamples(int frame);
+
+  /**
+   * Copy the samples of a frame into an array.
+   *
+   * @param frame
+   *          the index of the frame
+   * @param samples
+   *          the array to copy the samples into, must be at least
+   *          {@link #getFrameNumberSamples(int)} long
+   */
+  void copyFrameSamples(int frame, int[] samples);
+}
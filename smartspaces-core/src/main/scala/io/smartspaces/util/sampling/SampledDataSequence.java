@@ -25,7 +25,7 @@ import java.util.List;
  *
  * @author Keith M. Hughes
  */
-public class SampledDataSequence {
+public class SampledDataSequence implements SampledDataFrameSequence {
 
   /**
    * The samples which have been captured indexed by their source.
@@ -62,6 +62,32 @@ public class SampledDataSequence {
     return frames;
   }
 
+  @Override
+  public int getNumberFrames() {
+    return frames.size();
+  }
+
+  @Override
+  public String getFrameSource(int frame) {
+    return frames.get(frame).getSource();
+  }
+
+  @Override
+  public long getFrameTimestamp(int frame) {
+    return frames.get(frame).getTimestamp();
+  }
+
+  @Override
+  public int getFrameNumberSamples(int frame) {
+    return frames.get(frame).getSamples().length;
+  }
+
+  @Override
+  public void copyFrameSamples(int frame, int[] samples) {
+    int[] frameSamples = frames.get(frame).getSamples();
+    System.arraycopy(frameSamples, 0, samples, 0, frameSamples.length);
+  }
+
   /**
    * A frame of sampled data. The frame consists of a name for the source of
    * data and a collection of sample values.
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.sampling;
+
+import java.io.File;
+
+/**
+ * Convert sampled data sequence files between the JSON and binary formats.
+ *
+ * @author Keith M. Hughes
+ */
+public class SampledDataSequenceFileConverter {
+
+  /**
+   * The loader for JSON sequence files.
+   */
+  private final SampledDataSequenceLoader jsonLoader = new JsonFileSampledDataSequenceLoader();
+
+  /**
+   * Convert a JSON sequence file into a binary sequence file.
+   *
+   * @param jsonFile
+   *          the JSON file to read
+   * @param binaryFile
+   *          the binary file to write
+   *
+   * @return the number of frames converted
+   */
+  public int convertJsonToBinary(File jsonFile, File binaryFile) {
+    SampledDataSequence sequence = new SampledDataSequence();
+    jsonLoader.load(jsonFile, sequence);
+
+    return writeBinary(sequence, binaryFile);
+  }
+
+  /**
+   * Convert a binary sequence file into a JSON sequence file.
+   *
+   * @param binaryFile
+   *          the binary file to read
+   * @param jsonFile
+   *          the JSON file to write
+   *
+   * @return the number of frames converted
+   */
+  public int convertBinaryToJson(File binaryFile, File jsonFile) {
+    SampledDataSequence sequence = new SampledDataSequence();
+    new MappedBinarySampledDataSequence(binaryFile).copyTo(sequence);
+
+    jsonLoader.save(jsonFile, sequence);
+
+    return sequence.getNumberFrames();
+  }
+
+  /**
+   * Write out a sequence as a binary sequence file.
+   *
+   * @param sequence
+   *          the sequence to write
+   * @param binaryFile
+   *          the binary file to write
+   *
+   * @return the number of frames written
+   */
+  public int writeBinary(SampledDataFrameSequence sequence, File binaryFile) {
+    BinarySampledDataSequenceWriter writer = new BinarySampledDataSequenceWriter(binaryFile);
+    try {
+      int[] samples = new int[0];
+      int numberFrames = sequence.getNumberFrames();
+      for (int frame = 0; frame < numberFrames; frame++) {
+        int numberSamples = sequence.getFrameNumberSamples(frame);
+        if (samples.length < numberSamples) {
+          samples = new int[numberSamples];
+        }
+        sequence.copyFrameSamples(frame, samples);
+
+        writer.writeFrame(sequence.getFrameSource(frame), samples, 0, numberSamples,
+            sequence.getFrameTimestamp(frame));
+      }
+
+      return numberFrames;
+    } finally {
+      writer.close();
+    }
+  }
+}
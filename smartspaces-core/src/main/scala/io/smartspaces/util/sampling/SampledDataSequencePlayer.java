@@ -18,18 +18,25 @@
 package io.smartspaces.util.sampling;
 
 import io.smartspaces.resource.managed.ManagedResource;
-import io.smartspaces.util.sampling.SampledDataSequence.SampledDataFrame;
 
 import org.apache.commons.logging.Log;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Send a sampled data sequence out as a series of frames.
  *
+ * <p>
+ * By default every frame is sent in a newly allocated samples array which the
+ * sender can keep. If sample arrays are reused, each source gets a single array
+ * which is refilled for every frame from that source, so playback of a
+ * {@link MappedBinarySampledDataSequence} allocates nothing per frame. The
+ * sender must then not hold on to the array after it has been handed the
+ * samples.
+ *
  * @author Keith M. Hughes
  */
 public class SampledDataSequencePlayer implements ManagedResource {
@@ -37,7 +44,7 @@ public class SampledDataSequencePlayer implements ManagedResource {
   /**
    * The data to be sent.
    */
-  private final SampledDataSequence sequence;
+  private final SampledDataFrameSequence sequence;
 
   /**
    * The object which will actually transmit the samples.
@@ -54,13 +61,25 @@ public class SampledDataSequencePlayer implements ManagedResource {
    */
   private Future<?> runningFuture;
 
+  /**
+   * {@code true} if each source reuses a single samples array for all its
+   * frames.
+   */
+  private final boolean reuseSamples;
+
+  /**
+   * The reusable samples arrays, indexed by source name.
+   */
+  private final Map<String, int[]> reusableSamples = new HashMap<>();
+
   /**
    * The logger to use.
    */
   private final Log log;
 
   /**
-   * Construct a sampled data sequence player.
+   * Construct a sampled data sequence player which sends every frame in a new
+   * samples array.
    *
    * @param sequence
    *          the sequence to play
@@ -71,11 +90,33 @@ public class SampledDataSequencePlayer implements ManagedResource {
    * @param log
    *          the logger to use
    */
-  public SampledDataSequencePlayer(SampledDataSequence sequence,
+  public SampledDataSequencePlayer(SampledDataFrameSequence sequence,
       SampledDataSequenceSampleSender sender, ScheduledExecutorService executorService, Log log) {
+    this(sequence, sender, executorService, false, log);
+  }
+
+  /**
+   * Construct a sampled data sequence player.
+   *
+   * @param sequence
+   *          the sequence to play
+   * @param sender
+   *          the player of the data
+   * @param executorService
+   *          the executor service to get a thread for the player
+   * @param reuseSamples
+   *          {@code true} if each source should reuse a single samples array
+   *          for all its frames
+   * @param log
+   *          the logger to use
+   */
+  public SampledDataSequencePlayer(SampledDataFrameSequence sequence,
+      SampledDataSequenceSampleSender sender, ScheduledExecutorService executorService,
+      boolean reuseSamples, Log log) {
     this.sequence = sequence;
     this.sender = sender;
     this.executorService = executorService;
+    this.reuseSamples = reuseSamples;
     this.log = log;
   }
 
@@ -96,32 +137,56 @@ public class SampledDataSequencePlayer implements ManagedResource {
    *           the player has been interrupted
    */
   private void play() throws InterruptedException {
-
-    List<SampledDataFrame> frames = sequence.getFrames();
-    int maxFrames = frames.size() - 1;
+    int numberFrames = sequence.getNumberFrames();
+    if (numberFrames == 0) {
+      log.warn("No sampled data to play back");
+      return;
+    }
 
     while (!Thread.interrupted()) {
       log.info("Starting playback of sampled data");
-      SampledDataFrame currentFrame = frames.get(0);
-      int[] samples = currentFrame.getSamples();
-      sender.sendSampledData(currentFrame.getSource(), Arrays.copyOf(samples, samples.length));
-      SampledDataFrame previousFrame;
-      for (int frame = 1; !Thread.interrupted() && frame < maxFrames; frame++) {
-        previousFrame = currentFrame;
-        currentFrame = frames.get(frame);
-
-        long delay = currentFrame.getTimestamp() - previousFrame.getTimestamp();
+      sendFrame(0);
+      long previousTimestamp = sequence.getFrameTimestamp(0);
+      for (int frame = 1; !Thread.interrupted() && frame < numberFrames; frame++) {
+        long currentTimestamp = sequence.getFrameTimestamp(frame);
+
+        long delay = currentTimestamp - previousTimestamp;
         if (delay > 0) {
           Thread.sleep(delay);
         }
 
-        samples = currentFrame.getSamples();
-        sender.sendSampledData(currentFrame.getSource(), Arrays.copyOf(samples, samples.length));
+        sendFrame(frame);
+        previousTimestamp = currentTimestamp;
       }
       log.info("Ending playback of sampled data");
     }
   }
 
+  /**
+   * Send a frame to the sender.
+   *
+   * @param frame
+   *          the index of the frame to send
+   */
+  private void sendFrame(int frame) {
+    String source = sequence.getFrameSource(frame);
+    int numberSamples = sequence.getFrameNumberSamples(frame);
+
+    int[] samples;
+    if (reuseSamples) {
+      samples = reusableSamples.get(source);
+      if (samples == null || samples.length != numberSamples) {
+        samples = new int[numberSamples];
+        reusableSamples.put(source, samples);
+      }
+    } else {
+      samples = new int[numberSamples];
+    }
+
+    sequence.copyFrameSamples(frame, samples);
+    sender.sendSampledData(source, samples);
+  }
+
   /**
    * Start playing the data.
    *
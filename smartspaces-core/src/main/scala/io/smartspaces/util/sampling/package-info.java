@@ -25,6 +25,10 @@
  * <p>
  * This package provides classes for capturing data, saving it and loading it, calculating background values for the samples.
  *
+ * <p>
+ * Sequences can be stored as JSON or in a compact binary format which can be memory-mapped for playback
+ * without loading the sequence into memory.
+ *
  * @author Keith M. Hughes
  */
 package io.smartspaces.util.sampling;
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.smartspaces.evaluation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.scope.ManagedScope;
+import io.smartspaces.system.SmartSpacesEnvironment;
+
+/**
+ * Test for the {@link LocalExecutionContext}.
+ *
+ * @author Keith M. Hughes
+ */
+public class LocalExecutionContextTest {
+
+  private StandardExecutionContext root;
+
+  @Before
+  public void setUp() {
+    root = new StandardExecutionContext(mock(ManagedScope.class),
+        mock(SmartSpacesEnvironment.class), mock(ExtendedLog.class));
+    root.setValue("rootValue", "root");
+  }
+
+  /**
+   * Local values hide parent values and misses go to the parent.
+   */
+  @Test
+  public void testValueLookup() {
+    LocalExecutionContext context = new LocalExecutionContext(root);
+    assertNull(context.getValueLocally("rootValue"));
+    assertEquals("root", context.getValue("rootValue"));
+
+    context.setValue("rootValue", "local");
+    assertEquals("local", context.getValue("rootValue"));
+    assertEquals("root", root.getValue("rootValue"));
+
+    assertEquals(root.getLog(), context.getLog());
+    assertEquals(root.getSpaceEnvironment(), context.getSpaceEnvironment());
+  }
+
+  /**
+   * Copying takes the values of local ancestors, nearer values winning, and
+   * stops at the first non-local ancestor.
+   */
+  @Test
+  public void testCopyValuesTo() {
+    LocalExecutionContext outer = new LocalExecutionContext(root);
+    outer.setValue("a", 1);
+    outer.setValue("b", 2);
+
+    LocalExecutionContext inner = (LocalExecutionContext) outer.push();
+    inner.setValue("b", 3);
+
+    LocalExecutionContext target = new LocalExecutionContext(root);
+    inner.copyValuesTo(target);
+
+    assertEquals(1, (int) target.getValueLocally("a"));
+    assertEquals(3, (int) target.getValueLocally("b"));
+    assertNull(target.getValueLocally("rootValue"));
+  }
+}
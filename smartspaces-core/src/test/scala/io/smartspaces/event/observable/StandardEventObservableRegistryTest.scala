@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License") you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.event.observable
+
+import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.scope.ManagedScope
+
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mock
+import org.mockito.Mockito
+import org.mockito.MockitoAnnotations
+import org.scalatest.junit.JUnitSuite
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Tests for the standard event observable registry.
+ *
+ * @author Keith M. Hughes
+ */
+class StandardEventObservableRegistryTest extends JUnitSuite {
+
+  @Mock var log: ExtendedLog = null
+
+  @Mock var scope: ManagedScope = null
+
+  var registry: StandardEventObservableRegistry = _
+
+  @Before def setup(): Unit = {
+    MockitoAnnotations.initMocks(this)
+
+    registry = new StandardEventObservableRegistry(log)
+  }
+
+  /**
+   * Observers waiting for a scoped observable are connected when it is
+   * created.
+   */
+  @Test def futureObserversScoped(): Unit = {
+    val captured = new ArrayBuffer[String]()
+    val observer = new BaseObserver[String] {
+      override def onNext(value: String): Unit = {
+        captured += value
+      }
+    }
+
+    registry.connectObserversWhenAvailable("foo", Some("bar"), scope, observer)
+    Assert.assertNull(registry.getObservable("foo", Some("bar")))
+
+    val subject: EventPublisherSubject[String] = registry.getObservable("foo", Some("bar"), newCreator)
+    Assert.assertTrue(subject.hasObservers)
+    Assert.assertSame(subject, registry.getObservable("foo.bar"))
+
+    subject.onNext("hello")
+
+    Assert.assertEquals(ArrayBuffer("hello"), captured)
+    Mockito.verify(scope).addResource(observer)
+  }
+
+  /**
+   * Concurrent creation of the same observable gives everyone the same one.
+   */
+  @Test def concurrentCreation(): Unit = {
+    val numberThreads = 8
+    val executor = Executors.newFixedThreadPool(numberThreads)
+    try {
+      val task = new Callable[EventPublisherSubject[String]] {
+        override def call(): EventPublisherSubject[String] = {
+          registry.getObservable("foo", Some("bar"), newCreator)
+        }
+      }
+      val futures = (1 to numberThreads).map(_ => executor.submit(task))
+      val subjects = futures.map(_.get(10, TimeUnit.SECONDS)).distinct
+
+      Assert.assertEquals(1, subjects.size)
+      Assert.assertSame(subjects.head, registry.getObservable("foo", Some("bar")))
+    } finally {
+      executor.shutdownNow()
+    }
+  }
+
+  /**
+   * Create an observable creator for string subjects.
+   */
+  private def newCreator: ObservableCreator[EventPublisherSubject[String]] = {
+    new ObservableCreator[EventPublisherSubject[String]]() {
+      override def newObservable(): EventPublisherSubject[String] = {
+        EventPublisherSubject.create(log)
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.monitor.expectation.time
+
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+
+/**
+ * Tests for the offline deadline queue.
+ *
+ * @author Keith M. Hughes
+ */
+class OfflineDeadlineQueueTest extends JUnitSuite {
+
+  val timeoutTime = 1000l
+
+  var queue: OfflineDeadlineQueue[TestItem] = _
+
+  @Before def setup(): Unit = {
+    queue = new OfflineDeadlineQueue[TestItem]
+  }
+
+  /**
+   * Test that only items whose deadlines have passed are handed back, in deadline order.
+   */
+  @Test def testPollExpired(): Unit = {
+    val item1 = new TestItem(0)
+    val item2 = new TestItem(500)
+    val item3 = new TestItem(5000)
+    queue.arm(item3)
+    queue.arm(item2)
+    queue.arm(item1)
+
+    Assert.assertEquals(Some(timeoutTime + 1), queue.nextDeadline)
+    Assert.assertTrue(queue.pollExpired(timeoutTime).isEmpty)
+    Assert.assertEquals(Seq(item1, item2), queue.pollExpired(2000))
+    Assert.assertTrue(queue.pollExpired(2000).isEmpty)
+    Assert.assertEquals(Some(5000 + timeoutTime + 1), queue.nextDeadline)
+  }
+
+  /**
+   * Test that a later deadline is picked up when the item is armed again after its old
+   * deadline, and that an earlier deadline replaces a later one.
+   */
+  @Test def testRearm(): Unit = {
+    val item = new TestItem(0)
+    queue.arm(item)
+
+    // A later deadline leaves the queue alone.
+    item.stateUpdated(800)
+    queue.arm(item)
+    Assert.assertEquals(Some(timeoutTime + 1), queue.nextDeadline)
+
+    Assert.assertEquals(Seq(item), queue.pollExpired(timeoutTime + 1))
+    Assert.assertFalse(item.checkIfOfflineTransition(timeoutTime + 1))
+    queue.arm(item)
+    Assert.assertEquals(Some(800 + timeoutTime + 1), queue.nextDeadline)
+
+    // An earlier deadline replaces the queued one.
+    item.setLastUpdateTime(100)
+    queue.arm(item)
+    Assert.assertEquals(Seq(item), queue.pollExpired(100 + timeoutTime + 1))
+    Assert.assertTrue(queue.pollExpired(800 + timeoutTime + 1).isEmpty)
+
+    // Offline items have no deadline.
+    Assert.assertTrue(item.checkIfOfflineTransition(100 + timeoutTime + 1))
+    queue.arm(item)
+    Assert.assertEquals(None, queue.nextDeadline)
+  }
+
+  class TestItem(creation: Long) extends StandardHeartbeatMonitorable {
+
+    override def stateUpdateTimeLimit = Some(timeoutTime)
+
+    val timestampItemCreation = creation
+
+    override def emitOnlineEvent(timestamp: Long): Unit = {}
+
+    override def emitOfflineEvent(timestamp: Long): Unit = {}
+  }
+}
@@ -305,6 +305,48 @@ class StandardHeartbeatMonitorableTest extends JUnitSuite {
     Assert.assertEquals(1, model.onlineEventCount)
   }
 
+  /**
+   * Test that the offline deadline follows updates and goes away once offline has been signaled.
+   */
+  @Test def testOfflineDeadline(): Unit = {
+    val timeoutTime = 1000l
+
+    val model = new TestObject(None, Option(timeoutTime), modelCreationTime)
+    Assert.assertEquals(Some(modelCreationTime + timeoutTime + 1), model.timestampOfflineDeadline)
+
+    val lastUpdate = modelCreationTime + 500
+    model.stateUpdated(lastUpdate)
+    val deadline = lastUpdate + timeoutTime + 1
+    Assert.assertEquals(Some(deadline), model.timestampOfflineDeadline)
+
+    Assert.assertFalse(model.checkIfOfflineTransition(deadline - 1))
+    Assert.assertTrue(model.checkIfOfflineTransition(deadline))
+    Assert.assertEquals(None, model.timestampOfflineDeadline)
+
+    Assert.assertEquals(None, new TestObject(None, None, modelCreationTime).timestampOfflineDeadline)
+  }
+
+  /**
+   * Test that an item with a state update limit which only gets heartbeats has an offline
+   * deadline from its time of birth.
+   */
+  @Test def testOfflineDeadlineHeartbeatOnly(): Unit = {
+    val timeoutTime = 1000l
+
+    val model = new TestObject(Option(timeoutTime), Option(timeoutTime), modelCreationTime)
+
+    model.updateHeartbeat(modelCreationTime + 500)
+    Assert.assertTrue(model.online)
+
+    val deadline = modelCreationTime + timeoutTime + 1
+    Assert.assertEquals(Some(deadline), model.timestampOfflineDeadline)
+
+    Assert.assertFalse(model.checkIfOfflineTransition(deadline - 1))
+    Assert.assertTrue(model.checkIfOfflineTransition(deadline))
+    Assert.assertFalse(model.online)
+    Assert.assertEquals(1, model.offlineEventCount)
+  }
+
   class TestObject(heartbeat: Option[Long], state: Option[Long], creation: Long) extends StandardHeartbeatMonitorable { 
     var onlineEventCount = 0
     var offlineEventCount = 0
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2017 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.monitor.expectation.time;
+
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+import org.mockito.Mock
+import org.mockito.Mockito
+import org.mockito.MockitoAnnotations
+import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.time.provider.SettableTimeProvider
+import org.mockito.Matchers
+
+/**
+ * Tests for the timer wheel heartbeat expectation monitor.
+ *
+ * @author Keith M. Hughes
+ */
+class TimerWheelHeartbeatExpectationMonitorTest extends JUnitSuite {
+
+  @Mock var log: ExtendedLog = _
+  @Mock var listener: HeartbeatExpectationMonitorListener[String] = _
+
+  var timeProvider: SettableTimeProvider = _
+
+  var monitor: TimerWheelHeartbeatExpectationMonitor[String] = _
+
+  @Before def setup(): Unit = {
+    MockitoAnnotations.initMocks(this)
+
+    timeProvider = new SettableTimeProvider
+    monitor = new TimerWheelHeartbeatExpectationMonitor(1000, listener, timeProvider, log, 10)
+  }
+
+  /**
+   * Test a scan happening inside the heartbeat window.
+   */
+  @Test def scanInsideTimeWindow(): Unit = {
+    timeProvider.setCurrentTime(1000)
+    monitor.addMonitoredWatcher("id", "foo", 200)
+
+    timeProvider.setCurrentTime(1150)
+    monitor.scan
+
+    Mockito.verify(listener, Mockito.never).onHeartbeatLost(Matchers.any[HeartbeatMonitorWatcher[String]], Matchers.any[Long], Matchers.any[Long])
+    Assert.assertEquals(0, monitor.getNumberWatchersVisited)
+  }
+
+  /**
+   * Test a scan happening outside the heartbeat window twice. Should only be
+   * signalled once.
+   */
+  @Test def scanOutsideTimeWindowTwice(): Unit = {
+    val timeBegin = 1000L
+    val timeLost = 1210L
+
+    timeProvider.setCurrentTime(timeBegin)
+    monitor.addMonitoredWatcher("id", "foo", 200)
+    val watcher = monitor.getMonitoredWatcher("id").get
+
+    timeProvider.setCurrentTime(timeLost)
+    monitor.scan
+    timeProvider.setCurrentTime(timeLost * 2)
+    monitor.scan
+
+    Mockito.verify(listener, Mockito.times(1)).onHeartbeatLost(watcher, timeLost, timeLost - timeBegin)
+    Assert.assertEquals(0, monitor.getNumberScheduledWatchers)
+  }
+
+  /**
+   * Test that heartbeats keep a watcher alive across many scans, and that it is
+   * lost once the heartbeats stop.
+   */
+  @Test def heartbeatsKeepAlive(): Unit = {
+    timeProvider.setCurrentTime(1000)
+    monitor.addMonitoredWatcher("id", "foo", 200)
+    val watcher = monitor.getMonitoredWatcher("id").get
+
+    var time = 1000L
+    while (time < 5000) {
+      time += 50
+      timeProvider.setCurrentTime(time)
+      monitor.updateHeartbeat("id", time)
+      monitor.scan
+    }
+
+    Mockito.verify(listener, Mockito.never).onHeartbeatLost(Matchers.any[HeartbeatMonitorWatcher[String]], Matchers.any[Long], Matchers.any[Long])
+
+    // Rescheduled about once per expectation time, not once per scan.
+    Assert.assertTrue(monitor.getNumberWatchersVisited < 40)
+
+    val timeLost = time + 210
+    timeProvider.setCurrentTime(timeLost)
+    monitor.scan
+
+    Mockito.verify(listener, Mockito.times(1)).onHeartbeatLost(watcher, timeLost, 210)
+  }
+
+  /**
+   * Test a lost heartbeat and then a regain, which should put the watcher back
+   * in the wheel.
+   */
+  @Test def heartbeatLostThenRegained(): Unit = {
+    val timeBegin = 1000L
+    val timeWindow = 200L
+    val timeLost = timeBegin + timeWindow + 10
+
+    timeProvider.setCurrentTime(timeBegin)
+    monitor.addMonitoredWatcher("id", "foo", timeWindow)
+    val watcher = monitor.getMonitoredWatcher("id").get
+
+    timeProvider.setCurrentTime(timeLost)
+    monitor.scan
+
+    Mockito.verify(listener, Mockito.never).onHeartbeatRegained(Matchers.any[HeartbeatMonitorWatcher[String]], Matchers.any[Long])
+    Mockito.verify(listener, Mockito.times(1)).onHeartbeatLost(watcher, timeLost, timeLost - timeBegin)
+
+    val nextHeartbeat = timeLost + timeWindow / 2
+    monitor.updateHeartbeat("id", nextHeartbeat)
+
+    Mockito.verify(listener, Mockito.times(1)).onHeartbeatRegained(watcher, nextHeartbeat)
+    Assert.assertEquals(1, monitor.getNumberScheduledWatchers)
+
+    val timeLostAgain = nextHeartbeat + timeWindow + 10
+    timeProvider.setCurrentTime(timeLostAgain)
+    monitor.scan
+
+    Mockito.verify(listener, Mockito.times(1)).onHeartbeatLost(watcher, timeLostAgain, timeWindow + 10)
+  }
+
+  /**
+   * Test that only the watchers with expired deadlines are reported when the
+   * deadlines are spread across all levels of the wheel.
+   */
+  @Test def onlyExpiredWatchersLost(): Unit = {
+    timeProvider.setCurrentTime(0)
+
+    val intervals = Array(5L, 700L, 45000L, 3000000L, 500000000L)
+    intervals.foreach { (interval) => monitor.addMonitoredWatcher(interval.toString, "foo", interval) }
+
+    intervals.foreach { (interval) =>
+      timeProvider.setCurrentTime(interval)
+      monitor.scan
+      Mockito.verify(listener, Mockito.never).onHeartbeatLost(monitor.getMonitoredWatcher(interval.toString).get, interval, interval)
+
+      // Anywhere within the next tick.
+      val timeLost = interval + 10
+      timeProvider.setCurrentTime(timeLost)
+      monitor.scan
+      Mockito.verify(listener, Mockito.times(1)).onHeartbeatLost(monitor.getMonitoredWatcher(interval.toString).get, timeLost, timeLost)
+    }
+
+    Mockito.verify(listener, Mockito.times(intervals.length)).onHeartbeatLost(Matchers.any[HeartbeatMonitorWatcher[String]], Matchers.any[Long], Matchers.any[Long])
+  }
+
+  /**
+   * Test that a removed watcher is never reported.
+   */
+  @Test def removedWatcherNotLost(): Unit = {
+    timeProvider.setCurrentTime(1000)
+    monitor.addMonitoredWatcher("id", "foo", 200)
+    monitor.removeWatcher("id")
+
+    timeProvider.setCurrentTime(2000)
+    monitor.scan
+
+    Mockito.verify(listener, Mockito.never).onHeartbeatLost(Matchers.any[HeartbeatMonitorWatcher[String]], Matchers.any[Long], Matchers.any[Long])
+    Assert.assertEquals(None, monitor.getMonitoredWatcher("id"))
+    Assert.assertEquals(0, monitor.getNumberScheduledWatchers)
+  }
+}
@@ -26,6 +26,9 @@ import io.smartspaces.resource.NamedResource
 import org.junit.{Assert, Before, Test}
 import org.mockito.{Matchers, Mockito}
 import java.lang.{Iterable => JIterable}
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 import scala.collection.mutable.ArrayBuffer
 import scala.collection.JavaConverters._
@@ -72,13 +75,15 @@ class StandardManagedResourcesTest extends JUnitSuite {
   /**
     * Test that a broken startup works.
     *
-    * This test contains non-dependency nodes only.
+    * This test contains non-dependency nodes only, so they are all started at
+    * the same time. The third resource may or may not have been started before
+    * the failure, but if it was started it must be shut down.
     */
   @Test def testBrokenStartup(): Unit = {
 
     val resource1 = Mockito.mock(classOf[ManagedResource])
     val resource2 = Mockito.mock(classOf[ManagedResource])
-    val resource3 = Mockito.mock(classOf[ManagedResource])
+    val resource3 = new TestCountingManagedResource
 
     val e = new Error()
     Mockito.doThrow(e).when(resource2).startup()
@@ -100,8 +105,69 @@ class StandardManagedResourcesTest extends JUnitSuite {
     Mockito.verify(resource1, Mockito.times(1)).shutdown()
     Mockito.verify(resource2, Mockito.times(1)).startup()
     Mockito.verify(resource2, Mockito.never()).shutdown()
-    Mockito.verify(resource3, Mockito.never()).startup()
-    Mockito.verify(resource3, Mockito.never()).shutdown()
+    Assert.assertTrue(resource3.startups.get() <= 1)
+    Assert.assertEquals(resource3.startups.get(), resource3.shutdowns.get())
+  }
+
+  /**
+    * Test that a failure in a dependency level shuts down the earlier levels
+    * and never starts the later ones.
+    */
+  @Test def testBrokenStartupDependencies(): Unit = {
+    val startupList = ArrayBuffer[String]()
+    val shutdownList = ArrayBuffer[String]()
+
+    val resourceA = new TestNameDependencyManagedResource("a", List("b"), startupList, shutdownList)
+    val resourceB = new TestNameDependencyManagedResource("b", List("c"), startupList, shutdownList) {
+      override def startup(): Unit = {
+        throw new Error()
+      }
+    }
+    val resourceC = new TestNameDependencyManagedResource("c", List(), startupList, shutdownList)
+
+    resources.addResource(resourceA)
+    resources.addResource(resourceB)
+    resources.addResource(resourceC)
+
+    try {
+      resources.startupResources()
+
+      fail()
+    } catch {
+      case e: Exception =>
+        // Expected
+    }
+
+    Assert.assertEquals(List("c"), startupList.toList)
+    Assert.assertEquals(List("c"), shutdownList.toList)
+  }
+
+  /**
+    * Test that independent resources start up at the same time.
+    */
+  @Test def testParallelStartup(): Unit = {
+    val numberResources = 4
+    val barrier = new CyclicBarrier(numberResources)
+    val startupList = ArrayBuffer[String]()
+    val shutdownList = ArrayBuffer[String]()
+
+    for (i <- 1 to numberResources) {
+      resources.addResource(new TestNameDependencyManagedResource("r" + i, List(), startupList, shutdownList) {
+        override def startup(): Unit = {
+          // Only completes if all resources are starting at once.
+          barrier.await(10, TimeUnit.SECONDS)
+          super.startup()
+        }
+      })
+    }
+    resources.addResource(new TestNameDependencyManagedResource("last", List("r1", "r2", "r3", "r4"), startupList, shutdownList))
+
+    resources.startupResources()
+    resources.shutdownResources()
+
+    Assert.assertEquals(numberResources + 1, startupList.size)
+    Assert.assertEquals("last", startupList.last)
+    Assert.assertEquals("last", shutdownList.head)
   }
 
   /**
@@ -169,6 +235,21 @@ class StandardManagedResourcesTest extends JUnitSuite {
   }
 
 
+  class TestCountingManagedResource extends ManagedResource {
+
+    val startups = new AtomicInteger()
+
+    val shutdowns = new AtomicInteger()
+
+    override def startup(): Unit = {
+      startups.incrementAndGet()
+    }
+
+    override def shutdown(): Unit = {
+      shutdowns.incrementAndGet()
+    }
+  }
+
   class TestNameDependencyManagedResource(
     name: String,
     dependencies: Iterable[String],
@@ -180,11 +261,15 @@ class StandardManagedResourcesTest extends JUnitSuite {
     override def getName(): String = name
 
     override def startup(): Unit = {
-      startupList += name
+      startupList.synchronized {
+        startupList += name
+      }
     }
 
     override def shutdown(): Unit = {
-      shutdownList += name
+      shutdownList.synchronized {
+        shutdownList += name
+      }
     }
 
     override def toString(): String = s"Test managed resource ${name}"
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.util.concurrency.DefaultScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link ExecutorSequentialTaskQueue}.
+ *
+ * @author Keith M. Hughes
+ */
+public class ExecutorSequentialTaskQueueTest {
+
+  private ScheduledExecutorService executorService;
+
+  private ExtendedLog log;
+
+  @Before
+  public void setup() {
+    executorService = new DefaultScheduledExecutorService();
+
+    log = Mockito.mock(ExtendedLog.class);
+  }
+
+  @After
+  public void cleanup() {
+    executorService.shutdown();
+  }
+
+  /**
+   * Test that tasks added from many threads to many queues each run in the
+   * order they were added to their queue, and never at the same time.
+   */
+  @Test
+  public void testOrder() throws Exception {
+    int numberQueues = 20;
+    final int numberTasks = 1000;
+
+    final CountDownLatch doneLatch = new CountDownLatch(numberQueues * numberTasks);
+    final AtomicInteger overlaps = new AtomicInteger();
+    List<ExecutorSequentialTaskQueue> queues = new ArrayList<>();
+    List<List<Integer>> results = new ArrayList<>();
+    for (int q = 0; q < numberQueues; q++) {
+      ExecutorSequentialTaskQueue queue = new ExecutorSequentialTaskQueue(executorService, 16, log);
+      queue.startup();
+      queues.add(queue);
+      results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+    }
+
+    for (int q = 0; q < numberQueues; q++) {
+      final ExecutorSequentialTaskQueue queue = queues.get(q);
+      final List<Integer> result = results.get(q);
+      final AtomicInteger running = new AtomicInteger();
+      executorService.execute(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < numberTasks; i++) {
+            final int value = i;
+            queue.addTask(new Runnable() {
+              @Override
+              public void run() {
+                if (running.incrementAndGet() != 1) {
+                  overlaps.incrementAndGet();
+                }
+                result.add(value);
+                running.decrementAndGet();
+                doneLatch.countDown();
+              }
+            });
+          }
+        }
+      });
+    }
+
+    assertTrue(doneLatch.await(10, TimeUnit.SECONDS));
+    assertEquals(0, overlaps.get());
+    for (List<Integer> result : results) {
+      assertEquals(numberTasks, result.size());
+      for (int i = 0; i < numberTasks; i++) {
+        assertEquals(i, result.get(i).intValue());
+      }
+    }
+  }
+
+  /**
+   * Test that idle queues give nothing to the executor and that tasks added
+   * before startup are run once started.
+   */
+  @Test
+  public void testIdle() throws Exception {
+    Executor executor = Mockito.mock(Executor.class);
+
+    for (int i = 0; i < 1000; i++) {
+      new ExecutorSequentialTaskQueue(executor, 16, log).startup();
+    }
+    Mockito.verifyZeroInteractions(executor);
+
+    ExecutorSequentialTaskQueue queue = new ExecutorSequentialTaskQueue(executorService, 16, log);
+    final CountDownLatch latch = new CountDownLatch(1);
+    queue.addTask(new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    });
+    assertEquals(1, queue.getNumberWaitingTasks());
+
+    queue.startup();
+    assertTrue(latch.await(2, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Test that a failing task is logged and the tasks after it still run.
+   */
+  @Test
+  public void testTaskError() throws Exception {
+    ExecutorSequentialTaskQueue queue = new ExecutorSequentialTaskQueue(executorService, 16, log);
+    queue.startup();
+
+    final RuntimeException error = new RuntimeException();
+    queue.addTask(new Runnable() {
+      @Override
+      public void run() {
+        throw error;
+      }
+    });
+    final CountDownLatch latch = new CountDownLatch(1);
+    queue.addTask(new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    });
+
+    assertTrue(latch.await(2, TimeUnit.SECONDS));
+    Mockito.verify(log).error(Matchers.anyString(), Matchers.eq(error));
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.smartspaces.util.concurrency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for {@link DefaultScheduledExecutorService}.
+ *
+ * @author Keith M. Hughes
+ */
+public class DefaultScheduledExecutorServiceTest {
+
+  /**
+   * The period for the overdue run tests, in milliseconds.
+   */
+  private static final long OVERDUE_PERIOD = 200;
+
+  private DefaultScheduledExecutorService executorService;
+
+  @After
+  public void cleanup() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Test that scheduled tasks run in the blocking lane, so a slow task does not
+   * hold up the next timer even with a single timer thread.
+   */
+  @Test
+  public void testTimerHandOff() throws Exception {
+    ExecutorServiceConfiguration configuration = new ExecutorServiceConfiguration();
+    configuration.setTimerThreads(1);
+    executorService = new DefaultScheduledExecutorService(configuration);
+
+    final CountDownLatch slowLatch = new CountDownLatch(1);
+    final AtomicReference<String> threadName = new AtomicReference<>();
+    executorService.schedule(new Runnable() {
+      @Override
+      public void run() {
+        threadName.set(Thread.currentThread().getName());
+        try {
+          slowLatch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          // Done
+        }
+      }
+    }, 0, TimeUnit.MILLISECONDS);
+
+    ScheduledFuture<String> fast = executorService.schedule(new Callable<String>() {
+      @Override
+      public String call() {
+        return "done";
+      }
+    }, 50, TimeUnit.MILLISECONDS);
+
+    assertEquals("done", fast.get(2, TimeUnit.SECONDS));
+    assertTrue(threadName.get()
+        .startsWith("smartspaces-" + DefaultScheduledExecutorService.LANE_NAME_BLOCKING));
+    slowLatch.countDown();
+
+    ExecutorLaneMetrics timerMetrics = executorService.getTimerLaneMetrics();
+    assertEquals(2, timerMetrics.getScheduledRunCount());
+  }
+
+  /**
+   * Test that a full blocking lane rejects tasks when told to.
+   */
+  @Test
+  public void testReject() throws Exception {
+    ExecutorServiceConfiguration configuration = new ExecutorServiceConfiguration();
+    configuration.setBlockingThreadsMax(1);
+    configuration.setRejectionPolicy(ExecutorRejectionPolicy.REJECT);
+    executorService = new DefaultScheduledExecutorService(configuration);
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    executorService.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          // Done
+        }
+      }
+    });
+
+    try {
+      executorService.execute(new Runnable() {
+        @Override
+        public void run() {
+        }
+      });
+      fail();
+    } catch (RejectedExecutionException e) {
+      // Expected
+    }
+    latch.countDown();
+
+    ExecutorLaneMetrics metrics = executorService.getBlockingLaneMetrics();
+    assertEquals(2, metrics.getSubmittedTaskCount());
+    assertEquals(1, metrics.getSaturatedTaskCount());
+  }
+
+  /**
+   * Test that a full lane runs tasks on the submitting thread when told to.
+   */
+  @Test
+  public void testCallerRuns() throws Exception {
+    ExecutorServiceConfiguration configuration = new ExecutorServiceConfiguration();
+    configuration.setCpuThreads(1);
+    configuration.setCpuQueueCapacity(1);
+    configuration.setRejectionPolicy(ExecutorRejectionPolicy.CALLER_RUNS);
+    executorService = new DefaultScheduledExecutorService(configuration);
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    Runnable blocker = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          // Done
+        }
+      }
+    };
+    executorService.getCpuExecutorService().execute(blocker);
+    executorService.getCpuExecutorService().execute(blocker);
+
+    final AtomicReference<Thread> runThread = new AtomicReference<>();
+    executorService.getCpuExecutorService().execute(new Runnable() {
+      @Override
+      public void run() {
+        runThread.set(Thread.currentThread());
+      }
+    });
+    assertEquals(Thread.currentThread(), runThread.get());
+    latch.countDown();
+
+    ExecutorLaneMetrics metrics = executorService.getCpuLaneMetrics();
+    assertEquals(1, metrics.getSaturatedTaskCount());
+  }
+
+  /**
+   * Test that fixed rate periods which come due during a long run are run
+   * late, straight after it.
+   */
+  @Test
+  public void testFixedRateOverdue() throws Exception {
+    executorService = new DefaultScheduledExecutorService();
+
+    CountDownLatch firstRunLatch = new CountDownLatch(1);
+    CountDownLatch runLatch = new CountDownLatch(3);
+    ScheduledFuture<?> future = scheduleSlowFirstRun(firstRunLatch, runLatch);
+    assertTrue(firstRunLatch.await(5, TimeUnit.SECONDS));
+
+    // The periods due during the first run happen well within a period.
+    assertTrue(runLatch.await(OVERDUE_PERIOD / 2, TimeUnit.MILLISECONDS));
+    future.cancel(true);
+
+    assertEquals(0, executorService.getTimerLaneMetrics().getSkippedScheduledRunCount());
+  }
+
+  /**
+   * Test that fixed rate periods which come due during a long run are skipped
+   * when the executor is configured to skip them.
+   */
+  @Test
+  public void testFixedRateSkipOverdue() throws Exception {
+    ExecutorServiceConfiguration configuration = new ExecutorServiceConfiguration();
+    configuration.setProperty(ExecutorServiceConfiguration.CONFIGURATION_NAME_SKIP_OVERDUE_RUNS,
+        "true");
+    executorService = new DefaultScheduledExecutorService(configuration);
+
+    CountDownLatch firstRunLatch = new CountDownLatch(1);
+    CountDownLatch runLatch = new CountDownLatch(3);
+    ScheduledFuture<?> future = scheduleSlowFirstRun(firstRunLatch, runLatch);
+    assertTrue(firstRunLatch.await(5, TimeUnit.SECONDS));
+
+    assertFalse(runLatch.await(OVERDUE_PERIOD / 2, TimeUnit.MILLISECONDS));
+    future.cancel(true);
+
+    assertTrue(executorService.getTimerLaneMetrics().getSkippedScheduledRunCount() >= 2);
+  }
+
+  /**
+   * Test that fixed rate tasks run until cancelled, and stop when they throw.
+   */
+  @Test
+  public void testFixedRate() throws Exception {
+    executorService = new DefaultScheduledExecutorService();
+
+    final CountDownLatch runLatch = new CountDownLatch(3);
+    ScheduledFuture<?> future = executorService.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        runLatch.countDown();
+      }
+    }, 0, 10, TimeUnit.MILLISECONDS);
+    assertTrue(runLatch.await(2, TimeUnit.SECONDS));
+    assertTrue(future.cancel(true));
+    assertTrue(future.isCancelled());
+
+    final AtomicInteger failingRuns = new AtomicInteger();
+    ScheduledFuture<?> failing = executorService.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        failingRuns.incrementAndGet();
+        throw new RuntimeException();
+      }
+    }, 0, 10, TimeUnit.MILLISECONDS);
+    try {
+      failing.get(2, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      // Expected
+    }
+    Thread.sleep(100);
+    assertEquals(1, failingRuns.get());
+    assertFalse(failing.isCancelled());
+  }
+
+  /**
+   * Schedule a fixed rate task whose first run lasts until two more periods
+   * have come due.
+   *
+   * @param firstRunLatch
+   *          counted down when the first run is done
+   * @param runLatch
+   *          counted down by every run
+   *
+   * @return the future for the task
+   */
+  private ScheduledFuture<?> scheduleSlowFirstRun(final CountDownLatch firstRunLatch,
+      final CountDownLatch runLatch) {
+    final ExecutorLaneMetrics timerMetrics = executorService.getTimerLaneMetrics();
+    final AtomicInteger runs = new AtomicInteger();
+    return executorService.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        if (runs.incrementAndGet() == 1) {
+          long end = System.currentTimeMillis() + 5000;
+          while (timerMetrics.getScheduledRunCount() < 3 && System.currentTimeMillis() < end) {
+            try {
+              Thread.sleep(10);
+            } catch (InterruptedException e) {
+              return;
+            }
+          }
+        }
+
+        runLatch.countDown();
+        firstRunLatch.countDown();
+      }
+    }, 0, OVERDUE_PERIOD, TimeUnit.MILLISECONDS);
+  }
+}
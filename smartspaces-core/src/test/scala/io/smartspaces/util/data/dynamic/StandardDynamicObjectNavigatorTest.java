@@ -17,6 +17,8 @@
 package io.smartspaces.util.data.dynamic;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.common.collect.Lists;
@@ -270,4 +272,90 @@ public class StandardDynamicObjectNavigatorTest {
       // Expected
     }
   }
+
+  /**
+   * Make sure the unboxed accessors give values, defaults, and errors.
+   */
+  @Test
+  public void testPrimitiveValues() {
+    Map<String, Object> root = new HashMap<>();
+    root.put("integer", 1);
+    root.put("long", 12345678901L);
+    root.put("double", 1.5);
+    root.put("boolean", true);
+    root.put("string", "foo");
+
+    StandardDynamicObjectNavigator nav = new StandardDynamicObjectNavigator(root);
+
+    assertEquals(1, nav.getIntegerValue("integer", 2));
+    assertEquals(2, nav.getIntegerValue("missing", 2));
+    assertEquals(12345678901L, nav.getLongValue("long", 0));
+    assertEquals(1L, nav.getRequiredLongValue("integer"));
+    assertEquals(7L, nav.getLongValue("missing", 7));
+    assertEquals(1.5, nav.getDoubleValue("double", 0), 0);
+    assertEquals(1.0, nav.getRequiredDoubleValue("integer"), 0);
+    assertEquals(2.5, nav.getDoubleValue("missing", 2.5), 0);
+    assertTrue(nav.getRequiredBooleanValue("boolean"));
+    assertFalse(nav.getBooleanValue("missing", false));
+
+    try {
+      nav.getRequiredDoubleValue("missing");
+      fail();
+    } catch (DynamicObjectSmartSpacesException e) {
+      // Expected
+    }
+
+    try {
+      nav.getDoubleValue("string", 0);
+      fail();
+    } catch (DynamicObjectSmartSpacesException e) {
+      // Expected
+    }
+  }
+
+  /**
+   * Make sure deep navigation works and a navigator can be reset onto a new
+   * object.
+   */
+  @Test
+  public void testDeepNavigationAndReset() {
+    int depth = 20;
+
+    Map<String, Object> root = new HashMap<>();
+    Map<String, Object> current = root;
+    for (int i = 0; i < depth; i++) {
+      Map<String, Object> child = new HashMap<>();
+      child.put("level", i);
+      current.put("child", child);
+      current = child;
+    }
+
+    StandardDynamicObjectNavigator nav = new StandardDynamicObjectNavigator(root);
+    for (int i = 0; i < depth; i++) {
+      nav.down("child");
+      assertEquals(i, nav.getRequiredIntegerValue("level"));
+    }
+    for (int i = depth - 2; i >= 0; i--) {
+      nav.up();
+      assertEquals(i, nav.getRequiredIntegerValue("level"));
+    }
+
+    nav.down("child");
+    nav.pushMark();
+    nav.down("child").down("child");
+    nav.top();
+    assertEquals(1, nav.getRequiredIntegerValue("level"));
+
+    Map<String, Object> other = new HashMap<>();
+    other.put("value", 42.0);
+    nav.reset(other);
+
+    assertEquals(42.0, nav.getRequiredDoubleValue("value"), 0);
+    try {
+      nav.up();
+      fail();
+    } catch (DynamicObjectSmartSpacesException e) {
+      // Expected
+    }
+  }
 }
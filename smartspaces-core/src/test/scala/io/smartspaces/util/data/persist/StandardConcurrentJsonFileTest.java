@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.data.persist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.smartspaces.util.io.FileSupportImpl;
+
+import com.google.common.collect.Maps;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests for the {@link StandardConcurrentJsonFile}.
+ *
+ * @author Keith M. Hughes
+ */
+public class StandardConcurrentJsonFileTest {
+
+  private File baseDirectory;
+
+  private File file;
+
+  @Before
+  public void setup() throws Exception {
+    baseDirectory = Files.createTempDirectory("jsonfile").toFile();
+    file = new File(baseDirectory, "state.json");
+  }
+
+  @After
+  public void cleanup() {
+    FileSupportImpl.INSTANCE.deleteDirectoryContents(baseDirectory);
+    baseDirectory.delete();
+  }
+
+  /**
+   * Test that saved changes are read back, both before and after compaction.
+   */
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    StandardConcurrentJsonFile jsonFile = new StandardConcurrentJsonFile(file);
+    jsonFile.setCompactionThreshold(3);
+    assertFalse(jsonFile.load());
+
+    jsonFile.put("a", 1);
+    jsonFile.save();
+    assertFalse(file.exists());
+    assertTrue(jsonFile.getLogFile().length() > 0);
+
+    jsonFile.put("b", "two");
+    jsonFile.save();
+    assertEquals(expected("a", 1, "b", "two"), load().getAll());
+
+    Map<String, Object> values = new HashMap<>();
+    values.put("a", 3);
+    values.put("c", true);
+    jsonFile.putAll(values);
+    jsonFile.save();
+
+    // Compacted into the snapshot.
+    assertTrue(file.exists());
+    assertEquals(0, jsonFile.getLogFile().length());
+    assertEquals(expected("a", 3, "b", "two", "c", true), load().getAll());
+
+    jsonFile.replaceAll(expected("d", 4));
+    jsonFile.save();
+    assertEquals(expected("d", 4), load().getAll());
+  }
+
+  /**
+   * Test that a record cut off by a crash is dropped, and that later records
+   * are still readable.
+   */
+  @Test
+  public void testDamagedLog() throws Exception {
+    StandardConcurrentJsonFile jsonFile = new StandardConcurrentJsonFile(file);
+    jsonFile.put("a", 1);
+    jsonFile.save();
+
+    try (FileOutputStream out = new FileOutputStream(jsonFile.getLogFile(), true)) {
+      out.write("{\"put\":{\"b\":".getBytes("UTF-8"));
+    }
+
+    StandardConcurrentJsonFile reloaded = load();
+    assertEquals(expected("a", 1), reloaded.getAll());
+
+    reloaded.put("c", 3);
+    reloaded.save();
+    assertEquals(expected("a", 1, "c", 3), load().getAll());
+  }
+
+  /**
+   * Test that a log left over from a crash after the snapshot was replaced is
+   * replayed without changing anything.
+   */
+  @Test
+  public void testLogReplayedOverSnapshot() throws Exception {
+    StandardConcurrentJsonFile jsonFile = new StandardConcurrentJsonFile(file);
+    jsonFile.put("a", 1);
+    jsonFile.put("a", 2);
+    jsonFile.save();
+    byte[] log = Files.readAllBytes(jsonFile.getLogFile().toPath());
+
+    jsonFile.setCompactionThreshold(1);
+    jsonFile.put("b", 3);
+    jsonFile.save();
+
+    Files.write(jsonFile.getLogFile().toPath(), log);
+    assertEquals(expected("a", 2, "b", 3), load().getAll());
+  }
+
+  /**
+   * Test that a file written by the old whole file save is read.
+   */
+  @Test
+  public void testSnapshotOnly() throws Exception {
+    FileSupportImpl.INSTANCE.writeFile(file, "{\"a\":1}");
+
+    StandardConcurrentJsonFile jsonFile = load();
+    assertEquals(expected("a", 1), jsonFile.getAll());
+  }
+
+  /**
+   * Test that concurrent group committed saves all make it to disk.
+   */
+  @Test
+  public void testGroupCommit() throws Exception {
+    final StandardConcurrentJsonFile jsonFile = new StandardConcurrentJsonFile(file);
+    jsonFile.setGroupCommitWindow(50);
+
+    int numberThreads = 10;
+    final CountDownLatch done = new CountDownLatch(numberThreads);
+    Map<String, Object> expected = new HashMap<>();
+    for (int i = 0; i < numberThreads; i++) {
+      final String key = "key" + i;
+      final int value = i;
+      expected.put(key, value);
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          jsonFile.put(key, value);
+          jsonFile.save();
+          done.countDown();
+        }
+      }).start();
+    }
+    done.await();
+
+    assertEquals(expected, load().getAll());
+  }
+
+  /**
+   * Load a new copy of the file.
+   *
+   * @return the loaded copy
+   */
+  private StandardConcurrentJsonFile load() {
+    StandardConcurrentJsonFile jsonFile = new StandardConcurrentJsonFile(file);
+    assertTrue(jsonFile.load());
+
+    return jsonFile;
+  }
+
+  /**
+   * Build an expected map.
+   *
+   * @param keysAndValues
+   *          alternating keys and values
+   *
+   * @return the map
+   */
+  private Map<String, Object> expected(Object... keysAndValues) {
+    Map<String, Object> map = Maps.newHashMap();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+    }
+
+    return map;
+  }
+}
@@ -17,10 +17,12 @@
 
 package io.smartspaces.util.graph;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Before;
@@ -106,6 +108,30 @@ public class DependencyResolverTest {
     assertComesAfter(ordering, "c-data", "d-data", "e-data", "f-data");
   }
 
+  /**
+   * a depends on b and c, c depends on d, b and d depend on nothing
+   *
+   * Levels are d and b first, then c, then a
+   */
+  @Test
+  public void testLevels() {
+    resolver.addNode("a", "a-data");
+    resolver.addNodeDependencies("a", "b", "c");
+    resolver.addNode("b", "b-data");
+    resolver.addNode("c", "c-data");
+    resolver.addNodeDependencies("c", "d");
+    resolver.addNode("d", "d-data");
+
+    resolver.resolve();
+
+    List<List<String>> levels = resolver.getDataLevels();
+    assertEquals(3, levels.size());
+    assertEquals(2, levels.get(0).size());
+    assertTrue(levels.get(0).containsAll(Arrays.asList("b-data", "d-data")));
+    assertEquals(Arrays.asList("c-data"), levels.get(1));
+    assertEquals(Arrays.asList("a-data"), levels.get(2));
+  }
+
   /**
    * a depends on b b depends on a
    */
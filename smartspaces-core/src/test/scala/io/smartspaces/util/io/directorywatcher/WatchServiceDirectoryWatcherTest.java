@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.io.directorywatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.smartspaces.logging.ExtendedLog;
+import io.smartspaces.system.SmartSpacesEnvironment;
+import io.smartspaces.util.io.FileSupportImpl;
+
+import com.google.common.collect.Sets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the watch service directory watchers.
+ *
+ * @author Keith M. Hughes
+ */
+public class WatchServiceDirectoryWatcherTest {
+
+  /**
+   * The settle time for the tests, in milliseconds.
+   */
+  private static final long SETTLE_TIME = 200;
+
+  /**
+   * How long to wait for an event, in milliseconds.
+   */
+  private static final long EVENT_WAIT = 10000;
+
+  private ScheduledExecutorService executorService;
+
+  private SmartSpacesEnvironment spaceEnvironment;
+
+  private File baseDirectory;
+
+  private BlockingQueue<String> events;
+
+  @Before
+  public void setup() throws Exception {
+    executorService = Executors.newScheduledThreadPool(2);
+
+    spaceEnvironment = Mockito.mock(SmartSpacesEnvironment.class);
+    Mockito.when(spaceEnvironment.getExecutorService()).thenReturn(executorService);
+    Mockito.when(spaceEnvironment.getLog()).thenReturn(Mockito.mock(ExtendedLog.class));
+
+    baseDirectory = Files.createTempDirectory("watcher").toFile();
+    events = new LinkedBlockingQueue<>();
+  }
+
+  @After
+  public void cleanup() {
+    executorService.shutdownNow();
+    FileSupportImpl.INSTANCE.deleteDirectoryContents(baseDirectory);
+    baseDirectory.delete();
+  }
+
+  /**
+   * Test that a file written in several pieces is reported as a single
+   * addition, and that modification and removal are reported.
+   */
+  @Test
+  public void testAddModifyRemove() throws Exception {
+    WatchServiceDirectoryWatcher watcher = newWatcher(baseDirectory);
+    watcher.startup(spaceEnvironment, 1, TimeUnit.SECONDS);
+
+    try {
+      File file = new File(baseDirectory, "foo");
+      try (FileOutputStream out = new FileOutputStream(file)) {
+        for (int i = 0; i < 5; i++) {
+          out.write(new byte[100]);
+          out.flush();
+          Thread.sleep(SETTLE_TIME / 4);
+        }
+      }
+
+      assertEquals("added " + file, events.poll(EVENT_WAIT, TimeUnit.MILLISECONDS));
+      assertNull(events.poll(SETTLE_TIME * 2, TimeUnit.MILLISECONDS));
+
+      assertTrue(file.setLastModified(file.lastModified() - 10000));
+      assertEquals("modified " + file, events.poll(EVENT_WAIT, TimeUnit.MILLISECONDS));
+
+      assertTrue(file.delete());
+      assertEquals("removed " + file, events.poll(EVENT_WAIT, TimeUnit.MILLISECONDS));
+    } finally {
+      watcher.shutdown();
+    }
+  }
+
+  /**
+   * Test that files which are in the directory before the watcher starts are
+   * reported as added.
+   */
+  @Test
+  public void testExistingFiles() throws Exception {
+    File file = new File(baseDirectory, "foo");
+    assertTrue(file.createNewFile());
+
+    WatchServiceDirectoryWatcher watcher = newWatcher(baseDirectory);
+    watcher.startup(spaceEnvironment, 1, TimeUnit.SECONDS);
+
+    try {
+      assertEquals("added " + file, events.poll(EVENT_WAIT, TimeUnit.MILLISECONDS));
+      assertNull(events.poll(SETTLE_TIME * 2, TimeUnit.MILLISECONDS));
+    } finally {
+      watcher.shutdown();
+    }
+  }
+
+  /**
+   * Test that a directory which does not exist when the watcher starts is
+   * watched once it appears.
+   */
+  @Test
+  public void testMissingDirectory() throws Exception {
+    File directory = new File(baseDirectory, "later");
+    WatchServiceDirectoryWatcher watcher = newWatcher(directory);
+    watcher.startup(spaceEnvironment, 100, TimeUnit.MILLISECONDS);
+
+    try {
+      assertTrue(directory.mkdir());
+      File file = new File(directory, "foo");
+      assertTrue(file.createNewFile());
+
+      assertEquals("added " + file, events.poll(EVENT_WAIT, TimeUnit.MILLISECONDS));
+    } finally {
+      watcher.shutdown();
+    }
+  }
+
+  /**
+   * Test that two watchers can watch the same directory, and that shutting one
+   * down leaves the other watching.
+   */
+  @Test
+  public void testSharedDirectory() throws Exception {
+    BlockingQueue<String> otherEvents = new LinkedBlockingQueue<>();
+    WatchServiceDirectoryWatcher watcher = newWatcher(baseDirectory);
+    WatchServiceDirectoryWatcher otherWatcher = newWatcher(baseDirectory, otherEvents);
+    watcher.startup(spaceEnvironment, 1, TimeUnit.SECONDS);
+    otherWatcher.startup(spaceEnvironment, 1, TimeUnit.SECONDS);
+
+    try {
+      File file = new File(baseDirectory, "foo");
+      assertTrue(file.createNewFile());
+
+      assertEquals("added " + file, events.poll(EVENT_WAIT, TimeUnit.MILLISECONDS));
+      assertEquals("added " + file, otherEvents.poll(EVENT_WAIT, TimeUnit.MILLISECONDS));
+
+      otherWatcher.shutdown();
+
+      File other = new File(baseDirectory, "bar");
+      assertTrue(other.createNewFile());
+
+      assertEquals("added " + other, events.poll(EVENT_WAIT, TimeUnit.MILLISECONDS));
+      assertNull(otherEvents.poll(SETTLE_TIME * 2, TimeUnit.MILLISECONDS));
+    } finally {
+      watcher.shutdown();
+      otherWatcher.shutdown();
+    }
+  }
+
+  /**
+   * Test that a burst of new files is reported as a single batch.
+   */
+  @Test
+  public void testBatch() throws Exception {
+    File existing = new File(baseDirectory, "existing");
+    assertTrue(existing.createNewFile());
+
+    final BlockingQueue<Set<File>> batches = new LinkedBlockingQueue<>();
+    WatchServiceBatchDirectoryWatcher watcher = new WatchServiceBatchDirectoryWatcher();
+    watcher.setSettleTime(SETTLE_TIME);
+    watcher.addDirectory(baseDirectory);
+    watcher.addBatchDirectoryWatcherListener(new BatchDirectoryWatcherListener() {
+      @Override
+      public void onFilesAdded(Set<File> files) {
+        batches.add(files);
+      }
+    });
+    assertEquals(Sets.newHashSet(existing),
+        watcher.startupWithScan(spaceEnvironment, 1, TimeUnit.SECONDS));
+
+    try {
+      Set<File> expected = Sets.newHashSet();
+      for (int i = 0; i < 20; i++) {
+        File file = new File(baseDirectory, "file" + i);
+        assertTrue(file.createNewFile());
+        expected.add(file);
+      }
+
+      assertEquals(expected, batches.poll(EVENT_WAIT, TimeUnit.MILLISECONDS));
+      assertNull(batches.poll(SETTLE_TIME * 2, TimeUnit.MILLISECONDS));
+    } finally {
+      watcher.shutdown();
+    }
+  }
+
+  /**
+   * Create a new watcher which records its events.
+   *
+   * @param directory
+   *          the directory to watch
+   *
+   * @return the watcher
+   */
+  private WatchServiceDirectoryWatcher newWatcher(File directory) {
+    return newWatcher(directory, events);
+  }
+
+  /**
+   * Create a new watcher which records its events in a given queue.
+   *
+   * @param directory
+   *          the directory to watch
+   * @param events
+   *          the queue for the events
+   *
+   * @return the watcher
+   */
+  private WatchServiceDirectoryWatcher newWatcher(File directory,
+      final BlockingQueue<String> events) {
+    WatchServiceDirectoryWatcher watcher = new WatchServiceDirectoryWatcher();
+    watcher.setSettleTime(SETTLE_TIME);
+    watcher.addDirectory(directory);
+    watcher.addDirectoryWatcherListener(new DirectoryWatcherListener() {
+      @Override
+      public void onFileAdded(File file) {
+        events.add("added " + file);
+      }
+
+      @Override
+      public void onFileModified(File file) {
+        events.add("modified " + file);
+      }
+
+      @Override
+      public void onFileRemoved(File file) {
+        events.add("removed " + file);
+      }
+    });
+
+    return watcher;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.messaging.mqtt
+
+import org.junit.Assert
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+
+/**
+ * Tests for the {@link MqttBrokerDescription}.
+ *
+ * @author Keith M. Hughes
+ */
+class MqttBrokerDescriptionTest extends JUnitSuite {
+
+  /**
+   * Test that descriptions which would give differently configured client pools
+   * are not equal.
+   */
+  @Test def testEqualityClientPoolSettings(): Unit = {
+    val plain = MqttBrokerDescription.parse("tcp://localhost:1883")
+    Assert.assertEquals(MqttBrokerDescription.parse("tcp://localhost:1883"), plain)
+    Assert.assertEquals(MqttBrokerDescription.parse("tcp://localhost:1883").hashCode, plain.hashCode)
+
+    val configured = MqttBrokerDescription.parse(
+      """tcp://localhost:1883@{"maxInFlight": 100, "publisherConnections": 4}""")
+    Assert.assertEquals(MqttBrokerDescription.parse(
+      """tcp://localhost:1883@{"publisherConnections": 4, "maxInFlight": 100}"""), configured)
+
+    Assert.assertNotEquals(plain, configured)
+    Assert.assertNotEquals(configured, MqttBrokerDescription.parse(
+      """tcp://localhost:1883@{"maxInFlight": 10, "publisherConnections": 4}"""))
+    Assert.assertNotEquals(configured, MqttBrokerDescription.parse(
+      """tcp://localhost:1883@{"maxInFlight": 100, "publisherConnections": 1}"""))
+  }
+
+  /**
+   * Test that descriptions which would give differently behaving connections
+   * are not equal.
+   */
+  @Test def testEqualityConnectionSettings(): Unit = {
+    val description =
+      """tcp://localhost:1883@{"cleanSession": false, "reconnectDelayInitial": 1000, """ +
+        """"reconnectDelayMax": 60000, "offlineBufferSize": 500}"""
+    val configured = MqttBrokerDescription.parse(description)
+    Assert.assertEquals(MqttBrokerDescription.parse(description), configured)
+    Assert.assertEquals(MqttBrokerDescription.parse(description).hashCode, configured.hashCode)
+
+    Assert.assertNotEquals(configured, MqttBrokerDescription.parse(
+      description.replace("\"cleanSession\": false", "\"cleanSession\": true")))
+    Assert.assertNotEquals(configured, MqttBrokerDescription.parse(
+      description.replace("1000", "2000")))
+    Assert.assertNotEquals(configured, MqttBrokerDescription.parse(
+      description.replace("60000", "30000")))
+    Assert.assertNotEquals(configured, MqttBrokerDescription.parse(
+      description.replace("500", "100")))
+    Assert.assertNotEquals(configured, MqttBrokerDescription.parse("tcp://localhost:1883"))
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2017 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.messaging.mqtt
+
+import java.util.Random
+
+import org.junit.Assert
+import org.junit.Test
+import org.scalatest.junit.JUnitSuite
+
+/**
+ * Tests for the MQTT reconnect backoff.
+ *
+ * @author Keith M. Hughes
+ */
+class MqttReconnectBackoffTest extends JUnitSuite {
+
+  /**
+   * Test that the delays stay between half and all of a ceiling which doubles
+   * up to the maximum, and start again after a reset.
+   */
+  @Test def testDelays(): Unit = {
+    val backoff = new MqttReconnectBackoff(100, 1000, new Random(1234))
+
+    val ceilings = List(100L, 200L, 400L, 800L, 1000L, 1000L)
+    ceilings.foreach { ceiling =>
+      val delay = backoff.nextDelay()
+      Assert.assertTrue(s"delay ${delay} for ceiling ${ceiling}", delay >= ceiling / 2 && delay <= ceiling)
+    }
+
+    // Many attempts do not overflow the ceiling.
+    (1 to 100).foreach((i) => backoff.nextDelay())
+    Assert.assertTrue(backoff.nextDelay() <= 1000)
+
+    backoff.reset()
+    Assert.assertTrue(backoff.nextDelay() <= 100)
+  }
+
+  /**
+   * Test that the delays are spread out rather than all the same.
+   */
+  @Test def testJitter(): Unit = {
+    val delays = (1 to 20).map { i =>
+      new MqttReconnectBackoff(1000, 1000, new Random(i)).nextDelay()
+    }
+
+    Assert.assertTrue(delays.distinct.size > 1)
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2018 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.messaging.mqtt
+
+import io.smartspaces.logging.ExtendedLog
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener
+import org.eclipse.paho.client.mqttv3.IMqttToken
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions
+import org.eclipse.paho.client.mqttv3.MqttException
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.mockito.ArgumentCaptor
+import org.mockito.Matchers
+import org.mockito.Mockito
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+import org.scalatest.junit.JUnitSuite
+
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Tests for the {@link PahoMqttClient} against a mocked Paho client.
+ *
+ * @author Keith M. Hughes
+ */
+class PahoMqttClientTest extends JUnitSuite {
+
+  var mqttAsyncClient: MqttAsyncClient = _
+
+  var executorService: ScheduledExecutorService = _
+
+  var log: ExtendedLog = _
+
+  /**
+   * {@code true} if the mocked Paho client says it is connected.
+   */
+  @volatile var connected = false
+
+  @Before def setup(): Unit = {
+    mqttAsyncClient = Mockito.mock(classOf[MqttAsyncClient])
+    executorService = Mockito.mock(classOf[ScheduledExecutorService])
+    log = Mockito.mock(classOf[ExtendedLog])
+
+    Mockito.when(mqttAsyncClient.isConnected()).thenAnswer(new Answer[Boolean] {
+      override def answer(invocation: InvocationOnMock): Boolean = connected
+    })
+    Mockito.when(mqttAsyncClient.connect(Matchers.any(classOf[MqttConnectOptions]), Matchers.any(),
+      Matchers.any(classOf[IMqttActionListener]))).thenAnswer(new Answer[IMqttToken] {
+      override def answer(invocation: InvocationOnMock): IMqttToken = {
+        connected = true
+        invocation.getArguments()(2).asInstanceOf[IMqttActionListener].onSuccess(newToken(false))
+
+        null
+      }
+    })
+  }
+
+  /**
+   * Test that the connect options from the broker description are used.
+   */
+  @Test def testConnectOptions(): Unit = {
+    startClient("""{"cleanSession": false, "maxInFlight": 50}""")
+
+    val options = ArgumentCaptor.forClass(classOf[MqttConnectOptions])
+    Mockito.verify(mqttAsyncClient).connect(options.capture(), Matchers.any(),
+      Matchers.any(classOf[IMqttActionListener]))
+    Assert.assertFalse(options.getValue.isCleanSession())
+    Assert.assertEquals(50, options.getValue.getMaxInflight())
+  }
+
+  /**
+   * Test that a full offline buffer drops its oldest message.
+   */
+  @Test def testOfflineBufferDropsOldest(): Unit = {
+    val (client, callback) = startClient("""{"offlineBufferSize": 2}""")
+
+    loseConnection(callback)
+    client.publish("/a", Array[Byte](1), 1, false, null)
+    client.publish("/b", Array[Byte](2), 1, false, null)
+    client.publish("/c", Array[Byte](3), 1, false, null)
+    verifyPublished(Mockito.never(), "/a")
+    verifyPublished(Mockito.never(), "/b")
+    verifyPublished(Mockito.never(), "/c")
+
+    connected = true
+    callback.connectComplete(true, "tcp://localhost:1883")
+
+    verifyPublished(Mockito.never(), "/a")
+    verifyPublished(Mockito.times(1), "/b")
+    verifyPublished(Mockito.times(1), "/c")
+  }
+
+  /**
+   * Test that the held messages are published in order once reconnected, and
+   * that later messages are published directly.
+   */
+  @Test def testOfflineBufferDrainsInOrder(): Unit = {
+    val (client, callback) = startClient("""{"offlineBufferSize": 10}""")
+
+    loseConnection(callback)
+    client.publish("/a", Array[Byte](1), 1, false, null)
+    client.publish("/b", Array[Byte](2), 1, false, null)
+    client.publish("/c", Array[Byte](3), 1, false, null)
+
+    connected = true
+    callback.connectComplete(true, "tcp://localhost:1883")
+
+    val inOrder = Mockito.inOrder(mqttAsyncClient)
+    List("/a", "/b", "/c").foreach { (topicName) =>
+      inOrder.verify(mqttAsyncClient).publish(Matchers.eq(topicName), Matchers.any(classOf[Array[Byte]]),
+        Matchers.anyInt(), Matchers.anyBoolean(), Matchers.any(), Matchers.any(classOf[IMqttActionListener]))
+    }
+
+    client.publish("/d", Array[Byte](4), 1, false, null)
+    verifyPublished(Mockito.times(1), "/d")
+  }
+
+  /**
+   * Test that draining the offline buffer is tried again later when the
+   * in-flight window is full, and picks up where it stopped.
+   */
+  @Test def testOfflineBufferRetriesWhenInFlightFull(): Unit = {
+    val (client, callback) = startClient("""{"offlineBufferSize": 10}""")
+
+    loseConnection(callback)
+    client.publish("/a", Array[Byte](1), 1, false, null)
+    client.publish("/b", Array[Byte](2), 1, false, null)
+
+    Mockito.when(mqttAsyncClient.publish(Matchers.eq("/a"), Matchers.any(classOf[Array[Byte]]),
+      Matchers.anyInt(), Matchers.anyBoolean(), Matchers.any(), Matchers.any(classOf[IMqttActionListener])))
+      .thenThrow(new MqttException(MqttException.REASON_CODE_MAX_INFLIGHT)).thenReturn(null)
+
+    connected = true
+    callback.connectComplete(true, "tcp://localhost:1883")
+
+    val retry = ArgumentCaptor.forClass(classOf[Runnable])
+    Mockito.verify(executorService).schedule(retry.capture(), Matchers.eq(client.OFFLINE_BUFFER_RETRY_DELAY),
+      Matchers.eq(TimeUnit.MILLISECONDS))
+    verifyPublished(Mockito.times(1), "/a")
+    verifyPublished(Mockito.never(), "/b")
+
+    // Messages published before the buffer drains must stay behind the held ones.
+    client.publish("/c", Array[Byte](3), 1, false, null)
+    verifyPublished(Mockito.never(), "/c")
+
+    retry.getValue.run()
+
+    verifyPublished(Mockito.times(2), "/a")
+    verifyPublished(Mockito.times(1), "/b")
+    verifyPublished(Mockito.times(1), "/c")
+  }
+
+  /**
+   * Test that all subscriptions are made again in one batch after the client
+   * reconnects itself to a broker which did not keep the session, and not when
+   * it did.
+   */
+  @Test def testResubscribeWithoutSession(): Unit = {
+    val (client, callback) = startClient("""{"autoreconnect": true, "reconnectDelayInitial": 10}""")
+
+    val listener = Mockito.mock(classOf[IMqttMessageListener])
+    client.subscribe(List("/a", "/b"), 1, listener)
+    verifySubscribed(Mockito.times(1))
+
+    reconnect(callback, false)
+
+    val topicNames = ArgumentCaptor.forClass(classOf[Array[String]])
+    Mockito.verify(mqttAsyncClient, Mockito.times(2)).subscribe(topicNames.capture(),
+      Matchers.any(classOf[Array[Int]]), Matchers.any(classOf[Array[IMqttMessageListener]]))
+    Assert.assertEquals(List("/a", "/b"), topicNames.getValue.toList)
+
+    reconnect(callback, true)
+
+    verifySubscribed(Mockito.times(2))
+  }
+
+  /**
+   * Start a client on the mocked Paho client.
+   *
+   * @param params
+   *          the parameters for the broker description
+   *
+   * @return the client and the callback it gave Paho
+   */
+  private def startClient(params: String): (PahoMqttClient, MqttCallbackExtended) = {
+    val client = new PahoMqttClient(MqttBrokerDescription.parse(s"tcp://localhost:1883@${params}"), "test",
+      executorService, log) {
+      override private[mqtt] def newMqttAsyncClient(persistence: MqttClientPersistence): MqttAsyncClient = {
+        mqttAsyncClient
+      }
+    }
+    client.startup()
+
+    val callback = ArgumentCaptor.forClass(classOf[MqttCallbackExtended])
+    Mockito.verify(mqttAsyncClient).setCallback(callback.capture())
+
+    (client, callback.getValue)
+  }
+
+  /**
+   * Have the mocked Paho client lose its connection.
+   *
+   * @param callback
+   *          the callback the client gave Paho
+   */
+  private def loseConnection(callback: MqttCallbackExtended): Unit = {
+    connected = false
+    callback.connectionLost(new Exception("Connection lost"))
+  }
+
+  /**
+   * Lose the connection and run the reconnect the client schedules.
+   *
+   * @param callback
+   *          the callback the client gave Paho
+   * @param sessionPresent
+   *          {@code true} if the broker kept the session
+   */
+  private def reconnect(callback: MqttCallbackExtended, sessionPresent: Boolean): Unit = {
+    Mockito.reset(executorService)
+    loseConnection(callback)
+
+    val attempt = ArgumentCaptor.forClass(classOf[Runnable])
+    Mockito.verify(executorService).schedule(attempt.capture(), Matchers.anyLong(),
+      Matchers.eq(TimeUnit.MILLISECONDS))
+
+    Mockito.doAnswer(new Answer[IMqttToken] {
+      override def answer(invocation: InvocationOnMock): IMqttToken = {
+        connected = true
+        invocation.getArguments()(2).asInstanceOf[IMqttActionListener].onSuccess(newToken(sessionPresent))
+
+        null
+      }
+    }).when(mqttAsyncClient).connect(Matchers.any(classOf[MqttConnectOptions]), Matchers.any(),
+      Matchers.any(classOf[IMqttActionListener]))
+    attempt.getValue.run()
+  }
+
+  /**
+   * Verify how many times a topic was published to.
+   */
+  private def verifyPublished(mode: org.mockito.verification.VerificationMode, topicName: String): Unit = {
+    Mockito.verify(mqttAsyncClient, mode).publish(Matchers.eq(topicName), Matchers.any(classOf[Array[Byte]]),
+      Matchers.anyInt(), Matchers.anyBoolean(), Matchers.any(), Matchers.any(classOf[IMqttActionListener]))
+  }
+
+  /**
+   * Verify how many batches of subscriptions were made.
+   */
+  private def verifySubscribed(mode: org.mockito.verification.VerificationMode): Unit = {
+    Mockito.verify(mqttAsyncClient, mode).subscribe(Matchers.any(classOf[Array[String]]),
+      Matchers.any(classOf[Array[Int]]), Matchers.any(classOf[Array[IMqttMessageListener]]))
+  }
+
+  /**
+   * Create a connect token.
+   *
+   * @param sessionPresent
+   *          {@code true} if the broker kept the session
+   */
+  private def newToken(sessionPresent: Boolean): IMqttToken = {
+    val token = Mockito.mock(classOf[IMqttToken])
+    Mockito.when(token.getSessionPresent()).thenReturn(sessionPresent)
+
+    token
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.messaging.mqtt
+
+import io.smartspaces.logging.ExtendedLog
+import io.smartspaces.messaging.codec.MessageEncoder
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener
+import org.junit.Assert
+import org.junit.Test
+import org.mockito.Matchers
+import org.mockito.Mockito
+import org.scalatest.junit.JUnitSuite
+
+import scala.collection.JavaConverters._
+
+/**
+ * Tests for the standard MQTT publishers.
+ *
+ * @author Keith M. Hughes
+ */
+class StandardMqttPublishersTest extends JUnitSuite {
+
+  /**
+   * Test parsing publisher descriptions with and without parameters.
+   */
+  @Test def testParseDescription(): Unit = {
+    val plain = MqttPublisherDescription.parse("/foo/bar")
+    Assert.assertEquals("/foo/bar", plain.topicName)
+    Assert.assertEquals(None, plain.qos)
+    Assert.assertEquals(None, plain.retain)
+
+    val withParams = MqttPublisherDescription.parse("/foo/bar@{\"qos\": 0, \"retain\": true}")
+    Assert.assertEquals("/foo/bar", withParams.topicName)
+    Assert.assertEquals(Some(0), withParams.qos)
+    Assert.assertEquals(Some(true), withParams.retain)
+  }
+
+  /**
+   * Test that each topic is published with its own quality of service and retain
+   * setting on the client the pool gives for the topic.
+   */
+  @Test def testPublishPerTopicSettings(): Unit = {
+    val log = Mockito.mock(classOf[ExtendedLog])
+
+    val encoder = Mockito.mock(classOf[MessageEncoder[String, Array[Byte]]])
+    val payload = Array[Byte](1, 2, 3)
+    Mockito.when(encoder.encode("hello")).thenReturn(payload)
+
+    val telemetryClient = Mockito.mock(classOf[PahoMqttClient])
+    val commandClient = Mockito.mock(classOf[PahoMqttClient])
+
+    val clientPool = Mockito.mock(classOf[MqttClientPool])
+    Mockito.when(clientPool.getClientForTopic("/telemetry")).thenReturn(telemetryClient)
+    Mockito.when(clientPool.getClientForTopic("/command")).thenReturn(commandClient)
+
+    val publishers = new StandardMqttPublishers[String](encoder, log)
+    publishers.addPublishers(clientPool,
+      Set("/telemetry@{\"qos\": 0}", "/command@{\"retain\": true}").asJava)
+
+    publishers.sendMessage("hello")
+
+    Mockito.verify(telemetryClient).publish(Matchers.eq("/telemetry"), Matchers.eq(payload),
+      Matchers.eq(0), Matchers.eq(false), Matchers.isNull(classOf[IMqttActionListener]))
+    Mockito.verify(commandClient).publish(Matchers.eq("/command"), Matchers.eq(payload),
+      Matchers.eq(MqttPublisherDescription.QOS_DEFAULT), Matchers.eq(true),
+      Matchers.notNull(classOf[IMqttActionListener]))
+  }
+}
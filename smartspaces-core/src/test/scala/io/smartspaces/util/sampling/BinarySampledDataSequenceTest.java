@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.util.sampling;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import io.smartspaces.SmartSpacesException;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the binary sampled data sequence writer and memory-mapped reader.
+ *
+ * @author Keith M. Hughes
+ */
+public class BinarySampledDataSequenceTest {
+
+  private File dataFile;
+
+  @Before
+  public void setup() throws IOException {
+    dataFile = File.createTempFile("sequence", ".sds");
+  }
+
+  @After
+  public void cleanup() {
+    dataFile.delete();
+  }
+
+  /**
+   * Frames written out are read back with their sources, timestamps and
+   * samples.
+   */
+  @Test
+  public void testWriteAndRead() {
+    BinarySampledDataSequenceWriter writer = new BinarySampledDataSequenceWriter(dataFile);
+    writer.writeFrame("a", new int[] { 1, 2, 3 }, 100);
+    writer.writeFrame("b", new int[] { 4, 5 }, 110);
+    writer.writeFrame("a", new int[] { 6, 7, 8 }, 120);
+    writer.close();
+
+    MappedBinarySampledDataSequence sequence = new MappedBinarySampledDataSequence(dataFile);
+    assertEquals(3, sequence.getNumberFrames());
+    assertEquals(2, sequence.getNumberSources());
+
+    assertFrame(sequence, 0, "a", 100, 1, 2, 3);
+    assertFrame(sequence, 1, "b", 110, 4, 5);
+    assertFrame(sequence, 2, "a", 120, 6, 7, 8);
+  }
+
+  /**
+   * A sequence larger than the writer's buffer is written and read correctly.
+   */
+  @Test
+  public void testLargeSequence() {
+    int numberFrames = 1000;
+    int numberSamples = 100;
+
+    BinarySampledDataSequenceWriter writer = new BinarySampledDataSequenceWriter(dataFile);
+    int[] samples = new int[numberSamples];
+    for (int frame = 0; frame < numberFrames; frame++) {
+      for (int i = 0; i < numberSamples; i++) {
+        samples[i] = frame * numberSamples + i;
+      }
+      writer.writeFrame("source" + (frame % 3), samples, frame);
+    }
+    writer.close();
+
+    MappedBinarySampledDataSequence sequence = new MappedBinarySampledDataSequence(dataFile);
+    assertEquals(numberFrames, sequence.getNumberFrames());
+    for (int frame = 0; frame < numberFrames; frame++) {
+      sequence.copyFrameSamples(frame, samples);
+      for (int i = 0; i < numberSamples; i++) {
+        assertEquals(frame * numberSamples + i, samples[i]);
+      }
+      assertEquals("source" + (frame % 3), sequence.getFrameSource(frame));
+      assertEquals(frame, sequence.getFrameTimestamp(frame));
+    }
+  }
+
+  /**
+   * A sequence saved in the binary format loads back into an in-memory
+   * sequence.
+   */
+  @Test
+  public void testLoaderRoundTrip() {
+    SampledDataSequence original = new SampledDataSequence();
+    original.addFrame("a", new int[] { 1, 2 }, 10);
+    original.addFrame("b", new int[] { 3 }, 20);
+
+    BinaryFileSampledDataSequenceLoader loader = new BinaryFileSampledDataSequenceLoader();
+    loader.save(dataFile, original);
+
+    SampledDataSequence loaded = new SampledDataSequence();
+    assertEquals(2, loader.load(dataFile, loaded));
+
+    assertFrame(loaded, 0, "a", 10, 1, 2);
+    assertFrame(loaded, 1, "b", 20, 3);
+  }
+
+  /**
+   * A file which isn't a sequence file is rejected.
+   */
+  @Test(expected = SmartSpacesException.class)
+  public void testNotSequenceFile() {
+    new MappedBinarySampledDataSequence(dataFile);
+  }
+
+  /**
+   * Assert that a frame has the expected contents.
+   *
+   * @param sequence
+   *          the sequence containing the frame
+   * @param frame
+   *          the index of the frame
+   * @param source
+   *          the expected source
+   * @param timestamp
+   *          the expected timestamp
+   * @param samples
+   *          the expected samples
+   */
+  private void assertFrame(SampledDataFrameSequence sequence, int frame, String source,
+      long timestamp, int... samples) {
+    assertEquals(source, sequence.getFrameSource(frame));
+    assertEquals(timestamp, sequence.getFrameTimestamp(frame));
+    assertEquals(samples.length, sequence.getFrameNumberSamples(frame));
+
+    int[] actual = new int[samples.length];
+    sequence.copyFrameSamples(frame, actual);
+    assertArrayEquals(samples, actual);
+  }
+}
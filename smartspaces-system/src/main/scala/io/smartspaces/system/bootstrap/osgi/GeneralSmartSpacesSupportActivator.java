@@ -48,6 +48,7 @@ import io.smartspaces.time.provider.LocalTimeProvider;
 import io.smartspaces.time.provider.NtpTimeProvider;
 import io.smartspaces.time.provider.TimeProvider;
 import io.smartspaces.util.concurrency.DefaultScheduledExecutorService;
+import io.smartspaces.util.concurrency.ExecutorServiceConfiguration;
 import io.smartspaces.util.net.InetAddressFactory;
 
 import org.apache.commons.logging.Log;
@@ -191,7 +192,7 @@ public class GeneralSmartSpacesSupportActivator implements BundleActivator {
 
     try {
 
-      executorService = new DefaultScheduledExecutorService();
+      executorService = newExecutorService();
 
       getCoreServices();
 
@@ -218,6 +219,23 @@ public class GeneralSmartSpacesSupportActivator implements BundleActivator {
     }
   }
 
+  /**
+   * Create the container's executor, configured from the framework properties.
+   *
+   * @return the executor
+   */
+  private DefaultScheduledExecutorService newExecutorService() {
+    ExecutorServiceConfiguration executorConfiguration = new ExecutorServiceConfiguration();
+    for (String name : ExecutorServiceConfiguration.CONFIGURATION_NAMES) {
+      String value = bundleContext.getProperty(name);
+      if (value != null) {
+        executorConfiguration.setProperty(name, value);
+      }
+    }
+
+    return new DefaultScheduledExecutorService(executorConfiguration);
+  }
+
   /**
    * Create any additional resources needed by the container.
    */
@@ -131,6 +131,17 @@ public class ProjectTaskContext implements ProjectContext {
    */
   private final CanonicalFileCollector sourceMap = new CanonicalFileCollector();
 
+  /**
+   * The fingerprint of the build inputs for the current build, can be
+   * {@code null}.
+   */
+  private volatile String buildFingerprint;
+
+  /**
+   * {@code true} if the project is up to date with its last build.
+   */
+  private volatile boolean upToDate;
+
   /**
    * The file support to use.
    */
@@ -487,6 +498,44 @@ public class ProjectTaskContext implements ProjectContext {
     this.currentTaskName = currentTaskName;
   }
 
+  /**
+   * Get the fingerprint of the build inputs for the current build.
+   *
+   * @return the fingerprint, or {@code null} if none has been calculated
+   */
+  public String getBuildFingerprint() {
+    return buildFingerprint;
+  }
+
+  /**
+   * Set the fingerprint of the build inputs for the current build.
+   *
+   * @param buildFingerprint
+   *          the fingerprint
+   */
+  public void setBuildFingerprint(String buildFingerprint) {
+    this.buildFingerprint = buildFingerprint;
+  }
+
+  /**
+   * Is the project up to date with its last build?
+   *
+   * @return {@code true} if the build and package steps can be skipped
+   */
+  public boolean isUpToDate() {
+    return upToDate;
+  }
+
+  /**
+   * Set whether the project is up to date with its last build.
+   *
+   * @param upToDate
+   *          {@code true} if the build and package steps can be skipped
+   */
+  public void setUpToDate(boolean upToDate) {
+    this.upToDate = upToDate;
+  }
+
   @Override
   public ExtendedLog getLog() {
     return getWorkbenchTaskContext().getLog();
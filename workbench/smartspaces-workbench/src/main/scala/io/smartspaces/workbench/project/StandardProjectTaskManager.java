@@ -27,6 +27,8 @@ import io.smartspaces.workbench.project.activity.ActivityProject;
 import io.smartspaces.workbench.project.activity.builder.BaseActivityProjectBuilder;
 import io.smartspaces.workbench.project.activity.packager.ActivityProjectPackager;
 import io.smartspaces.workbench.project.activity.packager.StandardActivityProjectPackager;
+import io.smartspaces.workbench.project.builder.FileProjectBuildCache;
+import io.smartspaces.workbench.project.builder.ProjectBuildCache;
 import io.smartspaces.workbench.project.builder.ProjectBuilder;
 import io.smartspaces.workbench.project.ide.EclipseIdeProjectCreator;
 import io.smartspaces.workbench.project.ide.EclipseIdeProjectCreatorSpecification;
@@ -65,6 +67,11 @@ public class StandardProjectTaskManager implements ProjectTaskManager {
    */
   private final FreemarkerTemplater templater;
 
+  /**
+   * The cache of previous builds.
+   */
+  private final ProjectBuildCache buildCache = new FileProjectBuildCache();
+
   /**
    * The file support to use.
    */
@@ -264,6 +271,8 @@ public class StandardProjectTaskManager implements ProjectTaskManager {
       projectTaskContext.getLog().info(
           String.format("Cleaning project %s", getProject().getBaseDirectory().getAbsolutePath()));
 
+      buildCache.invalidate(projectTaskContext);
+
       File buildDirectory = projectTaskContext.getBuildDirectory();
 
       if (buildDirectory.exists()) {
@@ -295,6 +304,18 @@ public class StandardProjectTaskManager implements ProjectTaskManager {
     public void onPerform() {
       ProjectTaskContext projectTaskContext = getProjectTaskContext();
 
+      if (projectTaskContext.getWorkbenchTaskContext().isBuildCacheEnabled()
+          && buildCache.isUpToDate(projectTaskContext)) {
+        projectTaskContext.setUpToDate(true);
+        projectTaskContext.getLog().info(String.format("Project %s is up to date, skipping build",
+            getProject().getBaseDirectory().getAbsolutePath()));
+        return;
+      }
+
+      // The artifacts of the last build are about to be overwritten, so they
+      // must not be trusted if this build fails, even when the cache is off.
+      buildCache.invalidate(projectTaskContext);
+
       // If no type, there is nothing special to do for building.
       ProjectBuilder builder = null;
       ProjectType type = projectTaskContext.getProjectType();
@@ -335,6 +356,13 @@ public class StandardProjectTaskManager implements ProjectTaskManager {
 
     @Override
     public void onPerform() {
+      ProjectTaskContext projectTaskContext = getProjectTaskContext();
+      if (projectTaskContext.isUpToDate()) {
+        projectTaskContext.getLog().info(String.format(
+            "Project %s is up to date, skipping packaging",
+            getProject().getBaseDirectory().getAbsolutePath()));
+        return;
+      }
 
       try {
         getProjectTaskContext().getLog().info(
@@ -344,6 +372,10 @@ public class StandardProjectTaskManager implements ProjectTaskManager {
         if (ActivityProject.PROJECT_TYPE_NAME.equals(getProject().getType())) {
           activityProjectPackager.packageActivityProject(getProject(), getProjectTaskContext());
         }
+
+        if (projectTaskContext.getWorkbenchTaskContext().isBuildCacheEnabled()) {
+          buildCache.recordBuild(projectTaskContext);
+        }
       } catch (Throwable e) {
         getProjectTaskContext().getWorkbenchTaskContext().handleError(
             "Error while packaging project", e);
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.workbench.project.builder;
+
+import io.smartspaces.SmartSpacesException;
+import io.smartspaces.system.core.container.ContainerFilesystemLayout;
+import io.smartspaces.util.data.mapper.JsonDataMapper;
+import io.smartspaces.util.data.mapper.StandardJsonDataMapper;
+import io.smartspaces.util.io.FileSupport;
+import io.smartspaces.util.io.FileSupportImpl;
+import io.smartspaces.workbench.project.Project;
+import io.smartspaces.workbench.project.ProjectTaskContext;
+import io.smartspaces.workbench.project.constituent.ContentProjectConstituent;
+import io.smartspaces.workbench.tasks.WorkbenchTaskContext;
+
+import com.google.common.io.BaseEncoding;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ProjectBuildCache} which keeps the fingerprint of the last
+ * successful build in a file in the build directory of the project.
+ *
+ * <p>
+ * The fingerprint covers the size and modification time of every file in the
+ * project directory, any source and resource directories outside of the
+ * project directory, the controller bootstrap classpath, and the artifacts
+ * generated by any dynamic project dependencies. Cleaning the project removes
+ * the cache file and so forces a full build.
+ *
+ * @author Keith M. Hughes
+ */
+public class FileProjectBuildCache implements ProjectBuildCache {
+
+  /**
+   * The name of the file in the build directory which stores the cache
+   * information.
+   */
+  public static final String BUILD_CACHE_FILENAME = "buildcache.json";
+
+  /**
+   * The cache file key for the input fingerprint.
+   */
+  public static final String CACHE_KEY_FINGERPRINT = "fingerprint";
+
+  /**
+   * The cache file key for the generated artifacts.
+   */
+  public static final String CACHE_KEY_GENERATED_ARTIFACTS = "generatedArtifacts";
+
+  /**
+   * The digest algorithm used for fingerprints.
+   */
+  private static final String FINGERPRINT_DIGEST_ALGORITHM = "SHA-1";
+
+  /**
+   * The prefix for files which are ignored for the fingerprint, such as IDE
+   * files.
+   */
+  private static final String IGNORED_FILE_PREFIX = ".";
+
+  /**
+   * The JSON mapper.
+   */
+  private static final JsonDataMapper MAPPER = StandardJsonDataMapper.INSTANCE;
+
+  /**
+   * The file support to use.
+   */
+  private final FileSupport fileSupport = FileSupportImpl.INSTANCE;
+
+  @Override
+  public boolean isUpToDate(ProjectTaskContext context) {
+    String fingerprint;
+    try {
+      fingerprint = calculateFingerprint(context);
+    } catch (Throwable e) {
+      context.getLog().warn("Could not fingerprint project, it will be built", e);
+      return false;
+    }
+    context.setBuildFingerprint(fingerprint);
+
+    File cacheFile = getCacheFile(context);
+    if (!fileSupport.isFile(cacheFile)) {
+      return false;
+    }
+
+    Map<String, Object> cacheData;
+    try {
+      cacheData = MAPPER.parseObject(cacheFile);
+    } catch (Throwable e) {
+      context.getLog().formatWarn("Ignoring unreadable build cache file %s",
+          cacheFile.getAbsolutePath());
+      return false;
+    }
+
+    if (!fingerprint.equals(cacheData.get(CACHE_KEY_FINGERPRINT))) {
+      return false;
+    }
+
+    List<File> generatedArtifacts = new ArrayList<>();
+    @SuppressWarnings("unchecked")
+    List<String> artifactPaths = (List<String>) cacheData.get(CACHE_KEY_GENERATED_ARTIFACTS);
+    if (artifactPaths != null) {
+      for (String artifactPath : artifactPaths) {
+        File artifact = fileSupport.newFile(artifactPath);
+        if (!fileSupport.isFile(artifact)) {
+          return false;
+        }
+        generatedArtifacts.add(artifact);
+      }
+    }
+
+    for (File artifact : generatedArtifacts) {
+      context.addGeneratedArtifact(artifact);
+    }
+
+    return true;
+  }
+
+  @Override
+  public void recordBuild(ProjectTaskContext context) {
+    String fingerprint = context.getBuildFingerprint();
+    if (fingerprint == null) {
+      return;
+    }
+
+    List<String> artifactPaths = new ArrayList<>();
+    for (File artifact : context.getGeneratedArtifacts()) {
+      artifactPaths.add(artifact.getAbsolutePath());
+    }
+
+    Map<String, Object> cacheData = new HashMap<>();
+    cacheData.put(CACHE_KEY_FINGERPRINT, fingerprint);
+    cacheData.put(CACHE_KEY_GENERATED_ARTIFACTS, artifactPaths);
+
+    File cacheFile = getCacheFile(context);
+    File tempFile = fileSupport.newFile(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+    fileSupport.writeFile(tempFile, MAPPER.toString(cacheData));
+    fileSupport.atomicMoveFile(tempFile, cacheFile);
+  }
+
+  @Override
+  public void invalidate(ProjectTaskContext context) {
+    File cacheFile = getCacheFile(context);
+    if (fileSupport.exists(cacheFile)) {
+      fileSupport.delete(cacheFile);
+    }
+  }
+
+  /**
+   * Get the cache file for a project.
+   *
+   * @param context
+   *          the task context for the project
+   *
+   * @return the cache file
+   */
+  private File getCacheFile(ProjectTaskContext context) {
+    return fileSupport.newFile(context.getBuildDirectory(), BUILD_CACHE_FILENAME);
+  }
+
+  /**
+   * Calculate the fingerprint of all inputs to the build of a project.
+   *
+   * @param context
+   *          the task context for the project
+   *
+   * @return the fingerprint
+   */
+  private String calculateFingerprint(ProjectTaskContext context) {
+    MessageDigest digest = newDigest();
+
+    Project project = context.getProject();
+    File baseDirectory = project.getBaseDirectory();
+    File buildDirectory = context.getBuildDirectory();
+
+    addDirectoryToFingerprint(digest, baseDirectory, buildDirectory);
+    addContentConstituentsToFingerprint(digest, project.getSources(), context, baseDirectory,
+        buildDirectory);
+    addContentConstituentsToFingerprint(digest, project.getResources(), context, baseDirectory,
+        buildDirectory);
+
+    WorkbenchTaskContext workbenchTaskContext = context.getWorkbenchTaskContext();
+    for (File classpathEntry : workbenchTaskContext.getControllerSystemBootstrapClasspath()) {
+      addFileToFingerprint(digest, classpathEntry);
+    }
+    addDirectoryToFingerprint(digest, fileSupport.newFile(
+        workbenchTaskContext.getControllerDirectory(),
+        ContainerFilesystemLayout.FOLDER_USER_BOOTSTRAP), null);
+
+    for (ProjectTaskContext dependencyContext : context.getDynamicProjectDependencyContexts()) {
+      for (File artifact : dependencyContext.getGeneratedArtifacts()) {
+        addFileToFingerprint(digest, artifact);
+      }
+    }
+
+    return BaseEncoding.base16().lowerCase().encode(digest.digest());
+  }
+
+  /**
+   * Add the source directories of content constituents which are outside the
+   * project directory to the fingerprint.
+   *
+   * @param digest
+   *          the digest being calculated
+   * @param constituents
+   *          the constituents, can be {@code null}
+   * @param context
+   *          the task context for the project
+   * @param baseDirectory
+   *          the base directory of the project
+   * @param buildDirectory
+   *          the build directory of the project
+   */
+  private void addContentConstituentsToFingerprint(MessageDigest digest,
+      List<ContentProjectConstituent> constituents, ProjectTaskContext context,
+      File baseDirectory, File buildDirectory) {
+    if (constituents == null) {
+      return;
+    }
+
+    for (ContentProjectConstituent constituent : constituents) {
+      String sourceDirectoryPath;
+      try {
+        sourceDirectoryPath = constituent.getSourceDirectory();
+      } catch (SmartSpacesException e) {
+        // The constituent does not have a source directory.
+        continue;
+      }
+
+      if (sourceDirectoryPath != null) {
+        File sourceDirectory = context.getProjectTargetFile(baseDirectory, sourceDirectoryPath);
+        if (!fileSupport.isParent(baseDirectory, sourceDirectory)) {
+          addDirectoryToFingerprint(digest, sourceDirectory, buildDirectory);
+        }
+      }
+    }
+  }
+
+  /**
+   * Add all files in a directory tree to the fingerprint.
+   *
+   * @param digest
+   *          the digest being calculated
+   * @param directory
+   *          the directory to add
+   * @param excludedDirectory
+   *          a directory to leave out of the fingerprint, can be {@code null}
+   */
+  private void addDirectoryToFingerprint(MessageDigest digest, File directory,
+      File excludedDirectory) {
+    File[] files = fileSupport.listFiles(directory);
+    if (files == null) {
+      return;
+    }
+
+    Arrays.sort(files);
+    for (File file : files) {
+      if (file.getName().startsWith(IGNORED_FILE_PREFIX) || file.equals(excludedDirectory)) {
+        continue;
+      }
+
+      if (file.isDirectory()) {
+        addDirectoryToFingerprint(digest, file, excludedDirectory);
+      } else {
+        addFileToFingerprint(digest, file);
+      }
+    }
+  }
+
+  /**
+   * Add a single file to the fingerprint.
+   *
+   * @param digest
+   *          the digest being calculated
+   * @param file
+   *          the file to add
+   */
+  private void addFileToFingerprint(MessageDigest digest, File file) {
+    String entry =
+        String.format("%s:%d:%d\n", file.getAbsolutePath(), file.length(), file.lastModified());
+    digest.update(entry.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Get a new digest for calculating fingerprints.
+   *
+   * @return the digest
+   */
+  private MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(FINGERPRINT_DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new SmartSpacesException("Cannot create digest for build fingerprints", e);
+    }
+  }
+}
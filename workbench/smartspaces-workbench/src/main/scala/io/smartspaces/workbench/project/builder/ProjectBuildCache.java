@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016 Keith M. Hughes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.smartspaces.workbench.project.builder;
+
+import io.smartspaces.workbench.project.ProjectTaskContext;
+
+/**
+ * A cache which remembers the inputs of the last successful build of a project
+ * so that unchanged projects need not be compiled, assembled, and packaged
+ * again.
+ *
+ * @author Keith M. Hughes
+ */
+public interface ProjectBuildCache {
+
+  /**
+   * Is the project described by the context up to date with its last
+   * successful build?
+   *
+   * <p>
+   * The fingerprint of the current build inputs is stored in the context so
+   * that it can be recorded after the build. If the project is up to date, the
+   * generated artifacts of the last build are added to the context.
+   *
+   * @param context
+   *          the task context for the project
+   *
+   * @return {@code true} if the project does not need to be built
+   */
+  boolean isUpToDate(ProjectTaskContext context);
+
+  /**
+   * Record that the project described by the context was successfully built.
+   *
+   * @param context
+   *          the task context for the project
+   */
+  void recordBuild(ProjectTaskContext context);
+
+  /**
+   * Forget any previous build of the project described by the context.
+   *
+   * @param context
+   *          the task context for the project
+   */
+  void invalidate(ProjectTaskContext context);
+}
@@ -25,8 +25,17 @@ import java.io.FilenameFilter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.io.Closeables;
 
@@ -51,6 +60,7 @@ import io.smartspaces.workbench.project.Project;
 import io.smartspaces.workbench.project.ProjectDependency;
 import io.smartspaces.workbench.project.ProjectManager;
 import io.smartspaces.workbench.project.ProjectTaskContext;
+import io.smartspaces.workbench.project.ProjectWorkbenchTask;
 
 /**
  * The main context for a workbench task run.
@@ -103,6 +113,28 @@ public class WorkbenchTaskContext {
    */
   public static final String CONFIGURATION_NAME_MASTER_BASEDIR = "smartspaces.master.basedir";
 
+  /**
+   * Configuration property giving the number of tasks the workbench can
+   * perform at the same time. A value of 1 performs all tasks one after
+   * another.
+   */
+  public static final String CONFIGURATION_NAME_SMARTSPACES_WORKBENCH_TASKS_PARALLELISM =
+      "smartspaces.workbench.tasks.parallelism";
+
+  /**
+   * Configuration property saying whether projects whose build inputs have not
+   * changed since their last build should skip building and packaging.
+   */
+  public static final String CONFIGURATION_NAME_SMARTSPACES_WORKBENCH_BUILD_CACHE_ENABLE =
+      "smartspaces.workbench.build.cache.enable";
+
+  /**
+   * The default value for
+   * {@link #CONFIGURATION_NAME_SMARTSPACES_WORKBENCH_BUILD_CACHE_ENABLE}.
+   */
+  public static final boolean CONFIGURATION_DEFAULT_SMARTSPACES_WORKBENCH_BUILD_CACHE_ENABLE =
+      true;
+
   /**
    * A file filter for detecting directories.
    */
@@ -155,8 +187,11 @@ public class WorkbenchTaskContext {
 
   /**
    * Some task had an error during the task processing process.
+   *
+   * <p>
+   * Tasks can be performed concurrently, so this is written from many threads.
    */
-  private boolean errors = false;
+  private volatile boolean errors = false;
 
   /**
    * The native application runners collection for this context.
@@ -255,12 +290,18 @@ public class WorkbenchTaskContext {
     try {
       prepareForTaskPerformance();
 
-      for (DependencyWorkbenchTask task : getTasksInDependencyOrder()) {
+      List<DependencyWorkbenchTask> orderedTasks = getTasksInDependencyOrder();
+      int parallelism = getTaskParallelism();
+      if (parallelism > 1) {
+        performTasksConcurrently(orderedTasks, parallelism);
+      } else {
+        for (DependencyWorkbenchTask task : orderedTasks) {
 
-        performTask(task);
+          performTask(task);
 
-        if (errors) {
-          break;
+          if (errors) {
+            break;
+          }
         }
       }
     } finally {
@@ -268,6 +309,193 @@ public class WorkbenchTaskContext {
     }
   }
 
+  /**
+   * Perform the tasks on a pool of worker threads.
+   *
+   * <p>
+   * A task is started as soon as all of the tasks it depends on have
+   * completed. Tasks for the same project are always performed in the order
+   * they were added. Once any task fails, no new tasks are started, though
+   * tasks already running are allowed to complete.
+   *
+   * @param orderedTasks
+   *          the tasks in dependency order
+   * @param parallelism
+   *          the maximum number of tasks to perform at the same time
+   */
+  private void performTasksConcurrently(List<DependencyWorkbenchTask> orderedTasks,
+      int parallelism) {
+    Map<DependencyWorkbenchTask, Set<DependencyWorkbenchTask>> prerequisites =
+        getTaskPrerequisites(orderedTasks);
+
+    Map<DependencyWorkbenchTask, List<DependencyWorkbenchTask>> dependents = new HashMap<>();
+    Map<DependencyWorkbenchTask, Integer> remainingPrerequisites = new HashMap<>();
+    for (DependencyWorkbenchTask task : orderedTasks) {
+      dependents.put(task, new ArrayList<DependencyWorkbenchTask>());
+    }
+    for (DependencyWorkbenchTask task : orderedTasks) {
+      Set<DependencyWorkbenchTask> taskPrerequisites = prerequisites.get(task);
+      remainingPrerequisites.put(task, taskPrerequisites.size());
+      for (DependencyWorkbenchTask prerequisite : taskPrerequisites) {
+        dependents.get(prerequisite).add(task);
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    CompletionService<DependencyWorkbenchTask> completionService =
+        new ExecutorCompletionService<>(executor);
+    try {
+      int running = 0;
+      int completed = 0;
+      for (DependencyWorkbenchTask task : orderedTasks) {
+        if (remainingPrerequisites.get(task) == 0) {
+          submitTask(task, completionService);
+          running++;
+        }
+      }
+
+      while (running > 0) {
+        Future<DependencyWorkbenchTask> finished = completionService.take();
+        running--;
+        completed++;
+
+        DependencyWorkbenchTask finishedTask;
+        try {
+          finishedTask = finished.get();
+        } catch (ExecutionException e) {
+          errors = true;
+          logException(e.getCause());
+          continue;
+        }
+
+        if (errors) {
+          // Let the running tasks drain, but start nothing new.
+          continue;
+        }
+
+        for (DependencyWorkbenchTask dependent : dependents.get(finishedTask)) {
+          int remaining = remainingPrerequisites.get(dependent) - 1;
+          remainingPrerequisites.put(dependent, remaining);
+          if (remaining == 0) {
+            submitTask(dependent, completionService);
+            running++;
+          }
+        }
+      }
+
+      if (!errors && completed < orderedTasks.size()) {
+        errors = true;
+        getLog().error(String.format(
+            "Only %d of %d workbench tasks could be performed, the task dependencies are circular",
+            completed, orderedTasks.size()));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      errors = true;
+      getLog().error("Interrupted while performing workbench tasks");
+
+      // Whoever interrupted wants the tasks stopped, so don't wait for them.
+      executor.shutdownNow();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Submit a task for performance on the worker pool.
+   *
+   * @param task
+   *          the task to perform
+   * @param completionService
+   *          the completion service for the worker pool
+   */
+  private void submitTask(final DependencyWorkbenchTask task,
+      CompletionService<DependencyWorkbenchTask> completionService) {
+    completionService.submit(new Callable<DependencyWorkbenchTask>() {
+      @Override
+      public DependencyWorkbenchTask call() {
+        performTask(task);
+
+        return task;
+      }
+    });
+  }
+
+  /**
+   * Get the tasks which must be completed before each task can be started.
+   *
+   * <p>
+   * These are the declared dependencies of the task plus the task added
+   * immediately before it for the same project, so that, for example, a
+   * project is never cleaned while it is being built.
+   *
+   * @param orderedTasks
+   *          the tasks in dependency order
+   *
+   * @return a map from each task to its prerequisites
+   */
+  private Map<DependencyWorkbenchTask, Set<DependencyWorkbenchTask>> getTaskPrerequisites(
+      List<DependencyWorkbenchTask> orderedTasks) {
+    Set<DependencyWorkbenchTask> knownTasks = new LinkedHashSet<>(orderedTasks);
+
+    Map<DependencyWorkbenchTask, Set<DependencyWorkbenchTask>> prerequisites = new HashMap<>();
+    Map<ProjectTaskContext, DependencyWorkbenchTask> lastProjectTasks = new HashMap<>();
+    for (DependencyWorkbenchTask task : tasks) {
+      if (prerequisites.containsKey(task) || !knownTasks.contains(task)) {
+        continue;
+      }
+
+      Set<DependencyWorkbenchTask> taskPrerequisites = new LinkedHashSet<>();
+      for (DependencyWorkbenchTask dependency : task.getTaskDependencies()) {
+        if (knownTasks.contains(dependency)) {
+          taskPrerequisites.add(dependency);
+        }
+      }
+
+      ProjectTaskContext projectTaskContext = null;
+      if (task instanceof ProjectWorkbenchTask) {
+        projectTaskContext = ((ProjectWorkbenchTask) task).getProjectTaskContext();
+      }
+      DependencyWorkbenchTask previousProjectTask = lastProjectTasks.put(projectTaskContext, task);
+      if (previousProjectTask != null) {
+        taskPrerequisites.add(previousProjectTask);
+      }
+
+      prerequisites.put(task, taskPrerequisites);
+    }
+
+    for (DependencyWorkbenchTask task : orderedTasks) {
+      if (!prerequisites.containsKey(task)) {
+        prerequisites.put(task, new LinkedHashSet<DependencyWorkbenchTask>());
+      }
+    }
+
+    return prerequisites;
+  }
+
+  /**
+   * Get the number of tasks which can be performed at the same time.
+   *
+   * @return the task parallelism
+   */
+  private int getTaskParallelism() {
+    return workbenchConfig.getPropertyInteger(
+        CONFIGURATION_NAME_SMARTSPACES_WORKBENCH_TASKS_PARALLELISM,
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Should projects whose build inputs have not changed skip building and
+   * packaging?
+   *
+   * @return {@code true} if the build cache should be used
+   */
+  public boolean isBuildCacheEnabled() {
+    return workbenchConfig.getPropertyBoolean(
+        CONFIGURATION_NAME_SMARTSPACES_WORKBENCH_BUILD_CACHE_ENABLE,
+        CONFIGURATION_DEFAULT_SMARTSPACES_WORKBENCH_BUILD_CACHE_ENABLE);
+  }
+
   /**
    * Prepare for performing all tasks.
    */
@@ -547,7 +775,7 @@ public class WorkbenchTaskContext {
   /**
    * Scan the project path.
    */
-  public void scanProjectPath() {
+  public synchronized void scanProjectPath() {
     if (!projectPathScanned) {
       ProjectManager projectManager = workbench.getProjectManager();
       List<String> projectPaths =
@@ -599,7 +827,7 @@ public class WorkbenchTaskContext {
    * @param project
    *          the project to add to the project path
    */
-  public void addProjectToProjectPath(Project project) {
+  public synchronized void addProjectToProjectPath(Project project) {
     String identifyingName = project.getIdentifyingName();
     Version version = project.getVersion();
     projectsPath.addResource(identifyingName, version, new NamedVersionedResourceWithData<Project>(